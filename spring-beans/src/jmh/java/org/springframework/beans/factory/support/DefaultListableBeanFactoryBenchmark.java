@@ -0,0 +1,152 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans.factory.support;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+
+/**
+ * Benchmarks for {@link DefaultListableBeanFactory#getBean} with singleton
+ * and prototype bean definitions, by name and by type.
+ */
+@BenchmarkMode(Mode.Throughput)
+public class DefaultListableBeanFactoryBenchmark {
+
+	@Benchmark
+	public Object getSingletonByName(BenchmarkData data) {
+		return data.beanFactory.getBean("singleton");
+	}
+
+	@Benchmark
+	public Object getSingletonByType(BenchmarkData data) {
+		return data.beanFactory.getBean(SingletonBean.class);
+	}
+
+	@Benchmark
+	public Object getPrototypeByName(BenchmarkData data) {
+		return data.beanFactory.getBean("prototype");
+	}
+
+	@Benchmark
+	public Object getPrototypeByType(BenchmarkData data) {
+		return data.beanFactory.getBean(PrototypeBean.class);
+	}
+
+	@Benchmark
+	public Object getPrototypeWithArguments(BenchmarkData data) {
+		return data.beanFactory.getBean("prototypeWithArguments", "name", 42);
+	}
+
+
+	@State(Scope.Benchmark)
+	public static class BenchmarkData {
+
+		/**
+		 * The number of additional bean definitions in the factory, affecting
+		 * the cost of lookups by type.
+		 */
+		@Param({"0", "200"})
+		public int beanCount;
+
+		public DefaultListableBeanFactory beanFactory;
+
+		@Setup
+		public void setup() {
+			this.beanFactory = new DefaultListableBeanFactory();
+
+			RootBeanDefinition singleton = new RootBeanDefinition(SingletonBean.class);
+			this.beanFactory.registerBeanDefinition("singleton", singleton);
+
+			RootBeanDefinition prototype = new RootBeanDefinition(PrototypeBean.class);
+			prototype.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+			prototype.getPropertyValues().add("name", "name");
+			prototype.getPropertyValues().add("singleton", new RuntimeBeanReference("singleton"));
+			this.beanFactory.registerBeanDefinition("prototype", prototype);
+
+			RootBeanDefinition prototypeWithArguments = new RootBeanDefinition(ConstructorBean.class);
+			prototypeWithArguments.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+			this.beanFactory.registerBeanDefinition("prototypeWithArguments", prototypeWithArguments);
+
+			for (int i = 0; i < this.beanCount; i++) {
+				this.beanFactory.registerBeanDefinition("other" + i, new RootBeanDefinition(OtherBean.class));
+			}
+			this.beanFactory.preInstantiateSingletons();
+		}
+	}
+
+
+	public static class SingletonBean {
+	}
+
+
+	public static class OtherBean {
+	}
+
+
+	public static class PrototypeBean {
+
+		private String name;
+
+		private SingletonBean singleton;
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setSingleton(SingletonBean singleton) {
+			this.singleton = singleton;
+		}
+
+		public SingletonBean getSingleton() {
+			return this.singleton;
+		}
+	}
+
+
+	public static class ConstructorBean {
+
+		private final String name;
+
+		private final int age;
+
+		public ConstructorBean(String name, int age) {
+			this.name = name;
+			this.age = age;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public int getAge() {
+			return this.age;
+		}
+	}
+
+}
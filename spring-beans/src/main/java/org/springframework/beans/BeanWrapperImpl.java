@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -269,9 +269,13 @@ public class BeanWrapperImpl extends AbstractNestablePropertyAccessor implements
 
 		private final PropertyDescriptor pd;
 
+		@Nullable
+		private final PropertyAccessorGenerator.PropertyAccess generatedAccess;
+
 		public BeanPropertyHandler(PropertyDescriptor pd) {
 			super(pd.getPropertyType(), pd.getReadMethod() != null, pd.getWriteMethod() != null);
 			this.pd = pd;
+			this.generatedAccess = getCachedIntrospectionResults().getPropertyAccess(pd);
 		}
 
 		@Override
@@ -307,6 +311,9 @@ public class BeanWrapperImpl extends AbstractNestablePropertyAccessor implements
 					throw pae.getException();
 				}
 			}
+			else if (this.generatedAccess != null && this.generatedAccess.isReadable()) {
+				return this.generatedAccess.getValue(getWrappedInstance());
+			}
 			else {
 				ReflectionUtils.makeAccessible(readMethod);
 				return readMethod.invoke(getWrappedInstance(), (Object[]) null);
@@ -331,6 +338,9 @@ public class BeanWrapperImpl extends AbstractNestablePropertyAccessor implements
 					throw ex.getException();
 				}
 			}
+			else if (this.generatedAccess != null && this.generatedAccess.isWritable(value)) {
+				this.generatedAccess.setValue(getWrappedInstance(), value);
+			}
 			else {
 				ReflectionUtils.makeAccessible(writeMethod);
 				writeMethod.invoke(getWrappedInstance(), value);
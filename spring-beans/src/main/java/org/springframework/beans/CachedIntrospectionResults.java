@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -93,10 +94,36 @@ public class CachedIntrospectionResults {
 	 */
 	public static final String IGNORE_BEANINFO_PROPERTY_NAME = "spring.beaninfo.ignore";
 
+	/**
+	 * System property that instructs Spring to always access bean properties
+	 * via reflection: "spring.beaninfo.accessors.ignore", with a value of "true"
+	 * suppressing the generation of property accessor classes.
+	 * <p>By default, once the properties of a bean class have been accessed
+	 * {@value #ACCESSOR_GENERATION_THRESHOLD} times, an accessor class is
+	 * generated that invokes the public read and write methods of the bean
+	 * directly, avoiding the overhead of reflective invocation e.g. for data
+	 * binding and result set mapping. Consider switching this flag to "true"
+	 * in environments which do not allow for defining classes at runtime.
+	 * @since 5.1
+	 * @see GeneratedPropertyAccessor
+	 */
+	public static final String IGNORE_GENERATED_ACCESSORS_PROPERTY_NAME = "spring.beaninfo.accessors.ignore";
+
+	/**
+	 * The number of property accesses for a bean class after which
+	 * a property accessor class gets generated for it.
+	 * @since 5.1
+	 * @see #IGNORE_GENERATED_ACCESSORS_PROPERTY_NAME
+	 */
+	public static final int ACCESSOR_GENERATION_THRESHOLD = 100;
+
 
 	private static final boolean shouldIntrospectorIgnoreBeaninfoClasses =
 			SpringProperties.getFlag(IGNORE_BEANINFO_PROPERTY_NAME);
 
+	private static final boolean shouldIgnoreGeneratedAccessors =
+			SpringProperties.getFlag(IGNORE_GENERATED_ACCESSORS_PROPERTY_NAME);
+
 	/** Stores the BeanInfoFactory instances */
 	private static List<BeanInfoFactory> beanInfoFactories = SpringFactoriesLoader.loadFactories(
 			BeanInfoFactory.class, CachedIntrospectionResults.class.getClassLoader());
@@ -254,6 +281,13 @@ public class CachedIntrospectionResults {
 	/** TypeDescriptor objects keyed by PropertyDescriptor */
 	private final ConcurrentMap<PropertyDescriptor, TypeDescriptor> typeDescriptorCache;
 
+	/** Number of property accesses so far, until the generation of a property accessor */
+	private final AtomicInteger propertyAccessCount = new AtomicInteger();
+
+	/** Generated access handles keyed by property name, once generation has been attempted */
+	@Nullable
+	private volatile Map<String, PropertyAccessorGenerator.PropertyAccess> generatedPropertyAccess;
+
 
 	/**
 	 * Create a new CachedIntrospectionResults instance for the given class.
@@ -382,4 +416,28 @@ public class CachedIntrospectionResults {
 		return this.typeDescriptorCache.get(pd);
 	}
 
+	/**
+	 * Return the generated access handle for the given property, if any.
+	 * <p>Counts the property accesses for this bean class and triggers the
+	 * generation of a property accessor once the threshold has been reached.
+	 * @param pd the property descriptor
+	 * @return the access handle, or {@code null} if the property is to be
+	 * accessed via reflection
+	 * @see #ACCESSOR_GENERATION_THRESHOLD
+	 */
+	@Nullable
+	PropertyAccessorGenerator.PropertyAccess getPropertyAccess(PropertyDescriptor pd) {
+		Map<String, PropertyAccessorGenerator.PropertyAccess> propertyAccess = this.generatedPropertyAccess;
+		if (propertyAccess == null) {
+			if (shouldIgnoreGeneratedAccessors ||
+					this.propertyAccessCount.incrementAndGet() != ACCESSOR_GENERATION_THRESHOLD) {
+				return null;
+			}
+			// Only ever attempted once per bean class
+			propertyAccess = PropertyAccessorGenerator.generate(getBeanClass(), this.propertyDescriptorCache.values());
+			this.generatedPropertyAccess = propertyAccess;
+		}
+		return propertyAccess.get(pd.getName());
+	}
+
 }
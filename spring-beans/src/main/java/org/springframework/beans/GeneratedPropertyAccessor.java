@@ -0,0 +1,59 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Base class for the property accessors that are generated at runtime for
+ * frequently accessed bean classes, invoking the read and write methods of
+ * the bean properties directly instead of via reflection.
+ *
+ * <p>A generated accessor covers all eligible properties of a bean class,
+ * identified by an index that is assigned on generation.
+ *
+ * <p><b>NOTE:</b> This is an internal class. It is just public in order to
+ * allow for subclasses to be defined in a separate ClassLoader; it is not
+ * intended for direct use by application code.
+ *
+ * @since 5.1
+ * @see BeanWrapperImpl
+ * @see CachedIntrospectionResults#IGNORE_GENERATED_ACCESSORS_PROPERTY_NAME
+ */
+public abstract class GeneratedPropertyAccessor {
+
+	/**
+	 * Invoke the read method of the specified property.
+	 * @param target the bean instance
+	 * @param index the index of the property
+	 * @return the property value (boxed in case of a primitive)
+	 * @throws Throwable any exception thrown by the read method
+	 */
+	@Nullable
+	public abstract Object getValue(Object target, int index) throws Throwable;
+
+	/**
+	 * Invoke the write method of the specified property.
+	 * @param target the bean instance
+	 * @param index the index of the property
+	 * @param value the new value, which needs to be an instance of the
+	 * (boxed) parameter type of the write method
+	 * @throws Throwable any exception thrown by the write method
+	 */
+	public abstract void setValue(Object target, int index, @Nullable Object value) throws Throwable;
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2008 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,9 +29,13 @@ public abstract class PropertyAccessorFactory {
 	/**
 	 * Obtain a BeanWrapper for the given target object,
 	 * accessing properties in JavaBeans style.
+	 * <p>For frequently accessed bean classes, the returned BeanWrapper
+	 * invokes the property methods through a generated accessor class
+	 * rather than via reflection.
 	 * @param target the target object to wrap
 	 * @return the property accessor
 	 * @see BeanWrapperImpl
+	 * @see CachedIntrospectionResults#IGNORE_GENERATED_ACCESSORS_PROPERTY_NAME
 	 */
 	public static BeanWrapper forBeanPropertyAccess(Object target) {
 		return new BeanWrapperImpl(target);
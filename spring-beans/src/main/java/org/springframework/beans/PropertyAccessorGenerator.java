@@ -0,0 +1,362 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Generates a {@link GeneratedPropertyAccessor} subclass for a given bean class,
+ * covering all properties with public read and write methods on public types.
+ * Other properties are left to reflective access.
+ *
+ * <p>The generated classes are defined in a child of the bean's ClassLoader,
+ * analogous to compiled SpEL expressions.
+ *
+ * @since 5.1
+ * @see CachedIntrospectionResults#getPropertyAccess
+ */
+abstract class PropertyAccessorGenerator {
+
+	private static final String ACCESSOR_SUPERCLASS = Type.getInternalName(GeneratedPropertyAccessor.class);
+
+	private static final Log logger = LogFactory.getLog(PropertyAccessorGenerator.class);
+
+	private static final Map<ClassLoader, ChildClassLoader> classLoaders = new ConcurrentReferenceHashMap<>();
+
+	private static final AtomicInteger suffixId = new AtomicInteger(1);
+
+
+	/**
+	 * Generate an accessor for the given properties of the given bean class.
+	 * @param beanClass the bean class
+	 * @param pds the property descriptors of the bean class
+	 * @return a Map of {@link PropertyAccess} handles keyed by property name,
+	 * containing the eligible properties only (possibly empty)
+	 */
+	static Map<String, PropertyAccess> generate(Class<?> beanClass, Collection<PropertyDescriptor> pds) {
+		ClassLoader classLoader = beanClass.getClassLoader();
+		if (classLoader == null) {
+			classLoader = GeneratedPropertyAccessor.class.getClassLoader();
+		}
+		if (System.getSecurityManager() != null || !ClassUtils.isVisible(GeneratedPropertyAccessor.class, classLoader)) {
+			return Collections.emptyMap();
+		}
+
+		List<String> names = new ArrayList<>(pds.size());
+		List<Method> readMethods = new ArrayList<>(pds.size());
+		List<Method> writeMethods = new ArrayList<>(pds.size());
+		for (PropertyDescriptor pd : pds) {
+			Method readMethod = pd.getReadMethod();
+			Method writeMethod = pd.getWriteMethod();
+			readMethod = (readMethod != null && isEligible(readMethod, classLoader) ? readMethod : null);
+			writeMethod = (writeMethod != null && isEligible(writeMethod, classLoader) &&
+					writeMethod.getParameterCount() == 1 &&
+					isAccessible(writeMethod.getParameterTypes()[0], classLoader) ? writeMethod : null);
+			if (readMethod != null || writeMethod != null) {
+				names.add(pd.getName());
+				readMethods.add(readMethod);
+				writeMethods.add(writeMethod);
+			}
+		}
+		if (names.isEmpty()) {
+			return Collections.emptyMap();
+		}
+
+		String className = "spring/beans/" + beanClass.getSimpleName() + "$$PropertyAccessor" + suffixId.getAndIncrement();
+		GeneratedPropertyAccessor accessor;
+		try {
+			byte[] bytes = generateClass(className, readMethods, writeMethods);
+			Class<?> clazz = getChildClassLoader(classLoader).defineClass(className.replace('/', '.'), bytes);
+			accessor = (GeneratedPropertyAccessor) ReflectionUtils.accessibleConstructor(clazz).newInstance();
+		}
+		catch (Throwable ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to generate property accessor for class [" + beanClass.getName() + "]", ex);
+			}
+			return Collections.emptyMap();
+		}
+
+		Map<String, PropertyAccess> result = new HashMap<>(names.size());
+		for (int i = 0; i < names.size(); i++) {
+			Method writeMethod = writeMethods.get(i);
+			result.put(names.get(i), new PropertyAccess(accessor, i, readMethods.get(i) != null,
+					(writeMethod != null ? writeMethod.getParameterTypes()[0] : null)));
+		}
+		if (logger.isTraceEnabled()) {
+			logger.trace("Generated property accessor for class [" + beanClass.getName() + "]: " + result.keySet());
+		}
+		return result;
+	}
+
+	private static boolean isEligible(Method method, ClassLoader classLoader) {
+		return (Modifier.isPublic(method.getModifiers()) && !Modifier.isStatic(method.getModifiers()) &&
+				isAccessible(method.getDeclaringClass(), classLoader));
+	}
+
+	private static boolean isAccessible(Class<?> type, ClassLoader classLoader) {
+		Class<?> typeToCheck = type;
+		while (typeToCheck.isArray()) {
+			typeToCheck = typeToCheck.getComponentType();
+		}
+		if (typeToCheck.isPrimitive()) {
+			return true;
+		}
+		// Referenced by name from the generated class in a different package
+		return (Modifier.isPublic(typeToCheck.getModifiers()) && ClassUtils.isVisible(typeToCheck, classLoader));
+	}
+
+	private static ChildClassLoader getChildClassLoader(ClassLoader classLoader) {
+		synchronized (classLoaders) {
+			ChildClassLoader childClassLoader = classLoaders.get(classLoader);
+			if (childClassLoader == null) {
+				childClassLoader = new ChildClassLoader(classLoader);
+				classLoaders.put(classLoader, childClassLoader);
+			}
+			return childClassLoader;
+		}
+	}
+
+	private static byte[] generateClass(String className, List<Method> readMethods, List<Method> writeMethods) {
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER,
+				className, null, ACCESSOR_SUPERCLASS, null);
+
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, ACCESSOR_SUPERCLASS, "<init>", "()V", false);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		// Object getValue(Object target, int index)
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "getValue", "(Ljava/lang/Object;I)Ljava/lang/Object;",
+				null, new String[] {"java/lang/Throwable"});
+		mv.visitCode();
+		Label[] labels = switchOnIndex(mv, readMethods.size());
+		Label noSuchProperty = labels[labels.length - 1];
+		for (int i = 0; i < readMethods.size(); i++) {
+			mv.visitLabel(labels[i]);
+			Method readMethod = readMethods.get(i);
+			if (readMethod == null) {
+				mv.visitJumpInsn(Opcodes.GOTO, noSuchProperty);
+				continue;
+			}
+			loadTarget(mv, readMethod);
+			invoke(mv, readMethod);
+			Class<?> returnType = readMethod.getReturnType();
+			if (returnType == void.class) {
+				mv.visitInsn(Opcodes.ACONST_NULL);
+			}
+			else if (returnType.isPrimitive()) {
+				Type boxedType = Type.getType(ClassUtils.resolvePrimitiveIfNecessary(returnType));
+				mv.visitMethodInsn(Opcodes.INVOKESTATIC, boxedType.getInternalName(), "valueOf",
+						"(" + Type.getDescriptor(returnType) + ")" + boxedType.getDescriptor(), false);
+			}
+			mv.visitInsn(Opcodes.ARETURN);
+		}
+		throwNoSuchProperty(mv, noSuchProperty);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		// void setValue(Object target, int index, Object value)
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "setValue", "(Ljava/lang/Object;ILjava/lang/Object;)V",
+				null, new String[] {"java/lang/Throwable"});
+		mv.visitCode();
+		labels = switchOnIndex(mv, writeMethods.size());
+		noSuchProperty = labels[labels.length - 1];
+		for (int i = 0; i < writeMethods.size(); i++) {
+			mv.visitLabel(labels[i]);
+			Method writeMethod = writeMethods.get(i);
+			if (writeMethod == null) {
+				mv.visitJumpInsn(Opcodes.GOTO, noSuchProperty);
+				continue;
+			}
+			loadTarget(mv, writeMethod);
+			mv.visitVarInsn(Opcodes.ALOAD, 3);
+			Class<?> paramType = writeMethod.getParameterTypes()[0];
+			if (paramType.isPrimitive()) {
+				String boxedType = Type.getInternalName(ClassUtils.resolvePrimitiveIfNecessary(paramType));
+				mv.visitTypeInsn(Opcodes.CHECKCAST, boxedType);
+				mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, boxedType, paramType.getName() + "Value",
+						"()" + Type.getDescriptor(paramType), false);
+			}
+			else if (paramType != Object.class) {
+				mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(paramType));
+			}
+			invoke(mv, writeMethod);
+			Class<?> returnType = writeMethod.getReturnType();
+			if (returnType == long.class || returnType == double.class) {
+				mv.visitInsn(Opcodes.POP2);
+			}
+			else if (returnType != void.class) {
+				// e.g. a fluent setter exposed through ExtendedBeanInfo
+				mv.visitInsn(Opcodes.POP);
+			}
+			mv.visitInsn(Opcodes.RETURN);
+		}
+		throwNoSuchProperty(mv, noSuchProperty);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/**
+	 * Emit a table switch on the index argument.
+	 * @return one label per property index, followed by the default label
+	 */
+	private static Label[] switchOnIndex(MethodVisitor mv, int count) {
+		Label[] labels = new Label[count + 1];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = new Label();
+		}
+		Label[] cases = new Label[count];
+		System.arraycopy(labels, 0, cases, 0, count);
+		mv.visitVarInsn(Opcodes.ILOAD, 2);
+		mv.visitTableSwitchInsn(0, count - 1, labels[count], cases);
+		return labels;
+	}
+
+	private static void loadTarget(MethodVisitor mv, Method method) {
+		mv.visitVarInsn(Opcodes.ALOAD, 1);
+		mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(method.getDeclaringClass()));
+	}
+
+	private static void invoke(MethodVisitor mv, Method method) {
+		Class<?> declaringClass = method.getDeclaringClass();
+		boolean isInterface = declaringClass.isInterface();
+		mv.visitMethodInsn(isInterface ? Opcodes.INVOKEINTERFACE : Opcodes.INVOKEVIRTUAL,
+				Type.getInternalName(declaringClass), method.getName(), Type.getMethodDescriptor(method), isInterface);
+	}
+
+	private static void throwNoSuchProperty(MethodVisitor mv, Label label) {
+		mv.visitLabel(label);
+		mv.visitTypeInsn(Opcodes.NEW, "java/lang/IllegalArgumentException");
+		mv.visitInsn(Opcodes.DUP);
+		mv.visitLdcInsn("No generated access for property index");
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/IllegalArgumentException",
+				"<init>", "(Ljava/lang/String;)V", false);
+		mv.visitInsn(Opcodes.ATHROW);
+	}
+
+
+	/**
+	 * Handle for the generated access to a specific property.
+	 */
+	static final class PropertyAccess {
+
+		private final GeneratedPropertyAccessor accessor;
+
+		private final int index;
+
+		private final boolean readable;
+
+		@Nullable
+		private final Class<?> writeType;
+
+		PropertyAccess(GeneratedPropertyAccessor accessor, int index, boolean readable, @Nullable Class<?> writeType) {
+			this.accessor = accessor;
+			this.index = index;
+			this.readable = readable;
+			this.writeType = writeType;
+		}
+
+		/**
+		 * Return whether the property can be read through the generated accessor.
+		 */
+		public boolean isReadable() {
+			return this.readable;
+		}
+
+		/**
+		 * Return whether the given value can be written through the generated
+		 * accessor, i.e. whether it matches the parameter type of the write method
+		 * as is. Values that reflection would widen (e.g. an Integer for a
+		 * {@code long} parameter) or reject need to go through reflection.
+		 */
+		public boolean isWritable(@Nullable Object value) {
+			return (this.writeType != null && ClassUtils.isAssignableValue(this.writeType, value));
+		}
+
+		/**
+		 * Invoke the read method, with the same exception semantics as {@link Method#invoke}.
+		 */
+		@Nullable
+		public Object getValue(Object target) throws InvocationTargetException {
+			try {
+				return this.accessor.getValue(target, this.index);
+			}
+			catch (Throwable ex) {
+				throw new InvocationTargetException(ex);
+			}
+		}
+
+		/**
+		 * Invoke the write method, with the same exception semantics as {@link Method#invoke}.
+		 */
+		public void setValue(Object target, @Nullable Object value) throws InvocationTargetException {
+			try {
+				this.accessor.setValue(target, this.index, value);
+			}
+			catch (Throwable ex) {
+				throw new InvocationTargetException(ex);
+			}
+		}
+	}
+
+
+	private static class ChildClassLoader extends URLClassLoader {
+
+		private static final URL[] NO_URLS = new URL[0];
+
+		public ChildClassLoader(@Nullable ClassLoader classLoader) {
+			super(NO_URLS, classLoader);
+		}
+
+		public Class<?> defineClass(String name, byte[] bytes) {
+			return super.defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+}
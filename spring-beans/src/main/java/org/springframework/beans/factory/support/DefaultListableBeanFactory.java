@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -185,6 +185,9 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 	/** Whether bean definition metadata may be cached for all beans */
 	private volatile boolean configurationFrozen = false;
 
+	/** Number of threads to pre-instantiate singletons with */
+	private int preInstantiationParallelism = 1;
+
 
 	/**
 	 * Create a new DefaultListableBeanFactory.
@@ -316,6 +319,40 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 		return this.autowireCandidateResolver;
 	}
 
+	/**
+	 * Set the number of threads to pre-instantiate non-lazy singletons with.
+	 * <p>Default is 1, creating all singletons sequentially in registration order
+	 * on the calling thread. A higher value instantiates independent singletons
+	 * concurrently on a dedicated {@link java.util.concurrent.ForkJoinPool},
+	 * which can considerably reduce startup time when many singletons perform
+	 * blocking work during initialization (e.g. opening connection pools).
+	 * <p>Singletons are scheduled according to the dependency graph derived from
+	 * their bean definitions: "depends-on" declarations, factory beans, bean
+	 * references in constructor arguments and property values, as well as
+	 * autowired constructor and factory method parameters. Dependencies that only
+	 * become apparent during creation, e.g. autowired fields, are resolved safely
+	 * by waiting for the thread creating the dependency. Singletons involved in
+	 * circular references are created sequentially in registration order.
+	 * <p>Note that with parallel pre-instantiation, bean post-processors and
+	 * initialization callbacks may be invoked concurrently for different beans.
+	 * {@link SmartInitializingSingleton} callbacks are still invoked sequentially
+	 * on the calling thread once all singletons have been created.
+	 * @since 5.1
+	 * @see #preInstantiateSingletons()
+	 */
+	public void setPreInstantiationParallelism(int preInstantiationParallelism) {
+		Assert.isTrue(preInstantiationParallelism > 0, "Pre-instantiation parallelism must be greater than 0");
+		this.preInstantiationParallelism = preInstantiationParallelism;
+	}
+
+	/**
+	 * Return the number of threads to pre-instantiate non-lazy singletons with.
+	 * @since 5.1
+	 */
+	public int getPreInstantiationParallelism() {
+		return this.preInstantiationParallelism;
+	}
+
 
 	@Override
 	public void copyConfigurationFrom(ConfigurableBeanFactory otherFactory) {
@@ -325,6 +362,7 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 			this.allowBeanDefinitionOverriding = otherListableFactory.allowBeanDefinitionOverriding;
 			this.allowEagerClassLoading = otherListableFactory.allowEagerClassLoading;
 			this.dependencyComparator = otherListableFactory.dependencyComparator;
+			this.preInstantiationParallelism = otherListableFactory.preInstantiationParallelism;
 			// A clone of the AutowireCandidateResolver since it is potentially BeanFactoryAware...
 			setAutowireCandidateResolver(BeanUtils.instantiateClass(getAutowireCandidateResolver().getClass()));
 			// Make resolvable dependencies (e.g. ResourceLoader) available here as well...
@@ -751,27 +789,25 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 		// 第一次向容器发出getBean时,如果设置了lazy-init属性为false(默认为true),那么依赖注入发生在容器初始化的过程中,
 		// 会对beanDefinitionMap中所有的bean进行依赖注入,这样在初始化结束以后,容器执行getBean得到的就是已经准备好的bean,
 		// 不需要再进行依赖注入;
-		for (String beanName : beanNames) {
-			RootBeanDefinition bd = getMergedLocalBeanDefinition(beanName);
-			if (!bd.isAbstract() && bd.isSingleton() && !bd.isLazyInit()) {
-				if (isFactoryBean(beanName)) {
-					final FactoryBean<?> factory = (FactoryBean<?>) getBean(FACTORY_BEAN_PREFIX + beanName);
-					boolean isEagerInit;
-					if (System.getSecurityManager() != null && factory instanceof SmartFactoryBean) {
-						isEagerInit = AccessController.doPrivileged((PrivilegedAction<Boolean>) () ->
-								((SmartFactoryBean<?>) factory).isEagerInit(),
-								getAccessControlContext());
-					}
-					else {
-						isEagerInit = (factory instanceof SmartFactoryBean &&
-								((SmartFactoryBean<?>) factory).isEagerInit());
-					}
-					if (isEagerInit) {
-						getBean(beanName);
-					}
+		if (this.preInstantiationParallelism > 1) {
+			List<String> candidateNames = new ArrayList<>(beanNames.size());
+			for (String beanName : beanNames) {
+				if (isPreInstantiationCandidate(getMergedLocalBeanDefinition(beanName))) {
+					candidateNames.add(beanName);
 				}
-				else {
-					getBean(beanName);
+			}
+			setConcurrentSingletonCreation(true);
+			try {
+				new ParallelSingletonPreInstantiator(this, this.preInstantiationParallelism).preInstantiate(candidateNames);
+			}
+			finally {
+				setConcurrentSingletonCreation(false);
+			}
+		}
+		else {
+			for (String beanName : beanNames) {
+				if (isPreInstantiationCandidate(getMergedLocalBeanDefinition(beanName))) {
+					preInstantiateSingleton(beanName);
 				}
 			}
 		}
@@ -795,6 +831,42 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 	}
 
 
+	/**
+	 * Determine whether the given bean definition is to be pre-instantiated.
+	 */
+	private boolean isPreInstantiationCandidate(RootBeanDefinition bd) {
+		return (!bd.isAbstract() && bd.isSingleton() && !bd.isLazyInit());
+	}
+
+	/**
+	 * Pre-instantiate the given singleton, including the object of an eager
+	 * {@link SmartFactoryBean}.
+	 * @param beanName the name of the singleton
+	 * @throws BeansException if the singleton could not be created
+	 */
+	void preInstantiateSingleton(String beanName) throws BeansException {
+		if (isFactoryBean(beanName)) {
+			final FactoryBean<?> factory = (FactoryBean<?>) getBean(FACTORY_BEAN_PREFIX + beanName);
+			boolean isEagerInit;
+			if (System.getSecurityManager() != null && factory instanceof SmartFactoryBean) {
+				isEagerInit = AccessController.doPrivileged((PrivilegedAction<Boolean>) () ->
+						((SmartFactoryBean<?>) factory).isEagerInit(),
+						getAccessControlContext());
+			}
+			else {
+				isEagerInit = (factory instanceof SmartFactoryBean &&
+						((SmartFactoryBean<?>) factory).isEagerInit());
+			}
+			if (isEagerInit) {
+				getBean(beanName);
+			}
+		}
+		else {
+			getBean(beanName);
+		}
+	}
+
+
 	//---------------------------------------------------------------------
 	// Implementation of BeanDefinitionRegistry interface
 	//---------------------------------------------------------------------
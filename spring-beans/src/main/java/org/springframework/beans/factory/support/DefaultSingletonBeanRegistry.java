@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -25,6 +25,7 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -116,6 +117,15 @@ public class DefaultSingletonBeanRegistry extends SimpleAliasRegistry implements
 	/** Map between depending bean names: bean name --> Set of bean names for the bean's dependencies */
 	private final Map<String, Set<String>> dependenciesForBeanMap = new ConcurrentHashMap<>(64);
 
+	/** Whether singletons may currently be created by several threads concurrently */
+	private volatile boolean concurrentSingletonCreation = false;
+
+	/** Singletons in creation in concurrent mode: bean name --> SingletonCreation */
+	private final Map<String, SingletonCreation> singletonCreations = new ConcurrentHashMap<>(16);
+
+	/** Threads waiting for a singleton created by another thread: waiting thread --> bean name */
+	private final Map<Thread, String> singletonCreationWaits = new HashMap<>(16);
+
 
 	@Override
 	public void registerSingleton(String beanName, Object singletonObject) throws IllegalStateException {
@@ -200,6 +210,10 @@ public class DefaultSingletonBeanRegistry extends SimpleAliasRegistry implements
 		if (singletonObject == null && isSingletonCurrentlyInCreation(beanName)) {
 			// 为空,则锁定全局变量并进行处理
 			synchronized (this.singletonObjects) {
+				if (!isEarlySingletonAccessible(beanName)) {
+					// Created by another thread: wait for the fully initialized instance instead
+					return null;
+				}
 				// 如果此bean正在加载则不处理
 				singletonObject = this.earlySingletonObjects.get(beanName);
 				if (singletonObject == null && allowEarlyReference) {
@@ -238,6 +252,9 @@ public class DefaultSingletonBeanRegistry extends SimpleAliasRegistry implements
 		 * 7. 返回处理结果;
 		 */
 		Assert.notNull(beanName, "Bean name must not be null");
+		if (this.concurrentSingletonCreation) {
+			return getSingletonConcurrently(beanName, singletonFactory);
+		}
 		// 全局变量,同步
 		synchronized (this.singletonObjects) {
 			// 检查对应bean是否已经加载过了,singleton模式服用已经创建的bean
@@ -294,6 +311,155 @@ public class DefaultSingletonBeanRegistry extends SimpleAliasRegistry implements
 		}
 	}
 
+	/**
+	 * Variant of {@link #getSingleton(String, ObjectFactory)} for concurrent mode:
+	 * invokes the given factory outside of the singleton lock, letting other threads
+	 * create other singletons in the meantime, and waits for a singleton that is
+	 * currently created by another thread.
+	 * @param beanName the name of the bean
+	 * @param singletonFactory the ObjectFactory to lazily create the singleton with
+	 * @return the registered singleton object
+	 * @see #setConcurrentSingletonCreation
+	 */
+	private Object getSingletonConcurrently(String beanName, ObjectFactory<?> singletonFactory) {
+		Thread currentThread = Thread.currentThread();
+		while (true) {
+			SingletonCreation creation;
+			synchronized (this.singletonObjects) {
+				Object singletonObject = this.singletonObjects.get(beanName);
+				if (singletonObject != null) {
+					return singletonObject;
+				}
+				creation = this.singletonCreations.get(beanName);
+				if (creation == null) {
+					if (this.singletonsCurrentlyInDestruction) {
+						throw new BeanCreationNotAllowedException(beanName,
+								"Singleton bean creation not allowed while singletons of this factory are in destruction " +
+								"(Do not request a bean from a BeanFactory in a destroy method implementation!)");
+					}
+					if (logger.isDebugEnabled()) {
+						logger.debug("Creating shared instance of singleton bean '" + beanName + "'");
+					}
+					beforeSingletonCreation(beanName);
+					break;
+				}
+				if (isWaitingFor(creation.thread, currentThread)) {
+					// Circular reference within the current thread, or across threads
+					// that are blocked on each other, without early reference available.
+					throw new BeanCurrentlyInCreationException(beanName);
+				}
+				this.singletonCreationWaits.put(currentThread, beanName);
+			}
+			try {
+				awaitSingletonCreation(beanName, creation);
+			}
+			finally {
+				synchronized (this.singletonObjects) {
+					this.singletonCreationWaits.remove(currentThread);
+				}
+			}
+		}
+
+		Object singletonObject = null;
+		boolean newSingleton = false;
+		try {
+			singletonObject = singletonFactory.getObject();
+			newSingleton = true;
+		}
+		catch (IllegalStateException ex) {
+			// Has the singleton object implicitly appeared in the meantime ->
+			// if yes, proceed with it since the exception indicates that state.
+			singletonObject = this.singletonObjects.get(beanName);
+			if (singletonObject == null) {
+				throw ex;
+			}
+		}
+		finally {
+			// Atomically publish the singleton and release waiting threads
+			synchronized (this.singletonObjects) {
+				afterSingletonCreation(beanName);
+				if (newSingleton) {
+					addSingleton(beanName, singletonObject);
+				}
+			}
+		}
+		return singletonObject;
+	}
+
+	/**
+	 * Wait for the given singleton to be created by another thread.
+	 * <p>To be called without holding the singleton lock where possible: the
+	 * current thread then waits on the creation itself, independent of any
+	 * registry lock. If the singleton lock is held further up the call stack,
+	 * e.g. while obtaining the object from a FactoryBean, the current thread
+	 * waits on the singleton lock's monitor instead, which releases the lock
+	 * for the creating thread to publish the singleton with.
+	 */
+	private void awaitSingletonCreation(String beanName, SingletonCreation creation) {
+		try {
+			if (Thread.holdsLock(this.singletonObjects)) {
+				synchronized (this.singletonObjects) {
+					while (!creation.isCompleted()) {
+						this.singletonObjects.wait();
+					}
+				}
+			}
+			else {
+				creation.await();
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new BeanCreationException(beanName,
+					"Interrupted while waiting for singleton creation in another thread", ex);
+		}
+	}
+
+	/**
+	 * Determine whether an early reference to the given singleton may be exposed
+	 * to the current thread, i.e. whether it is not in creation by another thread
+	 * or whether that thread is (transitively) waiting for the current thread.
+	 * <p>To be called with the singleton lock held.
+	 */
+	private boolean isEarlySingletonAccessible(String beanName) {
+		SingletonCreation creation = this.singletonCreations.get(beanName);
+		return (creation == null || isWaitingFor(creation.thread, Thread.currentThread()));
+	}
+
+	/**
+	 * Determine whether the given thread is (transitively) waiting for a singleton
+	 * created by the target thread, or is the target thread itself.
+	 * <p>To be called with the singleton lock held.
+	 */
+	private boolean isWaitingFor(Thread thread, Thread targetThread) {
+		Thread current = thread;
+		while (current != null) {
+			if (current == targetThread) {
+				return true;
+			}
+			String awaitedBeanName = this.singletonCreationWaits.get(current);
+			SingletonCreation creation = (awaitedBeanName != null ? this.singletonCreations.get(awaitedBeanName) : null);
+			current = (creation != null ? creation.thread : null);
+		}
+		return false;
+	}
+
+	/**
+	 * Set whether singletons may be created by several threads concurrently.
+	 * <p>Default is "false": singleton creation happens under a single lock,
+	 * implicitly serializing the creation of singletons by different threads.
+	 * When switched on, each singleton is created outside of that lock by the
+	 * first thread asking for it, with other threads waiting for its completion.
+	 * Circular references between singletons created by different threads are
+	 * resolved through early references as long as one of the threads involved
+	 * is blocked, analogous to circular references within a single thread.
+	 * @since 5.1
+	 * @see DefaultListableBeanFactory#setPreInstantiationParallelism
+	 */
+	protected void setConcurrentSingletonCreation(boolean concurrentSingletonCreation) {
+		this.concurrentSingletonCreation = concurrentSingletonCreation;
+	}
+
 	/**
 	 * Register an Exception that happened to get suppressed during the creation of a
 	 * singleton bean instance, e.g. a temporary circular reference resolution problem.
@@ -380,6 +546,9 @@ public class DefaultSingletonBeanRegistry extends SimpleAliasRegistry implements
 		if (!this.inCreationCheckExclusions.contains(beanName) && !this.singletonsCurrentlyInCreation.add(beanName)) {
 			throw new BeanCurrentlyInCreationException(beanName);
 		}
+		if (this.concurrentSingletonCreation && !this.inCreationCheckExclusions.contains(beanName)) {
+			this.singletonCreations.put(beanName, new SingletonCreation(Thread.currentThread()));
+		}
 	}
 
 	/**
@@ -392,6 +561,14 @@ public class DefaultSingletonBeanRegistry extends SimpleAliasRegistry implements
 		if (!this.inCreationCheckExclusions.contains(beanName) && !this.singletonsCurrentlyInCreation.remove(beanName)) {
 			throw new IllegalStateException("Singleton '" + beanName + "' isn't currently in creation");
 		}
+		SingletonCreation creation = this.singletonCreations.remove(beanName);
+		if (creation != null) {
+			synchronized (this.singletonObjects) {
+				creation.complete();
+				// For threads waiting with the singleton lock held further up the call stack
+				this.singletonObjects.notifyAll();
+			}
+		}
 	}
 
 
@@ -651,4 +828,33 @@ public class DefaultSingletonBeanRegistry extends SimpleAliasRegistry implements
 		return this.singletonObjects;
 	}
 
+
+
+	/**
+	 * A singleton in creation by a specific thread in concurrent mode,
+	 * for other threads to wait for.
+	 */
+	private static class SingletonCreation {
+
+		final Thread thread;
+
+		private final CountDownLatch latch = new CountDownLatch(1);
+
+		SingletonCreation(Thread thread) {
+			this.thread = thread;
+		}
+
+		void complete() {
+			this.latch.countDown();
+		}
+
+		boolean isCompleted() {
+			return (this.latch.getCount() == 0);
+		}
+
+		void await() throws InterruptedException {
+			this.latch.await();
+		}
+	}
+
 }
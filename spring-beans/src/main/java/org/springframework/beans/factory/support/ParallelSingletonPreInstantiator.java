@@ -0,0 +1,432 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans.factory.support;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.config.ConstructorArgumentValues;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Delegate for pre-instantiating singletons in parallel, according to the
+ * dependency graph derived from their bean definitions.
+ *
+ * <p>Singletons are grouped into the strongly connected components of that
+ * graph. Each component is created on a {@link ForkJoinPool} as soon as all
+ * components it depends on have been created, with the singletons within a
+ * component created sequentially in registration order. Singletons involved
+ * in circular references thus fall back to the regular sequential creation.
+ *
+ * <p>Dependencies missing from the graph, e.g. autowired fields, are covered
+ * by the concurrent singleton creation mode of the bean factory, waiting for
+ * a singleton that is in creation by another thread.
+ *
+ * @since 5.1
+ * @see DefaultListableBeanFactory#setPreInstantiationParallelism
+ */
+final class ParallelSingletonPreInstantiator {
+
+	private static final Log logger = LogFactory.getLog(ParallelSingletonPreInstantiator.class);
+
+
+	private final DefaultListableBeanFactory beanFactory;
+
+	private final int parallelism;
+
+
+	ParallelSingletonPreInstantiator(DefaultListableBeanFactory beanFactory, int parallelism) {
+		this.beanFactory = beanFactory;
+		this.parallelism = parallelism;
+	}
+
+
+	/**
+	 * Pre-instantiate the given singletons, waiting for all of them to be created.
+	 * @param beanNames the names of the singletons, in registration order
+	 * @throws BeansException the creation failure of the first singleton in
+	 * registration order that could not be created
+	 */
+	public void preInstantiate(List<String> beanNames) throws BeansException {
+		Map<String, Integer> indexes = new HashMap<>(beanNames.size());
+		for (int i = 0; i < beanNames.size(); i++) {
+			indexes.put(beanNames.get(i), i);
+		}
+		List<Set<Integer>> dependencies = new ArrayList<>(beanNames.size());
+		for (String beanName : beanNames) {
+			dependencies.add(determineDependencies(beanName, indexes));
+		}
+		List<List<Integer>> components = new ComponentResolver(dependencies).resolve();
+		if (logger.isDebugEnabled()) {
+			logger.debug("Pre-instantiating " + beanNames.size() + " singletons in " + components.size() +
+					" independent groups using " + this.parallelism + " threads");
+		}
+
+		Map<String, Throwable> failures = new ConcurrentHashMap<>();
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+		try {
+			int[] componentIndexes = new int[beanNames.size()];
+			CompletableFuture<?>[] futures = new CompletableFuture<?>[components.size()];
+			for (int i = 0; i < components.size(); i++) {
+				List<Integer> component = components.get(i);
+				Set<CompletableFuture<?>> predecessors = new LinkedHashSet<>();
+				for (int index : component) {
+					componentIndexes[index] = i;
+				}
+				for (int index : component) {
+					for (int dependency : dependencies.get(index)) {
+						if (componentIndexes[dependency] != i) {
+							// Components are resolved in dependency order: already scheduled
+							predecessors.add(futures[componentIndexes[dependency]]);
+						}
+					}
+				}
+				Runnable task = () -> preInstantiate(component, beanNames, failures, classLoader);
+				futures[i] = (predecessors.isEmpty() ? CompletableFuture.runAsync(task, pool) :
+						CompletableFuture.allOf(predecessors.toArray(new CompletableFuture<?>[0])).thenRunAsync(task, pool));
+			}
+			CompletableFuture.allOf(futures).join();
+		}
+		catch (CompletionException ex) {
+			// Failures are reported in registration order below
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		for (String beanName : beanNames) {
+			Throwable failure = failures.get(beanName);
+			if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			}
+			else if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+		}
+	}
+
+	private void preInstantiate(List<Integer> component, List<String> beanNames,
+			Map<String, Throwable> failures, @Nullable ClassLoader classLoader) {
+
+		Thread currentThread = Thread.currentThread();
+		ClassLoader originalClassLoader = currentThread.getContextClassLoader();
+		currentThread.setContextClassLoader(classLoader);
+		try {
+			for (int index : component) {
+				if (!failures.isEmpty()) {
+					// Fail fast, analogous to sequential pre-instantiation
+					return;
+				}
+				String beanName = beanNames.get(index);
+				try {
+					this.beanFactory.preInstantiateSingleton(beanName);
+				}
+				catch (RuntimeException | Error ex) {
+					failures.put(beanName, ex);
+					throw ex;
+				}
+			}
+		}
+		finally {
+			currentThread.setContextClassLoader(originalClassLoader);
+		}
+	}
+
+
+	/**
+	 * Determine the singletons to pre-instantiate that the given singleton
+	 * depends on, directly or through beans that are not pre-instantiated.
+	 */
+	private Set<Integer> determineDependencies(String beanName, Map<String, Integer> indexes) {
+		Set<Integer> result = new LinkedHashSet<>();
+		Set<String> visited = new HashSet<>();
+		List<String> pending = new ArrayList<>();
+		visited.add(beanName);
+		pending.add(beanName);
+		while (!pending.isEmpty()) {
+			String currentName = pending.remove(pending.size() - 1);
+			for (String dependency : determineDirectDependencies(currentName)) {
+				String dependencyName = this.beanFactory.canonicalName(BeanFactoryUtils.transformedBeanName(dependency));
+				if (visited.add(dependencyName)) {
+					Integer index = indexes.get(dependencyName);
+					if (index != null) {
+						result.add(index);
+					}
+					else if (this.beanFactory.containsBeanDefinition(dependencyName)) {
+						pending.add(dependencyName);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Determine the names of the beans that the given bean directly depends on,
+	 * as far as derivable from its bean definition without creating any beans.
+	 */
+	private Set<String> determineDirectDependencies(String beanName) {
+		Set<String> dependencies = new LinkedHashSet<>();
+		try {
+			RootBeanDefinition mbd = this.beanFactory.getMergedLocalBeanDefinition(beanName);
+			addDependencies(mbd, dependencies);
+			if (mbd.getInstanceSupplier() == null) {
+				Executable executable = determineAutowiredExecutable(beanName, mbd);
+				if (executable != null) {
+					for (int i = 0; i < executable.getParameterCount(); i++) {
+						addDependencies(MethodParameter.forExecutable(executable, i), dependencies);
+					}
+				}
+			}
+			String[] dependentBeans = this.beanFactory.getDependenciesForBean(beanName);
+			for (String dependentBean : dependentBeans) {
+				dependencies.add(dependentBean);
+			}
+		}
+		catch (RuntimeException | LinkageError ex) {
+			// Leave remaining dependencies to be resolved during creation
+			if (logger.isDebugEnabled()) {
+				logger.debug("Could not determine dependencies of bean '" + beanName + "': " + ex);
+			}
+		}
+		return dependencies;
+	}
+
+	private void addDependencies(BeanDefinition bd, Set<String> dependencies) {
+		String[] dependsOn = bd.getDependsOn();
+		if (dependsOn != null) {
+			for (String dependency : dependsOn) {
+				dependencies.add(dependency);
+			}
+		}
+		if (bd.getFactoryBeanName() != null) {
+			dependencies.add(bd.getFactoryBeanName());
+		}
+		ConstructorArgumentValues cav = bd.getConstructorArgumentValues();
+		for (ConstructorArgumentValues.ValueHolder valueHolder : cav.getIndexedArgumentValues().values()) {
+			addDependencies(valueHolder.getValue(), dependencies);
+		}
+		for (ConstructorArgumentValues.ValueHolder valueHolder : cav.getGenericArgumentValues()) {
+			addDependencies(valueHolder.getValue(), dependencies);
+		}
+		for (PropertyValue pv : bd.getPropertyValues().getPropertyValues()) {
+			addDependencies(pv.getValue(), dependencies);
+		}
+	}
+
+	private void addDependencies(@Nullable Object value, Set<String> dependencies) {
+		if (value instanceof RuntimeBeanReference) {
+			RuntimeBeanReference reference = (RuntimeBeanReference) value;
+			if (!reference.isToParent()) {
+				dependencies.add(reference.getBeanName());
+			}
+		}
+		else if (value instanceof BeanDefinitionHolder) {
+			addDependencies(((BeanDefinitionHolder) value).getBeanDefinition(), dependencies);
+		}
+		else if (value instanceof BeanDefinition) {
+			addDependencies((BeanDefinition) value, dependencies);
+		}
+		else if (value instanceof Object[]) {
+			for (Object element : (Object[]) value) {
+				addDependencies(element, dependencies);
+			}
+		}
+		else if (value instanceof Collection) {
+			for (Object element : (Collection<?>) value) {
+				addDependencies(element, dependencies);
+			}
+		}
+		else if (value instanceof Map) {
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				addDependencies(entry.getKey(), dependencies);
+				addDependencies(entry.getValue(), dependencies);
+			}
+		}
+	}
+
+	/**
+	 * Determine the constructor or factory method of the given bean whose
+	 * parameters are autowired, if it can be uniquely identified upfront.
+	 */
+	@Nullable
+	private Executable determineAutowiredExecutable(String beanName, RootBeanDefinition mbd) {
+		if (mbd.hasConstructorArgumentValues()) {
+			return null;
+		}
+		if (mbd.getFactoryMethodName() != null) {
+			Method resolvedFactoryMethod = mbd.getResolvedFactoryMethod();
+			if (resolvedFactoryMethod != null) {
+				return resolvedFactoryMethod;
+			}
+			boolean isStatic = (mbd.getFactoryBeanName() == null);
+			Class<?> factoryClass = (isStatic ? this.beanFactory.resolveBeanClass(mbd, beanName) :
+					this.beanFactory.getType(mbd.getFactoryBeanName()));
+			if (factoryClass == null) {
+				return null;
+			}
+			Method candidate = null;
+			for (Method method : ReflectionUtils.getUniqueDeclaredMethods(ClassUtils.getUserClass(factoryClass))) {
+				if (Modifier.isStatic(method.getModifiers()) == isStatic && mbd.isFactoryMethod(method)) {
+					if (candidate != null) {
+						// Overloaded factory method: to be resolved at creation time
+						return null;
+					}
+					candidate = method;
+				}
+			}
+			return candidate;
+		}
+		Class<?> beanClass = this.beanFactory.resolveBeanClass(mbd, beanName);
+		if (beanClass == null) {
+			return null;
+		}
+		Constructor<?>[] ctors = this.beanFactory.determineConstructorsFromBeanPostProcessors(beanClass, beanName);
+		return (ctors != null && ctors.length == 1 ? ctors[0] : null);
+	}
+
+	private void addDependencies(MethodParameter parameter, Set<String> dependencies) {
+		ResolvableType type = ResolvableType.forMethodParameter(parameter);
+		Class<?> rawType = type.resolve();
+		if (rawType == Optional.class) {
+			type = type.getGeneric();
+			rawType = type.resolve();
+		}
+		if (rawType == null || ObjectFactory.class.isAssignableFrom(rawType) ||
+				"javax.inject.Provider".equals(rawType.getName())) {
+			// Unresolvable or lazily resolved
+			return;
+		}
+		if (rawType.isArray()) {
+			rawType = type.getComponentType().resolve();
+		}
+		else if (Collection.class.isAssignableFrom(rawType)) {
+			rawType = type.asCollection().resolveGeneric();
+		}
+		else if (Map.class.isAssignableFrom(rawType)) {
+			rawType = type.asMap().resolveGeneric(1);
+		}
+		if (rawType != null && !BeanUtils.isSimpleProperty(rawType)) {
+			for (String candidate : this.beanFactory.getBeanNamesForType(rawType, true, false)) {
+				dependencies.add(candidate);
+			}
+		}
+	}
+
+
+	/**
+	 * Resolves the strongly connected components of a dependency graph
+	 * (Tarjan's algorithm), in dependency order.
+	 */
+	private static class ComponentResolver {
+
+		private final List<Set<Integer>> dependencies;
+
+		private final int[] indexes;
+
+		private final int[] lowLinks;
+
+		private final boolean[] onStack;
+
+		private final List<Integer> stack = new ArrayList<>();
+
+		private final List<List<Integer>> components = new ArrayList<>();
+
+		private int counter = 0;
+
+		ComponentResolver(List<Set<Integer>> dependencies) {
+			this.dependencies = dependencies;
+			this.indexes = new int[dependencies.size()];
+			this.lowLinks = new int[dependencies.size()];
+			this.onStack = new boolean[dependencies.size()];
+		}
+
+		/**
+		 * Return the components, each with its nodes in ascending order, and
+		 * every component listed after all components it depends on.
+		 */
+		public List<List<Integer>> resolve() {
+			for (int node = 0; node < this.dependencies.size(); node++) {
+				if (this.indexes[node] == 0) {
+					visit(node);
+				}
+			}
+			return this.components;
+		}
+
+		private void visit(int node) {
+			this.counter++;
+			this.indexes[node] = this.counter;
+			this.lowLinks[node] = this.counter;
+			this.stack.add(node);
+			this.onStack[node] = true;
+			for (int dependency : this.dependencies.get(node)) {
+				if (this.indexes[dependency] == 0) {
+					visit(dependency);
+					this.lowLinks[node] = Math.min(this.lowLinks[node], this.lowLinks[dependency]);
+				}
+				else if (this.onStack[dependency]) {
+					this.lowLinks[node] = Math.min(this.lowLinks[node], this.indexes[dependency]);
+				}
+			}
+			if (this.lowLinks[node] == this.indexes[node]) {
+				List<Integer> component = new ArrayList<>();
+				int member;
+				do {
+					member = this.stack.remove(this.stack.size() - 1);
+					this.onStack[member] = false;
+					component.add(member);
+				}
+				while (member != node);
+				component.sort(null);
+				this.components.add(component);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.beans.PropertyAccessorGenerator.PropertyAccess;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link PropertyAccessorGenerator} and its use in {@link BeanWrapperImpl}.
+ */
+public class PropertyAccessorGeneratorTests {
+
+	@Test
+	public void generatedAccessForEligibleProperties() throws Exception {
+		Map<String, PropertyAccess> access = generate(GeneratedBean.class);
+		assertTrue(access.get("name").isReadable());
+		assertTrue(access.get("age").isReadable());
+		assertTrue(access.get("tags").isReadable());
+		assertTrue(access.get("flag").isReadable());
+		assertFalse(access.get("writeOnly").isReadable());
+		assertEquals(GeneratedBean.class, access.get("class").getValue(new GeneratedBean()));
+
+		GeneratedBean bean = new GeneratedBean();
+		access.get("name").setValue(bean, "Juergen");
+		access.get("age").setValue(bean, 42);
+		access.get("tags").setValue(bean, Arrays.asList("a", "b"));
+		access.get("writeOnly").setValue(bean, 2L);
+		access.get("fluent").setValue(bean, "x");
+		assertEquals("Juergen", access.get("name").getValue(bean));
+		assertEquals(42, access.get("age").getValue(bean));
+		assertEquals(Arrays.asList("a", "b"), access.get("tags").getValue(bean));
+		assertEquals(2L, bean.writeOnly);
+		assertEquals("x", access.get("fluent").getValue(bean));
+		assertEquals("default", access.get("flag").getValue(bean));
+	}
+
+	@Test
+	public void writableOnlyForMatchingValues() {
+		Map<String, PropertyAccess> access = generate(GeneratedBean.class);
+		assertTrue(access.get("age").isWritable(1));
+		assertFalse(access.get("age").isWritable(1L));
+		assertFalse(access.get("age").isWritable(null));
+		assertTrue(access.get("name").isWritable(null));
+		assertFalse(access.get("name").isWritable(1));
+		assertFalse(access.get("writeOnly").isWritable(1));
+	}
+
+	@Test
+	public void exceptionsWrappedLikeReflection() throws Exception {
+		Map<String, PropertyAccess> access = generate(GeneratedBean.class);
+		GeneratedBean bean = new GeneratedBean();
+		try {
+			access.get("failing").getValue(bean);
+			fail("Should have thrown InvocationTargetException");
+		}
+		catch (InvocationTargetException ex) {
+			assertTrue(ex.getTargetException() instanceof IllegalStateException);
+		}
+	}
+
+	@Test
+	public void nonPublicBeanClassUsesPublicDeclaringTypes() throws Exception {
+		Map<String, PropertyAccess> access = generate(NonPublicBean.class);
+		assertNull(access.get("value"));
+		assertEquals("default", access.get("flag").getValue(new NonPublicBean()));
+	}
+
+	@Test
+	public void beanWrapperUsesGeneratedAccessAfterThreshold() {
+		GeneratedBean bean = new GeneratedBean();
+		for (int i = 0; i < CachedIntrospectionResults.ACCESSOR_GENERATION_THRESHOLD + 1; i++) {
+			BeanWrapper bw = new BeanWrapperImpl(bean);
+			bw.setPropertyValue("age", "" + i);
+			assertEquals(i, bw.getPropertyValue("age"));
+		}
+		assertNotNull(CachedIntrospectionResults.forClass(GeneratedBean.class).getPropertyAccess(
+				new BeanWrapperImpl(bean).getPropertyDescriptor("age")));
+
+		BeanWrapper bw = new BeanWrapperImpl(bean);
+		bw.setPropertyValue("name", "Rod");
+		bw.setPropertyValue("writeOnly", 3);
+		bw.setPropertyValue("tags", new String[] {"a", "b"});
+		assertEquals("Rod", bw.getPropertyValue("name"));
+		assertEquals(3L, bean.writeOnly);
+		assertEquals(Arrays.asList("a", "b"), bw.getPropertyValue("tags"));
+
+		try {
+			bw.getPropertyValue("failing");
+			fail("Should have thrown InvalidPropertyException");
+		}
+		catch (InvalidPropertyException ex) {
+			assertTrue(ex.getCause() instanceof InvocationTargetException);
+		}
+		try {
+			bw.setPropertyValue("failing", "x");
+			fail("Should have thrown MethodInvocationException");
+		}
+		catch (MethodInvocationException ex) {
+			assertTrue(ex.getCause() instanceof IllegalStateException);
+		}
+	}
+
+
+	private static Map<String, PropertyAccess> generate(Class<?> beanClass) {
+		CachedIntrospectionResults results = CachedIntrospectionResults.forClass(beanClass);
+		return PropertyAccessorGenerator.generate(beanClass, Arrays.asList(results.getPropertyDescriptors()));
+	}
+
+
+	public interface Flagged {
+
+		default String getFlag() {
+			return "default";
+		}
+	}
+
+
+	public static class GeneratedBean implements Flagged {
+
+		private String name;
+
+		private int age;
+
+		private List<String> tags;
+
+		private long writeOnly;
+
+		private String fluent;
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getAge() {
+			return this.age;
+		}
+
+		public void setAge(int age) {
+			this.age = age;
+		}
+
+		public List<String> getTags() {
+			return this.tags;
+		}
+
+		public void setTags(List<String> tags) {
+			this.tags = tags;
+		}
+
+		public void setWriteOnly(long writeOnly) {
+			this.writeOnly = writeOnly;
+		}
+
+		public String getFluent() {
+			return this.fluent;
+		}
+
+		public GeneratedBean setFluent(String fluent) {
+			this.fluent = fluent;
+			return this;
+		}
+
+		public String getFailing() {
+			throw new IllegalStateException("getFailing");
+		}
+
+		public void setFailing(String value) {
+			throw new IllegalStateException("setFailing");
+		}
+	}
+
+
+	static class NonPublicBean implements Flagged {
+
+		public String getValue() {
+			return "value";
+		}
+	}
+
+}
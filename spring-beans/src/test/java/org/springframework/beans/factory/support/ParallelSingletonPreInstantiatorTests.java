@@ -0,0 +1,302 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans.factory.support;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.tests.sample.beans.TestBean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for parallel singleton pre-instantiation through
+ * {@link DefaultListableBeanFactory#setPreInstantiationParallelism}.
+ */
+public class ParallelSingletonPreInstantiatorTests {
+
+	private final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+
+	private final List<String> creationOrder = new CopyOnWriteArrayList<>();
+
+
+	@Test
+	public void independentSingletonsCreatedConcurrently() {
+		CountDownLatch latch = new CountDownLatch(3);
+		for (String beanName : new String[] {"a", "b", "c"}) {
+			this.beanFactory.registerBeanDefinition(beanName,
+					new RootBeanDefinition(LatchBean.class, () -> new LatchBean(latch)));
+		}
+		this.beanFactory.setPreInstantiationParallelism(3);
+		this.beanFactory.preInstantiateSingletons();
+
+		assertTrue(this.beanFactory.getBean("a", LatchBean.class).released);
+		assertTrue(this.beanFactory.getBean("b", LatchBean.class).released);
+		assertTrue(this.beanFactory.getBean("c", LatchBean.class).released);
+	}
+
+	@Test
+	public void dependenciesCreatedFirst() {
+		RootBeanDefinition dependent = new RootBeanDefinition(RecordingBean.class);
+		dependent.getConstructorArgumentValues().addGenericArgumentValue(this.creationOrder);
+		dependent.getPropertyValues().add("dependency", new RuntimeBeanReference("dependency"));
+		this.beanFactory.registerBeanDefinition("dependent", dependent);
+		RootBeanDefinition dependsOn = new RootBeanDefinition(RecordingBean.class);
+		dependsOn.getConstructorArgumentValues().addGenericArgumentValue(this.creationOrder);
+		dependsOn.setDependsOn("dependency");
+		this.beanFactory.registerBeanDefinition("dependsOn", dependsOn);
+		RootBeanDefinition dependency = new RootBeanDefinition(RecordingBean.class);
+		dependency.getConstructorArgumentValues().addGenericArgumentValue(this.creationOrder);
+		this.beanFactory.registerBeanDefinition("dependency", dependency);
+
+		this.beanFactory.setPreInstantiationParallelism(4);
+		this.beanFactory.preInstantiateSingletons();
+
+		assertEquals(3, this.creationOrder.size());
+		assertEquals("dependency", this.creationOrder.get(0));
+		assertSame(this.beanFactory.getBean("dependency"),
+				this.beanFactory.getBean("dependent", RecordingBean.class).getDependency());
+	}
+
+	@Test
+	public void circularReferences() {
+		RootBeanDefinition first = new RootBeanDefinition(TestBean.class);
+		first.getPropertyValues().add("spouse", new RuntimeBeanReference("second"));
+		this.beanFactory.registerBeanDefinition("first", first);
+		RootBeanDefinition second = new RootBeanDefinition(TestBean.class);
+		second.getPropertyValues().add("spouse", new RuntimeBeanReference("first"));
+		this.beanFactory.registerBeanDefinition("second", second);
+		this.beanFactory.registerBeanDefinition("independent", new RootBeanDefinition(TestBean.class));
+
+		this.beanFactory.setPreInstantiationParallelism(2);
+		this.beanFactory.preInstantiateSingletons();
+
+		TestBean firstBean = this.beanFactory.getBean("first", TestBean.class);
+		TestBean secondBean = this.beanFactory.getBean("second", TestBean.class);
+		assertSame(secondBean, firstBean.getSpouse());
+		assertSame(firstBean, secondBean.getSpouse());
+	}
+
+	@Test
+	public void dependencyOnSingletonInCreationByAnotherThread() {
+		CountDownLatch latch = new CountDownLatch(2);
+		this.beanFactory.registerBeanDefinition("slow",
+				new RootBeanDefinition(LatchBean.class, () -> new LatchBean(latch)));
+		this.beanFactory.registerBeanDefinition("lookup",
+				new RootBeanDefinition(LookupBean.class, () -> new LookupBean(latch, "slow")));
+
+		this.beanFactory.setPreInstantiationParallelism(2);
+		this.beanFactory.preInstantiateSingletons();
+
+		assertSame(this.beanFactory.getBean("slow"), this.beanFactory.getBean("lookup", LookupBean.class).target);
+	}
+
+	@Test
+	public void sharedDependencyOfSingletonsCreatedConcurrently() {
+		CountDownLatch latch = new CountDownLatch(2);
+		AtomicInteger instances = new AtomicInteger();
+		this.beanFactory.registerBeanDefinition("first",
+				new RootBeanDefinition(LookupBean.class, () -> new LookupBean(latch, "shared")));
+		this.beanFactory.registerBeanDefinition("second",
+				new RootBeanDefinition(LookupBean.class, () -> new LookupBean(latch, "shared")));
+		this.beanFactory.registerBeanDefinition("shared",
+				new RootBeanDefinition(SlowBean.class, () -> new SlowBean(instances)));
+		this.beanFactory.getBeanDefinition("shared").setLazyInit(true);
+
+		this.beanFactory.setPreInstantiationParallelism(2);
+		this.beanFactory.preInstantiateSingletons();
+
+		Object shared = this.beanFactory.getBean("shared");
+		assertEquals(1, instances.get());
+		assertSame(shared, this.beanFactory.getBean("first", LookupBean.class).target);
+		assertSame(shared, this.beanFactory.getBean("second", LookupBean.class).target);
+	}
+
+	@Test
+	public void circularReferenceAcrossThreads() {
+		CountDownLatch latch = new CountDownLatch(2);
+		this.beanFactory.registerBeanDefinition("first",
+				new RootBeanDefinition(LookupBean.class, () -> new LookupBean(latch, "second")));
+		this.beanFactory.registerBeanDefinition("second",
+				new RootBeanDefinition(LookupBean.class, () -> new LookupBean(latch, "first")));
+
+		this.beanFactory.setPreInstantiationParallelism(2);
+		this.beanFactory.preInstantiateSingletons();
+
+		LookupBean first = this.beanFactory.getBean("first", LookupBean.class);
+		LookupBean second = this.beanFactory.getBean("second", LookupBean.class);
+		assertSame(second, first.target);
+		assertSame(first, second.target);
+	}
+
+	@Test
+	public void smartInitializingSingletonInvokedAfterAllSingletons() {
+		this.beanFactory.registerBeanDefinition("smart", new RootBeanDefinition(SmartBean.class));
+		for (int i = 0; i < 10; i++) {
+			this.beanFactory.registerBeanDefinition("bean" + i, new RootBeanDefinition(TestBean.class));
+		}
+
+		this.beanFactory.setPreInstantiationParallelism(4);
+		this.beanFactory.preInstantiateSingletons();
+
+		assertEquals(11, this.beanFactory.getBean("smart", SmartBean.class).singletonCount);
+	}
+
+	@Test
+	public void creationFailure() {
+		this.beanFactory.registerBeanDefinition("ok", new RootBeanDefinition(TestBean.class));
+		this.beanFactory.registerBeanDefinition("failing", new RootBeanDefinition(FailingBean.class));
+		RootBeanDefinition dependent = new RootBeanDefinition(TestBean.class);
+		dependent.getPropertyValues().add("spouse", new RuntimeBeanReference("failing"));
+		this.beanFactory.registerBeanDefinition("dependent", dependent);
+		this.beanFactory.setPreInstantiationParallelism(2);
+
+		try {
+			this.beanFactory.preInstantiateSingletons();
+			fail("Should have thrown BeanCreationException");
+		}
+		catch (BeanCreationException ex) {
+			assertEquals("failing", ex.getBeanName());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidParallelism() {
+		this.beanFactory.setPreInstantiationParallelism(0);
+	}
+
+
+	static class LatchBean {
+
+		final boolean released;
+
+		LatchBean(CountDownLatch latch) {
+			latch.countDown();
+			try {
+				this.released = latch.await(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+	}
+
+
+	static class LookupBean implements BeanFactoryAware {
+
+		private final CountDownLatch latch;
+
+		private final String targetName;
+
+		Object target;
+
+		LookupBean(CountDownLatch latch, String targetName) {
+			this.latch = latch;
+			this.targetName = targetName;
+		}
+
+		@Override
+		public void setBeanFactory(BeanFactory beanFactory) {
+			this.latch.countDown();
+			try {
+				this.latch.await(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException ex) {
+				throw new IllegalStateException(ex);
+			}
+			this.target = beanFactory.getBean(this.targetName);
+		}
+	}
+
+
+	static class SlowBean {
+
+		SlowBean(AtomicInteger instances) {
+			instances.incrementAndGet();
+			try {
+				// Let the other thread ask for this singleton while in creation
+				Thread.sleep(100);
+			}
+			catch (InterruptedException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+	}
+
+
+	public static class RecordingBean implements BeanNameAware {
+
+		private final List<String> creationOrder;
+
+		private Object dependency;
+
+		public RecordingBean(List<String> creationOrder) {
+			this.creationOrder = creationOrder;
+		}
+
+		public void setDependency(Object dependency) {
+			this.dependency = dependency;
+		}
+
+		public Object getDependency() {
+			return this.dependency;
+		}
+
+		@Override
+		public void setBeanName(String name) {
+			this.creationOrder.add(name);
+		}
+	}
+
+
+	public static class SmartBean implements SmartInitializingSingleton, BeanFactoryAware {
+
+		private DefaultListableBeanFactory beanFactory;
+
+		int singletonCount;
+
+		@Override
+		public void setBeanFactory(BeanFactory beanFactory) {
+			this.beanFactory = (DefaultListableBeanFactory) beanFactory;
+		}
+
+		@Override
+		public void afterSingletonsInstantiated() {
+			this.singletonCount = this.beanFactory.getSingletonCount();
+		}
+	}
+
+
+	public static class FailingBean {
+
+		public FailingBean() {
+			throw new IllegalStateException("Expected failure");
+		}
+	}
+
+}
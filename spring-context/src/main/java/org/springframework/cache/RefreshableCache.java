@@ -0,0 +1,61 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Extension of the {@link Cache} interface for caches that natively support
+ * refresh-ahead loading: an entry that has been written longer ago than a given
+ * threshold is still returned, while a new value is loaded in the background.
+ *
+ * <p>Used by the caching infrastructure for
+ * {@link org.springframework.cache.annotation.Cacheable#refreshAfter() refreshAfter}
+ * operations. Caches that do not implement this interface are still used for
+ * such operations, with coalesced loading on a miss but without refresh-ahead.
+ *
+ * @since 5.1
+ * @see org.springframework.cache.concurrent.BoundedConcurrentMapCache
+ */
+public interface RefreshableCache extends Cache {
+
+	/**
+	 * Return the value to which this cache maps the specified key, obtaining
+	 * that value from {@code valueLoader} if necessary, as with
+	 * {@link #get(Object, Callable)}.
+	 * <p>If the entry has been written at least {@code refreshAfter} ago,
+	 * the current value is returned and a reload of the entry is submitted
+	 * to the given {@code refreshExecutor}, invoking the {@code valueLoader}
+	 * on a different thread. Implementations should ensure that only one load
+	 * per key is in progress at any time, and that a failed refresh keeps the
+	 * current value in place.
+	 * @param key the key whose associated value is to be returned
+	 * @param valueLoader the loader to obtain the value with on a miss or refresh
+	 * @param refreshAfter the age of an entry after which it is to be refreshed
+	 * @param refreshExecutor the executor to perform a refresh on
+	 * @return the value to which this cache maps the specified key
+	 * @throws ValueRetrievalException if the {@code valueLoader} throws an exception
+	 * while loading a missing value
+	 */
+	@Nullable
+	<T> T get(Object key, Callable<T> valueLoader, Duration refreshAfter, Executor refreshExecutor);
+
+}
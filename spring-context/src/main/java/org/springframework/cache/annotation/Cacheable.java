@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -179,4 +179,19 @@ public @interface Cacheable {
 	 */
 	boolean sync() default false;
 
+	/**
+	 * The age in milliseconds after which a cached value is refreshed ahead of
+	 * its expiration: the cached value is still returned, while the method is
+	 * invoked asynchronously, on the refresh executor, to reload it.
+	 * <p>Implies {@link #sync()}, including its limitations, with concurrent
+	 * loads for the same key being coalesced. Refresh-ahead is only performed
+	 * if the cache is a {@link org.springframework.cache.RefreshableCache};
+	 * other caches just load the value on a miss.
+	 * <p>Default is {@code -1}, i.e. no refresh-ahead.
+	 * @since 5.1
+	 * @see org.springframework.cache.RefreshableCache
+	 * @see org.springframework.cache.interceptor.CacheAspectSupport#setRefreshExecutor
+	 */
+	long refreshAfter() default -1;
+
 }
@@ -0,0 +1,927 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.concurrent;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cache.RefreshableCache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.CacheStatistics;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * {@link org.springframework.cache.Cache} implementation based on the core JDK
+ * {@code java.util.concurrent} package, with an optional size limit, time-based
+ * expiration, weakly or softly referenced values and statistics.
+ *
+ * <p>In contrast to {@link ConcurrentMapCache}, this cache is suitable for
+ * production use with high-cardinality keys, without requiring a third-party
+ * caching library. Entries are kept in lock-striped segments: lookups are
+ * lock-free, while writes lock the segment of the key only.
+ *
+ * <p>When the {@linkplain Builder#maximumSize maximum size} is exceeded, entries
+ * are evicted according to a segmented LRU policy: new entries enter a probation
+ * region and are promoted to a protected region (80% of the capacity) on their
+ * next access, so that a scan of one-time keys only displaces other probationary
+ * entries rather than the frequently used ones. Expired entries and entries whose
+ * values have been garbage collected are removed on access and on writes, or
+ * explicitly through {@link #cleanUp()}.
+ *
+ * <p>As a {@link RefreshableCache}, entries can also be refreshed ahead of their
+ * expiration, with the current value being served until the reload completes.
+ *
+ * <p>Instances are created through {@link #builder(String)}, or dynamically
+ * through {@link BoundedConcurrentMapCacheManager}.
+ *
+ * @since 5.1
+ * @see BoundedConcurrentMapCacheManager
+ */
+public class BoundedConcurrentMapCache extends AbstractValueAdaptingCache implements RefreshableCache {
+
+	/** The percentage of the capacity of a segment reserved for protected entries */
+	private static final int PROTECTED_PERCENTAGE = 80;
+
+	/** The minimum capacity of a segment, to keep eviction reasonably accurate */
+	private static final long MIN_SEGMENT_CAPACITY = 32;
+
+	/** The maximum number of least recently used entries to check for expiration on write */
+	private static final int EXPIRATION_SWEEP_LIMIT = 8;
+
+	private static final Log logger = LogFactory.getLog(BoundedConcurrentMapCache.class);
+
+
+	private final String name;
+
+	private final long maximumSize;
+
+	private final long expireAfterWriteNanos;
+
+	private final long expireAfterAccessNanos;
+
+	private final ValueStrength valueStrength;
+
+	private final LongSupplier ticker;
+
+	@Nullable
+	private final StatisticsCounter statistics;
+
+	private final ConcurrentMap<Object, Node> store = new ConcurrentHashMap<>(256);
+
+	private final ConcurrentMap<Object, Load> loads = new ConcurrentHashMap<>(16);
+
+	private final Segment[] segments;
+
+	@Nullable
+	private final ReferenceQueue<Object> referenceQueue;
+
+
+	private BoundedConcurrentMapCache(Builder builder) {
+		super(builder.allowNullValues);
+		this.name = builder.name;
+		this.maximumSize = builder.maximumSize;
+		this.expireAfterWriteNanos = (builder.expireAfterWrite != null ? builder.expireAfterWrite.toNanos() : 0);
+		this.expireAfterAccessNanos = (builder.expireAfterAccess != null ? builder.expireAfterAccess.toNanos() : 0);
+		this.valueStrength = builder.valueStrength;
+		this.ticker = builder.ticker;
+		this.statistics = (builder.recordStatistics ? new StatisticsCounter() : null);
+		this.segments = createSegments(builder.maximumSize, builder.concurrencyLevel);
+		this.referenceQueue = (this.valueStrength != ValueStrength.STRONG ? new ReferenceQueue<>() : null);
+	}
+
+	private static Segment[] createSegments(long maximumSize, int concurrencyLevel) {
+		int segmentCount = 1;
+		while (segmentCount < concurrencyLevel &&
+				(maximumSize < 0 || segmentCount * 2 * MIN_SEGMENT_CAPACITY <= maximumSize)) {
+			segmentCount <<= 1;
+		}
+		Segment[] segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			long capacity = (maximumSize < 0 ? Long.MAX_VALUE :
+					maximumSize / segmentCount + (i < maximumSize % segmentCount ? 1 : 0));
+			segments[i] = new Segment(capacity);
+		}
+		return segments;
+	}
+
+
+	/**
+	 * Return a builder for a cache with the given name.
+	 * @param name the name of the cache
+	 * @return the builder
+	 */
+	public static Builder builder(String name) {
+		return new Builder(name);
+	}
+
+
+	@Override
+	public final String getName() {
+		return this.name;
+	}
+
+	/**
+	 * This implementation returns the cache itself.
+	 */
+	@Override
+	public final Object getNativeCache() {
+		return this;
+	}
+
+	/**
+	 * Return the maximum number of entries, or {@code -1} if unbounded.
+	 */
+	public final long getMaximumSize() {
+		return this.maximumSize;
+	}
+
+	/**
+	 * Return the approximate number of entries in this cache,
+	 * possibly including entries that are expired but not removed yet.
+	 */
+	public long estimatedSize() {
+		return this.store.size();
+	}
+
+	/**
+	 * Return a snapshot of the statistics of this cache, or
+	 * {@link CacheStatistics#EMPTY} if statistics are not recorded.
+	 * @see Builder#recordStatistics()
+	 */
+	public CacheStatistics getStatistics() {
+		return (this.statistics != null ? this.statistics.snapshot() : CacheStatistics.EMPTY);
+	}
+
+	@Override
+	@Nullable
+	protected Object lookup(Object key) {
+		Node node = this.store.get(key);
+		if (node != null) {
+			long now = this.ticker.getAsLong();
+			Object storeValue = node.getValue();
+			if (storeValue != null && !isExpired(node, now)) {
+				recordAccess(node, now);
+				if (this.statistics != null) {
+					this.statistics.hits.increment();
+				}
+				return storeValue;
+			}
+			removeStale(node);
+		}
+		if (this.statistics != null) {
+			this.statistics.misses.increment();
+		}
+		return null;
+	}
+
+	/**
+	 * This implementation loads the value at most once per key at any time:
+	 * concurrent callers for the same key wait for the ongoing load, while
+	 * callers for other keys are not blocked. A value loader asking for the
+	 * key that it is loading fails with an {@link IllegalStateException},
+	 * rather than waiting for itself.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	@Nullable
+	public <T> T get(Object key, Callable<T> valueLoader) {
+		Object storeValue = lookup(key);
+		if (storeValue != null) {
+			return (T) fromStoreValue(storeValue);
+		}
+		Load load = new Load(Thread.currentThread());
+		Load existingLoad = this.loads.putIfAbsent(key, load);
+		if (existingLoad != null) {
+			if (existingLoad.loadingThread == Thread.currentThread()) {
+				throw new IllegalStateException("Recursive load of key '" + key + "' in cache '" + this.name + "'");
+			}
+			try {
+				return (T) fromStoreValue(existingLoad.join());
+			}
+			catch (CompletionException ex) {
+				throw new ValueRetrievalException(key, valueLoader, ex.getCause());
+			}
+		}
+		try {
+			// Loaded by another thread in the meantime?
+			storeValue = getStoreValue(key);
+			if (storeValue == null) {
+				storeValue = load(key, valueLoader);
+				put(key, storeValue, false);
+			}
+			load.complete(storeValue);
+			return (T) fromStoreValue(storeValue);
+		}
+		catch (RuntimeException | Error ex) {
+			load.completeExceptionally(ex instanceof ValueRetrievalException ? ex.getCause() : ex);
+			throw ex;
+		}
+		finally {
+			this.loads.remove(key, load);
+		}
+	}
+
+	/**
+	 * This implementation refreshes an entry at most once at any time, with
+	 * concurrent misses for the same key waiting for the ongoing refresh.
+	 * A failed refresh is logged and retried on the next access.
+	 */
+	@Override
+	@Nullable
+	public <T> T get(Object key, Callable<T> valueLoader, Duration refreshAfter, Executor refreshExecutor) {
+		T value = get(key, valueLoader);
+		Node node = this.store.get(key);
+		if (node != null && this.ticker.getAsLong() - node.writeTime >= refreshAfter.toNanos()) {
+			refresh(key, valueLoader, refreshExecutor);
+		}
+		return value;
+	}
+
+	private void refresh(Object key, Callable<?> valueLoader, Executor refreshExecutor) {
+		Load refresh = new Load(null);
+		if (this.loads.putIfAbsent(key, refresh) != null) {
+			// Already loading or refreshing
+			return;
+		}
+		try {
+			refreshExecutor.execute(() -> {
+				refresh.loadingThread = Thread.currentThread();
+				try {
+					Object storeValue = load(key, valueLoader);
+					put(key, storeValue, false);
+					refresh.complete(storeValue);
+				}
+				catch (Throwable ex) {
+					if (logger.isWarnEnabled()) {
+						logger.warn("Failed to refresh entry for key '" + key + "' in cache '" + this.name + "'",
+								(ex instanceof ValueRetrievalException ? ex.getCause() : ex));
+					}
+					refresh.completeExceptionally(ex instanceof ValueRetrievalException ? ex.getCause() : ex);
+				}
+				finally {
+					this.loads.remove(key, refresh);
+				}
+			});
+		}
+		catch (RejectedExecutionException ex) {
+			this.loads.remove(key, refresh);
+			refresh.completeExceptionally(ex);
+		}
+	}
+
+	private Object load(Object key, Callable<?> valueLoader) {
+		long startTime = this.ticker.getAsLong();
+		Object value;
+		try {
+			value = valueLoader.call();
+		}
+		catch (Throwable ex) {
+			if (this.statistics != null) {
+				this.statistics.loadFailures.increment();
+				this.statistics.totalLoadTime.add(this.ticker.getAsLong() - startTime);
+			}
+			throw new ValueRetrievalException(key, valueLoader, ex);
+		}
+		if (this.statistics != null) {
+			this.statistics.loadSuccesses.increment();
+			this.statistics.totalLoadTime.add(this.ticker.getAsLong() - startTime);
+		}
+		return toStoreValue(value);
+	}
+
+	@Override
+	public void put(Object key, @Nullable Object value) {
+		put(key, toStoreValue(value), false);
+	}
+
+	@Override
+	@Nullable
+	public ValueWrapper putIfAbsent(Object key, @Nullable Object value) {
+		return toValueWrapper(put(key, toStoreValue(value), true));
+	}
+
+	/**
+	 * Store the given value under the given key.
+	 * @param key the key
+	 * @param storeValue the value to store
+	 * @param onlyIfAbsent whether to keep a current value, if any
+	 * @return the current value if kept, or {@code null} if the given value was stored
+	 */
+	@Nullable
+	private Object put(Object key, Object storeValue, boolean onlyIfAbsent) {
+		Segment segment = segmentFor(key);
+		segment.lock();
+		try {
+			long now = this.ticker.getAsLong();
+			Node node = this.store.get(key);
+			if (node != null) {
+				Object currentValue = node.getValue();
+				if (currentValue != null && !isExpired(node, now)) {
+					if (onlyIfAbsent) {
+						node.accessTime = now;
+						segment.onAccess(node);
+						return currentValue;
+					}
+				}
+				else {
+					segment.remove(node, this.store, this.statistics);
+					node = null;
+				}
+			}
+			if (node != null) {
+				node.setValue(storeValue, this.valueStrength, this.referenceQueue);
+				node.writeTime = now;
+				node.accessTime = now;
+				segment.onAccess(node);
+			}
+			else {
+				node = new Node(key);
+				node.setValue(storeValue, this.valueStrength, this.referenceQueue);
+				node.writeTime = now;
+				node.accessTime = now;
+				this.store.put(key, node);
+				segment.add(node, this.store, this.statistics);
+			}
+			expireEntries(segment, now);
+		}
+		finally {
+			segment.unlock();
+		}
+		drainReferenceQueue();
+		return null;
+	}
+
+	@Override
+	public void evict(Object key) {
+		Segment segment = segmentFor(key);
+		segment.lock();
+		try {
+			Node node = this.store.get(key);
+			if (node != null) {
+				segment.unlink(node, this.store);
+			}
+		}
+		finally {
+			segment.unlock();
+		}
+	}
+
+	@Override
+	public void clear() {
+		for (Segment segment : this.segments) {
+			segment.lock();
+			try {
+				segment.clear(this.store);
+			}
+			finally {
+				segment.unlock();
+			}
+		}
+		drainReferenceQueue();
+	}
+
+	/**
+	 * Remove all expired entries and all entries whose values have been garbage
+	 * collected right away, rather than on subsequent access or writes.
+	 */
+	public void cleanUp() {
+		long now = this.ticker.getAsLong();
+		for (Segment segment : this.segments) {
+			segment.lock();
+			try {
+				segment.removeStale(node -> (node.getValue() == null || isExpired(node, now)),
+						Long.MAX_VALUE, this.store, this.statistics);
+			}
+			finally {
+				segment.unlock();
+			}
+		}
+		drainReferenceQueue();
+	}
+
+
+	@Nullable
+	private Object getStoreValue(Object key) {
+		Node node = this.store.get(key);
+		if (node != null) {
+			Object storeValue = node.getValue();
+			if (storeValue != null && !isExpired(node, this.ticker.getAsLong())) {
+				return storeValue;
+			}
+		}
+		return null;
+	}
+
+	private Segment segmentFor(Object key) {
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return this.segments[hash & (this.segments.length - 1)];
+	}
+
+	private boolean isExpired(Node node, long now) {
+		return ((this.expireAfterWriteNanos > 0 && now - node.writeTime >= this.expireAfterWriteNanos) ||
+				(this.expireAfterAccessNanos > 0 && now - node.accessTime >= this.expireAfterAccessNanos));
+	}
+
+	private void recordAccess(Node node, long now) {
+		if (this.expireAfterAccessNanos > 0) {
+			node.accessTime = now;
+		}
+		Segment segment = segmentFor(node.key);
+		// Reordering is best effort: never block a lookup on a concurrent write
+		if (segment.tryLock()) {
+			try {
+				segment.onAccess(node);
+			}
+			finally {
+				segment.unlock();
+			}
+		}
+	}
+
+	private void removeStale(Node node) {
+		Segment segment = segmentFor(node.key);
+		segment.lock();
+		try {
+			if (node.list != null && (node.getValue() == null || isExpired(node, this.ticker.getAsLong()))) {
+				segment.remove(node, this.store, this.statistics);
+			}
+		}
+		finally {
+			segment.unlock();
+		}
+	}
+
+	private void expireEntries(Segment segment, long now) {
+		if (this.expireAfterWriteNanos > 0 || this.expireAfterAccessNanos > 0) {
+			segment.removeStale(node -> isExpired(node, now), EXPIRATION_SWEEP_LIMIT, this.store, this.statistics);
+		}
+	}
+
+	private void drainReferenceQueue() {
+		if (this.referenceQueue == null) {
+			return;
+		}
+		Reference<?> reference;
+		while ((reference = this.referenceQueue.poll()) != null) {
+			Node node = ((ValueReference) reference).getNode();
+			Segment segment = segmentFor(node.key);
+			segment.lock();
+			try {
+				if (node.list != null && node.value == reference) {
+					segment.remove(node, this.store, this.statistics);
+				}
+			}
+			finally {
+				segment.unlock();
+			}
+		}
+	}
+
+
+	/**
+	 * The strength of the references to the cached values.
+	 */
+	public enum ValueStrength {
+
+		/**
+		 * Values are strongly referenced (the default).
+		 */
+		STRONG,
+
+		/**
+		 * Values are weakly referenced, and thus removed from the cache
+		 * as soon as they are not referenced elsewhere anymore.
+		 */
+		WEAK,
+
+		/**
+		 * Values are softly referenced, and thus removed from the cache
+		 * in response to memory demand.
+		 */
+		SOFT
+	}
+
+
+	/**
+	 * Builder for a {@link BoundedConcurrentMapCache}.
+	 */
+	public static final class Builder {
+
+		private final String name;
+
+		private long maximumSize = -1;
+
+		@Nullable
+		private Duration expireAfterWrite;
+
+		@Nullable
+		private Duration expireAfterAccess;
+
+		private ValueStrength valueStrength = ValueStrength.STRONG;
+
+		private boolean allowNullValues = true;
+
+		private boolean recordStatistics = false;
+
+		private int concurrencyLevel = 16;
+
+		private LongSupplier ticker = System::nanoTime;
+
+		private Builder(String name) {
+			Assert.notNull(name, "Name must not be null");
+			this.name = name;
+		}
+
+		/**
+		 * Specify the maximum number of entries, evicting entries according to a
+		 * segmented LRU policy once exceeded.
+		 * <p>Default is {@code -1}, i.e. no size limit.
+		 */
+		public Builder maximumSize(long maximumSize) {
+			Assert.isTrue(maximumSize >= -1, "Maximum size must be -1 (unbounded) or a non-negative number");
+			this.maximumSize = maximumSize;
+			return this;
+		}
+
+		/**
+		 * Specify the time after which an entry expires once written.
+		 * <p>Default is {@code null}, i.e. no expiration after write.
+		 */
+		public Builder expireAfterWrite(@Nullable Duration expireAfterWrite) {
+			Assert.isTrue(expireAfterWrite == null || !expireAfterWrite.isNegative(),
+					"Expiration must not be negative");
+			this.expireAfterWrite = (expireAfterWrite != null && !expireAfterWrite.isZero() ? expireAfterWrite : null);
+			return this;
+		}
+
+		/**
+		 * Specify the time after which an entry expires once last written or read.
+		 * <p>Default is {@code null}, i.e. no expiration after access.
+		 */
+		public Builder expireAfterAccess(@Nullable Duration expireAfterAccess) {
+			Assert.isTrue(expireAfterAccess == null || !expireAfterAccess.isNegative(),
+					"Expiration must not be negative");
+			this.expireAfterAccess = (expireAfterAccess != null && !expireAfterAccess.isZero() ? expireAfterAccess : null);
+			return this;
+		}
+
+		/**
+		 * Specify the strength of the references to the cached values.
+		 * <p>Default is {@link ValueStrength#STRONG}.
+		 */
+		public Builder valueStrength(ValueStrength valueStrength) {
+			Assert.notNull(valueStrength, "ValueStrength must not be null");
+			this.valueStrength = valueStrength;
+			return this;
+		}
+
+		/**
+		 * Specify whether to accept and convert {@code null} values.
+		 * <p>Default is "true".
+		 */
+		public Builder allowNullValues(boolean allowNullValues) {
+			this.allowNullValues = allowNullValues;
+			return this;
+		}
+
+		/**
+		 * Record hit, miss, load and eviction statistics.
+		 * @see BoundedConcurrentMapCache#getStatistics()
+		 */
+		public Builder recordStatistics() {
+			this.recordStatistics = true;
+			return this;
+		}
+
+		/**
+		 * Specify the expected number of concurrently writing threads,
+		 * used as a hint for the number of lock-striped segments.
+		 * <p>Default is 16. Note that small caches use fewer segments
+		 * in order to keep size-based eviction accurate.
+		 */
+		public Builder concurrencyLevel(int concurrencyLevel) {
+			Assert.isTrue(concurrencyLevel > 0, "Concurrency level must be greater than 0");
+			this.concurrencyLevel = concurrencyLevel;
+			return this;
+		}
+
+		/**
+		 * Specify the nanosecond time source for expiration and statistics.
+		 * <p>Default is {@link System#nanoTime()}; mainly intended for testing.
+		 */
+		Builder ticker(LongSupplier ticker) {
+			this.ticker = ticker;
+			return this;
+		}
+
+		/**
+		 * Build the cache.
+		 */
+		public BoundedConcurrentMapCache build() {
+			return new BoundedConcurrentMapCache(this);
+		}
+	}
+
+
+	/**
+	 * A lock-striped segment of the cache, maintaining the probation and the
+	 * protected region of its entries in access order.
+	 */
+	@SuppressWarnings("serial")
+	private static final class Segment extends ReentrantLock {
+
+		private final long capacity;
+
+		private final long protectedCapacity;
+
+		private final NodeList probation = new NodeList();
+
+		private final NodeList protectedRegion = new NodeList();
+
+		Segment(long capacity) {
+			this.capacity = capacity;
+			this.protectedCapacity = (capacity == Long.MAX_VALUE ? capacity : capacity * PROTECTED_PERCENTAGE / 100);
+		}
+
+		void add(Node node, ConcurrentMap<Object, Node> store, @Nullable StatisticsCounter statistics) {
+			this.probation.addFirst(node);
+			while (this.probation.size + this.protectedRegion.size > this.capacity) {
+				Node victim = this.probation.last();
+				if (victim == null) {
+					victim = this.protectedRegion.last();
+				}
+				Assert.state(victim != null, "No entry to evict");
+				remove(victim, store, statistics);
+			}
+		}
+
+		void onAccess(Node node) {
+			if (node.list == this.probation) {
+				this.probation.remove(node);
+				this.protectedRegion.addFirst(node);
+				while (this.protectedRegion.size > this.protectedCapacity) {
+					Node demoted = this.protectedRegion.last();
+					Assert.state(demoted != null, "No entry to demote");
+					this.protectedRegion.remove(demoted);
+					this.probation.addFirst(demoted);
+				}
+			}
+			else if (node.list == this.protectedRegion) {
+				this.protectedRegion.remove(node);
+				this.protectedRegion.addFirst(node);
+			}
+		}
+
+		/**
+		 * Remove the given entry on behalf of the cache itself.
+		 */
+		void remove(Node node, ConcurrentMap<Object, Node> store, @Nullable StatisticsCounter statistics) {
+			unlink(node, store);
+			if (statistics != null) {
+				statistics.evictions.increment();
+			}
+		}
+
+		void unlink(Node node, ConcurrentMap<Object, Node> store) {
+			store.remove(node.key, node);
+			if (node.list != null) {
+				node.list.remove(node);
+			}
+		}
+
+		/**
+		 * Remove stale entries, starting from the least recently used ones.
+		 */
+		void removeStale(Predicate<Node> stale, long limit,
+				ConcurrentMap<Object, Node> store, @Nullable StatisticsCounter statistics) {
+
+			for (NodeList list : new NodeList[] {this.probation, this.protectedRegion}) {
+				long checked = 0;
+				Node node = list.last();
+				while (node != null && checked < limit) {
+					Node previous = list.previous(node);
+					if (stale.test(node)) {
+						remove(node, store, statistics);
+					}
+					node = previous;
+					checked++;
+				}
+			}
+		}
+
+		void clear(ConcurrentMap<Object, Node> store) {
+			for (NodeList list : new NodeList[] {this.probation, this.protectedRegion}) {
+				Node node;
+				while ((node = list.last()) != null) {
+					unlink(node, store);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Doubly-linked list of entries in access order, most recent first.
+	 * To be accessed with the lock of the owning segment held.
+	 */
+	private static final class NodeList {
+
+		private final Node head = new Node(this);
+
+		long size;
+
+		NodeList() {
+			this.head.previous = this.head;
+			this.head.next = this.head;
+		}
+
+		void addFirst(Node node) {
+			node.next = this.head.next;
+			node.previous = this.head;
+			this.head.next.previous = node;
+			this.head.next = node;
+			node.list = this;
+			this.size++;
+		}
+
+		void remove(Node node) {
+			node.previous.next = node.next;
+			node.next.previous = node.previous;
+			node.previous = null;
+			node.next = null;
+			node.list = null;
+			this.size--;
+		}
+
+		@Nullable
+		Node last() {
+			return (this.head.previous != this.head ? this.head.previous : null);
+		}
+
+		@Nullable
+		Node previous(Node node) {
+			return (node.previous != this.head ? node.previous : null);
+		}
+	}
+
+
+	/**
+	 * A cache entry.
+	 */
+	private static final class Node {
+
+		final Object key;
+
+		/** The store value, or a {@link ValueReference} to it */
+		volatile Object value;
+
+		volatile long writeTime;
+
+		volatile long accessTime;
+
+		/** The list containing this entry, or {@code null} once removed; guarded by the segment lock */
+		@Nullable
+		NodeList list;
+
+		Node previous;
+
+		Node next;
+
+		Node(Object key) {
+			this.key = key;
+		}
+
+		// Sentinel node
+		Node(NodeList list) {
+			this.key = list;
+			this.list = list;
+		}
+
+		@Nullable
+		Object getValue() {
+			Object value = this.value;
+			return (value instanceof ValueReference ? ((Reference<?>) value).get() : value);
+		}
+
+		void setValue(Object storeValue, ValueStrength strength, @Nullable ReferenceQueue<Object> queue) {
+			if (strength == ValueStrength.WEAK) {
+				this.value = new WeakValueReference(storeValue, queue, this);
+			}
+			else if (strength == ValueStrength.SOFT) {
+				this.value = new SoftValueReference(storeValue, queue, this);
+			}
+			else {
+				this.value = storeValue;
+			}
+		}
+	}
+
+
+	private interface ValueReference {
+
+		Node getNode();
+	}
+
+
+	private static final class WeakValueReference extends WeakReference<Object> implements ValueReference {
+
+		private final Node node;
+
+		WeakValueReference(Object value, @Nullable ReferenceQueue<Object> queue, Node node) {
+			super(value, queue);
+			this.node = node;
+		}
+
+		@Override
+		public Node getNode() {
+			return this.node;
+		}
+	}
+
+
+	private static final class SoftValueReference extends SoftReference<Object> implements ValueReference {
+
+		private final Node node;
+
+		SoftValueReference(Object value, @Nullable ReferenceQueue<Object> queue, Node node) {
+			super(value, queue);
+			this.node = node;
+		}
+
+		@Override
+		public Node getNode() {
+			return this.node;
+		}
+	}
+
+
+	private static final class StatisticsCounter {
+
+		final LongAdder hits = new LongAdder();
+
+		final LongAdder misses = new LongAdder();
+
+		final LongAdder loadSuccesses = new LongAdder();
+
+		final LongAdder loadFailures = new LongAdder();
+
+		final LongAdder totalLoadTime = new LongAdder();
+
+		final LongAdder evictions = new LongAdder();
+
+		CacheStatistics snapshot() {
+			return new CacheStatistics(this.hits.sum(), this.misses.sum(), this.loadSuccesses.sum(),
+					this.loadFailures.sum(), this.totalLoadTime.sum(), this.evictions.sum());
+		}
+	}
+
+
+
+	/**
+	 * An ongoing load or refresh of an entry, for concurrent callers to wait for.
+	 */
+	private static final class Load extends CompletableFuture<Object> {
+
+		/* The thread invoking the value loader, if started */
+		@Nullable
+		volatile Thread loadingThread;
+
+		Load(@Nullable Thread loadingThread) {
+			this.loadingThread = loadingThread;
+		}
+	}
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.concurrent;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.CacheStatistics;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * {@link CacheManager} implementation that lazily builds {@link BoundedConcurrentMapCache}
+ * instances for each {@link #getCache} request. Also supports a 'static' mode where
+ * the set of cache names is pre-defined through {@link #setCacheNames}, with no
+ * dynamic creation of further cache regions at runtime.
+ *
+ * <p>In contrast to {@link ConcurrentMapCacheManager}, the caches can be bounded
+ * in size, expire their entries and record statistics, with the configuration of
+ * this cache manager applying to all of its caches. The statistics of the caches
+ * are available through {@link #getCacheStatistics()}.
+ *
+ * @since 5.1
+ * @see BoundedConcurrentMapCache
+ */
+public class BoundedConcurrentMapCacheManager implements CacheManager {
+
+	private final ConcurrentMap<String, Cache> cacheMap = new ConcurrentHashMap<>(16);
+
+	private boolean dynamic = true;
+
+	private long maximumSize = -1;
+
+	@Nullable
+	private Duration expireAfterWrite;
+
+	@Nullable
+	private Duration expireAfterAccess;
+
+	private BoundedConcurrentMapCache.ValueStrength valueStrength = BoundedConcurrentMapCache.ValueStrength.STRONG;
+
+	private boolean recordStatistics = false;
+
+	private boolean allowNullValues = true;
+
+
+	/**
+	 * Construct a dynamic BoundedConcurrentMapCacheManager,
+	 * lazily creating cache instances as they are being requested.
+	 */
+	public BoundedConcurrentMapCacheManager() {
+	}
+
+	/**
+	 * Construct a static BoundedConcurrentMapCacheManager,
+	 * managing caches for the specified cache names only.
+	 */
+	public BoundedConcurrentMapCacheManager(String... cacheNames) {
+		setCacheNames(Arrays.asList(cacheNames));
+	}
+
+
+	/**
+	 * Specify the set of cache names for this CacheManager's 'static' mode.
+	 * <p>The number of caches and their names will be fixed after a call to this method,
+	 * with no creation of further cache regions at runtime.
+	 * <p>Calling this with a {@code null} collection argument resets the
+	 * mode to 'dynamic', allowing for further creation of caches again.
+	 */
+	public void setCacheNames(@Nullable Collection<String> cacheNames) {
+		if (cacheNames != null) {
+			for (String name : cacheNames) {
+				this.cacheMap.put(name, createBoundedConcurrentMapCache(name));
+			}
+			this.dynamic = false;
+		}
+		else {
+			this.dynamic = true;
+		}
+	}
+
+	/**
+	 * Specify the maximum number of entries of each cache.
+	 * <p>Default is {@code -1}, i.e. no size limit.
+	 * <p>Note: A change of this setting will reset all existing caches,
+	 * if any, to reconfigure them with the new size limit.
+	 * @see BoundedConcurrentMapCache.Builder#maximumSize
+	 */
+	public void setMaximumSize(long maximumSize) {
+		Assert.isTrue(maximumSize >= -1, "Maximum size must be -1 (unbounded) or a non-negative number");
+		if (maximumSize != this.maximumSize) {
+			this.maximumSize = maximumSize;
+			recreateCaches();
+		}
+	}
+
+	/**
+	 * Specify the time after which a cache entry expires once written.
+	 * <p>Default is {@code null}, i.e. no expiration after write.
+	 * <p>Note: A change of this setting will reset all existing caches,
+	 * if any, to reconfigure them with the new expiration.
+	 * @see BoundedConcurrentMapCache.Builder#expireAfterWrite
+	 */
+	public void setExpireAfterWrite(@Nullable Duration expireAfterWrite) {
+		this.expireAfterWrite = expireAfterWrite;
+		recreateCaches();
+	}
+
+	/**
+	 * Specify the time after which a cache entry expires once last written or read.
+	 * <p>Default is {@code null}, i.e. no expiration after access.
+	 * <p>Note: A change of this setting will reset all existing caches,
+	 * if any, to reconfigure them with the new expiration.
+	 * @see BoundedConcurrentMapCache.Builder#expireAfterAccess
+	 */
+	public void setExpireAfterAccess(@Nullable Duration expireAfterAccess) {
+		this.expireAfterAccess = expireAfterAccess;
+		recreateCaches();
+	}
+
+	/**
+	 * Specify the strength of the references to the cached values.
+	 * <p>Default is {@link BoundedConcurrentMapCache.ValueStrength#STRONG STRONG}.
+	 * <p>Note: A change of this setting will reset all existing caches,
+	 * if any, to reconfigure them with the new reference strength.
+	 */
+	public void setValueStrength(BoundedConcurrentMapCache.ValueStrength valueStrength) {
+		Assert.notNull(valueStrength, "ValueStrength must not be null");
+		if (valueStrength != this.valueStrength) {
+			this.valueStrength = valueStrength;
+			recreateCaches();
+		}
+	}
+
+	/**
+	 * Specify whether to record statistics for all caches.
+	 * <p>Default is "false".
+	 * <p>Note: A change of this setting will reset all existing caches,
+	 * if any, to reconfigure them with the new statistics requirement.
+	 * @see #getCacheStatistics()
+	 */
+	public void setRecordStatistics(boolean recordStatistics) {
+		if (recordStatistics != this.recordStatistics) {
+			this.recordStatistics = recordStatistics;
+			recreateCaches();
+		}
+	}
+
+	/**
+	 * Specify whether to accept and convert {@code null} values for all caches
+	 * in this cache manager.
+	 * <p>Default is "true". An internal holder object will be used to store
+	 * user-level {@code null}s.
+	 * <p>Note: A change of the null-value setting will reset all existing caches,
+	 * if any, to reconfigure them with the new null-value requirement.
+	 */
+	public void setAllowNullValues(boolean allowNullValues) {
+		if (allowNullValues != this.allowNullValues) {
+			this.allowNullValues = allowNullValues;
+			recreateCaches();
+		}
+	}
+
+	/**
+	 * Return whether this cache manager accepts and converts {@code null} values
+	 * for all of its caches.
+	 */
+	public boolean isAllowNullValues() {
+		return this.allowNullValues;
+	}
+
+
+	@Override
+	public Collection<String> getCacheNames() {
+		return Collections.unmodifiableSet(this.cacheMap.keySet());
+	}
+
+	@Override
+	@Nullable
+	public Cache getCache(String name) {
+		Cache cache = this.cacheMap.get(name);
+		if (cache == null && this.dynamic) {
+			synchronized (this.cacheMap) {
+				cache = this.cacheMap.get(name);
+				if (cache == null) {
+					cache = createBoundedConcurrentMapCache(name);
+					this.cacheMap.put(name, cache);
+				}
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Return the statistics of the specified cache.
+	 * @param name the name of the cache
+	 * @return the statistics, or {@code null} if no such cache exists
+	 * (or if it is not a {@link BoundedConcurrentMapCache})
+	 * @see #setRecordStatistics
+	 */
+	@Nullable
+	public CacheStatistics getCacheStatistics(String name) {
+		Cache cache = this.cacheMap.get(name);
+		return (cache instanceof BoundedConcurrentMapCache ? ((BoundedConcurrentMapCache) cache).getStatistics() : null);
+	}
+
+	/**
+	 * Return the statistics of all caches of this cache manager.
+	 * @return a Map with the cache names as keys and the statistics as values
+	 * @see #setRecordStatistics
+	 */
+	public Map<String, CacheStatistics> getCacheStatistics() {
+		Map<String, CacheStatistics> statistics = new LinkedHashMap<>(this.cacheMap.size());
+		for (Map.Entry<String, Cache> entry : this.cacheMap.entrySet()) {
+			if (entry.getValue() instanceof BoundedConcurrentMapCache) {
+				statistics.put(entry.getKey(), ((BoundedConcurrentMapCache) entry.getValue()).getStatistics());
+			}
+		}
+		return statistics;
+	}
+
+	private void recreateCaches() {
+		for (Map.Entry<String, Cache> entry : this.cacheMap.entrySet()) {
+			entry.setValue(createBoundedConcurrentMapCache(entry.getKey()));
+		}
+	}
+
+	/**
+	 * Create a new BoundedConcurrentMapCache instance for the specified cache name.
+	 * @param name the name of the cache
+	 * @return the BoundedConcurrentMapCache (or a decorator thereof)
+	 */
+	protected Cache createBoundedConcurrentMapCache(String name) {
+		BoundedConcurrentMapCache.Builder builder = BoundedConcurrentMapCache.builder(name)
+				.maximumSize(this.maximumSize)
+				.expireAfterWrite(this.expireAfterWrite)
+				.expireAfterAccess(this.expireAfterAccess)
+				.valueStrength(this.valueStrength)
+				.allowNullValues(this.allowNullValues);
+		if (this.recordStatistics) {
+			builder.recordStatistics();
+		}
+		return builder.build();
+	}
+
+}
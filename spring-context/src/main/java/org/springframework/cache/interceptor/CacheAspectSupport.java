@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,9 @@
 
 package org.springframework.cache.interceptor;
 
+import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -24,10 +26,20 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import org.springframework.aop.framework.AopProxyUtils;
 import org.springframework.beans.factory.BeanFactory;
@@ -39,7 +51,11 @@ import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.BeanFactoryAnnotationUtils;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.RefreshableCache;
 import org.springframework.context.expression.AnnotatedElementKey;
+import org.springframework.core.ReactiveAdapter;
+import org.springframework.core.ReactiveAdapterRegistry;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
@@ -68,6 +84,18 @@ import org.springframework.util.StringUtils;
  * <p>A cache aspect is serializable if its {@code CacheResolver} and
  * {@code CacheOperationSource} are serializable.
  *
+ * <p>Synchronized {@code @Cacheable} operations coalesce concurrent loads for
+ * the same key in the same cache, independent of the cache provider, and may
+ * refresh cached values ahead of their expiration if the cache is a
+ * {@link RefreshableCache}.
+ *
+ * <p>For methods returning a {@link CompletableFuture} or a reactive type
+ * supported by the {@link ReactiveAdapterRegistry}, such as {@code Mono} and
+ * {@code Flux}, the emitted result is cached rather than the returned instance:
+ * a cache hit is returned as a completed future or publisher of the cached value,
+ * while on a miss the result is cached once available. Multi-value results are
+ * cached as a list of their elements.
+ *
  * @author Costin Leau
  * @author Juergen Hoeller
  * @author Chris Beams
@@ -79,12 +107,29 @@ import org.springframework.util.StringUtils;
 public abstract class CacheAspectSupport extends AbstractCacheInvoker
 		implements BeanFactoryAware, InitializingBean, SmartInitializingSingleton {
 
+	/**
+	 * The maximum number of concurrent refreshes on the default refresh executor.
+	 * @since 5.1
+	 * @see #setRefreshExecutor
+	 */
+	public static final int DEFAULT_REFRESH_CONCURRENCY_LIMIT = 8;
+
+	private static final boolean reactorPresent = ClassUtils.isPresent(
+			"reactor.core.publisher.Flux", CacheAspectSupport.class.getClassLoader());
+
 	protected final Log logger = LogFactory.getLog(getClass());
 
 	private final Map<CacheOperationCacheKey, CacheOperationMetadata> metadataCache = new ConcurrentHashMap<>(1024);
 
 	private final CacheOperationExpressionEvaluator evaluator = new CacheOperationExpressionEvaluator();
 
+	private final ConcurrentMap<SimpleKey, PendingLoad> pendingLoads = new ConcurrentHashMap<>(64);
+
+	private final ConcurrentMap<SimpleKey, CompletableFuture<Object>> pendingAsyncResults = new ConcurrentHashMap<>(64);
+
+	@Nullable
+	private final ReactiveCachingHandler reactiveCachingHandler = (reactorPresent ? new ReactiveCachingHandler() : null);
+
 	@Nullable
 	private CacheOperationSource cacheOperationSource;
 
@@ -93,6 +138,10 @@ public abstract class CacheAspectSupport extends AbstractCacheInvoker
 	@Nullable
 	private CacheResolver cacheResolver;
 
+	private Executor refreshExecutor = new DefaultRefreshExecutor();
+
+	private int maxCachedElements = 1000;
+
 	@Nullable
 	private BeanFactory beanFactory;
 
@@ -164,6 +213,49 @@ public abstract class CacheAspectSupport extends AbstractCacheInvoker
 		return this.cacheResolver;
 	}
 
+	/**
+	 * Set the {@link Executor} to refresh cached values on, for operations that
+	 * specify a {@link CacheableOperation#getRefreshAfter() refreshAfter} age.
+	 * <p>The default refreshes values in the background, on a new daemon thread
+	 * per refresh, with at most {@value #DEFAULT_REFRESH_CONCURRENCY_LIMIT}
+	 * concurrent refreshes: any further refresh is rejected rather than blocking
+	 * the calling thread, and attempted again on a later access to the entry.
+	 * @since 5.1
+	 * @see RefreshableCache
+	 */
+	public void setRefreshExecutor(Executor refreshExecutor) {
+		Assert.notNull(refreshExecutor, "Executor must not be null");
+		this.refreshExecutor = refreshExecutor;
+	}
+
+	/**
+	 * Return the {@link Executor} that this cache aspect refreshes cached values on.
+	 * @since 5.1
+	 */
+	public Executor getRefreshExecutor() {
+		return this.refreshExecutor;
+	}
+
+	/**
+	 * Set the maximum number of elements of a multi-value reactive result, such as
+	 * a {@code Flux}, to cache as a list. Results with more elements are passed
+	 * through without being cached.
+	 * <p>The default is 1000.
+	 * @since 5.1
+	 */
+	public void setMaxCachedElements(int maxCachedElements) {
+		Assert.isTrue(maxCachedElements >= 0, "'maxCachedElements' must not be negative");
+		this.maxCachedElements = maxCachedElements;
+	}
+
+	/**
+	 * Return the maximum number of elements of a multi-value reactive result to cache.
+	 * @since 5.1
+	 */
+	public int getMaxCachedElements() {
+		return this.maxCachedElements;
+	}
+
 	/**
 	 * Set the containing {@link BeanFactory} for {@link CacheManager} and other
 	 * service lookups.
@@ -348,10 +440,18 @@ public abstract class CacheAspectSupport extends AbstractCacheInvoker
 			if (isConditionPassing(context, CacheOperationExpressionEvaluator.NO_RESULT)) {
 				Object key = generateKey(context, CacheOperationExpressionEvaluator.NO_RESULT);
 				Cache cache = context.getCaches().iterator().next();
+				if (isAsyncResultType(method)) {
+					return executeSynchronizedAsync(invoker, method, cache, key);
+				}
+				long refreshAfter = ((CacheableOperation) context.metadata.operation).getRefreshAfter();
 				try {
-					return wrapCacheValue(method, cache.get(key, () -> {
-						return unwrapReturnValue(invokeOperation(invoker));
-					}));
+					if (refreshAfter > 0 && cache instanceof RefreshableCache) {
+						CacheOperationInvoker refreshInvoker = invoker.forLaterInvocation();
+						return wrapCacheValue(method, ((RefreshableCache) cache).get(key,
+								() -> unwrapReturnValue(invokeOperation(refreshInvoker)),
+								Duration.ofMillis(refreshAfter), this.refreshExecutor));
+					}
+					return wrapCacheValue(method, getSynchronized(cache, key, invoker));
 				}
 				catch (Cache.ValueRetrievalException ex) {
 					// The invoker wraps any Throwable in a ThrowableWrapper instance so we
@@ -391,9 +491,21 @@ public abstract class CacheAspectSupport extends AbstractCacheInvoker
 		else {
 			// Invoke the method if we don't have a cache hit
 			returnValue = invokeOperation(invoker);
+			if (returnValue != null && isAsyncResultType(method)) {
+				// Process the remaining operations once the result is available
+				return decorateAsyncResult(method, returnValue,
+						result -> processCachePuts(contexts, cachePutRequests, result));
+			}
 			cacheValue = unwrapReturnValue(returnValue);
 		}
 
+		processCachePuts(contexts, cachePutRequests, cacheValue);
+		return returnValue;
+	}
+
+	private void processCachePuts(CacheOperationContexts contexts,
+			List<CachePutRequest> cachePutRequests, @Nullable Object cacheValue) {
+
 		// Collect any explicit @CachePuts
 		collectPutRequests(contexts.get(CachePutOperation.class), cacheValue, cachePutRequests);
 
@@ -404,8 +516,149 @@ public abstract class CacheAspectSupport extends AbstractCacheInvoker
 
 		// Process any late evictions
 		processCacheEvicts(contexts.get(CacheEvictOperation.class), false, cacheValue);
+	}
 
-		return returnValue;
+	/**
+	 * Determine whether the given method returns a {@link CompletableFuture} or a
+	 * reactive type, for which the asynchronously emitted result is to be cached.
+	 */
+	private boolean isAsyncResultType(Method method) {
+		Class<?> returnType = method.getReturnType();
+		return (returnType == CompletableFuture.class ||
+				(this.reactiveCachingHandler != null && this.reactiveCachingHandler.getAdapter(returnType) != null));
+	}
+
+	/**
+	 * Decorate the given asynchronous result so that the given callback is invoked
+	 * with the value to cache once the result is available.
+	 */
+	private Object decorateAsyncResult(Method method, Object returnValue, Consumer<Object> resultCallback) {
+		if (returnValue instanceof CompletableFuture) {
+			return ((CompletableFuture<?>) returnValue).thenApply(result -> {
+				resultCallback.accept(result);
+				return result;
+			});
+		}
+		Assert.state(this.reactiveCachingHandler != null, "No reactive support");
+		return this.reactiveCachingHandler.decorateResult(method.getReturnType(), returnValue, resultCallback);
+	}
+
+	/**
+	 * Synchronized variant of {@link #decorateAsyncResult}: concurrent misses for
+	 * the same key share the result of a single invocation.
+	 */
+	@Nullable
+	private Object executeSynchronizedAsync(CacheOperationInvoker invoker, Method method, Cache cache, Object key) {
+		Cache.ValueWrapper cacheHit = doGet(cache, key);
+		if (cacheHit != null) {
+			return wrapCacheValue(method, cacheHit.get());
+		}
+		SimpleKey loadKey = new SimpleKey(cache, key);
+		CompletableFuture<Object> load = new CompletableFuture<>();
+		CompletableFuture<Object> pendingLoad = this.pendingAsyncResults.putIfAbsent(loadKey, load);
+		if (pendingLoad == null) {
+			// Invoke outside of the map operation, since the target may use the same cache
+			Object sharedResult;
+			try {
+				sharedResult = shareAsyncResult(invoker, method, cache, key);
+			}
+			catch (RuntimeException | Error ex) {
+				this.pendingAsyncResults.remove(loadKey, load);
+				load.completeExceptionally(ex);
+				throw ex;
+			}
+			load.complete(sharedResult);
+			if (sharedResult == null) {
+				this.pendingAsyncResults.remove(loadKey, load);
+				return null;
+			}
+			pendingLoad = load;
+		}
+		CompletableFuture<Object> loadToUse = pendingLoad;
+		Runnable onTermination = () -> this.pendingAsyncResults.remove(loadKey, loadToUse);
+		if (method.getReturnType() == CompletableFuture.class) {
+			return loadToUse.thenCompose(this::toSharedFuture).whenComplete((result, ex) -> onTermination.run());
+		}
+		Assert.state(this.reactiveCachingHandler != null, "No reactive support");
+		return this.reactiveCachingHandler.adaptSharedResult(method.getReturnType(), loadToUse, onTermination);
+	}
+
+	/**
+	 * Invoke the target and turn its asynchronous result into one that can be
+	 * shared between synchronized invocations, caching the value it completes with.
+	 */
+	@Nullable
+	private Object shareAsyncResult(CacheOperationInvoker invoker, Method method, Cache cache, Object key) {
+		Object returnValue = invokeOperation(invoker);
+		if (returnValue == null) {
+			return null;
+		}
+		Consumer<Object> resultCallback = result -> doPut(cache, key, result);
+		if (returnValue instanceof CompletableFuture) {
+			return decorateAsyncResult(method, returnValue, resultCallback);
+		}
+		Assert.state(this.reactiveCachingHandler != null, "No reactive support");
+		return this.reactiveCachingHandler.shareResult(method.getReturnType(), returnValue, resultCallback);
+	}
+
+	@SuppressWarnings("unchecked")
+	private CompletableFuture<Object> toSharedFuture(@Nullable Object sharedResult) {
+		if (sharedResult == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		if (sharedResult instanceof CompletableFuture) {
+			return (CompletableFuture<Object>) sharedResult;
+		}
+		Assert.state(this.reactiveCachingHandler != null, "No reactive support");
+		return this.reactiveCachingHandler.toFuture(sharedResult);
+	}
+
+	/**
+	 * Return the value cached for the given key, loading it through the cache's
+	 * {@link Cache#get(Object, java.util.concurrent.Callable)} on a miss. Concurrent
+	 * misses for the same key share the result of a single load, so that callers
+	 * do not depend on the synchronization of the cache provider. A recursive
+	 * call for the same key within the load is left to the cache provider.
+	 */
+	@Nullable
+	private Object getSynchronized(Cache cache, Object key, CacheOperationInvoker invoker) {
+		Cache.ValueWrapper cacheHit = doGet(cache, key);
+		if (cacheHit != null) {
+			return cacheHit.get();
+		}
+		SimpleKey loadKey = new SimpleKey(cache, key);
+		PendingLoad load = new PendingLoad();
+		PendingLoad pendingLoad = this.pendingLoads.putIfAbsent(loadKey, load);
+		if (pendingLoad != null) {
+			if (pendingLoad.thread == Thread.currentThread()) {
+				// Waiting for the current thread's own load would never return
+				return cache.get(key, () -> unwrapReturnValue(invokeOperation(invoker)));
+			}
+			try {
+				return pendingLoad.join();
+			}
+			catch (CompletionException ex) {
+				if (ex.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) ex.getCause();
+				}
+				if (ex.getCause() instanceof Error) {
+					throw (Error) ex.getCause();
+				}
+				throw ex;
+			}
+		}
+		try {
+			Object value = cache.get(key, () -> unwrapReturnValue(invokeOperation(invoker)));
+			load.complete(value);
+			return value;
+		}
+		catch (RuntimeException | Error ex) {
+			load.completeExceptionally(ex);
+			throw ex;
+		}
+		finally {
+			this.pendingLoads.remove(loadKey, load);
+		}
 	}
 
 	@Nullable
@@ -414,6 +667,15 @@ public abstract class CacheAspectSupport extends AbstractCacheInvoker
 				(cacheValue == null || cacheValue.getClass() != Optional.class)) {
 			return Optional.ofNullable(cacheValue);
 		}
+		if (method.getReturnType() == CompletableFuture.class) {
+			return CompletableFuture.completedFuture(cacheValue);
+		}
+		if (this.reactiveCachingHandler != null) {
+			ReactiveAdapter adapter = this.reactiveCachingHandler.getAdapter(method.getReturnType());
+			if (adapter != null) {
+				return this.reactiveCachingHandler.wrapCacheValue(adapter, cacheValue);
+			}
+		}
 		return cacheValue;
 	}
 
@@ -589,7 +851,8 @@ public abstract class CacheAspectSupport extends AbstractCacheInvoker
 			}
 			boolean syncEnabled = false;
 			for (CacheOperationContext cacheOperationContext : cacheOperationContexts) {
-				if (((CacheableOperation) cacheOperationContext.getOperation()).isSync()) {
+				CacheableOperation operation = (CacheableOperation) cacheOperationContext.getOperation();
+				if (operation.isSync() || operation.getRefreshAfter() > 0) {
 					syncEnabled = true;
 					break;
 				}
@@ -778,6 +1041,190 @@ public abstract class CacheAspectSupport extends AbstractCacheInvoker
 	}
 
 
+	/**
+	 * Inner class to avoid a hard dependency on Project Reactor at runtime.
+	 */
+	private class ReactiveCachingHandler {
+
+		private final ReactiveAdapterRegistry registry = ReactiveAdapterRegistry.getSharedInstance();
+
+		/**
+		 * Return the adapter for the given return type, or {@code null} if
+		 * not a reactive type with a result to cache.
+		 */
+		@Nullable
+		public ReactiveAdapter getAdapter(Class<?> returnType) {
+			if (returnType == CompletableFuture.class || returnType == Object.class) {
+				return null;
+			}
+			ReactiveAdapter adapter = this.registry.getAdapter(returnType);
+			return (adapter != null && !adapter.isNoValue() ? adapter : null);
+		}
+
+		public Object wrapCacheValue(ReactiveAdapter adapter, @Nullable Object cacheValue) {
+			if (adapter.isMultiValue()) {
+				return adapter.fromPublisher(toFlux(cacheValue));
+			}
+			return adapter.fromPublisher(Mono.justOrEmpty(cacheValue));
+		}
+
+		/**
+		 * Decorate the given reactive result, subscribing to it once and sharing
+		 * it between all subscribers until it completes successfully, and invoke the
+		 * callback with the emitted value or the list of emitted elements on
+		 * successful completion. A failure is not replayed to later subscribers.
+		 */
+		public Object decorateResult(Class<?> returnType, Object returnValue, Consumer<Object> resultCallback) {
+			ReactiveAdapter adapter = getRequiredAdapter(returnType);
+			if (adapter.isMultiValue()) {
+				Flux<?> source = Flux.from(adapter.toPublisher(returnValue));
+				int maxElements = getMaxCachedElements();
+				return adapter.fromPublisher(cacheOnSuccess(Flux.defer(() -> {
+					List<Object> elements = new ArrayList<>();
+					return source.doOnNext(element -> {
+						if (elements.size() <= maxElements) {
+							elements.add(element);
+						}
+					}).doOnComplete(() -> {
+						if (elements.size() <= maxElements) {
+							resultCallback.accept(elements);
+						}
+					});
+				})));
+			}
+			return adapter.fromPublisher(
+					cacheOnSuccess(Mono.from(adapter.toPublisher(returnValue)).doOnSuccess(resultCallback::accept)));
+		}
+
+		/**
+		 * Materialize the given reactive result into a shared {@code Mono} of the
+		 * value to cache, invoking the callback with that value if it can be cached.
+		 */
+		public Mono<Object> shareResult(Class<?> returnType, Object returnValue, Consumer<Object> resultCallback) {
+			ReactiveAdapter adapter = getRequiredAdapter(returnType);
+			Mono<Object> result;
+			if (adapter.isMultiValue()) {
+				result = Flux.from(adapter.toPublisher(returnValue)).collectList().map(elements -> elements);
+			}
+			else {
+				result = Mono.from(adapter.toPublisher(returnValue));
+			}
+			int maxElements = getMaxCachedElements();
+			return cacheOnSuccess(result.doOnSuccess(value -> {
+				if (!(value instanceof List) || ((List<?>) value).size() <= maxElements) {
+					resultCallback.accept(value);
+				}
+			}));
+		}
+
+		/**
+		 * Adapt a pending load of a result shared through {@link #shareResult} or
+		 * of a future shared between synchronized invocations to the given return type.
+		 */
+		public Object adaptSharedResult(Class<?> returnType, CompletableFuture<Object> pendingLoad,
+				Runnable onTermination) {
+
+			Mono<Object> result = Mono.fromFuture(pendingLoad).flatMap(this::toMono)
+					.doFinally(signal -> onTermination.run());
+			ReactiveAdapter adapter = getRequiredAdapter(returnType);
+			if (adapter.isMultiValue()) {
+				return adapter.fromPublisher(result.flatMapMany(this::toFlux));
+			}
+			return adapter.fromPublisher(result);
+		}
+
+		public CompletableFuture<Object> toFuture(Object sharedResult) {
+			return toMono(sharedResult).toFuture();
+		}
+
+		@SuppressWarnings("unchecked")
+		private Mono<Object> toMono(Object sharedResult) {
+			return (sharedResult instanceof CompletableFuture ?
+					Mono.fromFuture((CompletableFuture<Object>) sharedResult) : (Mono<Object>) sharedResult);
+		}
+
+		/**
+		 * Replay the result of the given {@code Mono} to all subscribers once it
+		 * completed successfully, resubscribing to it after a failure.
+		 */
+		private <T> Mono<T> cacheOnSuccess(Mono<T> source) {
+			AtomicReference<Mono<T>> cached = new AtomicReference<>();
+			return Mono.defer(() -> cached.updateAndGet(current -> (current != null ? current :
+					source.doOnError(ex -> cached.set(null)).cache())));
+		}
+
+		/**
+		 * Replay the elements of the given {@code Flux} to all subscribers once it
+		 * completed successfully, resubscribing to it after a failure.
+		 */
+		private <T> Flux<T> cacheOnSuccess(Flux<T> source) {
+			AtomicReference<Flux<T>> cached = new AtomicReference<>();
+			return Flux.defer(() -> cached.updateAndGet(current -> (current != null ? current :
+					source.doOnError(ex -> cached.set(null)).cache())));
+		}
+
+		private ReactiveAdapter getRequiredAdapter(Class<?> returnType) {
+			ReactiveAdapter adapter = getAdapter(returnType);
+			Assert.state(adapter != null, () -> "No ReactiveAdapter for " + returnType);
+			return adapter;
+		}
+
+		private Flux<?> toFlux(@Nullable Object cacheValue) {
+			return (cacheValue instanceof Iterable ?
+					Flux.fromIterable((Iterable<?>) cacheValue) : Mono.justOrEmpty(cacheValue).flux());
+		}
+	}
+
+
+	/**
+	 * Default refresh executor: refreshing on a new daemon thread each, up to
+	 * a concurrency limit, and rejecting refreshes beyond that limit instead
+	 * of blocking the calling thread.
+	 */
+	@SuppressWarnings("serial")
+	private static class DefaultRefreshExecutor implements Executor, Serializable {
+
+		private final SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("cache-refresh-");
+
+		private final Semaphore permits = new Semaphore(DEFAULT_REFRESH_CONCURRENCY_LIMIT);
+
+		public DefaultRefreshExecutor() {
+			this.executor.setDaemon(true);
+		}
+
+		@Override
+		public void execute(Runnable task) {
+			if (!this.permits.tryAcquire()) {
+				throw new RejectedExecutionException(
+						"Concurrency limit of " + DEFAULT_REFRESH_CONCURRENCY_LIMIT + " cache refreshes reached");
+			}
+			try {
+				this.executor.execute(() -> {
+					try {
+						task.run();
+					}
+					finally {
+						this.permits.release();
+					}
+				});
+			}
+			catch (RuntimeException | Error ex) {
+				this.permits.release();
+				throw ex;
+			}
+		}
+	}
+
+
+	/**
+	 * The pending load of a value, for concurrent misses to wait for.
+	 */
+	private static final class PendingLoad extends CompletableFuture<Object> {
+
+		final Thread thread = Thread.currentThread();
+	}
+
+
 	private static final class CacheOperationCacheKey implements Comparable<CacheOperationCacheKey> {
 
 		private final CacheOperation cacheOperation;
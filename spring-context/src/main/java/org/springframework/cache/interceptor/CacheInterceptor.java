@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,7 @@ import java.lang.reflect.Method;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 
+import org.springframework.aop.ProxyMethodInvocation;
 import org.springframework.lang.Nullable;
 
 /**
@@ -48,14 +49,7 @@ public class CacheInterceptor extends CacheAspectSupport implements MethodInterc
 	public Object invoke(final MethodInvocation invocation) throws Throwable {
 		Method method = invocation.getMethod();
 
-		CacheOperationInvoker aopAllianceInvoker = () -> {
-			try {
-				return invocation.proceed();
-			}
-			catch (Throwable ex) {
-				throw new CacheOperationInvoker.ThrowableWrapper(ex);
-			}
-		};
+		CacheOperationInvoker aopAllianceInvoker = new MethodInvocationInvoker(invocation);
 
 		try {
 			return execute(aopAllianceInvoker, invocation.getThis(), method, invocation.getArguments());
@@ -65,4 +59,40 @@ public class CacheInterceptor extends CacheAspectSupport implements MethodInterc
 		}
 	}
 
+
+	/**
+	 * {@link CacheOperationInvoker} proceeding with a {@link MethodInvocation},
+	 * using a clone of the invocation for later invocations so that these
+	 * proceed through the remaining interceptor chain as well.
+	 */
+	private static class MethodInvocationInvoker implements CacheOperationInvoker {
+
+		private final MethodInvocation invocation;
+
+		public MethodInvocationInvoker(MethodInvocation invocation) {
+			this.invocation = invocation;
+		}
+
+		@Override
+		public Object invoke() {
+			try {
+				return this.invocation.proceed();
+			}
+			catch (Throwable ex) {
+				throw new CacheOperationInvoker.ThrowableWrapper(ex);
+			}
+		}
+
+		@Override
+		public CacheOperationInvoker forLaterInvocation() {
+			if (this.invocation instanceof ProxyMethodInvocation) {
+				// An unused clone as template, to be cloned again for every invocation
+				ProxyMethodInvocation template =
+						(ProxyMethodInvocation) ((ProxyMethodInvocation) this.invocation).invocableClone();
+				return () -> new MethodInvocationInvoker(template.invocableClone()).invoke();
+			}
+			return this;
+		}
+	}
+
 }
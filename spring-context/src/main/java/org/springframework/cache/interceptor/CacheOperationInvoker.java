@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -38,6 +38,19 @@ public interface CacheOperationInvoker {
 	 */
 	Object invoke() throws ThrowableWrapper;
 
+	/**
+	 * Return an invoker for invoking the cache operation once more at a later
+	 * point, possibly on a different thread and after the current invocation
+	 * has completed, e.g. to refresh a cached value in the background.
+	 * <p>Needs to be called before this invoker is invoked. The default
+	 * implementation returns this invoker, assuming that it can be invoked
+	 * repeatedly.
+	 * @since 5.1
+	 */
+	default CacheOperationInvoker forLaterInvocation() {
+		return this;
+	}
+
 
 	/**
 	 * Wrap any exception thrown while invoking {@link #invoke()}.
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -33,6 +33,8 @@ public class CacheableOperation extends CacheOperation {
 
 	private final boolean sync;
 
+	private final long refreshAfter;
+
 
 	/**
 	 * @since 4.3
@@ -41,6 +43,7 @@ public class CacheableOperation extends CacheOperation {
 		super(b);
 		this.unless = b.unless;
 		this.sync = b.sync;
+		this.refreshAfter = b.refreshAfter;
 	}
 
 
@@ -53,6 +56,15 @@ public class CacheableOperation extends CacheOperation {
 		return this.sync;
 	}
 
+	/**
+	 * Return the age in milliseconds after which a cached value is refreshed
+	 * in the background, or {@code -1} for no refresh-ahead.
+	 * @since 5.1
+	 */
+	public long getRefreshAfter() {
+		return this.refreshAfter;
+	}
+
 
 	/**
 	 * @since 4.3
@@ -64,6 +76,8 @@ public class CacheableOperation extends CacheOperation {
 
 		private boolean sync;
 
+		private long refreshAfter = -1;
+
 		public void setUnless(String unless) {
 			this.unless = unless;
 		}
@@ -72,6 +86,13 @@ public class CacheableOperation extends CacheOperation {
 			this.sync = sync;
 		}
 
+		/**
+		 * @since 5.1
+		 */
+		public void setRefreshAfter(long refreshAfter) {
+			this.refreshAfter = refreshAfter;
+		}
+
 		@Override
 		protected StringBuilder getOperationDescription() {
 			StringBuilder sb = super.getOperationDescription();
@@ -81,6 +102,11 @@ public class CacheableOperation extends CacheOperation {
 			sb.append(" | sync='");
 			sb.append(this.sync);
 			sb.append("'");
+			if (this.refreshAfter >= 0) {
+				sb.append(" | refreshAfter='");
+				sb.append(this.refreshAfter);
+				sb.append("'");
+			}
 			return sb;
 		}
 
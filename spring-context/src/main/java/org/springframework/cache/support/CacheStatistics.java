@@ -0,0 +1,201 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.support;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * Immutable snapshot of the statistics of a {@link org.springframework.cache.Cache}:
+ * hits and misses of lookups, successful and failed loads through
+ * {@link org.springframework.cache.Cache#get(Object, java.util.concurrent.Callable)},
+ * and evictions due to size, expiration or garbage collection.
+ *
+ * @since 5.1
+ * @see org.springframework.cache.concurrent.BoundedConcurrentMapCache#getStatistics()
+ */
+public final class CacheStatistics {
+
+	/**
+	 * Statistics with all counters at zero.
+	 */
+	public static final CacheStatistics EMPTY = new CacheStatistics(0, 0, 0, 0, 0, 0);
+
+
+	private final long hitCount;
+
+	private final long missCount;
+
+	private final long loadSuccessCount;
+
+	private final long loadFailureCount;
+
+	private final long totalLoadTime;
+
+	private final long evictionCount;
+
+
+	/**
+	 * Create a new statistics snapshot.
+	 * @param hitCount the number of lookups that found a cached value
+	 * @param missCount the number of lookups that did not find a cached value
+	 * @param loadSuccessCount the number of values loaded successfully
+	 * @param loadFailureCount the number of value loads that failed
+	 * @param totalLoadTime the total time spent loading values, in nanoseconds
+	 * @param evictionCount the number of entries removed by the cache itself
+	 */
+	public CacheStatistics(long hitCount, long missCount, long loadSuccessCount,
+			long loadFailureCount, long totalLoadTime, long evictionCount) {
+
+		Assert.isTrue(hitCount >= 0 && missCount >= 0 && loadSuccessCount >= 0 &&
+				loadFailureCount >= 0 && totalLoadTime >= 0 && evictionCount >= 0,
+				"Statistics counters must not be negative");
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.loadSuccessCount = loadSuccessCount;
+		this.loadFailureCount = loadFailureCount;
+		this.totalLoadTime = totalLoadTime;
+		this.evictionCount = evictionCount;
+	}
+
+
+	/**
+	 * Return the number of lookups, i.e. the sum of hits and misses.
+	 */
+	public long getRequestCount() {
+		return this.hitCount + this.missCount;
+	}
+
+	/**
+	 * Return the number of lookups that found a cached value.
+	 */
+	public long getHitCount() {
+		return this.hitCount;
+	}
+
+	/**
+	 * Return the ratio of lookups that found a cached value,
+	 * or {@code 1.0} if there were no lookups.
+	 */
+	public double getHitRate() {
+		long requestCount = getRequestCount();
+		return (requestCount == 0 ? 1.0 : (double) this.hitCount / requestCount);
+	}
+
+	/**
+	 * Return the number of lookups that did not find a cached value.
+	 */
+	public long getMissCount() {
+		return this.missCount;
+	}
+
+	/**
+	 * Return the ratio of lookups that did not find a cached value,
+	 * or {@code 0.0} if there were no lookups.
+	 */
+	public double getMissRate() {
+		long requestCount = getRequestCount();
+		return (requestCount == 0 ? 0.0 : (double) this.missCount / requestCount);
+	}
+
+	/**
+	 * Return the number of values loaded successfully.
+	 */
+	public long getLoadSuccessCount() {
+		return this.loadSuccessCount;
+	}
+
+	/**
+	 * Return the number of value loads that failed.
+	 */
+	public long getLoadFailureCount() {
+		return this.loadFailureCount;
+	}
+
+	/**
+	 * Return the total time spent loading values, in nanoseconds.
+	 */
+	public long getTotalLoadTime() {
+		return this.totalLoadTime;
+	}
+
+	/**
+	 * Return the average time spent loading a value, in nanoseconds.
+	 */
+	public double getAverageLoadPenalty() {
+		long loadCount = this.loadSuccessCount + this.loadFailureCount;
+		return (loadCount == 0 ? 0.0 : (double) this.totalLoadTime / loadCount);
+	}
+
+	/**
+	 * Return the number of entries removed by the cache itself, because of
+	 * its size limit, expiration or garbage collection of their values.
+	 */
+	public long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	/**
+	 * Return the difference between these statistics and the given earlier
+	 * statistics of the same cache, i.e. the activity in between.
+	 * @param other the earlier statistics
+	 * @return the statistics for the period in between
+	 */
+	public CacheStatistics minus(CacheStatistics other) {
+		return new CacheStatistics(Math.max(0, this.hitCount - other.hitCount),
+				Math.max(0, this.missCount - other.missCount),
+				Math.max(0, this.loadSuccessCount - other.loadSuccessCount),
+				Math.max(0, this.loadFailureCount - other.loadFailureCount),
+				Math.max(0, this.totalLoadTime - other.totalLoadTime),
+				Math.max(0, this.evictionCount - other.evictionCount));
+	}
+
+
+	@Override
+	public boolean equals(@Nullable Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof CacheStatistics)) {
+			return false;
+		}
+		CacheStatistics otherStats = (CacheStatistics) other;
+		return (this.hitCount == otherStats.hitCount && this.missCount == otherStats.missCount &&
+				this.loadSuccessCount == otherStats.loadSuccessCount &&
+				this.loadFailureCount == otherStats.loadFailureCount &&
+				this.totalLoadTime == otherStats.totalLoadTime && this.evictionCount == otherStats.evictionCount);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = Long.hashCode(this.hitCount);
+		result = 31 * result + Long.hashCode(this.missCount);
+		result = 31 * result + Long.hashCode(this.loadSuccessCount);
+		result = 31 * result + Long.hashCode(this.loadFailureCount);
+		result = 31 * result + Long.hashCode(this.totalLoadTime);
+		result = 31 * result + Long.hashCode(this.evictionCount);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStatistics [hits=" + this.hitCount + ", misses=" + this.missCount +
+				", loadSuccesses=" + this.loadSuccessCount + ", loadFailures=" + this.loadFailureCount +
+				", totalLoadTime=" + this.totalLoadTime + "ns, evictions=" + this.evictionCount + "]";
+	}
+
+}
@@ -0,0 +1,901 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.context.annotation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConstructorArgumentValues;
+import org.springframework.beans.factory.config.ConstructorArgumentValues.ValueHolder;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.config.SingletonBeanRegistry;
+import org.springframework.beans.factory.config.TypedStringValue;
+import org.springframework.beans.factory.parsing.ProblemReporter;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.ConfigurationClassBeanDefinitionReader.ConfigurationClassBeanDefinition;
+import org.springframework.context.annotation.ConfigurationCondition.ConfigurationPhase;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * A snapshot of the bean definitions derived from a set of root configuration
+ * classes by {@link ConfigurationClassPostProcessor}, i.e. through
+ * {@code @Configuration} class parsing, {@code @Import} processing and
+ * {@code @ComponentScan} classpath scanning.
+ *
+ * <p>A snapshot is typically generated at build time through a
+ * {@link BeanDefinitionSnapshotGenerator} and stored as a properties file at
+ * {@value #SNAPSHOT_RESOURCE_LOCATION}{@code <root class name>.properties}.
+ * If {@linkplain ConfigurationClassPostProcessor#setUseBeanDefinitionSnapshot
+ * enabled} and a snapshot for the exact set of root configuration classes is
+ * found at runtime, {@link ConfigurationClassPostProcessor} registers its bean
+ * definitions instead of parsing the configuration classes and scanning the
+ * classpath.
+ *
+ * <p>A snapshot is only used if it is still valid for the application:
+ * <ul>
+ * <li>The outcome of every {@link Conditional @Conditional} element evaluated
+ * when the snapshot was generated, including the elements that were skipped,
+ * must be the same when re-evaluated at runtime. Otherwise, e.g. when running
+ * with different profiles, the configuration classes are parsed instead.</li>
+ * <li>The class files of the captured configuration classes, components and
+ * conditional elements must be unchanged, as determined by an MD5 digest of
+ * their content. Note that classes added to scanned packages since the snapshot
+ * was generated are not detected: the snapshot should be regenerated as part of
+ * every build.</li>
+ * </ul>
+ * Conditions evaluated against the bean definitions registered so far, e.g.
+ * on the presence of a bean, are evaluated before any captured bean definition
+ * is registered and may therefore cause a snapshot to be rejected.
+ *
+ * <p>Only bean definitions with a bean class or factory method, simple attribute
+ * values and property or constructor argument values that are bean references,
+ * Strings, primitive wrappers or classes can be captured.
+ *
+ * @since 5.1
+ * @see BeanDefinitionSnapshotGenerator
+ * @see ConfigurationClassPostProcessor#setUseBeanDefinitionSnapshot
+ */
+public final class BeanDefinitionSnapshot {
+
+	/**
+	 * The location of bean definition snapshots within the classpath, to be
+	 * followed by the name of the first (in alphabetical order) root configuration
+	 * class and the ".properties" file extension.
+	 */
+	public static final String SNAPSHOT_RESOURCE_LOCATION = "META-INF/spring.snapshots/";
+
+	/**
+	 * System property that instructs Spring to use bean definition snapshots,
+	 * i.e. the default for {@link ConfigurationClassPostProcessor#setUseBeanDefinitionSnapshot}.
+	 * <p>The default is "false", i.e. configuration classes are always parsed at
+	 * runtime unless snapshots are enabled explicitly.
+	 */
+	public static final String USE_SNAPSHOT_PROPERTY_NAME = "spring.snapshot.enabled";
+
+	/**
+	 * The name of the singleton that {@link ConditionEvaluator} records condition
+	 * outcomes in while a snapshot is generated.
+	 */
+	static final String CONDITION_OUTCOMES_BEAN_NAME = BeanDefinitionSnapshot.class.getName() + ".conditionOutcomes";
+
+
+	private static final String ROOTS_KEY = "roots";
+
+	private static final String IMPORT_PREFIX = "import.";
+
+	private static final String CONDITION_PREFIX = "condition.";
+
+	private static final String DIGEST_PREFIX = "digest.";
+
+	private static final String BEAN_COUNT_KEY = "beans";
+
+	private static final String BEAN_PREFIX = "bean.";
+
+	private static final Log logger = LogFactory.getLog(BeanDefinitionSnapshot.class);
+
+
+	private final List<String> rootClassNames;
+
+	private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+	private final Map<String, String> imports = new LinkedHashMap<>();
+
+	private final Map<String, Boolean> conditionOutcomes = new TreeMap<>();
+
+	private final Map<String, String> classDigests = new TreeMap<>();
+
+
+	/**
+	 * Create an empty snapshot for the given root configuration classes.
+	 */
+	BeanDefinitionSnapshot(Collection<String> rootClassNames) {
+		List<String> sortedRootClassNames = new ArrayList<>(rootClassNames);
+		Collections.sort(sortedRootClassNames);
+		this.rootClassNames = Collections.unmodifiableList(sortedRootClassNames);
+	}
+
+
+	/**
+	 * Return the names of the root configuration classes, in alphabetical order.
+	 */
+	public List<String> getRootClassNames() {
+		return this.rootClassNames;
+	}
+
+	/**
+	 * Return the names of the captured beans, in registration order.
+	 */
+	public Set<String> getBeanNames() {
+		return Collections.unmodifiableSet(this.entries.keySet());
+	}
+
+	/**
+	 * Return the captured bean definition with the given name.
+	 * @param beanName the name of the bean
+	 * @return the bean definition, or {@code null} if none captured
+	 */
+	@Nullable
+	public BeanDefinition getBeanDefinition(String beanName) {
+		Entry entry = this.entries.get(beanName);
+		return (entry != null ? entry.beanDefinition : null);
+	}
+
+	/**
+	 * Return the outcomes of the conditions evaluated when the snapshot was
+	 * generated, keyed by the conditional element (a class name, or a class
+	 * name and method name as "className#methodName") followed by
+	 * "|" and the {@link ConfigurationPhase}. A value of {@code true} indicates
+	 * that the element was skipped.
+	 */
+	public Map<String, Boolean> getConditionOutcomes() {
+		return Collections.unmodifiableMap(this.conditionOutcomes);
+	}
+
+	/**
+	 * Return the MD5 digests of the class files the snapshot was generated
+	 * from, keyed by class name.
+	 */
+	public Map<String, String> getClassDigests() {
+		return Collections.unmodifiableMap(this.classDigests);
+	}
+
+	/**
+	 * Return the name of the configuration class that imported the given class.
+	 * @param importedClass the name of the imported class
+	 * @return the name of the importing class, or {@code null} if none
+	 */
+	@Nullable
+	public String getImportingClassFor(String importedClass) {
+		return this.imports.get(importedClass);
+	}
+
+	/**
+	 * Capture the given bean definition.
+	 * @throws IllegalStateException if the bean definition cannot be captured
+	 */
+	void addBeanDefinition(String beanName, BeanDefinition beanDefinition) {
+		Properties properties = new Properties();
+		writeBeanDefinition(beanName, beanDefinition, "", properties);
+		// Store a detached copy, as read from a snapshot
+		this.entries.put(beanName, new Entry(readBeanDefinition(beanName, "", properties),
+				properties.getProperty("factoryClass")));
+	}
+
+	void addImport(String importedClass, String importingClass) {
+		this.imports.put(importedClass, importingClass);
+	}
+
+	void addConditionOutcomes(Map<String, Boolean> conditionOutcomes) {
+		this.conditionOutcomes.putAll(conditionOutcomes);
+	}
+
+	/**
+	 * Record the digest of the class file of the given class, if available.
+	 */
+	void addClassDigest(String className, ClassLoader classLoader) {
+		String digest = getClassDigest(className, classLoader);
+		if (digest != null) {
+			this.classDigests.put(className, digest);
+		}
+	}
+
+	/**
+	 * Return the names of the classes the captured bean definitions are
+	 * derived from.
+	 */
+	Set<String> getSourceClassNames() {
+		Set<String> classNames = new TreeSet<>(this.rootClassNames);
+		classNames.addAll(this.imports.keySet());
+		classNames.addAll(this.imports.values());
+		for (Entry entry : this.entries.values()) {
+			if (entry.beanDefinition.getBeanClassName() != null) {
+				classNames.add(entry.beanDefinition.getBeanClassName());
+			}
+			if (entry.factoryClassName != null) {
+				classNames.add(entry.factoryClassName);
+			}
+		}
+		for (String key : this.conditionOutcomes.keySet()) {
+			classNames.add(getConditionalClassName(key));
+		}
+		return classNames;
+	}
+
+
+	/**
+	 * Determine whether the class files the snapshot was generated from are
+	 * unchanged.
+	 * @param classLoader the ClassLoader to load class files with
+	 */
+	boolean isUpToDate(ClassLoader classLoader) {
+		for (Map.Entry<String, String> entry : this.classDigests.entrySet()) {
+			if (!entry.getValue().equals(getClassDigest(entry.getKey(), classLoader))) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Class [" + entry.getKey() + "] changed since bean definition snapshot for " +
+							this.rootClassNames + " was generated");
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Determine whether all conditions evaluated when the snapshot was generated
+	 * still have the same outcome.
+	 * @param conditionEvaluator the evaluator for conditional elements
+	 * @param metadataReaderFactory the factory for reading the metadata of
+	 * conditional elements
+	 */
+	boolean conditionsMatch(ConditionEvaluator conditionEvaluator, MetadataReaderFactory metadataReaderFactory) {
+		for (Map.Entry<String, Boolean> entry : this.conditionOutcomes.entrySet()) {
+			String key = entry.getKey();
+			int phaseIndex = key.lastIndexOf('|');
+			String element = key.substring(0, phaseIndex);
+			ConfigurationPhase phase = ConfigurationPhase.valueOf(key.substring(phaseIndex + 1));
+			if (evaluate(element, phase, conditionEvaluator, metadataReaderFactory) != entry.getValue()) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Conditions on [" + element + "] changed outcome since bean definition snapshot for " +
+							this.rootClassNames + " was generated");
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean evaluate(String element, ConfigurationPhase phase, ConditionEvaluator conditionEvaluator,
+			MetadataReaderFactory metadataReaderFactory) {
+
+		int separatorIndex = element.indexOf('#');
+		String className = (separatorIndex != -1 ? element.substring(0, separatorIndex) : element);
+		AnnotationMetadata metadata = getAnnotationMetadata(className, metadataReaderFactory);
+		if (separatorIndex == -1) {
+			return conditionEvaluator.shouldSkip(metadata, phase);
+		}
+		MethodMetadata methodMetadata = getBeanMethod(metadata, element.substring(separatorIndex + 1));
+		return (methodMetadata != null && conditionEvaluator.shouldSkip(methodMetadata, phase));
+	}
+
+	/**
+	 * Validate the captured configuration classes like {@link ConfigurationClassParser#validate}.
+	 * @param problemReporter the reporter to report problems to
+	 * @param metadataReaderFactory the factory for reading the metadata of
+	 * configuration classes
+	 */
+	void validate(ProblemReporter problemReporter, MetadataReaderFactory metadataReaderFactory) {
+		for (Map.Entry<String, Entry> mapEntry : this.entries.entrySet()) {
+			BeanDefinition beanDefinition = mapEntry.getValue().beanDefinition;
+			String className = beanDefinition.getBeanClassName();
+			if (className == null || !(ConfigurationClassUtils.isFullConfigurationClass(beanDefinition) ||
+					ConfigurationClassUtils.isLiteConfigurationClass(beanDefinition))) {
+				continue;
+			}
+			ConfigurationClass configClass = new ConfigurationClass(
+					getAnnotationMetadata(className, metadataReaderFactory), mapEntry.getKey());
+			// Include @Bean methods of superclasses, as the parser does
+			AnnotationMetadata metadata = configClass.getMetadata();
+			Set<String> visited = new HashSet<>();
+			while (visited.add(metadata.getClassName())) {
+				for (MethodMetadata methodMetadata : metadata.getAnnotatedMethods(Bean.class.getName())) {
+					configClass.addBeanMethod(new BeanMethod(methodMetadata, configClass));
+				}
+				String superClassName = metadata.getSuperClassName();
+				if (superClassName == null || superClassName.startsWith("java")) {
+					break;
+				}
+				metadata = getAnnotationMetadata(superClassName, metadataReaderFactory);
+			}
+			configClass.validate(problemReporter);
+		}
+	}
+
+	/**
+	 * Register the captured bean definitions with the given registry, skipping
+	 * beans with a name that is already in use.
+	 * @param registry the registry to register the bean definitions with
+	 * @param metadataReaderFactory the factory for reading the metadata of
+	 * configuration classes that declare {@code @Bean} methods
+	 */
+	void registerBeanDefinitions(BeanDefinitionRegistry registry, MetadataReaderFactory metadataReaderFactory) {
+		for (Map.Entry<String, Entry> mapEntry : this.entries.entrySet()) {
+			String beanName = mapEntry.getKey();
+			if (registry.containsBeanDefinition(beanName)) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Skipping bean definition for bean '" + beanName +
+							"' from snapshot: existing bean definition takes precedence");
+				}
+				continue;
+			}
+			registry.registerBeanDefinition(beanName, mapEntry.getValue().createBeanDefinition(metadataReaderFactory));
+		}
+	}
+
+	/**
+	 * Return an {@link ImportRegistry} for the captured imports, reading the
+	 * metadata of importing classes on demand.
+	 */
+	ImportRegistry getImportRegistry(MetadataReaderFactory metadataReaderFactory) {
+		return new SnapshotImportRegistry(this.imports, metadataReaderFactory);
+	}
+
+
+	/**
+	 * Write this snapshot to the given stream, in properties format.
+	 * @param outputStream the stream to write to (not closed)
+	 * @throws IOException in case of I/O errors
+	 */
+	public void store(OutputStream outputStream) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty(ROOTS_KEY, StringUtils.collectionToCommaDelimitedString(this.rootClassNames));
+		this.imports.forEach((imported, importing) -> properties.setProperty(IMPORT_PREFIX + imported, importing));
+		this.conditionOutcomes.forEach((element, skip) ->
+				properties.setProperty(CONDITION_PREFIX + element, String.valueOf(skip)));
+		this.classDigests.forEach((className, digest) -> properties.setProperty(DIGEST_PREFIX + className, digest));
+		properties.setProperty(BEAN_COUNT_KEY, String.valueOf(this.entries.size()));
+		int index = 0;
+		for (Map.Entry<String, Entry> mapEntry : this.entries.entrySet()) {
+			String prefix = BEAN_PREFIX + index++ + ".";
+			Entry entry = mapEntry.getValue();
+			writeBeanDefinition(mapEntry.getKey(), entry.beanDefinition, prefix, properties);
+			setIfNotNull(properties, prefix + "factoryClass", entry.factoryClassName);
+		}
+		properties.store(outputStream, "Bean definition snapshot");
+	}
+
+	/**
+	 * Read a snapshot from the given stream, in properties format.
+	 * @param inputStream the stream to read from (not closed)
+	 * @return the snapshot
+	 * @throws IOException in case of I/O errors
+	 * @throws IllegalStateException if the content is not a valid snapshot
+	 */
+	public static BeanDefinitionSnapshot load(InputStream inputStream) throws IOException {
+		Properties properties = new Properties();
+		properties.load(inputStream);
+		String roots = properties.getProperty(ROOTS_KEY);
+		String beanCount = properties.getProperty(BEAN_COUNT_KEY);
+		if (roots == null || beanCount == null) {
+			throw new IllegalStateException("Not a bean definition snapshot: missing '" +
+					ROOTS_KEY + "' or '" + BEAN_COUNT_KEY + "' entry");
+		}
+		BeanDefinitionSnapshot snapshot = new BeanDefinitionSnapshot(StringUtils.commaDelimitedListToSet(roots));
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith(IMPORT_PREFIX)) {
+				snapshot.addImport(key.substring(IMPORT_PREFIX.length()), properties.getProperty(key));
+			}
+			else if (key.startsWith(CONDITION_PREFIX)) {
+				snapshot.conditionOutcomes.put(key.substring(CONDITION_PREFIX.length()),
+						Boolean.valueOf(properties.getProperty(key)));
+			}
+			else if (key.startsWith(DIGEST_PREFIX)) {
+				snapshot.classDigests.put(key.substring(DIGEST_PREFIX.length()), properties.getProperty(key));
+			}
+		}
+		for (int i = 0; i < Integer.parseInt(beanCount); i++) {
+			String prefix = BEAN_PREFIX + i + ".";
+			String beanName = properties.getProperty(prefix + "name");
+			if (beanName == null) {
+				throw new IllegalStateException("Not a bean definition snapshot: missing '" + prefix + "name' entry");
+			}
+			snapshot.entries.put(beanName, new Entry(readBeanDefinition(beanName, prefix, properties),
+					properties.getProperty(prefix + "factoryClass")));
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Load the snapshot for the given root configuration classes from
+	 * {@value #SNAPSHOT_RESOURCE_LOCATION}, if any, provided that the class
+	 * files it was generated from are unchanged.
+	 * @param classLoader the ClassLoader to use for loading (can be {@code null}
+	 * to use the default)
+	 * @param rootClassNames the names of the root configuration classes
+	 * @return the snapshot, or {@code null} if none found for the given classes
+	 * or if it is out of date
+	 * @throws IllegalStateException if a snapshot was found but could not be read
+	 */
+	@Nullable
+	public static BeanDefinitionSnapshot loadSnapshot(@Nullable ClassLoader classLoader, Collection<String> rootClassNames) {
+		if (rootClassNames.isEmpty()) {
+			return null;
+		}
+		ClassLoader classLoaderToUse = classLoader;
+		if (classLoaderToUse == null) {
+			classLoaderToUse = BeanDefinitionSnapshot.class.getClassLoader();
+		}
+		List<String> sortedRootClassNames = new ArrayList<>(rootClassNames);
+		Collections.sort(sortedRootClassNames);
+		String location = getResourceLocation(sortedRootClassNames);
+		URL url = classLoaderToUse.getResource(location);
+		if (url == null) {
+			return null;
+		}
+		BeanDefinitionSnapshot snapshot;
+		try (InputStream inputStream = url.openStream()) {
+			snapshot = load(inputStream);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Unable to load bean definition snapshot from location [" + location + "]", ex);
+		}
+		if (!snapshot.getRootClassNames().equals(sortedRootClassNames)) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Ignoring bean definition snapshot [" + location + "] for root classes " +
+						snapshot.getRootClassNames() + ": registry contains root classes " + sortedRootClassNames);
+			}
+			return null;
+		}
+		if (!snapshot.isUpToDate(classLoaderToUse)) {
+			if (logger.isInfoEnabled()) {
+				logger.info("Ignoring out-of-date bean definition snapshot [" + location + "]");
+			}
+			return null;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Loaded bean definition snapshot [" + location + "] with " +
+					snapshot.entries.size() + " bean definitions");
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Return the classpath location of the snapshot for the given root
+	 * configuration classes.
+	 * @param rootClassNames the names of the root configuration classes
+	 * @return the resource location
+	 */
+	public static String getResourceLocation(Collection<String> rootClassNames) {
+		Assert.notEmpty(rootClassNames, "At least one root class name is required");
+		List<String> sortedRootClassNames = new ArrayList<>(rootClassNames);
+		Collections.sort(sortedRootClassNames);
+		return SNAPSHOT_RESOURCE_LOCATION + sortedRootClassNames.get(0) + ".properties";
+	}
+
+
+	/**
+	 * Return the map to record condition outcomes in for the given registry,
+	 * if a snapshot is being generated for it.
+	 */
+	@Nullable
+	@SuppressWarnings("unchecked")
+	static Map<String, Boolean> getConditionOutcomeRecorder(@Nullable BeanDefinitionRegistry registry) {
+		if (registry instanceof SingletonBeanRegistry) {
+			Object recorder = ((SingletonBeanRegistry) registry).getSingleton(CONDITION_OUTCOMES_BEAN_NAME);
+			if (recorder instanceof Map) {
+				return (Map<String, Boolean>) recorder;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Record the outcome of the conditions on the given element.
+	 * @throws IllegalStateException if the same conditions had a different
+	 * outcome before, in which case the outcome cannot be verified at runtime
+	 */
+	static void recordConditionOutcome(Map<String, Boolean> recorder, AnnotatedTypeMetadata metadata,
+			ConfigurationPhase phase, boolean skip) {
+
+		String element;
+		if (metadata instanceof AnnotationMetadata) {
+			element = ((AnnotationMetadata) metadata).getClassName();
+		}
+		else if (metadata instanceof MethodMetadata) {
+			MethodMetadata methodMetadata = (MethodMetadata) metadata;
+			element = methodMetadata.getDeclaringClassName() + "#" + methodMetadata.getMethodName();
+		}
+		else {
+			throw new IllegalStateException("Conditions on [" + metadata + "] cannot be captured in a snapshot");
+		}
+		Boolean previous = recorder.put(element + "|" + phase.name(), skip);
+		if (previous != null && previous != skip) {
+			throw new IllegalStateException("Conditions on [" + element + "] cannot be captured in a snapshot: " +
+					"outcome changed during configuration class processing");
+		}
+	}
+
+	private static String getConditionalClassName(String conditionKey) {
+		String element = conditionKey.substring(0, conditionKey.lastIndexOf('|'));
+		int separatorIndex = element.indexOf('#');
+		return (separatorIndex != -1 ? element.substring(0, separatorIndex) : element);
+	}
+
+	@Nullable
+	private static String getClassDigest(String className, ClassLoader classLoader) {
+		String resourcePath = ClassUtils.convertClassNameToResourcePath(className) + ClassUtils.CLASS_FILE_SUFFIX;
+		try (InputStream inputStream = classLoader.getResourceAsStream(resourcePath)) {
+			return (inputStream != null ? DigestUtils.md5DigestAsHex(inputStream) : null);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to read class file [" + resourcePath + "]", ex);
+		}
+	}
+
+	@Nullable
+	private static MethodMetadata getBeanMethod(AnnotationMetadata metadata, String methodName) {
+		for (MethodMetadata methodMetadata : metadata.getAnnotatedMethods(Bean.class.getName())) {
+			if (methodMetadata.getMethodName().equals(methodName)) {
+				return methodMetadata;
+			}
+		}
+		return null;
+	}
+
+
+	private static void writeBeanDefinition(String beanName, BeanDefinition beanDefinition,
+			String prefix, Properties properties) {
+
+		if (!(beanDefinition instanceof AbstractBeanDefinition)) {
+			throw unsupported(beanName, "not an AbstractBeanDefinition");
+		}
+		AbstractBeanDefinition bd = (AbstractBeanDefinition) beanDefinition;
+		if (bd.getInstanceSupplier() != null) {
+			throw unsupported(beanName, "instance supplier");
+		}
+		if (bd.hasMethodOverrides()) {
+			throw unsupported(beanName, "method overrides");
+		}
+		if (!bd.getQualifiers().isEmpty()) {
+			throw unsupported(beanName, "autowire candidate qualifiers");
+		}
+		if (bd instanceof RootBeanDefinition && ((RootBeanDefinition) bd).getDecoratedDefinition() != null) {
+			throw unsupported(beanName, "decorated bean definition");
+		}
+		if (bd.isAbstract() || bd.getParentName() != null) {
+			throw unsupported(beanName, "abstract or child bean definition");
+		}
+		if (bd.getBeanClassName() == null && bd.getFactoryMethodName() == null) {
+			throw unsupported(beanName, "neither bean class nor factory method");
+		}
+
+		properties.setProperty(prefix + "name", beanName);
+		if (bd instanceof AnnotatedBeanDefinition && bd.getFactoryMethodName() != null &&
+				((AnnotatedBeanDefinition) bd).getFactoryMethodMetadata() != null) {
+			properties.setProperty(prefix + "factoryClass", ((AnnotatedBeanDefinition) bd).getMetadata().getClassName());
+		}
+		setIfNotNull(properties, prefix + "class", bd.getBeanClassName());
+		setIfNotNull(properties, prefix + "factoryBean", bd.getFactoryBeanName());
+		setIfNotNull(properties, prefix + "factoryMethod", bd.getFactoryMethodName());
+		if (StringUtils.hasLength(bd.getScope())) {
+			properties.setProperty(prefix + "scope", bd.getScope());
+		}
+		if (bd.isLazyInit()) {
+			properties.setProperty(prefix + "lazyInit", "true");
+		}
+		if (bd.isPrimary()) {
+			properties.setProperty(prefix + "primary", "true");
+		}
+		if (!bd.isAutowireCandidate()) {
+			properties.setProperty(prefix + "autowireCandidate", "false");
+		}
+		if (bd.getAutowireMode() != AbstractBeanDefinition.AUTOWIRE_NO) {
+			properties.setProperty(prefix + "autowireMode", String.valueOf(bd.getAutowireMode()));
+		}
+		if (bd.getDependsOn() != null) {
+			properties.setProperty(prefix + "dependsOn", StringUtils.arrayToCommaDelimitedString(bd.getDependsOn()));
+		}
+		setIfNotNull(properties, prefix + "initMethod", bd.getInitMethodName());
+		setIfNotNull(properties, prefix + "destroyMethod", bd.getDestroyMethodName());
+		if (!bd.isEnforceInitMethod()) {
+			properties.setProperty(prefix + "enforceInitMethod", "false");
+		}
+		if (!bd.isEnforceDestroyMethod()) {
+			properties.setProperty(prefix + "enforceDestroyMethod", "false");
+		}
+		if (bd.getRole() != BeanDefinition.ROLE_APPLICATION) {
+			properties.setProperty(prefix + "role", String.valueOf(bd.getRole()));
+		}
+		if (bd.isSynthetic()) {
+			properties.setProperty(prefix + "synthetic", "true");
+		}
+		setIfNotNull(properties, prefix + "description", bd.getDescription());
+		setIfNotNull(properties, prefix + "resourceDescription", bd.getResourceDescription());
+
+		for (String attributeName : bd.attributeNames()) {
+			Object value = bd.getAttribute(attributeName);
+			properties.setProperty(prefix + "attribute." + attributeName, encode(beanName, value, false));
+		}
+		ConstructorArgumentValues args = bd.getConstructorArgumentValues();
+		for (Map.Entry<Integer, ValueHolder> arg : args.getIndexedArgumentValues().entrySet()) {
+			properties.setProperty(prefix + "arg." + arg.getKey(), encode(beanName, arg.getValue()));
+		}
+		List<ValueHolder> genericArgs = args.getGenericArgumentValues();
+		for (int i = 0; i < genericArgs.size(); i++) {
+			properties.setProperty(prefix + "genericArg." + i, encode(beanName, genericArgs.get(i)));
+		}
+		for (PropertyValue pv : bd.getPropertyValues().getPropertyValues()) {
+			properties.setProperty(prefix + "property." + pv.getName(), encode(beanName, pv.getValue(), true));
+		}
+	}
+
+	private static RootBeanDefinition readBeanDefinition(String beanName, String prefix, Properties properties) {
+		RootBeanDefinition bd = new RootBeanDefinition();
+		bd.setBeanClassName(properties.getProperty(prefix + "class"));
+		bd.setFactoryBeanName(properties.getProperty(prefix + "factoryBean"));
+		bd.setFactoryMethodName(properties.getProperty(prefix + "factoryMethod"));
+		bd.setScope(properties.getProperty(prefix + "scope", AbstractBeanDefinition.SCOPE_DEFAULT));
+		bd.setLazyInit(Boolean.parseBoolean(properties.getProperty(prefix + "lazyInit")));
+		bd.setPrimary(Boolean.parseBoolean(properties.getProperty(prefix + "primary")));
+		bd.setAutowireCandidate(!"false".equals(properties.getProperty(prefix + "autowireCandidate")));
+		bd.setAutowireMode(Integer.parseInt(properties.getProperty(prefix + "autowireMode", "0")));
+		String dependsOn = properties.getProperty(prefix + "dependsOn");
+		if (dependsOn != null) {
+			bd.setDependsOn(StringUtils.commaDelimitedListToStringArray(dependsOn));
+		}
+		bd.setInitMethodName(properties.getProperty(prefix + "initMethod"));
+		bd.setDestroyMethodName(properties.getProperty(prefix + "destroyMethod"));
+		bd.setEnforceInitMethod(!"false".equals(properties.getProperty(prefix + "enforceInitMethod")));
+		bd.setEnforceDestroyMethod(!"false".equals(properties.getProperty(prefix + "enforceDestroyMethod")));
+		bd.setRole(Integer.parseInt(properties.getProperty(prefix + "role", "0")));
+		bd.setSynthetic(Boolean.parseBoolean(properties.getProperty(prefix + "synthetic")));
+		bd.setDescription(properties.getProperty(prefix + "description"));
+		bd.setResourceDescription(properties.getProperty(prefix + "resourceDescription"));
+
+		ConstructorArgumentValues args = bd.getConstructorArgumentValues();
+		MutablePropertyValues pvs = bd.getPropertyValues();
+		String attributePrefix = prefix + "attribute.";
+		String argPrefix = prefix + "arg.";
+		String genericArgPrefix = prefix + "genericArg.";
+		String propertyPrefix = prefix + "property.";
+		Map<Integer, Object> genericArgs = new TreeMap<>();
+		for (String key : properties.stringPropertyNames()) {
+			if (!key.startsWith(prefix)) {
+				continue;
+			}
+			String value = properties.getProperty(key);
+			if (key.startsWith(attributePrefix)) {
+				bd.setAttribute(key.substring(attributePrefix.length()), decode(beanName, value, false));
+			}
+			else if (key.startsWith(argPrefix)) {
+				args.addIndexedArgumentValue(Integer.parseInt(key.substring(argPrefix.length())), decode(beanName, value, true));
+			}
+			else if (key.startsWith(genericArgPrefix)) {
+				genericArgs.put(Integer.parseInt(key.substring(genericArgPrefix.length())), decode(beanName, value, true));
+			}
+			else if (key.startsWith(propertyPrefix)) {
+				pvs.add(key.substring(propertyPrefix.length()), decode(beanName, value, true));
+			}
+		}
+		genericArgs.values().forEach(args::addGenericArgumentValue);
+		return bd;
+	}
+
+	private static void setIfNotNull(Properties properties, String key, @Nullable String value) {
+		if (value != null) {
+			properties.setProperty(key, value);
+		}
+	}
+
+	private static String encode(String beanName, ValueHolder valueHolder) {
+		if (valueHolder.getType() != null || valueHolder.getName() != null) {
+			throw unsupported(beanName, "typed or named constructor argument");
+		}
+		return encode(beanName, valueHolder.getValue(), true);
+	}
+
+	private static String encode(String beanName, @Nullable Object value, boolean beanMetadata) {
+		if (value == null) {
+			return "null:";
+		}
+		if (value instanceof String) {
+			return "string:" + value;
+		}
+		if (value instanceof Boolean) {
+			return "boolean:" + value;
+		}
+		if (value instanceof Integer) {
+			return "int:" + value;
+		}
+		if (value instanceof Long) {
+			return "long:" + value;
+		}
+		if (beanMetadata) {
+			if (value instanceof Class) {
+				return "class:" + ((Class<?>) value).getName();
+			}
+			if (value instanceof RuntimeBeanReference && !((RuntimeBeanReference) value).isToParent()) {
+				return "ref:" + ((RuntimeBeanReference) value).getBeanName();
+			}
+			if (value instanceof TypedStringValue && !((TypedStringValue) value).hasTargetType() &&
+					((TypedStringValue) value).getTargetTypeName() == null && !((TypedStringValue) value).isDynamic()) {
+				String stringValue = ((TypedStringValue) value).getValue();
+				return (stringValue != null ? "value:" + stringValue : "null:");
+			}
+		}
+		throw unsupported(beanName, "value of type [" + value.getClass().getName() + "]");
+	}
+
+	@Nullable
+	private static Object decode(String beanName, String encoded, boolean beanMetadata) {
+		int separatorIndex = encoded.indexOf(':');
+		String type = (separatorIndex != -1 ? encoded.substring(0, separatorIndex) : "");
+		String value = encoded.substring(separatorIndex + 1);
+		switch (type) {
+			case "null":
+				return null;
+			case "string":
+				return value;
+			case "boolean":
+				return Boolean.valueOf(value);
+			case "int":
+				return Integer.valueOf(value);
+			case "long":
+				return Long.valueOf(value);
+			case "class":
+				if (beanMetadata) {
+					return new TypedStringValue(value, Class.class.getName());
+				}
+				break;
+			case "ref":
+				if (beanMetadata) {
+					return new RuntimeBeanReference(value);
+				}
+				break;
+			case "value":
+				if (beanMetadata) {
+					return new TypedStringValue(value);
+				}
+				break;
+		}
+		throw new IllegalStateException("Invalid value [" + encoded + "] for bean '" + beanName + "' in snapshot");
+	}
+
+	private static IllegalStateException unsupported(String beanName, String reason) {
+		return new IllegalStateException("Bean definition for bean '" + beanName +
+				"' cannot be captured in a snapshot: " + reason);
+	}
+
+	private static AnnotationMetadata getAnnotationMetadata(String className, MetadataReaderFactory metadataReaderFactory) {
+		try {
+			return metadataReaderFactory.getMetadataReader(className).getAnnotationMetadata();
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to read metadata of class [" + className + "]", ex);
+		}
+	}
+
+
+	/**
+	 * A captured bean definition, along with the configuration class that
+	 * declares its {@code @Bean} method, if any.
+	 */
+	private static class Entry {
+
+		final BeanDefinition beanDefinition;
+
+		@Nullable
+		final String factoryClassName;
+
+		Entry(BeanDefinition beanDefinition, @Nullable String factoryClassName) {
+			this.beanDefinition = beanDefinition;
+			this.factoryClassName = factoryClassName;
+		}
+
+		/**
+		 * Create a bean definition to register, restoring the {@code @Bean}
+		 * method metadata of a definition for a {@code @Bean} method.
+		 */
+		BeanDefinition createBeanDefinition(MetadataReaderFactory metadataReaderFactory) {
+			RootBeanDefinition bd = ((RootBeanDefinition) this.beanDefinition).cloneBeanDefinition();
+			String factoryMethodName = bd.getFactoryMethodName();
+			if (this.factoryClassName == null || factoryMethodName == null) {
+				return bd;
+			}
+			AnnotationMetadata configClassMetadata = getAnnotationMetadata(this.factoryClassName, metadataReaderFactory);
+			MethodMetadata beanMethodMetadata = null;
+			AnnotationMetadata metadata = configClassMetadata;
+			while (beanMethodMetadata == null) {
+				beanMethodMetadata = getBeanMethod(metadata, factoryMethodName);
+				String superClassName = metadata.getSuperClassName();
+				if (beanMethodMetadata == null) {
+					if (superClassName == null || superClassName.startsWith("java")) {
+						throw new IllegalStateException("No @Bean method '" + factoryMethodName +
+								"' found in class [" + this.factoryClassName + "] or its superclasses");
+					}
+					metadata = getAnnotationMetadata(superClassName, metadataReaderFactory);
+				}
+			}
+			// As registered by ConfigurationClassBeanDefinitionReader
+			if (!beanMethodMetadata.isStatic()) {
+				bd.setUniqueFactoryMethodName(factoryMethodName);
+			}
+			bd.setLenientConstructorResolution(false);
+			return new ConfigurationClassBeanDefinition(bd, configClassMetadata, beanMethodMetadata);
+		}
+	}
+
+
+	/**
+	 * {@link ImportRegistry} backed by the captured imports, in support of
+	 * {@link ImportAware} configuration classes.
+	 */
+	private static class SnapshotImportRegistry implements ImportRegistry {
+
+		private final Map<String, String> imports;
+
+		private final MetadataReaderFactory metadataReaderFactory;
+
+		SnapshotImportRegistry(Map<String, String> imports, MetadataReaderFactory metadataReaderFactory) {
+			this.imports = new ConcurrentHashMap<>(imports);
+			this.metadataReaderFactory = metadataReaderFactory;
+		}
+
+		@Override
+		@Nullable
+		public AnnotationMetadata getImportingClassFor(String importedClass) {
+			String importingClass = this.imports.get(importedClass);
+			return (importingClass != null ? getAnnotationMetadata(importingClass, this.metadataReaderFactory) : null);
+		}
+
+		@Override
+		public void removeImportingClass(String importingClass) {
+			this.imports.values().removeIf(importingClass::equals);
+		}
+	}
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.context.annotation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.BeanNameGenerator;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Build-time processor that evaluates {@link Configuration @Configuration},
+ * {@link Import @Import} and {@link ComponentScan @ComponentScan} declarations
+ * for a set of component classes and captures the resulting bean definitions
+ * as a {@link BeanDefinitionSnapshot}.
+ *
+ * <p>The snapshot is meant to be written to the output directory of the
+ * application's resources, e.g. through the {@link #main} method as part of
+ * the build, so that {@link AnnotationConfigApplicationContext} and other
+ * contexts based on {@link ConfigurationClassPostProcessor} can register the
+ * captured bean definitions at runtime instead of parsing the configuration
+ * classes and scanning the classpath.
+ *
+ * <p>The configuration classes are processed against the {@link #setEnvironment
+ * environment} of the generator: in particular, the profiles to activate can be
+ * specified through the "spring.profiles.active" system property.
+ *
+ * @since 5.1
+ * @see BeanDefinitionSnapshot
+ */
+public class BeanDefinitionSnapshotGenerator {
+
+	@Nullable
+	private final ClassLoader classLoader;
+
+	private ConfigurableEnvironment environment = new StandardEnvironment();
+
+	@Nullable
+	private BeanNameGenerator beanNameGenerator;
+
+
+	/**
+	 * Create a new generator using the default class loader.
+	 */
+	public BeanDefinitionSnapshotGenerator() {
+		this(ClassUtils.getDefaultClassLoader());
+	}
+
+	/**
+	 * Create a new generator using the given class loader.
+	 * @param classLoader the ClassLoader to load classes and resources with
+	 */
+	public BeanDefinitionSnapshotGenerator(@Nullable ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+
+	/**
+	 * Set the environment to evaluate configuration classes against.
+	 * <p>Default is a {@link StandardEnvironment}.
+	 */
+	public void setEnvironment(ConfigurableEnvironment environment) {
+		Assert.notNull(environment, "Environment must not be null");
+		this.environment = environment;
+	}
+
+	/**
+	 * Set the {@link BeanNameGenerator} to use for component classes and for
+	 * scanned and imported components, matching the one configured on the
+	 * application context at runtime, if any.
+	 * @see AnnotationConfigApplicationContext#setBeanNameGenerator
+	 */
+	public void setBeanNameGenerator(@Nullable BeanNameGenerator beanNameGenerator) {
+		this.beanNameGenerator = beanNameGenerator;
+	}
+
+
+	/**
+	 * Generate a snapshot for the given component classes.
+	 * @param componentClassNames the names of the component classes, as they
+	 * are registered with the application context at runtime
+	 * @return the snapshot
+	 * @throws ClassNotFoundException if a component class cannot be found
+	 * @throws IllegalStateException if a resulting bean definition cannot be captured
+	 */
+	public BeanDefinitionSnapshot generate(String... componentClassNames) throws ClassNotFoundException {
+		Class<?>[] componentClasses = new Class<?>[componentClassNames.length];
+		for (int i = 0; i < componentClassNames.length; i++) {
+			componentClasses[i] = ClassUtils.forName(componentClassNames[i], this.classLoader);
+		}
+		return generate(componentClasses);
+	}
+
+	/**
+	 * Generate a snapshot for the given component classes.
+	 * @param componentClasses the component classes, as they are registered
+	 * with the application context at runtime
+	 * @return the snapshot
+	 * @throws IllegalStateException if a resulting bean definition cannot be captured
+	 */
+	public BeanDefinitionSnapshot generate(Class<?>... componentClasses) {
+		Assert.notEmpty(componentClasses, "At least one component class must be specified");
+
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.setBeanClassLoader(this.classLoader);
+		// Let each ConditionEvaluator record its outcomes
+		Map<String, Boolean> conditionOutcomes = new LinkedHashMap<>();
+		beanFactory.registerSingleton(BeanDefinitionSnapshot.CONDITION_OUTCOMES_BEAN_NAME, conditionOutcomes);
+		AnnotatedBeanDefinitionReader reader = new AnnotatedBeanDefinitionReader(beanFactory, this.environment);
+		if (this.beanNameGenerator != null) {
+			reader.setBeanNameGenerator(this.beanNameGenerator);
+			beanFactory.registerSingleton(AnnotationConfigUtils.CONFIGURATION_BEAN_NAME_GENERATOR, this.beanNameGenerator);
+		}
+		reader.register(componentClasses);
+		Set<String> existingBeanNames = new HashSet<>(Arrays.asList(beanFactory.getBeanDefinitionNames()));
+
+		ConfigurationClassPostProcessor postProcessor = new ConfigurationClassPostProcessor();
+		postProcessor.setUseBeanDefinitionSnapshot(false);
+		postProcessor.setEnvironment(this.environment);
+		postProcessor.setResourceLoader(new DefaultResourceLoader(this.classLoader));
+		postProcessor.setBeanClassLoader(this.classLoader);
+		postProcessor.postProcessBeanDefinitionRegistry(beanFactory);
+
+		List<String> rootClassNames = new ArrayList<>();
+		for (String beanName : existingBeanNames) {
+			BeanDefinition beanDefinition = beanFactory.getBeanDefinition(beanName);
+			if (ConfigurationClassUtils.isFullConfigurationClass(beanDefinition) ||
+					ConfigurationClassUtils.isLiteConfigurationClass(beanDefinition)) {
+				rootClassNames.add(beanDefinition.getBeanClassName());
+			}
+		}
+		Assert.state(!rootClassNames.isEmpty(), "No configuration classes found in " + Arrays.asList(componentClasses));
+
+		ImportRegistry importRegistry = (ImportRegistry)
+				beanFactory.getSingleton(ConfigurationClassPostProcessor.IMPORT_REGISTRY_BEAN_NAME);
+		Assert.state(importRegistry != null, "No ImportRegistry registered");
+
+		BeanDefinitionSnapshot snapshot = new BeanDefinitionSnapshot(rootClassNames);
+		for (String beanName : beanFactory.getBeanDefinitionNames()) {
+			if (!existingBeanNames.contains(beanName)) {
+				BeanDefinition beanDefinition = beanFactory.getBeanDefinition(beanName);
+				addImports(beanDefinition, importRegistry, snapshot);
+				snapshot.addBeanDefinition(beanName, beanDefinition);
+			}
+		}
+		snapshot.addConditionOutcomes(conditionOutcomes);
+		ClassLoader classLoader = (this.classLoader != null ? this.classLoader : ClassUtils.getDefaultClassLoader());
+		for (String className : snapshot.getSourceClassNames()) {
+			snapshot.addClassDigest(className, classLoader);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Register the imports of the declaring class of the given bean definition,
+	 * and of its importing classes, with the snapshot.
+	 */
+	private void addImports(BeanDefinition beanDefinition, ImportRegistry importRegistry,
+			BeanDefinitionSnapshot snapshot) {
+
+		AnnotationMetadata metadata = null;
+		if (beanDefinition instanceof AnnotatedBeanDefinition) {
+			metadata = ((AnnotatedBeanDefinition) beanDefinition).getMetadata();
+		}
+		else if (beanDefinition.getBeanClassName() != null) {
+			// Not annotated, but possibly an imported class
+			metadata = importRegistry.getImportingClassFor(beanDefinition.getBeanClassName());
+			if (metadata != null) {
+				snapshot.addImport(beanDefinition.getBeanClassName(), metadata.getClassName());
+			}
+		}
+		Set<String> visited = new HashSet<>();
+		while (metadata != null && visited.add(metadata.getClassName())) {
+			AnnotationMetadata importingClass = importRegistry.getImportingClassFor(metadata.getClassName());
+			if (importingClass != null) {
+				snapshot.addImport(metadata.getClassName(), importingClass.getClassName());
+			}
+			metadata = importingClass;
+		}
+	}
+
+	/**
+	 * Write the given snapshot to its {@linkplain BeanDefinitionSnapshot#getResourceLocation
+	 * location} within the given output directory.
+	 * @param snapshot the snapshot to write
+	 * @param outputDirectory the root directory of the classpath resources
+	 * @return the written file
+	 * @throws IOException in case of I/O errors
+	 */
+	public File writeSnapshot(BeanDefinitionSnapshot snapshot, File outputDirectory) throws IOException {
+		File file = new File(outputDirectory, BeanDefinitionSnapshot.getResourceLocation(snapshot.getRootClassNames()));
+		File parent = file.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Unable to create directory " + parent);
+		}
+		try (OutputStream outputStream = new FileOutputStream(file)) {
+			snapshot.store(outputStream);
+		}
+		return file;
+	}
+
+
+	/**
+	 * Generate a snapshot and write it to the output directory, for use as part
+	 * of a build.
+	 * @param args the output directory (the root of the classpath resources),
+	 * followed by the names of the component classes
+	 * @throws Exception if the snapshot cannot be generated or written
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			throw new IllegalArgumentException(
+					"Usage: BeanDefinitionSnapshotGenerator <outputDirectory> <componentClass>...");
+		}
+		BeanDefinitionSnapshotGenerator generator = new BeanDefinitionSnapshotGenerator();
+		BeanDefinitionSnapshot snapshot = generator.generate(Arrays.copyOfRange(args, 1, args.length));
+		generator.writeSnapshot(snapshot, new File(args[0]));
+	}
+
+}
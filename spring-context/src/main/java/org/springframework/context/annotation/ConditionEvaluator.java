@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.context.annotation;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
@@ -49,6 +50,9 @@ class ConditionEvaluator {
 
 	private final ConditionContextImpl context;
 
+	@Nullable
+	private final Map<String, Boolean> conditionOutcomes;
+
 
 	/**
 	 * Create a new {@link ConditionEvaluator} instance.
@@ -57,6 +61,7 @@ class ConditionEvaluator {
 			@Nullable Environment environment, @Nullable ResourceLoader resourceLoader) {
 
 		this.context = new ConditionContextImpl(registry, environment, resourceLoader);
+		this.conditionOutcomes = BeanDefinitionSnapshot.getConditionOutcomeRecorder(registry);
 	}
 
 
@@ -100,6 +105,7 @@ class ConditionEvaluator {
 
 		AnnotationAwareOrderComparator.sort(conditions);
 
+		boolean skip = false;
 		for (Condition condition : conditions) {
 			ConfigurationPhase requiredPhase = null;
 			if (condition instanceof ConfigurationCondition) {
@@ -107,12 +113,17 @@ class ConditionEvaluator {
 			}
 			if (requiredPhase == null || requiredPhase == phase) {
 				if (!condition.matches(this.context, metadata)) {
-					return true;
+					skip = true;
+					break;
 				}
 			}
 		}
 
-		return false;
+		if (this.conditionOutcomes != null) {
+			// Generating a snapshot: record the outcome for re-evaluation at runtime
+			BeanDefinitionSnapshot.recordConditionOutcome(this.conditionOutcomes, metadata, phase, skip);
+		}
+		return skip;
 	}
 
 	@SuppressWarnings("unchecked")
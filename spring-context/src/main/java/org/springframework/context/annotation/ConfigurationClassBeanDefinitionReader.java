@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -368,7 +368,7 @@ class ConfigurationClassBeanDefinitionReader {
 	 * definition was created externally.
 	 */
 	@SuppressWarnings("serial")
-	private static class ConfigurationClassBeanDefinition extends RootBeanDefinition implements AnnotatedBeanDefinition {
+	static class ConfigurationClassBeanDefinition extends RootBeanDefinition implements AnnotatedBeanDefinition {
 
 		private final AnnotationMetadata annotationMetadata;
 
@@ -382,8 +382,13 @@ class ConfigurationClassBeanDefinitionReader {
 
 		public ConfigurationClassBeanDefinition(
 				RootBeanDefinition original, ConfigurationClass configClass, MethodMetadata beanMethodMetadata) {
+			this(original, configClass.getMetadata(), beanMethodMetadata);
+		}
+
+		ConfigurationClassBeanDefinition(RootBeanDefinition original,
+				AnnotationMetadata configClassMetadata, MethodMetadata beanMethodMetadata) {
 			super(original);
-			this.annotationMetadata = configClass.getMetadata();
+			this.annotationMetadata = configClassMetadata;
 			this.factoryMethodMetadata = beanMethodMetadata;
 		}
 
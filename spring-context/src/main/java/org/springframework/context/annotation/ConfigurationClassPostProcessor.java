@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -53,6 +53,7 @@ import org.springframework.context.ResourceLoaderAware;
 import org.springframework.context.annotation.ConfigurationClassEnhancer.EnhancedConfiguration;
 import org.springframework.core.Ordered;
 import org.springframework.core.PriorityOrdered;
+import org.springframework.core.SpringProperties;
 import org.springframework.core.env.Environment;
 import org.springframework.core.env.StandardEnvironment;
 import org.springframework.core.io.DefaultResourceLoader;
@@ -87,7 +88,7 @@ import static org.springframework.context.annotation.AnnotationConfigUtils.*;
 public class ConfigurationClassPostProcessor implements BeanDefinitionRegistryPostProcessor,
 		PriorityOrdered, ResourceLoaderAware, BeanClassLoaderAware, EnvironmentAware {
 
-	private static final String IMPORT_REGISTRY_BEAN_NAME =
+	static final String IMPORT_REGISTRY_BEAN_NAME =
 			ConfigurationClassPostProcessor.class.getName() + ".importRegistry";
 
 
@@ -118,6 +119,9 @@ public class ConfigurationClassPostProcessor implements BeanDefinitionRegistryPo
 
 	private boolean localBeanNameGeneratorSet = false;
 
+	private boolean useBeanDefinitionSnapshot =
+			SpringProperties.getFlag(BeanDefinitionSnapshot.USE_SNAPSHOT_PROPERTY_NAME);
+
 	/* Using short class names as default bean names */
 	private BeanNameGenerator componentScanBeanNameGenerator = new AnnotationBeanNameGenerator();
 
@@ -190,6 +194,22 @@ public class ConfigurationClassPostProcessor implements BeanDefinitionRegistryPo
 		this.importBeanNameGenerator = beanNameGenerator;
 	}
 
+	/**
+	 * Set whether to register the bean definitions of a {@link BeanDefinitionSnapshot}
+	 * for the configuration classes in the registry if one is available, instead
+	 * of parsing them.
+	 * <p>Default is "false", unless the "spring.snapshot.enabled" system property
+	 * is set to "true". A snapshot is only used if it is up to date with the
+	 * classes it was generated from and if all conditions evaluated at build time
+	 * still have the same outcome; otherwise the configuration classes are parsed.
+	 * @since 5.1
+	 * @see BeanDefinitionSnapshot#loadSnapshot
+	 * @see BeanDefinitionSnapshot#USE_SNAPSHOT_PROPERTY_NAME
+	 */
+	public void setUseBeanDefinitionSnapshot(boolean useBeanDefinitionSnapshot) {
+		this.useBeanDefinitionSnapshot = useBeanDefinitionSnapshot;
+	}
+
 	@Override
 	public void setEnvironment(Environment environment) {
 		Assert.notNull(environment, "Environment must not be null");
@@ -305,6 +325,11 @@ public class ConfigurationClassPostProcessor implements BeanDefinitionRegistryPo
 			this.environment = new StandardEnvironment();
 		}
 
+		// Register the bean definitions of a snapshot for the same configuration classes, if available
+		if (this.useBeanDefinitionSnapshot && registerSnapshotBeanDefinitions(registry, configCandidates, sbr)) {
+			return;
+		}
+
 		// Parse each @Configuration class
 		ConfigurationClassParser parser = new ConfigurationClassParser(
 				this.metadataReaderFactory, this.problemReporter, this.environment,
@@ -364,6 +389,36 @@ public class ConfigurationClassPostProcessor implements BeanDefinitionRegistryPo
 		}
 	}
 
+	private boolean registerSnapshotBeanDefinitions(BeanDefinitionRegistry registry,
+			List<BeanDefinitionHolder> configCandidates, @Nullable SingletonBeanRegistry sbr) {
+
+		Set<String> rootClassNames = new LinkedHashSet<>();
+		for (BeanDefinitionHolder holder : configCandidates) {
+			rootClassNames.add(holder.getBeanDefinition().getBeanClassName());
+		}
+		BeanDefinitionSnapshot snapshot = BeanDefinitionSnapshot.loadSnapshot(this.beanClassLoader, rootClassNames);
+		if (snapshot == null) {
+			return false;
+		}
+
+		ConditionEvaluator conditionEvaluator = new ConditionEvaluator(registry, this.environment, this.resourceLoader);
+		if (!snapshot.conditionsMatch(conditionEvaluator, this.metadataReaderFactory)) {
+			if (logger.isInfoEnabled()) {
+				logger.info("Ignoring bean definition snapshot for " + rootClassNames +
+						" since conditions evaluate differently at runtime");
+			}
+			return false;
+		}
+		snapshot.validate(this.problemReporter, this.metadataReaderFactory);
+		snapshot.registerBeanDefinitions(registry, this.metadataReaderFactory);
+		if (sbr != null) {
+			if (!sbr.containsSingleton(IMPORT_REGISTRY_BEAN_NAME)) {
+				sbr.registerSingleton(IMPORT_REGISTRY_BEAN_NAME, snapshot.getImportRegistry(this.metadataReaderFactory));
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Post-processes a BeanFactory in search of Configuration class BeanDefinitions;
 	 * any candidates are then enhanced by a {@link ConfigurationClassEnhancer}.
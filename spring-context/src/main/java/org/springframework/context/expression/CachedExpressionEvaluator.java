@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,28 +16,75 @@
 
 package org.springframework.context.expression;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.core.DefaultParameterNameDiscoverer;
 import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.SpringProperties;
 import org.springframework.expression.Expression;
+import org.springframework.expression.MethodResolver;
+import org.springframework.expression.PropertyAccessor;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.ReflectiveMethodResolver;
+import org.springframework.expression.spel.support.ReflectivePropertyAccessor;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
+import org.springframework.util.ConcurrentReferenceHashMap;
 import org.springframework.util.ObjectUtils;
 
 /**
  * Shared utility class used to evaluate and cache SpEL expressions that
  * are defined on {@link java.lang.reflect.AnnotatedElement}.
  *
+ * <p>By default, expressions are parsed according to the global
+ * {@code spring.expression.compiler.mode} setting. The compiler mode for
+ * annotation-driven expressions (e.g. cache keys and conditions, event
+ * listener conditions) may be set separately through the
+ * {@value #COMPILER_MODE_PROPERTY_NAME} property, typically to
+ * {@link SpelCompilerMode#MIXED} so that frequently evaluated expressions
+ * get compiled to bytecode after warm-up while falling back to interpretation
+ * whenever compiled code cannot handle a particular invocation.
+ *
+ * <p>Evaluation contexts prepared through {@link #prepareEvaluationContext}
+ * share their reflective property accessor and method resolver, so that
+ * property and method lookups get resolved once per evaluator rather than
+ * once per evaluation.
+ *
  * @author Stephane Nicoll
  * @since 4.2
  * @see AnnotatedElementKey
  */
 public abstract class CachedExpressionEvaluator {
 
+	/**
+	 * System property that determines the {@link SpelCompilerMode} for expressions
+	 * parsed by evaluators created with the default constructor: {@code off},
+	 * {@code immediate} or {@code mixed} (case-insensitive).
+	 * <p>If not specified, the global {@code spring.expression.compiler.mode}
+	 * setting applies.
+	 * @since 5.1
+	 * @see SpelParserConfiguration
+	 */
+	public static final String COMPILER_MODE_PROPERTY_NAME = "spring.context.expression.compiler.mode";
+
+
 	private final SpelExpressionParser parser;
 
-	private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+	private final ParameterNameDiscoverer parameterNameDiscoverer =
+			new CachingParameterNameDiscoverer(new DefaultParameterNameDiscoverer());
+
+	private final List<PropertyAccessor> propertyAccessors =
+			Collections.singletonList(new ReflectivePropertyAccessor());
+
+	private final List<MethodResolver> methodResolvers =
+			Collections.singletonList(new ReflectiveMethodResolver());
 
 
 	/**
@@ -48,11 +95,21 @@ public abstract class CachedExpressionEvaluator {
 		this.parser = parser;
 	}
 
+	/**
+	 * Create a new instance with a {@link SpelExpressionParser} using the
+	 * specified {@link SpelCompilerMode}.
+	 * @since 5.1
+	 */
+	protected CachedExpressionEvaluator(SpelCompilerMode compilerMode) {
+		this(new SpelExpressionParser(new SpelParserConfiguration(compilerMode, null)));
+	}
+
 	/**
 	 * Create a new instance with a default {@link SpelExpressionParser}.
+	 * @see #COMPILER_MODE_PROPERTY_NAME
 	 */
 	protected CachedExpressionEvaluator() {
-		this(new SpelExpressionParser());
+		this(createDefaultParser());
 	}
 
 
@@ -71,6 +128,20 @@ public abstract class CachedExpressionEvaluator {
 		return this.parameterNameDiscoverer;
 	}
 
+	/**
+	 * Prepare the specified evaluation context for use with the expressions
+	 * of this evaluator, sharing the property accessor and method resolver
+	 * (along with their resolution caches) between all such contexts.
+	 * <p>Contexts prepared this way do not support the registration of
+	 * further property accessors or method resolvers.
+	 * @param evaluationContext a freshly created evaluation context
+	 * @since 5.1
+	 */
+	protected void prepareEvaluationContext(StandardEvaluationContext evaluationContext) {
+		evaluationContext.setPropertyAccessors(this.propertyAccessors);
+		evaluationContext.setMethodResolvers(this.methodResolvers);
+	}
+
 
 	/**
 	 * Return the {@link Expression} for the specified SpEL value
@@ -96,6 +167,16 @@ public abstract class CachedExpressionEvaluator {
 	}
 
 
+	private static SpelExpressionParser createDefaultParser() {
+		String compilerMode = SpringProperties.getProperty(COMPILER_MODE_PROPERTY_NAME);
+		if (compilerMode == null) {
+			return new SpelExpressionParser();
+		}
+		return new SpelExpressionParser(new SpelParserConfiguration(
+				SpelCompilerMode.valueOf(compilerMode.toUpperCase()), null));
+	}
+
+
 	protected static class ExpressionKey implements Comparable<ExpressionKey> {
 
 		private final AnnotatedElementKey element;
@@ -142,4 +223,40 @@ public abstract class CachedExpressionEvaluator {
 		}
 	}
 
+
+	/**
+	 * {@link ParameterNameDiscoverer} decorator which keeps the discovered
+	 * parameter names per method, avoiding repeated introspection for every
+	 * evaluation context that exposes method arguments.
+	 */
+	private static class CachingParameterNameDiscoverer implements ParameterNameDiscoverer {
+
+		private static final String[] NO_NAMES = new String[0];
+
+		private final ParameterNameDiscoverer delegate;
+
+		private final Map<Method, String[]> parameterNamesCache = new ConcurrentReferenceHashMap<>(64);
+
+		CachingParameterNameDiscoverer(ParameterNameDiscoverer delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		@Nullable
+		public String[] getParameterNames(Method method) {
+			String[] names = this.parameterNamesCache.get(method);
+			if (names == null) {
+				names = this.delegate.getParameterNames(method);
+				this.parameterNamesCache.put(method, (names != null ? names : NO_NAMES));
+			}
+			return (names != NO_NAMES ? names : null);
+		}
+
+		@Override
+		@Nullable
+		public String[] getParameterNames(Constructor<?> ctor) {
+			return this.delegate.getParameterNames(ctor);
+		}
+	}
+
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.concurrent;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.CacheStatistics;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link BoundedConcurrentMapCacheManager}.
+ */
+public class BoundedConcurrentMapCacheManagerTests {
+
+	@Test
+	public void dynamicMode() {
+		BoundedConcurrentMapCacheManager cm = new BoundedConcurrentMapCacheManager();
+		Cache cache1 = cm.getCache("c1");
+		assertTrue(cache1 instanceof BoundedConcurrentMapCache);
+		assertSame(cache1, cm.getCache("c1"));
+		Cache cache2 = cm.getCache("c2");
+		assertNotSame(cache1, cache2);
+		assertTrue(cm.getCacheNames().contains("c2"));
+
+		cache1.put("key1", "value1");
+		assertEquals("value1", cache1.get("key1").get());
+		cache1.put("key2", null);
+		assertNull(cache1.get("key2").get());
+	}
+
+	@Test
+	public void staticMode() {
+		BoundedConcurrentMapCacheManager cm = new BoundedConcurrentMapCacheManager("c1", "c2");
+		assertNotNull(cm.getCache("c1"));
+		assertNull(cm.getCache("c3"));
+
+		cm.setCacheNames(null);
+		assertNotNull(cm.getCache("c3"));
+	}
+
+	@Test
+	public void changeSettingsRecreatesCaches() {
+		BoundedConcurrentMapCacheManager cm = new BoundedConcurrentMapCacheManager("c1");
+		Cache cache = cm.getCache("c1");
+		cm.setMaximumSize(10);
+		Cache recreated = cm.getCache("c1");
+		assertNotSame(cache, recreated);
+		assertEquals(10, ((BoundedConcurrentMapCache) recreated).getMaximumSize());
+
+		cm.setAllowNullValues(false);
+		assertFalse(((BoundedConcurrentMapCache) cm.getCache("c1")).isAllowNullValues());
+	}
+
+	@Test
+	public void cacheStatistics() {
+		BoundedConcurrentMapCacheManager cm = new BoundedConcurrentMapCacheManager("c1", "c2");
+		cm.setMaximumSize(2);
+		cm.setRecordStatistics(true);
+		Cache cache = cm.getCache("c1");
+		cache.put("key1", "value1");
+		cache.put("key2", "value2");
+		cache.put("key3", "value3");
+		cache.get("key3");
+		cache.get("key1");
+
+		CacheStatistics statistics = cm.getCacheStatistics("c1");
+		assertEquals(1, statistics.getHitCount());
+		assertEquals(1, statistics.getMissCount());
+		assertEquals(1, statistics.getEvictionCount());
+		Map<String, CacheStatistics> allStatistics = cm.getCacheStatistics();
+		assertEquals(2, allStatistics.size());
+		assertEquals(statistics, allStatistics.get("c1"));
+		assertEquals(CacheStatistics.EMPTY, allStatistics.get("c2"));
+		assertNull(cm.getCacheStatistics("c3"));
+	}
+
+}
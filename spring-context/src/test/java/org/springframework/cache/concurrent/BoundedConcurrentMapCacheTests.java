@@ -0,0 +1,323 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.concurrent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cache.AbstractValueAdaptingCacheTests;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.CacheStatistics;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link BoundedConcurrentMapCache}.
+ */
+public class BoundedConcurrentMapCacheTests extends AbstractValueAdaptingCacheTests<BoundedConcurrentMapCache> {
+
+	private final AtomicLong time = new AtomicLong();
+
+	private BoundedConcurrentMapCache cache;
+
+	private BoundedConcurrentMapCache cacheNoNull;
+
+
+	@Before
+	public void setUp() {
+		this.cache = BoundedConcurrentMapCache.builder(CACHE_NAME).maximumSize(1000).build();
+		this.cacheNoNull = BoundedConcurrentMapCache.builder(CACHE_NAME_NO_NULL).allowNullValues(false).build();
+	}
+
+	@Override
+	protected BoundedConcurrentMapCache getCache() {
+		return getCache(true);
+	}
+
+	@Override
+	protected BoundedConcurrentMapCache getCache(boolean allowNull) {
+		return (allowNull ? this.cache : this.cacheNoNull);
+	}
+
+	@Override
+	protected Object getNativeCache() {
+		return this.cache;
+	}
+
+
+	@Test
+	public void maximumSize() {
+		BoundedConcurrentMapCache cache = BoundedConcurrentMapCache.builder("bounded").maximumSize(100).build();
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i, "value" + i);
+		}
+		assertEquals(100, cache.estimatedSize());
+		assertNotNull(cache.get(999));
+		assertNull(cache.get(0));
+	}
+
+	@Test
+	public void maximumSizeSpreadOverSegments() {
+		BoundedConcurrentMapCache cache = BoundedConcurrentMapCache.builder("bounded").maximumSize(10000).build();
+		for (int i = 0; i < 100000; i++) {
+			cache.put("key" + i, i);
+		}
+		assertTrue(cache.estimatedSize() <= 10000);
+		assertTrue(cache.estimatedSize() > 9000);
+	}
+
+	@Test
+	public void zeroMaximumSize() {
+		BoundedConcurrentMapCache cache = BoundedConcurrentMapCache.builder("disabled").maximumSize(0).build();
+		cache.put("key", "value");
+		assertNull(cache.get("key"));
+		assertEquals("loaded", cache.get("key", () -> "loaded"));
+		assertEquals(0, cache.estimatedSize());
+	}
+
+	@Test
+	public void frequentlyUsedEntriesSurviveScan() {
+		BoundedConcurrentMapCache cache = BoundedConcurrentMapCache.builder("scan").maximumSize(10).build();
+		for (int i = 0; i < 5; i++) {
+			cache.put("hot" + i, i);
+			cache.get("hot" + i);
+		}
+		for (int i = 0; i < 100; i++) {
+			cache.put("scan" + i, i);
+		}
+		for (int i = 0; i < 5; i++) {
+			assertEquals(i, cache.get("hot" + i).get());
+		}
+		assertEquals(10, cache.estimatedSize());
+	}
+
+	@Test
+	public void expireAfterWrite() {
+		BoundedConcurrentMapCache cache = BoundedConcurrentMapCache.builder("expiring")
+				.expireAfterWrite(Duration.ofSeconds(10)).recordStatistics().ticker(this.time::get).build();
+		cache.put("key", "value");
+		this.time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		assertEquals("value", cache.get("key").get());
+		this.time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		assertNull(cache.get("key"));
+		assertEquals(0, cache.estimatedSize());
+		assertEquals(1, cache.getStatistics().getEvictionCount());
+	}
+
+	@Test
+	public void expireAfterAccess() {
+		BoundedConcurrentMapCache cache = BoundedConcurrentMapCache.builder("expiring")
+				.expireAfterAccess(Duration.ofSeconds(10)).ticker(this.time::get).build();
+		cache.put("key", "value");
+		for (int i = 0; i < 5; i++) {
+			this.time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+			assertEquals("value", cache.get("key").get());
+		}
+		this.time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+		assertNull(cache.get("key"));
+	}
+
+	@Test
+	public void expiredEntriesRemovedOnWrite() {
+		BoundedConcurrentMapCache cache = BoundedConcurrentMapCache.builder("expiring").concurrencyLevel(1)
+				.expireAfterWrite(Duration.ofSeconds(10)).ticker(this.time::get).build();
+		cache.put("key1", "value1");
+		cache.put("key2", "value2");
+		this.time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+		cache.put("key3", "value3");
+		assertEquals(1, cache.estimatedSize());
+	}
+
+	@Test
+	public void cleanUp() {
+		BoundedConcurrentMapCache cache = BoundedConcurrentMapCache.builder("expiring")
+				.expireAfterWrite(Duration.ofSeconds(10)).ticker(this.time::get).build();
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, i);
+		}
+		this.time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+		assertEquals(100, cache.estimatedSize());
+		cache.cleanUp();
+		assertEquals(0, cache.estimatedSize());
+	}
+
+	@Test
+	public void putIfAbsentReplacesExpiredEntry() {
+		BoundedConcurrentMapCache cache = BoundedConcurrentMapCache.builder("expiring")
+				.expireAfterWrite(Duration.ofSeconds(10)).ticker(this.time::get).build();
+		cache.put("key", "value1");
+		assertEquals("value1", cache.putIfAbsent("key", "value2").get());
+		this.time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+		assertNull(cache.putIfAbsent("key", "value2"));
+		assertEquals("value2", cache.get("key").get());
+	}
+
+	@Test
+	public void weakValues() throws Exception {
+		BoundedConcurrentMapCache cache = BoundedConcurrentMapCache.builder("weak")
+				.valueStrength(BoundedConcurrentMapCache.ValueStrength.WEAK).build();
+		Object value = new Object();
+		cache.put("key", value);
+		assertSame(value, cache.get("key").get());
+		cache.put("null", null);
+
+		value = null;
+		for (int i = 0; i < 20 && cache.get("key") != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(cache.get("key"));
+		assertNotNull(cache.get("null"));
+	}
+
+	@Test
+	public void statistics() {
+		BoundedConcurrentMapCache cache = BoundedConcurrentMapCache.builder("stats").maximumSize(1)
+				.recordStatistics().ticker(this.time::get).build();
+		assertNull(cache.get("key"));
+		assertEquals("value", cache.get("key", () -> {
+			this.time.addAndGet(100);
+			return "value";
+		}));
+		assertEquals("value", cache.get("key").get());
+		try {
+			cache.get("other", () -> {
+				throw new IllegalStateException();
+			});
+			fail("Should have thrown ValueRetrievalException");
+		}
+		catch (Cache.ValueRetrievalException ex) {
+			// expected
+		}
+		cache.put("other", "value");
+
+		CacheStatistics statistics = cache.getStatistics();
+		assertEquals(1, statistics.getHitCount());
+		assertEquals(3, statistics.getMissCount());
+		assertEquals(1, statistics.getLoadSuccessCount());
+		assertEquals(1, statistics.getLoadFailureCount());
+		assertEquals(100, statistics.getTotalLoadTime());
+		assertEquals(1, statistics.getEvictionCount());
+		assertEquals(0.25, statistics.getHitRate(), 0.0);
+	}
+
+	@Test
+	public void statisticsNotRecordedByDefault() {
+		this.cache.get("key");
+		assertSame(CacheStatistics.EMPTY, this.cache.getStatistics());
+	}
+
+	@Test
+	public void refreshAhead() {
+		List<Runnable> refreshes = new ArrayList<>();
+		BoundedConcurrentMapCache cache = BoundedConcurrentMapCache.builder("refreshing")
+				.ticker(this.time::get).build();
+		AtomicInteger loads = new AtomicInteger();
+		Duration refreshAfter = Duration.ofSeconds(10);
+
+		assertEquals(0, (int) cache.get("key", loads::getAndIncrement, refreshAfter, refreshes::add));
+		this.time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		assertEquals(0, (int) cache.get("key", loads::getAndIncrement, refreshAfter, refreshes::add));
+		assertTrue(refreshes.isEmpty());
+
+		this.time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		assertEquals(0, (int) cache.get("key", loads::getAndIncrement, refreshAfter, refreshes::add));
+		assertEquals(0, (int) cache.get("key", loads::getAndIncrement, refreshAfter, refreshes::add));
+		assertEquals("Only one refresh at a time", 1, refreshes.size());
+
+		refreshes.get(0).run();
+		assertEquals(1, (int) cache.get("key", loads::getAndIncrement, refreshAfter, refreshes::add));
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void failedRefreshKeepsCurrentValue() {
+		List<Runnable> refreshes = new ArrayList<>();
+		BoundedConcurrentMapCache cache = BoundedConcurrentMapCache.builder("refreshing")
+				.ticker(this.time::get).build();
+		Duration refreshAfter = Duration.ofSeconds(10);
+		cache.put("key", "value");
+
+		this.time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+		assertEquals("value", cache.get("key", () -> {
+			throw new IllegalStateException("Expected failure");
+		}, refreshAfter, refreshes::add));
+		refreshes.get(0).run();
+		assertEquals("value", cache.get("key").get());
+
+		assertEquals("value", cache.get("key", () -> "refreshed", refreshAfter, Runnable::run));
+		assertEquals("refreshed", cache.get("key").get());
+	}
+
+	@Test
+	public void concurrentLoadsForSameKeyCoalesced() throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread loader = new Thread(() -> this.cache.get("key", () -> {
+			loads.incrementAndGet();
+			loading.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return "value";
+		}));
+		loader.start();
+		assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+		// Other keys are not blocked by the ongoing load
+		assertEquals("other", this.cache.get("other", () -> "other"));
+
+		Thread waiter = new Thread(() -> assertEquals("value", this.cache.get("key", () -> {
+			loads.incrementAndGet();
+			return "unexpected";
+		})));
+		waiter.start();
+		release.countDown();
+		loader.join(10000);
+		waiter.join(10000);
+		assertEquals(1, loads.get());
+		assertEquals("value", this.cache.get("key").get());
+	}
+
+
+	@Test
+	public void recursiveLoadForSameKeyRejected() {
+		try {
+			this.cache.get("key", () -> this.cache.get("key", () -> "inner"));
+			fail("Should have thrown ValueRetrievalException");
+		}
+		catch (Cache.ValueRetrievalException ex) {
+			assertTrue(ex.getCause() instanceof IllegalStateException);
+		}
+		assertNull(this.cache.get("key"));
+		assertEquals("value", this.cache.get("key", () -> "value"));
+	}
+
+	@Test
+	public void recursiveLoadForOtherKeyAllowed() {
+		assertEquals("other", this.cache.get("key", () -> this.cache.get("other", () -> "other")));
+		assertEquals("other", this.cache.get("other").get());
+	}
+
+}
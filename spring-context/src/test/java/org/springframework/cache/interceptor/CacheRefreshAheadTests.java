@@ -0,0 +1,313 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.interceptor;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.CachingConfigurerSupport;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.BoundedConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for coalesced loading and refresh-ahead of synchronized
+ * {@link Cacheable} operations.
+ */
+public class CacheRefreshAheadTests {
+
+	private ConfigurableApplicationContext context;
+
+	private SimpleService simpleService;
+
+
+	@Before
+	public void setUp() {
+		this.context = new AnnotationConfigApplicationContext(Config.class);
+		this.context.getBean(CacheInterceptor.class).setRefreshExecutor(Runnable::run);
+		this.simpleService = this.context.getBean(SimpleService.class);
+	}
+
+	@After
+	public void closeContext() {
+		if (this.context != null) {
+			this.context.close();
+		}
+	}
+
+
+	@Test
+	public void concurrentMissesCoalescedForUnsynchronizedCache() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Callable<Object> task = () -> this.simpleService.slow("key");
+			Future<Object> first = executor.submit(task);
+			assertTrue(this.simpleService.getLoading().await(10, TimeUnit.SECONDS));
+			Future<Object> second = executor.submit(task);
+			Future<Object> third = executor.submit(task);
+			Thread.sleep(50);
+			this.simpleService.getRelease().countDown();
+
+			assertEquals(0, first.get(10, TimeUnit.SECONDS));
+			assertEquals(0, second.get(10, TimeUnit.SECONDS));
+			assertEquals(0, third.get(10, TimeUnit.SECONDS));
+			assertEquals(1, this.simpleService.getCounter().get());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void concurrentMissesShareFailure() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Callable<Object> task = () -> this.simpleService.slowFailure("key");
+			Future<Object> first = executor.submit(task);
+			assertTrue(this.simpleService.getLoading().await(10, TimeUnit.SECONDS));
+			Future<Object> second = executor.submit(task);
+			Thread.sleep(50);
+			this.simpleService.getRelease().countDown();
+
+			assertFailure(first);
+			assertFailure(second);
+			assertEquals(1, this.simpleService.getCounter().get());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void recursiveMissForSameKey() {
+		this.simpleService.setSelf(this.simpleService);
+		assertEquals(0, this.simpleService.recursive("key", false));
+		assertEquals(0, this.simpleService.recursive("key", false));
+		assertEquals(1, this.simpleService.getCounter().get());
+	}
+
+	@Test
+	public void refreshAhead() throws Exception {
+		assertEquals(0, this.simpleService.refreshed("key"));
+		assertEquals(0, this.simpleService.refreshed("key"));
+		Thread.sleep(20);
+		// Stale value returned while refreshing
+		assertEquals(0, this.simpleService.refreshed("key"));
+		assertEquals(1, this.simpleService.refreshed("key"));
+		assertEquals(2, this.simpleService.getCounter().get());
+	}
+
+	@Test
+	public void staleValueReturnedBeforeRefreshCompletes() throws Exception {
+		this.context.close();
+		this.context = new AnnotationConfigApplicationContext(Config.class);
+		this.simpleService = this.context.getBean(SimpleService.class);
+
+		assertEquals(0, this.simpleService.slowRefresh("key"));
+		Thread.sleep(20);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// Returned while the refresh is still blocked on the default executor
+			Future<Object> stale = executor.submit(() -> this.simpleService.slowRefresh("key"));
+			assertEquals(0, stale.get(10, TimeUnit.SECONDS));
+			assertTrue(this.simpleService.getLoading().await(10, TimeUnit.SECONDS));
+			assertEquals(0, this.simpleService.slowRefresh("key"));
+		}
+		finally {
+			executor.shutdownNow();
+			this.simpleService.getRelease().countDown();
+		}
+		for (int i = 0; i < 100 && !Integer.valueOf(1).equals(this.simpleService.slowRefresh("key")); i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, this.simpleService.slowRefresh("key"));
+	}
+
+	@Test
+	public void failedRefreshKeepsCurrentValue() throws Exception {
+		assertEquals(0, this.simpleService.refreshedOrFailing("key"));
+		Thread.sleep(20);
+		assertEquals(0, this.simpleService.refreshedOrFailing("key"));
+		assertEquals(0, this.simpleService.refreshedOrFailing("key"));
+		assertEquals(3, this.simpleService.getCounter().get());
+	}
+
+	@Test
+	public void refreshAfterWithRegularCache() throws Exception {
+		assertEquals(0, this.simpleService.refreshedWithRegularCache("key"));
+		Thread.sleep(20);
+		assertEquals(0, this.simpleService.refreshedWithRegularCache("key"));
+		assertEquals(1, this.simpleService.getCounter().get());
+	}
+
+	private void assertFailure(Future<Object> future) throws Exception {
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("Should have thrown ExecutionException");
+		}
+		catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof IllegalStateException);
+			assertEquals("Expected failure", ex.getCause().getMessage());
+		}
+	}
+
+
+	static class SimpleService {
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		private final CountDownLatch loading = new CountDownLatch(1);
+
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		private SimpleService self;
+
+		public void setSelf(SimpleService self) {
+			this.self = self;
+		}
+
+		public AtomicInteger getCounter() {
+			return this.counter;
+		}
+
+		public CountDownLatch getLoading() {
+			return this.loading;
+		}
+
+		public CountDownLatch getRelease() {
+			return this.release;
+		}
+
+		@Cacheable(cacheNames = "unsynchronized", sync = true)
+		public Object slow(Object key) throws InterruptedException {
+			this.loading.countDown();
+			this.release.await(10, TimeUnit.SECONDS);
+			return this.counter.getAndIncrement();
+		}
+
+		@Cacheable(cacheNames = "unsynchronized", sync = true)
+		public Object slowFailure(Object key) throws InterruptedException {
+			this.loading.countDown();
+			this.release.await(10, TimeUnit.SECONDS);
+			this.counter.getAndIncrement();
+			throw new IllegalStateException("Expected failure");
+		}
+
+		@Cacheable(cacheNames = "unsynchronized", key = "#key", sync = true)
+		public Object recursive(Object key, boolean nested) {
+			return (nested ? this.counter.getAndIncrement() : this.self.recursive(key, true));
+		}
+
+		@Cacheable(cacheNames = "bounded", refreshAfter = 10)
+		public Object refreshed(Object key) {
+			return this.counter.getAndIncrement();
+		}
+
+		@Cacheable(cacheNames = "bounded", refreshAfter = 10)
+		public Object slowRefresh(Object key) throws InterruptedException {
+			int value = this.counter.getAndIncrement();
+			if (value > 0) {
+				this.loading.countDown();
+				this.release.await(10, TimeUnit.SECONDS);
+			}
+			return value;
+		}
+
+		@Cacheable(cacheNames = "bounded", refreshAfter = 10)
+		public Object refreshedOrFailing(Object key) {
+			if (this.counter.getAndIncrement() > 0) {
+				throw new IllegalStateException("Expected failure");
+			}
+			return 0;
+		}
+
+		@Cacheable(cacheNames = "regular", refreshAfter = 10)
+		public Object refreshedWithRegularCache(Object key) {
+			return this.counter.getAndIncrement();
+		}
+	}
+
+
+	/**
+	 * A cache loading values without any synchronization.
+	 */
+	static class UnsynchronizedCache extends ConcurrentMapCache {
+
+		UnsynchronizedCache(String name) {
+			super(name);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> T get(Object key, Callable<T> valueLoader) {
+			ValueWrapper cached = get(key);
+			if (cached != null) {
+				return (T) cached.get();
+			}
+			try {
+				T value = valueLoader.call();
+				put(key, value);
+				return value;
+			}
+			catch (Exception ex) {
+				throw new ValueRetrievalException(key, valueLoader, ex);
+			}
+		}
+	}
+
+
+	@Configuration
+	@EnableCaching
+	static class Config extends CachingConfigurerSupport {
+
+		@Override
+		@Bean
+		public CacheManager cacheManager() {
+			SimpleCacheManager cacheManager = new SimpleCacheManager();
+			cacheManager.setCaches(Arrays.<Cache>asList(new UnsynchronizedCache("unsynchronized"),
+					BoundedConcurrentMapCache.builder("bounded").build(), new ConcurrentMapCache("regular")));
+			return cacheManager;
+		}
+
+		@Bean
+		public SimpleService simpleService() {
+			return new SimpleService();
+		}
+	}
+
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.interceptor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.CacheTestUtils;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.CachingConfigurerSupport;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.junit.Assert.*;
+import static org.springframework.cache.CacheTestUtils.*;
+
+/**
+ * Tests for caching the results of methods returning a {@link CompletableFuture}
+ * or a reactive type.
+ */
+public class ReactiveCachingTests {
+
+	private ConfigurableApplicationContext context;
+
+	private ReactiveService service;
+
+	private Cache cache;
+
+
+	@Before
+	public void setUp() {
+		this.context = new AnnotationConfigApplicationContext(Config.class);
+		this.context.getBean(CacheInterceptor.class).setMaxCachedElements(3);
+		this.service = this.context.getBean(ReactiveService.class);
+		this.cache = this.context.getBean(CacheManager.class).getCache("test");
+	}
+
+	@After
+	public void closeContext() {
+		if (this.context != null) {
+			this.context.close();
+		}
+	}
+
+
+	@Test
+	public void cacheMono() {
+		Mono<Integer> first = this.service.mono("key");
+		assertCacheMiss("key", this.cache);
+		assertEquals(0, first.block().intValue());
+		assertCacheHit("key", 0, this.cache);
+
+		assertEquals(0, this.service.mono("key").block().intValue());
+		assertEquals(1, this.service.getInvocations().get());
+		assertEquals(1, this.service.getSubscriptions().get());
+	}
+
+	@Test
+	public void monoSubscribedOnceOnMiss() {
+		Mono<Integer> mono = this.service.mono("key");
+		assertEquals(0, mono.block().intValue());
+		assertEquals(0, mono.block().intValue());
+		assertEquals(1, this.service.getSubscriptions().get());
+	}
+
+	@Test
+	public void cacheEmptyMono() {
+		assertNull(this.service.emptyMono("key").block());
+		assertCacheHit("key", null, this.cache);
+		assertNull(this.service.emptyMono("key").block());
+		assertEquals(1, this.service.getInvocations().get());
+	}
+
+	@Test
+	public void failedMonoNotCached() {
+		try {
+			this.service.failingMono("key").block();
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			assertEquals("Expected failure", ex.getMessage());
+		}
+		assertCacheMiss("key", this.cache);
+	}
+
+	@Test
+	public void monoResubscribedAfterFailure() {
+		Mono<Integer> mono = this.service.monoFailingOnce("key");
+		try {
+			mono.block();
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			assertEquals("Expected failure", ex.getMessage());
+		}
+		assertCacheMiss("key", this.cache);
+
+		assertEquals(1, mono.block().intValue());
+		assertEquals(1, mono.block().intValue());
+		assertEquals(2, this.service.getSubscriptions().get());
+		assertCacheHit("key", 1, this.cache);
+		assertEquals(1, this.service.monoFailingOnce("key").block().intValue());
+		assertEquals(1, this.service.getInvocations().get());
+	}
+
+	@Test
+	public void fluxResubscribedAfterFailure() {
+		Flux<Integer> flux = this.service.fluxFailingOnce("key");
+		try {
+			flux.collectList().block();
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			assertEquals("Expected failure", ex.getMessage());
+		}
+		assertCacheMiss("key", this.cache);
+
+		assertEquals(Arrays.asList(0, 1), flux.collectList().block());
+		assertCacheHit("key", Arrays.asList(0, 1), this.cache);
+		assertEquals(2, this.service.getSubscriptions().get());
+	}
+
+	@Test
+	public void synchronizedMonoResubscribedAfterFailure() {
+		Mono<Integer> mono = this.service.syncMonoFailingOnce("key");
+		try {
+			mono.block();
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			assertEquals("Expected failure", ex.getMessage());
+		}
+		assertCacheMiss("key", this.cache);
+
+		assertEquals(1, mono.retry(1).block().intValue());
+		assertCacheHit("key", 1, this.cache);
+		assertEquals(1, this.service.getInvocations().get());
+	}
+
+	@Test
+	public void unlessEvaluatedAgainstEmittedValue() {
+		assertEquals(0, this.service.monoUnlessZero("key").block().intValue());
+		assertCacheMiss("key", this.cache);
+		assertEquals(1, this.service.monoUnlessZero("key").block().intValue());
+		assertCacheHit("key", 1, this.cache);
+	}
+
+	@Test
+	public void cacheFlux() {
+		assertEquals(Arrays.asList(0, 1, 2), this.service.flux("key", 3).collectList().block());
+		assertCacheHit("key", Arrays.asList(0, 1, 2), this.cache);
+
+		Flux<Integer> cached = this.service.flux("key", 3);
+		assertEquals(Arrays.asList(0, 1, 2), cached.collectList().block());
+		assertEquals(1, this.service.getInvocations().get());
+	}
+
+	@Test
+	public void fluxExceedingElementLimitNotCached() {
+		assertEquals(Arrays.asList(0, 1, 2, 3), this.service.flux("key", 4).collectList().block());
+		assertCacheMiss("key", this.cache);
+	}
+
+	@Test
+	public void cacheCompletableFuture() throws Exception {
+		assertEquals(0, this.service.future("key").get().intValue());
+		assertCacheHit("key", 0, this.cache);
+
+		CompletableFuture<Integer> cached = this.service.future("key");
+		assertTrue(cached.isDone());
+		assertEquals(0, cached.get().intValue());
+		assertEquals(1, this.service.getInvocations().get());
+	}
+
+	@Test
+	public void cachePutMono() {
+		assertEquals(0, this.service.putMono("key").block().intValue());
+		assertEquals(1, this.service.putMono("key").block().intValue());
+		assertCacheHit("key", 1, this.cache);
+		assertEquals(1, this.service.mono("key").block().intValue());
+	}
+
+	@Test
+	public void synchronizedMonoSharedBetweenInvocations() {
+		Mono<Integer> first = this.service.syncMono("key");
+		Mono<Integer> second = this.service.syncMono("key");
+		assertEquals(0, second.block().intValue());
+		assertEquals(0, first.block().intValue());
+		assertEquals(1, this.service.getInvocations().get());
+		assertEquals(1, this.service.getSubscriptions().get());
+		assertCacheHit("key", 0, this.cache);
+
+		assertEquals(0, this.service.syncMono("key").block().intValue());
+		assertEquals(1, this.service.getInvocations().get());
+	}
+
+	@Test
+	public void synchronizedFlux() {
+		Flux<Integer> first = this.service.syncFlux("key");
+		Flux<Integer> second = this.service.syncFlux("key");
+		assertEquals(Arrays.asList(0, 1), first.collectList().block());
+		assertEquals(Arrays.asList(0, 1), second.collectList().block());
+		assertEquals(1, this.service.getInvocations().get());
+		assertCacheHit("key", Arrays.asList(0, 1), this.cache);
+	}
+
+	@Test
+	public void synchronizedFutureWithNestedInvocation() throws Exception {
+		this.service.setSelf(this.service);
+		CompletableFuture<Integer> future = this.service.syncFuture("key");
+		assertEquals(42, future.get().intValue());
+		assertEquals(42, this.service.getNestedResult().get().intValue());
+		assertCacheHit("key", 42, this.cache);
+	}
+
+
+	static class ReactiveService {
+
+		private final AtomicInteger invocations = new AtomicInteger();
+
+		private final AtomicInteger subscriptions = new AtomicInteger();
+
+		private ReactiveService self;
+
+		private CompletableFuture<Integer> nestedResult;
+
+		public void setSelf(ReactiveService self) {
+			this.self = self;
+		}
+
+		public CompletableFuture<Integer> getNestedResult() {
+			return this.nestedResult;
+		}
+
+		public AtomicInteger getInvocations() {
+			return this.invocations;
+		}
+
+		public AtomicInteger getSubscriptions() {
+			return this.subscriptions;
+		}
+
+		@Cacheable("test")
+		public Mono<Integer> mono(Object key) {
+			return counter();
+		}
+
+		@Cacheable("test")
+		public Mono<Integer> emptyMono(Object key) {
+			this.invocations.incrementAndGet();
+			return Mono.empty();
+		}
+
+		@Cacheable("test")
+		public Mono<Integer> failingMono(Object key) {
+			return Mono.error(new IllegalStateException("Expected failure"));
+		}
+
+		@Cacheable("test")
+		public Mono<Integer> monoFailingOnce(Object key) {
+			return failingOnce();
+		}
+
+		@Cacheable(cacheNames = "test", sync = true)
+		public Mono<Integer> syncMonoFailingOnce(Object key) {
+			return failingOnce();
+		}
+
+		@Cacheable("test")
+		public Flux<Integer> fluxFailingOnce(Object key) {
+			return Flux.range(0, 2).concatWith(Flux.defer(() -> this.subscriptions.getAndIncrement() == 0 ?
+					Flux.error(new IllegalStateException("Expected failure")) : Flux.empty()));
+		}
+
+		@Cacheable(cacheNames = "test", unless = "#result == 0")
+		public Mono<Integer> monoUnlessZero(Object key) {
+			return counter();
+		}
+
+		@CachePut("test")
+		public Mono<Integer> putMono(Object key) {
+			return counter();
+		}
+
+		@Cacheable(cacheNames = "test", sync = true)
+		public Mono<Integer> syncMono(Object key) {
+			return counter();
+		}
+
+		@Cacheable(cacheNames = "test", key = "#p0")
+		public Flux<Integer> flux(Object key, int count) {
+			this.invocations.incrementAndGet();
+			return Flux.range(0, count);
+		}
+
+		@Cacheable(cacheNames = "test", sync = true)
+		public Flux<Integer> syncFlux(Object key) {
+			this.invocations.incrementAndGet();
+			return Flux.range(0, 2);
+		}
+
+		@Cacheable(cacheNames = "test", sync = true)
+		public CompletableFuture<Integer> syncFuture(Object key) {
+			if (this.nestedResult == null) {
+				// Same key while the outer invocation is still in progress
+				this.nestedResult = this.self.syncFuture(key);
+			}
+			return CompletableFuture.completedFuture(42);
+		}
+
+		@Cacheable("test")
+		public CompletableFuture<Integer> future(Object key) {
+			return CompletableFuture.completedFuture(this.invocations.getAndIncrement());
+		}
+
+		private Mono<Integer> failingOnce() {
+			this.invocations.incrementAndGet();
+			return Mono.defer(() -> this.subscriptions.getAndIncrement() == 0 ?
+					Mono.error(new IllegalStateException("Expected failure")) : Mono.just(1));
+		}
+
+		private Mono<Integer> counter() {
+			int value = this.invocations.getAndIncrement();
+			return Mono.fromCallable(() -> {
+				this.subscriptions.incrementAndGet();
+				return value;
+			});
+		}
+	}
+
+
+	@Configuration
+	@EnableCaching
+	static class Config extends CachingConfigurerSupport {
+
+		@Override
+		@Bean
+		public CacheManager cacheManager() {
+			return CacheTestUtils.createSimpleCacheManager("test");
+		}
+
+		@Bean
+		public ReactiveService reactiveService() {
+			return new ReactiveService();
+		}
+	}
+
+}
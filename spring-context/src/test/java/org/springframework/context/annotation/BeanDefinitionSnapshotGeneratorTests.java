@@ -0,0 +1,182 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.context.annotation;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+import example.profilescan.ProfileAnnotatedComponent;
+import example.profilescan.ProfileMetaAnnotatedComponent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.tests.sample.beans.TestBean;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link BeanDefinitionSnapshotGenerator}.
+ */
+public class BeanDefinitionSnapshotGeneratorTests {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	private final BeanDefinitionSnapshotGenerator generator = new BeanDefinitionSnapshotGenerator();
+
+
+	@Test
+	public void generate() {
+		BeanDefinitionSnapshot snapshot = this.generator.generate(SnapshotConfig.class);
+
+		assertEquals(Collections.singletonList(SnapshotConfig.class.getName()), snapshot.getRootClassNames());
+		assertThat(snapshot.getBeanNames(), contains(ImportedConfig.class.getName(), "importedBean", "testBean"));
+
+		BeanDefinition configDefinition = snapshot.getBeanDefinition(ImportedConfig.class.getName());
+		assertEquals(ImportedConfig.class.getName(), configDefinition.getBeanClassName());
+		assertTrue(ConfigurationClassUtils.isFullConfigurationClass(configDefinition));
+
+		BeanDefinition beanDefinition = snapshot.getBeanDefinition("testBean");
+		assertNull(beanDefinition.getBeanClassName());
+		assertEquals("beanDefinitionSnapshotGeneratorTests.SnapshotConfig", beanDefinition.getFactoryBeanName());
+		assertEquals("testBean", beanDefinition.getFactoryMethodName());
+		assertTrue(beanDefinition.isLazyInit());
+		assertFalse(snapshot.getBeanDefinition("importedBean").isLazyInit());
+
+		assertEquals(SnapshotConfig.class.getName(), snapshot.getImportingClassFor(ImportedConfig.class.getName()));
+		assertThat(snapshot.getConditionOutcomes().keySet(), empty());
+		assertThat(snapshot.getClassDigests().keySet(),
+				containsInAnyOrder(SnapshotConfig.class.getName(), ImportedConfig.class.getName()));
+	}
+
+	@Test
+	public void generateWithConditions() throws Exception {
+		StandardEnvironment environment = new StandardEnvironment();
+		environment.setActiveProfiles(ProfileAnnotatedComponent.PROFILE_NAME);
+		this.generator.setEnvironment(environment);
+
+		BeanDefinitionSnapshot snapshot = this.generator.generate(ConditionalConfig.class.getName());
+
+		assertThat(snapshot.getBeanNames(), hasItems(ProfileAnnotatedComponent.BEAN_NAME, "conditionalBean"));
+		assertThat(snapshot.getBeanNames(), not(hasItem(ProfileMetaAnnotatedComponent.BEAN_NAME)));
+		Map<String, Boolean> conditionOutcomes = snapshot.getConditionOutcomes();
+		assertEquals(Boolean.FALSE, conditionOutcomes.get(ProfileAnnotatedComponent.class.getName() + "|REGISTER_BEAN"));
+		assertEquals(Boolean.TRUE, conditionOutcomes.get(ProfileMetaAnnotatedComponent.class.getName() + "|PARSE_CONFIGURATION"));
+		assertEquals(Boolean.FALSE, conditionOutcomes.get(ConditionalConfig.class.getName() + "#conditionalBean|REGISTER_BEAN"));
+		assertThat(snapshot.getClassDigests().keySet(), hasItems(ConditionalConfig.class.getName(),
+				ProfileAnnotatedComponent.class.getName(), ProfileMetaAnnotatedComponent.class.getName()));
+	}
+
+	@Test
+	public void generateWithUnsupportedBeanDefinition() {
+		this.exception.expect(IllegalStateException.class);
+		this.exception.expectMessage("'supplied'");
+		this.generator.generate(UnsupportedConfig.class);
+	}
+
+	@Test
+	public void writeSnapshot() throws Exception {
+		File outputDirectory = this.temporaryFolder.newFolder();
+		BeanDefinitionSnapshot snapshot = this.generator.generate(SnapshotConfig.class);
+
+		File file = this.generator.writeSnapshot(snapshot, outputDirectory);
+
+		assertEquals(new File(outputDirectory, "META-INF/spring.snapshots/" +
+				SnapshotConfig.class.getName() + ".properties"), file);
+		assertTrue(file.isFile());
+	}
+
+	@Test
+	public void main() throws Exception {
+		File outputDirectory = this.temporaryFolder.newFolder();
+
+		BeanDefinitionSnapshotGenerator.main(
+				new String[] {outputDirectory.getAbsolutePath(), SnapshotConfig.class.getName()});
+
+		assertTrue(new File(outputDirectory, BeanDefinitionSnapshot.getResourceLocation(
+				Collections.singleton(SnapshotConfig.class.getName()))).isFile());
+	}
+
+
+	@Configuration
+	@Import(ImportedConfig.class)
+	static class SnapshotConfig {
+
+		@Bean
+		@Lazy
+		public TestBean testBean() {
+			return new TestBean("snapshot");
+		}
+	}
+
+
+	@Configuration
+	static class ImportedConfig implements ImportAware {
+
+		AnnotationMetadata importMetadata;
+
+		@Override
+		public void setImportMetadata(AnnotationMetadata importMetadata) {
+			this.importMetadata = importMetadata;
+		}
+
+		@Bean
+		public String importedBean() {
+			return "imported";
+		}
+	}
+
+
+	@Configuration
+	@ComponentScan("example.profilescan")
+	static class ConditionalConfig {
+
+		@Bean
+		@Profile(ProfileAnnotatedComponent.PROFILE_NAME)
+		public TestBean conditionalBean() {
+			return new TestBean("conditional");
+		}
+	}
+
+
+	@Configuration
+	@Import(SupplierRegistrar.class)
+	static class UnsupportedConfig {
+	}
+
+
+	static class SupplierRegistrar implements ImportBeanDefinitionRegistrar {
+
+		@Override
+		public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
+			registry.registerBeanDefinition("supplied", new RootBeanDefinition(TestBean.class, TestBean::new));
+		}
+	}
+
+}
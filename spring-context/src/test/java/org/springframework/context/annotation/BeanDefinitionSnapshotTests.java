@@ -0,0 +1,248 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.context.annotation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import example.profilescan.ProfileAnnotatedComponent;
+import example.profilescan.ProfileMetaAnnotatedComponent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.BeanDefinitionSnapshotGeneratorTests.ConditionalConfig;
+import org.springframework.context.annotation.BeanDefinitionSnapshotGeneratorTests.ImportedConfig;
+import org.springframework.context.annotation.BeanDefinitionSnapshotGeneratorTests.SnapshotConfig;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.tests.sample.beans.TestBean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link BeanDefinitionSnapshot}, including its use by
+ * {@link ConfigurationClassPostProcessor}.
+ */
+public class BeanDefinitionSnapshotTests {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+	@Test
+	public void storeAndLoad() throws Exception {
+		BeanDefinitionSnapshot snapshot = generate(ConditionalConfig.class, ProfileAnnotatedComponent.PROFILE_NAME);
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		snapshot.store(outputStream);
+
+		BeanDefinitionSnapshot loaded = BeanDefinitionSnapshot.load(new ByteArrayInputStream(outputStream.toByteArray()));
+
+		assertEquals(snapshot.getRootClassNames(), loaded.getRootClassNames());
+		assertEquals(Arrays.asList(snapshot.getBeanNames().toArray()), Arrays.asList(loaded.getBeanNames().toArray()));
+		for (String beanName : snapshot.getBeanNames()) {
+			BeanDefinition expected = snapshot.getBeanDefinition(beanName);
+			BeanDefinition actual = loaded.getBeanDefinition(beanName);
+			assertEquals(expected, actual);
+			for (String attributeName : expected.attributeNames()) {
+				assertEquals(expected.getAttribute(attributeName), actual.getAttribute(attributeName));
+			}
+		}
+		assertEquals(snapshot.getConditionOutcomes(), loaded.getConditionOutcomes());
+		assertEquals(snapshot.getClassDigests(), loaded.getClassDigests());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void loadInvalidContent() throws Exception {
+		BeanDefinitionSnapshot.load(new ByteArrayInputStream("foo=bar".getBytes("ISO-8859-1")));
+	}
+
+	@Test
+	public void loadSnapshotNotFound() {
+		assertNull(BeanDefinitionSnapshot.loadSnapshot(getClass().getClassLoader(),
+				Collections.singleton(SnapshotConfig.class.getName())));
+	}
+
+	@Test
+	public void registerFromSnapshot() throws Exception {
+		AnnotationConfigApplicationContext context = createContext(writeSnapshot(generate(SnapshotConfig.class)));
+		context.register(SnapshotConfig.class);
+		context.refresh();
+
+		assertSame(RootBeanDefinition.class,
+				context.getBeanFactory().getBeanDefinition(ImportedConfig.class.getName()).getClass());
+		BeanDefinition beanDefinition = context.getBeanFactory().getBeanDefinition("testBean");
+		assertTrue(beanDefinition instanceof AnnotatedBeanDefinition);
+		MethodMetadata factoryMethodMetadata = ((AnnotatedBeanDefinition) beanDefinition).getFactoryMethodMetadata();
+		assertNotNull(factoryMethodMetadata);
+		assertEquals("testBean", factoryMethodMetadata.getMethodName());
+		assertEquals("snapshot", context.getBean("testBean", TestBean.class).getName());
+		assertEquals("imported", context.getBean("importedBean"));
+		// Enhanced @Configuration class
+		assertSame(context.getBean("testBean"), context.getBean(SnapshotConfig.class).testBean());
+		// ImportAware
+		assertEquals(SnapshotConfig.class.getName(),
+				context.getBean(ImportedConfig.class).importMetadata.getClassName());
+		context.close();
+	}
+
+	@Test
+	public void registerFromSnapshotWithMatchingConditions() throws Exception {
+		ClassLoader classLoader = writeSnapshot(generate(ConditionalConfig.class, ProfileAnnotatedComponent.PROFILE_NAME));
+
+		AnnotationConfigApplicationContext context = createContext(classLoader);
+		context.getEnvironment().setActiveProfiles(ProfileAnnotatedComponent.PROFILE_NAME);
+		context.register(ConditionalConfig.class);
+		context.refresh();
+
+		assertSame(RootBeanDefinition.class,
+				context.getBeanFactory().getBeanDefinition(ProfileAnnotatedComponent.BEAN_NAME).getClass());
+		assertTrue(context.containsBean("conditionalBean"));
+		assertTrue(context.containsBean(ProfileAnnotatedComponent.BEAN_NAME));
+		context.close();
+	}
+
+	@Test
+	public void snapshotIgnoredForNonMatchingConditions() throws Exception {
+		ClassLoader classLoader = writeSnapshot(generate(ConditionalConfig.class));
+
+		AnnotationConfigApplicationContext context = createContext(classLoader);
+		context.getEnvironment().setActiveProfiles(ProfileAnnotatedComponent.PROFILE_NAME);
+		context.register(ConditionalConfig.class);
+		context.refresh();
+
+		// Parsed instead, picking up the beans for the active profile
+		assertNotSame(RootBeanDefinition.class,
+				context.getBeanFactory().getBeanDefinition(ProfileAnnotatedComponent.BEAN_NAME).getClass());
+		assertTrue(context.containsBean("conditionalBean"));
+		assertFalse(context.containsBean(ProfileMetaAnnotatedComponent.BEAN_NAME));
+		context.close();
+	}
+
+	@Test
+	public void snapshotIgnoredIfClassChanged() throws Exception {
+		BeanDefinitionSnapshot snapshot = generate(SnapshotConfig.class);
+		File outputDirectory = this.temporaryFolder.newFolder();
+		File file = new BeanDefinitionSnapshotGenerator().writeSnapshot(snapshot, outputDirectory);
+		Properties properties = new Properties();
+		try (InputStream inputStream = new FileInputStream(file)) {
+			properties.load(inputStream);
+		}
+		properties.setProperty("digest." + ImportedConfig.class.getName(), "0123456789abcdef0123456789abcdef");
+		try (OutputStream outputStream = new FileOutputStream(file)) {
+			properties.store(outputStream, null);
+		}
+
+		AnnotationConfigApplicationContext context = createContext(
+				new URLClassLoader(new URL[] {outputDirectory.toURI().toURL()}, getClass().getClassLoader()));
+		context.register(SnapshotConfig.class);
+		context.refresh();
+
+		assertNotSame(RootBeanDefinition.class,
+				context.getBeanFactory().getBeanDefinition(ImportedConfig.class.getName()).getClass());
+		assertEquals("imported", context.getBean("importedBean"));
+		context.close();
+	}
+
+	@Test
+	public void snapshotIgnoredForDifferentRootClasses() throws Exception {
+		AnnotationConfigApplicationContext context = createContext(writeSnapshot(generate(SnapshotConfig.class)));
+		context.register(SnapshotConfig.class, UnrelatedConfig.class);
+		context.refresh();
+
+		assertNotSame(RootBeanDefinition.class,
+				context.getBeanFactory().getBeanDefinition(ImportedConfig.class.getName()).getClass());
+		assertEquals("snapshot", context.getBean("testBean", TestBean.class).getName());
+		assertEquals("unrelated", context.getBean("unrelatedBean"));
+		context.close();
+	}
+
+	@Test
+	public void snapshotNotUsedByDefault() throws Exception {
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+		context.setClassLoader(writeSnapshot(generate(SnapshotConfig.class)));
+		context.register(SnapshotConfig.class);
+		context.refresh();
+
+		assertNotSame(RootBeanDefinition.class,
+				context.getBeanFactory().getBeanDefinition(ImportedConfig.class.getName()).getClass());
+		assertEquals("snapshot", context.getBean("testBean", TestBean.class).getName());
+		context.close();
+	}
+
+	@Test
+	public void snapshotNotUsedIfDisabled() throws Exception {
+		ClassLoader classLoader = writeSnapshot(generate(SnapshotConfig.class));
+
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+		context.setClassLoader(classLoader);
+		context.register(SnapshotConfig.class);
+		ConfigurationClassPostProcessor postProcessor = new ConfigurationClassPostProcessor();
+		postProcessor.setUseBeanDefinitionSnapshot(false);
+		postProcessor.setBeanClassLoader(classLoader);
+		postProcessor.postProcessBeanDefinitionRegistry(context);
+
+		assertNotSame(RootBeanDefinition.class, context.getBeanDefinition(ImportedConfig.class.getName()).getClass());
+	}
+
+
+	private AnnotationConfigApplicationContext createContext(ClassLoader classLoader) {
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+		context.setClassLoader(classLoader);
+		context.getBeanDefinition(AnnotationConfigUtils.CONFIGURATION_ANNOTATION_PROCESSOR_BEAN_NAME)
+				.getPropertyValues().add("useBeanDefinitionSnapshot", true);
+		return context;
+	}
+
+	private BeanDefinitionSnapshot generate(Class<?> configClass, String... activeProfiles) {
+		StandardEnvironment environment = new StandardEnvironment();
+		environment.setActiveProfiles(activeProfiles);
+		BeanDefinitionSnapshotGenerator generator = new BeanDefinitionSnapshotGenerator();
+		generator.setEnvironment(environment);
+		return generator.generate(configClass);
+	}
+
+	private ClassLoader writeSnapshot(BeanDefinitionSnapshot snapshot) throws Exception {
+		File outputDirectory = this.temporaryFolder.newFolder();
+		new BeanDefinitionSnapshotGenerator().writeSnapshot(snapshot, outputDirectory);
+		return new URLClassLoader(new URL[] {outputDirectory.toURI().toURL()}, getClass().getClassLoader());
+	}
+
+
+	@Configuration
+	static class UnrelatedConfig {
+
+		@Bean
+		public String unrelatedBean() {
+			return "unrelated";
+		}
+	}
+
+}
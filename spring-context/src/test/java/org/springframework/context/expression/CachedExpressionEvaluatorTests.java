@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,8 +22,11 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import org.junit.Test;
 
+import org.springframework.beans.DirectFieldAccessor;
 import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.util.ReflectionUtils;
 
 import static org.junit.Assert.*;
@@ -64,6 +67,43 @@ public class CachedExpressionEvaluatorTests {
 		assertEquals("Cached expression should be based on type", 2, expressionEvaluator.testCache.size());
 	}
 
+	@Test
+	public void compileExpressionInMixedMode() {
+		TestExpressionEvaluator evaluator = new TestExpressionEvaluator(SpelCompilerMode.MIXED);
+		Method method = ReflectionUtils.findMethod(getClass(), "lookup", User.class, String.class);
+		Expression expression = evaluator.getTestExpression("#user.id + ':' + #region", method, getClass());
+		for (int i = 0; i < 150; i++) {
+			User user = new User("user" + i);
+			assertEquals("user" + i + ":eu", expression.getValue(evaluator.createContext(method, user, "eu")));
+		}
+		assertNotNull("Expression should have been compiled",
+				new DirectFieldAccessor(expression).getPropertyValue("compiledAst"));
+		assertEquals("compiled:us", expression.getValue(evaluator.createContext(method, new User("compiled"), "us")));
+	}
+
+	@Test
+	public void preparedContextsShareAccessors() {
+		TestExpressionEvaluator evaluator = new TestExpressionEvaluator(SpelCompilerMode.OFF);
+		Method method = ReflectionUtils.findMethod(getClass(), "lookup", User.class, String.class);
+		StandardEvaluationContext first = evaluator.createContext(method, new User("a"), "eu");
+		StandardEvaluationContext second = evaluator.createContext(method, new User("b"), "eu");
+		assertSame(first.getPropertyAccessors(), second.getPropertyAccessors());
+		assertSame(first.getMethodResolvers(), second.getMethodResolvers());
+		assertEquals("b", ((User) second.lookupVariable("user")).getId());
+	}
+
+	@Test
+	public void parameterNamesAreCached() {
+		Method method = ReflectionUtils.findMethod(getClass(), "lookup", User.class, String.class);
+		String[] names = expressionEvaluator.getParameterNameDiscoverer().getParameterNames(method);
+		assertArrayEquals(new String[] {"user", "region"}, names);
+		assertSame(names, expressionEvaluator.getParameterNameDiscoverer().getParameterNames(method));
+	}
+
+	public String lookup(User user, String region) {
+		return user.getId() + region;
+	}
+
 	private void hasParsedExpression(String expression) {
 		verify(expressionEvaluator.getParser(), times(1)).parseExpression(expression);
 	}
@@ -76,14 +116,39 @@ public class CachedExpressionEvaluatorTests {
 			super(mockSpelExpressionParser());
 		}
 
+		public TestExpressionEvaluator(SpelCompilerMode compilerMode) {
+			super(compilerMode);
+		}
+
 		public Expression getTestExpression(String expression, Method method, Class<?> type) {
 			return getExpression(this.testCache, new AnnotatedElementKey(method, type), expression);
 		}
 
+		public StandardEvaluationContext createContext(Method method, Object... args) {
+			MethodBasedEvaluationContext context =
+					new MethodBasedEvaluationContext(this, method, args, getParameterNameDiscoverer());
+			prepareEvaluationContext(context);
+			return context;
+		}
+
 		private static SpelExpressionParser mockSpelExpressionParser() {
 			SpelExpressionParser parser = new SpelExpressionParser();
 			return spy(parser);
 		}
 	}
 
+
+	public static class User {
+
+		private final String id;
+
+		public User(String id) {
+			this.id = id;
+		}
+
+		public String getId() {
+			return this.id;
+		}
+	}
+
 }
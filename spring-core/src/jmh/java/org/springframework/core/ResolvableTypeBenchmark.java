@@ -0,0 +1,103 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Benchmarks for the creation and resolution of {@link ResolvableType} instances.
+ */
+@BenchmarkMode(Mode.Throughput)
+public class ResolvableTypeBenchmark {
+
+	@Benchmark
+	public ResolvableType forClass(BenchmarkData data) {
+		data.clearCacheIfNecessary();
+		return ResolvableType.forClass(data.type);
+	}
+
+	@Benchmark
+	public Class<?> forClassAndResolveGeneric(BenchmarkData data) {
+		data.clearCacheIfNecessary();
+		return ResolvableType.forClass(data.type).as(Map.class).resolveGeneric(1, 0);
+	}
+
+	@Benchmark
+	public ResolvableType forMethodParameter(BenchmarkData data) {
+		data.clearCacheIfNecessary();
+		return ResolvableType.forMethodParameter(data.method, 0);
+	}
+
+	@Benchmark
+	public Class<?> forMethodParameterAndResolveGeneric(BenchmarkData data) {
+		data.clearCacheIfNecessary();
+		return ResolvableType.forMethodParameter(data.methodParameter).resolveGeneric(0);
+	}
+
+
+	@State(Scope.Benchmark)
+	public static class BenchmarkData {
+
+		@Param({"true", "false"})
+		public boolean cached;
+
+		public Class<?> type;
+
+		public Method method;
+
+		public MethodParameter methodParameter;
+
+		@Setup
+		public void setup() {
+			this.type = StringListMap.class;
+			this.method = ReflectionUtils.findMethod(Handler.class, "handle", List.class);
+			this.methodParameter = new MethodParameter(this.method, 0);
+		}
+
+		public void clearCacheIfNecessary() {
+			if (!this.cached) {
+				ResolvableType.clearCache();
+			}
+		}
+	}
+
+
+	@SuppressWarnings("serial")
+	static class StringListMap extends HashMap<String, List<Integer>> {
+	}
+
+
+	static class Handler {
+
+		public void handle(List<String> values) {
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Method;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Benchmarks for the lookup of (merged) annotations through {@link AnnotationUtils}
+ * and {@link AnnotatedElementUtils}, on classes and on methods.
+ */
+@BenchmarkMode(Mode.Throughput)
+public class AnnotationUtilsBenchmark {
+
+	@Benchmark
+	public Mapping findAnnotationOnClass(BenchmarkData data) {
+		return AnnotationUtils.findAnnotation(data.type, Mapping.class);
+	}
+
+	@Benchmark
+	public Mapping findAnnotationOnMethod(BenchmarkData data) {
+		return AnnotationUtils.findAnnotation(data.method, Mapping.class);
+	}
+
+	@Benchmark
+	public Mapping findMergedAnnotationOnClass(BenchmarkData data) {
+		return AnnotatedElementUtils.findMergedAnnotation(data.type, Mapping.class);
+	}
+
+	@Benchmark
+	public Mapping findMergedAnnotationOnMethod(BenchmarkData data) {
+		return AnnotatedElementUtils.findMergedAnnotation(data.method, Mapping.class);
+	}
+
+	@Benchmark
+	public Mapping findMergedAnnotationNotPresent(BenchmarkData data) {
+		return AnnotatedElementUtils.findMergedAnnotation(data.plainMethod, Mapping.class);
+	}
+
+
+	@State(Scope.Benchmark)
+	public static class BenchmarkData {
+
+		public Class<?> type;
+
+		public Method method;
+
+		public Method plainMethod;
+
+		@Setup
+		public void setup() {
+			this.type = AnnotatedController.class;
+			this.method = ReflectionUtils.findMethod(AnnotatedController.class, "handle");
+			this.plainMethod = ReflectionUtils.findMethod(AnnotatedController.class, "toString");
+		}
+	}
+
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target({ElementType.TYPE, ElementType.METHOD, ElementType.ANNOTATION_TYPE})
+	@interface Mapping {
+
+		@AliasFor("path")
+		String[] value() default {};
+
+		@AliasFor("value")
+		String[] path() default {};
+
+		String method() default "";
+	}
+
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target({ElementType.TYPE, ElementType.METHOD})
+	@Mapping(method = "GET")
+	@interface GetMapping {
+
+		@AliasFor(annotation = Mapping.class)
+		String[] path() default {};
+	}
+
+
+	@Mapping("/api")
+	interface Controller {
+
+		@GetMapping(path = "/handle")
+		void handle();
+	}
+
+
+	static class AnnotatedController implements Controller {
+
+		@Override
+		public void handle() {
+		}
+	}
+
+}
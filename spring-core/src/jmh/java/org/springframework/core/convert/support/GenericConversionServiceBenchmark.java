@@ -0,0 +1,101 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.convert.support;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.core.convert.TypeDescriptor;
+
+/**
+ * Benchmarks for {@link GenericConversionService#convert} with the converters
+ * registered by {@link DefaultConversionService}.
+ */
+@BenchmarkMode(Mode.Throughput)
+public class GenericConversionServiceBenchmark {
+
+	@Benchmark
+	public Integer convertStringToInteger(BenchmarkData data) {
+		return data.conversionService.convert("42", Integer.class);
+	}
+
+	@Benchmark
+	public String convertIntegerToString(BenchmarkData data) {
+		return data.conversionService.convert(42, String.class);
+	}
+
+	@Benchmark
+	public TimeUnit convertStringToEnum(BenchmarkData data) {
+		return data.conversionService.convert("SECONDS", TimeUnit.class);
+	}
+
+	@Benchmark
+	public Object convertListOfStringsToListOfIntegers(BenchmarkData data) {
+		return data.conversionService.convert(data.source, data.sourceType, data.targetType);
+	}
+
+	@Benchmark
+	public Object convertMapOfStringsToMapOfIntegers(BenchmarkData data) {
+		return data.conversionService.convert(data.sourceMap, data.sourceMapType, data.targetMapType);
+	}
+
+
+	@State(Scope.Benchmark)
+	public static class BenchmarkData {
+
+		public GenericConversionService conversionService;
+
+		public List<String> source;
+
+		public TypeDescriptor sourceType;
+
+		public TypeDescriptor targetType;
+
+		public Map<String, String> sourceMap;
+
+		public TypeDescriptor sourceMapType;
+
+		public TypeDescriptor targetMapType;
+
+		@Setup
+		public void setup() {
+			this.conversionService = new DefaultConversionService();
+			this.source = Arrays.asList("1", "2", "3", "4", "5", "6", "7", "8", "9", "10");
+			this.sourceType = TypeDescriptor.collection(List.class, TypeDescriptor.valueOf(String.class));
+			this.targetType = TypeDescriptor.collection(List.class, TypeDescriptor.valueOf(Integer.class));
+			this.sourceMap = new HashMap<>();
+			for (String value : this.source) {
+				this.sourceMap.put(value, value);
+			}
+			this.sourceMapType = TypeDescriptor.map(Map.class,
+					TypeDescriptor.valueOf(String.class), TypeDescriptor.valueOf(String.class));
+			this.targetMapType = TypeDescriptor.map(Map.class,
+					TypeDescriptor.valueOf(Integer.class), TypeDescriptor.valueOf(Integer.class));
+		}
+	}
+
+}
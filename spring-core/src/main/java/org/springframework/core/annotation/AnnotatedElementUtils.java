@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.springframework.core.BridgeMethodResolver;
+import org.springframework.core.annotation.MergedAnnotations.SearchStrategy;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 import org.springframework.util.LinkedMultiValueMap;
@@ -87,6 +88,11 @@ import org.springframework.util.MultiValueMap;
  * traverses type and method hierarchies and thereby implicitly supports
  * annotation inheritance without the need for {@code @Inherited}.
  *
+ * <h3>Caching</h3>
+ * <p>For classes, methods, fields and constructors, the lookups of a single
+ * merged annotation are served by a cached {@link MergedAnnotations} view
+ * which scans the annotation hierarchy of the element only once.
+ *
  * @author Phillip Webb
  * @author Juergen Hoeller
  * @author Sam Brannen
@@ -95,6 +101,7 @@ import org.springframework.util.MultiValueMap;
  * @see AnnotationAttributes
  * @see AnnotationUtils
  * @see BridgeMethodResolver
+ * @see MergedAnnotations
  */
 public class AnnotatedElementUtils {
 
@@ -279,6 +286,9 @@ public class AnnotatedElementUtils {
 			return true;
 		}
 
+		if (MergedAnnotations.isCacheable(element)) {
+			return MergedAnnotations.from(element, SearchStrategy.GET).isPresent(annotationType);
+		}
 		return Boolean.TRUE.equals(searchWithGetSemantics(element, annotationType, null, alwaysTrueAnnotationProcessor));
 	}
 
@@ -298,6 +308,9 @@ public class AnnotatedElementUtils {
 		Assert.notNull(element, "AnnotatedElement must not be null");
 		Assert.hasLength(annotationName, "'annotationName' must not be null or empty");
 
+		if (MergedAnnotations.isCacheable(element)) {
+			return MergedAnnotations.from(element, SearchStrategy.GET).isPresent(annotationName);
+		}
 		return Boolean.TRUE.equals(searchWithGetSemantics(element, null, annotationName, alwaysTrueAnnotationProcessor));
 	}
 
@@ -323,6 +336,10 @@ public class AnnotatedElementUtils {
 			AnnotatedElement element, Class<? extends Annotation> annotationType) {
 
 		Assert.notNull(annotationType, "'annotationType' must not be null");
+		if (MergedAnnotations.isCacheable(element)) {
+			return MergedAnnotations.from(element, SearchStrategy.GET)
+					.getMergedAnnotationAttributes(annotationType, false, false);
+		}
 		AnnotationAttributes attributes = searchWithGetSemantics(element, annotationType, null,
 				new MergedAnnotationAttributesProcessor());
 		AnnotationUtils.postProcessAnnotationAttributes(element, attributes, false, false);
@@ -383,6 +400,10 @@ public class AnnotatedElementUtils {
 			String annotationName, boolean classValuesAsString, boolean nestedAnnotationsAsMap) {
 
 		Assert.hasLength(annotationName, "'annotationName' must not be null or empty");
+		if (MergedAnnotations.isCacheable(element)) {
+			return MergedAnnotations.from(element, SearchStrategy.GET)
+					.getMergedAnnotationAttributes(annotationName, classValuesAsString, nestedAnnotationsAsMap);
+		}
 		AnnotationAttributes attributes = searchWithGetSemantics(element, null, annotationName,
 				new MergedAnnotationAttributesProcessor(classValuesAsString, nestedAnnotationsAsMap));
 		AnnotationUtils.postProcessAnnotationAttributes(element, attributes, classValuesAsString, nestedAnnotationsAsMap);
@@ -422,6 +443,9 @@ public class AnnotatedElementUtils {
 		}
 
 		// Exhaustive retrieval of merged annotation attributes...
+		if (MergedAnnotations.isCacheable(element)) {
+			return MergedAnnotations.from(element, SearchStrategy.GET).getMergedAnnotation(annotationType);
+		}
 		AnnotationAttributes attributes = getMergedAnnotationAttributes(element, annotationType);
 		return (attributes != null ? AnnotationUtils.synthesizeAnnotation(attributes, annotationType, element) : null);
 	}
@@ -611,6 +635,9 @@ public class AnnotatedElementUtils {
 			return true;
 		}
 
+		if (MergedAnnotations.isCacheable(element)) {
+			return MergedAnnotations.from(element, SearchStrategy.FIND).isPresent(annotationType);
+		}
 		return Boolean.TRUE.equals(searchWithFindSemantics(element, annotationType, null, alwaysTrueAnnotationProcessor));
 	}
 
@@ -647,6 +674,10 @@ public class AnnotatedElementUtils {
 	public static AnnotationAttributes findMergedAnnotationAttributes(AnnotatedElement element,
 			Class<? extends Annotation> annotationType, boolean classValuesAsString, boolean nestedAnnotationsAsMap) {
 
+		if (MergedAnnotations.isCacheable(element)) {
+			return MergedAnnotations.from(element, SearchStrategy.FIND)
+					.getMergedAnnotationAttributes(annotationType, classValuesAsString, nestedAnnotationsAsMap);
+		}
 		AnnotationAttributes attributes = searchWithFindSemantics(element, annotationType, null,
 				new MergedAnnotationAttributesProcessor(classValuesAsString, nestedAnnotationsAsMap));
 		AnnotationUtils.postProcessAnnotationAttributes(element, attributes, classValuesAsString, nestedAnnotationsAsMap);
@@ -684,6 +715,10 @@ public class AnnotatedElementUtils {
 	public static AnnotationAttributes findMergedAnnotationAttributes(AnnotatedElement element,
 			String annotationName, boolean classValuesAsString, boolean nestedAnnotationsAsMap) {
 
+		if (MergedAnnotations.isCacheable(element)) {
+			return MergedAnnotations.from(element, SearchStrategy.FIND)
+					.getMergedAnnotationAttributes(annotationName, classValuesAsString, nestedAnnotationsAsMap);
+		}
 		AnnotationAttributes attributes = searchWithFindSemantics(element, null, annotationName,
 				new MergedAnnotationAttributesProcessor(classValuesAsString, nestedAnnotationsAsMap));
 		AnnotationUtils.postProcessAnnotationAttributes(element, attributes, classValuesAsString, nestedAnnotationsAsMap);
@@ -723,6 +758,9 @@ public class AnnotatedElementUtils {
 		}
 
 		// Exhaustive retrieval of merged annotation attributes...
+		if (MergedAnnotations.isCacheable(element)) {
+			return MergedAnnotations.from(element, SearchStrategy.FIND).getMergedAnnotation(annotationType);
+		}
 		AnnotationAttributes attributes = findMergedAnnotationAttributes(element, annotationType, false, false);
 		return (attributes != null ? AnnotationUtils.synthesizeAnnotation(attributes, annotationType, element) : null);
 	}
@@ -1563,69 +1601,10 @@ public class AnnotatedElementUtils {
 
 		@Override
 		public void postProcess(@Nullable AnnotatedElement element, Annotation annotation, AnnotationAttributes attributes) {
-			annotation = AnnotationUtils.synthesizeAnnotation(annotation, element);
 			Class<? extends Annotation> targetAnnotationType = attributes.annotationType();
-
-			// Track which attribute values have already been replaced so that we can short
-			// circuit the search algorithms.
-			Set<String> valuesAlreadyReplaced = new HashSet<>();
-
-			for (Method attributeMethod : AnnotationUtils.getAttributeMethods(annotation.annotationType())) {
-				String attributeName = attributeMethod.getName();
-				String attributeOverrideName = AnnotationUtils.getAttributeOverrideName(attributeMethod, targetAnnotationType);
-
-				// Explicit annotation attribute override declared via @AliasFor
-				if (attributeOverrideName != null) {
-					if (valuesAlreadyReplaced.contains(attributeOverrideName)) {
-						continue;
-					}
-
-					List<String> targetAttributeNames = new ArrayList<>();
-					targetAttributeNames.add(attributeOverrideName);
-					valuesAlreadyReplaced.add(attributeOverrideName);
-
-					// Ensure all aliased attributes in the target annotation are overridden. (SPR-14069)
-					List<String> aliases = AnnotationUtils.getAttributeAliasMap(targetAnnotationType).get(attributeOverrideName);
-					if (aliases != null) {
-						for (String alias : aliases) {
-							if (!valuesAlreadyReplaced.contains(alias)) {
-								targetAttributeNames.add(alias);
-								valuesAlreadyReplaced.add(alias);
-							}
-						}
-					}
-
-					overrideAttributes(element, annotation, attributes, attributeName, targetAttributeNames);
-				}
-				// Implicit annotation attribute override based on convention
-				else if (!AnnotationUtils.VALUE.equals(attributeName) && attributes.containsKey(attributeName)) {
-					overrideAttribute(element, annotation, attributes, attributeName, attributeName);
-				}
-			}
-		}
-
-		private void overrideAttributes(@Nullable AnnotatedElement element, Annotation annotation,
-				AnnotationAttributes attributes, String sourceAttributeName, List<String> targetAttributeNames) {
-
-			Object adaptedValue = getAdaptedValue(element, annotation, sourceAttributeName);
-
-			for (String targetAttributeName : targetAttributeNames) {
-				attributes.put(targetAttributeName, adaptedValue);
-			}
-		}
-
-		private void overrideAttribute(@Nullable AnnotatedElement element, Annotation annotation,
-				AnnotationAttributes attributes, String sourceAttributeName, String targetAttributeName) {
-
-			attributes.put(targetAttributeName, getAdaptedValue(element, annotation, sourceAttributeName));
-		}
-
-		@Nullable
-		private Object getAdaptedValue(
-				@Nullable AnnotatedElement element, Annotation annotation, String sourceAttributeName) {
-
-			Object value = AnnotationUtils.getValue(annotation, sourceAttributeName);
-			return AnnotationUtils.adaptValue(element, value, this.classValuesAsString, this.nestedAnnotationsAsMap);
+			Assert.state(targetAnnotationType != null, "No target annotation type");
+			AttributeOverrideMapping.forAnnotationTypes(annotation.annotationType(), targetAnnotationType).apply(
+					element, annotation, attributes, this.classValuesAsString, this.nestedAnnotationsAsMap);
 		}
 	}
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -1867,6 +1867,23 @@ public abstract class AnnotationUtils {
 		}
 	}
 
+	/**
+	 * Clear the internal annotation metadata cache, including the cache of
+	 * {@link MergedAnnotations}.
+	 * @since 5.1
+	 * @see MergedAnnotations#clearCache()
+	 */
+	public static void clearCache() {
+		findAnnotationCache.clear();
+		metaPresentCache.clear();
+		annotatedInterfaceCache.clear();
+		synthesizableCache.clear();
+		attributeAliasesCache.clear();
+		attributeMethodsCache.clear();
+		aliasDescriptorCache.clear();
+		MergedAnnotations.clearCache();
+	}
+
 
 	/**
 	 * Cache key for the AnnotatedElement cache.
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.annotation;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+/**
+ * Precomputed overrides of the attributes of a target annotation type by
+ * the attributes of a source annotation type in its annotation hierarchy,
+ * either declared explicitly via {@link AliasFor @AliasFor} or implied by
+ * the convention of matching attribute names.
+ *
+ * <p>Used to merge the attributes of a (meta-)annotation with those of
+ * the annotations in lower levels of the annotation hierarchy.
+ *
+ * @since 5.1
+ * @see AnnotatedElementUtils
+ * @see MergedAnnotations
+ */
+final class AttributeOverrideMapping {
+
+	private static final Map<Key, AttributeOverrideMapping> cache = new ConcurrentReferenceHashMap<>(256);
+
+
+	private final String[] sourceAttributeNames;
+
+	private final String[][] targetAttributeNames;
+
+
+	private AttributeOverrideMapping(List<String> sourceAttributeNames, List<String[]> targetAttributeNames) {
+		this.sourceAttributeNames = sourceAttributeNames.toArray(new String[0]);
+		this.targetAttributeNames = targetAttributeNames.toArray(new String[0][]);
+	}
+
+
+	/**
+	 * Override the target {@code attributes} with the values of the
+	 * corresponding attributes of the supplied source annotation.
+	 * @param element the element that is annotated with the source annotation,
+	 * used for contextual logging; may be {@code null} if unknown
+	 * @param annotation the source annotation
+	 * @param attributes the attributes of the target annotation to override
+	 * @param classValuesAsString whether to convert Class references into Strings
+	 * @param nestedAnnotationsAsMap whether to convert nested annotations into
+	 * {@code AnnotationAttributes} maps
+	 */
+	void apply(@Nullable AnnotatedElement element, Annotation annotation, AnnotationAttributes attributes,
+			boolean classValuesAsString, boolean nestedAnnotationsAsMap) {
+
+		// Synthesize even without overrides, for validation of the @AliasFor declarations
+		annotation = AnnotationUtils.synthesizeAnnotation(annotation, element);
+		for (int i = 0; i < this.sourceAttributeNames.length; i++) {
+			Object value = AnnotationUtils.getValue(annotation, this.sourceAttributeNames[i]);
+			Object adaptedValue = AnnotationUtils.adaptValue(element, value, classValuesAsString, nestedAnnotationsAsMap);
+			for (String targetAttributeName : this.targetAttributeNames[i]) {
+				attributes.put(targetAttributeName, adaptedValue);
+			}
+		}
+	}
+
+
+	/**
+	 * Return the mapping for the supplied pair of annotation types.
+	 * @param sourceType the annotation type in the lower level of the hierarchy
+	 * @param targetType the annotation type whose attributes are overridden
+	 * @throws AnnotationConfigurationException if invalid configuration of
+	 * {@code @AliasFor} is detected
+	 */
+	static AttributeOverrideMapping forAnnotationTypes(
+			Class<? extends Annotation> sourceType, Class<? extends Annotation> targetType) {
+
+		Key key = new Key(sourceType, targetType);
+		AttributeOverrideMapping mapping = cache.get(key);
+		if (mapping == null) {
+			mapping = createMapping(sourceType, targetType);
+			cache.put(key, mapping);
+		}
+		return mapping;
+	}
+
+	private static AttributeOverrideMapping createMapping(
+			Class<? extends Annotation> sourceType, Class<? extends Annotation> targetType) {
+
+		Set<String> targetAttributes = new HashSet<>();
+		for (Method targetAttribute : AnnotationUtils.getAttributeMethods(targetType)) {
+			targetAttributes.add(targetAttribute.getName());
+		}
+
+		List<String> sourceAttributeNames = new ArrayList<>();
+		List<String[]> targetAttributeNames = new ArrayList<>();
+		// Track which target attributes have already been overridden explicitly
+		Set<String> valuesAlreadyReplaced = new HashSet<>();
+
+		for (Method attributeMethod : AnnotationUtils.getAttributeMethods(sourceType)) {
+			String attributeName = attributeMethod.getName();
+			String attributeOverrideName = AnnotationUtils.getAttributeOverrideName(attributeMethod, targetType);
+
+			// Explicit annotation attribute override declared via @AliasFor
+			if (attributeOverrideName != null) {
+				if (valuesAlreadyReplaced.contains(attributeOverrideName)) {
+					continue;
+				}
+				List<String> targetNames = new ArrayList<>();
+				targetNames.add(attributeOverrideName);
+				valuesAlreadyReplaced.add(attributeOverrideName);
+
+				// Ensure all aliased attributes in the target annotation are overridden. (SPR-14069)
+				List<String> aliases = AnnotationUtils.getAttributeAliasMap(targetType).get(attributeOverrideName);
+				if (aliases != null) {
+					for (String alias : aliases) {
+						if (!valuesAlreadyReplaced.contains(alias)) {
+							targetNames.add(alias);
+							valuesAlreadyReplaced.add(alias);
+						}
+					}
+				}
+				sourceAttributeNames.add(attributeName);
+				targetAttributeNames.add(targetNames.toArray(new String[0]));
+			}
+			// Implicit annotation attribute override based on convention
+			else if (!AnnotationUtils.VALUE.equals(attributeName) && targetAttributes.contains(attributeName)) {
+				sourceAttributeNames.add(attributeName);
+				targetAttributeNames.add(new String[] {attributeName});
+			}
+		}
+		return new AttributeOverrideMapping(sourceAttributeNames, targetAttributeNames);
+	}
+
+
+	/**
+	 * Cache key for a pair of annotation types.
+	 */
+	private static final class Key {
+
+		private final Class<?> sourceType;
+
+		private final Class<?> targetType;
+
+		Key(Class<?> sourceType, Class<?> targetType) {
+			this.sourceType = sourceType;
+			this.targetType = targetType;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key otherKey = (Key) other;
+			return (this.sourceType == otherKey.sourceType && this.targetType == otherKey.targetType);
+		}
+
+		@Override
+		public int hashCode() {
+			return (this.sourceType.hashCode() * 29 + this.targetType.hashCode());
+		}
+	}
+
+}
@@ -0,0 +1,447 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.annotation;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.core.BridgeMethodResolver;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+/**
+ * Merged view of the annotations <em>present</em> or <em>meta-present</em> on
+ * an {@link AnnotatedElement}, following either <em>get</em> or <em>find</em>
+ * semantics as described in the {@linkplain AnnotatedElementUtils class-level
+ * javadoc} of {@code AnnotatedElementUtils}.
+ *
+ * <p>The annotation hierarchy of the element is scanned once, in the order of
+ * the search algorithms of {@code AnnotatedElementUtils}, into an immutable
+ * index of the first occurrence of each annotation type along with the path
+ * of annotations leading to it. A lookup then merges the attributes along
+ * that path, based on attribute overrides that are precomputed per pair of
+ * annotation types, and merged annotations are synthesized only once.
+ *
+ * <p>Instances are thread-safe. For classes, methods, fields and constructors,
+ * they are cached and shared; {@code AnnotatedElementUtils} uses them for its
+ * lookups of single merged annotations on such elements.
+ *
+ * @since 5.1
+ * @see AnnotatedElementUtils
+ */
+public final class MergedAnnotations {
+
+	/**
+	 * The strategy for searching the annotation hierarchy of an element.
+	 */
+	public enum SearchStrategy {
+
+		/**
+		 * Search the annotations present on the element itself, including
+		 * {@link java.lang.annotation.Inherited @Inherited} annotations on
+		 * classes, and their meta-annotations.
+		 * @see AnnotatedElementUtils#getMergedAnnotation
+		 */
+		GET,
+
+		/**
+		 * Additionally search the annotations declared on interfaces and
+		 * superclasses, or on the methods that a method overrides, as well as
+		 * on bridged methods.
+		 * @see AnnotatedElementUtils#findMergedAnnotation
+		 */
+		FIND
+	}
+
+
+	private static final Object NOT_FOUND = new Object();
+
+	private static final Map<AnnotatedElement, MergedAnnotations> getCache = new ConcurrentReferenceHashMap<>(256);
+
+	private static final Map<AnnotatedElement, MergedAnnotations> findCache = new ConcurrentReferenceHashMap<>(256);
+
+
+	private final AnnotatedElement element;
+
+	private final SearchStrategy searchStrategy;
+
+	private final Map<String, Entry> entries;
+
+	private final Map<Class<? extends Annotation>, Object> synthesizedAnnotations = new ConcurrentHashMap<>(8);
+
+
+	private MergedAnnotations(AnnotatedElement element, SearchStrategy searchStrategy) {
+		this.element = element;
+		this.searchStrategy = searchStrategy;
+		Map<String, Entry> entries = new HashMap<>();
+		Set<AnnotatedElement> visited = new HashSet<>();
+		if (searchStrategy == SearchStrategy.GET) {
+			collectWithGetSemantics(element, null, visited, entries);
+		}
+		else {
+			collectWithFindSemantics(element, null, visited, entries);
+		}
+		this.entries = (entries.isEmpty() ? Collections.emptyMap() : entries);
+	}
+
+
+	/**
+	 * Return the element whose annotations this instance represents.
+	 */
+	public AnnotatedElement getElement() {
+		return this.element;
+	}
+
+	/**
+	 * Return the strategy used for searching the annotation hierarchy.
+	 */
+	public SearchStrategy getSearchStrategy() {
+		return this.searchStrategy;
+	}
+
+	/**
+	 * Determine if an annotation of the specified {@code annotationType}
+	 * is <em>present</em> or <em>meta-present</em> on the element.
+	 * @param annotationType the annotation type to look for
+	 * @return {@code true} if a matching annotation is present
+	 */
+	public boolean isPresent(Class<? extends Annotation> annotationType) {
+		Assert.notNull(annotationType, "'annotationType' must not be null");
+		return (getEntry(annotationType) != null);
+	}
+
+	/**
+	 * Determine if an annotation of the specified {@code annotationName}
+	 * is <em>present</em> or <em>meta-present</em> on the element.
+	 * @param annotationName the fully qualified class name of the annotation type
+	 * @return {@code true} if a matching annotation is present
+	 */
+	public boolean isPresent(String annotationName) {
+		Assert.hasLength(annotationName, "'annotationName' must not be null or empty");
+		return this.entries.containsKey(annotationName);
+	}
+
+	/**
+	 * Get the first annotation of the specified {@code annotationType} within
+	 * the annotation hierarchy and merge that annotation's attributes with
+	 * <em>matching</em> attributes from annotations in lower levels of the
+	 * annotation hierarchy.
+	 * @param annotationType the annotation type to look for
+	 * @param classValuesAsString whether to convert Class references into Strings or to
+	 * preserve them as Class references
+	 * @param nestedAnnotationsAsMap whether to convert nested Annotation instances
+	 * into {@code AnnotationAttributes} maps or to preserve them as Annotation instances
+	 * @return a new instance of the merged {@code AnnotationAttributes},
+	 * or {@code null} if not found
+	 * @see AnnotatedElementUtils#getMergedAnnotationAttributes(AnnotatedElement, String, boolean, boolean)
+	 */
+	@Nullable
+	public AnnotationAttributes getMergedAnnotationAttributes(Class<? extends Annotation> annotationType,
+			boolean classValuesAsString, boolean nestedAnnotationsAsMap) {
+
+		Assert.notNull(annotationType, "'annotationType' must not be null");
+		return mergeAttributes(getEntry(annotationType), classValuesAsString, nestedAnnotationsAsMap);
+	}
+
+	/**
+	 * Get the first annotation of the specified {@code annotationName} within
+	 * the annotation hierarchy and merge that annotation's attributes with
+	 * <em>matching</em> attributes from annotations in lower levels of the
+	 * annotation hierarchy.
+	 * @param annotationName the fully qualified class name of the annotation type
+	 * @param classValuesAsString whether to convert Class references into Strings or to
+	 * preserve them as Class references
+	 * @param nestedAnnotationsAsMap whether to convert nested Annotation instances
+	 * into {@code AnnotationAttributes} maps or to preserve them as Annotation instances
+	 * @return a new instance of the merged {@code AnnotationAttributes},
+	 * or {@code null} if not found
+	 * @see AnnotatedElementUtils#getMergedAnnotationAttributes(AnnotatedElement, String, boolean, boolean)
+	 */
+	@Nullable
+	public AnnotationAttributes getMergedAnnotationAttributes(String annotationName,
+			boolean classValuesAsString, boolean nestedAnnotationsAsMap) {
+
+		Assert.hasLength(annotationName, "'annotationName' must not be null or empty");
+		return mergeAttributes(this.entries.get(annotationName), classValuesAsString, nestedAnnotationsAsMap);
+	}
+
+	/**
+	 * Get the first annotation of the specified {@code annotationType} within
+	 * the annotation hierarchy, merge that annotation's attributes with
+	 * <em>matching</em> attributes from annotations in lower levels of the
+	 * annotation hierarchy, and synthesize the result back into an annotation
+	 * of the specified {@code annotationType}.
+	 * <p>The synthesized annotation is cached for subsequent lookups.
+	 * @param annotationType the annotation type to look for
+	 * @return the merged, synthesized {@code Annotation}, or {@code null} if not found
+	 * @see AnnotatedElementUtils#getMergedAnnotation(AnnotatedElement, Class)
+	 */
+	@Nullable
+	@SuppressWarnings("unchecked")
+	public <A extends Annotation> A getMergedAnnotation(Class<A> annotationType) {
+		Object annotation = this.synthesizedAnnotations.get(annotationType);
+		if (annotation == null) {
+			AnnotationAttributes attributes = getMergedAnnotationAttributes(annotationType, false, false);
+			annotation = (attributes != null ?
+					AnnotationUtils.synthesizeAnnotation(attributes, annotationType, this.element) : NOT_FOUND);
+			this.synthesizedAnnotations.put(annotationType, annotation);
+		}
+		return (annotation != NOT_FOUND ? (A) annotation : null);
+	}
+
+	@Nullable
+	private Entry getEntry(Class<? extends Annotation> annotationType) {
+		Entry entry = this.entries.get(annotationType.getName());
+		// Ignore a same-named annotation type from a different ClassLoader
+		return (entry != null && entry.annotation.annotationType() == annotationType ? entry : null);
+	}
+
+	@Nullable
+	private AnnotationAttributes mergeAttributes(@Nullable Entry entry, boolean classValuesAsString,
+			boolean nestedAnnotationsAsMap) {
+
+		if (entry == null) {
+			return null;
+		}
+		try {
+			AnnotationAttributes attributes = AnnotationUtils.retrieveAnnotationAttributes(
+					entry.declaringElement, entry.annotation, classValuesAsString, nestedAnnotationsAsMap);
+			Class<? extends Annotation> targetType = entry.annotation.annotationType();
+			for (Entry current = entry.parent; current != null; current = current.parent) {
+				Class<? extends Annotation> sourceType = current.annotation.annotationType();
+				AnnotatedElement element = (this.searchStrategy == SearchStrategy.GET ?
+						current.declaringElement : sourceType);
+				AttributeOverrideMapping.forAnnotationTypes(sourceType, targetType).apply(
+						element, current.annotation, attributes, classValuesAsString, nestedAnnotationsAsMap);
+			}
+			AnnotationUtils.postProcessAnnotationAttributes(
+					this.element, attributes, classValuesAsString, nestedAnnotationsAsMap);
+			return attributes;
+		}
+		catch (Throwable ex) {
+			AnnotationUtils.handleIntrospectionFailure(this.element, ex);
+			return null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "MergedAnnotations (" + this.searchStrategy + ") on " + this.element + ": " + this.entries.keySet();
+	}
+
+
+	/**
+	 * Return the {@code MergedAnnotations} for the supplied element, following
+	 * the supplied search strategy.
+	 * <p>Instances for classes, methods, fields and constructors are cached.
+	 * @param element the annotated element
+	 * @param searchStrategy the strategy for searching the annotation hierarchy
+	 * @return the merged annotations (never {@code null})
+	 */
+	public static MergedAnnotations from(AnnotatedElement element, SearchStrategy searchStrategy) {
+		Assert.notNull(element, "AnnotatedElement must not be null");
+		Assert.notNull(searchStrategy, "SearchStrategy must not be null");
+		if (!isCacheable(element)) {
+			return new MergedAnnotations(element, searchStrategy);
+		}
+		Map<AnnotatedElement, MergedAnnotations> cache =
+				(searchStrategy == SearchStrategy.GET ? getCache : findCache);
+		MergedAnnotations annotations = cache.get(element);
+		if (annotations == null) {
+			annotations = new MergedAnnotations(element, searchStrategy);
+			cache.put(element, annotations);
+		}
+		return annotations;
+	}
+
+	/**
+	 * Determine whether {@code MergedAnnotations} for the supplied element are
+	 * cached, i.e. whether the element is a class, method, field or constructor.
+	 */
+	static boolean isCacheable(AnnotatedElement element) {
+		return (element instanceof Class || element instanceof Member);
+	}
+
+	/**
+	 * Clear the internal cache of merged annotations.
+	 */
+	public static void clearCache() {
+		getCache.clear();
+		findCache.clear();
+	}
+
+
+	// Scanning the annotation hierarchy, in the order of the search algorithms
+	// in AnnotatedElementUtils, recording the first occurrence of each type
+
+	private static void collectWithGetSemantics(AnnotatedElement element, @Nullable Entry parent,
+			Set<AnnotatedElement> visited, Map<String, Entry> entries) {
+
+		if (visited.add(element)) {
+			try {
+				// Start with locally declared annotations
+				List<Annotation> declaredAnnotations = Arrays.asList(element.getDeclaredAnnotations());
+				collectWithGetSemanticsInAnnotations(element, declaredAnnotations, parent, visited, entries);
+
+				if (element instanceof Class) { // otherwise getAnnotations doesn't return anything new
+					List<Annotation> inheritedAnnotations = new ArrayList<>();
+					for (Annotation annotation : element.getAnnotations()) {
+						if (!declaredAnnotations.contains(annotation)) {
+							inheritedAnnotations.add(annotation);
+						}
+					}
+					// Continue with inherited annotations
+					collectWithGetSemanticsInAnnotations(element, inheritedAnnotations, parent, visited, entries);
+				}
+			}
+			catch (Throwable ex) {
+				AnnotationUtils.handleIntrospectionFailure(element, ex);
+			}
+		}
+	}
+
+	private static void collectWithGetSemanticsInAnnotations(AnnotatedElement element, List<Annotation> annotations,
+			@Nullable Entry parent, Set<AnnotatedElement> visited, Map<String, Entry> entries) {
+
+		List<Entry> added = collectAnnotations(element, annotations, parent, entries);
+		for (Entry entry : added) {
+			collectWithGetSemantics(entry.annotation.annotationType(), entry, visited, entries);
+		}
+	}
+
+	private static void collectWithFindSemantics(AnnotatedElement element, @Nullable Entry parent,
+			Set<AnnotatedElement> visited, Map<String, Entry> entries) {
+
+		if (visited.add(element)) {
+			try {
+				// Locally declared annotations (ignoring @Inherited) and their meta-annotations
+				List<Entry> added = collectAnnotations(
+						element, Arrays.asList(element.getDeclaredAnnotations()), parent, entries);
+				for (Entry entry : added) {
+					collectWithFindSemantics(entry.annotation.annotationType(), entry, visited, entries);
+				}
+
+				if (element instanceof Method) {
+					Method method = (Method) element;
+
+					// Possibly bridged method
+					Method resolvedMethod = BridgeMethodResolver.findBridgedMethod(method);
+					collectWithFindSemantics(resolvedMethod, parent, visited, entries);
+
+					// Methods in interfaces declared locally
+					collectOnInterfaces(method, method.getDeclaringClass().getInterfaces(), parent, visited, entries);
+
+					// Methods in class hierarchy and interface hierarchy
+					Class<?> clazz = method.getDeclaringClass();
+					while (true) {
+						clazz = clazz.getSuperclass();
+						if (clazz == null || Object.class == clazz) {
+							break;
+						}
+						try {
+							Method equivalentMethod = clazz.getDeclaredMethod(method.getName(), method.getParameterTypes());
+							Method resolvedEquivalentMethod = BridgeMethodResolver.findBridgedMethod(equivalentMethod);
+							collectWithFindSemantics(resolvedEquivalentMethod, parent, visited, entries);
+						}
+						catch (NoSuchMethodException ex) {
+							// No equivalent method found
+						}
+						collectOnInterfaces(method, clazz.getInterfaces(), parent, visited, entries);
+					}
+				}
+				else if (element instanceof Class) {
+					Class<?> clazz = (Class<?>) element;
+					for (Class<?> ifc : clazz.getInterfaces()) {
+						collectWithFindSemantics(ifc, parent, visited, entries);
+					}
+					Class<?> superclass = clazz.getSuperclass();
+					if (superclass != null && Object.class != superclass) {
+						collectWithFindSemantics(superclass, parent, visited, entries);
+					}
+				}
+			}
+			catch (Throwable ex) {
+				AnnotationUtils.handleIntrospectionFailure(element, ex);
+			}
+		}
+	}
+
+	private static void collectOnInterfaces(Method method, Class<?>[] ifcs, @Nullable Entry parent,
+			Set<AnnotatedElement> visited, Map<String, Entry> entries) {
+
+		for (Class<?> ifc : ifcs) {
+			if (AnnotationUtils.isInterfaceWithAnnotatedMethods(ifc)) {
+				try {
+					Method equivalentMethod = ifc.getMethod(method.getName(), method.getParameterTypes());
+					collectWithFindSemantics(equivalentMethod, parent, visited, entries);
+				}
+				catch (NoSuchMethodException ex) {
+					// Skip this interface - it doesn't have the method...
+				}
+			}
+		}
+	}
+
+	private static List<Entry> collectAnnotations(AnnotatedElement element, List<Annotation> annotations,
+			@Nullable Entry parent, Map<String, Entry> entries) {
+
+		List<Entry> added = new ArrayList<>(annotations.size());
+		for (Annotation annotation : annotations) {
+			Class<? extends Annotation> annotationType = annotation.annotationType();
+			if (!AnnotationUtils.isInJavaLangAnnotationPackage(annotationType)) {
+				Entry entry = new Entry(annotation, element, parent);
+				entries.putIfAbsent(annotationType.getName(), entry);
+				added.add(entry);
+			}
+		}
+		return added;
+	}
+
+
+	/**
+	 * An annotation within the annotation hierarchy, along with the element
+	 * it is declared on and the annotation on the lower level it is declared by.
+	 */
+	private static final class Entry {
+
+		final Annotation annotation;
+
+		final AnnotatedElement declaringElement;
+
+		@Nullable
+		final Entry parent;
+
+		Entry(Annotation annotation, AnnotatedElement declaringElement, @Nullable Entry parent) {
+			this.annotation = annotation;
+			this.declaringElement = declaringElement;
+			this.parent = parent;
+		}
+	}
+
+}
@@ -0,0 +1,532 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.io.buffer;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * Extension of {@link DefaultDataBufferFactory} that pools the memory of the
+ * buffers it allocates, so that runtimes other than Netty can reuse buffers
+ * rather than allocating a new {@link ByteBuffer} for each of them.
+ *
+ * <p>Allocated buffers are {@link PooledDataBuffer}s with an initial reference
+ * count of one. Once {@linkplain DataBufferUtils#release(DataBuffer) released},
+ * their memory is returned to the pool, and the buffer must not be used anymore.
+ * Slices share the reference count of the buffer they were created from.
+ *
+ * <p>Memory is pooled in power-of-two size classes, from
+ * {@value #MIN_POOLED_CAPACITY} bytes up to the {@code maxPooledCapacity} given
+ * at construction time; larger buffers are allocated on demand and not pooled.
+ * Released memory goes to a small {@linkplain #setThreadCacheSize cache} of the
+ * releasing thread first, and to a {@linkplain #setMaxPooledBuffers bounded}
+ * pool shared by all threads after that.
+ *
+ * <p>A buffer that is garbage collected without having been released does not
+ * exhaust the pool, but its memory is not reused either. Such leaks can be
+ * reported, along with the stack trace of the allocation, by enabling
+ * {@linkplain #setLeakDetection leak detection}.
+ *
+ * <p>Buffers created through {@link #wrap(ByteBuffer)} and {@link #wrap(byte[])}
+ * are not pooled.
+ *
+ * @since 5.1
+ * @see DataBufferUtils#release(DataBuffer)
+ */
+public class PoolingDataBufferFactory extends DefaultDataBufferFactory {
+
+	/**
+	 * The smallest size class; smaller buffers are allocated from it as well.
+	 */
+	public static final int MIN_POOLED_CAPACITY = 256;
+
+	/**
+	 * The default capacity of the largest size class.
+	 * @see #PoolingDataBufferFactory(boolean, int, int)
+	 */
+	public static final int DEFAULT_MAX_POOLED_CAPACITY = 64 * 1024;
+
+	private static final int MIN_POOLED_CAPACITY_SHIFT = Integer.numberOfTrailingZeros(MIN_POOLED_CAPACITY);
+
+	private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+	private static final Log logger = LogFactory.getLog(PoolingDataBufferFactory.class);
+
+
+	private final boolean preferDirect;
+
+	private final int maxPooledCapacity;
+
+	private int maxPooledBuffers = 64;
+
+	private int threadCacheSize = 16;
+
+	private volatile boolean leakDetection;
+
+	@Nullable
+	private volatile Pool pool;
+
+	private final Set<LeakTracker> leakTrackers = ConcurrentHashMap.newKeySet();
+
+	private final ReferenceQueue<Object> leakQueue = new ReferenceQueue<>();
+
+	private final AtomicLong leakCount = new AtomicLong();
+
+
+	/**
+	 * Creates a new {@code PoolingDataBufferFactory} with default settings.
+	 */
+	public PoolingDataBufferFactory() {
+		this(false);
+	}
+
+	/**
+	 * Creates a new {@code PoolingDataBufferFactory}, indicating whether direct
+	 * buffers should be created by {@link #allocateBuffer()} and
+	 * {@link #allocateBuffer(int)}.
+	 * @param preferDirect {@code true} if direct buffers are to be preferred;
+	 * {@code false} otherwise
+	 */
+	public PoolingDataBufferFactory(boolean preferDirect) {
+		this(preferDirect, DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_POOLED_CAPACITY);
+	}
+
+	/**
+	 * Creates a new {@code PoolingDataBufferFactory}, indicating whether direct
+	 * buffers should be created by {@link #allocateBuffer()} and
+	 * {@link #allocateBuffer(int)}, what the capacity is to be used for
+	 * {@link #allocateBuffer()}, and up to which capacity buffers are pooled.
+	 * @param preferDirect {@code true} if direct buffers are to be preferred;
+	 * {@code false} otherwise
+	 * @param defaultInitialCapacity the capacity of {@link #allocateBuffer()}
+	 * @param maxPooledCapacity the capacity of the largest size class, a power
+	 * of two no smaller than {@value #MIN_POOLED_CAPACITY}
+	 */
+	public PoolingDataBufferFactory(boolean preferDirect, int defaultInitialCapacity, int maxPooledCapacity) {
+		super(preferDirect, defaultInitialCapacity);
+		Assert.isTrue(maxPooledCapacity >= MIN_POOLED_CAPACITY && Integer.bitCount(maxPooledCapacity) == 1,
+				"'maxPooledCapacity' must be a power of two >= " + MIN_POOLED_CAPACITY);
+		this.preferDirect = preferDirect;
+		this.maxPooledCapacity = maxPooledCapacity;
+	}
+
+
+	/**
+	 * Set the maximum number of released buffers per size class that are kept
+	 * in the pool shared by all threads.
+	 * <p>Default is 64. Can only be changed before the first allocation.
+	 */
+	public void setMaxPooledBuffers(int maxPooledBuffers) {
+		Assert.isTrue(maxPooledBuffers >= 0, "'maxPooledBuffers' must not be negative");
+		assertNotInitialized();
+		this.maxPooledBuffers = maxPooledBuffers;
+	}
+
+	/**
+	 * Set the maximum number of released buffers per size class that are kept
+	 * by each thread for its own subsequent allocations, avoiding contention
+	 * on the shared pool.
+	 * <p>Default is 16. Set this to 0 to only use the shared pool. Can only be
+	 * changed before the first allocation.
+	 */
+	public void setThreadCacheSize(int threadCacheSize) {
+		Assert.isTrue(threadCacheSize >= 0, "'threadCacheSize' must not be negative");
+		assertNotInitialized();
+		this.threadCacheSize = threadCacheSize;
+	}
+
+	/**
+	 * Specify whether to track allocated buffers in order to detect buffers
+	 * that were garbage collected without having been released.
+	 * <p>Such leaks are logged at error level, along with the stack trace of
+	 * the allocation. Since this requires a stack trace for each allocated
+	 * buffer, leak detection is meant for tests and diagnostics only.
+	 * <p>Default is "false". Affects buffers allocated after the change.
+	 * @see #getLeakCount()
+	 * @see #getTrackedBufferCount()
+	 */
+	public void setLeakDetection(boolean leakDetection) {
+		this.leakDetection = leakDetection;
+	}
+
+	/**
+	 * Return whether leak detection is enabled.
+	 */
+	public boolean isLeakDetection() {
+		return this.leakDetection;
+	}
+
+	/**
+	 * Return the number of leaks detected so far, i.e. the number of tracked
+	 * buffers that were garbage collected without having been released.
+	 * @see #setLeakDetection
+	 */
+	public long getLeakCount() {
+		reportLeaks();
+		return this.leakCount.get();
+	}
+
+	/**
+	 * Return the number of tracked buffers that have neither been released
+	 * nor garbage collected yet. Always {@code 0} unless leak detection is
+	 * enabled.
+	 * @see #setLeakDetection
+	 */
+	public int getTrackedBufferCount() {
+		reportLeaks();
+		return this.leakTrackers.size();
+	}
+
+
+	@Override
+	public DefaultDataBuffer allocateBuffer(int initialCapacity) {
+		return new PooledBuffer(acquire(initialCapacity), initialCapacity);
+	}
+
+	private ByteBuffer acquire(int capacity) {
+		int sizeClass = sizeClass(capacity);
+		if (sizeClass < 0) {
+			return allocateMemory(capacity);
+		}
+		ByteBuffer memory = getPool().poll(sizeClass);
+		return (memory != null ? memory : allocateMemory(MIN_POOLED_CAPACITY << sizeClass));
+	}
+
+	private void recycle(ByteBuffer memory) {
+		int sizeClass = sizeClass(memory.capacity());
+		if (sizeClass >= 0 && memory.capacity() == MIN_POOLED_CAPACITY << sizeClass) {
+			getPool().offer(sizeClass, memory);
+		}
+	}
+
+	private ByteBuffer allocateMemory(int capacity) {
+		return (this.preferDirect ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity));
+	}
+
+	private int sizeClass(int capacity) {
+		if (capacity > this.maxPooledCapacity) {
+			return -1;
+		}
+		if (capacity <= MIN_POOLED_CAPACITY) {
+			return 0;
+		}
+		return (Integer.SIZE - Integer.numberOfLeadingZeros(capacity - 1)) - MIN_POOLED_CAPACITY_SHIFT;
+	}
+
+	private Pool getPool() {
+		Pool pool = this.pool;
+		if (pool == null) {
+			synchronized (this) {
+				pool = this.pool;
+				if (pool == null) {
+					int sizeClasses = sizeClass(this.maxPooledCapacity) + 1;
+					pool = new Pool(sizeClasses, this.maxPooledBuffers, this.threadCacheSize);
+					this.pool = pool;
+				}
+			}
+		}
+		return pool;
+	}
+
+	private void assertNotInitialized() {
+		Assert.state(this.pool == null, "Pool settings cannot be changed after the first allocation");
+	}
+
+	@Nullable
+	private LeakTracker track(PooledBuffer buffer) {
+		if (!this.leakDetection) {
+			return null;
+		}
+		reportLeaks();
+		LeakTracker tracker = new LeakTracker(buffer, this.leakQueue);
+		this.leakTrackers.add(tracker);
+		return tracker;
+	}
+
+	private void untrack(@Nullable LeakTracker tracker) {
+		if (tracker != null) {
+			tracker.clear();
+			this.leakTrackers.remove(tracker);
+		}
+	}
+
+	private void reportLeaks() {
+		Reference<?> reference;
+		while ((reference = this.leakQueue.poll()) != null) {
+			LeakTracker tracker = (LeakTracker) reference;
+			if (this.leakTrackers.remove(tracker)) {
+				this.leakCount.incrementAndGet();
+				logger.error("DataBuffer was garbage collected without having been released; " +
+						"make sure to call DataBufferUtils.release(DataBuffer) once done with it", tracker.allocation);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "PoolingDataBufferFactory (preferDirect=" + this.preferDirect +
+				", maxPooledCapacity=" + this.maxPooledCapacity + ")";
+	}
+
+
+	/**
+	 * The pooled memory: a bounded queue per size class shared by all threads,
+	 * fronted by a cache per thread.
+	 */
+	private static final class Pool {
+
+		private final ArrayBlockingQueue<ByteBuffer>[] shared;
+
+		@Nullable
+		private final ThreadLocal<ThreadCache> threadCache;
+
+		@SuppressWarnings("unchecked")
+		Pool(int sizeClasses, int maxPooledBuffers, int threadCacheSize) {
+			this.shared = new ArrayBlockingQueue[sizeClasses];
+			if (maxPooledBuffers > 0) {
+				for (int i = 0; i < sizeClasses; i++) {
+					this.shared[i] = new ArrayBlockingQueue<>(maxPooledBuffers);
+				}
+			}
+			this.threadCache = (threadCacheSize > 0 ?
+					ThreadLocal.withInitial(() -> new ThreadCache(sizeClasses, threadCacheSize)) : null);
+		}
+
+		@Nullable
+		ByteBuffer poll(int sizeClass) {
+			ByteBuffer memory = null;
+			if (this.threadCache != null) {
+				memory = this.threadCache.get().poll(sizeClass);
+			}
+			if (memory == null && this.shared[sizeClass] != null) {
+				memory = this.shared[sizeClass].poll();
+			}
+			return memory;
+		}
+
+		void offer(int sizeClass, ByteBuffer memory) {
+			if (this.threadCache != null && this.threadCache.get().offer(sizeClass, memory)) {
+				return;
+			}
+			if (this.shared[sizeClass] != null) {
+				this.shared[sizeClass].offer(memory);
+			}
+		}
+	}
+
+
+	/**
+	 * Per-thread stacks of released memory, one per size class.
+	 */
+	private static final class ThreadCache {
+
+		private final ByteBuffer[][] stacks;
+
+		private final int[] sizes;
+
+		ThreadCache(int sizeClasses, int capacity) {
+			this.stacks = new ByteBuffer[sizeClasses][capacity];
+			this.sizes = new int[sizeClasses];
+		}
+
+		@Nullable
+		ByteBuffer poll(int sizeClass) {
+			int size = this.sizes[sizeClass];
+			if (size == 0) {
+				return null;
+			}
+			ByteBuffer[] stack = this.stacks[sizeClass];
+			ByteBuffer memory = stack[--size];
+			stack[size] = null;
+			this.sizes[sizeClass] = size;
+			return memory;
+		}
+
+		boolean offer(int sizeClass, ByteBuffer memory) {
+			int size = this.sizes[sizeClass];
+			ByteBuffer[] stack = this.stacks[sizeClass];
+			if (size == stack.length) {
+				return false;
+			}
+			stack[size] = memory;
+			this.sizes[sizeClass] = size + 1;
+			return true;
+		}
+	}
+
+
+	/**
+	 * Weak reference to an allocated buffer, holding the stack trace of its allocation.
+	 */
+	private static final class LeakTracker extends WeakReference<Object> {
+
+		private final Throwable allocation;
+
+		LeakTracker(Object buffer, ReferenceQueue<Object> queue) {
+			super(buffer, queue);
+			this.allocation = new Throwable("Allocation of leaked DataBuffer");
+		}
+	}
+
+
+	/**
+	 * Reference-counted buffer backed by pooled memory.
+	 */
+	private final class PooledBuffer extends DefaultDataBuffer implements PooledDataBuffer {
+
+		private final AtomicInteger refCount = new AtomicInteger(1);
+
+		private ByteBuffer memory;
+
+		@Nullable
+		private final LeakTracker leakTracker;
+
+		PooledBuffer(ByteBuffer memory, int capacity) {
+			super(PoolingDataBufferFactory.this, view(memory, capacity));
+			this.memory = memory;
+			this.leakTracker = track(this);
+		}
+
+		@Override
+		ByteBuffer allocate(int capacity, boolean direct) {
+			Assert.state(this.refCount.get() > 0, "DataBuffer has already been released");
+			this.memory = acquire(capacity);
+			return view(this.memory, capacity);
+		}
+
+		@Override
+		public DataBuffer capacity(int newCapacity) {
+			ByteBuffer oldMemory = this.memory;
+			super.capacity(newCapacity);
+			if (this.memory != oldMemory) {
+				recycle(oldMemory);
+			}
+			return this;
+		}
+
+		@Override
+		public DataBuffer write(DataBuffer... buffers) {
+			// Take ownership of the given buffers, as NettyDataBuffer does
+			super.write(buffers);
+			for (DataBuffer buffer : buffers) {
+				DataBufferUtils.release(buffer);
+			}
+			return this;
+		}
+
+		@Override
+		public DataBuffer slice(int index, int length) {
+			ByteBuffer slice = ((DefaultDataBuffer) super.slice(index, length)).getNativeBuffer();
+			return new SlicedPooledBuffer(this, slice, length);
+		}
+
+		@Override
+		public PooledDataBuffer retain() {
+			int count;
+			do {
+				count = this.refCount.get();
+				Assert.state(count > 0, "DataBuffer has already been released");
+			}
+			while (!this.refCount.compareAndSet(count, count + 1));
+			return this;
+		}
+
+		@Override
+		public boolean release() {
+			int count;
+			do {
+				count = this.refCount.get();
+				Assert.state(count > 0, "DataBuffer has already been released");
+			}
+			while (!this.refCount.compareAndSet(count, count - 1));
+			if (count > 1) {
+				return false;
+			}
+			readPosition(0);
+			writePosition(0);
+			setNativeBuffer(EMPTY_BUFFER);
+			untrack(this.leakTracker);
+			recycle(this.memory);
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("PooledDataBuffer (r: %d, w %d, c %d, refCount %d)",
+					readPosition(), writePosition(), capacity(), this.refCount.get());
+		}
+	}
+
+
+	/**
+	 * Slice of a {@link PooledBuffer}, sharing its reference count.
+	 */
+	private final class SlicedPooledBuffer extends DefaultDataBuffer implements PooledDataBuffer {
+
+		private final PooledBuffer parent;
+
+		SlicedPooledBuffer(PooledBuffer parent, ByteBuffer slice, int length) {
+			super(PoolingDataBufferFactory.this, slice);
+			this.parent = parent;
+			writePosition(length);
+		}
+
+		@Override
+		public DataBuffer capacity(int newCapacity) {
+			throw new UnsupportedOperationException("Changing the capacity of a sliced buffer is not supported");
+		}
+
+		@Override
+		public DataBuffer slice(int index, int length) {
+			ByteBuffer slice = ((DefaultDataBuffer) super.slice(index, length)).getNativeBuffer();
+			return new SlicedPooledBuffer(this.parent, slice, length);
+		}
+
+		@Override
+		public PooledDataBuffer retain() {
+			this.parent.retain();
+			return this;
+		}
+
+		@Override
+		public boolean release() {
+			return this.parent.release();
+		}
+	}
+
+
+	private static ByteBuffer view(ByteBuffer memory, int capacity) {
+		ByteBuffer view = memory.duplicate();
+		((Buffer) view).clear().limit(capacity);
+		return view.slice();
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -159,6 +159,7 @@ public class CachingMetadataReaderFactory extends SimpleMetadataReaderFactory {
 
 		public LocalResourceCache(int cacheLimit) {
 			super(cacheLimit, 0.75f, true);
+			this.cacheLimit = cacheLimit;
 		}
 
 		public void setCacheLimit(int cacheLimit) {
@@ -0,0 +1,587 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.type.classreading;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.asm.Type;
+import org.springframework.core.NestedIOException;
+import org.springframework.lang.Nullable;
+
+/**
+ * Records the class file events that are relevant for class and annotation
+ * metadata (class header, enclosing and member classes, class annotations,
+ * and annotations on non-bridge methods) into a compact binary form, and
+ * replays such a recording into a {@link ClassVisitor} without parsing the
+ * class file again.
+ *
+ * <p>Used by {@link PersistentMetadataReaderFactory} for its on-disk cache.
+ * Since the recording consists of the raw class file events, replaying it
+ * into an {@link AnnotationMetadataReadingVisitor} yields exactly the same
+ * metadata as parsing the original class file.
+ *
+ * @since 5.1
+ * @see PersistentMetadataReaderFactory
+ */
+final class ClassMetadataRecorder {
+
+	private static final int PARSING_OPTIONS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+
+	// Class-level events
+
+	private static final byte END_OF_CLASS = 0;
+
+	private static final byte OUTER_CLASS = 1;
+
+	private static final byte INNER_CLASS = 2;
+
+	private static final byte CLASS_ANNOTATION = 3;
+
+	private static final byte METHOD = 4;
+
+	private static final byte METHOD_ANNOTATION = 5;
+
+	// Annotation-level events
+
+	private static final byte END_OF_ANNOTATION = 0;
+
+	private static final byte VALUE = 1;
+
+	private static final byte ENUM = 2;
+
+	private static final byte NESTED_ANNOTATION = 3;
+
+	private static final byte ARRAY = 4;
+
+	// Value types
+
+	private static final byte TYPE = 'T';
+
+	private static final byte STRING = 's';
+
+	private static final byte PRIMITIVE_ARRAY = '[';
+
+	private static final Map<Class<?>, Class<?>> PRIMITIVE_TYPES = new HashMap<>(8);
+
+	static {
+		PRIMITIVE_TYPES.put(Byte.class, byte.class);
+		PRIMITIVE_TYPES.put(Boolean.class, boolean.class);
+		PRIMITIVE_TYPES.put(Character.class, char.class);
+		PRIMITIVE_TYPES.put(Short.class, short.class);
+		PRIMITIVE_TYPES.put(Integer.class, int.class);
+		PRIMITIVE_TYPES.put(Long.class, long.class);
+		PRIMITIVE_TYPES.put(Float.class, float.class);
+		PRIMITIVE_TYPES.put(Double.class, double.class);
+	}
+
+
+	private ClassMetadataRecorder() {
+	}
+
+
+	/**
+	 * Parse the given class file into the given visitor, recording the
+	 * relevant events along the way.
+	 * @param classFile the content of the class file
+	 * @param visitor the visitor to parse the class file into
+	 * @param description a description of the class file, for error messages
+	 * @return the recording
+	 * @throws IOException if the class file could not be parsed
+	 */
+	static byte[] record(byte[] classFile, ClassVisitor visitor, String description) throws IOException {
+		ClassReader classReader;
+		try {
+			classReader = new ClassReader(classFile);
+		}
+		catch (IllegalArgumentException ex) {
+			throw new NestedIOException("ASM ClassReader failed to parse class file - " +
+					"probably due to a new Java class file version that isn't supported yet: " + description, ex);
+		}
+		ByteArrayOutputStream recording = new ByteArrayOutputStream(256);
+		DataOutputStream out = new DataOutputStream(recording);
+		classReader.accept(new RecordingClassVisitor(visitor, out), PARSING_OPTIONS);
+		out.writeByte(END_OF_CLASS);
+		return recording.toByteArray();
+	}
+
+	/**
+	 * Replay the given recording into the given visitor.
+	 * @param recording a recording as returned from {@link #record}
+	 * @param visitor the visitor to replay the recording into
+	 * @throws IOException if the recording is invalid
+	 */
+	static void replay(byte[] recording, ClassVisitor visitor) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(recording));
+		int access = in.readInt();
+		String name = in.readUTF();
+		String superName = readNullableString(in);
+		String[] interfaces = new String[in.readUnsignedShort()];
+		for (int i = 0; i < interfaces.length; i++) {
+			interfaces[i] = in.readUTF();
+		}
+		visitor.visit(Opcodes.V1_8, access, name, null, superName, interfaces);
+
+		MethodVisitor methodVisitor = null;
+		byte event;
+		while ((event = in.readByte()) != END_OF_CLASS) {
+			switch (event) {
+				case OUTER_CLASS:
+					visitor.visitOuterClass(in.readUTF(), null, null);
+					break;
+				case INNER_CLASS:
+					visitor.visitInnerClass(in.readUTF(), in.readUTF(), readNullableString(in), in.readInt());
+					break;
+				case CLASS_ANNOTATION:
+					replayAnnotation(in, visitor.visitAnnotation(in.readUTF(), in.readBoolean()));
+					break;
+				case METHOD:
+					if (methodVisitor != null) {
+						methodVisitor.visitEnd();
+					}
+					methodVisitor = visitor.visitMethod(in.readInt(), in.readUTF(), in.readUTF(), null, null);
+					break;
+				case METHOD_ANNOTATION:
+					if (methodVisitor == null) {
+						throw new IOException("Method annotation without method in metadata recording");
+					}
+					replayAnnotation(in, methodVisitor.visitAnnotation(in.readUTF(), in.readBoolean()));
+					break;
+				default:
+					throw new IOException("Invalid event " + event + " in metadata recording");
+			}
+		}
+		if (methodVisitor != null) {
+			methodVisitor.visitEnd();
+		}
+		visitor.visitEnd();
+	}
+
+	private static void replayAnnotation(DataInputStream in, @Nullable AnnotationVisitor visitor) throws IOException {
+		byte event;
+		while ((event = in.readByte()) != END_OF_ANNOTATION) {
+			String name = readNullableString(in);
+			switch (event) {
+				case VALUE:
+					Object value = readValue(in);
+					if (visitor != null) {
+						visitor.visit(name, value);
+					}
+					break;
+				case ENUM:
+					String desc = in.readUTF();
+					String enumValue = in.readUTF();
+					if (visitor != null) {
+						visitor.visitEnum(name, desc, enumValue);
+					}
+					break;
+				case NESTED_ANNOTATION:
+					String annotationDesc = in.readUTF();
+					replayAnnotation(in, (visitor != null ? visitor.visitAnnotation(name, annotationDesc) : null));
+					break;
+				case ARRAY:
+					replayAnnotation(in, (visitor != null ? visitor.visitArray(name) : null));
+					break;
+				default:
+					throw new IOException("Invalid annotation event " + event + " in metadata recording");
+			}
+		}
+		if (visitor != null) {
+			visitor.visitEnd();
+		}
+	}
+
+	private static void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value instanceof String) {
+			out.writeByte(STRING);
+			out.writeUTF((String) value);
+		}
+		else if (value instanceof Type) {
+			out.writeByte(TYPE);
+			out.writeUTF(((Type) value).getDescriptor());
+		}
+		else if (value.getClass().isArray()) {
+			int length = Array.getLength(value);
+			out.writeByte(PRIMITIVE_ARRAY);
+			out.writeByte(Type.getDescriptor(value.getClass().getComponentType()).charAt(0));
+			out.writeInt(length);
+			for (int i = 0; i < length; i++) {
+				writePrimitive(out, Array.get(value, i));
+			}
+		}
+		else {
+			Class<?> primitiveType = PRIMITIVE_TYPES.get(value.getClass());
+			if (primitiveType == null) {
+				throw new IllegalArgumentException("Unsupported annotation value: " + value);
+			}
+			out.writeByte(Type.getDescriptor(primitiveType).charAt(0));
+			writePrimitive(out, value);
+		}
+	}
+
+	private static void writePrimitive(DataOutputStream out, Object value) throws IOException {
+		if (value instanceof Byte) {
+			out.writeByte((Byte) value);
+		}
+		else if (value instanceof Boolean) {
+			out.writeBoolean((Boolean) value);
+		}
+		else if (value instanceof Character) {
+			out.writeChar((Character) value);
+		}
+		else if (value instanceof Short) {
+			out.writeShort((Short) value);
+		}
+		else if (value instanceof Integer) {
+			out.writeInt((Integer) value);
+		}
+		else if (value instanceof Long) {
+			out.writeLong((Long) value);
+		}
+		else if (value instanceof Float) {
+			out.writeFloat((Float) value);
+		}
+		else if (value instanceof Double) {
+			out.writeDouble((Double) value);
+		}
+		else {
+			throw new IllegalArgumentException("Unsupported annotation value: " + value);
+		}
+	}
+
+	private static Object readValue(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		switch (type) {
+			case STRING:
+				return in.readUTF();
+			case TYPE:
+				return Type.getType(in.readUTF());
+			case PRIMITIVE_ARRAY:
+				byte componentType = in.readByte();
+				int length = in.readInt();
+				switch (componentType) {
+					case 'B':
+						byte[] bytes = new byte[length];
+						in.readFully(bytes);
+						return bytes;
+					case 'Z':
+						boolean[] booleans = new boolean[length];
+						for (int i = 0; i < length; i++) {
+							booleans[i] = in.readBoolean();
+						}
+						return booleans;
+					case 'C':
+						char[] chars = new char[length];
+						for (int i = 0; i < length; i++) {
+							chars[i] = in.readChar();
+						}
+						return chars;
+					case 'S':
+						short[] shorts = new short[length];
+						for (int i = 0; i < length; i++) {
+							shorts[i] = in.readShort();
+						}
+						return shorts;
+					case 'I':
+						int[] ints = new int[length];
+						for (int i = 0; i < length; i++) {
+							ints[i] = in.readInt();
+						}
+						return ints;
+					case 'J':
+						long[] longs = new long[length];
+						for (int i = 0; i < length; i++) {
+							longs[i] = in.readLong();
+						}
+						return longs;
+					case 'F':
+						float[] floats = new float[length];
+						for (int i = 0; i < length; i++) {
+							floats[i] = in.readFloat();
+						}
+						return floats;
+					case 'D':
+						double[] doubles = new double[length];
+						for (int i = 0; i < length; i++) {
+							doubles[i] = in.readDouble();
+						}
+						return doubles;
+					default:
+						throw new IOException("Invalid array type " + componentType + " in metadata recording");
+				}
+			case 'B':
+				return in.readByte();
+			case 'Z':
+				return in.readBoolean();
+			case 'C':
+				return in.readChar();
+			case 'S':
+				return in.readShort();
+			case 'I':
+				return in.readInt();
+			case 'J':
+				return in.readLong();
+			case 'F':
+				return in.readFloat();
+			case 'D':
+				return in.readDouble();
+			default:
+				throw new IOException("Invalid value type " + type + " in metadata recording");
+		}
+	}
+
+	private static void writeNullableString(DataOutputStream out, @Nullable String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	@Nullable
+	private static String readNullableString(DataInputStream in) throws IOException {
+		return (in.readBoolean() ? in.readUTF() : null);
+	}
+
+
+	/**
+	 * {@link ClassVisitor} that records the relevant events while delegating
+	 * to the target visitor.
+	 */
+	private static class RecordingClassVisitor extends ClassVisitor {
+
+		private final DataOutputStream out;
+
+		private String className = "";
+
+		public RecordingClassVisitor(ClassVisitor visitor, DataOutputStream out) {
+			super(SpringAsmInfo.ASM_VERSION, visitor);
+			this.out = out;
+		}
+
+		@Override
+		public void visit(int version, int access, String name, String signature,
+				@Nullable String superName, String[] interfaces) {
+
+			this.className = name;
+			try {
+				this.out.writeInt(access);
+				this.out.writeUTF(name);
+				writeNullableString(this.out, superName);
+				this.out.writeShort(interfaces.length);
+				for (String ifc : interfaces) {
+					this.out.writeUTF(ifc);
+				}
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException(ex);
+			}
+			super.visit(version, access, name, signature, superName, interfaces);
+		}
+
+		@Override
+		public void visitOuterClass(String owner, String name, String desc) {
+			try {
+				this.out.writeByte(OUTER_CLASS);
+				this.out.writeUTF(owner);
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException(ex);
+			}
+			super.visitOuterClass(owner, name, desc);
+		}
+
+		@Override
+		public void visitInnerClass(String name, @Nullable String outerName, String innerName, int access) {
+			// Only entries for this class itself or for its member classes are relevant
+			if (outerName != null && (this.className.equals(name) || this.className.equals(outerName))) {
+				try {
+					this.out.writeByte(INNER_CLASS);
+					this.out.writeUTF(name);
+					this.out.writeUTF(outerName);
+					writeNullableString(this.out, innerName);
+					this.out.writeInt(access);
+				}
+				catch (IOException ex) {
+					throw new IllegalStateException(ex);
+				}
+			}
+			super.visitInnerClass(name, outerName, innerName, access);
+		}
+
+		@Override
+		public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+			try {
+				this.out.writeByte(CLASS_ANNOTATION);
+				this.out.writeUTF(desc);
+				this.out.writeBoolean(visible);
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException(ex);
+			}
+			return new RecordingAnnotationVisitor(super.visitAnnotation(desc, visible), this.out);
+		}
+
+		@Override
+		public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+			MethodVisitor visitor = super.visitMethod(access, name, desc, signature, exceptions);
+			if ((access & Opcodes.ACC_BRIDGE) != 0) {
+				// Bridge methods do not contribute to the metadata
+				return visitor;
+			}
+			return new RecordingMethodVisitor(visitor, this.out, access, name, desc);
+		}
+	}
+
+
+	/**
+	 * {@link MethodVisitor} that records the method and its annotations,
+	 * if any, while delegating to the target visitor.
+	 */
+	private static class RecordingMethodVisitor extends MethodVisitor {
+
+		private final DataOutputStream out;
+
+		private final int access;
+
+		private final String name;
+
+		private final String desc;
+
+		private boolean recorded;
+
+		public RecordingMethodVisitor(@Nullable MethodVisitor visitor, DataOutputStream out,
+				int access, String name, String desc) {
+
+			super(SpringAsmInfo.ASM_VERSION, visitor);
+			this.out = out;
+			this.access = access;
+			this.name = name;
+			this.desc = desc;
+		}
+
+		@Override
+		public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+			try {
+				if (!this.recorded) {
+					this.out.writeByte(METHOD);
+					this.out.writeInt(this.access);
+					this.out.writeUTF(this.name);
+					this.out.writeUTF(this.desc);
+					this.recorded = true;
+				}
+				this.out.writeByte(METHOD_ANNOTATION);
+				this.out.writeUTF(desc);
+				this.out.writeBoolean(visible);
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException(ex);
+			}
+			return new RecordingAnnotationVisitor(super.visitAnnotation(desc, visible), this.out);
+		}
+	}
+
+
+	/**
+	 * {@link AnnotationVisitor} that records annotation values while
+	 * delegating to the target visitor.
+	 */
+	private static class RecordingAnnotationVisitor extends AnnotationVisitor {
+
+		private final DataOutputStream out;
+
+		public RecordingAnnotationVisitor(@Nullable AnnotationVisitor visitor, DataOutputStream out) {
+			super(SpringAsmInfo.ASM_VERSION, visitor);
+			this.out = out;
+		}
+
+		@Override
+		public void visit(String name, Object value) {
+			try {
+				this.out.writeByte(VALUE);
+				writeNullableString(this.out, name);
+				writeValue(this.out, value);
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException(ex);
+			}
+			super.visit(name, value);
+		}
+
+		@Override
+		public void visitEnum(String name, String desc, String value) {
+			try {
+				this.out.writeByte(ENUM);
+				writeNullableString(this.out, name);
+				this.out.writeUTF(desc);
+				this.out.writeUTF(value);
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException(ex);
+			}
+			super.visitEnum(name, desc, value);
+		}
+
+		@Override
+		public AnnotationVisitor visitAnnotation(String name, String desc) {
+			try {
+				this.out.writeByte(NESTED_ANNOTATION);
+				writeNullableString(this.out, name);
+				this.out.writeUTF(desc);
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException(ex);
+			}
+			return new RecordingAnnotationVisitor(super.visitAnnotation(name, desc), this.out);
+		}
+
+		@Override
+		public AnnotationVisitor visitArray(String name) {
+			try {
+				this.out.writeByte(ARRAY);
+				writeNullableString(this.out, name);
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException(ex);
+			}
+			return new RecordingAnnotationVisitor(super.visitArray(name), this.out);
+		}
+
+		@Override
+		public void visitEnd() {
+			try {
+				this.out.writeByte(END_OF_ANNOTATION);
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException(ex);
+			}
+			super.visitEnd();
+		}
+	}
+
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.type.classreading;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * {@link CachingMetadataReaderFactory} variant which additionally keeps the
+ * class metadata in a persistent cache on disk, e.g. in a directory under the
+ * build output, so that subsequent JVM starts (e.g. container restarts during
+ * rolling deploys) can skip parsing class files that have not changed.
+ *
+ * <p>Each cache entry holds a compact recording of the metadata-relevant class
+ * file events (see {@link ClassMetadataRecorder}) along with the last-modified
+ * timestamp, the content length and an MD5 hash of the class file it was created
+ * from. An entry is used as-is if both timestamp and length of the class file are
+ * unchanged; otherwise the class file is hashed and the entry is used (and its
+ * timestamp updated) only if the content is unchanged, with the class file being
+ * parsed otherwise.
+ *
+ * <p>Any failure to read or write the cache is logged and leads to regular
+ * parsing of the class file. The cache directory may be shared between
+ * processes since cache entries are replaced atomically where supported.
+ *
+ * @since 5.1
+ * @see ClassMetadataRecorder
+ */
+public class PersistentMetadataReaderFactory extends CachingMetadataReaderFactory {
+
+	/** Suffix for cache entry files */
+	public static final String CACHE_FILE_SUFFIX = ".metadata";
+
+	private static final int MAGIC = 0x5350524d;
+
+	private static final int FORMAT_VERSION = 2;
+
+	private static final Log logger = LogFactory.getLog(PersistentMetadataReaderFactory.class);
+
+
+	private final File cacheDirectory;
+
+
+	/**
+	 * Create a new PersistentMetadataReaderFactory for the default class loader.
+	 * @param cacheDirectory the directory to keep the cache entries in
+	 * (created on demand)
+	 */
+	public PersistentMetadataReaderFactory(File cacheDirectory) {
+		super();
+		Assert.notNull(cacheDirectory, "Cache directory must not be null");
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/**
+	 * Create a new PersistentMetadataReaderFactory for the given {@link ClassLoader}.
+	 * @param classLoader the ClassLoader to use
+	 * @param cacheDirectory the directory to keep the cache entries in
+	 * (created on demand)
+	 */
+	public PersistentMetadataReaderFactory(@Nullable ClassLoader classLoader, File cacheDirectory) {
+		super(classLoader);
+		Assert.notNull(cacheDirectory, "Cache directory must not be null");
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/**
+	 * Create a new PersistentMetadataReaderFactory for the given {@link ResourceLoader},
+	 * using a shared in-memory resource cache if supported.
+	 * @param resourceLoader the Spring ResourceLoader to use
+	 * (also determines the ClassLoader to use)
+	 * @param cacheDirectory the directory to keep the cache entries in
+	 * (created on demand)
+	 */
+	public PersistentMetadataReaderFactory(@Nullable ResourceLoader resourceLoader, File cacheDirectory) {
+		super(resourceLoader);
+		Assert.notNull(cacheDirectory, "Cache directory must not be null");
+		this.cacheDirectory = cacheDirectory;
+	}
+
+
+	/**
+	 * Return the directory that the cache entries are kept in.
+	 */
+	public final File getCacheDirectory() {
+		return this.cacheDirectory;
+	}
+
+	@Override
+	protected MetadataReader createMetadataReader(Resource resource) throws IOException {
+		ClassLoader classLoader = getResourceLoader().getClassLoader();
+		String key = getCacheKey(resource);
+		File cacheFile = getCacheFile(key);
+		CacheEntry entry = readCacheEntry(cacheFile, key);
+		long lastModified = getLastModified(resource);
+		long contentLength = getContentLength(resource);
+
+		if (entry != null && lastModified != -1 && entry.lastModified == lastModified &&
+				contentLength != -1 && entry.contentLength == contentLength) {
+			MetadataReader reader = replay(resource, entry, cacheFile, classLoader);
+			if (reader != null) {
+				return reader;
+			}
+		}
+
+		byte[] classFile = FileCopyUtils.copyToByteArray(resource.getInputStream());
+		byte[] hash = DigestUtils.md5Digest(classFile);
+		if (entry != null && Arrays.equals(entry.hash, hash)) {
+			MetadataReader reader = replay(resource, entry, cacheFile, classLoader);
+			if (reader != null) {
+				if (entry.lastModified != lastModified || entry.contentLength != classFile.length) {
+					// Unchanged content: just refresh the timestamp
+					writeCacheEntry(cacheFile,
+							new CacheEntry(key, lastModified, classFile.length, hash, entry.recording));
+				}
+				return reader;
+			}
+		}
+
+		AnnotationMetadataReadingVisitor visitor = new AnnotationMetadataReadingVisitor(classLoader);
+		byte[] recording = ClassMetadataRecorder.record(classFile, visitor, resource.getDescription());
+		writeCacheEntry(cacheFile, new CacheEntry(key, lastModified, classFile.length, hash, recording));
+		return new SimpleMetadataReader(resource, visitor);
+	}
+
+	/**
+	 * Determine the key for the cache entry of the given resource.
+	 * <p>The default implementation uses the URL of the resource, if available,
+	 * and the resource description otherwise.
+	 * @param resource the resource (pointing to a ".class" file)
+	 * @return the cache key
+	 */
+	protected String getCacheKey(Resource resource) {
+		try {
+			return resource.getURL().toExternalForm();
+		}
+		catch (IOException ex) {
+			return resource.getDescription();
+		}
+	}
+
+	private File getCacheFile(String key) {
+		return new File(this.cacheDirectory,
+				DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8)) + CACHE_FILE_SUFFIX);
+	}
+
+	private long getLastModified(Resource resource) {
+		try {
+			long lastModified = resource.lastModified();
+			// 0 means unknown for most resource types
+			return (lastModified > 0 ? lastModified : -1);
+		}
+		catch (IOException ex) {
+			return -1;
+		}
+	}
+
+	private long getContentLength(Resource resource) {
+		try {
+			return resource.contentLength();
+		}
+		catch (IOException ex) {
+			return -1;
+		}
+	}
+
+	@Nullable
+	private MetadataReader replay(Resource resource, CacheEntry entry, File cacheFile,
+			@Nullable ClassLoader classLoader) {
+
+		AnnotationMetadataReadingVisitor visitor = new AnnotationMetadataReadingVisitor(classLoader);
+		try {
+			ClassMetadataRecorder.replay(entry.recording, visitor);
+			return new SimpleMetadataReader(resource, visitor);
+		}
+		catch (IOException | RuntimeException ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Discarding invalid metadata cache entry " + cacheFile + " for " + resource, ex);
+			}
+			cacheFile.delete();
+			return null;
+		}
+	}
+
+	@Nullable
+	private CacheEntry readCacheEntry(File cacheFile, String key) {
+		if (!cacheFile.isFile()) {
+			return null;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(cacheFile.toPath())));
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF())) {
+				return null;
+			}
+			long lastModified = in.readLong();
+			long contentLength = in.readLong();
+			byte[] hash = new byte[in.readUnsignedByte()];
+			in.readFully(hash);
+			byte[] recording = new byte[in.readInt()];
+			in.readFully(recording);
+			return new CacheEntry(key, lastModified, contentLength, hash, recording);
+		}
+		catch (IOException | RuntimeException ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to read metadata cache entry " + cacheFile, ex);
+			}
+			return null;
+		}
+	}
+
+	private void writeCacheEntry(File cacheFile, CacheEntry entry) {
+		try {
+			ByteArrayOutputStream content = new ByteArrayOutputStream(entry.recording.length + 128);
+			DataOutputStream out = new DataOutputStream(content);
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(entry.key);
+			out.writeLong(entry.lastModified);
+			out.writeLong(entry.contentLength);
+			out.writeByte(entry.hash.length);
+			out.write(entry.hash);
+			out.writeInt(entry.recording.length);
+			out.write(entry.recording);
+
+			Path directory = Files.createDirectories(this.cacheDirectory.toPath());
+			Path tempFile = Files.createTempFile(directory, cacheFile.getName(), ".tmp");
+			try {
+				Files.write(tempFile, content.toByteArray());
+				try {
+					Files.move(tempFile, cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+				}
+				catch (AtomicMoveNotSupportedException ex) {
+					Files.move(tempFile, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+			finally {
+				Files.deleteIfExists(tempFile);
+			}
+		}
+		catch (IOException | RuntimeException ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to write metadata cache entry " + cacheFile, ex);
+			}
+		}
+	}
+
+
+	/**
+	 * A cache entry as kept on disk.
+	 */
+	private static final class CacheEntry {
+
+		final String key;
+
+		final long lastModified;
+
+		final long contentLength;
+
+		final byte[] hash;
+
+		final byte[] recording;
+
+		CacheEntry(String key, long lastModified, long contentLength, byte[] hash, byte[] recording) {
+			this.key = key;
+			this.lastModified = lastModified;
+			this.contentLength = contentLength;
+			this.hash = hash;
+			this.recording = recording;
+		}
+	}
+
+}
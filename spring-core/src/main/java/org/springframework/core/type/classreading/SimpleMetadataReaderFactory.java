@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -96,6 +96,20 @@ public class SimpleMetadataReaderFactory implements MetadataReaderFactory {
 
 	@Override
 	public MetadataReader getMetadataReader(Resource resource) throws IOException {
+		return createMetadataReader(resource);
+	}
+
+	/**
+	 * Create a new {@link MetadataReader} for the given resource.
+	 * <p>The default implementation parses the class file. Subclasses may
+	 * override this, e.g. in order to obtain the metadata from a persistent cache.
+	 * @param resource the resource (pointing to a ".class" file)
+	 * @return a holder for the ClassReader instance (never {@code null})
+	 * @throws IOException in case of I/O failure
+	 * @since 5.1
+	 * @see PersistentMetadataReaderFactory
+	 */
+	protected MetadataReader createMetadataReader(Resource resource) throws IOException {
 		return new SimpleMetadataReader(resource, this.resourceLoader.getClassLoader());
 	}
 
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+import org.springframework.core.annotation.MergedAnnotations.SearchStrategy;
+import org.springframework.stereotype.Component;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link MergedAnnotations}.
+ *
+ * @see AnnotatedElementUtilsTests
+ */
+public class MergedAnnotationsTests {
+
+	@Test
+	public void isPresentWithGetSemantics() {
+		MergedAnnotations annotations = MergedAnnotations.from(ComposedClass.class, SearchStrategy.GET);
+		assertTrue(annotations.isPresent(ComposedConfig.class));
+		assertTrue(annotations.isPresent(Config.class));
+		assertTrue(annotations.isPresent(Component.class.getName()));
+		assertFalse(annotations.isPresent(Inherited.class));
+		assertFalse(MergedAnnotations.from(NonAnnotatedClass.class, SearchStrategy.GET).isPresent(Config.class));
+	}
+
+	@Test
+	public void mergedAttributesWithAliasAndConventionOverrides() {
+		AnnotationAttributes attributes = MergedAnnotations.from(ComposedClass.class, SearchStrategy.GET)
+				.getMergedAnnotationAttributes(Config.class, false, false);
+		assertNotNull(attributes);
+		assertArrayEquals(new String[] {"composed.xml"}, attributes.getStringArray("locations"));
+		assertArrayEquals(new String[] {"composed.xml"}, attributes.getStringArray("value"));
+		assertEquals("composed", attributes.getString("name"));
+		assertEquals(Config.class, attributes.annotationType());
+	}
+
+	@Test
+	public void mergedAttributesAsStringsAndMaps() {
+		AnnotationAttributes attributes = MergedAnnotations.from(ComposedClass.class, SearchStrategy.GET)
+				.getMergedAnnotationAttributes(Config.class.getName(), true, true);
+		assertNotNull(attributes);
+		assertEquals(String.class.getName(), attributes.getString("type"));
+	}
+
+	@Test
+	public void mergedAttributesAreIndependentCopies() {
+		MergedAnnotations annotations = MergedAnnotations.from(ComposedClass.class, SearchStrategy.GET);
+		AnnotationAttributes attributes = annotations.getMergedAnnotationAttributes(Config.class, false, false);
+		attributes.put("name", "changed");
+		assertEquals("composed", annotations.getMergedAnnotationAttributes(Config.class, false, false).getString("name"));
+	}
+
+	@Test
+	public void mergedAnnotationIsSynthesizedAndCached() {
+		MergedAnnotations annotations = MergedAnnotations.from(ComposedClass.class, SearchStrategy.GET);
+		Config config = annotations.getMergedAnnotation(Config.class);
+		assertNotNull(config);
+		assertTrue(config instanceof SynthesizedAnnotation);
+		assertEquals("composed", config.name());
+		assertArrayEquals(new String[] {"composed.xml"}, config.value());
+		assertSame(config, annotations.getMergedAnnotation(Config.class));
+		assertNull(annotations.getMergedAnnotation(Order.class));
+	}
+
+	@Test
+	public void instancesCachedPerElementAndStrategy() {
+		MergedAnnotations get = MergedAnnotations.from(ComposedClass.class, SearchStrategy.GET);
+		MergedAnnotations find = MergedAnnotations.from(ComposedClass.class, SearchStrategy.FIND);
+		assertSame(get, MergedAnnotations.from(ComposedClass.class, SearchStrategy.GET));
+		assertSame(find, MergedAnnotations.from(ComposedClass.class, SearchStrategy.FIND));
+		assertNotSame(get, find);
+		assertEquals(SearchStrategy.FIND, find.getSearchStrategy());
+		assertEquals(ComposedClass.class, find.getElement());
+	}
+
+	@Test
+	public void cacheClearedWithAnnotationUtils() {
+		MergedAnnotations find = MergedAnnotations.from(ComposedClass.class, SearchStrategy.FIND);
+		AnnotationUtils.clearCache();
+		assertNotSame(find, MergedAnnotations.from(ComposedClass.class, SearchStrategy.FIND));
+	}
+
+	@Test
+	public void getSemanticsOnClassHierarchy() {
+		// Only the @Inherited annotation is present on the subclass
+		MergedAnnotations get = MergedAnnotations.from(SubComposedClass.class, SearchStrategy.GET);
+		assertTrue(get.isPresent(InheritedConfig.class));
+		assertFalse(get.isPresent(ComposedConfig.class));
+		assertEquals("inherited", get.getMergedAnnotation(Config.class).name());
+
+		MergedAnnotations find = MergedAnnotations.from(SubComposedClass.class, SearchStrategy.FIND);
+		assertTrue(find.isPresent(Config.class));
+		assertEquals("composed", find.getMergedAnnotation(Config.class).name());
+	}
+
+	@Test
+	public void localComposedAnnotationFavoredOverInheritedAnnotation() {
+		Config config = MergedAnnotations.from(SubClassWithLocalComposedAnnotation.class, SearchStrategy.GET)
+				.getMergedAnnotation(Config.class);
+		assertNotNull(config);
+		assertEquals("composed", config.name());
+	}
+
+	@Test
+	public void findSemanticsOnInterfaceMethod() throws Exception {
+		Method method = ConfigImpl.class.getMethod("handle");
+		assertFalse(MergedAnnotations.from(method, SearchStrategy.GET).isPresent(Config.class));
+
+		MergedAnnotations find = MergedAnnotations.from(method, SearchStrategy.FIND);
+		assertTrue(find.isPresent(Config.class));
+		Config config = find.getMergedAnnotation(Config.class);
+		assertEquals("composed", config.name());
+		assertArrayEquals(new String[] {"composed.xml"}, config.locations());
+	}
+
+	@Test
+	public void consistentWithAnnotatedElementUtils() throws Exception {
+		Method method = ConfigImpl.class.getMethod("handle");
+		assertEquals(AnnotatedElementUtils.findMergedAnnotationAttributes(method, Config.class, true, true).toString(),
+				MergedAnnotations.from(method, SearchStrategy.FIND).getMergedAnnotationAttributes(Config.class, true, true).toString());
+		assertSame(AnnotatedElementUtils.getMergedAnnotation(ComposedClass.class, Config.class),
+				MergedAnnotations.from(ComposedClass.class, SearchStrategy.GET).getMergedAnnotation(Config.class));
+	}
+
+	@Test(expected = AnnotationConfigurationException.class)
+	public void invalidAliasDeclarationRejected() {
+		MergedAnnotations.from(InvalidComposedClass.class, SearchStrategy.GET)
+				.getMergedAnnotationAttributes(Config.class, false, false);
+	}
+
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target({ElementType.TYPE, ElementType.METHOD, ElementType.ANNOTATION_TYPE})
+	@Component
+	@interface Config {
+
+		@AliasFor("locations")
+		String[] value() default {};
+
+		@AliasFor("value")
+		String[] locations() default {};
+
+		String name() default "";
+
+		Class<?> type() default String.class;
+	}
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target({ElementType.TYPE, ElementType.METHOD})
+	@Config
+	@interface ComposedConfig {
+
+		@AliasFor(annotation = Config.class, attribute = "locations")
+		String[] xmlFiles() default {};
+
+		String name() default "";
+	}
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.TYPE)
+	@Config
+	@interface InvalidComposedConfig {
+
+		@AliasFor(annotation = Config.class, attribute = "missing")
+		String[] xmlFiles() default {};
+	}
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.TYPE)
+	@Inherited
+	@Config(name = "inherited")
+	@interface InheritedConfig {
+	}
+
+	static class NonAnnotatedClass {
+	}
+
+	@ComposedConfig(xmlFiles = "composed.xml", name = "composed")
+	@InheritedConfig
+	static class ComposedClass {
+	}
+
+	static class SubComposedClass extends ComposedClass {
+	}
+
+	@ComposedConfig(xmlFiles = "composed.xml", name = "composed")
+	static class SubClassWithLocalComposedAnnotation extends ComposedClass {
+	}
+
+	@InvalidComposedConfig
+	static class InvalidComposedClass {
+	}
+
+	interface ConfigInterface {
+
+		@ComposedConfig(xmlFiles = "composed.xml", name = "composed")
+		void handle();
+	}
+
+	static class ConfigImpl implements ConfigInterface {
+
+		@Override
+		public void handle() {
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -53,11 +53,18 @@ public abstract class AbstractDataBufferAllocatingTestCase {
 				{new NettyDataBufferFactory(new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0, 0, true))},
 				{new NettyDataBufferFactory(new PooledByteBufAllocator(false, 1, 1, 8192, 11, 0, 0, 0, true))},
 				{new DefaultDataBufferFactory(true)},
-				{new DefaultDataBufferFactory(false)}
-
+				{new DefaultDataBufferFactory(false)},
+				{poolingDataBufferFactory(true)},
+				{poolingDataBufferFactory(false)}
 		};
 	}
 
+	private static PoolingDataBufferFactory poolingDataBufferFactory(boolean preferDirect) {
+		PoolingDataBufferFactory factory = new PoolingDataBufferFactory(preferDirect);
+		factory.setLeakDetection(true);
+		return factory;
+	}
+
 	@Rule
 	public final Verifier leakDetector = new LeakDetector();
 
@@ -103,6 +110,11 @@ public abstract class AbstractDataBufferAllocatingTestCase {
 							" allocations were not released", allocations == 0);
 				}
 			}
+			else if (bufferFactory instanceof PoolingDataBufferFactory) {
+				int allocations = ((PoolingDataBufferFactory) bufferFactory).getTrackedBufferCount();
+				assertTrue("DataBuffer leak detected: " + allocations +
+						" allocations were not released", allocations == 0);
+			}
 		}
 
 		private long calculateAllocations(List<PoolArenaMetric> metrics) {
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.io.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link PoolingDataBufferFactory}.
+ */
+public class PoolingDataBufferFactoryTests {
+
+	private final PoolingDataBufferFactory factory = new PoolingDataBufferFactory();
+
+
+	@Test
+	public void allocateReturnsPooledBufferWithRequestedCapacity() {
+		DataBuffer buffer = this.factory.allocateBuffer(300);
+		assertTrue(buffer instanceof PooledDataBuffer);
+		assertEquals(300, buffer.capacity());
+		assertEquals(0, buffer.readableByteCount());
+		assertEquals(this.factory, buffer.factory());
+		DataBufferUtils.release(buffer);
+
+		buffer = this.factory.allocateBuffer();
+		assertEquals(DefaultDataBufferFactory.DEFAULT_INITIAL_CAPACITY, buffer.capacity());
+		DataBufferUtils.release(buffer);
+	}
+
+	@Test
+	public void memoryReusedAfterRelease() {
+		DefaultDataBuffer buffer = this.factory.allocateBuffer(300);
+		buffer.write("foo".getBytes(StandardCharsets.UTF_8));
+		byte[] memory = buffer.getNativeBuffer().array();
+		assertEquals(512, memory.length);
+		DataBufferUtils.release(buffer);
+
+		DefaultDataBuffer other = this.factory.allocateBuffer(400);
+		assertSame(memory, other.getNativeBuffer().array());
+		assertEquals(0, other.readableByteCount());
+		DataBufferUtils.release(other);
+
+		DefaultDataBuffer smaller = this.factory.allocateBuffer(100);
+		assertNotSame(memory, smaller.getNativeBuffer().array());
+		DataBufferUtils.release(smaller);
+	}
+
+	@Test
+	public void memoryReusedAcrossThreads() throws Exception {
+		this.factory.setThreadCacheSize(0);
+		DefaultDataBuffer buffer = this.factory.allocateBuffer(1000);
+		byte[] memory = buffer.getNativeBuffer().array();
+		CompletableFuture.runAsync(() -> DataBufferUtils.release(buffer)).get();
+
+		DefaultDataBuffer other = CompletableFuture.supplyAsync(() -> this.factory.allocateBuffer(1000)).get();
+		assertSame(memory, other.getNativeBuffer().array());
+		DataBufferUtils.release(other);
+	}
+
+	@Test
+	public void sharedPoolBounded() {
+		this.factory.setThreadCacheSize(0);
+		this.factory.setMaxPooledBuffers(1);
+		DefaultDataBuffer first = this.factory.allocateBuffer(256);
+		DefaultDataBuffer second = this.factory.allocateBuffer(256);
+		byte[] firstMemory = first.getNativeBuffer().array();
+		DataBufferUtils.release(first);
+		DataBufferUtils.release(second);
+
+		DefaultDataBuffer third = this.factory.allocateBuffer(256);
+		DefaultDataBuffer fourth = this.factory.allocateBuffer(256);
+		assertSame(firstMemory, third.getNativeBuffer().array());
+		assertNotSame(second.getNativeBuffer().array(), fourth.getNativeBuffer().array());
+		DataBufferUtils.release(third);
+		DataBufferUtils.release(fourth);
+	}
+
+	@Test
+	public void largeBuffersNotPooled() {
+		DefaultDataBuffer buffer = this.factory.allocateBuffer(PoolingDataBufferFactory.DEFAULT_MAX_POOLED_CAPACITY + 1);
+		byte[] memory = buffer.getNativeBuffer().array();
+		assertEquals(PoolingDataBufferFactory.DEFAULT_MAX_POOLED_CAPACITY + 1, memory.length);
+		assertTrue(DataBufferUtils.release(buffer));
+
+		DefaultDataBuffer other = this.factory.allocateBuffer(PoolingDataBufferFactory.DEFAULT_MAX_POOLED_CAPACITY + 1);
+		assertNotSame(memory, other.getNativeBuffer().array());
+		DataBufferUtils.release(other);
+	}
+
+	@Test
+	public void directBuffers() {
+		PoolingDataBufferFactory factory = new PoolingDataBufferFactory(true);
+		DefaultDataBuffer buffer = factory.allocateBuffer(10);
+		assertTrue(buffer.getNativeBuffer().isDirect());
+		buffer.write(new byte[1000]);
+		assertTrue(buffer.getNativeBuffer().isDirect());
+		DataBufferUtils.release(buffer);
+	}
+
+	@Test
+	public void growingReturnsPreviousMemory() {
+		DefaultDataBuffer buffer = this.factory.allocateBuffer(200);
+		byte[] memory = buffer.getNativeBuffer().array();
+		buffer.write("foo".getBytes(StandardCharsets.UTF_8));
+		buffer.write(new byte[300]);
+		assertNotSame(memory, buffer.getNativeBuffer().array());
+		assertEquals("foo", new String(toBytes(buffer), 0, 3, StandardCharsets.UTF_8));
+
+		DefaultDataBuffer other = this.factory.allocateBuffer(200);
+		assertSame(memory, other.getNativeBuffer().array());
+		DataBufferUtils.release(buffer);
+		DataBufferUtils.release(other);
+	}
+
+	@Test
+	public void sliceSharesReferenceCount() {
+		DataBuffer buffer = this.factory.allocateBuffer(10);
+		buffer.write("foobar".getBytes(StandardCharsets.UTF_8));
+		DataBuffer slice = buffer.slice(3, 3);
+		assertTrue(slice instanceof PooledDataBuffer);
+		assertEquals("bar", new String(toBytes(slice), StandardCharsets.UTF_8));
+
+		DataBufferUtils.retain(slice);
+		assertFalse(DataBufferUtils.release(buffer));
+		assertTrue(DataBufferUtils.release(slice.slice(0, 1)));
+		assertEquals(0, buffer.capacity());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void retainAfterRelease() {
+		PooledDataBuffer buffer = (PooledDataBuffer) this.factory.allocateBuffer(10);
+		buffer.release();
+		buffer.retain();
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void readAfterRelease() {
+		DataBuffer buffer = this.factory.allocateBuffer(10);
+		buffer.write((byte) 'a');
+		DataBufferUtils.release(buffer);
+		buffer.read();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void writeAfterRelease() {
+		DataBuffer buffer = this.factory.allocateBuffer(10);
+		DataBufferUtils.release(buffer);
+		buffer.write((byte) 'a');
+	}
+
+	@Test
+	public void wrappedBuffersNotPooled() {
+		assertFalse(this.factory.wrap(new byte[10]) instanceof PooledDataBuffer);
+		assertFalse(this.factory.wrap(ByteBuffer.allocate(10)) instanceof PooledDataBuffer);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void settingsFixedAfterFirstAllocation() {
+		DataBufferUtils.release(this.factory.allocateBuffer(10));
+		this.factory.setThreadCacheSize(1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void maxPooledCapacityPowerOfTwo() {
+		new PoolingDataBufferFactory(false, 256, 1000);
+	}
+
+	@Test
+	public void leakDetection() throws Exception {
+		this.factory.setLeakDetection(true);
+		DataBufferUtils.release(this.factory.allocateBuffer(10));
+		this.factory.allocateBuffer(10);
+		DataBuffer retained = this.factory.allocateBuffer(10);
+		assertEquals(2, this.factory.getTrackedBufferCount());
+
+		for (int i = 0; i < 50 && this.factory.getLeakCount() == 0; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertEquals(1, this.factory.getLeakCount());
+		assertEquals(1, this.factory.getTrackedBufferCount());
+		DataBufferUtils.release(retained);
+		assertEquals(0, this.factory.getTrackedBufferCount());
+	}
+
+
+	private static byte[] toBytes(DataBuffer buffer) {
+		byte[] bytes = new byte[buffer.readableByteCount()];
+		buffer.read(bytes);
+		return bytes;
+	}
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.type.classreading;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.core.annotation.AnnotationAttributes;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StreamUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link PersistentMetadataReaderFactory}.
+ */
+public class PersistentMetadataReaderFactoryTests {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File cacheDirectory;
+
+	private File classFile;
+
+
+	@Before
+	public void setup() throws IOException {
+		this.cacheDirectory = new File(this.temporaryFolder.getRoot(), "cache");
+		this.classFile = this.temporaryFolder.newFile("AnnotatedClass.class");
+		copyClassFile(AnnotatedClass.class, this.classFile);
+	}
+
+
+	@Test
+	public void metadataFromCacheMatchesParsedMetadata() throws Exception {
+		MetadataReader parsed = new SimpleMetadataReaderFactory().getMetadataReader(AnnotatedClass.class.getName());
+		// Parse and record
+		new PersistentMetadataReaderFactory(this.cacheDirectory).getMetadataReader(AnnotatedClass.class.getName());
+		// Replay from disk
+		MetadataReader cached = new PersistentMetadataReaderFactory(this.cacheDirectory)
+				.getMetadataReader(AnnotatedClass.class.getName());
+
+		AnnotationMetadata expected = parsed.getAnnotationMetadata();
+		AnnotationMetadata actual = cached.getAnnotationMetadata();
+		assertEquals(AnnotatedClass.class.getName(), actual.getClassName());
+		assertEquals(expected.getSuperClassName(), actual.getSuperClassName());
+		assertArrayEquals(expected.getInterfaceNames(), actual.getInterfaceNames());
+		assertArrayEquals(expected.getMemberClassNames(), actual.getMemberClassNames());
+		assertEquals(expected.getEnclosingClassName(), actual.getEnclosingClassName());
+		assertEquals(expected.isIndependent(), actual.isIndependent());
+		assertEquals(expected.isAbstract(), actual.isAbstract());
+		assertEquals(expected.getAnnotationTypes(), actual.getAnnotationTypes());
+		for (String annotationType : expected.getAnnotationTypes()) {
+			assertEquals(expected.getMetaAnnotationTypes(annotationType), actual.getMetaAnnotationTypes(annotationType));
+			assertAttributesEqual(expected.getAnnotationAttributes(annotationType, true),
+					actual.getAnnotationAttributes(annotationType, true));
+			assertAttributesEqual(expected.getAnnotationAttributes(annotationType, false),
+					actual.getAnnotationAttributes(annotationType, false));
+		}
+		Map<String, Object> marker = actual.getAnnotationAttributes(Marker.class.getName());
+		assertEquals(Level.HIGH, marker.get("level"));
+		assertArrayEquals(new Class<?>[] {String.class, int[].class}, (Class<?>[]) marker.get("types"));
+		assertArrayEquals(new int[] {1, 2, 3}, (int[]) marker.get("ints"));
+		assertEquals(';', marker.get("separator"));
+		AnnotationAttributes[] nested = (AnnotationAttributes[]) marker.get("nested");
+		assertEquals(2, nested.length);
+		assertEquals("b", nested[1].getString("value"));
+		assertEquals(2L, nested[1].get("weight"));
+		assertTrue(actual.hasAnnotation(ClassRetained.class.getName()));
+
+		assertTrue(actual.hasAnnotatedMethods(Marker.class.getName()));
+		assertEquals(1, actual.getAnnotatedMethods(Marker.class.getName()).size());
+		MethodMetadata method = actual.getAnnotatedMethods(Marker.class.getName()).iterator().next();
+		assertEquals("annotated", method.getMethodName());
+		assertEquals("java.lang.String", method.getReturnTypeName());
+		assertTrue(method.isStatic());
+		assertEquals(Level.HIGH, method.getAnnotationAttributes(Marker.class.getName()).get("level"));
+	}
+
+	@Test
+	public void classFileNotReadWhenUnmodified() throws Exception {
+		CountingResource resource = new CountingResource(this.classFile);
+		new PersistentMetadataReaderFactory(this.cacheDirectory).getMetadataReader(resource);
+		assertEquals(1, resource.reads.get());
+		File[] entries = this.cacheDirectory.listFiles();
+		assertEquals(1, entries.length);
+		assertTrue(entries[0].getName().endsWith(PersistentMetadataReaderFactory.CACHE_FILE_SUFFIX));
+
+		MetadataReader reader = new PersistentMetadataReaderFactory(this.cacheDirectory).getMetadataReader(resource);
+		assertEquals(1, resource.reads.get());
+		assertEquals(AnnotatedClass.class.getName(), reader.getClassMetadata().getClassName());
+		assertSame(resource, reader.getResource());
+	}
+
+	@Test
+	public void entryReusedWhenTouchedButUnchanged() throws Exception {
+		CountingResource resource = new CountingResource(this.classFile);
+		new PersistentMetadataReaderFactory(this.cacheDirectory).getMetadataReader(resource);
+		touch(this.classFile);
+
+		MetadataReader reader = new PersistentMetadataReaderFactory(this.cacheDirectory).getMetadataReader(resource);
+		assertEquals(2, resource.reads.get());
+		assertTrue(reader.getAnnotationMetadata().hasAnnotation(Marker.class.getName()));
+
+		// Timestamp refreshed: no need to hash the class file again
+		new PersistentMetadataReaderFactory(this.cacheDirectory).getMetadataReader(resource);
+		assertEquals(2, resource.reads.get());
+	}
+
+	@Test
+	public void entryInvalidatedWhenChanged() throws Exception {
+		CountingResource resource = new CountingResource(this.classFile);
+		new PersistentMetadataReaderFactory(this.cacheDirectory).getMetadataReader(resource);
+		copyClassFile(PersistentMetadataReaderFactoryTests.class, this.classFile);
+		touch(this.classFile);
+
+		MetadataReader reader = new PersistentMetadataReaderFactory(this.cacheDirectory).getMetadataReader(resource);
+		assertEquals(PersistentMetadataReaderFactoryTests.class.getName(), reader.getClassMetadata().getClassName());
+		reader = new PersistentMetadataReaderFactory(this.cacheDirectory).getMetadataReader(resource);
+		assertEquals(PersistentMetadataReaderFactoryTests.class.getName(), reader.getClassMetadata().getClassName());
+	}
+
+	@Test
+	public void entryInvalidatedWhenChangedWithSameTimestamp() throws Exception {
+		CountingResource resource = new CountingResource(this.classFile);
+		new PersistentMetadataReaderFactory(this.cacheDirectory).getMetadataReader(resource);
+		long lastModified = this.classFile.lastModified();
+		copyClassFile(PersistentMetadataReaderFactoryTests.class, this.classFile);
+		assertTrue(this.classFile.setLastModified(lastModified));
+
+		MetadataReader reader = new PersistentMetadataReaderFactory(this.cacheDirectory).getMetadataReader(resource);
+		assertEquals(PersistentMetadataReaderFactoryTests.class.getName(), reader.getClassMetadata().getClassName());
+	}
+
+	@Test
+	public void corruptEntryIgnored() throws Exception {
+		CountingResource resource = new CountingResource(this.classFile);
+		new PersistentMetadataReaderFactory(this.cacheDirectory).getMetadataReader(resource);
+		File entry = this.cacheDirectory.listFiles()[0];
+		byte[] content = FileCopyUtils.copyToByteArray(entry);
+		byte[] truncated = new byte[content.length - 10];
+		System.arraycopy(content, 0, truncated, 0, truncated.length);
+		FileCopyUtils.copy(truncated, entry);
+
+		MetadataReader reader = new PersistentMetadataReaderFactory(this.cacheDirectory).getMetadataReader(resource);
+		assertEquals(2, resource.reads.get());
+		assertTrue(reader.getAnnotationMetadata().hasAnnotation(Marker.class.getName()));
+		assertEquals(content.length, entry.length());
+	}
+
+	@Test
+	public void inMemoryCacheApplies() throws Exception {
+		CountingResource resource = new CountingResource(this.classFile);
+		PersistentMetadataReaderFactory factory = new PersistentMetadataReaderFactory(this.cacheDirectory);
+		assertSame(factory.getMetadataReader(resource), factory.getMetadataReader(resource));
+	}
+
+
+	private static void assertAttributesEqual(Map<String, Object> expected, Map<String, Object> actual) {
+		assertEquals(expected.keySet(), actual.keySet());
+		for (Map.Entry<String, Object> entry : expected.entrySet()) {
+			assertTrue(entry.getKey(), ObjectUtils.nullSafeEquals(entry.getValue(), actual.get(entry.getKey())));
+		}
+	}
+
+	private static void copyClassFile(Class<?> clazz, File target) throws IOException {
+		try (InputStream in = clazz.getResourceAsStream(clazz.getName().substring(
+				clazz.getName().lastIndexOf('.') + 1) + ".class")) {
+			FileCopyUtils.copy(StreamUtils.copyToByteArray(in), target);
+		}
+	}
+
+	private static void touch(File file) {
+		assertTrue(file.setLastModified(file.lastModified() + TimeUnit.SECONDS.toMillis(10)));
+	}
+
+
+	private static class CountingResource extends FileSystemResource {
+
+		final AtomicInteger reads = new AtomicInteger();
+
+		CountingResource(File file) {
+			super(file);
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			this.reads.incrementAndGet();
+			return super.getInputStream();
+		}
+	}
+
+
+	enum Level { LOW, HIGH }
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target({ElementType.TYPE, ElementType.METHOD})
+	public @interface Marker {
+
+		Level level() default Level.LOW;
+
+		Class<?>[] types() default {};
+
+		int[] ints() default {};
+
+		char separator() default ',';
+
+		Nested[] nested() default {};
+	}
+
+	@Retention(RetentionPolicy.RUNTIME)
+	public @interface Nested {
+
+		String value();
+
+		long weight() default 1L;
+	}
+
+	@Retention(RetentionPolicy.CLASS)
+	public @interface ClassRetained {
+	}
+
+	@Marker(level = Level.HIGH, types = {String.class, int[].class}, ints = {1, 2, 3}, separator = ';',
+			nested = {@Nested("a"), @Nested(value = "b", weight = 2L)})
+	@ClassRetained
+	public abstract static class AnnotatedClass implements Serializable {
+
+		@Marker(level = Level.HIGH)
+		public static String annotated() {
+			return "";
+		}
+
+		public void notAnnotated() {
+		}
+
+		class Inner {
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.expression.spel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+/**
+ * Benchmarks comparing the interpreted and the compiled evaluation of SpEL
+ * expressions, for property access, method invocation and arithmetic.
+ */
+@BenchmarkMode(Mode.Throughput)
+public class SpelCompilationBenchmark {
+
+	@Benchmark
+	public Object propertyAccess(BenchmarkData data) {
+		return data.propertyAccess.getValue(data.context);
+	}
+
+	@Benchmark
+	public Object methodInvocation(BenchmarkData data) {
+		return data.methodInvocation.getValue(data.context);
+	}
+
+	@Benchmark
+	public Object arithmetic(BenchmarkData data) {
+		return data.arithmetic.getValue(data.context);
+	}
+
+	@Benchmark
+	public Object condition(BenchmarkData data) {
+		return data.condition.getValue(data.context, Boolean.class);
+	}
+
+
+	@State(Scope.Benchmark)
+	public static class BenchmarkData {
+
+		@Param({"OFF", "IMMEDIATE"})
+		public SpelCompilerMode compilerMode;
+
+		public EvaluationContext context;
+
+		public Expression propertyAccess;
+
+		public Expression methodInvocation;
+
+		public Expression arithmetic;
+
+		public Expression condition;
+
+		@Setup
+		public void setup() {
+			SpelParserConfiguration configuration =
+					new SpelParserConfiguration(this.compilerMode, getClass().getClassLoader());
+			SpelExpressionParser parser = new SpelExpressionParser(configuration);
+			this.context = new StandardEvaluationContext(new Person("Jane", 42, new Address("Main Street")));
+			this.propertyAccess = parse(parser, "address.street");
+			this.methodInvocation = parse(parser, "name.toUpperCase()");
+			this.arithmetic = parse(parser, "age * 2 + 10");
+			this.condition = parse(parser, "age > 18 and name.length() > 3");
+		}
+
+		private Expression parse(SpelExpressionParser parser, String expressionString) {
+			Expression expression = parser.parseExpression(expressionString);
+			if (this.compilerMode == SpelCompilerMode.IMMEDIATE) {
+				// The first evaluations gather the type information needed for compilation
+				expression.getValue(this.context);
+				expression.getValue(this.context);
+				if (!((SpelExpression) expression).compileExpression()) {
+					throw new IllegalStateException("Expression not compilable: " + expressionString);
+				}
+			}
+			return expression;
+		}
+	}
+
+
+	public static class Person {
+
+		private final String name;
+
+		private final int age;
+
+		private final Address address;
+
+		public Person(String name, int age, Address address) {
+			this.name = name;
+			this.age = age;
+			this.address = address;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public int getAge() {
+			return this.age;
+		}
+
+		public Address getAddress() {
+			return this.address;
+		}
+	}
+
+
+	public static class Address {
+
+		private final String street;
+
+		public Address(String street) {
+			this.street = street;
+		}
+
+		public String getStreet() {
+			return this.street;
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -83,9 +83,17 @@ public class CodeFlow implements Opcodes {
 
 	/**
 	 * When code generation requires an intermediate variable within a method,
-	 * this method records the next available variable (variable 0 is 'this').
+	 * this method records the next available variable (variable 0 is 'this',
+	 * variables 1 and 2 are the target and the evaluation context).
 	 */
-	private int nextFreeVariableId = 1;
+	private int nextFreeVariableId = 3;
+
+	/**
+	 * The local variables holding the active context objects of enclosing
+	 * nested evaluations (e.g. the current element of a collection selection),
+	 * with the innermost one on top. If empty, the target is the active context.
+	 */
+	private final Stack<Integer> activeContextVariables = new Stack<>();
 
 
 	/**
@@ -103,11 +111,34 @@ public class CodeFlow implements Opcodes {
 
 	/**
 	 * Push the byte code to load the target (i.e. what was passed as the first argument
-	 * to CompiledExpression.getValue(target, context))
+	 * to CompiledExpression.getValue(target, context)), or the active context object
+	 * of the innermost nested evaluation if any.
 	 * @param mv the visitor into which the load instruction should be inserted
+	 * @see #pushActiveContextVariable(int)
 	 */
 	public void loadTarget(MethodVisitor mv) {
-		mv.visitVarInsn(ALOAD, 1);
+		mv.visitVarInsn(ALOAD, (this.activeContextVariables.isEmpty() ? 1 : this.activeContextVariables.peek()));
+	}
+
+	/**
+	 * Make the object held in the specified local variable the active context
+	 * object for subsequently generated code, as loaded by {@link #loadTarget},
+	 * e.g. for the element that a selection or projection criterion applies to.
+	 * @param variableId the local variable holding the active context object
+	 * @since 5.1
+	 * @see #nextFreeVariableId()
+	 */
+	public void pushActiveContextVariable(int variableId) {
+		this.activeContextVariables.push(variableId);
+	}
+
+	/**
+	 * Restore the active context object that was in place before the last call
+	 * to {@link #pushActiveContextVariable}.
+	 * @since 5.1
+	 */
+	public void popActiveContextVariable() {
+		this.activeContextVariables.pop();
 	}
 
 	/**
@@ -777,6 +808,30 @@ public class CodeFlow implements Opcodes {
 		}
 	}
 
+	/**
+	 * Determine the descriptor of the boxed type for the supplied descriptor.
+	 * @param descriptor the descriptor of a primitive or reference type
+	 * @return the descriptor of the corresponding wrapper type if the given
+	 * descriptor is primitive, or the given descriptor otherwise
+	 * @since 5.1
+	 */
+	public static String toBoxedDescriptor(String descriptor) {
+		if (descriptor.length() != 1) {
+			return descriptor;
+		}
+		switch (descriptor.charAt(0)) {
+			case 'Z': return "Ljava/lang/Boolean";
+			case 'B': return "Ljava/lang/Byte";
+			case 'C': return "Ljava/lang/Character";
+			case 'D': return "Ljava/lang/Double";
+			case 'F': return "Ljava/lang/Float";
+			case 'I': return "Ljava/lang/Integer";
+			case 'J': return "Ljava/lang/Long";
+			case 'S': return "Ljava/lang/Short";
+			default: return descriptor;
+		}
+	}
+
 	/**
 	 * Deduce the descriptor for a type. Descriptors are like JVM type names but missing
 	 * the trailing ';' so for Object the descriptor is "Ljava/lang/Object" for int it is
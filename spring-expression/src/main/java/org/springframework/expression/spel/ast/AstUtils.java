@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -74,4 +74,24 @@ public abstract class AstUtils {
 		return resolvers;
 	}
 
+	/**
+	 * Determine whether the given node or any of its descendants refers to the
+	 * specified variable, e.g. to the "index" variable that is only available
+	 * while evaluating the criteria of a selection or projection.
+	 * @param node the node to check
+	 * @param name the name of the variable (without leading '#')
+	 * @since 5.1
+	 */
+	static boolean referencesVariable(SpelNodeImpl node, String name) {
+		if (node instanceof VariableReference && ((VariableReference) node).getName().equals(name)) {
+			return true;
+		}
+		for (SpelNodeImpl child : node.children) {
+			if (referencesVariable(child, name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 }
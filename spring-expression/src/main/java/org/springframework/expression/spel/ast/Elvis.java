@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -96,20 +96,20 @@ public class Elvis extends SpelNodeImpl {
 		mv.visitLabel(elseTarget);
 		mv.visitInsn(POP);
 		this.children[1].generateCode(mv, cf);
-		if (!CodeFlow.isPrimitive(this.exitTypeDescriptor)) {
-			lastDesc = cf.lastDescriptor();
-			Assert.state(lastDesc != null, "No last descriptor");
-			CodeFlow.insertBoxIfNecessary(mv, lastDesc.charAt(0));
-		}
+		// The condition value has been boxed, so the alternative has to be boxed as well
+		lastDesc = cf.lastDescriptor();
+		Assert.state(lastDesc != null, "No last descriptor");
+		CodeFlow.insertBoxIfNecessary(mv, lastDesc.charAt(0));
 		mv.visitLabel(endOfIf);
 		cf.pushDescriptor(this.exitTypeDescriptor);
 	}
 
 	private void computeExitTypeDescriptor() {
-		if (this.exitTypeDescriptor == null && this.children[0].exitTypeDescriptor != null &&
-				this.children[1].exitTypeDescriptor != null) {
-			String conditionDescriptor = this.children[0].exitTypeDescriptor;
-			String ifNullValueDescriptor = this.children[1].exitTypeDescriptor;
+		if (this.children[0].exitTypeDescriptor != null && this.children[1].exitTypeDescriptor != null) {
+			// Either value ends up boxed, e.g. an int condition with an Integer alternative
+			// has a common type of Integer (mirroring the interpreted result)
+			String conditionDescriptor = CodeFlow.toBoxedDescriptor(this.children[0].exitTypeDescriptor);
+			String ifNullValueDescriptor = CodeFlow.toBoxedDescriptor(this.children[1].exitTypeDescriptor);
 			if (ObjectUtils.nullSafeEquals(conditionDescriptor, ifNullValueDescriptor)) {
 				this.exitTypeDescriptor = conditionDescriptor;
 			}
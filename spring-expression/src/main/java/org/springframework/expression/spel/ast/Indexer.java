@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -88,6 +88,10 @@ public class Indexer extends SpelNodeImpl {
 	@Nullable
 	private IndexedType indexedType;
 
+	// Whether the map key had to be converted to the declared key type,
+	// which compiled code cannot do
+	private boolean mapKeyConverted;
+
 
 	public Indexer(int pos, SpelNodeImpl expr) {
 		super(pos, expr);
@@ -146,6 +150,7 @@ public class Indexer extends SpelNodeImpl {
 			if (targetDescriptor.getMapKeyTypeDescriptor() != null) {
 				key = state.convertValue(key, targetDescriptor.getMapKeyTypeDescriptor());
 			}
+			this.mapKeyConverted = (key != index);
 			this.indexedType = IndexedType.MAP;
 			return new MapIndexingValueRef(state.getTypeConverter(), (Map<?, ?>) targetObject, key, targetDescriptor);
 		}
@@ -191,13 +196,14 @@ public class Indexer extends SpelNodeImpl {
 	@Override
 	public boolean isCompilable() {
 		if (this.indexedType == IndexedType.ARRAY) {
-			return (this.exitTypeDescriptor != null);
+			return (this.exitTypeDescriptor != null && isIndexCompilable());
 		}
 		else if (this.indexedType == IndexedType.LIST) {
-			return this.children[0].isCompilable();
+			return isIndexCompilable();
 		}
 		else if (this.indexedType == IndexedType.MAP) {
-			return (this.children[0] instanceof PropertyOrFieldReference || this.children[0].isCompilable());
+			return (!this.mapKeyConverted &&
+					(this.children[0] instanceof PropertyOrFieldReference || this.children[0].isCompilable()));
 		}
 		else if (this.indexedType == IndexedType.OBJECT) {
 			// If the string name is changing the accessor is clearly going to change (so compilation is not possible)
@@ -209,7 +215,42 @@ public class Indexer extends SpelNodeImpl {
 		}
 		return false;
 	}
-	
+
+	private boolean isIndexCompilable() {
+		SpelNodeImpl index = this.children[0];
+		return (index.isCompilable() && CodeFlow.isPrimitiveOrUnboxableSupportedNumber(index.exitTypeDescriptor));
+	}
+
+	@Override
+	@Nullable
+	public String getNonCompilableReason() {
+		if (this.indexedType == IndexedType.MAP && this.mapKeyConverted) {
+			// Regardless of the key expression itself
+			return getNonCompilableReasonInternal();
+		}
+		return super.getNonCompilableReason();
+	}
+
+	@Override
+	protected String getNonCompilableReasonInternal() {
+		String indexer = "Indexer '" + toStringAST() + "'";
+		if (this.indexedType == null) {
+			return indexer + " has not been evaluated yet or applies to a non-list collection";
+		}
+		switch (this.indexedType) {
+			case ARRAY:
+			case LIST:
+				return indexer + " uses an index of type " + this.children[0].exitTypeDescriptor +
+						" rather than a number";
+			case MAP:
+				return indexer + " uses a key that needs to be converted to the declared key type";
+			case STRING:
+				return indexer + " applies to a String";
+			default:
+				return indexer + " requires a string literal for a property resolved through a public member";
+		}
+	}
+
 	@Override
 	public void generateCode(MethodVisitor mv, CodeFlow cf) {
 		String descriptor = cf.lastDescriptor();
@@ -254,18 +295,13 @@ public class Indexer extends SpelNodeImpl {
 						//depthPlusOne(exitTypeDescriptor)+"Ljava/lang/Object;");
 				insn = AALOAD;
 			}
-			SpelNodeImpl index = this.children[0];
-			cf.enterCompilationScope();
-			index.generateCode(mv, cf);
-			cf.exitCompilationScope();
+			generateIndexCode(mv, cf);
 			mv.visitInsn(insn);
 		}
 
 		else if (this.indexedType == IndexedType.LIST) {
 			mv.visitTypeInsn(CHECKCAST, "java/util/List");
-			cf.enterCompilationScope();
-			this.children[0].generateCode(mv, cf);
-			cf.exitCompilationScope();
+			generateIndexCode(mv, cf);
 			mv.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "get", "(I)Ljava/lang/Object;", true);
 		}
 
@@ -281,6 +317,8 @@ public class Indexer extends SpelNodeImpl {
 			else {
 				cf.enterCompilationScope();
 				this.children[0].generateCode(mv, cf);
+				// Primitive keys (e.g. numeric literals) need to be boxed
+				CodeFlow.insertBoxIfNecessary(mv, cf.lastDescriptor());
 				cf.exitCompilationScope();
 			}
 			mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map", "get", "(Ljava/lang/Object;)Ljava/lang/Object;", true);
@@ -304,8 +342,10 @@ public class Indexer extends SpelNodeImpl {
 			}
 
 			if (member instanceof Method) {
-				mv.visitMethodInsn((isStatic? INVOKESTATIC : INVOKEVIRTUAL), classDesc, member.getName(),
-						CodeFlow.createSignatureDescriptor((Method) member), false);
+				boolean isInterface = member.getDeclaringClass().isInterface();
+				int opcode = (isStatic ? INVOKESTATIC : isInterface ? INVOKEINTERFACE : INVOKEVIRTUAL);
+				mv.visitMethodInsn(opcode, classDesc, member.getName(),
+						CodeFlow.createSignatureDescriptor((Method) member), isInterface);
 			}
 			else {
 				mv.visitFieldInsn((isStatic ? GETSTATIC : GETFIELD), classDesc, member.getName(),
@@ -316,6 +356,17 @@ public class Indexer extends SpelNodeImpl {
 		cf.pushDescriptor(this.exitTypeDescriptor);
 	}
 
+	private void generateIndexCode(MethodVisitor mv, CodeFlow cf) {
+		cf.enterCompilationScope();
+		this.children[0].generateCode(mv, cf);
+		String indexDescriptor = cf.lastDescriptor();
+		if (!"I".equals(indexDescriptor)) {
+			// e.g. an Integer variable or a long literal
+			CodeFlow.insertNumericUnboxOrPrimitiveTypeCoercion(mv, indexDescriptor, 'I');
+		}
+		cf.exitCompilationScope();
+	}
+
 	@Override
 	public String toStringAST() {
 		StringBuilder sb = new StringBuilder("[");
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.springframework.asm.Label;
 import org.springframework.asm.MethodVisitor;
 import org.springframework.core.convert.TypeDescriptor;
 import org.springframework.expression.AccessException;
@@ -56,6 +57,9 @@ public class MethodReference extends SpelNodeImpl {
 
 	private final boolean nullSafe;
 
+	@Nullable
+	private String originalPrimitiveExitTypeDescriptor;
+
 	@Nullable
 	private volatile CachedMethodExecutor cachedExecutor;
 
@@ -236,7 +240,17 @@ public class MethodReference extends SpelNodeImpl {
 		CachedMethodExecutor executorToCheck = this.cachedExecutor;
 		if (executorToCheck != null && executorToCheck.get() instanceof ReflectiveMethodExecutor) {
 			Method method = ((ReflectiveMethodExecutor) executorToCheck.get()).getMethod();
-			this.exitTypeDescriptor = CodeFlow.toDescriptor(method.getReturnType());
+			String descriptor = CodeFlow.toDescriptor(method.getReturnType());
+			// A null-safe invocation has to be able to produce null as well,
+			// so promote a primitive return type to the boxed type
+			if (this.nullSafe && CodeFlow.isPrimitive(descriptor) && !"V".equals(descriptor)) {
+				this.originalPrimitiveExitTypeDescriptor = descriptor;
+				this.exitTypeDescriptor = CodeFlow.toBoxedDescriptor(descriptor);
+			}
+			else {
+				this.originalPrimitiveExitTypeDescriptor = null;
+				this.exitTypeDescriptor = descriptor;
+			}
 		}
 	}
 
@@ -276,13 +290,43 @@ public class MethodReference extends SpelNodeImpl {
 		if (executor.didArgumentConversionOccur()) {
 			return false;
 		}
-		Class<?> clazz = executor.getMethod().getDeclaringClass();
+		Method method = executor.getMethod();
+		Class<?> clazz = method.getDeclaringClass();
 		if (!Modifier.isPublic(clazz.getModifiers()) && executor.getPublicDeclaringClass() == null) {
 			return false;
 		}
+		// Static interface methods cannot be invoked from the generated class
+		if (Modifier.isStatic(method.getModifiers()) && clazz.isInterface()) {
+			return false;
+		}
 
 		return true;
 	}
+
+	@Override
+	protected String getNonCompilableReasonInternal() {
+		String method = "Method '" + toStringAST() + "'";
+		CachedMethodExecutor executorToCheck = this.cachedExecutor;
+		if (executorToCheck == null) {
+			return method + " has not been invoked yet or was not resolved by a ReflectiveMethodResolver";
+		}
+		if (executorToCheck.hasProxyTarget()) {
+			return method + " is invoked on a proxy class";
+		}
+		if (!(executorToCheck.get() instanceof ReflectiveMethodExecutor)) {
+			return method + " is invoked through " + executorToCheck.get().getClass().getName() +
+					" which does not support compilation";
+		}
+		ReflectiveMethodExecutor executor = (ReflectiveMethodExecutor) executorToCheck.get();
+		if (executor.didArgumentConversionOccur()) {
+			return method + " requires conversion of its arguments";
+		}
+		if (!Modifier.isPublic(executor.getMethod().getDeclaringClass().getModifiers()) &&
+				executor.getPublicDeclaringClass() == null) {
+			return method + " is not declared on a public type";
+		}
+		return method + " is a static interface method";
+	}
 	
 	@Override
 	public void generateCode(MethodVisitor mv, CodeFlow cf) {
@@ -313,15 +357,25 @@ public class MethodReference extends SpelNodeImpl {
 			CodeFlow.insertBoxIfNecessary(mv, descriptor.charAt(0));
 		}
 
-		String classDesc = null;
-		if (Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
-			classDesc = method.getDeclaringClass().getName().replace('.', '/');
+		Label skipIfNull = null;
+		if (this.nullSafe && !isStaticMethod && !CodeFlow.isPrimitive(descriptor)) {
+			// Pass on null as the result if the target is null
+			skipIfNull = new Label();
+			Label continueLabel = new Label();
+			mv.visitInsn(DUP);
+			mv.visitJumpInsn(IFNONNULL, continueLabel);
+			CodeFlow.insertCheckCast(mv, this.exitTypeDescriptor);
+			mv.visitJumpInsn(GOTO, skipIfNull);
+			mv.visitLabel(continueLabel);
 		}
-		else {
-			Class<?> publicDeclaringClass = methodExecutor.getPublicDeclaringClass();
-			Assert.state(publicDeclaringClass != null, "No public declaring class");
-			classDesc = publicDeclaringClass.getName().replace('.', '/');
-		};
+
+		Class<?> declaringClass = method.getDeclaringClass();
+		if (!Modifier.isPublic(declaringClass.getModifiers())) {
+			declaringClass = methodExecutor.getPublicDeclaringClass();
+			Assert.state(declaringClass != null, "No public declaring class");
+		}
+		String classDesc = declaringClass.getName().replace('.', '/');
+		boolean isInterface = declaringClass.isInterface();
 
 		if (!isStaticMethod) {
 			if (descriptor == null || !descriptor.substring(1).equals(classDesc)) {
@@ -330,8 +384,15 @@ public class MethodReference extends SpelNodeImpl {
 		}
 
 		generateCodeForArguments(mv, cf, method, this.children);
-		mv.visitMethodInsn((isStaticMethod ? INVOKESTATIC : INVOKEVIRTUAL), classDesc, method.getName(),
-				CodeFlow.createSignatureDescriptor(method), method.getDeclaringClass().isInterface());
+		int opcode = (isStaticMethod ? INVOKESTATIC : isInterface ? INVOKEINTERFACE : INVOKEVIRTUAL);
+		mv.visitMethodInsn(opcode, classDesc, method.getName(),
+				CodeFlow.createSignatureDescriptor(method), isInterface);
+		if (this.originalPrimitiveExitTypeDescriptor != null) {
+			CodeFlow.insertBoxIfNecessary(mv, this.originalPrimitiveExitTypeDescriptor);
+		}
+		if (skipIfNull != null) {
+			mv.visitLabel(skipIfNull);
+		}
 		cf.pushDescriptor(this.exitTypeDescriptor);
 	}
 
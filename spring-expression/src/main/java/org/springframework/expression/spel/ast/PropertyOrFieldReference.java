@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.asm.Label;
 import org.springframework.asm.MethodVisitor;
 import org.springframework.core.convert.TypeDescriptor;
 import org.springframework.expression.AccessException;
@@ -53,6 +54,9 @@ public class PropertyOrFieldReference extends SpelNodeImpl {
 
 	private final String name;
 
+	@Nullable
+	private String originalPrimitiveExitTypeDescriptor;
+
 	@Nullable
 	private volatile PropertyAccessor cachedReadAccessor;
 
@@ -89,11 +93,24 @@ public class PropertyOrFieldReference extends SpelNodeImpl {
 		PropertyAccessor accessorToUse = this.cachedReadAccessor;
 		if (accessorToUse instanceof CompilablePropertyAccessor) {
 			CompilablePropertyAccessor accessor = (CompilablePropertyAccessor) accessorToUse;
-			this.exitTypeDescriptor = CodeFlow.toDescriptor(accessor.getPropertyType());
+			setExitTypeDescriptor(CodeFlow.toDescriptor(accessor.getPropertyType()));
 		}
 		return tv;
 	}
 
+	private void setExitTypeDescriptor(String descriptor) {
+		// A null-safe access to a primitive property has to be able to produce
+		// null as well, so promote the exit type descriptor to the boxed type
+		if (this.nullSafe && CodeFlow.isPrimitive(descriptor)) {
+			this.originalPrimitiveExitTypeDescriptor = descriptor;
+			this.exitTypeDescriptor = CodeFlow.toBoxedDescriptor(descriptor);
+		}
+		else {
+			this.originalPrimitiveExitTypeDescriptor = null;
+			this.exitTypeDescriptor = descriptor;
+		}
+	}
+
 	private TypedValue getValueInternal(TypedValue contextObject, EvaluationContext evalContext,
 			boolean isAutoGrowNullReferences) throws EvaluationException {
 
@@ -338,10 +355,48 @@ public class PropertyOrFieldReference extends SpelNodeImpl {
 		if (!(accessorToUse instanceof CompilablePropertyAccessor)) {
 			throw new IllegalStateException("Property accessor is not compilable: " + accessorToUse);
 		}
+
+		Label skipIfNull = null;
+		String descriptor = cf.lastDescriptor();
+		if (this.nullSafe && !CodeFlow.isPrimitive(descriptor)) {
+			if (descriptor == null) {
+				cf.loadTarget(mv);
+				cf.pushDescriptor("Ljava/lang/Object");
+			}
+			// Pass on null as the result if the target is null
+			skipIfNull = new Label();
+			Label continueLabel = new Label();
+			mv.visitInsn(DUP);
+			mv.visitJumpInsn(IFNONNULL, continueLabel);
+			CodeFlow.insertCheckCast(mv, this.exitTypeDescriptor);
+			mv.visitJumpInsn(GOTO, skipIfNull);
+			mv.visitLabel(continueLabel);
+		}
+
 		((CompilablePropertyAccessor) accessorToUse).generateCode(this.name, mv, cf);
+		if (this.originalPrimitiveExitTypeDescriptor != null) {
+			CodeFlow.insertBoxIfNecessary(mv, this.originalPrimitiveExitTypeDescriptor);
+		}
+		if (skipIfNull != null) {
+			mv.visitLabel(skipIfNull);
+		}
 		cf.pushDescriptor(this.exitTypeDescriptor);
 	}
 
+	@Override
+	protected String getNonCompilableReasonInternal() {
+		PropertyAccessor accessorToUse = this.cachedReadAccessor;
+		if (accessorToUse == null) {
+			return "Property or field '" + this.name + "' has not been read yet";
+		}
+		if (!(accessorToUse instanceof CompilablePropertyAccessor)) {
+			return "Property or field '" + this.name + "' is read through " +
+					accessorToUse.getClass().getName() + " which does not support compilation";
+		}
+		return "Property or field '" + this.name + "' cannot be compiled by " +
+				accessorToUse.getClass().getName() + " (e.g. not public or declared on a non-public type)";
+	}
+
 
 	private static class AccessorLValue implements ValueRef {
 
@@ -368,8 +423,8 @@ public class PropertyOrFieldReference extends SpelNodeImpl {
 					this.ref.getValueInternal(this.contextObject, this.evalContext, this.autoGrowNullReferences);
 			PropertyAccessor accessorToUse = this.ref.cachedReadAccessor;
 			if (accessorToUse instanceof CompilablePropertyAccessor) {
-				this.ref.exitTypeDescriptor =
-						CodeFlow.toDescriptor(((CompilablePropertyAccessor) accessorToUse).getPropertyType());
+				this.ref.setExitTypeDescriptor(
+						CodeFlow.toDescriptor(((CompilablePropertyAccessor) accessorToUse).getPropertyType()));
 			}
 			return value;
 		}
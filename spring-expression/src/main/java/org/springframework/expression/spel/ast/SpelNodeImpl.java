@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -175,6 +175,42 @@ public abstract class SpelNodeImpl implements SpelNode, Opcodes {
 		return false;
 	}
 
+	/**
+	 * Determine why this node cannot be compiled to bytecode in its current state,
+	 * e.g. for finding out why an expression keeps being interpreted.
+	 * <p>Reports the reason for the first child node that is not compilable, if any,
+	 * and otherwise the reason given by {@link #getNonCompilableReasonInternal()}.
+	 * @return the reason, or {@code null} if this node is compilable
+	 * @since 5.1
+	 * @see #isCompilable()
+	 */
+	@Nullable
+	public String getNonCompilableReason() {
+		if (isCompilable()) {
+			return null;
+		}
+		for (SpelNodeImpl child : this.children) {
+			String reason = child.getNonCompilableReason();
+			if (reason != null) {
+				return reason;
+			}
+		}
+		return getNonCompilableReasonInternal();
+	}
+
+	/**
+	 * Describe why this node itself cannot be compiled to bytecode, with all of
+	 * its child nodes being compilable. Subclasses may provide a more specific
+	 * description than the default one.
+	 * @since 5.1
+	 */
+	protected String getNonCompilableReasonInternal() {
+		if (this.exitTypeDescriptor == null) {
+			return "'" + toStringAST() + "' has not been evaluated yet or its result type is not known";
+		}
+		return "'" + toStringAST() + "' (" + getClass().getSimpleName() + ") does not support compilation";
+	}
+
 	/**
 	 * Generate the bytecode for this node into the supplied visitor. Context info about
 	 * the current expression being compiled is available in the codeflow object. For
@@ -228,7 +264,8 @@ public abstract class SpelNodeImpl implements SpelNode, Opcodes {
 				generateCodeForArgument(mv, cf, arguments[p], paramDescriptors[p]);
 			}
 			
-			SpelNodeImpl lastChild = (childCount == 0 ? null : arguments[childCount - 1]);
+			// Only consider the last argument if it is at the varargs position
+			SpelNodeImpl lastChild = (childCount == paramDescriptors.length ? arguments[childCount - 1] : null);
 			String arrayType = paramDescriptors[paramDescriptors.length - 1];
 			// Determine if the final passed argument is already suitably packaged in array
 			// form to be passed to the method
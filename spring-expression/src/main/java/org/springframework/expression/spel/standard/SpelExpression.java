@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -523,6 +523,23 @@ public class SpelExpression implements Expression {
 		return (this.compiledAst != null);
 	}
 
+	/**
+	 * Determine why this expression cannot be compiled in its current state, e.g.
+	 * for rewriting expressions that keep being interpreted despite a compiler mode
+	 * other than {@link SpelCompilerMode#OFF OFF}.
+	 * <p>Note that compilation relies on type information collected during
+	 * interpreted evaluation, so an expression needs to be evaluated at least
+	 * once before it can be compiled.
+	 * @return a description of the first part of the expression preventing
+	 * compilation, or {@code null} if the expression is compilable
+	 * @since 5.1
+	 * @see #compileExpression()
+	 */
+	@Nullable
+	public String getNonCompilableReason() {
+		return this.ast.getNonCompilableReason();
+	}
+
 	/**
 	 * Cause an expression to revert to being interpreted if it has been using a compiled
 	 * form. It also resets the compilation attempt failure count (an expression is normally no
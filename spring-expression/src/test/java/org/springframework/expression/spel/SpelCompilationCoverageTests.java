@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -31,9 +32,11 @@ import java.util.StringTokenizer;
 import org.junit.Test;
 
 import org.springframework.asm.MethodVisitor;
+import org.springframework.core.convert.TypeDescriptor;
 import org.springframework.expression.AccessException;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
+import org.springframework.expression.MethodExecutor;
 import org.springframework.expression.TypedValue;
 import org.springframework.expression.spel.ast.CompoundExpression;
 import org.springframework.expression.spel.ast.OpLT;
@@ -42,6 +45,7 @@ import org.springframework.expression.spel.ast.Ternary;
 import org.springframework.expression.spel.standard.SpelCompiler;
 import org.springframework.expression.spel.standard.SpelExpression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.ReflectiveMethodResolver;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.expression.spel.testdata.PersonInOtherPackage;
 
@@ -104,6 +108,8 @@ public class SpelCompilationCoverageTests extends AbstractExpressionTests {
 	 * FunctionReference
 	 * InlineList
 	 * OpModulus
+	 * Selection (on Iterables)
+	 * Projection (on Iterables)
 	 *
 	 * Not yet compiled (some may never need to be):
 	 * Assign
@@ -114,9 +120,7 @@ public class SpelCompilationCoverageTests extends AbstractExpressionTests {
 	 * OpMatches
 	 * OpPower
 	 * OpInc
-	 * Projection
 	 * QualifiedId
-	 * Selection
 	 */
 
 
@@ -4804,6 +4808,209 @@ public class SpelCompilationCoverageTests extends AbstractExpressionTests {
 	}
 
 
+	@Test
+	public void selectionOnList() {
+		Inventory inventory = new Inventory();
+		expression = parser.parseExpression("numbers.?[#this > 2]");
+		assertEquals("[3, 4]", expression.getValue(inventory).toString());
+		assertCanCompile(expression);
+		assertEquals("[3, 4]", expression.getValue(inventory).toString());
+
+		expression = parser.parseExpression("numbers.^[#this > 2]");
+		assertEquals(3, expression.getValue(inventory));
+		assertCanCompile(expression);
+		assertEquals(3, expression.getValue(inventory));
+
+		expression = parser.parseExpression("numbers.$[#this > 2]");
+		assertEquals(4, expression.getValue(inventory));
+		assertCanCompile(expression);
+		assertEquals(4, expression.getValue(inventory));
+
+		expression = parser.parseExpression("numbers.^[#this > 10]");
+		assertNull(expression.getValue(inventory));
+		assertCanCompile(expression);
+		assertNull(expression.getValue(inventory));
+
+		expression = parser.parseExpression("items.?[price > #root.threshold].size()");
+		assertEquals(2, expression.getValue(inventory));
+		assertCanCompile(expression);
+		assertEquals(2, expression.getValue(inventory));
+		inventory.threshold = 15;
+		assertEquals(1, expression.getValue(inventory));
+	}
+
+	@Test
+	public void projectionOnList() {
+		Inventory inventory = new Inventory();
+		expression = parser.parseExpression("items.![name]");
+		assertEquals("[a, b, c]", expression.getValue(inventory).toString());
+		assertCanCompile(expression);
+		assertEquals("[a, b, c]", expression.getValue(inventory).toString());
+
+		expression = parser.parseExpression("items.![name.length() + price]");
+		assertEquals("[6, 13, 21]", expression.getValue(inventory).toString());
+		assertCanCompile(expression);
+		assertEquals("[6, 13, 21]", expression.getValue(inventory).toString());
+
+		expression = parser.parseExpression("items.?[price > 10].![name]");
+		assertEquals("[b, c]", expression.getValue(inventory).toString());
+		assertCanCompile(expression);
+		assertEquals("[b, c]", expression.getValue(inventory).toString());
+
+		expression = parser.parseExpression("missing?.![name]");
+		assertNull(expression.getValue(inventory));
+		inventory.missing = inventory.items;
+		assertEquals("[a, b, c]", expression.getValue(inventory).toString());
+		assertCanCompile(expression);
+		assertEquals("[a, b, c]", expression.getValue(inventory).toString());
+		inventory.missing = null;
+		assertNull(expression.getValue(inventory));
+	}
+
+	@Test
+	public void selectionAndProjectionNotCompilable() {
+		Inventory inventory = new Inventory();
+		expression = parser.parseExpression("numbers.?[#index > 1]");
+		expression.getValue(inventory);
+		assertCantCompile(expression);
+		assertTrue(((SpelExpression) expression).getNonCompilableReason().contains("#index"));
+
+		expression = parser.parseExpression("prices.?[value > 10]");
+		assertEquals(2, ((Map<?, ?>) expression.getValue(inventory)).size());
+		assertCantCompile(expression);
+		assertTrue(((SpelExpression) expression).getNonCompilableReason().contains("maps and arrays"));
+
+		expression = parser.parseExpression("numberArray.![#this * 2]");
+		assertEquals(3, ((Object[]) expression.getValue(inventory)).length);
+		assertCantCompile(expression);
+	}
+
+	@Test
+	public void nullSafePropertyAndMethodReferences() {
+		Inventory inventory = new Inventory();
+		inventory.missing = inventory.items;
+		expression = parser.parseExpression("missing?.size()");
+		assertEquals(3, expression.getValue(inventory));
+		assertCanCompile(expression);
+		assertEquals(3, expression.getValue(inventory));
+		inventory.missing = null;
+		assertNull(expression.getValue(inventory));
+
+		Item item = new Item("a", 5);
+		expression = parser.parseExpression("#item?.price");
+		StandardEvaluationContext context = new StandardEvaluationContext();
+		context.setVariable("item", item);
+		assertEquals(5, expression.getValue(context));
+		assertCanCompile(expression);
+		assertEquals(5, expression.getValue(context));
+		context.setVariable("item", null);
+		assertNull(expression.getValue(context));
+	}
+
+	@Test
+	public void indexerWithNonLiteralKeys() {
+		StandardEvaluationContext context = new StandardEvaluationContext();
+		Map<Integer, String> numbers = new HashMap<>();
+		numbers.put(1, "one");
+		context.setVariable("numbers", numbers);
+		context.setVariable("list", Arrays.asList("a", "b", "c"));
+		context.setVariable("i", 2);
+
+		expression = parser.parseExpression("#numbers[1]");
+		assertEquals("one", expression.getValue(context));
+		assertCanCompile(expression);
+		assertEquals("one", expression.getValue(context));
+
+		expression = parser.parseExpression("#list[#i]");
+		assertEquals("c", expression.getValue(context));
+		assertCanCompile(expression);
+		assertEquals("c", expression.getValue(context));
+		context.setVariable("i", 0);
+		assertEquals("a", expression.getValue(context));
+
+		expression = parser.parseExpression("#list[1L]");
+		assertEquals("b", expression.getValue(context));
+		assertCanCompile(expression);
+		assertEquals("b", expression.getValue(context));
+	}
+
+	@Test
+	public void methodReferencesOnInterfaces() {
+		StandardEvaluationContext context = new StandardEvaluationContext();
+		context.setVariable("list", Collections.unmodifiableList(Arrays.asList("a", "b")));
+		context.setVariable("greeter", new PrivateGreeter());
+
+		// size() is declared on a non-public class: invoked through java.util.List
+		expression = parser.parseExpression("#list.size()");
+		assertEquals(2, expression.getValue(context));
+		assertCanCompile(expression);
+		assertEquals(2, expression.getValue(context));
+
+		expression = parser.parseExpression("#greeter.greet('x')");
+		assertEquals("hello x", expression.getValue(context));
+		assertCanCompile(expression);
+		assertEquals("hello x", expression.getValue(context));
+
+		expression = parser.parseExpression("#greeter.join('a', 'b', 'c')");
+		assertEquals("a-b-c", expression.getValue(context));
+		assertCanCompile(expression);
+		assertEquals("a-b-c", expression.getValue(context));
+
+		expression = parser.parseExpression("#greeter.join()");
+		assertEquals("", expression.getValue(context));
+		assertCanCompile(expression);
+		assertEquals("", expression.getValue(context));
+	}
+
+	@Test
+	public void elvisWithMixedTypes() {
+		StandardEvaluationContext context = new StandardEvaluationContext();
+		context.setVariable("number", null);
+		expression = parser.parseExpression("#number ?: 42");
+		assertEquals(42, expression.getValue(context));
+		context.setVariable("number", 7);
+		assertEquals(7, expression.getValue(context));
+		assertCanCompile(expression);
+		assertEquals("Ljava/lang/Integer", getAst().getExitDescriptor());
+		assertEquals(7, expression.getValue(context));
+		context.setVariable("number", null);
+		assertEquals(42, expression.getValue(context));
+
+		expression = parser.parseExpression("#number ?: 'none'");
+		assertEquals("none", expression.getValue(context));
+		assertCanCompile(expression);
+		assertEquals("none", expression.getValue(context));
+		context.setVariable("number", 7);
+		assertEquals(7, expression.getValue(context));
+	}
+
+	@Test
+	public void nonCompilableReason() {
+		expression = parser.parseExpression("#foo.bar()");
+		assertEquals("Variable '#foo' has not been evaluated yet",
+				((SpelExpression) expression).getNonCompilableReason());
+
+		Inventory inventory = new Inventory();
+		expression = parser.parseExpression("items[0].name");
+		assertEquals("a", expression.getValue(inventory));
+		assertNull(((SpelExpression) expression).getNonCompilableReason());
+
+		expression = parser.parseExpression("numbers.size() > 2 and name == null");
+		StandardEvaluationContext context = new StandardEvaluationContext(inventory);
+		context.setMethodResolvers(Collections.singletonList(new ReflectiveMethodResolver() {
+			@Override
+			public MethodExecutor resolve(EvaluationContext context, Object targetObject, String name,
+					List<TypeDescriptor> argumentTypes) throws AccessException {
+				MethodExecutor executor = super.resolve(context, targetObject, name, argumentTypes);
+				return (executor != null ? (ctx, target, args) -> executor.execute(ctx, target, args) : null);
+			}
+		}));
+		assertTrue(expression.getValue(context, Boolean.class));
+		String reason = ((SpelExpression) expression).getNonCompilableReason();
+		assertTrue(reason, reason.startsWith("Method 'size()'"));
+	}
+
+
 	// helper methods
 
 	private SpelNodeImpl getAst() {
@@ -5863,4 +6070,81 @@ public class SpelCompilationCoverageTests extends AbstractExpressionTests {
 		}
 	}
 
+
+	public static class Inventory {
+
+		public List<Integer> numbers = Arrays.asList(1, 2, 3, 4);
+
+		public Integer[] numberArray = {1, 2, 3};
+
+		public List<Item> items = Arrays.asList(new Item("a", 5), new Item("b", 12), new Item("c", 20));
+
+		public List<Item> missing;
+
+		public Map<String, Integer> prices = new HashMap<>();
+
+		public int threshold = 10;
+
+		public String name;
+
+		public Inventory() {
+			this.prices.put("a", 5);
+			this.prices.put("b", 12);
+			this.prices.put("c", 20);
+		}
+
+		public List<Integer> getNumbers() {
+			return this.numbers;
+		}
+
+		public List<Item> getItems() {
+			return this.items;
+		}
+
+		public List<Item> getMissing() {
+			return this.missing;
+		}
+
+		public int getThreshold() {
+			return this.threshold;
+		}
+	}
+
+
+	public static class Item {
+
+		private final String name;
+
+		private final int price;
+
+		public Item(String name, int price) {
+			this.name = name;
+			this.price = price;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public int getPrice() {
+			return this.price;
+		}
+	}
+
+
+	public interface Greeting {
+
+		default String greet(String name) {
+			return "hello " + name;
+		}
+
+		default String join(String... parts) {
+			return String.join("-", parts);
+		}
+	}
+
+
+	private static class PrivateGreeter implements Greeting {
+	}
+
 }
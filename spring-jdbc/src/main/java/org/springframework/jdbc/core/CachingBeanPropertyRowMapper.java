@@ -0,0 +1,617 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core;
+
+import java.beans.ConstructorProperties;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.TypeMismatchException;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * {@link RowMapper} implementation that converts a row into a new instance
+ * of the specified mapped target class, designed for mapping large numbers
+ * of rows. Matches columns to properties by name like {@link BeanPropertyRowMapper},
+ * either directly or by transforming a name separating the parts with underscores
+ * to the same name using "camel" case.
+ *
+ * <p>Instead of going through a {@link org.springframework.beans.BeanWrapper}
+ * for every row, this row mapper determines a mapping plan once per result set
+ * shape (i.e. per distinct sequence of column labels) and reuses it for all rows:
+ * Each mapped column is bound to a {@code ResultSet} getter for the target type
+ * (e.g. {@code getInt} for an {@code int} property) and to a {@link MethodHandle}
+ * for the corresponding write method. Column values that do not match the target
+ * type as is are converted through the configured {@link ConversionService}.
+ *
+ * <p>Supports immutable target classes as well: If the target class does not
+ * declare a no-arg constructor, its single constructor is used, with the columns
+ * matched to the constructor parameter names (as indicated by
+ * {@link ConstructorProperties} or as discovered from the class file). Any
+ * remaining columns are mapped to properties with write methods as usual.
+ *
+ * <p>For 'null' values read from the database into primitive properties or
+ * constructor parameters, a {@link TypeMismatchException} is thrown unless the
+ * {@link #setPrimitivesDefaultedForNullValue "primitivesDefaultedForNullValue"}
+ * flag is set, in which case properties are left at their default value and
+ * constructor parameters receive the primitive's default value.
+ *
+ * <p>In contrast to {@code BeanPropertyRowMapper}, property editors are not
+ * applied and there is no per-row customization hook; consider
+ * {@code BeanPropertyRowMapper} or a custom {@link RowMapper} for such needs.
+ *
+ * @since 5.1
+ * @param <T> the result type
+ * @see BeanPropertyRowMapper
+ */
+public class CachingBeanPropertyRowMapper<T> implements RowMapper<T> {
+
+	private static final Map<Class<?>, Object> primitiveDefaults = new HashMap<>(8);
+
+	static {
+		primitiveDefaults.put(boolean.class, false);
+		primitiveDefaults.put(byte.class, (byte) 0);
+		primitiveDefaults.put(short.class, (short) 0);
+		primitiveDefaults.put(char.class, (char) 0);
+		primitiveDefaults.put(int.class, 0);
+		primitiveDefaults.put(long.class, 0L);
+		primitiveDefaults.put(float.class, 0F);
+		primitiveDefaults.put(double.class, 0D);
+	}
+
+
+	/** Logger available to subclasses */
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	/** The class we are mapping to */
+	private final Class<T> mappedClass;
+
+	/** The constructor to use for instantiating the mapped class */
+	private final Constructor<T> constructor;
+
+	/** Parameter names of the constructor, if not a no-arg constructor */
+	private final String[] constructorParameterNames;
+
+	/** Map of the fields we provide mapping for */
+	private final Map<String, PropertyDescriptor> mappedFields = new HashMap<>();
+
+	/** Set of bean properties we provide mapping for */
+	private final Set<String> mappedProperties = new HashSet<>();
+
+	/** Whether we're strictly validating */
+	private boolean checkFullyPopulated = false;
+
+	/** Whether we're defaulting primitives when mapping a null value */
+	private boolean primitivesDefaultedForNullValue = false;
+
+	/** ConversionService for converting JDBC values to property types */
+	@Nullable
+	private ConversionService conversionService = DefaultConversionService.getSharedInstance();
+
+	/** Mapping plans keyed by column labels */
+	private final Map<List<String>, MappingPlan> mappingPlans = new ConcurrentHashMap<>(4);
+
+	/** The mapping plan for the most recently seen ResultSet */
+	@Nullable
+	private volatile ResultSetMappingPlan currentPlan;
+
+
+	/**
+	 * Create a new {@code CachingBeanPropertyRowMapper}, accepting unpopulated
+	 * properties in the target bean.
+	 * @param mappedClass the class that each row should be mapped to
+	 */
+	public CachingBeanPropertyRowMapper(Class<T> mappedClass) {
+		this(mappedClass, false);
+	}
+
+	/**
+	 * Create a new {@code CachingBeanPropertyRowMapper}.
+	 * @param mappedClass the class that each row should be mapped to
+	 * @param checkFullyPopulated whether we're strictly validating that
+	 * all bean properties have been mapped from corresponding database fields
+	 */
+	public CachingBeanPropertyRowMapper(Class<T> mappedClass, boolean checkFullyPopulated) {
+		Assert.notNull(mappedClass, "Mapped class must not be null");
+		this.mappedClass = mappedClass;
+		this.checkFullyPopulated = checkFullyPopulated;
+		this.constructor = determineConstructor(mappedClass);
+		this.constructorParameterNames = determineParameterNames(this.constructor);
+		for (PropertyDescriptor pd : BeanUtils.getPropertyDescriptors(mappedClass)) {
+			if (pd.getWriteMethod() != null) {
+				String lowerCaseName = lowerCaseName(pd.getName());
+				this.mappedFields.put(lowerCaseName, pd);
+				String underscoredName = underscoreName(pd.getName());
+				if (!lowerCaseName.equals(underscoredName)) {
+					this.mappedFields.put(underscoredName, pd);
+				}
+				this.mappedProperties.add(pd.getName());
+			}
+		}
+	}
+
+
+	/**
+	 * Get the class that we are mapping to.
+	 */
+	public final Class<T> getMappedClass() {
+		return this.mappedClass;
+	}
+
+	/**
+	 * Set whether we're strictly validating that all bean properties have been mapped
+	 * from corresponding database fields.
+	 * <p>Default is {@code false}, accepting unpopulated properties in the target bean.
+	 */
+	public void setCheckFullyPopulated(boolean checkFullyPopulated) {
+		this.checkFullyPopulated = checkFullyPopulated;
+		this.mappingPlans.clear();
+		this.currentPlan = null;
+	}
+
+	/**
+	 * Return whether we're strictly validating that all bean properties have been
+	 * mapped from corresponding database fields.
+	 */
+	public boolean isCheckFullyPopulated() {
+		return this.checkFullyPopulated;
+	}
+
+	/**
+	 * Set whether we're defaulting Java primitives in the case of mapping a null value
+	 * from corresponding database fields.
+	 * <p>Default is {@code false}, throwing an exception when nulls are mapped to Java primitives.
+	 */
+	public void setPrimitivesDefaultedForNullValue(boolean primitivesDefaultedForNullValue) {
+		this.primitivesDefaultedForNullValue = primitivesDefaultedForNullValue;
+	}
+
+	/**
+	 * Return whether we're defaulting Java primitives in the case of mapping a null value
+	 * from corresponding database fields.
+	 */
+	public boolean isPrimitivesDefaultedForNullValue() {
+		return this.primitivesDefaultedForNullValue;
+	}
+
+	/**
+	 * Set a {@link ConversionService} for converting JDBC values to property types,
+	 * or {@code null} for none.
+	 * <p>Default is a {@link DefaultConversionService}.
+	 */
+	public void setConversionService(@Nullable ConversionService conversionService) {
+		this.conversionService = conversionService;
+	}
+
+	/**
+	 * Return a {@link ConversionService} for converting JDBC values to property types,
+	 * or {@code null} if none.
+	 */
+	@Nullable
+	public ConversionService getConversionService() {
+		return this.conversionService;
+	}
+
+
+	/**
+	 * Convert a name in camelCase to an underscored name in lower case.
+	 * Any upper case letters are converted to lower case with a preceding underscore.
+	 * @param name the original name
+	 * @return the converted name
+	 * @see BeanPropertyRowMapper#underscoreName
+	 */
+	protected String underscoreName(String name) {
+		if (!StringUtils.hasLength(name)) {
+			return "";
+		}
+		StringBuilder result = new StringBuilder();
+		result.append(lowerCaseName(name.substring(0, 1)));
+		for (int i = 1; i < name.length(); i++) {
+			String s = name.substring(i, i + 1);
+			String slc = lowerCaseName(s);
+			if (!s.equals(slc)) {
+				result.append("_").append(slc);
+			}
+			else {
+				result.append(s);
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Convert the given name to lower case.
+	 * By default, conversions will happen within the US locale.
+	 * @param name the original name
+	 * @return the converted name
+	 */
+	protected String lowerCaseName(String name) {
+		return name.toLowerCase(Locale.US);
+	}
+
+
+	/**
+	 * Extract the values for all mapped columns in the current row,
+	 * using the mapping plan for the shape of the given ResultSet.
+	 */
+	@Override
+	public T mapRow(ResultSet rs, int rowNumber) throws SQLException {
+		return getMappingPlan(rs, rowNumber).mapRow(rs, rowNumber);
+	}
+
+	private MappingPlan getMappingPlan(ResultSet rs, int rowNumber) throws SQLException {
+		ResultSetMappingPlan current = this.currentPlan;
+		if (current != null && rowNumber > 0 && current.resultSet.get() == rs) {
+			return current.plan;
+		}
+		ResultSetMetaData rsmd = rs.getMetaData();
+		String[] columns = new String[rsmd.getColumnCount()];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = JdbcUtils.lookupColumnName(rsmd, i + 1);
+		}
+		List<String> key = Arrays.asList(columns);
+		MappingPlan plan = this.mappingPlans.get(key);
+		if (plan == null) {
+			plan = buildMappingPlan(columns);
+			this.mappingPlans.put(key, plan);
+		}
+		this.currentPlan = new ResultSetMappingPlan(rs, plan);
+		return plan;
+	}
+
+	private MappingPlan buildMappingPlan(String[] columns) {
+		String[] parameterNames = this.constructorParameterNames;
+		Class<?>[] parameterTypes = this.constructor.getParameterTypes();
+		ColumnMapping[] arguments = new ColumnMapping[parameterNames.length];
+		Map<String, Integer> parameterIndexes = new HashMap<>(parameterNames.length * 2);
+		for (int i = 0; i < parameterNames.length; i++) {
+			parameterIndexes.put(lowerCaseName(parameterNames[i]), i);
+			parameterIndexes.put(underscoreName(parameterNames[i]), i);
+		}
+
+		List<ColumnMapping> properties = new ArrayList<>(columns.length);
+		Set<String> populatedProperties = new HashSet<>();
+		for (int index = 1; index <= columns.length; index++) {
+			String column = columns[index - 1];
+			String field = lowerCaseName(StringUtils.delete(column, " "));
+			Integer parameterIndex = parameterIndexes.get(field);
+			if (parameterIndex != null && arguments[parameterIndex] == null) {
+				MethodParameter parameter = new MethodParameter(this.constructor, parameterIndex);
+				arguments[parameterIndex] = new ColumnMapping(index, column, parameterNames[parameterIndex],
+						parameterTypes[parameterIndex], new TypeDescriptor(parameter), null);
+				continue;
+			}
+			PropertyDescriptor pd = this.mappedFields.get(field);
+			if (pd != null) {
+				Method writeMethod = pd.getWriteMethod();
+				Assert.state(writeMethod != null, "No write method");
+				properties.add(new ColumnMapping(index, column, pd.getName(), pd.getPropertyType(),
+						new TypeDescriptor(new MethodParameter(writeMethod, 0)), createSetter(writeMethod)));
+				populatedProperties.add(pd.getName());
+			}
+			else if (logger.isDebugEnabled()) {
+				logger.debug("No property found for column '" + column + "' mapped to field '" + field + "'");
+			}
+		}
+
+		if (this.checkFullyPopulated && !populatedProperties.equals(this.mappedProperties)) {
+			throw new InvalidDataAccessApiUsageException("Given ResultSet does not contain all fields " +
+					"necessary to populate object of class [" + this.mappedClass.getName() + "]: " +
+					this.mappedProperties);
+		}
+		if (logger.isDebugEnabled()) {
+			for (ColumnMapping mapping : arguments) {
+				if (mapping != null) {
+					logger.debug("Mapping column '" + mapping.column + "' to constructor parameter '" +
+							mapping.name + "' of type '" + ClassUtils.getQualifiedName(mapping.type) + "'");
+				}
+			}
+			for (ColumnMapping mapping : properties) {
+				logger.debug("Mapping column '" + mapping.column + "' to property '" + mapping.name +
+						"' of type '" + ClassUtils.getQualifiedName(mapping.type) + "'");
+			}
+		}
+		return new MappingPlan(arguments, properties.toArray(new ColumnMapping[0]));
+	}
+
+	private MethodHandle createSetter(Method writeMethod) {
+		try {
+			ReflectionUtils.makeAccessible(writeMethod);
+			return MethodHandles.lookup().unreflect(writeMethod)
+					.asType(MethodType.methodType(void.class, Object.class, Object.class));
+		}
+		catch (IllegalAccessException ex) {
+			throw new InvalidDataAccessApiUsageException("Cannot access write method " + writeMethod, ex);
+		}
+	}
+
+	@Nullable
+	private Object convertIfNecessary(ColumnMapping mapping, @Nullable Object value, int rowNumber) {
+		if (value == null) {
+			if (mapping.type.isPrimitive()) {
+				if (!this.primitivesDefaultedForNullValue) {
+					throw new TypeMismatchException(value, mapping.type);
+				}
+				if (logger.isDebugEnabled()) {
+					logger.debug("Defaulting null value of column '" + mapping.column + "' for row " +
+							rowNumber + " to primitive default for '" + mapping.name + "'");
+				}
+			}
+			return null;
+		}
+		if (ClassUtils.isAssignableValue(mapping.type, value)) {
+			return value;
+		}
+		ConversionService cs = this.conversionService;
+		TypeDescriptor sourceType = TypeDescriptor.forObject(value);
+		if (cs == null || !cs.canConvert(sourceType, mapping.typeDescriptor)) {
+			throw new TypeMismatchException(value, mapping.type);
+		}
+		try {
+			return cs.convert(value, sourceType, mapping.typeDescriptor);
+		}
+		catch (RuntimeException ex) {
+			throw new TypeMismatchException(value, mapping.type, ex);
+		}
+	}
+
+
+	@SuppressWarnings("unchecked")
+	private static <T> Constructor<T> determineConstructor(Class<T> mappedClass) {
+		try {
+			return mappedClass.getDeclaredConstructor();
+		}
+		catch (NoSuchMethodException ex) {
+			Constructor<?>[] ctors = mappedClass.getConstructors();
+			if (ctors.length != 1) {
+				ctors = mappedClass.getDeclaredConstructors();
+			}
+			if (ctors.length != 1) {
+				throw new InvalidDataAccessApiUsageException("Class [" + mappedClass.getName() +
+						"] needs to declare a no-arg constructor or a single constructor");
+			}
+			return (Constructor<T>) ctors[0];
+		}
+	}
+
+	private static String[] determineParameterNames(Constructor<?> ctor) {
+		if (ctor.getParameterCount() == 0) {
+			return new String[0];
+		}
+		ConstructorProperties cp = ctor.getAnnotation(ConstructorProperties.class);
+		if (cp != null) {
+			if (cp.value().length != ctor.getParameterCount()) {
+				throw new InvalidDataAccessApiUsageException(
+						"Constructor annotated with @ConstructorProperties but not declaring correct number of names: " +
+						ctor);
+			}
+			return cp.value();
+		}
+		ParameterNameDiscoverer discoverer = new DefaultParameterNameDiscoverer();
+		String[] names = discoverer.getParameterNames(ctor);
+		if (names == null) {
+			throw new InvalidDataAccessApiUsageException("Cannot resolve parameter names for constructor " + ctor +
+					": compile with '-parameters' or declare @ConstructorProperties");
+		}
+		return names;
+	}
+
+	/**
+	 * Determine a reader for the given target type, using the corresponding
+	 * typed {@code ResultSet} getter where possible.
+	 * @see JdbcUtils#getResultSetValue(ResultSet, int, Class)
+	 */
+	private static ColumnReader determineReader(Class<?> type) {
+		Class<?> boxedType = ClassUtils.resolvePrimitiveIfNecessary(type);
+		if (String.class == type) {
+			return ResultSet::getString;
+		}
+		else if (Integer.class == boxedType) {
+			return (rs, index) -> {
+				int value = rs.getInt(index);
+				return (rs.wasNull() ? null : value);
+			};
+		}
+		else if (Long.class == boxedType) {
+			return (rs, index) -> {
+				long value = rs.getLong(index);
+				return (rs.wasNull() ? null : value);
+			};
+		}
+		else if (Boolean.class == boxedType) {
+			return (rs, index) -> {
+				boolean value = rs.getBoolean(index);
+				return (rs.wasNull() ? null : value);
+			};
+		}
+		else if (Double.class == boxedType) {
+			return (rs, index) -> {
+				double value = rs.getDouble(index);
+				return (rs.wasNull() ? null : value);
+			};
+		}
+		else if (BigDecimal.class == type) {
+			return ResultSet::getBigDecimal;
+		}
+		else if (java.sql.Timestamp.class == type || java.util.Date.class == type) {
+			return ResultSet::getTimestamp;
+		}
+		else {
+			return (rs, index) -> JdbcUtils.getResultSetValue(rs, index, type);
+		}
+	}
+
+
+	/**
+	 * Static factory method to create a new {@code CachingBeanPropertyRowMapper}.
+	 * @param mappedClass the class that each row should be mapped to
+	 */
+	public static <T> CachingBeanPropertyRowMapper<T> newInstance(Class<T> mappedClass) {
+		return new CachingBeanPropertyRowMapper<>(mappedClass);
+	}
+
+
+	/**
+	 * Reads a column value from the current row.
+	 */
+	@FunctionalInterface
+	private interface ColumnReader {
+
+		@Nullable
+		Object read(ResultSet rs, int index) throws SQLException;
+	}
+
+
+	/**
+	 * The mapping of a column to a constructor parameter or a property.
+	 */
+	private static final class ColumnMapping {
+
+		final int index;
+
+		final String column;
+
+		final String name;
+
+		final Class<?> type;
+
+		final TypeDescriptor typeDescriptor;
+
+		final ColumnReader reader;
+
+		@Nullable
+		final MethodHandle setter;
+
+		ColumnMapping(int index, String column, String name, Class<?> type, TypeDescriptor typeDescriptor,
+				@Nullable MethodHandle setter) {
+
+			this.index = index;
+			this.column = column;
+			this.name = name;
+			this.type = type;
+			this.typeDescriptor = typeDescriptor;
+			this.reader = determineReader(type);
+			this.setter = setter;
+		}
+	}
+
+
+	/**
+	 * The mapping plan for a specific shape of result set.
+	 */
+	private final class MappingPlan {
+
+		private final ColumnMapping[] arguments;
+
+		private final ColumnMapping[] properties;
+
+		MappingPlan(ColumnMapping[] arguments, ColumnMapping[] properties) {
+			this.arguments = arguments;
+			this.properties = properties;
+		}
+
+		T mapRow(ResultSet rs, int rowNumber) throws SQLException {
+			T mappedObject;
+			if (this.arguments.length == 0) {
+				mappedObject = BeanUtils.instantiateClass(constructor);
+			}
+			else {
+				Class<?>[] parameterTypes = constructor.getParameterTypes();
+				Object[] args = new Object[this.arguments.length];
+				for (int i = 0; i < args.length; i++) {
+					ColumnMapping mapping = this.arguments[i];
+					Object value = (mapping != null ?
+							convertIfNecessary(mapping, mapping.reader.read(rs, mapping.index), rowNumber) : null);
+					args[i] = (value == null && parameterTypes[i].isPrimitive() ?
+							primitiveDefaults.get(parameterTypes[i]) : value);
+				}
+				mappedObject = BeanUtils.instantiateClass(constructor, args);
+			}
+
+			for (ColumnMapping mapping : this.properties) {
+				Object value = convertIfNecessary(mapping, mapping.reader.read(rs, mapping.index), rowNumber);
+				if (value == null && mapping.type.isPrimitive()) {
+					// Defaulted for null value
+					continue;
+				}
+				try {
+					mapping.setter.invokeExact((Object) mappedObject, value);
+				}
+				catch (RuntimeException | Error ex) {
+					throw ex;
+				}
+				catch (Throwable ex) {
+					throw new DataRetrievalFailureException(
+							"Unable to map column '" + mapping.column + "' to property '" + mapping.name + "'", ex);
+				}
+			}
+			return mappedObject;
+		}
+	}
+
+
+	/**
+	 * Holder for the mapping plan of a specific ResultSet.
+	 */
+	private final class ResultSetMappingPlan {
+
+		final WeakReference<ResultSet> resultSet;
+
+		final MappingPlan plan;
+
+		ResultSetMappingPlan(ResultSet resultSet, MappingPlan plan) {
+			this.resultSet = new WeakReference<>(resultSet);
+			this.plan = plan;
+		}
+	}
+
+}
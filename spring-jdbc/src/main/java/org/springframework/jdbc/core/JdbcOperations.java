@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.jdbc.core;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
@@ -521,6 +522,112 @@ public interface JdbcOperations {
 	 */
 	<T> List<T> query(String sql, RowMapper<T> rowMapper, @Nullable Object... args) throws DataAccessException;
 
+	/**
+	 * Query using a prepared statement, mapping each row to a Java object
+	 * via a RowMapper, with the rows being read lazily from the underlying
+	 * ResultSet while the returned Stream is being consumed.
+	 * <p>The returned Stream holds on to the JDBC ResultSet, Statement and
+	 * Connection until it gets closed: It needs to be closed once fully
+	 * consumed, e.g. in a try-with-resources clause.
+	 * <p>The ResultSet is of type forward-only and read-only, as per the
+	 * JDBC defaults; the statement settings of this JdbcOperations instance
+	 * apply, including its fetch size.
+	 * @param psc object that can create a PreparedStatement given a Connection
+	 * @param rowMapper object that will map one object per row
+	 * @return the result Stream, containing mapped objects, needing to be
+	 * closed once fully processed (e.g. through a try-with-resources clause)
+	 * @throws DataAccessException if the query fails (or later on, if reading
+	 * from the ResultSet fails while the Stream is being consumed)
+	 * @since 5.1
+	 */
+	<T> Stream<T> queryForStream(PreparedStatementCreator psc, RowMapper<T> rowMapper) throws DataAccessException;
+
+	/**
+	 * Query using a prepared statement, mapping each row to a Java object
+	 * via a RowMapper, with the rows being read lazily from the underlying
+	 * ResultSet, fetching the given number of rows at a time.
+	 * <p>The returned Stream needs to be closed once fully consumed.
+	 * @param psc object that can create a PreparedStatement given a Connection
+	 * @param rowMapper object that will map one object per row
+	 * @param fetchSize the fetch size to apply to the statement, overriding
+	 * the default fetch size of this JdbcOperations instance for this query
+	 * (-1 indicates the default)
+	 * @return the result Stream, containing mapped objects, needing to be
+	 * closed once fully processed (e.g. through a try-with-resources clause)
+	 * @throws DataAccessException if the query fails
+	 * @since 5.1
+	 * @see java.sql.Statement#setFetchSize
+	 * @see #queryForStream(PreparedStatementCreator, RowMapper)
+	 */
+	<T> Stream<T> queryForStream(PreparedStatementCreator psc, RowMapper<T> rowMapper, int fetchSize)
+			throws DataAccessException;
+
+	/**
+	 * Query using a prepared statement, mapping each row to a Java object
+	 * via a RowMapper, with the rows being read lazily from the underlying
+	 * ResultSet.
+	 * <p>The returned Stream needs to be closed once fully consumed.
+	 * @param sql SQL query to execute
+	 * @param pss object that knows how to set values on the prepared statement.
+	 * If this is {@code null}, the SQL will be assumed to contain no bind parameters.
+	 * Even if there are no bind parameters, this object may be used to
+	 * set fetch size and other performance options.
+	 * @param rowMapper object that will map one object per row
+	 * @return the result Stream, containing mapped objects, needing to be
+	 * closed once fully processed (e.g. through a try-with-resources clause)
+	 * @throws DataAccessException if the query fails
+	 * @since 5.1
+	 * @see #queryForStream(PreparedStatementCreator, RowMapper)
+	 */
+	<T> Stream<T> queryForStream(String sql, @Nullable PreparedStatementSetter pss, RowMapper<T> rowMapper)
+			throws DataAccessException;
+
+	/**
+	 * Query given SQL to create a prepared statement from SQL and a list
+	 * of arguments to bind to the query, mapping each row to a Java object
+	 * via a RowMapper, with the rows being read lazily from the underlying
+	 * ResultSet.
+	 * <p>The returned Stream needs to be closed once fully consumed.
+	 * @param sql SQL query to execute
+	 * @param rowMapper object that will map one object per row
+	 * @param args arguments to bind to the query
+	 * (leaving it to the PreparedStatement to guess the corresponding SQL type);
+	 * may also contain {@link SqlParameterValue} objects which indicate not
+	 * only the argument value but also the SQL type and optionally the scale
+	 * @return the result Stream, containing mapped objects, needing to be
+	 * closed once fully processed (e.g. through a try-with-resources clause)
+	 * @throws DataAccessException if the query fails
+	 * @since 5.1
+	 * @see #queryForStream(PreparedStatementCreator, RowMapper)
+	 */
+	<T> Stream<T> queryForStream(String sql, RowMapper<T> rowMapper, @Nullable Object... args)
+			throws DataAccessException;
+
+	/**
+	 * Query given SQL to create a prepared statement from SQL and a list
+	 * of arguments to bind to the query, mapping each row to a Java object
+	 * via a RowMapper, with the rows being read lazily from the underlying
+	 * ResultSet, fetching the given number of rows at a time.
+	 * <p>The returned Stream needs to be closed once fully consumed.
+	 * @param sql SQL query to execute
+	 * @param fetchSize the fetch size to apply to the statement, overriding
+	 * the default fetch size of this JdbcOperations instance for this query
+	 * (-1 indicates the default)
+	 * @param rowMapper object that will map one object per row
+	 * @param args arguments to bind to the query
+	 * (leaving it to the PreparedStatement to guess the corresponding SQL type);
+	 * may also contain {@link SqlParameterValue} objects which indicate not
+	 * only the argument value but also the SQL type and optionally the scale
+	 * @return the result Stream, containing mapped objects, needing to be
+	 * closed once fully processed (e.g. through a try-with-resources clause)
+	 * @throws DataAccessException if the query fails
+	 * @since 5.1
+	 * @see java.sql.Statement#setFetchSize
+	 * @see #queryForStream(PreparedStatementCreator, RowMapper)
+	 */
+	<T> Stream<T> queryForStream(String sql, int fetchSize, RowMapper<T> rowMapper, @Nullable Object... args)
+			throws DataAccessException;
+
 	/**
 	 * Query given SQL to create a prepared statement from SQL and a list
 	 * of arguments to bind to the query, mapping a single result row to a
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -35,6 +35,11 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import javax.sql.DataSource;
 
 import org.springframework.dao.DataAccessException;
@@ -766,6 +771,114 @@ public class JdbcTemplate extends JdbcAccessor implements JdbcOperations {
 		return result(query(sql, args, new RowMapperResultSetExtractor<>(rowMapper)));
 	}
 
+	/**
+	 * Query using a prepared statement, allowing for a PreparedStatementCreator
+	 * and a PreparedStatementSetter, and returning a Stream which reads the
+	 * rows lazily from the ResultSet. All other {@code queryForStream} methods
+	 * use this method.
+	 * <p>In contrast to {@link #execute(PreparedStatementCreator, PreparedStatementCallback)},
+	 * the JDBC resources are kept open after this method returns and only get
+	 * released when the returned Stream is closed.
+	 * @param psc Callback handler that can create a PreparedStatement given a
+	 * Connection
+	 * @param pss object that knows how to set values on the prepared statement.
+	 * If this is null, the SQL will be assumed to contain no bind parameters.
+	 * @param rowMapper object that will map one object per row
+	 * @param fetchSize the fetch size for the statement, or -1 for the
+	 * {@link #setFetchSize default fetch size}
+	 * @return the result Stream, containing mapped objects, needing to be
+	 * closed once fully processed (e.g. through a try-with-resources clause)
+	 * @throws DataAccessException if there is any problem
+	 * @since 5.1
+	 */
+	public <T> Stream<T> queryForStream(PreparedStatementCreator psc, @Nullable PreparedStatementSetter pss,
+			RowMapper<T> rowMapper, int fetchSize) throws DataAccessException {
+
+		Assert.notNull(psc, "PreparedStatementCreator must not be null");
+		Assert.notNull(rowMapper, "RowMapper must not be null");
+		String sql = getSql(psc);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Executing prepared SQL query for streaming" + (sql != null ? " [" + sql + "]" : ""));
+		}
+
+		Connection con = DataSourceUtils.getConnection(obtainDataSource());
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			ps = psc.createPreparedStatement(con);
+			applyStatementSettings(ps);
+			if (fetchSize != -1) {
+				ps.setFetchSize(fetchSize);
+			}
+			if (pss != null) {
+				pss.setValues(ps);
+			}
+			rs = ps.executeQuery();
+			handleWarnings(ps);
+		}
+		catch (SQLException ex) {
+			releaseStreamResources(psc, pss, rs, ps, con);
+			throw translateException("StreamingQuery", sql, ex);
+		}
+		catch (RuntimeException | Error ex) {
+			releaseStreamResources(psc, pss, rs, ps, con);
+			throw ex;
+		}
+
+		ResultSet rsToUse = rs;
+		PreparedStatement psToUse = ps;
+		return StreamSupport.stream(new ResultSetSpliterator<>(rsToUse, rowMapper, sql), false)
+				.onClose(() -> releaseStreamResources(psc, pss, rsToUse, psToUse, con));
+	}
+
+	private void releaseStreamResources(PreparedStatementCreator psc, @Nullable PreparedStatementSetter pss,
+			@Nullable ResultSet rs, @Nullable PreparedStatement ps, Connection con) {
+
+		JdbcUtils.closeResultSet(rs);
+		if (pss instanceof ParameterDisposer) {
+			((ParameterDisposer) pss).cleanupParameters();
+		}
+		if (psc instanceof ParameterDisposer) {
+			((ParameterDisposer) psc).cleanupParameters();
+		}
+		JdbcUtils.closeStatement(ps);
+		DataSourceUtils.releaseConnection(con, getDataSource());
+	}
+
+	@Override
+	public <T> Stream<T> queryForStream(PreparedStatementCreator psc, RowMapper<T> rowMapper) throws DataAccessException {
+		return queryForStream(psc, null, rowMapper, -1);
+	}
+
+	@Override
+	public <T> Stream<T> queryForStream(PreparedStatementCreator psc, RowMapper<T> rowMapper, int fetchSize)
+			throws DataAccessException {
+
+		return queryForStream(psc, null, rowMapper, fetchSize);
+	}
+
+	@Override
+	public <T> Stream<T> queryForStream(String sql, @Nullable PreparedStatementSetter pss, RowMapper<T> rowMapper)
+			throws DataAccessException {
+
+		return queryForStream(new SimplePreparedStatementCreator(sql), pss, rowMapper, -1);
+	}
+
+	@Override
+	public <T> Stream<T> queryForStream(String sql, RowMapper<T> rowMapper, @Nullable Object... args)
+			throws DataAccessException {
+
+		return queryForStream(new SimplePreparedStatementCreator(sql), newArgPreparedStatementSetter(args), rowMapper, -1);
+	}
+
+	@Override
+	public <T> Stream<T> queryForStream(String sql, int fetchSize, RowMapper<T> rowMapper, @Nullable Object... args)
+			throws DataAccessException {
+
+		return queryForStream(new SimplePreparedStatementCreator(sql), newArgPreparedStatementSetter(args),
+				rowMapper, fetchSize);
+	}
+
 	@Override
 	@Nullable
 	public <T> T queryForObject(String sql, Object[] args, int[] argTypes, RowMapper<T> rowMapper)
@@ -1556,6 +1669,44 @@ public class JdbcTemplate extends JdbcAccessor implements JdbcOperations {
 	}
 
 
+	/**
+	 * Spliterator for the rows of an open ResultSet, mapping each row via a RowMapper.
+	 * Translates SQLExceptions during iteration into DataAccessExceptions.
+	 */
+	private class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+		private final ResultSet rs;
+
+		private final RowMapper<T> rowMapper;
+
+		@Nullable
+		private final String sql;
+
+		private int rowNum = 0;
+
+		public ResultSetSpliterator(ResultSet rs, RowMapper<T> rowMapper, @Nullable String sql) {
+			super(Long.MAX_VALUE, Spliterator.ORDERED);
+			this.rs = rs;
+			this.rowMapper = rowMapper;
+			this.sql = sql;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			try {
+				if (this.rs.next()) {
+					action.accept(this.rowMapper.mapRow(this.rs, this.rowNum++));
+					return true;
+				}
+				return false;
+			}
+			catch (SQLException ex) {
+				throw translateException("StreamingQuery", this.sql, ex);
+			}
+		}
+	}
+
+
 	/**
 	 * Adapter to enable use of a RowCallbackHandler inside a ResultSetExtractor.
 	 * <p>Uses a regular ResultSet, so we have to be careful when using it:
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,6 +32,7 @@ import org.apache.commons.logging.LogFactory;
 import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
 
 /**
  * A generic implementation of the {@link TableMetaDataProvider} that should provide
@@ -49,6 +50,10 @@ public class GenericTableMetaDataProvider implements TableMetaDataProvider {
 	/** indicator whether column metadata should be used */
 	private boolean tableColumnMetaDataUsed = false;
 
+	/** the common name of the database product */
+	@Nullable
+	private String databaseProductName;
+
 	/** the version of the database */
 	@Nullable
 	private String databaseVersion;
@@ -143,6 +148,51 @@ public class GenericTableMetaDataProvider implements TableMetaDataProvider {
 	}
 
 
+	/**
+	 * This implementation uses a standard {@code VALUES} clause with one row
+	 * value constructor per row.
+	 */
+	@Override
+	public String getMultiRowInsertString(String tableName, List<String> columnNames, int rowCount) {
+		return "INSERT INTO " + tableName + " (" + StringUtils.collectionToDelimitedString(columnNames, ", ") +
+				") VALUES " + createValuesRows(columnNames.size(), rowCount);
+	}
+
+	/**
+	 * This implementation uses {@code MERGE INTO ... KEY} for H2 and
+	 * {@code INSERT ... ON DUPLICATE KEY UPDATE} for MySQL and MariaDB,
+	 * and a standard SQL {@code MERGE} statement with a {@code VALUES} source
+	 * (as supported by HSQL, DB2 and SQL Server) otherwise.
+	 */
+	@Override
+	public String getUpsertString(String tableName, List<String> columnNames, List<String> keyColumnNames,
+			int rowCount) {
+
+		String columns = StringUtils.collectionToDelimitedString(columnNames, ", ");
+		if ("H2".equals(this.databaseProductName)) {
+			return "MERGE INTO " + tableName + " (" + columns + ") KEY (" +
+					StringUtils.collectionToDelimitedString(keyColumnNames, ", ") + ") VALUES " +
+					createValuesRows(columnNames.size(), rowCount);
+		}
+		if ("MySQL".equals(this.databaseProductName) || "MariaDB".equals(this.databaseProductName)) {
+			StringBuilder sql = new StringBuilder(getMultiRowInsertString(tableName, columnNames, rowCount));
+			sql.append(" ON DUPLICATE KEY UPDATE ");
+			List<String> updateColumns = getNonKeyColumnNames(columnNames, keyColumnNames);
+			if (updateColumns.isEmpty()) {
+				updateColumns = keyColumnNames;
+			}
+			for (int i = 0; i < updateColumns.size(); i++) {
+				if (i > 0) {
+					sql.append(", ");
+				}
+				sql.append(updateColumns.get(i)).append(" = VALUES(").append(updateColumns.get(i)).append(")");
+			}
+			return sql.toString();
+		}
+		return createMergeString(tableName, columnNames, keyColumnNames,
+				"(VALUES " + createValuesRows(columnNames.size(), rowCount) + ") AS source (" + columns + ")");
+	}
+
 	@Override
 	public void initializeWithMetaData(DatabaseMetaData databaseMetaData) throws SQLException {
 		try {
@@ -162,6 +212,7 @@ public class GenericTableMetaDataProvider implements TableMetaDataProvider {
 		}
 		try {
 			String databaseProductName = databaseMetaData.getDatabaseProductName();
+			this.databaseProductName = JdbcUtils.commonDatabaseName(databaseProductName);
 			if (this.productsNotSupportingGeneratedKeysColumnNameArray.contains(databaseProductName)) {
 				if (logger.isDebugEnabled()) {
 					logger.debug("GeneratedKeysColumnNameArray is not supported for " + databaseProductName);
@@ -304,6 +355,109 @@ public class GenericTableMetaDataProvider implements TableMetaDataProvider {
 		return this.databaseVersion;
 	}
 
+	/**
+	 * Provide access to the common database product name for subclasses.
+	 * @since 5.1
+	 * @see JdbcUtils#commonDatabaseName
+	 */
+	@Nullable
+	protected String getDatabaseProductName() {
+		return this.databaseProductName;
+	}
+
+	/**
+	 * Create the row value constructors for the given number of rows,
+	 * e.g. {@code (?, ?), (?, ?)}.
+	 * @param columnCount the number of columns per row
+	 * @param rowCount the number of rows
+	 * @since 5.1
+	 */
+	protected static String createValuesRows(int columnCount, int rowCount) {
+		StringBuilder row = new StringBuilder("(");
+		for (int i = 0; i < columnCount; i++) {
+			if (i > 0) {
+				row.append(", ");
+			}
+			row.append("?");
+		}
+		row.append(")");
+		StringBuilder rows = new StringBuilder(row.length() * rowCount + 2 * rowCount);
+		for (int i = 0; i < rowCount; i++) {
+			if (i > 0) {
+				rows.append(", ");
+			}
+			rows.append(row);
+		}
+		return rows.toString();
+	}
+
+	/**
+	 * Create a standard SQL {@code MERGE} statement for the given source,
+	 * which is expected to be aliased as {@code source} and to expose all
+	 * of the given columns.
+	 * @param tableName the (potentially schema-qualified) name of the table
+	 * @param columnNames the names of the columns to insert or update
+	 * @param keyColumnNames the names of the columns identifying an existing row
+	 * @param source the source clause, including the {@code source} alias
+	 * @since 5.1
+	 */
+	protected static String createMergeString(String tableName, List<String> columnNames,
+			List<String> keyColumnNames, String source) {
+
+		StringBuilder sql = new StringBuilder("MERGE INTO ");
+		sql.append(tableName).append(" target USING ").append(source).append(" ON (");
+		for (int i = 0; i < keyColumnNames.size(); i++) {
+			if (i > 0) {
+				sql.append(" AND ");
+			}
+			sql.append("target.").append(keyColumnNames.get(i)).append(" = source.").append(keyColumnNames.get(i));
+		}
+		sql.append(")");
+		List<String> updateColumns = getNonKeyColumnNames(columnNames, keyColumnNames);
+		if (!updateColumns.isEmpty()) {
+			sql.append(" WHEN MATCHED THEN UPDATE SET ");
+			for (int i = 0; i < updateColumns.size(); i++) {
+				if (i > 0) {
+					sql.append(", ");
+				}
+				sql.append("target.").append(updateColumns.get(i)).append(" = source.").append(updateColumns.get(i));
+			}
+		}
+		sql.append(" WHEN NOT MATCHED THEN INSERT (");
+		sql.append(StringUtils.collectionToDelimitedString(columnNames, ", "));
+		sql.append(") VALUES (");
+		for (int i = 0; i < columnNames.size(); i++) {
+			if (i > 0) {
+				sql.append(", ");
+			}
+			sql.append("source.").append(columnNames.get(i));
+		}
+		sql.append(")");
+		return sql.toString();
+	}
+
+	/**
+	 * Determine the columns to update for an existing row, i.e. all columns
+	 * except for the key columns (compared case-insensitively).
+	 * @since 5.1
+	 */
+	protected static List<String> getNonKeyColumnNames(List<String> columnNames, List<String> keyColumnNames) {
+		List<String> result = new ArrayList<>(columnNames.size());
+		for (String columnName : columnNames) {
+			boolean key = false;
+			for (String keyColumnName : keyColumnNames) {
+				if (keyColumnName.equalsIgnoreCase(columnName)) {
+					key = true;
+					break;
+				}
+			}
+			if (!key) {
+				result.add(columnName);
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Method supporting the metadata processing for a table.
 	 */
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,10 +22,12 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.List;
 
 import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.lang.Nullable;
 import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
 
 /**
  * Oracle-specific implementation of the {@link org.springframework.jdbc.core.metadata.TableMetaDataProvider}.
@@ -103,6 +105,48 @@ public class OracleTableMetaDataProvider extends GenericTableMetaDataProvider {
 		return super.getDefaultSchema();
 	}
 
+	/**
+	 * This implementation uses an {@code INSERT ... SELECT} statement with
+	 * one {@code SELECT ... FROM dual} per row, since Oracle does not support
+	 * multiple row value constructors in a {@code VALUES} clause.
+	 */
+	@Override
+	public String getMultiRowInsertString(String tableName, List<String> columnNames, int rowCount) {
+		return "INSERT INTO " + tableName + " (" + StringUtils.collectionToDelimitedString(columnNames, ", ") +
+				") " + createSelectFromDualRows(columnNames, rowCount);
+	}
+
+	/**
+	 * This implementation uses a {@code MERGE} statement with a
+	 * {@code SELECT ... FROM dual} source per row.
+	 */
+	@Override
+	public String getUpsertString(String tableName, List<String> columnNames, List<String> keyColumnNames,
+			int rowCount) {
+
+		return createMergeString(tableName, columnNames, keyColumnNames,
+				"(" + createSelectFromDualRows(columnNames, rowCount) + ") source");
+	}
+
+	private String createSelectFromDualRows(List<String> columnNames, int rowCount) {
+		StringBuilder row = new StringBuilder("SELECT ");
+		for (int i = 0; i < columnNames.size(); i++) {
+			if (i > 0) {
+				row.append(", ");
+			}
+			row.append("? ").append(columnNames.get(i));
+		}
+		row.append(" FROM dual");
+		StringBuilder rows = new StringBuilder();
+		for (int i = 0; i < rowCount; i++) {
+			if (i > 0) {
+				rows.append(" UNION ALL ");
+			}
+			rows.append(row);
+		}
+		return rows.toString();
+	}
+
 
 	@Override
 	public void initializeWithTableColumnMetaData(DatabaseMetaData databaseMetaData,
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,11 +18,15 @@ package org.springframework.jdbc.core.metadata;
 
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
+import java.util.List;
+
+import org.springframework.util.StringUtils;
 
 /**
  * The PostgreSQL specific implementation of {@link TableMetaDataProvider}.
  * Supports a feature for retrieving generated keys without the JDBC 3.0
- * {@code getGeneratedKeys} support.
+ * {@code getGeneratedKeys} support, as well as upserts via
+ * {@code INSERT ... ON CONFLICT DO UPDATE}.
  *
  * @author Thomas Risberg
  * @since 2.5
@@ -53,4 +57,30 @@ public class PostgresTableMetaDataProvider extends GenericTableMetaDataProvider
 		return "RETURNING " + keyColumnName;
 	}
 
+	/**
+	 * This implementation uses {@code INSERT ... ON CONFLICT DO UPDATE},
+	 * as supported on PostgreSQL 9.5 and higher.
+	 */
+	@Override
+	public String getUpsertString(String tableName, List<String> columnNames, List<String> keyColumnNames,
+			int rowCount) {
+
+		StringBuilder sql = new StringBuilder(getMultiRowInsertString(tableName, columnNames, rowCount));
+		sql.append(" ON CONFLICT (").append(StringUtils.collectionToDelimitedString(keyColumnNames, ", ")).append(")");
+		List<String> updateColumns = getNonKeyColumnNames(columnNames, keyColumnNames);
+		if (updateColumns.isEmpty()) {
+			sql.append(" DO NOTHING");
+		}
+		else {
+			sql.append(" DO UPDATE SET ");
+			for (int i = 0; i < updateColumns.size(); i++) {
+				if (i > 0) {
+					sql.append(", ");
+				}
+				sql.append(updateColumns.get(i)).append(" = EXCLUDED.").append(updateColumns.get(i));
+			}
+		}
+		return sql.toString();
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -305,6 +305,61 @@ public class TableMetaDataContext {
 		return insertStatement.toString();
 	}
 
+	/**
+	 * Build the insert string for inserting the given number of rows with a single
+	 * statement, based on configuration and metadata information.
+	 * @param rowCount the number of rows to insert
+	 * @param generatedKeyNames the names of generated key columns, not to be inserted
+	 * @return the insert string to be used
+	 * @since 5.1
+	 * @see TableMetaDataProvider#getMultiRowInsertString
+	 */
+	public String createMultiRowInsertString(int rowCount, String... generatedKeyNames) {
+		Assert.isTrue(rowCount > 0, "Row count must be greater than 0");
+		return obtainMetaDataProvider().getMultiRowInsertString(
+				getQualifiedTableName(), getInsertColumnNames(generatedKeyNames), rowCount);
+	}
+
+	/**
+	 * Build the statement for inserting the given number of rows or updating the
+	 * existing rows with the same key column values ("upsert"), based on configuration
+	 * and metadata information.
+	 * @param rowCount the number of rows to insert or update
+	 * @param keyColumnNames the names of the columns identifying an existing row
+	 * @param generatedKeyNames the names of generated key columns, not to be inserted
+	 * @return the upsert string to be used
+	 * @since 5.1
+	 * @see TableMetaDataProvider#getUpsertString
+	 */
+	public String createUpsertString(int rowCount, List<String> keyColumnNames, String... generatedKeyNames) {
+		Assert.isTrue(rowCount > 0, "Row count must be greater than 0");
+		Assert.notEmpty(keyColumnNames, "At least one key column is required for an upsert");
+		return obtainMetaDataProvider().getUpsertString(
+				getQualifiedTableName(), getInsertColumnNames(generatedKeyNames), keyColumnNames, rowCount);
+	}
+
+	private String getQualifiedTableName() {
+		return (getSchemaName() != null ? getSchemaName() + "." + getTableName() : getTableName());
+	}
+
+	private List<String> getInsertColumnNames(String... generatedKeyNames) {
+		Set<String> keys = new LinkedHashSet<>(generatedKeyNames.length);
+		for (String key : generatedKeyNames) {
+			keys.add(key.toUpperCase());
+		}
+		List<String> columnNames = new ArrayList<>(getTableColumns().size());
+		for (String columnName : getTableColumns()) {
+			if (!keys.contains(columnName.toUpperCase())) {
+				columnNames.add(columnName);
+			}
+		}
+		if (columnNames.isEmpty()) {
+			throw new InvalidDataAccessApiUsageException("Unable to locate non-key columns for table '" +
+					getTableName() + "' so a multi-row statement can't be generated");
+		}
+		return columnNames;
+	}
+
 	/**
 	 * Build the array of {@link java.sql.Types} based on configuration and metadata information
 	 * @return the array of types to be used
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -114,6 +114,28 @@ public interface TableMetaDataProvider {
 	 */
  	boolean isGeneratedKeysColumnNameArraySupported();
 
+	/**
+	 * Get the insert string for inserting the given number of rows with a single
+	 * statement, with one group of placeholders per row.
+	 * @param tableName the (potentially schema-qualified) name of the table
+	 * @param columnNames the names of the columns to insert
+	 * @param rowCount the number of rows to insert
+	 * @since 5.1
+	 */
+	String getMultiRowInsertString(String tableName, List<String> columnNames, int rowCount);
+
+	/**
+	 * Get the statement for inserting the given number of rows or updating the
+	 * existing rows with the same key column values, in the database-specific
+	 * syntax ("upsert"), with one group of placeholders per row.
+	 * @param tableName the (potentially schema-qualified) name of the table
+	 * @param columnNames the names of the columns to insert or update
+	 * @param keyColumnNames the names of the columns identifying an existing row
+	 * @param rowCount the number of rows to insert or update
+	 * @since 5.1
+	 */
+	String getUpsertString(String tableName, List<String> columnNames, List<String> keyColumnNames, int rowCount);
+
 	/**
 	 * Get the table parameter metadata that is currently used.
 	 * @return List of {@link TableParameterMetaData}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,10 +18,16 @@ package org.springframework.jdbc.core.namedparam;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.BatchUpdateUtils;
 import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.SqlParameter;
 
 /**
  * Generic utility methods for working with JDBC batch statements using named parameters.
@@ -56,4 +62,131 @@ public class NamedParameterBatchUpdateUtils extends BatchUpdateUtils {
 				});
 	}
 
+	/**
+	 * Execute a batch insert with multi-row statements, repeating the single
+	 * row value constructor in the {@code VALUES} clause of the given statement
+	 * for up to the given number of rows per statement, e.g. rewriting
+	 * {@code INSERT INTO t (a, b) VALUES (:a, :b)} into
+	 * {@code INSERT INTO t (a, b) VALUES (?, ?), (?, ?), (?, ?)}.
+	 * <p>Any clause following the {@code VALUES} clause (such as an
+	 * {@code ON CONFLICT} clause for an upsert) is retained but must not
+	 * contain named parameters.
+	 * @param parsedSql the parsed representation of the INSERT statement
+	 * @param batchArgs the array of {@link SqlParameterSource} containing the rows to insert
+	 * @param rowsPerStatement the maximum number of rows per statement
+	 * @param jdbcOperations the JdbcOperations to execute the statements with
+	 * @return an array containing the numbers of rows affected by each executed statement
+	 * @throws InvalidDataAccessApiUsageException if the statement does not contain a
+	 * {@code VALUES} clause with a single row value constructor holding all named parameters
+	 * @since 5.1
+	 */
+	public static int[] executeMultiRowUpdateWithNamedParameters(ParsedSql parsedSql,
+			SqlParameterSource[] batchArgs, int rowsPerStatement, JdbcOperations jdbcOperations) {
+
+		if (batchArgs.length <= 0) {
+			return new int[] {0};
+		}
+
+		String sql = parsedSql.getOriginalSql();
+		int[] rowIndexes = findValuesRow(parsedSql);
+		String sqlPrefix = sql.substring(0, rowIndexes[0]);
+		String sqlSuffix = sql.substring(rowIndexes[1]);
+		ParsedSql parsedRow = NamedParameterUtils.parseSqlStatement(sql.substring(rowIndexes[0], rowIndexes[1]));
+
+		int[] rowCounts = new int[(batchArgs.length + rowsPerStatement - 1) / rowsPerStatement];
+		for (int i = 0; i < rowCounts.length; i++) {
+			int fromIndex = i * rowsPerStatement;
+			int toIndex = Math.min(fromIndex + rowsPerStatement, batchArgs.length);
+			StringBuilder sqlToUse = new StringBuilder(sqlPrefix);
+			List<Object> params = new ArrayList<>();
+			List<SqlParameter> declaredParameters = new ArrayList<>();
+			for (int j = fromIndex; j < toIndex; j++) {
+				if (j > fromIndex) {
+					sqlToUse.append(", ");
+				}
+				sqlToUse.append(NamedParameterUtils.substituteNamedParameters(parsedRow, batchArgs[j]));
+				Collections.addAll(params, NamedParameterUtils.buildValueArray(parsedRow, batchArgs[j], null));
+				declaredParameters.addAll(NamedParameterUtils.buildSqlParameterList(parsedRow, batchArgs[j]));
+			}
+			sqlToUse.append(sqlSuffix);
+			PreparedStatementCreatorFactory pscf =
+					new PreparedStatementCreatorFactory(sqlToUse.toString(), declaredParameters);
+			rowCounts[i] = jdbcOperations.update(pscf.newPreparedStatementCreator(params));
+		}
+		return rowCounts;
+	}
+
+	/**
+	 * Determine the start and end index of the row value constructor
+	 * (the parenthesized list of values) in the {@code VALUES} clause
+	 * of the given statement, which needs to hold all named parameters.
+	 */
+	private static int[] findValuesRow(ParsedSql parsedSql) {
+		String sql = parsedSql.getOriginalSql();
+		List<String> parameterNames = parsedSql.getParameterNames();
+		if (!parameterNames.isEmpty()) {
+			int firstParameterIndex = parsedSql.getParameterIndexes(0)[0];
+			int lastParameterIndex = parsedSql.getParameterIndexes(parameterNames.size() - 1)[1];
+			// Skip any function call or expression the first parameter is nested in
+			int startIndex = findEnclosingParenthesis(sql, firstParameterIndex);
+			while (startIndex > 0 && !sql.substring(0, startIndex).trim().toUpperCase().endsWith("VALUES")) {
+				startIndex = findEnclosingParenthesis(sql, startIndex);
+			}
+			if (startIndex > 0) {
+				int endIndex = findClosingParenthesis(sql, startIndex);
+				if (endIndex >= lastParameterIndex) {
+					return new int[] {startIndex, endIndex + 1};
+				}
+			}
+		}
+		throw new InvalidDataAccessApiUsageException("Multi-row batch update requires an INSERT statement " +
+				"with a single VALUES row holding all named parameters: " + sql);
+	}
+
+	private static int findEnclosingParenthesis(String sql, int index) {
+		int depth = 0;
+		boolean inLiteral = false;
+		for (int i = index - 1; i >= 0; i--) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				inLiteral = !inLiteral;
+			}
+			else if (!inLiteral) {
+				if (c == ')') {
+					depth++;
+				}
+				else if (c == '(') {
+					if (depth == 0) {
+						return i;
+					}
+					depth--;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private static int findClosingParenthesis(String sql, int index) {
+		int depth = 0;
+		boolean inLiteral = false;
+		for (int i = index + 1; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				inLiteral = !inLiteral;
+			}
+			else if (!inLiteral) {
+				if (c == '(') {
+					depth++;
+				}
+				else if (c == ')') {
+					if (depth == 0) {
+						return i;
+					}
+					depth--;
+				}
+			}
+		}
+		return -1;
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.springframework.jdbc.core.namedparam;
 
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcOperations;
@@ -213,6 +214,64 @@ public interface NamedParameterJdbcOperations {
 	<T> List<T> query(String sql, Map<String, ?> paramMap, RowMapper<T> rowMapper)
 			throws DataAccessException;
 
+	/**
+	 * Query given SQL to create a prepared statement from SQL and a list of
+	 * arguments to bind to the query, mapping each row to a Java object via a
+	 * RowMapper, and returning a lazily populated Stream of results.
+	 * <p>The underlying JDBC resources stay open until the Stream is closed:
+	 * It needs to be closed once fully processed (e.g. through a
+	 * try-with-resources clause), releasing the connection unless it is bound
+	 * to a surrounding transaction.
+	 * @param sql SQL query to execute
+	 * @param paramSource container of arguments to bind to the query
+	 * @param rowMapper object that will map one object per row
+	 * @return the result Stream, containing mapped objects
+	 * @throws org.springframework.dao.DataAccessException if the query fails
+	 * @since 5.1
+	 * @see JdbcOperations#queryForStream(org.springframework.jdbc.core.PreparedStatementCreator, RowMapper)
+	 */
+	<T> Stream<T> queryForStream(String sql, SqlParameterSource paramSource, RowMapper<T> rowMapper)
+			throws DataAccessException;
+
+	/**
+	 * Query given SQL to create a prepared statement from SQL and a list of
+	 * arguments to bind to the query, mapping each row to a Java object via a
+	 * RowMapper, and returning a lazily populated Stream of results, read from
+	 * the database in chunks of the given fetch size.
+	 * <p>The underlying JDBC resources stay open until the Stream is closed:
+	 * It needs to be closed once fully processed (e.g. through a
+	 * try-with-resources clause).
+	 * @param sql SQL query to execute
+	 * @param paramSource container of arguments to bind to the query
+	 * @param rowMapper object that will map one object per row
+	 * @param fetchSize the number of rows to fetch per database roundtrip
+	 * (a hint for the JDBC driver)
+	 * @return the result Stream, containing mapped objects
+	 * @throws org.springframework.dao.DataAccessException if the query fails
+	 * @since 5.1
+	 * @see java.sql.Statement#setFetchSize
+	 */
+	<T> Stream<T> queryForStream(String sql, SqlParameterSource paramSource, RowMapper<T> rowMapper, int fetchSize)
+			throws DataAccessException;
+
+	/**
+	 * Query given SQL to create a prepared statement from SQL and a list of
+	 * arguments to bind to the query, mapping each row to a Java object via a
+	 * RowMapper, and returning a lazily populated Stream of results.
+	 * <p>The underlying JDBC resources stay open until the Stream is closed:
+	 * It needs to be closed once fully processed (e.g. through a
+	 * try-with-resources clause).
+	 * @param sql SQL query to execute
+	 * @param paramMap map of parameters to bind to the query
+	 * (leaving it to the PreparedStatement to guess the corresponding SQL type)
+	 * @param rowMapper object that will map one object per row
+	 * @return the result Stream, containing mapped objects
+	 * @throws org.springframework.dao.DataAccessException if the query fails
+	 * @since 5.1
+	 */
+	<T> Stream<T> queryForStream(String sql, Map<String, ?> paramMap, RowMapper<T> rowMapper)
+			throws DataAccessException;
+
 	/**
 	 * Query given SQL to create a prepared statement from SQL,
 	 * mapping each row to a Java object via a RowMapper.
@@ -509,4 +568,22 @@ public interface NamedParameterJdbcOperations {
 	 */
 	int[] batchUpdate(String sql, SqlParameterSource[] batchArgs);
 
+	/**
+	 * Execute a batch insert using the supplied INSERT statement with a single
+	 * {@code VALUES} row, combining up to the given number of rows into a single
+	 * multi-row statement (e.g. {@code INSERT ... VALUES (...), (...)}) in order
+	 * to reduce the number of database roundtrips.
+	 * <p>Any clause following the {@code VALUES} clause, such as a database-specific
+	 * {@code ON CONFLICT} clause for an upsert, is retained for every statement;
+	 * it must not contain named parameters though.
+	 * @param sql the INSERT statement to execute, with named parameters in its
+	 * {@code VALUES} row only
+	 * @param batchArgs the array of {@link SqlParameterSource} containing the rows to insert
+	 * @param rowsPerStatement the maximum number of rows per statement (1 for a
+	 * regular JDBC batch as executed by {@link #batchUpdate(String, SqlParameterSource[])})
+	 * @return an array containing the numbers of rows affected by each executed statement
+	 * @since 5.1
+	 */
+	int[] batchUpdate(String sql, SqlParameterSource[] batchArgs, int rowsPerStatement);
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,9 +16,15 @@
 
 package org.springframework.jdbc.core.namedparam;
 
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 import javax.sql.DataSource;
 
 import org.springframework.dao.DataAccessException;
@@ -34,11 +40,13 @@ import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.SqlParameterValue;
 import org.springframework.jdbc.core.SqlRowSetResultSetExtractor;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
 
 /**
  * Template class with a basic set of JDBC operations, allowing the use
@@ -53,6 +61,13 @@ import org.springframework.util.Assert;
  * exposed to allow for convenient access to the traditional
  * {@link org.springframework.jdbc.core.JdbcTemplate} methods.
  *
+ * <p>Parsed SQL statements are cached, as well as the final JDBC statement and
+ * {@link PreparedStatementCreatorFactory} per shape of the given parameters,
+ * i.e. per size of any expanded {@code IN} list and per declared SQL type.
+ * For queries with {@code IN} lists of varying size, consider activating
+ * {@link #setInListPadding "inListPadding"} for a higher hit rate in this cache
+ * as well as in the JDBC driver's statement cache.
+ *
  * <p><b>NOTE: An instance of this class is thread-safe once configured.</b>
  *
  * @author Thomas Risberg
@@ -66,19 +81,49 @@ public class NamedParameterJdbcTemplate implements NamedParameterJdbcOperations
 	/** Default maximum number of entries for this template's SQL cache: 256 */
 	public static final int DEFAULT_CACHE_LIMIT = 256;
 
+	/** Maximum number of elements for which an IN list gets padded: 512 */
+	private static final int IN_LIST_PADDING_LIMIT = 512;
+
 
 	/** The JdbcTemplate we are wrapping */
 	private final JdbcOperations classicJdbcTemplate;
 
 	private volatile int cacheLimit = DEFAULT_CACHE_LIMIT;
 
-	/** Cache of original SQL String to ParsedSql representation */
+	private boolean inListPadding = false;
+
+	/** Fast access cache of original SQL String to ParsedSql representation, without a global lock */
+	private final Map<String, ParsedSql> parsedSqlAccessCache = new ConcurrentHashMap<>(DEFAULT_CACHE_LIMIT);
+
+	/** Cache of original SQL String to ParsedSql representation, synchronized for FIFO eviction */
 	@SuppressWarnings("serial")
 	private final Map<String, ParsedSql> parsedSqlCache =
-			new LinkedHashMap<String, ParsedSql>(DEFAULT_CACHE_LIMIT, 0.75f, true) {
+			new LinkedHashMap<String, ParsedSql>(DEFAULT_CACHE_LIMIT, 0.75f) {
 				@Override
 				protected boolean removeEldestEntry(Map.Entry<String, ParsedSql> eldest) {
-					return size() > getCacheLimit();
+					if (size() > getCacheLimit()) {
+						parsedSqlAccessCache.remove(eldest.getKey());
+						return true;
+					}
+					return false;
+				}
+			};
+
+	/** Fast access cache of statement shape to PreparedStatementCreatorFactory, without a global lock */
+	private final Map<StatementShape, PreparedStatementCreatorFactory> statementAccessCache =
+			new ConcurrentHashMap<>(DEFAULT_CACHE_LIMIT);
+
+	/** Cache of statement shape to PreparedStatementCreatorFactory, synchronized for FIFO eviction */
+	@SuppressWarnings("serial")
+	private final Map<StatementShape, PreparedStatementCreatorFactory> statementCache =
+			new LinkedHashMap<StatementShape, PreparedStatementCreatorFactory>(DEFAULT_CACHE_LIMIT, 0.75f) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<StatementShape, PreparedStatementCreatorFactory> eldest) {
+					if (size() > getCacheLimit()) {
+						statementAccessCache.remove(eldest.getKey());
+						return true;
+					}
+					return false;
 				}
 			};
 
@@ -128,6 +173,11 @@ public class NamedParameterJdbcTemplate implements NamedParameterJdbcOperations
 	/**
 	 * Specify the maximum number of entries for this template's SQL cache.
 	 * Default is 256.
+	 * <p>This applies to the cache of parsed SQL statements as well as to the
+	 * cache of final JDBC statements per parameter shape. Once the limit is
+	 * reached, the least recently added entry gets evicted: cache hits are
+	 * served without a global lock and therefore do not affect the eviction
+	 * order. A limit of 0 or less turns off caching.
 	 */
 	public void setCacheLimit(int cacheLimit) {
 		this.cacheLimit = cacheLimit;
@@ -140,6 +190,32 @@ public class NamedParameterJdbcTemplate implements NamedParameterJdbcOperations
 		return this.cacheLimit;
 	}
 
+	/**
+	 * Specify whether to pad collection values for expanded {@code IN} lists
+	 * to the next power of two in size, repeating the last element.
+	 * <p>Default is "false". Switch this to "true" for queries with {@code IN}
+	 * lists of widely varying size, limiting the number of distinct statements
+	 * for the JDBC driver's and the database's statement caches, as well as for
+	 * this template's own cache. Collections with more than 512 elements are not
+	 * padded, staying clear of common database limits for {@code IN} lists
+	 * (such as 1000 elements on Oracle).
+	 * <p>Note that padding repeats a value within the {@code IN} list, which is
+	 * harmless for {@code IN} conditions but not for other uses of a collection
+	 * parameter, e.g. in a {@code VALUES} clause.
+	 * @since 5.1
+	 */
+	public void setInListPadding(boolean inListPadding) {
+		this.inListPadding = inListPadding;
+	}
+
+	/**
+	 * Return whether collection values for expanded {@code IN} lists get padded.
+	 * @since 5.1
+	 */
+	public boolean isInListPadding() {
+		return this.inListPadding;
+	}
+
 
 	@Override
 	@Nullable
@@ -218,6 +294,27 @@ public class NamedParameterJdbcTemplate implements NamedParameterJdbcOperations
 		return query(sql, new MapSqlParameterSource(paramMap), rowMapper);
 	}
 
+	@Override
+	public <T> Stream<T> queryForStream(String sql, SqlParameterSource paramSource, RowMapper<T> rowMapper)
+			throws DataAccessException {
+
+		return getJdbcOperations().queryForStream(getPreparedStatementCreator(sql, paramSource), rowMapper);
+	}
+
+	@Override
+	public <T> Stream<T> queryForStream(String sql, SqlParameterSource paramSource, RowMapper<T> rowMapper,
+			int fetchSize) throws DataAccessException {
+
+		return getJdbcOperations().queryForStream(getPreparedStatementCreator(sql, paramSource), rowMapper, fetchSize);
+	}
+
+	@Override
+	public <T> Stream<T> queryForStream(String sql, Map<String, ?> paramMap, RowMapper<T> rowMapper)
+			throws DataAccessException {
+
+		return queryForStream(sql, new MapSqlParameterSource(paramMap), rowMapper);
+	}
+
 	@Override
 	public <T> List<T> query(String sql, RowMapper<T> rowMapper) throws DataAccessException {
 		return query(sql, EmptySqlParameterSource.INSTANCE, rowMapper);
@@ -358,6 +455,16 @@ public class NamedParameterJdbcTemplate implements NamedParameterJdbcOperations
 				getParsedSql(sql), batchArgs, getJdbcOperations());
 	}
 
+	@Override
+	public int[] batchUpdate(String sql, SqlParameterSource[] batchArgs, int rowsPerStatement) {
+		Assert.isTrue(rowsPerStatement > 0, "Rows per statement must be greater than 0");
+		if (rowsPerStatement == 1) {
+			return batchUpdate(sql, batchArgs);
+		}
+		return NamedParameterBatchUpdateUtils.executeMultiRowUpdateWithNamedParameters(
+				getParsedSql(sql), batchArgs, rowsPerStatement, getJdbcOperations());
+	}
+
 	/**
 	 * Build a PreparedStatementCreator based on the given SQL and named parameters.
 	 * <p>Note: Not used for the {@code update} variant with generated key handling.
@@ -367,17 +474,83 @@ public class NamedParameterJdbcTemplate implements NamedParameterJdbcOperations
 	 */
 	protected PreparedStatementCreator getPreparedStatementCreator(String sql, SqlParameterSource paramSource) {
 		ParsedSql parsedSql = getParsedSql(sql);
-		String sqlToUse = NamedParameterUtils.substituteNamedParameters(parsedSql, paramSource);
 		Object[] params = NamedParameterUtils.buildValueArray(parsedSql, paramSource, null);
+		int[] sqlTypes = NamedParameterUtils.buildSqlTypeArray(parsedSql, paramSource);
+		if (isInListPadding()) {
+			for (int i = 0; i < params.length; i++) {
+				if (sqlTypes[i] != Types.ARRAY) {
+					params[i] = padInList(params[i]);
+				}
+			}
+		}
+		return getPreparedStatementCreatorFactory(parsedSql, paramSource, params, sqlTypes)
+				.newPreparedStatementCreator(params);
+	}
+
+	/**
+	 * Obtain a PreparedStatementCreatorFactory for the final JDBC statement with
+	 * the given parameter values, reusing a cached instance for the same shape.
+	 */
+	private PreparedStatementCreatorFactory getPreparedStatementCreatorFactory(
+			ParsedSql parsedSql, SqlParameterSource paramSource, Object[] params, int[] sqlTypes) {
+
+		if (getCacheLimit() <= 0) {
+			return createPreparedStatementCreatorFactory(parsedSql, paramSource, params);
+		}
+		List<String> paramNames = parsedSql.getParameterNames();
+		String[] typeNames = new String[paramNames.size()];
+		for (int i = 0; i < typeNames.length; i++) {
+			typeNames[i] = paramSource.getTypeName(paramNames.get(i));
+		}
+		StatementShape shape = new StatementShape(parsedSql.getOriginalSql(), params, sqlTypes, typeNames);
+		PreparedStatementCreatorFactory pscf = this.statementAccessCache.get(shape);
+		if (pscf == null) {
+			pscf = createPreparedStatementCreatorFactory(parsedSql, paramSource, params);
+			synchronized (this.statementCache) {
+				this.statementAccessCache.put(shape, pscf);
+				this.statementCache.put(shape, pscf);
+			}
+		}
+		return pscf;
+	}
+
+	private PreparedStatementCreatorFactory createPreparedStatementCreatorFactory(
+			ParsedSql parsedSql, SqlParameterSource paramSource, Object[] params) {
+
+		String sqlToUse = NamedParameterUtils.substitutePlaceholders(parsedSql, params);
 		List<SqlParameter> declaredParameters = NamedParameterUtils.buildSqlParameterList(parsedSql, paramSource);
-		PreparedStatementCreatorFactory pscf = new PreparedStatementCreatorFactory(sqlToUse, declaredParameters);
-		return pscf.newPreparedStatementCreator(params);
+		return new PreparedStatementCreatorFactory(sqlToUse, declaredParameters);
+	}
+
+	/**
+	 * Pad the given collection value for an IN list to the next power of two
+	 * in size, repeating its last element.
+	 */
+	@Nullable
+	private static Object padInList(@Nullable Object value) {
+		Object valueToCheck = (value instanceof SqlParameterValue ? ((SqlParameterValue) value).getValue() : value);
+		if (!(valueToCheck instanceof Collection)) {
+			return value;
+		}
+		Collection<?> collection = (Collection<?>) valueToCheck;
+		int size = collection.size();
+		int paddedSize = (size <= 1 ? size : Integer.highestOneBit(size - 1) << 1);
+		if (paddedSize == size || size > IN_LIST_PADDING_LIMIT) {
+			return value;
+		}
+		List<Object> padded = new ArrayList<>(paddedSize);
+		padded.addAll(collection);
+		Object last = padded.get(size - 1);
+		while (padded.size() < paddedSize) {
+			padded.add(last);
+		}
+		return (value instanceof SqlParameterValue ? new SqlParameterValue((SqlParameterValue) value, padded) : padded);
 	}
 
 	/**
 	 * Obtain a parsed representation of the given SQL statement.
-	 * <p>The default implementation uses an LRU cache with an upper limit
-	 * of 256 entries.
+	 * <p>The default implementation uses a cache with an upper limit
+	 * of 256 entries, evicting the least recently added entry first.
 	 * @param sql the original SQL
 	 * @return a representation of the parsed SQL statement
 	 */
@@ -385,13 +558,109 @@ public class NamedParameterJdbcTemplate implements NamedParameterJdbcOperations
 		if (getCacheLimit() <= 0) {
 			return NamedParameterUtils.parseSqlStatement(sql);
 		}
-		synchronized (this.parsedSqlCache) {
-			ParsedSql parsedSql = this.parsedSqlCache.get(sql);
-			if (parsedSql == null) {
-				parsedSql = NamedParameterUtils.parseSqlStatement(sql);
-				this.parsedSqlCache.put(sql, parsedSql);
+		ParsedSql parsedSql = this.parsedSqlAccessCache.get(sql);
+		if (parsedSql == null) {
+			synchronized (this.parsedSqlCache) {
+				parsedSql = this.parsedSqlCache.get(sql);
+				if (parsedSql == null) {
+					parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+					this.parsedSqlAccessCache.put(sql, parsedSql);
+					this.parsedSqlCache.put(sql, parsedSql);
+				}
 			}
-			return parsedSql;
+		}
+		return parsedSql;
+	}
+
+
+	/**
+	 * Cache key for a final JDBC statement: the original SQL String along with
+	 * the number of placeholders per parameter and the declared SQL types.
+	 */
+	private static final class StatementShape {
+
+		private static final int SINGLE_VALUE = -1;
+
+		private static final int EXPRESSION_LISTS = -2;
+
+		private final String sql;
+
+		private final int[] placeholders;
+
+		private final int[] sqlTypes;
+
+		private final String[] typeNames;
+
+		private final int hashCode;
+
+		public StatementShape(String sql, Object[] params, int[] sqlTypes, String[] typeNames) {
+			this.sql = sql;
+			this.placeholders = determinePlaceholders(params);
+			this.sqlTypes = sqlTypes;
+			this.typeNames = typeNames;
+			this.hashCode = sql.hashCode() * 29 + Arrays.hashCode(this.placeholders) * 31 +
+					Arrays.hashCode(sqlTypes) * 37 + ObjectUtils.nullSafeHashCode(typeNames);
+		}
+
+		private static int[] determinePlaceholders(Object[] params) {
+			int[] placeholders = new int[params.length];
+			List<Integer> expressionLists = null;
+			for (int i = 0; i < params.length; i++) {
+				Object value = params[i];
+				if (value instanceof SqlParameterValue) {
+					value = ((SqlParameterValue) value).getValue();
+				}
+				if (value instanceof Collection) {
+					Collection<?> collection = (Collection<?>) value;
+					placeholders[i] = collection.size();
+					for (Object entry : collection) {
+						if (entry instanceof Object[]) {
+							// Expression lists like ((?, ?), (?, ?)): record each list length
+							if (expressionLists == null) {
+								expressionLists = new ArrayList<>();
+							}
+							expressionLists.add(i);
+							expressionLists.add(collection.size());
+							for (Object entryToCheck : collection) {
+								expressionLists.add(entryToCheck instanceof Object[] ?
+										((Object[]) entryToCheck).length : SINGLE_VALUE);
+							}
+							placeholders[i] = EXPRESSION_LISTS;
+							break;
+						}
+					}
+				}
+				else {
+					placeholders[i] = SINGLE_VALUE;
+				}
+			}
+			if (expressionLists != null) {
+				int[] result = Arrays.copyOf(placeholders, placeholders.length + expressionLists.size());
+				for (int i = 0; i < expressionLists.size(); i++) {
+					result[placeholders.length + i] = expressionLists.get(i);
+				}
+				return result;
+			}
+			return placeholders;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof StatementShape)) {
+				return false;
+			}
+			StatementShape otherShape = (StatementShape) other;
+			return (this.sql.equals(otherShape.sql) && Arrays.equals(this.placeholders, otherShape.placeholders) &&
+					Arrays.equals(this.sqlTypes, otherShape.sqlTypes) &&
+					Arrays.equals(this.typeNames, otherShape.typeNames));
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
 		}
 	}
 
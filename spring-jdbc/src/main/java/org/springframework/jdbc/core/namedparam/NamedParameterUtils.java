@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -267,50 +267,78 @@ public abstract class NamedParameterUtils {
 		for (int i = 0; i < paramNames.size(); i++) {
 			String paramName = paramNames.get(i);
 			int[] indexes = parsedSql.getParameterIndexes(i);
-			int startIndex = indexes[0];
-			int endIndex = indexes[1];
-			actualSql.append(originalSql, lastIndex, startIndex);
+			actualSql.append(originalSql, lastIndex, indexes[0]);
 			if (paramSource != null && paramSource.hasValue(paramName)) {
-				Object value = paramSource.getValue(paramName);
-				if (value instanceof SqlParameterValue) {
-					value = ((SqlParameterValue) value).getValue();
+				appendPlaceholders(actualSql, paramSource.getValue(paramName));
+			}
+			else {
+				actualSql.append('?');
+			}
+			lastIndex = indexes[1];
+		}
+		actualSql.append(originalSql, lastIndex, originalSql.length());
+		return actualSql.toString();
+	}
+
+	/**
+	 * Substitute the named parameters in the given parsed SQL statement with JDBC
+	 * style placeholders, expanding collections among the given parameter values
+	 * (as built by {@link #buildValueArray}) to the required number of placeholders.
+	 * @param parsedSql the parsed representation of the SQL statement
+	 * @param paramValues the parameter values, one per parameter occurrence
+	 * @return the SQL statement with substituted parameters
+	 * @since 5.1
+	 */
+	static String substitutePlaceholders(ParsedSql parsedSql, Object[] paramValues) {
+		String originalSql = parsedSql.getOriginalSql();
+		List<String> paramNames = parsedSql.getParameterNames();
+		if (paramNames.isEmpty()) {
+			return originalSql;
+		}
+		StringBuilder actualSql = new StringBuilder(originalSql.length());
+		int lastIndex = 0;
+		for (int i = 0; i < paramNames.size(); i++) {
+			int[] indexes = parsedSql.getParameterIndexes(i);
+			actualSql.append(originalSql, lastIndex, indexes[0]);
+			appendPlaceholders(actualSql, paramValues[i]);
+			lastIndex = indexes[1];
+		}
+		actualSql.append(originalSql, lastIndex, originalSql.length());
+		return actualSql.toString();
+	}
+
+	private static void appendPlaceholders(StringBuilder actualSql, @Nullable Object value) {
+		if (value instanceof SqlParameterValue) {
+			value = ((SqlParameterValue) value).getValue();
+		}
+		if (value instanceof Collection) {
+			Iterator<?> entryIter = ((Collection<?>) value).iterator();
+			int k = 0;
+			while (entryIter.hasNext()) {
+				if (k > 0) {
+					actualSql.append(", ");
 				}
-				if (value instanceof Collection) {
-					Iterator<?> entryIter = ((Collection<?>) value).iterator();
-					int k = 0;
-					while (entryIter.hasNext()) {
-						if (k > 0) {
+				k++;
+				Object entryItem = entryIter.next();
+				if (entryItem instanceof Object[]) {
+					Object[] expressionList = (Object[]) entryItem;
+					actualSql.append('(');
+					for (int m = 0; m < expressionList.length; m++) {
+						if (m > 0) {
 							actualSql.append(", ");
 						}
-						k++;
-						Object entryItem = entryIter.next();
-						if (entryItem instanceof Object[]) {
-							Object[] expressionList = (Object[]) entryItem;
-							actualSql.append('(');
-							for (int m = 0; m < expressionList.length; m++) {
-								if (m > 0) {
-									actualSql.append(", ");
-								}
-								actualSql.append('?');
-							}
-							actualSql.append(')');
-						}
-						else {
-							actualSql.append('?');
-						}
+						actualSql.append('?');
 					}
+					actualSql.append(')');
 				}
 				else {
 					actualSql.append('?');
 				}
 			}
-			else {
-				actualSql.append('?');
-			}
-			lastIndex = endIndex;
 		}
-		actualSql.append(originalSql, lastIndex, originalSql.length());
-		return actualSql.toString();
+		else {
+			actualSql.append('?');
+		}
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -23,6 +23,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -74,6 +75,12 @@ public abstract class AbstractJdbcInsert {
 	/** The names of the columns holding the generated key */
 	private String[] generatedKeyNames = new String[0];
 
+	/** The names of the key columns identifying an existing row for an upsert */
+	private String[] upsertKeyNames = new String[0];
+
+	/** The number of rows to combine into a single statement for batch inserts */
+	private int multiRowBatchSize = 1;
+
 	/**
 	 * Has this operation been compiled? Compilation means at least checking
 	 * that a DataSource or JdbcTemplate has been provided.
@@ -86,6 +93,9 @@ public abstract class AbstractJdbcInsert {
 	/** The SQL type information for the insert columns */
 	private int[] insertTypes = new int[0];
 
+	/** The generated string used for batch insert statements with a full number of rows */
+	private String multiRowInsertString = "";
+
 
 	/**
 	 * Constructor to be used when initializing using a {@link DataSource}.
@@ -203,6 +213,52 @@ public abstract class AbstractJdbcInsert {
 		return this.generatedKeyNames;
 	}
 
+	/**
+	 * Set the names of the key columns identifying an existing row, turning the
+	 * insert into an insert-or-update ("upsert") statement in the syntax of the
+	 * target database: Existing rows with the same key column values get updated
+	 * instead of causing a duplicate key violation.
+	 * @since 5.1
+	 * @see org.springframework.jdbc.core.metadata.TableMetaDataProvider#getUpsertString
+	 */
+	public void setUpsertKeyNames(String... upsertKeyNames) {
+		checkIfConfigurationModificationIsAllowed();
+		this.upsertKeyNames = upsertKeyNames;
+	}
+
+	/**
+	 * Get the names of the key columns identifying an existing row for an upsert.
+	 * @since 5.1
+	 */
+	public String[] getUpsertKeyNames() {
+		return this.upsertKeyNames;
+	}
+
+	/**
+	 * Set the number of rows to combine into a single multi-row statement
+	 * (e.g. {@code INSERT ... VALUES (...), (...)}) for batch inserts.
+	 * <p>The default is 1, executing a JDBC batch with one statement per row.
+	 * A larger value reduces the number of database roundtrips for drivers
+	 * which execute a JDBC batch statement by statement. Note that the batch
+	 * insert methods return the number of rows affected per executed statement
+	 * then, rather than per row.
+	 * @since 5.1
+	 * @see #doExecuteBatch(SqlParameterSource...)
+	 */
+	public void setMultiRowBatchSize(int multiRowBatchSize) {
+		checkIfConfigurationModificationIsAllowed();
+		Assert.isTrue(multiRowBatchSize > 0, "Multi-row batch size must be greater than 0");
+		this.multiRowBatchSize = multiRowBatchSize;
+	}
+
+	/**
+	 * Get the number of rows to combine into a single statement for batch inserts.
+	 * @since 5.1
+	 */
+	public int getMultiRowBatchSize() {
+		return this.multiRowBatchSize;
+	}
+
 	/**
 	 * Specify whether the parameter metadata for the call should be used.
 	 * The default is {@code true}.
@@ -221,6 +277,8 @@ public abstract class AbstractJdbcInsert {
 
 	/**
 	 * Get the insert string to be used.
+	 * <p>This is an upsert statement if {@link #setUpsertKeyNames upsert key names}
+	 * have been specified.
 	 */
 	public String getInsertString() {
 		return this.insertString;
@@ -273,14 +331,34 @@ public abstract class AbstractJdbcInsert {
 		DataSource dataSource = getJdbcTemplate().getDataSource();
 		Assert.state(dataSource != null, "No DataSource set");
 		this.tableMetaDataContext.processMetaData(dataSource, getColumnNames(), getGeneratedKeyNames());
-		this.insertString = this.tableMetaDataContext.createInsertString(getGeneratedKeyNames());
+		if (getUpsertKeyNames().length > 0) {
+			this.insertString = createMultiRowInsertString(1);
+		}
+		else {
+			this.insertString = this.tableMetaDataContext.createInsertString(getGeneratedKeyNames());
+		}
 		this.insertTypes = this.tableMetaDataContext.createInsertTypes();
+		if (getMultiRowBatchSize() > 1) {
+			this.multiRowInsertString = createMultiRowInsertString(getMultiRowBatchSize());
+		}
 		if (logger.isDebugEnabled()) {
 			logger.debug("Compiled insert object: insert string is [" + this.insertString + "]");
 		}
 		onCompileInternal();
 	}
 
+	/**
+	 * Create the insert string (or upsert string, if upsert key names have been
+	 * specified) for the given number of rows.
+	 */
+	private String createMultiRowInsertString(int rowCount) {
+		if (getUpsertKeyNames().length > 0) {
+			return this.tableMetaDataContext.createUpsertString(
+					rowCount, Arrays.asList(getUpsertKeyNames()), getGeneratedKeyNames());
+		}
+		return this.tableMetaDataContext.createMultiRowInsertString(rowCount, getGeneratedKeyNames());
+	}
+
 	/**
 	 * Hook method that subclasses may override to react to compilation.
 	 * <p>This implementation is empty.
@@ -564,6 +642,9 @@ public abstract class AbstractJdbcInsert {
 	 * Delegate method to execute the batch insert.
 	 */
 	private int[] executeBatchInternal(final List<List<Object>> batchValues) {
+		if (getMultiRowBatchSize() > 1) {
+			return executeMultiRowBatchInternal(batchValues);
+		}
 		if (logger.isDebugEnabled()) {
 			logger.debug("Executing statement " + getInsertString() + " with batch of size: " + batchValues.size());
 		}
@@ -580,6 +661,59 @@ public abstract class AbstractJdbcInsert {
 				});
 	}
 
+	/**
+	 * Delegate method to execute the batch insert with multi-row statements:
+	 * a JDBC batch of statements with the full number of rows each, followed
+	 * by a single statement for the remaining rows.
+	 */
+	private int[] executeMultiRowBatchInternal(final List<List<Object>> batchValues) {
+		final int rowsPerStatement = getMultiRowBatchSize();
+		final int fullStatementCount = batchValues.size() / rowsPerStatement;
+		final int remainingRows = batchValues.size() % rowsPerStatement;
+		int[] rowCounts = new int[fullStatementCount + (remainingRows > 0 ? 1 : 0)];
+		if (logger.isDebugEnabled()) {
+			logger.debug("Executing multi-row statements with up to " + rowsPerStatement +
+					" rows each for batch of size: " + batchValues.size());
+		}
+		if (fullStatementCount > 0) {
+			int[] batchRowCounts = getJdbcTemplate().batchUpdate(this.multiRowInsertString,
+					new BatchPreparedStatementSetter() {
+						@Override
+						public void setValues(PreparedStatement ps, int i) throws SQLException {
+							int fromIndex = i * rowsPerStatement;
+							setParameterValues(ps, batchValues.subList(fromIndex, fromIndex + rowsPerStatement));
+						}
+						@Override
+						public int getBatchSize() {
+							return fullStatementCount;
+						}
+					});
+			System.arraycopy(batchRowCounts, 0, rowCounts, 0, Math.min(batchRowCounts.length, fullStatementCount));
+		}
+		if (remainingRows > 0) {
+			List<List<Object>> remainingValues =
+					batchValues.subList(fullStatementCount * rowsPerStatement, batchValues.size());
+			rowCounts[fullStatementCount] = getJdbcTemplate().update(
+					createMultiRowInsertString(remainingRows), ps -> setParameterValues(ps, remainingValues));
+		}
+		return rowCounts;
+	}
+
+	/**
+	 * Internal implementation for setting the parameter values of multiple rows,
+	 * one after the other.
+	 * @param preparedStatement the PreparedStatement
+	 * @param rows the values to be set, per row
+	 */
+	private void setParameterValues(PreparedStatement preparedStatement, Collection<List<Object>> rows)
+			throws SQLException {
+
+		int offset = 0;
+		for (List<Object> values : rows) {
+			offset = setParameterValues(preparedStatement, offset, values, getInsertTypes());
+		}
+	}
+
 	/**
 	 * Internal implementation for setting parameter values
 	 * @param preparedStatement the PreparedStatement
@@ -588,16 +722,29 @@ public abstract class AbstractJdbcInsert {
 	private void setParameterValues(PreparedStatement preparedStatement, List<?> values, @Nullable int... columnTypes)
 			throws SQLException {
 
+		setParameterValues(preparedStatement, 0, values, columnTypes);
+	}
+
+	/**
+	 * Internal implementation for setting parameter values, starting after the given offset.
+	 * @return the offset for subsequent parameter values
+	 */
+	private int setParameterValues(PreparedStatement preparedStatement, int offset, List<?> values,
+			@Nullable int... columnTypes) throws SQLException {
+
 		int colIndex = 0;
 		for (Object value : values) {
 			colIndex++;
 			if (columnTypes == null || colIndex > columnTypes.length) {
-				StatementCreatorUtils.setParameterValue(preparedStatement, colIndex, SqlTypeValue.TYPE_UNKNOWN, value);
+				StatementCreatorUtils.setParameterValue(
+						preparedStatement, offset + colIndex, SqlTypeValue.TYPE_UNKNOWN, value);
 			}
 			else {
-				StatementCreatorUtils.setParameterValue(preparedStatement, colIndex, columnTypes[colIndex - 1], value);
+				StatementCreatorUtils.setParameterValue(
+						preparedStatement, offset + colIndex, columnTypes[colIndex - 1], value);
 			}
 		}
+		return offset + colIndex;
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -98,6 +98,18 @@ public class SimpleJdbcInsert extends AbstractJdbcInsert implements SimpleJdbcIn
 		return this;
 	}
 
+	@Override
+	public SimpleJdbcInsert usingUpsertKeyColumns(String... columnNames) {
+		setUpsertKeyNames(columnNames);
+		return this;
+	}
+
+	@Override
+	public SimpleJdbcInsert withMultiRowBatchSize(int rowsPerStatement) {
+		setMultiRowBatchSize(rowsPerStatement);
+		return this;
+	}
+
 	@Override
 	public SimpleJdbcInsertOperations withoutTableColumnMetaDataAccess() {
 		setAccessTableColumnMetaData(false);
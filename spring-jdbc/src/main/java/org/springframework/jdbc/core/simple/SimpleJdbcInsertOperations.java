@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -66,6 +66,28 @@ public interface SimpleJdbcInsertOperations {
 	 */
 	SimpleJdbcInsertOperations usingGeneratedKeyColumns(String... columnNames);
 
+	/**
+	 * Specify the names of the key columns identifying an existing row, turning
+	 * the insert into an insert-or-update ("upsert") in the syntax of the target
+	 * database, e.g. {@code INSERT ... ON CONFLICT} or {@code MERGE}.
+	 * @param columnNames one or more column names
+	 * @return the instance of this SimpleJdbcInsert
+	 * @since 5.1
+	 */
+	SimpleJdbcInsertOperations usingUpsertKeyColumns(String... columnNames);
+
+	/**
+	 * Specify the number of rows to combine into a single multi-row statement
+	 * (e.g. {@code INSERT ... VALUES (...), (...)}) for batch inserts, reducing
+	 * the number of database roundtrips. The {@code executeBatch} methods return
+	 * the number of rows affected per executed statement then, rather than per row.
+	 * @param rowsPerStatement the maximum number of rows per statement
+	 * (default is 1, i.e. a regular JDBC batch with one statement per row)
+	 * @return the instance of this SimpleJdbcInsert
+	 * @since 5.1
+	 */
+	SimpleJdbcInsertOperations withMultiRowBatchSize(int rowsPerStatement);
+
 	/**
 	 * Turn off any processing of column meta data information obtained via JDBC.
 	 * @return the instance of this SimpleJdbcInsert
@@ -139,6 +161,7 @@ public interface SimpleJdbcInsertOperations {
 	 * Execute a batch insert using the batch of values passed in.
 	 * @param batch an array of Maps containing a batch of column names and corresponding value
 	 * @return the array of number of rows affected as returned by the JDBC driver
+	 * (per executed statement in case of a {@link #withMultiRowBatchSize multi-row batch size})
 	 */
 	@SuppressWarnings("unchecked")
 	int[] executeBatch(Map<String, ?>... batch);
@@ -147,6 +170,7 @@ public interface SimpleJdbcInsertOperations {
 	 * Execute a batch insert using the batch of values passed in.
 	 * @param batch an array of SqlParameterSource containing values for the batch
 	 * @return the array of number of rows affected as returned by the JDBC driver
+	 * (per executed statement in case of a {@link #withMultiRowBatchSize multi-row batch size})
 	 */
 	int[] executeBatch(SqlParameterSource... batch);
 
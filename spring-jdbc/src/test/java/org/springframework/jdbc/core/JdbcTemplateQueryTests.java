@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,6 +26,8 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.sql.DataSource;
 
 import org.junit.Before;
@@ -34,6 +36,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.UncategorizedSQLException;
 
 import static org.junit.Assert.*;
 import static org.mockito.BDDMockito.*;
@@ -392,4 +395,76 @@ public class JdbcTemplateQueryTests {
 		verify(this.preparedStatement).close();
 	}
 
+	@Test
+	public void testQueryForStreamWithArgs() throws Exception {
+		String sql = "SELECT AGE FROM CUSTMR WHERE ID < ?";
+		given(this.resultSet.next()).willReturn(true, true, false);
+		given(this.resultSet.getInt(1)).willReturn(11, 12);
+		List<Integer> result;
+		try (Stream<Integer> stream = this.template.queryForStream(sql, (rs, rowNum) -> rs.getInt(1), 3)) {
+			verify(this.resultSet, never()).next();
+			verify(this.resultSet, never()).close();
+			result = stream.collect(Collectors.toList());
+			verify(this.connection, never()).close();
+		}
+		assertEquals(2, result.size());
+		assertEquals(11, result.get(0).intValue());
+		assertEquals(12, result.get(1).intValue());
+		verify(this.preparedStatement).setObject(1, 3);
+		verify(this.preparedStatement, never()).setFetchSize(anyInt());
+		verify(this.resultSet).close();
+		verify(this.preparedStatement).close();
+		verify(this.connection).close();
+	}
+
+	@Test
+	public void testQueryForStreamWithFetchSize() throws Exception {
+		String sql = "SELECT AGE FROM CUSTMR WHERE ID < ?";
+		given(this.resultSet.next()).willReturn(true, true, true, false);
+		given(this.resultSet.getInt(1)).willReturn(11, 12, 13);
+		try (Stream<Integer> stream = this.template.queryForStream(sql, 100, (rs, rowNum) -> rs.getInt(1), 3)) {
+			assertEquals(11, stream.findFirst().get().intValue());
+		}
+		verify(this.preparedStatement).setFetchSize(100);
+		verify(this.resultSet, times(1)).next();
+		verify(this.resultSet).close();
+		verify(this.preparedStatement).close();
+		verify(this.connection).close();
+	}
+
+	@Test
+	public void testQueryForStreamWithExceptionDuringIteration() throws Exception {
+		String sql = "SELECT AGE FROM CUSTMR";
+		given(this.resultSet.next()).willThrow(new SQLException("broken"));
+		Stream<Integer> stream = this.template.queryForStream(sql, (rs, rowNum) -> rs.getInt(1));
+		try {
+			stream.count();
+			fail("Should have thrown UncategorizedSQLException");
+		}
+		catch (UncategorizedSQLException ex) {
+			assertEquals("broken", ex.getSQLException().getMessage());
+		}
+		finally {
+			stream.close();
+		}
+		verify(this.resultSet).close();
+		verify(this.preparedStatement).close();
+		verify(this.connection, atLeastOnce()).close();
+	}
+
+	@Test
+	public void testQueryForStreamWithExceptionOnExecution() throws Exception {
+		String sql = "SELECT AGE FROM CUSTMR";
+		given(this.preparedStatement.executeQuery()).willThrow(new SQLException("broken"));
+		try {
+			this.template.queryForStream(sql, (rs, rowNum) -> rs.getInt(1));
+			fail("Should have thrown UncategorizedSQLException");
+		}
+		catch (UncategorizedSQLException ex) {
+			assertEquals("broken", ex.getSQLException().getMessage());
+		}
+		verify(this.preparedStatement).close();
+		verify(this.connection, atLeastOnce()).close();
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,11 +22,14 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.sql.DataSource;
 
 import org.junit.Before;
@@ -34,6 +37,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.jdbc.Customer;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -335,6 +339,88 @@ public class NamedParameterJdbcTemplateTests {
 		verify(connection).close();
 	}
 
+	@Test
+	public void testQueryForStreamWithRowMapper() throws SQLException {
+		given(resultSet.next()).willReturn(true, true, false);
+		given(resultSet.getInt("id")).willReturn(1, 2);
+		given(resultSet.getString("forename")).willReturn("rod", "juergen");
+
+		params.put("id", new SqlParameterValue(Types.DECIMAL, 1));
+		params.put("country", "UK");
+		List<Customer> customers;
+		try (Stream<Customer> stream = namedParameterTemplate.queryForStream(SELECT_NAMED_PARAMETERS,
+				new MapSqlParameterSource(params), (rs, rownum) -> {
+					Customer cust = new Customer();
+					cust.setId(rs.getInt(COLUMN_NAMES[0]));
+					cust.setForename(rs.getString(COLUMN_NAMES[1]));
+					return cust;
+				}, 50)) {
+			customers = stream.collect(Collectors.toList());
+			verify(preparedStatement, never()).close();
+		}
+		assertEquals(2, customers.size());
+		assertEquals("juergen", customers.get(1).getForename());
+		verify(connection).prepareStatement(SELECT_NAMED_PARAMETERS_PARSED);
+		verify(preparedStatement).setFetchSize(50);
+		verify(preparedStatement).setObject(1, 1, Types.DECIMAL);
+		verify(preparedStatement).setString(2, "UK");
+		verify(resultSet).close();
+		verify(preparedStatement).close();
+		verify(connection).close();
+	}
+
+	@Test
+	public void testQueryWithInListOfVaryingSize() throws SQLException {
+		given(resultSet.next()).willReturn(false);
+		String sql = "select id from custmr where id in (:ids) and country = :country";
+
+		namedParameterTemplate.queryForList(sql, new MapSqlParameterSource("ids", Arrays.asList(1, 2))
+				.addValue("country", "UK"), Integer.class);
+		namedParameterTemplate.queryForList(sql, new MapSqlParameterSource("ids", Arrays.asList(3, 4, 5))
+				.addValue("country", "UK"), Integer.class);
+		namedParameterTemplate.queryForList(sql, new MapSqlParameterSource("ids", Arrays.asList(6, 7))
+				.addValue("country", 44, Types.DECIMAL), Integer.class);
+
+		verify(connection, times(2)).prepareStatement("select id from custmr where id in (?, ?) and country = ?");
+		verify(connection).prepareStatement("select id from custmr where id in (?, ?, ?) and country = ?");
+		verify(preparedStatement).setString(4, "UK");
+		verify(preparedStatement).setString(3, "UK");
+		verify(preparedStatement).setObject(3, 44, Types.DECIMAL);
+	}
+
+	@Test
+	public void testQueryWithInListPadding() throws SQLException {
+		given(resultSet.next()).willReturn(false);
+		namedParameterTemplate.setInListPadding(true);
+		String sql = "select id from custmr where id in (:ids)";
+
+		namedParameterTemplate.queryForList(sql, new MapSqlParameterSource("ids", Arrays.asList(1, 2, 3)), Integer.class);
+		namedParameterTemplate.queryForList(sql, new MapSqlParameterSource("ids", Arrays.asList(4, 5, 6, 7)), Integer.class);
+		namedParameterTemplate.queryForList(sql, new MapSqlParameterSource("ids", Arrays.asList(8, 9, 10, 11, 12)), Integer.class);
+		namedParameterTemplate.queryForList(sql, new MapSqlParameterSource("ids", Collections.singletonList(13)), Integer.class);
+
+		verify(connection, times(2)).prepareStatement("select id from custmr where id in (?, ?, ?, ?)");
+		verify(connection).prepareStatement("select id from custmr where id in (?, ?, ?, ?, ?, ?, ?, ?)");
+		verify(connection).prepareStatement("select id from custmr where id in (?)");
+		verify(preparedStatement).setObject(4, 3);
+		verify(preparedStatement).setObject(4, 7);
+		verify(preparedStatement).setObject(8, 12);
+	}
+
+	@Test
+	public void testQueryWithExpressionListOfVaryingShape() throws SQLException {
+		given(resultSet.next()).willReturn(false);
+		String sql = "select id from custmr where (id, forename) in (:pairs)";
+
+		namedParameterTemplate.queryForList(sql, new MapSqlParameterSource("pairs",
+				Arrays.asList(new Object[] {1, "a"}, new Object[] {2, "b"})), Integer.class);
+		namedParameterTemplate.queryForList(sql, new MapSqlParameterSource("pairs",
+				Arrays.asList(new Object[] {1, "a", "x"}, new Object[] {2, "b", "y"})), Integer.class);
+
+		verify(connection).prepareStatement("select id from custmr where (id, forename) in ((?, ?), (?, ?))");
+		verify(connection).prepareStatement("select id from custmr where (id, forename) in ((?, ?, ?), (?, ?, ?))");
+	}
+
 	@Test
 	public void testUpdate() throws SQLException {
 		given(preparedStatement.executeUpdate()).willReturn(1);
@@ -420,6 +506,53 @@ public class NamedParameterJdbcTemplateTests {
 		verify(connection, atLeastOnce()).close();
 	}
 
+	@Test
+	public void testMultiRowBatchUpdate() throws Exception {
+		SqlParameterSource[] rows = new SqlParameterSource[3];
+		rows[0] = new MapSqlParameterSource("id", 100).addValue("name", "a");
+		rows[1] = new MapSqlParameterSource("id", 200).addValue("name", "b");
+		rows[2] = new MapSqlParameterSource("id", 300).addValue("name", "c");
+		given(preparedStatement.executeUpdate()).willReturn(2, 1);
+
+		int[] actualRowsAffected = namedParameterTemplate.batchUpdate(
+				"INSERT INTO t (id, name) VALUES (:id, :name) ON CONFLICT (id) DO NOTHING", rows, 2);
+		assertArrayEquals(new int[] {2, 1}, actualRowsAffected);
+		verify(connection).prepareStatement("INSERT INTO t (id, name) VALUES (?, ?), (?, ?) ON CONFLICT (id) DO NOTHING");
+		verify(connection).prepareStatement("INSERT INTO t (id, name) VALUES (?, ?) ON CONFLICT (id) DO NOTHING");
+		verify(preparedStatement).setObject(1, 100);
+		verify(preparedStatement).setString(2, "a");
+		verify(preparedStatement).setObject(3, 200);
+		verify(preparedStatement).setString(4, "b");
+		verify(preparedStatement).setObject(1, 300);
+		verify(preparedStatement).setString(2, "c");
+		verify(preparedStatement, times(2)).close();
+		verify(connection, times(2)).close();
+	}
+
+	@Test
+	public void testMultiRowBatchUpdateWithFunctionCallInValuesRow() throws Exception {
+		SqlParameterSource[] rows = new SqlParameterSource[2];
+		rows[0] = new MapSqlParameterSource("a", "x").addValue("b", 100);
+		rows[1] = new MapSqlParameterSource("a", "y").addValue("b", 200);
+		given(preparedStatement.executeUpdate()).willReturn(2);
+
+		int[] actualRowsAffected = namedParameterTemplate.batchUpdate(
+				"INSERT INTO t (a, b) VALUES (upper(:a), :b)", rows, 2);
+		assertArrayEquals(new int[] {2}, actualRowsAffected);
+		verify(connection).prepareStatement("INSERT INTO t (a, b) VALUES (upper(?), ?), (upper(?), ?)");
+		verify(preparedStatement).setString(1, "x");
+		verify(preparedStatement).setObject(2, 100);
+		verify(preparedStatement).setString(3, "y");
+		verify(preparedStatement).setObject(4, 200);
+	}
+
+	@Test
+	public void testMultiRowBatchUpdateWithoutValuesRow() throws Exception {
+		SqlParameterSource[] rows = new SqlParameterSource[] {new MapSqlParameterSource("id", 100)};
+		thrown.expect(InvalidDataAccessApiUsageException.class);
+		namedParameterTemplate.batchUpdate("UPDATE NOSUCHTABLE SET DATE_DISPATCHED = SYSDATE WHERE ID = :id", rows, 2);
+	}
+
 	@Test
 	public void testBatchUpdateWithSqlParameterSourcePlusTypeInfo() throws Exception {
 		SqlParameterSource[] ids = new SqlParameterSource[2];
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.core.simple;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import static org.junit.Assert.*;
+
+/**
+ * Integration tests for multi-row batch inserts and upserts with
+ * {@link SimpleJdbcInsert} and {@link NamedParameterJdbcTemplate},
+ * against embedded databases.
+ */
+@RunWith(Parameterized.class)
+public class SimpleJdbcInsertMultiRowTests {
+
+	@Parameters(name = "{0}")
+	public static Collection<EmbeddedDatabaseType> databaseTypes() {
+		return Arrays.asList(EmbeddedDatabaseType.H2, EmbeddedDatabaseType.HSQL);
+	}
+
+
+	@Parameter
+	public EmbeddedDatabaseType databaseType;
+
+	private EmbeddedDatabase database;
+
+	private JdbcTemplate jdbcTemplate;
+
+
+	@Before
+	public void setUp() {
+		this.database = new EmbeddedDatabaseBuilder().generateUniqueName(true).setType(this.databaseType).build();
+		this.jdbcTemplate = new JdbcTemplate(this.database);
+		this.jdbcTemplate.execute("CREATE TABLE person (id INTEGER PRIMARY KEY, name VARCHAR(50), age INTEGER)");
+	}
+
+	@After
+	public void shutDown() {
+		this.database.shutdown();
+	}
+
+
+	@Test
+	public void multiRowBatchInsert() {
+		SimpleJdbcInsert insert = new SimpleJdbcInsert(this.jdbcTemplate)
+				.withTableName("person").withMultiRowBatchSize(2);
+		int[] rowCounts = insert.executeBatch(persons(1, 5));
+		assertArrayEquals(new int[] {2, 2, 1}, rowCounts);
+		assertEquals(Integer.valueOf(5), this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person", Integer.class));
+		assertEquals("name5", this.jdbcTemplate.queryForObject("SELECT name FROM person WHERE id = 5", String.class));
+		assertEquals(Integer.valueOf(25), this.jdbcTemplate.queryForObject("SELECT age FROM person WHERE id = 5", Integer.class));
+	}
+
+	@Test
+	public void multiRowBatchInsertWithFullStatementsOnly() {
+		SimpleJdbcInsert insert = new SimpleJdbcInsert(this.jdbcTemplate)
+				.withTableName("person").withMultiRowBatchSize(3);
+		assertArrayEquals(new int[] {3, 3}, insert.executeBatch(persons(1, 6)));
+		assertEquals(Integer.valueOf(6), this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person", Integer.class));
+	}
+
+	@Test
+	public void upsert() {
+		this.jdbcTemplate.update("INSERT INTO person (id, name, age) VALUES (1, 'old', 1)");
+		SimpleJdbcInsert insert = new SimpleJdbcInsert(this.jdbcTemplate)
+				.withTableName("person").usingUpsertKeyColumns("id");
+		insert.execute(new MapSqlParameterSource("id", 1).addValue("name", "new").addValue("age", 2));
+		insert.execute(new MapSqlParameterSource("id", 2).addValue("name", "other").addValue("age", 3));
+		assertEquals(Integer.valueOf(2), this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person", Integer.class));
+		assertEquals("new", this.jdbcTemplate.queryForObject("SELECT name FROM person WHERE id = 1", String.class));
+		assertEquals(Integer.valueOf(2), this.jdbcTemplate.queryForObject("SELECT age FROM person WHERE id = 1", Integer.class));
+	}
+
+	@Test
+	public void multiRowBatchUpsert() {
+		this.jdbcTemplate.update("INSERT INTO person (id, name, age) VALUES (2, 'old', 1)");
+		SimpleJdbcInsert insert = new SimpleJdbcInsert(this.jdbcTemplate)
+				.withTableName("person").usingUpsertKeyColumns("id").withMultiRowBatchSize(2);
+		int[] rowCounts = insert.executeBatch(persons(1, 3));
+		assertEquals(2, rowCounts.length);
+		assertEquals(Integer.valueOf(3), this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person", Integer.class));
+		assertEquals("name2", this.jdbcTemplate.queryForObject("SELECT name FROM person WHERE id = 2", String.class));
+	}
+
+	@Test
+	public void namedParameterMultiRowBatchUpdate() {
+		NamedParameterJdbcTemplate template = new NamedParameterJdbcTemplate(this.jdbcTemplate);
+		int[] rowCounts = template.batchUpdate(
+				"INSERT INTO person (id, name, age) VALUES (:id, UPPER(:name), :age)", persons(1, 5), 2);
+		assertArrayEquals(new int[] {2, 2, 1}, rowCounts);
+		assertEquals(Integer.valueOf(5), this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person", Integer.class));
+		assertEquals("NAME4", this.jdbcTemplate.queryForObject("SELECT name FROM person WHERE id = 4", String.class));
+	}
+
+
+	private static SqlParameterSource[] persons(int fromId, int toId) {
+		SqlParameterSource[] persons = new SqlParameterSource[toId - fromId + 1];
+		for (int id = fromId; id <= toId; id++) {
+			persons[id - fromId] = new MapSqlParameterSource("id", id).addValue("name", "name" + id).addValue("age", id * 5);
+		}
+		return persons;
+	}
+
+}
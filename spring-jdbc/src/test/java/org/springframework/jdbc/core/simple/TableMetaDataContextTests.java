@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import javax.sql.DataSource;
@@ -154,4 +155,33 @@ public class TableMetaDataContextTests  {
 		verify(columnsResultSet).close();
 	}
 
+	@Test
+	public void testMultiRowInsertAndUpsertStringsForPostgres() throws Exception {
+		given(databaseMetaData.getDatabaseProductName()).willReturn("PostgreSQL");
+		context.setTableName("customers");
+		context.setAccessTableColumnMetaData(false);
+		context.processMetaData(dataSource, Arrays.asList("id", "name", "version"), new String[] {});
+
+		assertEquals("INSERT INTO customers (id, name, version) VALUES (?, ?, ?), (?, ?, ?)",
+				context.createMultiRowInsertString(2));
+		assertEquals("INSERT INTO customers (id, name, version) VALUES (?, ?, ?) ON CONFLICT (id) " +
+				"DO UPDATE SET name = EXCLUDED.name, version = EXCLUDED.version",
+				context.createUpsertString(1, Arrays.asList("id")));
+	}
+
+	@Test
+	public void testUpsertStringsForMySqlAndH2() throws Exception {
+		given(databaseMetaData.getDatabaseProductName()).willReturn("MySQL");
+		context.setTableName("customers");
+		context.setAccessTableColumnMetaData(false);
+		context.processMetaData(dataSource, Arrays.asList("id", "name"), new String[] {});
+		assertEquals("INSERT INTO customers (id, name) VALUES (?, ?), (?, ?) ON DUPLICATE KEY UPDATE name = VALUES(name)",
+				context.createUpsertString(2, Arrays.asList("id")));
+
+		given(databaseMetaData.getDatabaseProductName()).willReturn("H2");
+		context.processMetaData(dataSource, Arrays.asList("id", "name"), new String[] {});
+		assertEquals("MERGE INTO customers (id, name) KEY (id) VALUES (?, ?), (?, ?)",
+				context.createUpsertString(2, Arrays.asList("id")));
+	}
+
 }
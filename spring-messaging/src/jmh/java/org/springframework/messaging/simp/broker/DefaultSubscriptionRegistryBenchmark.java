@@ -0,0 +1,148 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp.broker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MultiValueMap;
+
+/**
+ * Benchmarks for {@link DefaultSubscriptionRegistry#findSubscriptions} with
+ * plain and pattern-based subscriptions, for destinations that are found in
+ * the destination cache and for destinations that are not.
+ */
+@BenchmarkMode(Mode.Throughput)
+public class DefaultSubscriptionRegistryBenchmark {
+
+	@Benchmark
+	public MultiValueMap<String, String> findCached(BenchmarkData data, Destinations destinations) {
+		return data.registry.findSubscriptions(destinations.nextCached());
+	}
+
+	@Benchmark
+	public MultiValueMap<String, String> findUncached(BenchmarkData data, Destinations destinations) {
+		return data.registry.findSubscriptions(destinations.nextUncached());
+	}
+
+	@Benchmark
+	public MultiValueMap<String, String> registerAndUnregister(BenchmarkData data, Destinations destinations) {
+		data.registry.registerSubscription(destinations.subscribe);
+		data.registry.unregisterSubscription(destinations.unsubscribe);
+		return data.registry.findSubscriptions(destinations.nextCached());
+	}
+
+
+	@State(Scope.Benchmark)
+	public static class BenchmarkData {
+
+		private static final int SUBSCRIPTIONS_PER_SESSION = 5;
+
+		@Param({"10", "1000"})
+		public int sessionCount;
+
+		@Param({"10", "200"})
+		public int destinationCount;
+
+		@Param({"0", "10"})
+		public int patternSubscriptionCount;
+
+		public DefaultSubscriptionRegistry registry;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			this.registry = new DefaultSubscriptionRegistry();
+			for (int i = 0; i < this.sessionCount; i++) {
+				for (int j = 0; j < SUBSCRIPTIONS_PER_SESSION; j++) {
+					String destination = "/topic/destination" + ((i + j) % this.destinationCount);
+					this.registry.registerSubscription(subscribeMessage("session" + i, "sub" + j, destination));
+				}
+			}
+			for (int i = 0; i < this.patternSubscriptionCount; i++) {
+				this.registry.registerSubscription(
+						subscribeMessage("session" + (i % this.sessionCount), "pattern" + i, "/topic/destination*" + i));
+			}
+		}
+	}
+
+
+	@State(Scope.Thread)
+	public static class Destinations {
+
+		private int counter;
+
+		private Message<?>[] cached;
+
+		private Message<?>[] uncached;
+
+		public Message<?> subscribe;
+
+		public Message<?> unsubscribe;
+
+		@Setup(Level.Trial)
+		public void setup(BenchmarkData data) {
+			this.cached = new Message<?>[data.destinationCount];
+			for (int i = 0; i < data.destinationCount; i++) {
+				this.cached[i] = message("/topic/destination" + i);
+			}
+			// Exceed the default cache limit so that most lookups miss the cache
+			this.uncached = new Message<?>[DefaultSubscriptionRegistry.DEFAULT_CACHE_LIMIT * 2];
+			for (int i = 0; i < this.uncached.length; i++) {
+				this.uncached[i] = message("/topic/other" + i);
+			}
+			this.subscribe = subscribeMessage("session0", "transient", "/topic/destination0");
+			SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+			accessor.setSessionId("session0");
+			accessor.setSubscriptionId("transient");
+			this.unsubscribe = MessageBuilder.createMessage("", accessor.getMessageHeaders());
+		}
+
+		public Message<?> nextCached() {
+			return this.cached[(this.counter++ & Integer.MAX_VALUE) % this.cached.length];
+		}
+
+		public Message<?> nextUncached() {
+			return this.uncached[(this.counter++ & Integer.MAX_VALUE) % this.uncached.length];
+		}
+	}
+
+
+	static Message<?> subscribeMessage(String sessionId, String subscriptionId, String destination) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+		accessor.setSessionId(sessionId);
+		accessor.setSubscriptionId(subscriptionId);
+		accessor.setDestination(destination);
+		return MessageBuilder.createMessage("", accessor.getMessageHeaders());
+	}
+
+	static Message<?> message(String destination) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setDestination(destination);
+		return MessageBuilder.createMessage("", accessor.getMessageHeaders());
+	}
+
+}
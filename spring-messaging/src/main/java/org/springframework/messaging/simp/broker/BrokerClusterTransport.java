@@ -0,0 +1,97 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp.broker;
+
+import java.util.List;
+
+import org.springframework.messaging.Message;
+
+/**
+ * Contract for exchanging messages between the nodes of a cluster of
+ * {@link SimpleBrokerMessageHandler simple brokers}.
+ *
+ * <p>The messages exchanged describe the subscriptions of a node and the
+ * messages published to it. Their headers consist of the
+ * {@link org.springframework.messaging.simp.SimpMessageType message type},
+ * the destination and native headers only, so that a transport may encode
+ * them as STOMP frames. Messages sent to a node must be delivered in order.
+ *
+ * @since 5.1
+ * @see SimpleBrokerMessageHandler#setClusterTransport
+ * @see LoopbackBrokerClusterTransport
+ * @see org.springframework.messaging.simp.stomp.ReactorNettyBrokerClusterTransport
+ */
+public interface BrokerClusterTransport {
+
+	/**
+	 * Return the id of the local node, unique within the cluster.
+	 */
+	String getLocalNodeId();
+
+	/**
+	 * Start exchanging messages with the other nodes of the cluster.
+	 * @param listener the listener to notify of other nodes and of the
+	 * messages they send
+	 */
+	void start(Listener listener);
+
+	/**
+	 * Stop exchanging messages with the other nodes of the cluster.
+	 */
+	void stop();
+
+	/**
+	 * Send the given messages to the given node, in order and as a single
+	 * batch where the transport supports it. Messages for a node that is
+	 * not available are dropped.
+	 * @param nodeId the id of the target node
+	 * @param messages the messages to send
+	 */
+	void send(String nodeId, List<Message<byte[]>> messages);
+
+
+	/**
+	 * Callback for the events of a {@link BrokerClusterTransport}.
+	 */
+	interface Listener {
+
+		/**
+		 * Invoked when messages can be sent to the given node, initially or
+		 * after the transport lost the connection to it. The node expects the
+		 * complete state of the local node then.
+		 */
+		void nodeAvailable(String nodeId);
+
+		/**
+		 * Invoked when messages can no longer be sent to the given node.
+		 */
+		void nodeUnavailable(String nodeId);
+
+		/**
+		 * Invoked when any state previously received from the given node is
+		 * to be discarded, i.e. when the node is gone or is about to send its
+		 * complete state again.
+		 */
+		void nodeStateReset(String nodeId);
+
+		/**
+		 * Handle a message received from the given node.
+		 */
+		void handleMessage(String nodeId, Message<byte[]> message);
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp.broker;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link BrokerClusterTransport} connecting nodes within the same JVM,
+ * handing messages over to the target node in the calling thread.
+ *
+ * <p>Intended for tests and for trying out a cluster without setting up a
+ * network transport. All nodes of a cluster are created from the first one:
+ * <pre class="code">
+ * LoopbackBrokerClusterTransport node1 = new LoopbackBrokerClusterTransport("node1");
+ * LoopbackBrokerClusterTransport node2 = node1.createNode("node2");
+ * </pre>
+ *
+ * @since 5.1
+ */
+public class LoopbackBrokerClusterTransport implements BrokerClusterTransport {
+
+	private final String localNodeId;
+
+	/* The started nodes of the cluster, shared by all of its nodes */
+	private final Map<String, LoopbackBrokerClusterTransport> startedNodes;
+
+	@Nullable
+	private volatile Listener listener;
+
+
+	/**
+	 * Create the first node of a new cluster.
+	 * @param localNodeId the id of the node
+	 */
+	public LoopbackBrokerClusterTransport(String localNodeId) {
+		this(localNodeId, new ConcurrentHashMap<>());
+	}
+
+	private LoopbackBrokerClusterTransport(String localNodeId, Map<String, LoopbackBrokerClusterTransport> nodes) {
+		Assert.hasText(localNodeId, "Node id must not be empty");
+		this.localNodeId = localNodeId;
+		this.startedNodes = nodes;
+	}
+
+
+	/**
+	 * Create another node of the cluster that this node belongs to.
+	 * @param nodeId the id of the node
+	 */
+	public LoopbackBrokerClusterTransport createNode(String nodeId) {
+		return new LoopbackBrokerClusterTransport(nodeId, this.startedNodes);
+	}
+
+	@Override
+	public String getLocalNodeId() {
+		return this.localNodeId;
+	}
+
+	@Override
+	public void start(Listener listener) {
+		Assert.notNull(listener, "Listener must not be null");
+		this.listener = listener;
+		LoopbackBrokerClusterTransport existing = this.startedNodes.putIfAbsent(this.localNodeId, this);
+		Assert.state(existing == null, () -> "Node " + this.localNodeId + " already started");
+		for (LoopbackBrokerClusterTransport node : this.startedNodes.values()) {
+			Listener nodeListener = node.listener;
+			if (node != this && nodeListener != null) {
+				listener.nodeAvailable(node.localNodeId);
+				nodeListener.nodeAvailable(this.localNodeId);
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+		if (!this.startedNodes.remove(this.localNodeId, this)) {
+			return;
+		}
+		this.listener = null;
+		for (LoopbackBrokerClusterTransport node : this.startedNodes.values()) {
+			Listener nodeListener = node.listener;
+			if (nodeListener != null) {
+				nodeListener.nodeUnavailable(this.localNodeId);
+				nodeListener.nodeStateReset(this.localNodeId);
+			}
+		}
+	}
+
+	@Override
+	public void send(String nodeId, List<Message<byte[]>> messages) {
+		LoopbackBrokerClusterTransport node = this.startedNodes.get(nodeId);
+		Listener nodeListener = (node != null ? node.listener : null);
+		if (nodeListener == null) {
+			return;
+		}
+		for (Message<byte[]> message : messages) {
+			nodeListener.handleMessage(this.localNodeId, message);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "LoopbackBrokerClusterTransport[" + this.localNodeId + "]";
+	}
+
+}
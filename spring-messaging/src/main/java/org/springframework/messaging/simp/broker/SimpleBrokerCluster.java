@@ -0,0 +1,308 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp.broker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+
+/**
+ * Keeps the subscriptions of a {@link SimpleBrokerMessageHandler} in sync with
+ * the other nodes of a cluster and forwards published messages to the nodes
+ * with matching subscriptions, exchanging messages through a
+ * {@link BrokerClusterTransport}.
+ *
+ * <p>The subscriptions of every other node are held in a separate
+ * {@link SubscriptionRegistry}. A message published locally is forwarded once
+ * to each node with at least one matching subscription, where it is delivered
+ * to the local subscribers of that node only.
+ *
+ * @since 5.1
+ */
+class SimpleBrokerCluster implements BrokerClusterTransport.Listener {
+
+	static final String SESSION_HEADER = "session";
+
+	static final String SUBSCRIPTION_ID_HEADER = "id";
+
+	private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
+	private static final Log logger = LogFactory.getLog(SimpleBrokerCluster.class);
+
+
+	private final SimpleBrokerMessageHandler brokerHandler;
+
+	private final BrokerClusterTransport transport;
+
+	private final Supplier<SubscriptionRegistry> registryFactory;
+
+	private final Set<String> availableNodes = ConcurrentHashMap.newKeySet();
+
+	private final Map<String, SubscriptionRegistry> remoteSubscriptions = new ConcurrentHashMap<>();
+
+	/*
+	 * Local subscriptions, as sent to other nodes: session id -> subscription id -> message.
+	 * Changes are sent while holding the lock on this map, so that a node that becomes
+	 * available receives them in order with the replay of the current subscriptions.
+	 */
+	private final Map<String, Map<String, Message<byte[]>>> localSubscriptions = new HashMap<>();
+
+
+	SimpleBrokerCluster(SimpleBrokerMessageHandler brokerHandler, BrokerClusterTransport transport,
+			Supplier<SubscriptionRegistry> registryFactory) {
+
+		this.brokerHandler = brokerHandler;
+		this.transport = transport;
+		this.registryFactory = registryFactory;
+	}
+
+
+	public void start() {
+		this.transport.start(this);
+	}
+
+	public void stop() {
+		this.transport.stop();
+		this.availableNodes.clear();
+		this.remoteSubscriptions.clear();
+	}
+
+
+	public void subscribe(Message<?> message) {
+		MessageHeaders headers = message.getHeaders();
+		String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+		String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+		String destination = SimpMessageHeaderAccessor.getDestination(headers);
+		if (sessionId == null || subscriptionId == null || destination == null) {
+			return;
+		}
+		SimpMessageHeaderAccessor accessor = createAccessor(SimpMessageType.SUBSCRIBE, headers);
+		accessor.setSessionId(sessionId);
+		accessor.setSubscriptionId(subscriptionId);
+		accessor.setDestination(destination);
+		accessor.setNativeHeader(SESSION_HEADER, sessionId);
+		accessor.setNativeHeader(SUBSCRIPTION_ID_HEADER, subscriptionId);
+		Message<byte[]> clusterMessage = MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders());
+		synchronized (this.localSubscriptions) {
+			this.localSubscriptions.computeIfAbsent(sessionId, id -> new LinkedHashMap<>())
+					.put(subscriptionId, clusterMessage);
+			sendToAvailableNodes(clusterMessage);
+		}
+	}
+
+	public void unsubscribe(Message<?> message) {
+		MessageHeaders headers = message.getHeaders();
+		String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+		String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+		if (sessionId == null || subscriptionId == null) {
+			return;
+		}
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+		accessor.setSessionId(sessionId);
+		accessor.setSubscriptionId(subscriptionId);
+		accessor.setNativeHeader(SESSION_HEADER, sessionId);
+		accessor.setNativeHeader(SUBSCRIPTION_ID_HEADER, subscriptionId);
+		synchronized (this.localSubscriptions) {
+			Map<String, Message<byte[]>> subscriptions = this.localSubscriptions.get(sessionId);
+			if (subscriptions == null || subscriptions.remove(subscriptionId) == null) {
+				return;
+			}
+			if (subscriptions.isEmpty()) {
+				this.localSubscriptions.remove(sessionId);
+			}
+			sendToAvailableNodes(MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders()));
+		}
+	}
+
+	public void disconnect(String sessionId) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT);
+		accessor.setSessionId(sessionId);
+		accessor.setNativeHeader(SESSION_HEADER, sessionId);
+		synchronized (this.localSubscriptions) {
+			if (this.localSubscriptions.remove(sessionId) == null) {
+				return;
+			}
+			sendToAvailableNodes(MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders()));
+		}
+	}
+
+	/**
+	 * Forward a message published locally to every node with a matching subscription.
+	 */
+	public void publish(String destination, Message<?> message) {
+		List<String> targetNodes = null;
+		for (Map.Entry<String, SubscriptionRegistry> entry : this.remoteSubscriptions.entrySet()) {
+			if (!entry.getValue().findSubscriptions(message).isEmpty()) {
+				targetNodes = (targetNodes != null ? targetNodes : new ArrayList<>(4));
+				targetNodes.add(entry.getKey());
+			}
+		}
+		if (targetNodes == null) {
+			return;
+		}
+		if (!(message.getPayload() instanceof byte[])) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("Not forwarding message with payload of type " +
+						message.getPayload().getClass().getName() + " to nodes " + targetNodes);
+			}
+			return;
+		}
+		SimpMessageHeaderAccessor accessor = createAccessor(SimpMessageType.MESSAGE, message.getHeaders());
+		accessor.setDestination(destination);
+		Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+		if (contentType != null) {
+			accessor.setHeader(MessageHeaders.CONTENT_TYPE, contentType);
+		}
+		// The same message for every node: one per node, not one per remote subscription
+		List<Message<byte[]>> messages = Collections.singletonList(
+				MessageBuilder.createMessage((byte[]) message.getPayload(), accessor.getMessageHeaders()));
+		for (String nodeId : targetNodes) {
+			send(nodeId, messages);
+		}
+	}
+
+	private SimpMessageHeaderAccessor createAccessor(SimpMessageType messageType, MessageHeaders headers) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(messageType);
+		@SuppressWarnings("unchecked")
+		Map<String, List<String>> nativeHeaders =
+				(Map<String, List<String>>) headers.get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+		if (nativeHeaders != null) {
+			for (Map.Entry<String, List<String>> entry : nativeHeaders.entrySet()) {
+				for (String value : entry.getValue()) {
+					accessor.addNativeHeader(entry.getKey(), value);
+				}
+			}
+		}
+		return accessor;
+	}
+
+	private void sendToAvailableNodes(Message<byte[]> message) {
+		List<Message<byte[]>> messages = Collections.singletonList(message);
+		for (String nodeId : this.availableNodes) {
+			send(nodeId, messages);
+		}
+	}
+
+	private void send(String nodeId, List<Message<byte[]>> messages) {
+		try {
+			this.transport.send(nodeId, messages);
+		}
+		catch (Throwable ex) {
+			if (logger.isErrorEnabled()) {
+				logger.error("Failed to send " + messages.size() + " message(s) to node " + nodeId, ex);
+			}
+		}
+	}
+
+
+	// BrokerClusterTransport.Listener
+
+	@Override
+	public void nodeAvailable(String nodeId) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Node " + nodeId + " available");
+		}
+		synchronized (this.localSubscriptions) {
+			// Changes from here on are sent after the replay
+			this.availableNodes.add(nodeId);
+			List<Message<byte[]>> messages = new ArrayList<>();
+			for (Map<String, Message<byte[]>> subscriptions : this.localSubscriptions.values()) {
+				messages.addAll(subscriptions.values());
+			}
+			if (!messages.isEmpty()) {
+				send(nodeId, messages);
+			}
+		}
+	}
+
+	@Override
+	public void nodeUnavailable(String nodeId) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Node " + nodeId + " unavailable");
+		}
+		this.availableNodes.remove(nodeId);
+	}
+
+	@Override
+	public void nodeStateReset(String nodeId) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Discarding subscriptions of node " + nodeId);
+		}
+		this.remoteSubscriptions.remove(nodeId);
+	}
+
+	@Override
+	public void handleMessage(String nodeId, Message<byte[]> message) {
+		MessageHeaders headers = message.getHeaders();
+		SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+		String sessionId = NativeMessageHeaderAccessor.getFirstNativeHeader(SESSION_HEADER, headers);
+		if (SimpMessageType.MESSAGE.equals(messageType)) {
+			String destination = SimpMessageHeaderAccessor.getDestination(headers);
+			if (destination != null) {
+				this.brokerHandler.sendMessageToSubscribers(destination, message);
+			}
+		}
+		else if (SimpMessageType.SUBSCRIBE.equals(messageType) || SimpMessageType.UNSUBSCRIBE.equals(messageType)) {
+			String subscriptionId = NativeMessageHeaderAccessor.getFirstNativeHeader(SUBSCRIPTION_ID_HEADER, headers);
+			if (sessionId == null || subscriptionId == null) {
+				return;
+			}
+			SimpMessageHeaderAccessor accessor = createAccessor(messageType, headers);
+			accessor.setSessionId(sessionId);
+			accessor.setSubscriptionId(subscriptionId);
+			accessor.setDestination(SimpMessageHeaderAccessor.getDestination(headers));
+			Message<byte[]> registryMessage = MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders());
+			if (SimpMessageType.SUBSCRIBE.equals(messageType)) {
+				getRemoteSubscriptions(nodeId).registerSubscription(registryMessage);
+			}
+			else {
+				getRemoteSubscriptions(nodeId).unregisterSubscription(registryMessage);
+			}
+		}
+		else if (SimpMessageType.DISCONNECT.equals(messageType) && sessionId != null) {
+			getRemoteSubscriptions(nodeId).unregisterAllSubscriptions(sessionId);
+		}
+	}
+
+	private SubscriptionRegistry getRemoteSubscriptions(String nodeId) {
+		return this.remoteSubscriptions.computeIfAbsent(nodeId, id -> this.registryFactory.get());
+	}
+
+	@Override
+	public String toString() {
+		return "SimpleBrokerCluster[node=" + this.transport.getLocalNodeId() +
+				", available=" + this.availableNodes + "]";
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,8 +17,10 @@
 package org.springframework.messaging.simp.broker;
 
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -31,6 +33,7 @@ import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.SubscribableChannel;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.messaging.support.MessageHeaderInitializer;
@@ -74,6 +77,14 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 	@Nullable
 	private MessageHeaderInitializer headerInitializer;
 
+	private int broadcastBatchSize = 1;
+
+	@Nullable
+	private BrokerClusterTransport clusterTransport;
+
+	@Nullable
+	private volatile SimpleBrokerCluster cluster;
+
 
 	/**
 	 * Create a SimpleBrokerMessageHandler instance with the given message channels
@@ -97,6 +108,8 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 	 * {@link #setPathMatcher}, if the custom registry is not an instance of
 	 * {@link DefaultSubscriptionRegistry}, the provided PathMatcher is not used
 	 * and must be configured directly on the custom registry.
+	 * <p>For a large number of sessions and destinations, consider a
+	 * {@link TrieSubscriptionRegistry}.
 	 */
 	public void setSubscriptionRegistry(SubscriptionRegistry subscriptionRegistry) {
 		Assert.notNull(subscriptionRegistry, "SubscriptionRegistry must not be null");
@@ -217,9 +230,63 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 		return this.headerInitializer;
 	}
 
+	/**
+	 * Configure the maximum number of messages to hand over to the client
+	 * outbound channel at once when broadcasting a message to its subscribers.
+	 * <p>With a value greater than 1 and an {@link ExecutorSubscribableChannel}
+	 * as client outbound channel, the messages for the subscriptions of a
+	 * destination are sent in batches through
+	 * {@link ExecutorSubscribableChannel#sendAll}, i.e. with one executor task
+	 * per batch rather than one per subscription, and share the headers
+	 * prepared once per broadcast, except for the session and subscription id.
+	 * Interceptors are still applied to each message individually.
+	 * <p>By default this is set to 1, i.e. every message is sent individually.
+	 * @since 5.1
+	 */
+	public void setBroadcastBatchSize(int broadcastBatchSize) {
+		Assert.isTrue(broadcastBatchSize > 0, "Broadcast batch size must be greater than 0");
+		this.broadcastBatchSize = broadcastBatchSize;
+	}
+
+	/**
+	 * Return the configured broadcast batch size.
+	 * @since 5.1
+	 */
+	public int getBroadcastBatchSize() {
+		return this.broadcastBatchSize;
+	}
+
+	/**
+	 * Configure a {@link BrokerClusterTransport} in order to run this broker
+	 * as one node of a cluster. Subscriptions are then replicated to the other
+	 * nodes, and messages are forwarded to every other node with matching
+	 * subscriptions, once per node, for delivery to its local subscribers.
+	 * <p>Only messages with a {@code byte[]} payload are forwarded.
+	 * <p>By default this is not set, i.e. the broker serves local sessions only.
+	 * @since 5.1
+	 * @see LoopbackBrokerClusterTransport
+	 * @see org.springframework.messaging.simp.stomp.ReactorNettyBrokerClusterTransport
+	 */
+	public void setClusterTransport(@Nullable BrokerClusterTransport clusterTransport) {
+		this.clusterTransport = clusterTransport;
+	}
+
+	/**
+	 * Return the configured cluster transport, if any.
+	 * @since 5.1
+	 */
+	@Nullable
+	public BrokerClusterTransport getClusterTransport() {
+		return this.clusterTransport;
+	}
+
 
 	@Override
 	public void startInternal() {
+		if (this.clusterTransport != null) {
+			this.cluster = new SimpleBrokerCluster(this, this.clusterTransport, this::createRemoteSubscriptionRegistry);
+			this.cluster.start();
+		}
 		publishBrokerAvailableEvent();
 		if (this.taskScheduler != null) {
 			long interval = initHeartbeatTaskDelay();
@@ -252,6 +319,22 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 		if (this.heartbeatFuture != null) {
 			this.heartbeatFuture.cancel(true);
 		}
+		if (this.cluster != null) {
+			this.cluster.stop();
+			this.cluster = null;
+		}
+	}
+
+	private SubscriptionRegistry createRemoteSubscriptionRegistry() {
+		DefaultSubscriptionRegistry registry = new DefaultSubscriptionRegistry();
+		if (this.pathMatcher != null) {
+			registry.setPathMatcher(this.pathMatcher);
+		}
+		if (this.subscriptionRegistry instanceof DefaultSubscriptionRegistry) {
+			registry.setSelectorHeaderName(
+					((DefaultSubscriptionRegistry) this.subscriptionRegistry).getSelectorHeaderName());
+		}
+		return registry;
 	}
 
 	@Override
@@ -270,6 +353,10 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 		if (SimpMessageType.MESSAGE.equals(messageType)) {
 			logMessage(message);
 			sendMessageToSubscribers(destination, message);
+			SimpleBrokerCluster cluster = this.cluster;
+			if (cluster != null && destination != null) {
+				cluster.publish(destination, message);
+			}
 		}
 		else if (SimpMessageType.CONNECT.equals(messageType)) {
 			logMessage(message);
@@ -300,10 +387,18 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 		else if (SimpMessageType.SUBSCRIBE.equals(messageType)) {
 			logMessage(message);
 			this.subscriptionRegistry.registerSubscription(message);
+			SimpleBrokerCluster cluster = this.cluster;
+			if (cluster != null) {
+				cluster.subscribe(message);
+			}
 		}
 		else if (SimpMessageType.UNSUBSCRIBE.equals(messageType)) {
 			logMessage(message);
 			this.subscriptionRegistry.unregisterSubscription(message);
+			SimpleBrokerCluster cluster = this.cluster;
+			if (cluster != null) {
+				cluster.unsubscribe(message);
+			}
 		}
 	}
 
@@ -333,6 +428,10 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 	private void handleDisconnect(String sessionId, @Nullable Principal user, @Nullable Message<?> origMessage) {
 		this.sessions.remove(sessionId);
 		this.subscriptionRegistry.unregisterAllSubscriptions(sessionId);
+		SimpleBrokerCluster cluster = this.cluster;
+		if (cluster != null) {
+			cluster.disconnect(sessionId);
+		}
 		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT_ACK);
 		accessor.setSessionId(sessionId);
 		if (user != null) {
@@ -351,18 +450,17 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 		if (!subscriptions.isEmpty() && logger.isDebugEnabled()) {
 			logger.debug("Broadcasting to " + subscriptions.size() + " sessions.");
 		}
+		MessageChannel outboundChannel = getClientOutboundChannel();
+		if (this.broadcastBatchSize > 1 && outboundChannel instanceof ExecutorSubscribableChannel) {
+			sendInBatches((ExecutorSubscribableChannel) outboundChannel, subscriptions, message);
+			return;
+		}
 		long now = System.currentTimeMillis();
 		for (Map.Entry<String, List<String>> subscriptionEntry : subscriptions.entrySet()) {
 			for (String subscriptionId : subscriptionEntry.getValue()) {
-				SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
-				initHeaders(headerAccessor);
-				headerAccessor.setSessionId(subscriptionEntry.getKey());
-				headerAccessor.setSubscriptionId(subscriptionId);
-				headerAccessor.copyHeadersIfAbsent(message.getHeaders());
-				Object payload = message.getPayload();
-				Message<?> reply = MessageBuilder.createMessage(payload, headerAccessor.getMessageHeaders());
+				Message<?> reply = createMessageForSubscription(subscriptionEntry.getKey(), subscriptionId, message);
 				try {
-					getClientOutboundChannel().send(reply);
+					outboundChannel.send(reply);
 				}
 				catch (Throwable ex) {
 					if (logger.isErrorEnabled()) {
@@ -379,6 +477,74 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 		}
 	}
 
+	private void sendInBatches(ExecutorSubscribableChannel outboundChannel,
+			MultiValueMap<String, String> subscriptions, Message<?> message) {
+
+		long now = System.currentTimeMillis();
+		Map<String, Object> broadcastHeaders = getBroadcastHeaders(message);
+		List<Message<?>> batch = new ArrayList<>(this.broadcastBatchSize);
+		for (Map.Entry<String, List<String>> subscriptionEntry : subscriptions.entrySet()) {
+			String sessionId = subscriptionEntry.getKey();
+			for (String subscriptionId : subscriptionEntry.getValue()) {
+				batch.add(createBroadcastMessage(broadcastHeaders, sessionId, subscriptionId, message.getPayload()));
+				if (batch.size() == this.broadcastBatchSize) {
+					sendBatch(outboundChannel, batch, message);
+					batch = new ArrayList<>(this.broadcastBatchSize);
+				}
+			}
+			SessionInfo info = this.sessions.get(sessionId);
+			if (info != null) {
+				info.setLastWriteTime(now);
+			}
+		}
+		if (!batch.isEmpty()) {
+			sendBatch(outboundChannel, batch, message);
+		}
+	}
+
+	/**
+	 * Prepare the headers shared by all messages of a broadcast, i.e. all
+	 * headers but the session id and subscription id of each recipient.
+	 */
+	private Map<String, Object> getBroadcastHeaders(Message<?> message) {
+		SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		initHeaders(headerAccessor);
+		headerAccessor.copyHeadersIfAbsent(message.getHeaders());
+		Map<String, Object> headers = headerAccessor.toMap();
+		headers.remove(MessageHeaders.ID);
+		headers.remove(MessageHeaders.TIMESTAMP);
+		return headers;
+	}
+
+	private Message<?> createBroadcastMessage(Map<String, Object> broadcastHeaders,
+			String sessionId, String subscriptionId, Object payload) {
+
+		Map<String, Object> headers = new HashMap<>(broadcastHeaders);
+		headers.put(SimpMessageHeaderAccessor.SESSION_ID_HEADER, sessionId);
+		headers.put(SimpMessageHeaderAccessor.SUBSCRIPTION_ID_HEADER, subscriptionId);
+		return MessageBuilder.createMessage(payload, new MessageHeaders(headers));
+	}
+
+	private void sendBatch(ExecutorSubscribableChannel outboundChannel, List<Message<?>> batch, Message<?> message) {
+		try {
+			outboundChannel.sendAll(batch);
+		}
+		catch (Throwable ex) {
+			if (logger.isErrorEnabled()) {
+				logger.error("Failed to send " + message, ex);
+			}
+		}
+	}
+
+	private Message<?> createMessageForSubscription(String sessionId, String subscriptionId, Message<?> message) {
+		SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		initHeaders(headerAccessor);
+		headerAccessor.setSessionId(sessionId);
+		headerAccessor.setSubscriptionId(subscriptionId);
+		headerAccessor.copyHeadersIfAbsent(message.getHeaders());
+		return MessageBuilder.createMessage(message.getPayload(), headerAccessor.getMessageHeaders());
+	}
+
 	@Override
 	public String toString() {
 		return "SimpleBrokerMessageHandler [" + this.subscriptionRegistry + "]";
@@ -0,0 +1,564 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp.broker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelEvaluationException;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+
+/**
+ * Implementation of {@link SubscriptionRegistry} that indexes subscribed
+ * destinations in a trie of destination segments, intended for a large
+ * number of sessions and destinations.
+ *
+ * <p>Literal segments are looked up by key and only segments containing
+ * Ant-style wildcards or URI template variables are matched individually,
+ * so that the cost of {@link #findSubscriptions} depends on the structure
+ * of the subscribed destinations rather than on the number of sessions and
+ * subscriptions. Each subscribed destination keeps its subscribers in a
+ * concurrent map that is handed out as a read-only view, without copying,
+ * unless several subscribed destinations match a message destination.
+ *
+ * <p>Subscribers of an existing destination are added and removed under
+ * one of several striped locks, whereas the trie itself is only modified
+ * on the first subscription to a destination and after the last one has
+ * been removed. There is no cache of resolved destinations to invalidate.
+ *
+ * <p>Destinations are matched with the same semantics as a
+ * {@link DefaultSubscriptionRegistry} with an {@link AntPathMatcher} using
+ * the configured {@link #setPathSeparator path separator}. A
+ * {@link #setSelectorHeaderName selector} header is supported as well.
+ *
+ * @since 5.1
+ * @see DefaultSubscriptionRegistry
+ * @see SimpleBrokerMessageHandler#setSubscriptionRegistry
+ */
+public class TrieSubscriptionRegistry extends AbstractSubscriptionRegistry {
+
+	private static final int LOCK_STRIPES = 64;
+
+	private static final MultiValueMap<String, String> EMPTY_MAP =
+			CollectionUtils.toMultiValueMap(Collections.emptyMap());
+
+
+	private String pathSeparator = AntPathMatcher.DEFAULT_PATH_SEPARATOR;
+
+	private AntPathMatcher pathMatcher = new AntPathMatcher();
+
+	private String selectorHeaderName = "selector";
+
+	private volatile boolean selectorHeaderInUse = false;
+
+	private final ExpressionParser expressionParser = new SpelExpressionParser();
+
+	/** Root of the trie; also used as lock for structural modifications */
+	private final Node root = new Node();
+
+	/** Subscribed destination -> subscribers, for updates without trie traversal */
+	private final ConcurrentMap<String, DestinationSubscriptions> destinations = new ConcurrentHashMap<>();
+
+	/** Session id -> (subscription id -> subscription) */
+	private final ConcurrentMap<String, Map<String, Subscription>> sessions = new ConcurrentHashMap<>();
+
+	private final Object[] locks = new Object[LOCK_STRIPES];
+
+
+	public TrieSubscriptionRegistry() {
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			this.locks[i] = new Object();
+		}
+	}
+
+
+	/**
+	 * Specify the path separator to split destinations into segments with,
+	 * e.g. "." for destinations such as "price.stock.*".
+	 * <p>Default is "/", as with a default {@link AntPathMatcher}.
+	 * <p>Needs to be set before registering any subscriptions.
+	 */
+	public void setPathSeparator(String pathSeparator) {
+		Assert.hasLength(pathSeparator, "'pathSeparator' must not be empty");
+		Assert.state(this.destinations.isEmpty(), "Cannot change path separator with subscriptions registered");
+		this.pathSeparator = pathSeparator;
+		this.pathMatcher = new AntPathMatcher(pathSeparator);
+	}
+
+	/**
+	 * Return the path separator to split destinations into segments with.
+	 */
+	public String getPathSeparator() {
+		return this.pathSeparator;
+	}
+
+	/**
+	 * Configure the name of a selector header that a subscription message can
+	 * have in order to filter messages based on their headers.
+	 * <p>By default this is set to "selector".
+	 * @see DefaultSubscriptionRegistry#setSelectorHeaderName
+	 */
+	public void setSelectorHeaderName(String selectorHeaderName) {
+		Assert.notNull(selectorHeaderName, "'selectorHeaderName' must not be null");
+		this.selectorHeaderName = selectorHeaderName;
+	}
+
+	/**
+	 * Return the name for the selector header.
+	 */
+	public String getSelectorHeaderName() {
+		return this.selectorHeaderName;
+	}
+
+
+	@Override
+	protected void addSubscriptionInternal(
+			String sessionId, String subsId, String destination, Message<?> message) {
+
+		Expression expression = null;
+		String selector = SimpMessageHeaderAccessor.getFirstNativeHeader(getSelectorHeaderName(), message.getHeaders());
+		if (selector != null) {
+			try {
+				expression = this.expressionParser.parseExpression(selector);
+				this.selectorHeaderInUse = true;
+				if (logger.isTraceEnabled()) {
+					logger.trace("Subscription selector: [" + selector + "]");
+				}
+			}
+			catch (Throwable ex) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Failed to parse selector: " + selector, ex);
+				}
+			}
+		}
+
+		Subscription subscription = new Subscription(subsId, destination, expression);
+		Subscription[] previous = new Subscription[1];
+		this.sessions.compute(sessionId, (key, subscriptions) -> {
+			if (subscriptions == null) {
+				subscriptions = new ConcurrentHashMap<>(4);
+			}
+			previous[0] = subscriptions.put(subsId, subscription);
+			return subscriptions;
+		});
+		if (previous[0] != null) {
+			if (previous[0].getDestination().equals(destination)) {
+				return;
+			}
+			removeFromDestination(previous[0].getDestination(), sessionId, subsId);
+		}
+		addToDestination(destination, sessionId, subsId);
+	}
+
+	@Override
+	protected void removeSubscriptionInternal(String sessionId, String subsId, Message<?> message) {
+		Subscription[] removed = new Subscription[1];
+		this.sessions.computeIfPresent(sessionId, (key, subscriptions) -> {
+			removed[0] = subscriptions.remove(subsId);
+			return (subscriptions.isEmpty() ? null : subscriptions);
+		});
+		if (removed[0] != null) {
+			removeFromDestination(removed[0].getDestination(), sessionId, subsId);
+		}
+	}
+
+	@Override
+	public void unregisterAllSubscriptions(String sessionId) {
+		Map<String, Subscription> subscriptions = this.sessions.remove(sessionId);
+		if (subscriptions != null) {
+			for (Subscription subscription : subscriptions.values()) {
+				removeFromDestination(subscription.getDestination(), sessionId, subscription.getId());
+			}
+		}
+	}
+
+	@Override
+	protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+		String[] segments = tokenize(destination);
+		List<DestinationSubscriptions> matches = new ArrayList<>(2);
+		collectMatches(this.root, segments, 0, destination, matches);
+
+		MultiValueMap<String, String> result;
+		if (matches.isEmpty()) {
+			result = EMPTY_MAP;
+		}
+		else if (matches.size() == 1) {
+			result = matches.get(0).getSubscribers();
+		}
+		else {
+			result = new LinkedMultiValueMap<>();
+			for (DestinationSubscriptions match : matches) {
+				for (Map.Entry<String, List<String>> entry : match.getSubscribers().entrySet()) {
+					List<String> subsIds = result.get(entry.getKey());
+					if (subsIds == null) {
+						result.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+					}
+					else {
+						subsIds.addAll(entry.getValue());
+					}
+				}
+			}
+		}
+		return filterSubscriptions(result, message);
+	}
+
+	private MultiValueMap<String, String> filterSubscriptions(
+			MultiValueMap<String, String> allMatches, Message<?> message) {
+
+		if (!this.selectorHeaderInUse) {
+			return allMatches;
+		}
+		EvaluationContext context = null;
+		MultiValueMap<String, String> result = new LinkedMultiValueMap<>(allMatches.size());
+		for (Map.Entry<String, List<String>> entry : allMatches.entrySet()) {
+			Map<String, Subscription> subscriptions = this.sessions.get(entry.getKey());
+			if (subscriptions == null) {
+				continue;
+			}
+			for (String subId : entry.getValue()) {
+				Subscription sub = subscriptions.get(subId);
+				if (sub == null) {
+					continue;
+				}
+				Expression expression = sub.getSelectorExpression();
+				if (expression == null) {
+					result.add(entry.getKey(), subId);
+					continue;
+				}
+				if (context == null) {
+					context = new StandardEvaluationContext(message);
+					context.getPropertyAccessors().add(new DefaultSubscriptionRegistry.SimpMessageHeaderPropertyAccessor());
+				}
+				try {
+					if (Boolean.TRUE.equals(expression.getValue(context, Boolean.class))) {
+						result.add(entry.getKey(), subId);
+					}
+				}
+				catch (SpelEvaluationException ex) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Failed to evaluate selector: " + ex.getMessage());
+					}
+				}
+				catch (Throwable ex) {
+					logger.debug("Failed to evaluate selector", ex);
+				}
+			}
+		}
+		return result;
+	}
+
+
+	private void addToDestination(String destination, String sessionId, String subsId) {
+		DestinationSubscriptions subs = this.destinations.get(destination);
+		if (subs != null) {
+			synchronized (getLock(destination)) {
+				if (!subs.isRemoved()) {
+					subs.addSubscription(sessionId, subsId);
+					return;
+				}
+			}
+		}
+		// First subscription to the destination (or racing with the removal
+		// of its last one): insert into the trie under the structural lock
+		synchronized (this.root) {
+			subs = this.destinations.get(destination);
+			if (subs == null) {
+				subs = new DestinationSubscriptions(destination);
+				Node node = this.root;
+				for (String segment : tokenize(destination)) {
+					node = node.obtainChild(segment);
+				}
+				node.destinations.put(destination, subs);
+				this.destinations.put(destination, subs);
+			}
+			synchronized (getLock(destination)) {
+				subs.addSubscription(sessionId, subsId);
+			}
+		}
+	}
+
+	private void removeFromDestination(String destination, String sessionId, String subsId) {
+		DestinationSubscriptions subs = this.destinations.get(destination);
+		if (subs == null) {
+			return;
+		}
+		boolean empty;
+		synchronized (getLock(destination)) {
+			subs.removeSubscription(sessionId, subsId);
+			empty = subs.isEmpty();
+		}
+		if (empty) {
+			synchronized (this.root) {
+				synchronized (getLock(destination)) {
+					if (subs.isRemoved() || !subs.isEmpty()) {
+						return;
+					}
+					subs.markRemoved();
+				}
+				this.destinations.remove(destination);
+				removeFromTrie(this.root, tokenize(destination), 0, destination);
+			}
+		}
+	}
+
+	/**
+	 * Remove the given destination from the trie, pruning empty nodes.
+	 * @return whether the given node is empty afterwards
+	 */
+	private boolean removeFromTrie(Node node, String[] segments, int index, String destination) {
+		if (index == segments.length) {
+			node.destinations.remove(destination);
+		}
+		else {
+			String segment = segments[index];
+			Node child = node.getChild(segment);
+			if (child != null && removeFromTrie(child, segments, index + 1, destination)) {
+				node.removeChild(segment);
+			}
+		}
+		return node.isEmpty();
+	}
+
+	private void collectMatches(Node node, String[] segments, int index, String destination,
+			List<DestinationSubscriptions> matches) {
+
+		Node doubleWildcard = node.doubleWildcardChild;
+		if (doubleWildcard != null) {
+			for (int i = index; i <= segments.length; i++) {
+				collectMatches(doubleWildcard, segments, i, destination, matches);
+			}
+		}
+		if (index == segments.length) {
+			for (DestinationSubscriptions subs : node.destinations.values()) {
+				if (!matches.contains(subs) && (subs.getDestination().equals(destination) ||
+						this.pathMatcher.match(subs.getDestination(), destination))) {
+					matches.add(subs);
+				}
+			}
+			return;
+		}
+		String segment = segments[index];
+		Node child = node.literalChildren.get(segment);
+		if (child != null) {
+			collectMatches(child, segments, index + 1, destination, matches);
+		}
+		if (!node.patternChildren.isEmpty()) {
+			for (Map.Entry<String, Node> entry : node.patternChildren.entrySet()) {
+				if (this.pathMatcher.match(entry.getKey(), segment)) {
+					collectMatches(entry.getValue(), segments, index + 1, destination, matches);
+				}
+			}
+		}
+	}
+
+	private String[] tokenize(String destination) {
+		return StringUtils.tokenizeToStringArray(destination, this.pathSeparator, false, true);
+	}
+
+	private Object getLock(String destination) {
+		return this.locks[(destination.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+	}
+
+	@Override
+	public String toString() {
+		return "TrieSubscriptionRegistry[" + this.destinations.size() + " destination(s), " +
+				this.sessions.size() + " session(s)]";
+	}
+
+
+	/**
+	 * A node in the trie, representing a destination segment.
+	 */
+	private static final class Node {
+
+		final ConcurrentMap<String, Node> literalChildren = new ConcurrentHashMap<>(4);
+
+		final ConcurrentMap<String, Node> patternChildren = new ConcurrentHashMap<>(4);
+
+		@Nullable
+		volatile Node doubleWildcardChild;
+
+		/** Subscribed destinations ending at this node */
+		final ConcurrentMap<String, DestinationSubscriptions> destinations = new ConcurrentHashMap<>(2);
+
+		@Nullable
+		public Node getChild(String segment) {
+			if ("**".equals(segment)) {
+				return this.doubleWildcardChild;
+			}
+			return (isPattern(segment) ? this.patternChildren : this.literalChildren).get(segment);
+		}
+
+		public Node obtainChild(String segment) {
+			if ("**".equals(segment)) {
+				Node child = this.doubleWildcardChild;
+				if (child == null) {
+					child = new Node();
+					this.doubleWildcardChild = child;
+				}
+				return child;
+			}
+			return (isPattern(segment) ? this.patternChildren : this.literalChildren)
+					.computeIfAbsent(segment, key -> new Node());
+		}
+
+		public void removeChild(String segment) {
+			if ("**".equals(segment)) {
+				this.doubleWildcardChild = null;
+			}
+			else {
+				(isPattern(segment) ? this.patternChildren : this.literalChildren).remove(segment);
+			}
+		}
+
+		public boolean isEmpty() {
+			return (this.destinations.isEmpty() && this.literalChildren.isEmpty() &&
+					this.patternChildren.isEmpty() && this.doubleWildcardChild == null);
+		}
+
+		private static boolean isPattern(String segment) {
+			return (segment.indexOf('*') != -1 || segment.indexOf('?') != -1 || segment.indexOf('{') != -1);
+		}
+	}
+
+
+	/**
+	 * The subscribers of a subscribed destination: session id -> subscription ids.
+	 */
+	private static final class DestinationSubscriptions {
+
+		private final String destination;
+
+		private final ConcurrentMap<String, List<String>> subscriptions = new ConcurrentHashMap<>();
+
+		private final MultiValueMap<String, String> subscribers =
+				CollectionUtils.toMultiValueMap(Collections.unmodifiableMap(this.subscriptions));
+
+		/** Guarded by the lock stripe for the destination */
+		private boolean removed;
+
+		public DestinationSubscriptions(String destination) {
+			this.destination = destination;
+		}
+
+		public String getDestination() {
+			return this.destination;
+		}
+
+		/**
+		 * Return a read-only view of the subscribers.
+		 */
+		public MultiValueMap<String, String> getSubscribers() {
+			return this.subscribers;
+		}
+
+		public void addSubscription(String sessionId, String subsId) {
+			// Copy-on-write per session, leaving lists handed out unchanged
+			this.subscriptions.compute(sessionId, (key, subsIds) -> {
+				if (subsIds == null) {
+					return Collections.singletonList(subsId);
+				}
+				if (subsIds.contains(subsId)) {
+					return subsIds;
+				}
+				List<String> result = new ArrayList<>(subsIds.size() + 1);
+				result.addAll(subsIds);
+				result.add(subsId);
+				return Collections.unmodifiableList(result);
+			});
+		}
+
+		public void removeSubscription(String sessionId, String subsId) {
+			this.subscriptions.computeIfPresent(sessionId, (key, subsIds) -> {
+				if (!subsIds.contains(subsId)) {
+					return subsIds;
+				}
+				if (subsIds.size() == 1) {
+					return null;
+				}
+				List<String> result = new ArrayList<>(subsIds);
+				result.remove(subsId);
+				return Collections.unmodifiableList(result);
+			});
+		}
+
+		public boolean isEmpty() {
+			return this.subscriptions.isEmpty();
+		}
+
+		public boolean isRemoved() {
+			return this.removed;
+		}
+
+		public void markRemoved() {
+			this.removed = true;
+		}
+	}
+
+
+	private static final class Subscription {
+
+		private final String id;
+
+		private final String destination;
+
+		@Nullable
+		private final Expression selectorExpression;
+
+		public Subscription(String id, String destination, @Nullable Expression selectorExpression) {
+			this.id = id;
+			this.destination = destination;
+			this.selectorExpression = selectorExpression;
+		}
+
+		public String getId() {
+			return this.id;
+		}
+
+		public String getDestination() {
+			return this.destination;
+		}
+
+		@Nullable
+		public Expression getSelectorExpression() {
+			return this.selectorExpression;
+		}
+
+		@Override
+		public String toString() {
+			return "subscription(id=" + this.id + ", destination=" + this.destination + ")";
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.7
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -38,6 +38,8 @@ public class ChannelRegistration {
 
 	private final List<ChannelInterceptor> interceptors = new ArrayList<>();
 
+	private boolean preserveSessionOrder;
+
 
 	/**
 	 * Configure the thread pool backing this message channel.
@@ -69,6 +71,21 @@ public class ChannelRegistration {
 		return this;
 	}
 
+	/**
+	 * Whether to preserve the order of messages per session, i.e. to handle
+	 * the messages of a session one after the other in the order they were
+	 * sent to the channel, while messages of different sessions are still
+	 * handled in parallel.
+	 * <p>By default this is set to {@code false}, in which case messages are
+	 * handled in parallel regardless of their session.
+	 * @since 5.1
+	 * @see org.springframework.messaging.support.OrderedMessageExecutor
+	 */
+	public ChannelRegistration preserveSessionOrder(boolean preserveSessionOrder) {
+		this.preserveSessionOrder = preserveSessionOrder;
+		return this;
+	}
+
 	/**
 	 * Configure interceptors for the message channel.
 	 * @deprecated as of 4.3.12, in favor of {@link #interceptors(ChannelInterceptor...)}
@@ -94,4 +111,8 @@ public class ChannelRegistration {
 		return this.interceptors;
 	}
 
+	protected boolean isPreserveSessionOrder() {
+		return this.preserveSessionOrder;
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.messaging.simp.config;
 import org.springframework.lang.Nullable;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.broker.BrokerClusterTransport;
 import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
 import org.springframework.scheduling.TaskScheduler;
 
@@ -36,6 +37,12 @@ public class SimpleBrokerRegistration extends AbstractBrokerRegistration {
 	@Nullable
 	private long[] heartbeat;
 
+	@Nullable
+	private Integer broadcastBatchSize;
+
+	@Nullable
+	private BrokerClusterTransport clusterTransport;
+
 
 	public SimpleBrokerRegistration(SubscribableChannel inChannel, MessageChannel outChannel, String[] prefixes) {
 		super(inChannel, outChannel, prefixes);
@@ -68,6 +75,30 @@ public class SimpleBrokerRegistration extends AbstractBrokerRegistration {
 		return this;
 	}
 
+	/**
+	 * Configure the maximum number of messages to hand over to the client
+	 * outbound channel at once when broadcasting a message to its subscribers.
+	 * <p>By default this is set to 1, i.e. every message is sent individually.
+	 * @since 5.1
+	 * @see SimpleBrokerMessageHandler#setBroadcastBatchSize
+	 */
+	public SimpleBrokerRegistration setBroadcastBatchSize(int broadcastBatchSize) {
+		this.broadcastBatchSize = broadcastBatchSize;
+		return this;
+	}
+
+	/**
+	 * Configure the transport for exchanging subscriptions and messages with
+	 * the other nodes of a cluster of simple brokers.
+	 * <p>By default this is not set, i.e. the broker serves local sessions only.
+	 * @since 5.1
+	 * @see SimpleBrokerMessageHandler#setClusterTransport
+	 */
+	public SimpleBrokerRegistration setClusterTransport(BrokerClusterTransport clusterTransport) {
+		this.clusterTransport = clusterTransport;
+		return this;
+	}
+
 
 	@Override
 	protected SimpleBrokerMessageHandler getMessageHandler(SubscribableChannel brokerChannel) {
@@ -79,6 +110,12 @@ public class SimpleBrokerRegistration extends AbstractBrokerRegistration {
 		if (this.heartbeat != null) {
 			handler.setHeartbeatValue(this.heartbeat);
 		}
+		if (this.broadcastBatchSize != null) {
+			handler.setBroadcastBatchSize(this.broadcastBatchSize);
+		}
+		if (this.clusterTransport != null) {
+			handler.setClusterTransport(this.clusterTransport);
+		}
 		return handler;
 	}
 
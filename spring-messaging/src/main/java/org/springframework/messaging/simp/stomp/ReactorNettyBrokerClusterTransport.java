@@ -0,0 +1,476 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp.stomp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.reactivestreams.Publisher;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.NettyInbound;
+import reactor.ipc.netty.NettyOutbound;
+import reactor.ipc.netty.tcp.TcpServer;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.BrokerClusterTransport;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.tcp.FixedIntervalReconnectStrategy;
+import org.springframework.messaging.tcp.ReconnectStrategy;
+import org.springframework.messaging.tcp.TcpConnection;
+import org.springframework.messaging.tcp.TcpConnectionHandler;
+import org.springframework.messaging.tcp.reactor.ReactorNettyTcpClient;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+
+/**
+ * A {@link BrokerClusterTransport} that exchanges messages between nodes over
+ * TCP, encoded as STOMP frames.
+ *
+ * <p>Every node listens on a port for connections from the other nodes and
+ * connects to each of the {@link #addNode configured nodes} with a
+ * {@link ReactorNettyTcpClient}, reconnecting according to the configured
+ * {@link #setReconnectStrategy ReconnectStrategy}. Messages flow in one
+ * direction per connection: a node only sends over the connections it
+ * established, and only receives over the connections it accepted. The
+ * messages of a call to {@link #send} are encoded into a single buffer and
+ * written to the connection at once.
+ *
+ * <p>A node is {@linkplain Listener#nodeAvailable available} while the
+ * connection to it is established. The state received from a node is
+ * {@linkplain Listener#nodeStateReset reset} whenever the connection from
+ * it closes or is re-established, since the node sends its complete state
+ * again after reconnecting.
+ *
+ * <p>The membership of the cluster is static: every node must be configured
+ * with all other nodes.
+ *
+ * <p><strong>Note:</strong> connections between nodes are neither authenticated
+ * nor encrypted, and any client connecting to the port can subscribe to and
+ * publish messages on behalf of a node. The port must therefore only be
+ * reachable from within a trusted network. By default, the transport only
+ * listens on the loopback interface; use {@link #setHost} to bind to the
+ * interface of the network that the other nodes are on.
+ *
+ * @since 5.1
+ */
+public class ReactorNettyBrokerClusterTransport implements BrokerClusterTransport {
+
+	static final String NODE_HEADER = "node";
+
+	private static final Log logger = LogFactory.getLog(ReactorNettyBrokerClusterTransport.class);
+
+
+	private final String localNodeId;
+
+	private final int port;
+
+	private String host = "127.0.0.1";
+
+	private final Map<String, NodeAddress> nodes = new LinkedHashMap<>();
+
+	private ReconnectStrategy reconnectStrategy = new FixedIntervalReconnectStrategy(5000);
+
+	private final StompEncoder encoder = new StompEncoder();
+
+	private final DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+	private final List<ReactorNettyTcpClient<byte[]>> tcpClients = new ArrayList<>();
+
+	/* Connections to other nodes, for sending */
+	private final Map<String, TcpConnection<byte[]>> connections = new ConcurrentHashMap<>();
+
+	/* Connections from other nodes, for receiving */
+	private final Map<String, InboundConnection> inboundConnections = new ConcurrentHashMap<>();
+
+	/* All accepted connections, including those that did not identify their node yet */
+	private final Set<InboundConnection> acceptedConnections = ConcurrentHashMap.newKeySet();
+
+	@Nullable
+	private NettyContext server;
+
+	@Nullable
+	private volatile Listener listener;
+
+
+	/**
+	 * Create a new {@code ReactorNettyBrokerClusterTransport}.
+	 * @param localNodeId the id of the local node, unique within the cluster
+	 * @param port the port to listen on for connections from other nodes
+	 */
+	public ReactorNettyBrokerClusterTransport(String localNodeId, int port) {
+		Assert.hasText(localNodeId, "Node id must not be empty");
+		this.localNodeId = localNodeId;
+		this.port = port;
+	}
+
+
+	/**
+	 * Add another node of the cluster to connect to.
+	 * @param nodeId the id of the node
+	 * @param host the host the node listens on
+	 * @param port the port the node listens on
+	 */
+	public void addNode(String nodeId, String host, int port) {
+		Assert.hasText(nodeId, "Node id must not be empty");
+		Assert.isTrue(!this.localNodeId.equals(nodeId), "Node id must differ from the local node id");
+		Assert.state(this.listener == null, "Nodes must be added before the transport is started");
+		this.nodes.put(nodeId, new NodeAddress(host, port));
+	}
+
+	/**
+	 * Configure the host (name or IP address of a local interface) to listen
+	 * on for connections from other nodes.
+	 * <p>By default this is set to "127.0.0.1", accepting connections from the
+	 * local machine only. As connections are not authenticated, only bind to
+	 * an interface that is reachable from within a trusted network.
+	 */
+	public void setHost(String host) {
+		Assert.hasText(host, "Host must not be empty");
+		Assert.state(this.listener == null, "Host must be set before the transport is started");
+		this.host = host;
+	}
+
+	/**
+	 * Return the host to listen on for connections from other nodes.
+	 */
+	public String getHost() {
+		return this.host;
+	}
+
+	/**
+	 * Configure the strategy for reconnecting to other nodes.
+	 * <p>By default this is set to {@code FixedIntervalReconnectStrategy(5000)}.
+	 */
+	public void setReconnectStrategy(ReconnectStrategy reconnectStrategy) {
+		Assert.notNull(reconnectStrategy, "ReconnectStrategy must not be null");
+		this.reconnectStrategy = reconnectStrategy;
+	}
+
+	/**
+	 * Return the configured strategy for reconnecting to other nodes.
+	 */
+	public ReconnectStrategy getReconnectStrategy() {
+		return this.reconnectStrategy;
+	}
+
+	/**
+	 * Return the port to listen on for connections from other nodes.
+	 */
+	public int getPort() {
+		return this.port;
+	}
+
+	@Override
+	public String getLocalNodeId() {
+		return this.localNodeId;
+	}
+
+
+	@Override
+	public synchronized void start(Listener listener) {
+		Assert.notNull(listener, "Listener must not be null");
+		Assert.state(this.listener == null, "Already started");
+		this.listener = listener;
+		this.server = TcpServer.create(this.host, this.port).newHandler(this::handleInbound).block();
+		ClusterFrameCodec codec = new ClusterFrameCodec();
+		for (Map.Entry<String, NodeAddress> entry : this.nodes.entrySet()) {
+			NodeAddress address = entry.getValue();
+			ReactorNettyTcpClient<byte[]> tcpClient = new ReactorNettyTcpClient<>(address.host, address.port, codec);
+			this.tcpClients.add(tcpClient);
+			tcpClient.connect(new NodeConnectionHandler(entry.getKey()), this.reconnectStrategy);
+		}
+		if (logger.isInfoEnabled()) {
+			logger.info("Node " + this.localNodeId + " listening on " + this.host + ":" + this.port +
+					", connecting to " + this.nodes.keySet());
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (this.listener == null) {
+			return;
+		}
+		this.listener = null;
+		// Let the other nodes know that this node is gone before shutting down
+		if (this.server != null) {
+			this.server.dispose();
+			this.server = null;
+		}
+		for (InboundConnection connection : this.acceptedConnections) {
+			connection.close();
+		}
+		this.acceptedConnections.clear();
+		this.inboundConnections.clear();
+		for (ReactorNettyTcpClient<byte[]> tcpClient : this.tcpClients) {
+			try {
+				tcpClient.shutdown().get(5000, TimeUnit.MILLISECONDS);
+			}
+			catch (Throwable ex) {
+				logger.error("Error in shutdown of TCP client", ex);
+			}
+		}
+		this.tcpClients.clear();
+		this.connections.clear();
+	}
+
+	@Override
+	public void send(String nodeId, List<Message<byte[]>> messages) {
+		TcpConnection<byte[]> connection = this.connections.get(nodeId);
+		if (connection == null) {
+			if (logger.isTraceEnabled()) {
+				logger.trace("Dropping " + messages.size() + " message(s) for unavailable node " + nodeId);
+			}
+			return;
+		}
+		DataBuffer buffer = this.bufferFactory.allocateBuffer(256 * messages.size());
+		for (Message<byte[]> message : messages) {
+			StompCommand command = getCommand(SimpMessageHeaderAccessor.getMessageType(message.getHeaders()));
+			StompHeaderAccessor accessor = StompHeaderAccessor.create(command,
+					StompHeaderAccessor.wrap(message).toNativeHeaderMap());
+			this.encoder.encode(accessor.getMessageHeaders(), message.getPayload(), buffer);
+		}
+		byte[] frames = new byte[buffer.readableByteCount()];
+		buffer.read(frames);
+		sendFrames(nodeId, connection, frames);
+	}
+
+	private static StompCommand getCommand(@Nullable SimpMessageType messageType) {
+		if (SimpMessageType.MESSAGE.equals(messageType)) {
+			return StompCommand.SEND;
+		}
+		else if (SimpMessageType.SUBSCRIBE.equals(messageType)) {
+			return StompCommand.SUBSCRIBE;
+		}
+		else if (SimpMessageType.UNSUBSCRIBE.equals(messageType)) {
+			return StompCommand.UNSUBSCRIBE;
+		}
+		else if (SimpMessageType.DISCONNECT.equals(messageType)) {
+			return StompCommand.DISCONNECT;
+		}
+		throw new IllegalArgumentException("Unexpected message type " + messageType);
+	}
+
+	private void sendFrames(String nodeId, TcpConnection<byte[]> connection, byte[] frames) {
+		ListenableFuture<Void> future = connection.send(MessageBuilder.withPayload(frames).build());
+		future.addCallback(new ListenableFutureCallback<Void>() {
+			@Override
+			public void onSuccess(@Nullable Void result) {
+			}
+			@Override
+			public void onFailure(Throwable ex) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Failed to send to node " + nodeId + ": " + ex.getMessage());
+				}
+			}
+		});
+	}
+
+	private Publisher<Void> handleInbound(NettyInbound inbound, NettyOutbound outbound) {
+		InboundConnection connection = new InboundConnection(inbound.context());
+		this.acceptedConnections.add(connection);
+		inbound.context().addHandler(new ClusterFrameDecoder(new StompReactorNettyCodec()));
+		return inbound.receiveObject()
+				.cast(Message.class)
+				.doOnNext(connection::handleMessage)
+				.then()
+				.doFinally(signal -> connection.afterConnectionClosed());
+	}
+
+	@Override
+	public String toString() {
+		return "ReactorNettyBrokerClusterTransport[" + this.localNodeId + ", " + this.host + ":" + this.port + "]";
+	}
+
+
+	private static class NodeAddress {
+
+		private final String host;
+
+		private final int port;
+
+		NodeAddress(String host, int port) {
+			this.host = host;
+			this.port = port;
+		}
+	}
+
+
+	/**
+	 * Handles a connection to another node, over which messages are sent.
+	 */
+	private class NodeConnectionHandler implements TcpConnectionHandler<byte[]> {
+
+		private final String nodeId;
+
+		NodeConnectionHandler(String nodeId) {
+			this.nodeId = nodeId;
+		}
+
+		@Override
+		public void afterConnected(TcpConnection<byte[]> connection) {
+			Listener listener = ReactorNettyBrokerClusterTransport.this.listener;
+			if (listener == null) {
+				connection.close();
+				return;
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Connected to node " + this.nodeId);
+			}
+			StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+			accessor.setNativeHeader(NODE_HEADER, localNodeId);
+			sendFrames(this.nodeId, connection, encoder.encode(accessor.getMessageHeaders(), new byte[0]));
+			connections.put(this.nodeId, connection);
+			listener.nodeAvailable(this.nodeId);
+		}
+
+		@Override
+		public void afterConnectFailure(Throwable ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to connect to node " + this.nodeId + ": " + ex.getMessage());
+			}
+		}
+
+		@Override
+		public void handleMessage(Message<byte[]> message) {
+			// Nodes only send over the connections they established
+		}
+
+		@Override
+		public void handleFailure(Throwable ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failure on connection to node " + this.nodeId + ": " + ex.getMessage());
+			}
+		}
+
+		@Override
+		public void afterConnectionClosed() {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Connection to node " + this.nodeId + " closed");
+			}
+			connections.remove(this.nodeId);
+			Listener listener = ReactorNettyBrokerClusterTransport.this.listener;
+			if (listener != null) {
+				listener.nodeUnavailable(this.nodeId);
+			}
+		}
+	}
+
+
+	/**
+	 * A connection from another node, over which messages are received.
+	 */
+	private class InboundConnection {
+
+		private final NettyContext context;
+
+		@Nullable
+		private String nodeId;
+
+		InboundConnection(NettyContext context) {
+			this.context = context;
+		}
+
+		public void handleMessage(Message<?> frame) {
+			@SuppressWarnings("unchecked")
+			Message<byte[]> message = (Message<byte[]>) frame;
+			StompCommand command = StompHeaderAccessor.getCommand(message.getHeaders());
+			Listener listener = ReactorNettyBrokerClusterTransport.this.listener;
+			if (command == null || listener == null) {
+				return;
+			}
+			if (StompCommand.CONNECT.equals(command)) {
+				String nodeId = StompHeaderAccessor.getFirstNativeHeader(NODE_HEADER, message.getHeaders());
+				if (nodeId != null) {
+					this.nodeId = nodeId;
+					inboundConnections.put(nodeId, this);
+					// The node sends its complete state over the new connection
+					listener.nodeStateReset(nodeId);
+				}
+			}
+			else if (this.nodeId != null && inboundConnections.get(this.nodeId) == this) {
+				// Only from the current connection of the node, not from one it replaced
+				try {
+					listener.handleMessage(this.nodeId, message);
+				}
+				catch (Throwable ex) {
+					if (logger.isErrorEnabled()) {
+						logger.error("Failed to handle message from node " + this.nodeId, ex);
+					}
+				}
+			}
+		}
+
+		public void afterConnectionClosed() {
+			acceptedConnections.remove(this);
+			String nodeId = this.nodeId;
+			Listener listener = ReactorNettyBrokerClusterTransport.this.listener;
+			// A node that has already reconnected keeps the state it sent since
+			if (nodeId != null && inboundConnections.remove(nodeId, this) && listener != null) {
+				listener.nodeStateReset(nodeId);
+			}
+		}
+
+		public void close() {
+			this.context.dispose();
+		}
+	}
+
+
+	/**
+	 * Writes the frames that {@link #send} encoded up front as they are.
+	 */
+	private static class ClusterFrameCodec extends StompReactorNettyCodec {
+
+		@Override
+		public void encode(Message<byte[]> message, ByteBuf outputBuffer) {
+			outputBuffer.writeBytes(message.getPayload());
+		}
+	}
+
+
+	private static class ClusterFrameDecoder extends ByteToMessageDecoder {
+
+		private final StompReactorNettyCodec codec;
+
+		ClusterFrameDecoder(StompReactorNettyCodec codec) {
+			this.codec = codec;
+		}
+
+		@Override
+		protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+			out.addAll(this.codec.decode(in));
+		}
+	}
+
+}
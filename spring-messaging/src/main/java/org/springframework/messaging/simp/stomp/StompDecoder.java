@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,12 +16,16 @@
 
 package org.springframework.messaging.simp.stomp;
 
-import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -31,7 +35,8 @@ import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.messaging.support.MessageHeaderInitializer;
 import org.springframework.messaging.support.NativeMessageHeaderAccessor;
-import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.Assert;
+import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
 /**
@@ -207,57 +212,112 @@ public class StompDecoder {
 	}
 
 	private String readCommand(ByteBuffer byteBuffer) {
-		ByteArrayOutputStream command = new ByteArrayOutputStream(256);
-		while (byteBuffer.remaining() > 0 && !tryConsumeEndOfLine(byteBuffer)) {
-			command.write(byteBuffer.get());
-		}
-		return new String(command.toByteArray(), StandardCharsets.UTF_8);
+		int start = byteBuffer.position();
+		int end = readLine(byteBuffer);
+		return decodeString(byteBuffer, start, (end != -1 ? end : byteBuffer.position()));
 	}
 
+	/**
+	 * Read the header lines, copying them in one step out of the input buffer,
+	 * which may be reused once decoded. Header values are decoded from that
+	 * copy on first access, except for well-known values.
+	 */
 	private void readHeaders(ByteBuffer byteBuffer, StompHeaderAccessor headerAccessor) {
+		int headersStart = byteBuffer.position();
+		List<int[]> headerRanges = new ArrayList<>();
 		while (true) {
-			ByteArrayOutputStream headerStream = new ByteArrayOutputStream(256);
-			boolean headerComplete = false;
-			while (byteBuffer.hasRemaining()) {
-				if (tryConsumeEndOfLine(byteBuffer)) {
-					headerComplete = true;
-					break;
-				}
-				headerStream.write(byteBuffer.get());
-			}
-			if (headerStream.size() > 0 && headerComplete) {
-				String header = new String(headerStream.toByteArray(), StandardCharsets.UTF_8);
-				int colonIndex = header.indexOf(':');
-				if (colonIndex <= 0) {
+			int start = byteBuffer.position();
+			int end = readLine(byteBuffer);
+			if (end > start) {
+				int colonIndex = indexOf(byteBuffer, start, end, (byte) ':');
+				if (colonIndex <= start) {
 					if (byteBuffer.remaining() > 0) {
+						String header = decodeString(byteBuffer, start, end);
 						throw new StompConversionException("Illegal header: '" + header +
 								"'. A header must be of the form <name>:[<value>].");
 					}
 				}
 				else {
-					String headerName = unescape(header.substring(0, colonIndex));
-					String headerValue = unescape(header.substring(colonIndex + 1));
-					try {
-						headerAccessor.addNativeHeader(headerName, headerValue);
-					}
-					catch (InvalidMimeTypeException ex) {
-						if (byteBuffer.remaining() > 0) {
-							throw ex;
-						}
-					}
+					headerRanges.add(new int[] {start - headersStart, colonIndex - headersStart, end - headersStart});
 				}
 			}
 			else {
 				break;
 			}
 		}
+		if (headerRanges.isEmpty()) {
+			return;
+		}
+
+		int[] lastRange = headerRanges.get(headerRanges.size() - 1);
+		ByteBuffer headerBytes = ByteBuffer.wrap(copyBytes(byteBuffer, headersStart, headersStart + lastRange[2]));
+		Map<String, List<String>> nativeHeaders = headerAccessor.getNativeHeaders();
+		if (nativeHeaders == null) {
+			nativeHeaders = new LinkedMultiValueMap<>(headerRanges.size());
+			headerAccessor.setHeader(NativeMessageHeaderAccessor.NATIVE_HEADERS, nativeHeaders);
+		}
+		for (int[] range : headerRanges) {
+			String headerName = decodeHeaderString(headerBytes, range[0], range[1]);
+			List<String> values = nativeHeaders.get(headerName);
+			if (values == null) {
+				values = new LazyHeaderValues();
+				nativeHeaders.put(headerName, values);
+			}
+			if (values instanceof LazyHeaderValues) {
+				((LazyHeaderValues) values).add(headerBytes, range[1] + 1, range[2]);
+			}
+			else {
+				values.add(decodeHeaderString(headerBytes, range[1] + 1, range[2]));
+			}
+		}
+	}
+
+	/**
+	 * Decode a header name or value, unescaping it if necessary and using
+	 * a shared instance for well-known names and values.
+	 */
+	private static String decodeHeaderString(ByteBuffer byteBuffer, int start, int end) {
+		if (indexOf(byteBuffer, start, end, (byte) '\\') != -1) {
+			return unescape(decodeString(byteBuffer, start, end));
+		}
+		String common = CommonHeaderStrings.get(byteBuffer, start, end);
+		return (common != null ? common : decodeString(byteBuffer, start, end));
+	}
+
+	private static String decodeString(ByteBuffer byteBuffer, int start, int end) {
+		if (byteBuffer.hasArray()) {
+			return new String(byteBuffer.array(), byteBuffer.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+		}
+		return new String(copyBytes(byteBuffer, start, end), StandardCharsets.UTF_8);
+	}
+
+	private static byte[] copyBytes(ByteBuffer byteBuffer, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		if (byteBuffer.hasArray()) {
+			System.arraycopy(byteBuffer.array(), byteBuffer.arrayOffset() + start, bytes, 0, bytes.length);
+		}
+		else {
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = byteBuffer.get(start + i);
+			}
+		}
+		return bytes;
+	}
+
+	private static int indexOf(ByteBuffer byteBuffer, int start, int end, byte value) {
+		for (int i = start; i < end; i++) {
+			if (byteBuffer.get(i) == value) {
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	/**
 	 * See STOMP Spec 1.2:
 	 * <a href="http://stomp.github.io/stomp-specification-1.2.html#Value_Encoding">"Value Encoding"</a>.
 	 */
-	private String unescape(String inString) {
+	private static String unescape(String inString) {
 		StringBuilder sb = new StringBuilder(inString.length());
 		int pos = 0;  // position in the old string
 		int index = inString.indexOf("\\");
@@ -319,20 +379,43 @@ public class StompDecoder {
 			}
 		}
 		else {
-			ByteArrayOutputStream payload = new ByteArrayOutputStream(256);
-			while (byteBuffer.remaining() > 0) {
-				byte b = byteBuffer.get();
-				if (b == 0) {
-					return payload.toByteArray();
-				}
-				else {
-					payload.write(b);
-				}
+			int end = indexOf(byteBuffer, byteBuffer.position(), byteBuffer.limit(), (byte) 0);
+			if (end != -1) {
+				byte[] payload = copyBytes(byteBuffer, byteBuffer.position(), end);
+				// Explicit cast for compatibility with covariant return type on JDK 9's ByteBuffer
+				((Buffer) byteBuffer).position(end + 1);
+				return payload;
 			}
+			((Buffer) byteBuffer).position(byteBuffer.limit());
 		}
 		return null;
 	}
 
+	/**
+	 * Read up to and including the next EOL.
+	 * @return the index where the EOL starts, or -1 if the buffer has no EOL
+	 * in which case the buffer has been read completely
+	 */
+	private int readLine(ByteBuffer byteBuffer) {
+		int limit = byteBuffer.limit();
+		for (int i = byteBuffer.position(); i < limit; i++) {
+			byte b = byteBuffer.get(i);
+			if (b == '\n') {
+				((Buffer) byteBuffer).position(i + 1);
+				return i;
+			}
+			else if (b == '\r') {
+				if (i + 1 < limit && byteBuffer.get(i + 1) == '\n') {
+					((Buffer) byteBuffer).position(i + 2);
+					return i;
+				}
+				throw new StompConversionException("'\\r' must be followed by '\\n'");
+			}
+		}
+		((Buffer) byteBuffer).position(limit);
+		return -1;
+	}
+
 	/**
 	 * Try to read an EOL incrementing the buffer position if successful.
 	 * @return whether an EOL was consumed
@@ -357,4 +440,159 @@ public class StompDecoder {
 		return false;
 	}
 
+
+	/**
+	 * The values of a native header, decoded from the copied header bytes of
+	 * the frame on first access. Well-known values are resolved up front to
+	 * shared instances, and escaped values are unescaped up front in order to
+	 * reject invalid escape sequences while decoding. Supports modification
+	 * like any other header value list.
+	 */
+	@SuppressWarnings("serial")
+	private static class LazyHeaderValues extends AbstractList<String> implements RandomAccess, Serializable {
+
+		/* Decoded values, or HeaderValueRange for values not yet decoded */
+		private final List<Object> values = new ArrayList<>(1);
+
+		void add(ByteBuffer headerBytes, int start, int end) {
+			if (StompDecoder.indexOf(headerBytes, start, end, (byte) '\\') != -1) {
+				// Escaped value: validated and unescaped right away
+				this.values.add(decodeHeaderString(headerBytes, start, end));
+				return;
+			}
+			String common = CommonHeaderStrings.get(headerBytes, start, end);
+			this.values.add(common != null ? common : new HeaderValueRange(headerBytes, start, end));
+		}
+
+		@Override
+		public String get(int index) {
+			Object value = this.values.get(index);
+			if (value instanceof HeaderValueRange) {
+				// Concurrent readers decode the same String at worst
+				value = ((HeaderValueRange) value).decode();
+				this.values.set(index, value);
+			}
+			return (String) value;
+		}
+
+		@Override
+		public int size() {
+			return this.values.size();
+		}
+
+		@Override
+		public String set(int index, String element) {
+			String previous = get(index);
+			this.values.set(index, element);
+			return previous;
+		}
+
+		@Override
+		public void add(int index, String element) {
+			this.values.add(index, element);
+			this.modCount++;
+		}
+
+		@Override
+		public String remove(int index) {
+			String previous = get(index);
+			this.values.remove(index);
+			this.modCount++;
+			return previous;
+		}
+
+		private Object writeReplace() {
+			return new ArrayList<>(this);
+		}
+	}
+
+
+	/**
+	 * The position of a header value not decoded yet.
+	 */
+	private static class HeaderValueRange {
+
+		private final ByteBuffer headerBytes;
+
+		private final int start;
+
+		private final int end;
+
+		HeaderValueRange(ByteBuffer headerBytes, int start, int end) {
+			this.headerBytes = headerBytes;
+			this.start = start;
+			this.end = end;
+		}
+
+		String decode() {
+			return decodeHeaderString(this.headerBytes, this.start, this.end);
+		}
+	}
+
+
+	/**
+	 * Shared instances for well-known STOMP header names and values, resolved
+	 * straight from the input bytes without creating a String first.
+	 */
+	private static class CommonHeaderStrings {
+
+		private static final String[] STRINGS = new String[] {
+				StompHeaderAccessor.STOMP_ID_HEADER, StompHeaderAccessor.STOMP_HOST_HEADER,
+				StompHeaderAccessor.STOMP_ACCEPT_VERSION_HEADER, StompHeaderAccessor.STOMP_MESSAGE_ID_HEADER,
+				StompHeaderAccessor.STOMP_RECEIPT_HEADER, StompHeaderAccessor.STOMP_RECEIPT_ID_HEADER,
+				StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER, StompHeaderAccessor.STOMP_VERSION_HEADER,
+				StompHeaderAccessor.STOMP_MESSAGE_HEADER, StompHeaderAccessor.STOMP_ACK_HEADER,
+				StompHeaderAccessor.STOMP_NACK_HEADER, StompHeaderAccessor.STOMP_LOGIN_HEADER,
+				StompHeaderAccessor.STOMP_PASSCODE_HEADER, StompHeaderAccessor.STOMP_DESTINATION_HEADER,
+				StompHeaderAccessor.STOMP_CONTENT_TYPE_HEADER, StompHeaderAccessor.STOMP_CONTENT_LENGTH_HEADER,
+				StompHeaderAccessor.STOMP_HEARTBEAT_HEADER, "transaction", "selector", "session", "server",
+				"auto", "client", "client-individual", "1.0", "1.1", "1.2", "1.1,1.2", "1.0,1.1,1.2",
+				"0,0", "10000,10000", "text/plain", "text/plain;charset=UTF-8",
+				"application/json", "application/json;charset=UTF-8", "application/octet-stream"};
+
+		private static final int MAX_LENGTH = 32;
+
+		/* Byte representations of the strings, by length */
+		private static final byte[][][] BYTES = new byte[MAX_LENGTH + 1][][];
+
+		/* The strings, matching the byte representations */
+		private static final String[][] VALUES = new String[MAX_LENGTH + 1][];
+
+		static {
+			for (String value : STRINGS) {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				Assert.state(bytes.length <= MAX_LENGTH, "Common header string too long");
+				int count = (VALUES[bytes.length] != null ? VALUES[bytes.length].length : 0);
+				BYTES[bytes.length] = (count > 0 ? Arrays.copyOf(BYTES[bytes.length], count + 1) : new byte[1][]);
+				VALUES[bytes.length] = (count > 0 ? Arrays.copyOf(VALUES[bytes.length], count + 1) : new String[1]);
+				BYTES[bytes.length][count] = bytes;
+				VALUES[bytes.length][count] = value;
+			}
+		}
+
+		@Nullable
+		public static String get(ByteBuffer byteBuffer, int start, int end) {
+			int length = end - start;
+			if (length > MAX_LENGTH || VALUES[length] == null) {
+				return null;
+			}
+			byte[][] candidates = BYTES[length];
+			for (int i = 0; i < candidates.length; i++) {
+				if (matches(byteBuffer, start, candidates[i])) {
+					return VALUES[length][i];
+				}
+			}
+			return null;
+		}
+
+		private static boolean matches(ByteBuffer byteBuffer, int start, byte[] bytes) {
+			for (int i = 0; i < bytes.length; i++) {
+				if (byteBuffer.get(start + i) != bytes[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
 }
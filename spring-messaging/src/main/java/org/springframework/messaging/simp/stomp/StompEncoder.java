@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,11 +16,9 @@
 
 package org.springframework.messaging.simp.stomp;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +28,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.lang.Nullable;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
@@ -55,6 +56,18 @@ public class StompEncoder  {
 
 	private static final int HEADER_KEY_CACHE_LIMIT = 32;
 
+	private static final byte[] CONTENT_LENGTH_PREFIX = "content-length:".getBytes(StandardCharsets.UTF_8);
+
+	private static final DataBufferFactory BUFFER_FACTORY = new DefaultDataBufferFactory();
+
+	private static final Map<StompCommand, byte[]> COMMAND_BYTES = new EnumMap<>(StompCommand.class);
+
+	static {
+		for (StompCommand command : StompCommand.values()) {
+			COMMAND_BYTES.put(command, command.name().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
 
 	private final Map<String, byte[]> headerKeyAccessCache = new ConcurrentHashMap<>(HEADER_KEY_CACHE_LIMIT);
 
@@ -90,41 +103,52 @@ public class StompEncoder  {
 	 * @return the encoded message
 	 */
 	public byte[] encode(Map<String, Object> headers, byte[] payload) {
-		Assert.notNull(headers, "'headers' is required");
 		Assert.notNull(payload, "'payload' is required");
+		DataBuffer buffer = BUFFER_FACTORY.allocateBuffer(128 + payload.length);
+		encode(headers, payload, buffer);
+		byte[] bytes = new byte[buffer.readableByteCount()];
+		buffer.read(bytes);
+		return bytes;
+	}
 
-		try {
-			ByteArrayOutputStream baos = new ByteArrayOutputStream(128 + payload.length);
-			DataOutputStream output = new DataOutputStream(baos);
-
-			if (SimpMessageType.HEARTBEAT.equals(SimpMessageHeaderAccessor.getMessageType(headers))) {
-				logger.trace("Encoding heartbeat");
-				output.write(StompDecoder.HEARTBEAT_PAYLOAD);
-			}
+	/**
+	 * Encodes the given payload and headers, writing the STOMP frame straight
+	 * into the given {@code DataBuffer}, e.g. one wrapping a pooled buffer of
+	 * the underlying transport. Header values and the content-length are
+	 * written as UTF-8 directly into the buffer, and the payload is written
+	 * from the given array, without any intermediate {@code byte[]}.
+	 * @param headers the headers
+	 * @param payload the payload
+	 * @param buffer the buffer to write the encoded message to
+	 * @since 5.1
+	 */
+	public void encode(Map<String, Object> headers, byte[] payload, DataBuffer buffer) {
+		Assert.notNull(headers, "'headers' is required");
+		Assert.notNull(payload, "'payload' is required");
+		Assert.notNull(buffer, "'buffer' is required");
 
-			else {
-				StompCommand command = StompHeaderAccessor.getCommand(headers);
-				if (command == null) {
-					throw new IllegalStateException("Missing STOMP command: " + headers);
-				}
+		if (SimpMessageType.HEARTBEAT.equals(SimpMessageHeaderAccessor.getMessageType(headers))) {
+			logger.trace("Encoding heartbeat");
+			buffer.write(StompDecoder.HEARTBEAT_PAYLOAD);
+		}
 
-				output.write(command.toString().getBytes(StandardCharsets.UTF_8));
-				output.write(LF);
-				writeHeaders(command, headers, payload, output);
-				output.write(LF);
-				writeBody(payload, output);
-				output.write((byte) 0);
+		else {
+			StompCommand command = StompHeaderAccessor.getCommand(headers);
+			if (command == null) {
+				throw new IllegalStateException("Missing STOMP command: " + headers);
 			}
 
-			return baos.toByteArray();
-		}
-		catch (IOException ex) {
-			throw new StompConversionException("Failed to encode STOMP frame, headers=" + headers,  ex);
+			buffer.write(COMMAND_BYTES.get(command));
+			buffer.write(LF);
+			writeHeaders(command, headers, payload, buffer);
+			buffer.write(LF);
+			writeBody(payload, buffer);
+			buffer.write((byte) 0);
 		}
 	}
 
 	private void writeHeaders(StompCommand command, Map<String, Object> headers, byte[] payload,
-			DataOutputStream output) throws IOException {
+			DataBuffer buffer) {
 
 		@SuppressWarnings("unchecked")
 		Map<String,List<String>> nativeHeaders =
@@ -153,18 +177,18 @@ public class StompEncoder  {
 
 			byte[] encodedKey = encodeHeaderKey(entry.getKey(), shouldEscape);
 			for (String value : values) {
-				output.write(encodedKey);
-				output.write(COLON);
-				output.write(encodeHeaderValue(value, shouldEscape));
-				output.write(LF);
+				buffer.write(encodedKey);
+				buffer.write(COLON);
+				writeHeaderValue(value, shouldEscape, buffer);
+				buffer.write(LF);
 			}
 		}
 
 		if (command.requiresContentLength()) {
 			int contentLength = payload.length;
-			output.write("content-length:".getBytes(StandardCharsets.UTF_8));
-			output.write(Integer.toString(contentLength).getBytes(StandardCharsets.UTF_8));
-			output.write(LF);
+			buffer.write(CONTENT_LENGTH_PREFIX);
+			writeHeaderValue(Integer.toString(contentLength), false, buffer);
+			buffer.write(LF);
 		}
 	}
 
@@ -184,9 +208,42 @@ public class StompEncoder  {
 		}
 	}
 
-	private byte[] encodeHeaderValue(String input, boolean escape) {
-		String inputToUse = (escape ? escape(input) : input);
-		return inputToUse.getBytes(StandardCharsets.UTF_8);
+	/**
+	 * Write the given header value as UTF-8, escaping it on the fly if necessary.
+	 * @see #escape(String)
+	 */
+	private void writeHeaderValue(String value, boolean escape, DataBuffer buffer) {
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (escape && (c == '\\' || c == ':' || c == '\n' || c == '\r')) {
+				buffer.write((byte) '\\');
+				buffer.write((byte) (c == ':' ? 'c' : c == '\n' ? 'n' : c == '\r' ? 'r' : '\\'));
+			}
+			else if (c < 0x80) {
+				buffer.write((byte) c);
+			}
+			else if (c < 0x800) {
+				buffer.write((byte) (0xC0 | (c >> 6)));
+				buffer.write((byte) (0x80 | (c & 0x3F)));
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				buffer.write((byte) (0xF0 | (codePoint >> 18)));
+				buffer.write((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				buffer.write((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				buffer.write((byte) (0x80 | (codePoint & 0x3F)));
+			}
+			else if (Character.isSurrogate(c)) {
+				// Malformed surrogate pair, replaced as by String#getBytes
+				buffer.write((byte) '?');
+			}
+			else {
+				buffer.write((byte) (0xE0 | (c >> 12)));
+				buffer.write((byte) (0x80 | ((c >> 6) & 0x3F)));
+				buffer.write((byte) (0x80 | (c & 0x3F)));
+			}
+		}
 	}
 
 	/**
@@ -228,8 +285,8 @@ public class StompEncoder  {
 		return sb;
 	}
 
-	private void writeBody(byte[] payload, DataOutputStream output) throws IOException {
-		output.write(payload);
+	private void writeBody(byte[] payload, DataBuffer buffer) {
+		buffer.write(payload);
 	}
 
 }
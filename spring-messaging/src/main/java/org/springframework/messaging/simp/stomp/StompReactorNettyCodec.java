@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,10 @@ package org.springframework.messaging.simp.stomp;
 import java.nio.ByteBuffer;
 import java.util.List;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.tcp.reactor.AbstractNioBufferReactorNettyCodec;
 
@@ -29,6 +33,9 @@ import org.springframework.messaging.tcp.reactor.AbstractNioBufferReactorNettyCo
  */
 public class StompReactorNettyCodec extends AbstractNioBufferReactorNettyCodec<byte[]> {
 
+	/* Only used to wrap output buffers, which are allocated by the connection */
+	private static final NettyDataBufferFactory BUFFER_FACTORY = new NettyDataBufferFactory(ByteBufAllocator.DEFAULT);
+
 	private final StompDecoder decoder;
 
 	private final StompEncoder encoder;
@@ -53,6 +60,16 @@ public class StompReactorNettyCodec extends AbstractNioBufferReactorNettyCodec<b
 		return this.decoder.decode(nioBuffer);
 	}
 
+	/**
+	 * Encode straight into the given output buffer, allocated from the
+	 * (pooled) allocator of the connection, without first encoding into
+	 * an intermediate {@code byte[]}.
+	 */
+	@Override
+	public void encode(Message<byte[]> message, ByteBuf outputBuffer) {
+		this.encoder.encode(message.getHeaders(), message.getPayload(), BUFFER_FACTORY.wrap(outputBuffer));
+	}
+
 	protected ByteBuffer encodeInternal(Message<byte[]> message) {
 		return ByteBuffer.wrap(this.encoder.encode(message));
 	}
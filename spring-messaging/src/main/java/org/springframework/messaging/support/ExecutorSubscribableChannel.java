@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,8 @@
 package org.springframework.messaging.support;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Executor;
 
@@ -26,10 +28,15 @@ import org.springframework.messaging.MessageDeliveryException;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.SubscribableChannel;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
 
 /**
  * A {@link SubscribableChannel} that sends messages to each of its subscribers.
  *
+ * <p>Configure an {@link OrderedMessageExecutor} in order to preserve the order
+ * of messages with the same value for a given header, e.g. per session.
+ *
  * @author Phillip Webb
  * @author Rossen Stoyanchev
  * @since 4.0
@@ -100,6 +107,109 @@ public class ExecutorSubscribableChannel extends AbstractSubscribableChannel {
 		return true;
 	}
 
+	/**
+	 * Send a batch of messages, passing each message through the configured
+	 * {@link ChannelInterceptor ChannelInterceptors} as {@link #send(Message)}
+	 * does, but dispatching all accepted messages to a subscriber within a
+	 * single task rather than one task per message and subscriber.
+	 * <p>Messages are handled in the given order. A failure to send or to
+	 * handle one message is logged and does not prevent the remaining
+	 * messages of the batch from being delivered.
+	 * @param messages the messages to send
+	 * @return the number of messages that were sent, i.e. not rejected by
+	 * an interceptor and not failing before being dispatched
+	 * @since 5.1
+	 */
+	public int sendAll(Collection<? extends Message<?>> messages) {
+		Assert.notNull(messages, "Messages must not be null");
+		List<Message<?>> messagesToSend = new ArrayList<>(messages.size());
+		List<ChannelInterceptorChain> chains = new ArrayList<>(messages.size());
+		for (Message<?> message : messages) {
+			Assert.notNull(message, "Message must not be null");
+			ChannelInterceptorChain chain = new ChannelInterceptorChain();
+			try {
+				Message<?> messageToUse = chain.applyPreSend(message, this);
+				if (messageToUse != null) {
+					messagesToSend.add(messageToUse);
+					chains.add(chain);
+				}
+			}
+			catch (Throwable ex) {
+				handleBatchFailure(message, chain, ex);
+			}
+		}
+		if (messagesToSend.isEmpty()) {
+			return 0;
+		}
+
+		if (this.executor == null) {
+			int sent = 0;
+			for (int i = 0; i < messagesToSend.size(); i++) {
+				Message<?> message = messagesToSend.get(i);
+				ChannelInterceptorChain chain = chains.get(i);
+				try {
+					for (MessageHandler handler : getSubscribers()) {
+						new SendTask(message, handler).run();
+					}
+					chain.applyPostSend(message, this, true);
+					chain.triggerAfterSendCompletion(message, this, true, null);
+					sent++;
+				}
+				catch (Throwable ex) {
+					handleBatchFailure(message, chain, ex);
+				}
+			}
+			return sent;
+		}
+
+		for (List<Message<?>> batch : splitByOrderingKey(messagesToSend)) {
+			for (MessageHandler handler : getSubscribers()) {
+				this.executor.execute(new BatchSendTask(batch, handler));
+			}
+		}
+		for (int i = 0; i < messagesToSend.size(); i++) {
+			Message<?> message = messagesToSend.get(i);
+			ChannelInterceptorChain chain = chains.get(i);
+			chain.applyPostSend(message, this, true);
+			chain.triggerAfterSendCompletion(message, this, true, null);
+		}
+		return messagesToSend.size();
+	}
+
+	/**
+	 * With an {@link OrderedMessageExecutor}, split the given messages into
+	 * batches of consecutive messages with the same ordering key, so that each
+	 * batch is executed in the lane of its messages.
+	 */
+	private List<List<Message<?>>> splitByOrderingKey(List<Message<?>> messages) {
+		if (!(this.executor instanceof OrderedMessageExecutor)) {
+			return Collections.singletonList(messages);
+		}
+		OrderedMessageExecutor orderedExecutor = (OrderedMessageExecutor) this.executor;
+		List<List<Message<?>>> batches = new ArrayList<>();
+		List<Message<?>> batch = null;
+		Object batchKey = null;
+		for (Message<?> message : messages) {
+			Object key = orderedExecutor.getOrderingKey(message);
+			if (batch == null || !ObjectUtils.nullSafeEquals(key, batchKey)) {
+				batch = new ArrayList<>();
+				batches.add(batch);
+				batchKey = key;
+			}
+			batch.add(message);
+		}
+		return batches;
+	}
+
+	private void handleBatchFailure(Message<?> message, ChannelInterceptorChain chain, Throwable ex) {
+		Exception exToUse = (ex instanceof Exception ? (Exception) ex :
+				new MessageDeliveryException(message, "Failed to send message to " + this, ex));
+		chain.triggerAfterSendCompletion(message, this, false, exToUse);
+		if (logger.isErrorEnabled()) {
+			logger.error("Failed to send " + message + " to " + this, ex);
+		}
+	}
+
 
 	/**
 	 * Invoke a MessageHandler with ExecutorChannelInterceptors.
@@ -185,4 +295,46 @@ public class ExecutorSubscribableChannel extends AbstractSubscribableChannel {
 		}
 	}
 
+
+	/**
+	 * Invoke a MessageHandler for each message of a batch, applying the
+	 * ExecutorChannelInterceptors to every message individually.
+	 * Exposes the first message of the batch as its representative.
+	 */
+	private class BatchSendTask implements MessageHandlingRunnable {
+
+		private final List<Message<?>> messages;
+
+		private final MessageHandler messageHandler;
+
+		public BatchSendTask(List<Message<?>> messages, MessageHandler messageHandler) {
+			this.messages = messages;
+			this.messageHandler = messageHandler;
+		}
+
+		@Override
+		public Message<?> getMessage() {
+			return this.messages.get(0);
+		}
+
+		@Override
+		public MessageHandler getMessageHandler() {
+			return this.messageHandler;
+		}
+
+		@Override
+		public void run() {
+			for (Message<?> message : this.messages) {
+				try {
+					new SendTask(message, this.messageHandler).run();
+				}
+				catch (Throwable ex) {
+					if (logger.isErrorEnabled()) {
+						logger.error("Failed to handle " + message + " in " + this.messageHandler, ex);
+					}
+				}
+			}
+		}
+	}
+
 }
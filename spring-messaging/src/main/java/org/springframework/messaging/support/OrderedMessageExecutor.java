@@ -0,0 +1,212 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.support;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * An {@link Executor} for an {@link ExecutorSubscribableChannel} that preserves
+ * the order of messages sharing the same value for a given header, e.g. the
+ * messages of a WebSocket session, while messages with different values are
+ * still handled in parallel on the target executor.
+ *
+ * <p>Tasks for a {@link MessageHandlingRunnable} are assigned to one of a fixed
+ * number of lanes based on the hash code of the header value. Each lane is a
+ * queue that is drained by at most one thread of the target executor at a time,
+ * so that tasks within a lane are executed one after the other and in order of
+ * submission, without a lane ever occupying a thread while it is empty. Tasks
+ * without the header, or that are not a {@code MessageHandlingRunnable}, are
+ * passed to the target executor as they are.
+ *
+ * <p>Note that different header values may share a lane; the number of lanes
+ * should therefore be considerably larger than the number of threads of the
+ * target executor in order to keep the chance of one slow session delaying
+ * another low.
+ *
+ * @since 5.1
+ * @see ExecutorSubscribableChannel
+ */
+public class OrderedMessageExecutor implements Executor {
+
+	/**
+	 * The default number of lanes.
+	 */
+	public static final int DEFAULT_LANE_COUNT = 256;
+
+	private static final int MAX_TASKS_PER_RUN = 64;
+
+	private static final Log logger = LogFactory.getLog(OrderedMessageExecutor.class);
+
+
+	private final Executor executor;
+
+	private final String headerName;
+
+	private final Lane[] lanes;
+
+
+	/**
+	 * Create a new {@code OrderedMessageExecutor} with the
+	 * {@link #DEFAULT_LANE_COUNT default number of lanes}.
+	 * @param executor the executor to run tasks on
+	 * @param headerName the name of the header that determines the order
+	 */
+	public OrderedMessageExecutor(Executor executor, String headerName) {
+		this(executor, headerName, DEFAULT_LANE_COUNT);
+	}
+
+	/**
+	 * Create a new {@code OrderedMessageExecutor}.
+	 * @param executor the executor to run tasks on
+	 * @param headerName the name of the header that determines the order
+	 * @param laneCount the number of lanes to distribute header values across
+	 */
+	public OrderedMessageExecutor(Executor executor, String headerName, int laneCount) {
+		Assert.notNull(executor, "Executor must not be null");
+		Assert.hasText(headerName, "Header name must not be empty");
+		Assert.isTrue(laneCount > 0, "Lane count must be greater than 0");
+		this.executor = executor;
+		this.headerName = headerName;
+		this.lanes = new Lane[laneCount];
+		for (int i = 0; i < laneCount; i++) {
+			this.lanes[i] = new Lane();
+		}
+	}
+
+
+	/**
+	 * Return the executor that tasks are run on.
+	 */
+	public Executor getExecutor() {
+		return this.executor;
+	}
+
+	/**
+	 * Return the name of the header that determines the order.
+	 */
+	public String getHeaderName() {
+		return this.headerName;
+	}
+
+	/**
+	 * Return the value that determines the lane for the given message,
+	 * or {@code null} if the message can be handled in any order.
+	 */
+	@Nullable
+	public Object getOrderingKey(Message<?> message) {
+		return message.getHeaders().get(this.headerName);
+	}
+
+
+	@Override
+	public void execute(Runnable task) {
+		Object key = (task instanceof MessageHandlingRunnable ?
+				getOrderingKey(((MessageHandlingRunnable) task).getMessage()) : null);
+		if (key == null) {
+			this.executor.execute(task);
+		}
+		else {
+			this.lanes[Math.floorMod(key.hashCode(), this.lanes.length)].execute(task);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "OrderedMessageExecutor[header=" + this.headerName + ", lanes=" + this.lanes.length +
+				", executor=" + this.executor + "]";
+	}
+
+
+	/**
+	 * A queue of tasks executed one at a time on the target executor.
+	 */
+	private class Lane implements Runnable {
+
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+		/* The number of tasks submitted but not yet executed */
+		private final AtomicInteger pending = new AtomicInteger();
+
+		public void execute(Runnable task) {
+			this.tasks.add(task);
+			if (this.pending.getAndIncrement() == 0) {
+				try {
+					executor.execute(this);
+				}
+				catch (RejectedExecutionException ex) {
+					this.tasks.remove(task);
+					if (this.pending.decrementAndGet() != 0) {
+						// Tasks submitted meanwhile rely on this lane being scheduled
+						try {
+							executor.execute(this);
+						}
+						catch (RejectedExecutionException ex2) {
+							run();
+						}
+					}
+					throw ex;
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			int count = 0;
+			while (true) {
+				Runnable task = this.tasks.poll();
+				Assert.state(task != null, "No task available");
+				try {
+					task.run();
+				}
+				catch (Throwable ex) {
+					if (logger.isErrorEnabled()) {
+						logger.error("Failed to execute " + task, ex);
+					}
+				}
+				if (this.pending.decrementAndGet() == 0) {
+					return;
+				}
+				if (++count == MAX_TASKS_PER_RUN) {
+					// Give other lanes a chance to run before continuing
+					try {
+						executor.execute(this);
+						return;
+					}
+					catch (RejectedExecutionException ex) {
+						// Keep draining on the current thread rather than leaving the lane unscheduled
+						if (logger.isDebugEnabled()) {
+							logger.debug("Continuing on current thread after rejected reschedule: " + ex);
+						}
+						count = 0;
+					}
+				}
+			}
+		}
+	}
+
+}
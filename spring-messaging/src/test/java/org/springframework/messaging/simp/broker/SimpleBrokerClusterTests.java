@@ -0,0 +1,225 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp.broker;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link SimpleBrokerMessageHandler} running as a cluster over
+ * a {@link LoopbackBrokerClusterTransport}.
+ */
+public class SimpleBrokerClusterTests {
+
+	private final LoopbackBrokerClusterTransport transport1 = spy(new LoopbackBrokerClusterTransport("node1"));
+
+	private final LoopbackBrokerClusterTransport transport2 = this.transport1.createNode("node2");
+
+	private final MessageChannel outboundChannel1 = mock(MessageChannel.class);
+
+	private final MessageChannel outboundChannel2 = mock(MessageChannel.class);
+
+	private SimpleBrokerMessageHandler broker1;
+
+	private SimpleBrokerMessageHandler broker2;
+
+
+	@Before
+	public void setup() {
+		this.broker1 = createBroker(this.transport1, this.outboundChannel1);
+		this.broker2 = createBroker(this.transport2, this.outboundChannel2);
+	}
+
+	private SimpleBrokerMessageHandler createBroker(BrokerClusterTransport transport, MessageChannel channel) {
+		SimpleBrokerMessageHandler broker = new SimpleBrokerMessageHandler(mock(SubscribableChannel.class),
+				channel, mock(SubscribableChannel.class), Collections.emptyList());
+		broker.setClusterTransport(transport);
+		return broker;
+	}
+
+	@After
+	public void teardown() {
+		this.broker1.stop();
+		this.broker2.stop();
+	}
+
+
+	@Test
+	public void publishToSubscribersOnOtherNode() {
+		this.broker1.start();
+		this.broker2.start();
+		this.broker1.handleMessage(subscribeMessage("sess1", "sub1", "/topic/foo"));
+		this.broker2.handleMessage(subscribeMessage("sess2", "sub1", "/topic/foo"));
+		this.broker2.handleMessage(subscribeMessage("sess3", "sub1", "/topic/**"));
+		this.broker2.handleMessage(subscribeMessage("sess4", "sub1", "/topic/bar"));
+
+		reset(this.transport1);
+		this.broker1.handleMessage(message("/topic/foo", "payload"));
+
+		verify(this.transport1).send(eq("node2"), anyList());
+		assertEquals(Collections.singletonList("sess1"), sessionIds(this.outboundChannel1, 1));
+		// Forwarded once to node2, delivered there to each of its subscribers
+		List<String> sessionIds = sessionIds(this.outboundChannel2, 2);
+		assertTrue(sessionIds.containsAll(Arrays.asList("sess2", "sess3")));
+	}
+
+	@Test
+	public void publishWithoutRemoteSubscribers() {
+		this.broker1.start();
+		this.broker2.start();
+		this.broker2.handleMessage(subscribeMessage("sess2", "sub1", "/topic/bar"));
+
+		this.broker1.handleMessage(message("/topic/foo", "payload"));
+
+		verifyZeroInteractions(this.outboundChannel2);
+	}
+
+	@Test
+	public void subscriptionsReplayedWhenNodeBecomesAvailable() {
+		this.broker1.start();
+		this.broker1.handleMessage(subscribeMessage("sess1", "sub1", "/topic/foo"));
+		this.broker2.start();
+
+		this.broker2.handleMessage(message("/topic/foo", "payload"));
+
+		ArgumentCaptor<Message<?>> captor = messageCaptor(this.outboundChannel1, 1);
+		Message<?> message = captor.getValue();
+		assertEquals("sub1", SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders()));
+		assertEquals("/topic/foo", SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+		assertEquals("payload", new String((byte[]) message.getPayload(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void unsubscribeAndDisconnect() {
+		this.broker1.start();
+		this.broker2.start();
+		this.broker2.handleMessage(subscribeMessage("sess2", "sub1", "/topic/foo"));
+		this.broker2.handleMessage(subscribeMessage("sess3", "sub1", "/topic/foo"));
+
+		this.broker2.handleMessage(unsubscribeMessage("sess2", "sub1"));
+		this.broker1.handleMessage(message("/topic/foo", "payload"));
+		assertEquals(Collections.singletonList("sess3"), sessionIds(this.outboundChannel2, 1));
+
+		this.broker2.handleMessage(disconnectMessage("sess3"));
+		reset(this.transport1);
+		this.broker1.handleMessage(message("/topic/foo", "payload"));
+		verify(this.transport1, never()).send(any(), any());
+	}
+
+	@Test
+	public void subscriptionsDroppedWhenNodeStops() {
+		this.broker1.start();
+		this.broker2.start();
+		this.broker1.handleMessage(subscribeMessage("sess1", "sub1", "/topic/foo"));
+		this.broker1.stop();
+
+		this.broker2.handleMessage(message("/topic/foo", "payload"));
+		verifyZeroInteractions(this.outboundChannel1);
+	}
+
+	@Test
+	public void nodeRemainsAvailableWhenItsStateIsReset() {
+		BrokerClusterTransport transport = mock(BrokerClusterTransport.class);
+		when(transport.getLocalNodeId()).thenReturn("node1");
+		SimpleBrokerMessageHandler broker = createBroker(transport, this.outboundChannel1);
+		broker.start();
+		ArgumentCaptor<BrokerClusterTransport.Listener> captor =
+				ArgumentCaptor.forClass(BrokerClusterTransport.Listener.class);
+		verify(transport).start(captor.capture());
+		captor.getValue().nodeAvailable("node2");
+		captor.getValue().nodeStateReset("node2");
+
+		broker.handleMessage(subscribeMessage("sess1", "sub1", "/topic/foo"));
+		verify(transport).send(eq("node2"), argThat(messages -> messages.size() == 1 &&
+				SimpMessageType.SUBSCRIBE.equals(SimpMessageHeaderAccessor.getMessageType(messages.get(0).getHeaders()))));
+		broker.stop();
+	}
+
+	@Test
+	public void messageWithoutByteArrayPayloadNotForwarded() {
+		this.broker1.start();
+		this.broker2.start();
+		this.broker2.handleMessage(subscribeMessage("sess2", "sub1", "/topic/foo"));
+
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setDestination("/topic/foo");
+		this.broker1.handleMessage(MessageBuilder.createMessage("payload", accessor.getMessageHeaders()));
+
+		verifyZeroInteractions(this.outboundChannel2);
+	}
+
+
+	private ArgumentCaptor<Message<?>> messageCaptor(MessageChannel channel, int count) {
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<Message<?>> captor = ArgumentCaptor.forClass(Message.class);
+		verify(channel, times(count)).send(captor.capture());
+		return captor;
+	}
+
+	private List<String> sessionIds(MessageChannel channel, int count) {
+		return messageCaptor(channel, count).getAllValues().stream()
+				.map(message -> SimpMessageHeaderAccessor.getSessionId(message.getHeaders()))
+				.collect(Collectors.toList());
+	}
+
+	private Message<String> subscribeMessage(String sessionId, String subscriptionId, String destination) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+		accessor.setSessionId(sessionId);
+		accessor.setSubscriptionId(subscriptionId);
+		accessor.setDestination(destination);
+		return MessageBuilder.createMessage("", accessor.getMessageHeaders());
+	}
+
+	private Message<String> unsubscribeMessage(String sessionId, String subscriptionId) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+		accessor.setSessionId(sessionId);
+		accessor.setSubscriptionId(subscriptionId);
+		return MessageBuilder.createMessage("", accessor.getMessageHeaders());
+	}
+
+	private Message<String> disconnectMessage(String sessionId) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT);
+		accessor.setSessionId(sessionId);
+		return MessageBuilder.createMessage("", accessor.getMessageHeaders());
+	}
+
+	private Message<byte[]> message(String destination, String payload) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setDestination(destination);
+		byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+		return MessageBuilder.createMessage(bytes, accessor.getMessageHeaders());
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,9 +17,13 @@
 package org.springframework.messaging.simp.broker;
 
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -35,6 +39,7 @@ import org.springframework.messaging.SubscribableChannel;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.TestPrincipal;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.scheduling.TaskScheduler;
 
@@ -113,6 +118,73 @@ public class SimpleBrokerMessageHandlerTests {
 		assertTrue(messageCaptured("sess2", "sub3", "/bar"));
 	}
 
+	@Test
+	public void subcribePublishInBatches() {
+		List<Message<?>> sent = new ArrayList<>();
+		AtomicInteger tasks = new AtomicInteger();
+		ExecutorSubscribableChannel outboundChannel = new ExecutorSubscribableChannel(task -> {
+			tasks.incrementAndGet();
+			task.run();
+		});
+		outboundChannel.subscribe(sent::add);
+		this.messageHandler = new SimpleBrokerMessageHandler(this.clientInboundChannel,
+				outboundChannel, this.brokerChannel, Collections.emptyList());
+		this.messageHandler.setBroadcastBatchSize(2);
+		this.messageHandler.start();
+
+		this.messageHandler.handleMessage(createSubscriptionMessage("sess1", "sub1", "/foo"));
+		this.messageHandler.handleMessage(createSubscriptionMessage("sess1", "sub2", "/foo"));
+		this.messageHandler.handleMessage(createSubscriptionMessage("sess2", "sub1", "/foo"));
+		this.messageHandler.handleMessage(createSubscriptionMessage("sess2", "sub2", "/bar"));
+
+		this.messageHandler.handleMessage(createMessage("/foo", "message1"));
+
+		assertEquals(2, tasks.get());
+		assertEquals(3, sent.size());
+		List<String> sessionIds = new ArrayList<>();
+		for (Message<?> message : sent) {
+			assertEquals("message1", message.getPayload());
+			assertEquals("/foo", SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+			assertEquals(SimpMessageType.MESSAGE, SimpMessageHeaderAccessor.getMessageType(message.getHeaders()));
+			sessionIds.add(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+		}
+		assertTrue(sessionIds.equals(Arrays.asList("sess1", "sess1", "sess2")) ||
+				sessionIds.equals(Arrays.asList("sess2", "sess1", "sess1")));
+	}
+
+	@Test
+	public void publishInBatchesAcrossSessions() {
+		List<Message<?>> sent = new ArrayList<>();
+		AtomicInteger tasks = new AtomicInteger();
+		ExecutorSubscribableChannel outboundChannel = new ExecutorSubscribableChannel(task -> {
+			tasks.incrementAndGet();
+			task.run();
+		});
+		outboundChannel.subscribe(sent::add);
+		this.messageHandler = new SimpleBrokerMessageHandler(this.clientInboundChannel,
+				outboundChannel, this.brokerChannel, Collections.emptyList());
+		this.messageHandler.setBroadcastBatchSize(4);
+		this.messageHandler.start();
+
+		for (int i = 0; i < 10; i++) {
+			this.messageHandler.handleMessage(createSubscriptionMessage("sess" + i, "sub1", "/foo"));
+		}
+		this.messageHandler.handleMessage(createMessage("/foo", "message1"));
+
+		assertEquals(3, tasks.get());
+		assertEquals(10, sent.size());
+		List<String> sessionIds = new ArrayList<>();
+		for (Message<?> message : sent) {
+			assertEquals("message1", message.getPayload());
+			assertEquals("sub1", SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders()));
+			assertEquals("/foo", SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+			assertEquals(SimpMessageType.MESSAGE, SimpMessageHeaderAccessor.getMessageType(message.getHeaders()));
+			assertNotNull(message.getHeaders().getId());
+			sessionIds.add(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+		}
+		assertEquals(10, new HashSet<>(sessionIds).size());
+	}
+
 	@Test
 	public void subcribeDisconnectPublish() {
 
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp.broker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.MultiValueMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test fixture for {@link TrieSubscriptionRegistry}.
+ */
+public class TrieSubscriptionRegistryTests {
+
+	private final TrieSubscriptionRegistry registry = new TrieSubscriptionRegistry();
+
+
+	@Test
+	public void registerSubscriptionMultipleSessions() {
+		List<String> sessIds = Arrays.asList("sess01", "sess02", "sess03");
+		List<String> subscriptionIds = Arrays.asList("subs01", "subs02", "subs03");
+		for (String sessId : sessIds) {
+			for (String subsId : subscriptionIds) {
+				this.registry.registerSubscription(subscribeMessage(sessId, subsId, "/foo"));
+			}
+		}
+
+		MultiValueMap<String, String> actual = this.registry.findSubscriptions(createMessage("/foo"));
+		assertEquals(3, actual.size());
+		for (String sessId : sessIds) {
+			assertEquals(subscriptionIds, actual.get(sessId));
+		}
+		assertEquals(0, this.registry.findSubscriptions(createMessage("/foo/bar")).size());
+		assertEquals(0, this.registry.findSubscriptions(createMessage("/bar")).size());
+	}
+
+	@Test
+	public void findSubscriptionsReturnsViewWithoutCopying() {
+		this.registry.registerSubscription(subscribeMessage("sess1", "1", "/topic/price.IBM"));
+		MultiValueMap<String, String> actual = this.registry.findSubscriptions(createMessage("/topic/price.IBM"));
+		assertSame(actual, this.registry.findSubscriptions(createMessage("/topic/price.IBM")));
+
+		List<String> subsIds = actual.get("sess1");
+		this.registry.registerSubscription(subscribeMessage("sess1", "2", "/topic/price.IBM"));
+		this.registry.registerSubscription(subscribeMessage("sess2", "1", "/topic/price.IBM"));
+		assertEquals(Collections.singletonList("1"), subsIds);
+		assertEquals(Arrays.asList("1", "2"), actual.get("sess1"));
+		assertEquals(2, actual.size());
+
+		try {
+			actual.add("sess3", "1");
+			fail("Should have thrown UnsupportedOperationException");
+		}
+		catch (UnsupportedOperationException ex) {
+			// expected
+		}
+	}
+
+	@Test
+	public void registerSubscriptionsWithSimpleAndPatternDestinations() {
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs1", "/topic/PRICE.STOCK.*.IBM"));
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs2", "/topic/PRICE.STOCK.NASDAQ.IBM"));
+		this.registry.registerSubscription(subscribeMessage("sess2", "subs1", "/topic/**"));
+		this.registry.registerSubscription(subscribeMessage("sess2", "subs2", "/topic/PRICE.STOCK.NYSE.IBM"));
+		this.registry.registerSubscription(subscribeMessage("sess3", "subs1", "/topic/{symbol}"));
+
+		MultiValueMap<String, String> actual =
+				this.registry.findSubscriptions(createMessage("/topic/PRICE.STOCK.NASDAQ.IBM"));
+		assertEquals(3, actual.size());
+		assertEquals(Arrays.asList("subs1", "subs2"), sort(actual.get("sess1")));
+		assertEquals(Collections.singletonList("subs1"), actual.get("sess2"));
+		assertEquals(Collections.singletonList("subs1"), actual.get("sess3"));
+
+		this.registry.unregisterAllSubscriptions("sess1");
+		this.registry.unregisterSubscription(unsubscribeMessage("sess3", "subs1"));
+		actual = this.registry.findSubscriptions(createMessage("/topic/PRICE.STOCK.NASDAQ.IBM"));
+		assertEquals(1, actual.size());
+		assertEquals(Collections.singletonList("subs1"), actual.get("sess2"));
+		assertEquals(1, this.registry.findSubscriptions(createMessage("/topic")).size());
+	}
+
+	@Test
+	public void matchesLikeDefaultSubscriptionRegistry() {
+		DefaultSubscriptionRegistry defaultRegistry = new DefaultSubscriptionRegistry();
+		List<String> patterns = Arrays.asList("/topic/a", "/topic/a/", "topic/a", "/topic/*", "/topic/a*",
+				"/topic/**", "/topic/**/c", "/**", "/topic/*/c/**", "/topic/?", "/topic/{id:\\d+}", "/topic//a",
+				"/topic/a/b/c", "/topic/**/**/c");
+		List<String> destinations = Arrays.asList("/topic/a", "/topic/a/", "topic/a", "/topic/ab", "/topic",
+				"/topic/a/b/c", "/topic/a/c", "/topic/42", "/topic/a/b/c/d", "/queue/a", "/", "/topic//a");
+		for (int i = 0; i < patterns.size(); i++) {
+			Message<?> message = subscribeMessage("sess" + i, "subs" + i, patterns.get(i));
+			defaultRegistry.registerSubscription(message);
+			this.registry.registerSubscription(message);
+		}
+		for (String destination : destinations) {
+			assertEquals("Different subscriptions for " + destination,
+					new TreeMap<>(defaultRegistry.findSubscriptions(createMessage(destination))),
+					new TreeMap<>(this.registry.findSubscriptions(createMessage(destination))));
+		}
+	}
+
+	@Test
+	public void customPathSeparator() {
+		this.registry.setPathSeparator(".");
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs1", "price.stock.*"));
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs2", "price.**"));
+		this.registry.registerSubscription(subscribeMessage("sess2", "subs1", "price.stock.IBM"));
+
+		assertEquals(2, this.registry.findSubscriptions(createMessage("price.stock.IBM")).size());
+		assertEquals(1, this.registry.findSubscriptions(createMessage("price.stock.GOOG")).size());
+		assertEquals(1, this.registry.findSubscriptions(createMessage("price.bond.X.Y")).size());
+		assertEquals(0, this.registry.findSubscriptions(createMessage("volume.stock.IBM")).size());
+
+		DefaultSubscriptionRegistry defaultRegistry = new DefaultSubscriptionRegistry();
+		defaultRegistry.setPathMatcher(new AntPathMatcher("."));
+		defaultRegistry.registerSubscription(subscribeMessage("sess1", "subs2", "price.**"));
+		assertEquals(defaultRegistry.findSubscriptions(createMessage("price")),
+				this.registry.findSubscriptions(createMessage("price")));
+	}
+
+	@Test
+	public void registerSubscriptionWithSelector() {
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs1", "/foo", "headers.foo == 'bar'"));
+		this.registry.registerSubscription(subscribeMessage("sess2", "subs1", "/foo"));
+
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+		accessor.setDestination("/foo");
+		accessor.setNativeHeader("foo", "bar");
+		Message<?> message = MessageBuilder.createMessage("", accessor.getMessageHeaders());
+		assertEquals(2, this.registry.findSubscriptions(message).size());
+		assertEquals(Collections.singleton("sess2"),
+				this.registry.findSubscriptions(createMessage("/foo")).keySet());
+	}
+
+	@Test
+	public void resubscribeWithSameIdToOtherDestination() {
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs1", "/foo"));
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs1", "/bar"));
+		assertEquals(0, this.registry.findSubscriptions(createMessage("/foo")).size());
+		assertEquals(1, this.registry.findSubscriptions(createMessage("/bar")).size());
+	}
+
+	@Test
+	public void unregisterRemovesDestinations() {
+		for (int i = 0; i < 100; i++) {
+			this.registry.registerSubscription(subscribeMessage("sess" + (i % 10), "subs" + i, "/topic/price." + i));
+		}
+		this.registry.registerSubscription(subscribeMessage("sess0", "subs100", "/topic/*"));
+		assertEquals("TrieSubscriptionRegistry[101 destination(s), 10 session(s)]", this.registry.toString());
+		assertEquals(1, this.registry.findSubscriptions(createMessage("/topic/price.42")).get("sess2").size());
+
+		for (int i = 0; i < 10; i++) {
+			this.registry.unregisterAllSubscriptions("sess" + i);
+		}
+		assertEquals("TrieSubscriptionRegistry[0 destination(s), 0 session(s)]", this.registry.toString());
+		assertEquals(0, this.registry.findSubscriptions(createMessage("/topic/price.42")).size());
+	}
+
+	@Test
+	public void concurrentSubscribeAndUnsubscribe() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				String sessionId = "sess" + t;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 2000; i++) {
+						String destination = "/topic/price." + (i % 7);
+						this.registry.registerSubscription(subscribeMessage(sessionId, "subs" + i, destination));
+						assertTrue(this.registry.findSubscriptions(createMessage(destination)).containsKey(sessionId));
+						this.registry.unregisterSubscription(unsubscribeMessage(sessionId, "subs" + i));
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		assertEquals("TrieSubscriptionRegistry[0 destination(s), 0 session(s)]", this.registry.toString());
+	}
+
+
+	private Message<?> createMessage(String destination) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+		accessor.setDestination(destination);
+		return MessageBuilder.createMessage("", accessor.getMessageHeaders());
+	}
+
+	private Message<?> subscribeMessage(String sessionId, String subscriptionId, String destination) {
+		return subscribeMessage(sessionId, subscriptionId, destination, null);
+	}
+
+	private Message<?> subscribeMessage(String sessionId, String subscriptionId, String dest, String selector) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+		accessor.setSessionId(sessionId);
+		accessor.setSubscriptionId(subscriptionId);
+		accessor.setDestination(dest);
+		if (selector != null) {
+			accessor.setNativeHeader("selector", selector);
+		}
+		return MessageBuilder.createMessage("", accessor.getMessageHeaders());
+	}
+
+	private Message<?> unsubscribeMessage(String sessionId, String subscriptionId) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+		accessor.setSessionId(sessionId);
+		accessor.setSubscriptionId(subscriptionId);
+		return MessageBuilder.createMessage("", accessor.getMessageHeaders());
+	}
+
+	private List<String> sort(List<String> list) {
+		List<String> result = new ArrayList<>(list);
+		Collections.sort(result);
+		return result;
+	}
+
+}
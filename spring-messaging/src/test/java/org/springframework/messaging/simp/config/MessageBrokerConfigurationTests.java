@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -45,6 +45,7 @@ import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolver;
 import org.springframework.messaging.handler.invocation.HandlerMethodReturnValueHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
@@ -63,6 +64,7 @@ import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.ChannelInterceptorAdapter;
 import org.springframework.messaging.support.ExecutorSubscribableChannel;
 import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.OrderedMessageExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.AntPathMatcher;
@@ -198,6 +200,24 @@ public class MessageBrokerConfigurationTests {
 		assertEquals(23, taskExecutor.getKeepAliveSeconds());
 	}
 
+	@Test
+	public void clientChannelsPreserveSessionOrder() {
+		ApplicationContext context = new AnnotationConfigApplicationContext(SessionOrderConfig.class);
+
+		ExecutorSubscribableChannel channel = context.getBean("clientInboundChannel", ExecutorSubscribableChannel.class);
+		OrderedMessageExecutor executor = (OrderedMessageExecutor) channel.getExecutor();
+		assertSame(context.getBean("clientInboundChannelExecutor"), executor.getExecutor());
+		assertEquals(SimpMessageHeaderAccessor.SESSION_ID_HEADER, executor.getHeaderName());
+
+		channel = context.getBean("clientOutboundChannel", ExecutorSubscribableChannel.class);
+		executor = (OrderedMessageExecutor) channel.getExecutor();
+		assertSame(context.getBean("clientOutboundChannelExecutor"), executor.getExecutor());
+		assertEquals(SimpMessageHeaderAccessor.SESSION_ID_HEADER, executor.getHeaderName());
+
+		channel = this.customContext.getBean("clientOutboundChannel", ExecutorSubscribableChannel.class);
+		assertFalse(channel.getExecutor() instanceof OrderedMessageExecutor);
+	}
+
 	@Test
 	public void brokerChannel() {
 		TestChannel channel = this.simpleBrokerContext.getBean("brokerChannel", TestChannel.class);
@@ -549,6 +569,21 @@ public class MessageBrokerConfigurationTests {
 	}
 
 
+	@Configuration
+	static class SessionOrderConfig extends BaseTestMessageBrokerConfig {
+
+		@Override
+		protected void configureClientInboundChannel(ChannelRegistration registration) {
+			registration.preserveSessionOrder(true);
+		}
+
+		@Override
+		protected void configureClientOutboundChannel(ChannelRegistration registration) {
+			registration.preserveSessionOrder(true);
+		}
+	}
+
+
 	private static class TestChannel extends ExecutorSubscribableChannel {
 
 		private final List<Message<?>> messages = new ArrayList<>();
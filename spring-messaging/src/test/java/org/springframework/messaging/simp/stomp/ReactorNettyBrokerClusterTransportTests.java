@@ -0,0 +1,168 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp.stomp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.BrokerClusterTransport;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.messaging.tcp.FixedIntervalReconnectStrategy;
+import org.springframework.util.SocketUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Integration tests for {@link ReactorNettyBrokerClusterTransport}.
+ */
+public class ReactorNettyBrokerClusterTransportTests {
+
+	private ReactorNettyBrokerClusterTransport transport1;
+
+	private ReactorNettyBrokerClusterTransport transport2;
+
+	private final TestListener listener1 = new TestListener();
+
+	private final TestListener listener2 = new TestListener();
+
+
+	@Before
+	public void setup() {
+		int port1 = SocketUtils.findAvailableTcpPort(61613);
+		int port2 = SocketUtils.findAvailableTcpPort(port1 + 1);
+		this.transport1 = new ReactorNettyBrokerClusterTransport("node1", port1);
+		this.transport1.addNode("node2", "127.0.0.1", port2);
+		this.transport1.setReconnectStrategy(new FixedIntervalReconnectStrategy(100));
+		this.transport2 = new ReactorNettyBrokerClusterTransport("node2", port2);
+		this.transport2.addNode("node1", "127.0.0.1", port1);
+		this.transport2.setReconnectStrategy(new FixedIntervalReconnectStrategy(100));
+	}
+
+	@After
+	public void teardown() {
+		this.transport1.stop();
+		this.transport2.stop();
+	}
+
+
+	@Test
+	public void exchangeMessages() throws Exception {
+		this.transport1.start(this.listener1);
+		this.transport2.start(this.listener2);
+		assertEquals("node2", this.listener1.availableNodes.poll(5, TimeUnit.SECONDS));
+		assertEquals("node1", this.listener2.availableNodes.poll(5, TimeUnit.SECONDS));
+
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+		accessor.setDestination("/topic/foo");
+		accessor.setNativeHeader("session", "sess1");
+		accessor.setNativeHeader("id", "sub1");
+		Message<byte[]> subscribe = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+
+		accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setDestination("/topic/foo");
+		byte[] payload = "payload".getBytes(StandardCharsets.UTF_8);
+		Message<byte[]> message = MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+
+		this.transport1.send("node2", Arrays.asList(subscribe, message));
+
+		Message<byte[]> received = this.listener2.messages.poll(5, TimeUnit.SECONDS);
+		assertNotNull(received);
+		assertEquals(SimpMessageType.SUBSCRIBE, SimpMessageHeaderAccessor.getMessageType(received.getHeaders()));
+		assertEquals("/topic/foo", SimpMessageHeaderAccessor.getDestination(received.getHeaders()));
+		assertEquals("sess1", NativeMessageHeaderAccessor.getFirstNativeHeader("session", received.getHeaders()));
+		assertEquals("sub1", NativeMessageHeaderAccessor.getFirstNativeHeader("id", received.getHeaders()));
+
+		received = this.listener2.messages.poll(5, TimeUnit.SECONDS);
+		assertNotNull(received);
+		assertEquals(SimpMessageType.MESSAGE, SimpMessageHeaderAccessor.getMessageType(received.getHeaders()));
+		assertEquals("/topic/foo", SimpMessageHeaderAccessor.getDestination(received.getHeaders()));
+		assertArrayEquals(payload, received.getPayload());
+		assertEquals("node1", this.listener2.senders.poll());
+	}
+
+	@Test
+	public void nodeUnavailableAfterStop() throws Exception {
+		this.transport1.start(this.listener1);
+		this.transport2.start(this.listener2);
+		assertEquals("node1", this.listener2.availableNodes.poll(5, TimeUnit.SECONDS));
+
+		this.transport1.stop();
+		assertEquals("node1", this.listener2.unavailableNodes.poll(5, TimeUnit.SECONDS));
+		assertEquals("node1", this.listener2.resetNodes.poll(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void nodeStateResetOnConnect() throws Exception {
+		this.transport1.start(this.listener1);
+		this.transport2.start(this.listener2);
+		assertEquals("node1", this.listener2.availableNodes.poll(5, TimeUnit.SECONDS));
+		// Before node1 replays its state over its connection to node2
+		assertEquals("node1", this.listener2.resetNodes.poll(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void listensOnLoopbackByDefault() {
+		assertEquals("127.0.0.1", this.transport1.getHost());
+	}
+
+
+	private static class TestListener implements BrokerClusterTransport.Listener {
+
+		private final BlockingQueue<String> availableNodes = new LinkedBlockingQueue<>();
+
+		private final BlockingQueue<String> unavailableNodes = new LinkedBlockingQueue<>();
+
+		private final BlockingQueue<String> resetNodes = new LinkedBlockingQueue<>();
+
+		private final BlockingQueue<String> senders = new LinkedBlockingQueue<>();
+
+		private final BlockingQueue<Message<byte[]>> messages = new LinkedBlockingQueue<>();
+
+		@Override
+		public void nodeAvailable(String nodeId) {
+			this.availableNodes.add(nodeId);
+		}
+
+		@Override
+		public void nodeUnavailable(String nodeId) {
+			this.unavailableNodes.add(nodeId);
+		}
+
+		@Override
+		public void nodeStateReset(String nodeId) {
+			this.resetNodes.add(nodeId);
+		}
+
+		@Override
+		public void handleMessage(String nodeId, Message<byte[]> message) {
+			this.senders.add(nodeId);
+			this.messages.add(message);
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,18 +16,28 @@
 
 package org.springframework.messaging.simp.stomp;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
 import org.springframework.util.InvalidMimeTypeException;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test fixture for {@link StompDecoder}.
@@ -248,6 +258,65 @@ public class StompDecoderTests {
 		assertEquals(SimpMessageType.HEARTBEAT, StompHeaderAccessor.wrap(messages.get(0)).getMessageType());
 	}
 
+	@Test
+	public void decodeFrameFromDirectBufferSlice() {
+		byte[] bytes = "xxSEND\ndestination:/a\\cb\nreceipt:r1\n\nThe body\0MESSAGE".getBytes();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+		buffer.put(bytes);
+		buffer.position(2);
+		buffer.limit(bytes.length - 7);
+
+		Message<byte[]> frame = decode(buffer.slice());
+		StompHeaderAccessor headers = StompHeaderAccessor.wrap(frame);
+
+		assertEquals(StompCommand.SEND, headers.getCommand());
+		assertEquals("/a:b", headers.getDestination());
+		assertEquals("r1", headers.getReceipt());
+		assertEquals("The body", new String(frame.getPayload()));
+	}
+
+	@Test
+	public void decodeFrameSharesCommonHeaderStrings() {
+		Message<byte[]> frame = decode("SUBSCRIBE\nid:sub-0\ndestination:/topic\nack:client\n\n\0");
+		StompHeaderAccessor headers = StompHeaderAccessor.wrap(frame);
+
+		for (String name : headers.toNativeHeaderMap().keySet()) {
+			assertTrue(name, name == StompHeaderAccessor.STOMP_ID_HEADER ||
+					name == StompHeaderAccessor.STOMP_DESTINATION_HEADER || name == StompHeaderAccessor.STOMP_ACK_HEADER);
+		}
+		assertSame("client", headers.getFirstNativeHeader(StompHeaderAccessor.STOMP_ACK_HEADER));
+		assertEquals("sub-0", headers.getSubscriptionId());
+	}
+
+	@Test
+	public void decodeFrameWithHeaderValuesDecodedOnAccess() throws Exception {
+		byte[] bytes = "SEND\ndestination:/a\nfoo:bar\nfoo:b\\cz\n\nThe body\0".getBytes();
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		Message<byte[]> frame = decode(buffer);
+		// The input buffer may be reused once decoded
+		Arrays.fill(bytes, (byte) 0);
+
+		StompHeaderAccessor headers = StompHeaderAccessor.wrap(frame);
+		assertEquals("/a", headers.getDestination());
+		assertEquals(Arrays.asList("bar", "b:z"), headers.getNativeHeader("foo"));
+		assertEquals("The body", new String(frame.getPayload()));
+
+		List<String> values = headers.getNativeHeader("foo");
+		values.add("baz");
+		values.remove(0);
+		assertEquals(Arrays.asList("b:z", "baz"), values);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(output)) {
+			out.writeObject(frame.getHeaders());
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+			MessageHeaders copy = (MessageHeaders) in.readObject();
+			Map<?, ?> nativeHeaders = copy.get(NativeMessageHeaderAccessor.NATIVE_HEADERS, Map.class);
+			assertEquals(Arrays.asList("b:z", "baz"), nativeHeaders.get("foo"));
+		}
+	}
+
 	private void assertIncompleteDecode(String partialFrame) {
 		ByteBuffer buffer = ByteBuffer.wrap(partialFrame.getBytes());
 		assertNull(decode(buffer));
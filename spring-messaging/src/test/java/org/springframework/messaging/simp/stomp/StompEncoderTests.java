@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,12 +16,24 @@
 
 package org.springframework.messaging.simp.stomp;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.buffer.UnpooledHeapByteBuf;
 import org.junit.Test;
 
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -66,6 +78,45 @@ public class StompEncoderTests {
 				new String(encoder.encode(frame)));
 	}
 
+	@Test
+	public void encodeFrameToDataBuffer() {
+		StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SEND);
+		headers.addNativeHeader("a", "alpha");
+		byte[] payload = "Message body".getBytes();
+		DataBuffer buffer = new DefaultDataBufferFactory().allocateBuffer(16);
+		encoder.encode(headers.getMessageHeaders(), payload, buffer);
+
+		byte[] bytes = new byte[buffer.readableByteCount()];
+		buffer.read(bytes);
+		assertArrayEquals(encoder.encode(headers.getMessageHeaders(), payload), bytes);
+		assertEquals("SEND\na:alpha\ncontent-length:12\n\nMessage body\0", new String(bytes));
+	}
+
+	@Test
+	public void encodeFrameToNettyBufferWithoutIntermediateArrays() {
+		StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SEND);
+		headers.setDestination("/topic/caf\u00e9:\ud83d\ude00");
+		headers.addNativeHeader("a", "alpha");
+		byte[] payload = "Message body".getBytes(StandardCharsets.UTF_8);
+		Message<byte[]> frame = MessageBuilder.createMessage(payload, headers.getMessageHeaders());
+
+		StompReactorNettyCodec codec = new StompReactorNettyCodec();
+		RecordingByteBuf first = new RecordingByteBuf();
+		codec.encode(frame, first);
+		RecordingByteBuf second = new RecordingByteBuf();
+		codec.encode(frame, second);
+
+		// Only the payload and byte arrays cached by the encoder are written
+		assertTrue(first.writtenArrays.contains(payload));
+		assertEquals(first.writtenArrays.size(), second.writtenArrays.size());
+		for (int i = 0; i < first.writtenArrays.size(); i++) {
+			assertSame(first.writtenArrays.get(i), second.writtenArrays.get(i));
+		}
+		assertEquals("SEND\ndestination:/topic/caf\u00e9\\c\ud83d\ude00\na:alpha\ncontent-length:12\n\nMessage body\0",
+				first.toString(StandardCharsets.UTF_8));
+		assertArrayEquals(encoder.encode(frame), ByteBufUtil.getBytes(first));
+	}
+
 	@Test
 	public void encodeFrameWithHeadersBody() {
 		StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SEND);
@@ -88,4 +139,20 @@ public class StompEncoderTests {
 				new String(encoder.encode(frame)));
 	}
 
+
+	private static class RecordingByteBuf extends UnpooledHeapByteBuf {
+
+		private final List<byte[]> writtenArrays = new ArrayList<>();
+
+		RecordingByteBuf() {
+			super(UnpooledByteBufAllocator.DEFAULT, 16, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public ByteBuf writeBytes(byte[] src, int srcIndex, int length) {
+			this.writtenArrays.add(src);
+			return super.writeBytes(src, srcIndex, length);
+		}
+	}
+
 }
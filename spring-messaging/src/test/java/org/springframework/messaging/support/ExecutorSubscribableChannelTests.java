@@ -16,6 +16,7 @@
 
 package org.springframework.messaging.support;
 
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
@@ -24,6 +25,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -99,6 +101,43 @@ public class ExecutorSubscribableChannelTests {
 		assertTrue(interceptor.wasAfterHandledInvoked());
 	}
 
+	@Test
+	public void sendAllWithExecutor() throws Exception {
+		BeforeHandleInterceptor interceptor = new BeforeHandleInterceptor();
+		TaskExecutor executor = mock(TaskExecutor.class);
+		ExecutorSubscribableChannel testChannel = new ExecutorSubscribableChannel(executor);
+		testChannel.addInterceptor(interceptor);
+		testChannel.subscribe(this.handler);
+		Message<String> otherMessage = MessageBuilder.withPayload("other").build();
+		assertEquals(2, testChannel.sendAll(Arrays.asList(this.message, otherMessage)));
+		verify(executor, times(1)).execute(this.runnableCaptor.capture());
+		verify(this.handler, never()).handleMessage(any());
+		this.runnableCaptor.getValue().run();
+		InOrder inOrder = inOrder(this.handler);
+		inOrder.verify(this.handler).handleMessage(this.message);
+		inOrder.verify(this.handler).handleMessage(otherMessage);
+		assertEquals(2, interceptor.getCounter().get());
+		assertTrue(interceptor.wasAfterHandledInvoked());
+	}
+
+	@Test
+	public void sendAllContinuesAfterFailure() throws Exception {
+		Message<String> otherMessage = MessageBuilder.withPayload("other").build();
+		willThrow(new IllegalStateException("failed")).given(this.handler).handleMessage(this.message);
+		this.channel.subscribe(this.handler);
+		this.channel.addInterceptor(new ChannelInterceptorAdapter() {
+			@Override
+			public Message<?> preSend(Message<?> message, MessageChannel channel) {
+				return (message.getPayload().equals("rejected") ? null : message);
+			}
+		});
+		Message<String> rejectedMessage = MessageBuilder.withPayload("rejected").build();
+		assertEquals(1, this.channel.sendAll(Arrays.asList(this.message, rejectedMessage, otherMessage)));
+		verify(this.handler).handleMessage(this.message);
+		verify(this.handler).handleMessage(otherMessage);
+		verify(this.handler, never()).handleMessage(rejectedMessage);
+	}
+
 	@Test
 	public void subscribeTwice() throws Exception {
 		assertThat(this.channel.subscribe(this.handler), equalTo(true));
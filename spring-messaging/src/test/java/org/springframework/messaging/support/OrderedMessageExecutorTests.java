@@ -0,0 +1,192 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.messaging.Message;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link OrderedMessageExecutor}.
+ */
+public class OrderedMessageExecutorTests {
+
+	private final ExecutorService threadPool = Executors.newFixedThreadPool(4);
+
+
+	@After
+	public void shutdown() {
+		this.threadPool.shutdownNow();
+	}
+
+
+	@Test
+	public void preservesOrderPerSession() throws Exception {
+		int sessionCount = 8;
+		int messageCount = 1000;
+		Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+		CountDownLatch latch = new CountDownLatch(sessionCount * messageCount);
+		ExecutorSubscribableChannel channel =
+				new ExecutorSubscribableChannel(new OrderedMessageExecutor(this.threadPool, "session", 4));
+		channel.subscribe(message -> {
+			String session = (String) message.getHeaders().get("session");
+			received.computeIfAbsent(session, s -> Collections.synchronizedList(new ArrayList<>()))
+					.add((Integer) message.getPayload());
+			latch.countDown();
+		});
+
+		for (int i = 0; i < messageCount; i++) {
+			List<Message<?>> batch = new ArrayList<>();
+			for (int j = 0; j < sessionCount; j++) {
+				Message<Integer> message = MessageBuilder.withPayload(i).setHeader("session", "sess" + j).build();
+				if (i % 2 == 0) {
+					channel.send(message);
+				}
+				else {
+					batch.add(message);
+				}
+			}
+			channel.sendAll(batch);
+		}
+
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals(sessionCount, received.size());
+		for (List<Integer> payloads : received.values()) {
+			assertEquals(messageCount, payloads.size());
+			for (int i = 0; i < messageCount; i++) {
+				assertEquals(Integer.valueOf(i), payloads.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void sessionsDoNotBlockEachOther() throws Exception {
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch handled = new CountDownLatch(1);
+		ExecutorSubscribableChannel channel =
+				new ExecutorSubscribableChannel(new OrderedMessageExecutor(this.threadPool, "session"));
+		channel.subscribe(message -> {
+			if ("sess1".equals(message.getHeaders().get("session"))) {
+				try {
+					blocked.await();
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			else {
+				handled.countDown();
+			}
+		});
+
+		channel.send(MessageBuilder.withPayload("a").setHeader("session", "sess1").build());
+		channel.send(MessageBuilder.withPayload("b").setHeader("session", "sess2").build());
+		assertTrue(handled.await(5, TimeUnit.SECONDS));
+		blocked.countDown();
+	}
+
+	@Test
+	public void failureDoesNotStopLane() throws Exception {
+		List<Object> handled = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch latch = new CountDownLatch(2);
+		ExecutorSubscribableChannel channel =
+				new ExecutorSubscribableChannel(new OrderedMessageExecutor(this.threadPool, "session", 1));
+		channel.subscribe(message -> {
+			try {
+				if ("fail".equals(message.getPayload())) {
+					throw new IllegalStateException("fail");
+				}
+				handled.add(message.getPayload());
+			}
+			finally {
+				latch.countDown();
+			}
+		});
+
+		channel.send(MessageBuilder.withPayload("fail").setHeader("session", "sess1").build());
+		channel.send(MessageBuilder.withPayload("ok").setHeader("session", "sess1").build());
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals(Collections.singletonList("ok"), handled);
+	}
+
+	@Test
+	public void laneDrainedWhenRescheduleRejected() throws Exception {
+		int messageCount = 100;
+		ThreadPoolExecutor boundedPool =
+				new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+		try {
+			List<Object> handled = Collections.synchronizedList(new ArrayList<>());
+			CountDownLatch started = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+			CountDownLatch latch = new CountDownLatch(messageCount);
+			ExecutorSubscribableChannel channel =
+					new ExecutorSubscribableChannel(new OrderedMessageExecutor(boundedPool, "session", 1));
+			channel.subscribe(message -> {
+				started.countDown();
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				handled.add(message.getPayload());
+				latch.countDown();
+			});
+
+			for (int i = 0; i < messageCount; i++) {
+				channel.send(MessageBuilder.withPayload(i).setHeader("session", "sess1").build());
+			}
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			// Saturate the pool so that rescheduling the lane gets rejected
+			boundedPool.execute(() -> {});
+			release.countDown();
+
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+			for (int i = 0; i < messageCount; i++) {
+				assertEquals(i, handled.get(i));
+			}
+		}
+		finally {
+			boundedPool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void tasksWithoutKeyBypassLanes() throws Exception {
+		List<Runnable> executed = new ArrayList<>();
+		OrderedMessageExecutor executor = new OrderedMessageExecutor(executed::add, "session");
+		Runnable task = () -> {};
+		executor.execute(task);
+		assertEquals(Collections.singletonList(task), executed);
+	}
+
+}
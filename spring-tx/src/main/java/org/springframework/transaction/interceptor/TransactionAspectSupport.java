@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,22 +18,34 @@ package org.springframework.transaction.interceptor;
 
 import java.lang.reflect.Method;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.BeanFactoryAnnotationUtils;
 import org.springframework.core.NamedThreadLocal;
+import org.springframework.core.ReactiveAdapter;
+import org.springframework.core.ReactiveAdapterRegistry;
 import org.springframework.lang.Nullable;
 import org.springframework.transaction.NoTransactionException;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.TransactionSystemException;
 import org.springframework.transaction.support.CallbackPreferringPlatformTransactionManager;
+import org.springframework.transaction.support.TransactionContext;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.ConcurrentReferenceHashMap;
@@ -56,6 +68,15 @@ import org.springframework.util.StringUtils;
  * implementation will perform the actual transaction management, and a
  * {@code TransactionAttributeSource} is used for determining transaction definitions.
  *
+ * <p>As of 5.1, methods returning a {@link CompletionStage} or a Reactive Streams
+ * type supported by {@link ReactiveAdapterRegistry} (e.g. a Reactor {@code Mono}
+ * or {@code Flux}) may complete their transaction once the returned result completes,
+ * if {@link #setAsyncTransactionDemarcation enabled} and provided that the calling
+ * thread is not associated with a transaction already.
+ * The transactional state is not kept bound to the calling thread in the meantime
+ * but carried along as a {@link TransactionContext}; see
+ * {@link #invokeWithinTransaction} for details.
+ *
  * <p>A transaction aspect is serializable if its {@code PlatformTransactionManager}
  * and {@code TransactionAttributeSource} are serializable.
  *
@@ -79,6 +100,9 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
 	 */
 	private static final Object DEFAULT_TRANSACTION_MANAGER_KEY = new Object();
 
+	private static final boolean reactiveStreamsPresent = ClassUtils.isPresent(
+			"org.reactivestreams.Publisher", TransactionAspectSupport.class.getClassLoader());
+
 	/**
 	 * Holder to support the {@code currentTransactionStatus()} method,
 	 * and to support communication between different cooperating advices
@@ -144,6 +168,12 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
 	private final ConcurrentMap<Object, PlatformTransactionManager> transactionManagerCache =
 			new ConcurrentReferenceHashMap<>(4);
 
+	@Nullable
+	private final ReactiveTransactionSupport reactiveTransactionSupport =
+			(reactiveStreamsPresent ? new ReactiveTransactionSupport() : null);
+
+	private boolean asyncTransactionDemarcation = false;
+
 
 	/**
 	 * Specify the name of the default transaction manager bean.
@@ -230,6 +260,29 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
 		return this.transactionAttributeSource;
 	}
 
+	/**
+	 * Set whether methods returning a {@link CompletionStage} or a Reactive Streams
+	 * type should have their transaction span the asynchronous result, i.e. be
+	 * completed once the result completes rather than when the method returns.
+	 * <p>Default is "false", treating such methods like any other method. Note that
+	 * with this flag switched on, the target method of a reactive type gets invoked
+	 * within a new transaction for every subscription, and not at all as long as
+	 * the result is not being subscribed to.
+	 * @since 5.1
+	 * @see #invokeWithinTransaction
+	 */
+	public void setAsyncTransactionDemarcation(boolean asyncTransactionDemarcation) {
+		this.asyncTransactionDemarcation = asyncTransactionDemarcation;
+	}
+
+	/**
+	 * Return whether transactions span asynchronous results.
+	 * @since 5.1
+	 */
+	public boolean isAsyncTransactionDemarcation() {
+		return this.asyncTransactionDemarcation;
+	}
+
 	/**
 	 * Set the BeanFactory to use for retrieving PlatformTransactionManager beans.
 	 */
@@ -268,6 +321,19 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
 	 * General delegate for around-advice-based subclasses, delegating to several other template
 	 * methods on this class. Able to handle {@link CallbackPreferringPlatformTransactionManager}
 	 * as well as regular {@link PlatformTransactionManager} implementations.
+	 * <p>If {@link #setAsyncTransactionDemarcation async transaction demarcation}
+	 * is enabled and a regular transaction manager is used, a method returning a
+	 * {@link CompletionStage} gets its transaction committed or rolled back once the
+	 * returned stage completes, on the completing thread; cancelling the returned
+	 * future cancels the original one. A method returning a Reactive Streams type
+	 * starts a new transaction whenever the result is being subscribed to, invokes
+	 * the target method within it and completes it on the terminal signal, rolling
+	 * back on cancellation. In both cases, the transactional state gets unbound from the calling thread
+	 * and is bound only while the transaction is being completed, or while the
+	 * subscriber signals demand, respectively. Asynchronous steps within such a
+	 * transaction may use {@link TransactionContext#executor} to participate in it.
+	 * This only applies if the calling thread is not associated with a transaction
+	 * already; otherwise the method is treated like any other method.
 	 * @param method the Method being invoked
 	 * @param targetClass the target class that we're invoking the method on
 	 * @param invocation the callback to use for proceeding with the target invocation
@@ -285,6 +351,19 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
 		final String joinpointIdentification = methodIdentification(method, targetClass, txAttr);
 
 		if (txAttr == null || !(tm instanceof CallbackPreferringPlatformTransactionManager)) {
+			if (txAttr != null && this.asyncTransactionDemarcation && !isTransactionContextBound()) {
+				Class<?> returnType = method.getReturnType();
+				if (CompletionStage.class.isAssignableFrom(returnType) &&
+						returnType.isAssignableFrom(CompletableFuture.class)) {
+					return invokeWithinAsyncTransaction(tm, txAttr, joinpointIdentification, invocation);
+				}
+				if (this.reactiveTransactionSupport != null &&
+						this.reactiveTransactionSupport.isReactiveType(returnType)) {
+					return this.reactiveTransactionSupport.invokeWithinTransaction(
+							returnType, tm, txAttr, joinpointIdentification, invocation);
+				}
+			}
+
 			// Standard transaction demarcation with getTransaction and commit/rollback calls.
 			TransactionInfo txInfo = createTransactionIfNecessary(tm, txAttr, joinpointIdentification);
 			Object retVal = null;
@@ -361,6 +440,103 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
 		}
 	}
 
+	/**
+	 * Invoke a method returning a {@link CompletionStage} within a transaction
+	 * that gets completed once the returned stage completes.
+	 */
+	@Nullable
+	private Object invokeWithinAsyncTransaction(@Nullable PlatformTransactionManager tm,
+			TransactionAttribute txAttr, String joinpointIdentification, InvocationCallback invocation)
+			throws Throwable {
+
+		TransactionInfo txInfo = createTransactionIfNecessary(tm, txAttr, joinpointIdentification);
+		Object retVal;
+		try {
+			retVal = invocation.proceedWithInvocation();
+		}
+		catch (Throwable ex) {
+			completeTransactionAfterThrowing(txInfo, ex);
+			throw ex;
+		}
+		finally {
+			cleanupTransactionInfo(txInfo);
+		}
+		if (retVal == null) {
+			commitTransactionAfterReturning(txInfo);
+			return null;
+		}
+
+		// Release the calling thread: the transaction gets completed by whichever
+		// thread completes the returned stage.
+		TransactionContext context = TransactionSynchronizationManager.unbindContext();
+		CompletionStage<?> stage = (CompletionStage<?>) retVal;
+		CompletableFuture<Object> result = new CompletableFuture<Object>() {
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				// Cancel the original future as well, rolling back the transaction on its completion
+				boolean cancelled = super.cancel(mayInterruptIfRunning);
+				if (cancelled && stage instanceof Future) {
+					((Future<?>) stage).cancel(mayInterruptIfRunning);
+				}
+				return cancelled;
+			}
+		};
+		stage.whenComplete((value, ex) -> {
+			Throwable failure = completeAsyncTransaction(txInfo, context,
+					(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex));
+			if (failure != null) {
+				result.completeExceptionally(failure);
+			}
+			else {
+				result.complete(value);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Complete an asynchronous transaction with the given context bound
+	 * to the current thread.
+	 * @param txInfo information about the current transaction
+	 * @param context the context of the transaction
+	 * @param ex the exception that the asynchronous result completed with, if any
+	 * @return the exception to propagate to the caller: an exception thrown on
+	 * commit or rollback, or else the given exception, if any
+	 */
+	@Nullable
+	private Throwable completeAsyncTransaction(TransactionInfo txInfo, @Nullable TransactionContext context,
+			@Nullable Throwable ex) {
+
+		Runnable completion = () -> {
+			if (ex != null) {
+				completeTransactionAfterThrowing(txInfo, ex);
+			}
+			else {
+				commitTransactionAfterReturning(txInfo);
+			}
+		};
+		try {
+			if (context != null) {
+				context.run(completion);
+			}
+			else {
+				completion.run();
+			}
+			return ex;
+		}
+		catch (Throwable ex2) {
+			return ex2;
+		}
+	}
+
+	/**
+	 * Determine whether the current thread is associated with transactional state.
+	 */
+	private static boolean isTransactionContextBound() {
+		TransactionContext context = TransactionSynchronizationManager.getCurrentContext();
+		return (context != null && !context.isEmpty());
+	}
+
 	/**
 	 * Clear the cache.
 	 */
@@ -681,6 +857,255 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
 	protected interface InvocationCallback {
 
 		Object proceedWithInvocation() throws Throwable;
+
+		/**
+		 * Return a callback for proceeding with another invocation of the target
+		 * at a later point, e.g. for every subscription to a reactive result.
+		 * <p>The default implementation returns this callback itself.
+		 * @since 5.1
+		 */
+		default InvocationCallback forLaterInvocation() {
+			return this;
+		}
+	}
+
+
+	/**
+	 * Inner class to avoid a hard dependency on Reactive Streams at runtime.
+	 */
+	private class ReactiveTransactionSupport {
+
+		private final ReactiveAdapterRegistry adapterRegistry = ReactiveAdapterRegistry.getSharedInstance();
+
+		public boolean isReactiveType(Class<?> returnType) {
+			ReactiveAdapter adapter = this.adapterRegistry.getAdapter(returnType);
+			return (adapter != null && adapter.getReactiveType() == returnType);
+		}
+
+		public Object invokeWithinTransaction(Class<?> returnType, @Nullable PlatformTransactionManager tm,
+				TransactionAttribute txAttr, String joinpointIdentification, InvocationCallback invocation) {
+
+			ReactiveAdapter adapter = this.adapterRegistry.getAdapter(returnType);
+			Assert.state(adapter != null, "No ReactiveAdapter");
+			return adapter.fromPublisher(
+					new TransactionalPublisher(adapter, tm, txAttr, joinpointIdentification, invocation));
+		}
+	}
+
+
+	/**
+	 * Publisher that starts a new transaction and invokes the target method for
+	 * every subscriber, completing the transaction on the terminal signal.
+	 */
+	private class TransactionalPublisher implements Publisher<Object> {
+
+		private final ReactiveAdapter adapter;
+
+		@Nullable
+		private final PlatformTransactionManager transactionManager;
+
+		private final TransactionAttribute transactionAttribute;
+
+		private final String joinpointIdentification;
+
+		private final InvocationCallback invocation;
+
+		public TransactionalPublisher(ReactiveAdapter adapter, @Nullable PlatformTransactionManager tm,
+				TransactionAttribute txAttr, String joinpointIdentification, InvocationCallback invocation) {
+
+			this.adapter = adapter;
+			this.transactionManager = tm;
+			this.transactionAttribute = txAttr;
+			this.joinpointIdentification = joinpointIdentification;
+			this.invocation = invocation;
+		}
+
+		@Override
+		public void subscribe(Subscriber<? super Object> subscriber) {
+			// Start the transaction on a thread without any transactional state,
+			// restoring that state once the transaction has been started.
+			TransactionContext previous = TransactionSynchronizationManager.unbindContext();
+			TransactionInfo txInfo = null;
+			Publisher<?> source = null;
+			Throwable failure = null;
+			try {
+				txInfo = createTransactionIfNecessary(
+						this.transactionManager, this.transactionAttribute, this.joinpointIdentification);
+				try {
+					source = this.adapter.toPublisher(this.invocation.forLaterInvocation().proceedWithInvocation());
+				}
+				finally {
+					cleanupTransactionInfo(txInfo);
+				}
+			}
+			catch (Throwable ex) {
+				failure = ex;
+				if (txInfo != null) {
+					try {
+						completeTransactionAfterThrowing(txInfo, ex);
+					}
+					catch (Throwable ex2) {
+						failure = ex2;
+					}
+				}
+			}
+			TransactionContext context = TransactionSynchronizationManager.unbindContext();
+			if (previous != null) {
+				TransactionSynchronizationManager.bindContext(previous);
+			}
+
+			if (failure != null || txInfo == null || source == null) {
+				rejectSubscriber(subscriber, (failure != null ? failure :
+						new IllegalStateException("No transactional result for [" + this.joinpointIdentification + "]")));
+				return;
+			}
+			Publisher<?> sourceToUse = source;
+			TransactionalSubscriber transactionalSubscriber = new TransactionalSubscriber(
+					subscriber, txInfo, context, !this.adapter.isMultiValue());
+			transactionalSubscriber.runInContext(() -> sourceToUse.subscribe(transactionalSubscriber));
+		}
+
+		private void rejectSubscriber(Subscriber<? super Object> subscriber, Throwable ex) {
+			subscriber.onSubscribe(new Subscription() {
+				@Override
+				public void request(long n) {
+				}
+				@Override
+				public void cancel() {
+				}
+			});
+			subscriber.onError(ex);
+		}
+	}
+
+
+	/**
+	 * Subscriber that binds the transaction context while signalling demand
+	 * and completes the transaction on the terminal signal or on cancellation.
+	 * For single-value types, the transaction gets completed on the value already
+	 * since consumers may cancel right after receiving it.
+	 */
+	private class TransactionalSubscriber implements Subscriber<Object>, Subscription {
+
+		private final Subscriber<? super Object> actual;
+
+		private final TransactionInfo txInfo;
+
+		@Nullable
+		private final TransactionContext context;
+
+		private final boolean singleValue;
+
+		private final AtomicBoolean completed = new AtomicBoolean();
+
+		@Nullable
+		private volatile Subscription upstream;
+
+		private volatile boolean failed;
+
+		public TransactionalSubscriber(Subscriber<? super Object> actual, TransactionInfo txInfo,
+				@Nullable TransactionContext context, boolean singleValue) {
+
+			this.actual = actual;
+			this.txInfo = txInfo;
+			this.context = context;
+			this.singleValue = singleValue;
+		}
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			this.upstream = subscription;
+			this.actual.onSubscribe(this);
+		}
+
+		@Override
+		public void onNext(Object value) {
+			if (this.failed) {
+				return;
+			}
+			if (this.singleValue && this.completed.compareAndSet(false, true)) {
+				Throwable failure = completeAsyncTransaction(this.txInfo, this.context, null);
+				if (failure != null) {
+					this.failed = true;
+					Subscription upstream = this.upstream;
+					if (upstream != null) {
+						upstream.cancel();
+					}
+					this.actual.onError(failure);
+					return;
+				}
+			}
+			this.actual.onNext(value);
+		}
+
+		@Override
+		public void onError(Throwable ex) {
+			if (this.failed) {
+				return;
+			}
+			Throwable failure = ex;
+			if (this.completed.compareAndSet(false, true)) {
+				failure = completeAsyncTransaction(this.txInfo, this.context, ex);
+			}
+			this.actual.onError(failure != null ? failure : ex);
+		}
+
+		@Override
+		public void onComplete() {
+			if (this.failed) {
+				return;
+			}
+			Throwable failure = null;
+			if (this.completed.compareAndSet(false, true)) {
+				failure = completeAsyncTransaction(this.txInfo, this.context, null);
+			}
+			if (failure != null) {
+				this.actual.onError(failure);
+			}
+			else {
+				this.actual.onComplete();
+			}
+		}
+
+		@Override
+		public void request(long n) {
+			Subscription upstream = this.upstream;
+			if (upstream != null) {
+				runInContext(() -> upstream.request(n));
+			}
+		}
+
+		@Override
+		public void cancel() {
+			Subscription upstream = this.upstream;
+			if (upstream != null) {
+				runInContext(upstream::cancel);
+			}
+			if (this.completed.compareAndSet(false, true)) {
+				TransactionStatus status = this.txInfo.getTransactionStatus();
+				if (status != null) {
+					if (logger.isTraceEnabled()) {
+						logger.trace("Rolling back transaction for [" + this.txInfo.getJoinpointIdentification() +
+								"] after cancellation");
+					}
+					try {
+						runInContext(() -> this.txInfo.getTransactionManager().rollback(status));
+					}
+					catch (Throwable ex) {
+						logger.error("Rollback after cancellation failed", ex);
+					}
+				}
+			}
+		}
+
+		public void runInContext(Runnable task) {
+			if (this.context != null) {
+				this.context.run(task);
+			}
+			else {
+				task.run();
+			}
+		}
 	}
 
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -25,6 +25,7 @@ import java.util.Properties;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 
+import org.springframework.aop.ProxyMethodInvocation;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.lang.Nullable;
@@ -95,7 +96,7 @@ public class TransactionInterceptor extends TransactionAspectSupport implements
 		Class<?> targetClass = (invocation.getThis() != null ? AopUtils.getTargetClass(invocation.getThis()) : null);
 
 		// Adapt to TransactionAspectSupport's invokeWithinTransaction...
-		return invokeWithinTransaction(invocation.getMethod(), targetClass, invocation::proceed);
+		return invokeWithinTransaction(invocation.getMethod(), targetClass, new MethodInvocationCallback(invocation));
 	}
 
 
@@ -112,6 +113,7 @@ public class TransactionInterceptor extends TransactionAspectSupport implements
 		oos.writeObject(getTransactionManager());
 		oos.writeObject(getTransactionAttributeSource());
 		oos.writeObject(getBeanFactory());
+		oos.writeBoolean(isAsyncTransactionDemarcation());
 	}
 
 	private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
@@ -125,6 +127,35 @@ public class TransactionInterceptor extends TransactionAspectSupport implements
 		setTransactionManager((PlatformTransactionManager) ois.readObject());
 		setTransactionAttributeSource((TransactionAttributeSource) ois.readObject());
 		setBeanFactory((BeanFactory) ois.readObject());
+		setAsyncTransactionDemarcation(ois.readBoolean());
+	}
+
+
+	/**
+	 * {@link InvocationCallback} proceeding with a {@link MethodInvocation},
+	 * using a clone of the invocation for later invocations so that these
+	 * proceed through the remaining interceptor chain as well.
+	 */
+	private static class MethodInvocationCallback implements InvocationCallback {
+
+		private final MethodInvocation invocation;
+
+		public MethodInvocationCallback(MethodInvocation invocation) {
+			this.invocation = invocation;
+		}
+
+		@Override
+		public Object proceedWithInvocation() throws Throwable {
+			return this.invocation.proceed();
+		}
+
+		@Override
+		public InvocationCallback forLaterInvocation() {
+			if (this.invocation instanceof ProxyMethodInvocation) {
+				return new MethodInvocationCallback(((ProxyMethodInvocation) this.invocation).invocableClone());
+			}
+			return this;
+		}
 	}
 
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.transaction.support;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * Holder for the transactional state that {@link TransactionSynchronizationManager}
+ * manages for a thread: the bound resources, the registered synchronizations
+ * and the characteristics of the current transaction.
+ *
+ * <p>A context is bound to at most one thread at a time but is not tied to a
+ * specific thread: it can be obtained via
+ * {@link TransactionSynchronizationManager#unbindContext()}, handed over to
+ * a different thread and bound there again, e.g. in order to complete an
+ * asynchronous transaction on the thread that completes the corresponding
+ * {@link java.util.concurrent.CompletableFuture} rather than keeping the
+ * initiating thread busy until then.
+ *
+ * <p>Application code will typically rely on {@link #run}, {@link #call}
+ * or {@link #executor} for executing work within a context that has been
+ * obtained through {@link TransactionSynchronizationManager#getCurrentContext()}.
+ * Note that a context is not meant to be used by several threads concurrently;
+ * the work executed within it is expected to be sequential.
+ *
+ * @since 5.1
+ * @see TransactionSynchronizationManager#getCurrentContext()
+ * @see TransactionSynchronizationManager#bindContext
+ * @see TransactionSynchronizationManager#unbindContext()
+ */
+public final class TransactionContext {
+
+	@Nullable
+	Map<Object, Object> resources;
+
+	@Nullable
+	Set<TransactionSynchronization> synchronizations;
+
+	@Nullable
+	String currentTransactionName;
+
+	boolean currentTransactionReadOnly;
+
+	@Nullable
+	Integer currentTransactionIsolationLevel;
+
+	boolean actualTransactionActive;
+
+
+	TransactionContext() {
+	}
+
+
+	/**
+	 * Return whether this context holds any transactional state,
+	 * i.e. neither resources nor synchronizations nor any transaction
+	 * characteristics.
+	 */
+	public boolean isEmpty() {
+		return ((this.resources == null || this.resources.isEmpty()) && this.synchronizations == null &&
+				this.currentTransactionName == null && !this.currentTransactionReadOnly &&
+				this.currentTransactionIsolationLevel == null && !this.actualTransactionActive);
+	}
+
+	/**
+	 * Clear the transaction synchronization state held by this context,
+	 * leaving the bound resources in place.
+	 * @see TransactionSynchronizationManager#clear()
+	 */
+	void clearSynchronizationState() {
+		this.synchronizations = null;
+		this.currentTransactionName = null;
+		this.currentTransactionReadOnly = false;
+		this.currentTransactionIsolationLevel = null;
+		this.actualTransactionActive = false;
+	}
+
+	/**
+	 * Execute the given task with this context bound to the current thread,
+	 * restoring the previously bound context (if any) afterwards.
+	 * @param task the task to execute
+	 */
+	public void run(Runnable task) {
+		Assert.notNull(task, "Task must not be null");
+		TransactionContext previous = TransactionSynchronizationManager.unbindContext();
+		TransactionSynchronizationManager.bindContext(this);
+		try {
+			task.run();
+		}
+		finally {
+			restore(previous);
+		}
+	}
+
+	/**
+	 * Execute the given task with this context bound to the current thread,
+	 * restoring the previously bound context (if any) afterwards.
+	 * @param task the task to execute
+	 * @return the result of the task
+	 * @throws Exception as thrown by the task
+	 */
+	public <T> T call(Callable<T> task) throws Exception {
+		Assert.notNull(task, "Task must not be null");
+		TransactionContext previous = TransactionSynchronizationManager.unbindContext();
+		TransactionSynchronizationManager.bindContext(this);
+		try {
+			return task.call();
+		}
+		finally {
+			restore(previous);
+		}
+	}
+
+	/**
+	 * Return an {@link Executor} that delegates to the given executor,
+	 * running each task with this context bound to the executing thread.
+	 * <p>Useful for asynchronous steps that need to participate in the
+	 * current transaction, e.g. with
+	 * {@link java.util.concurrent.CompletableFuture#supplyAsync(java.util.function.Supplier, Executor)}.
+	 * @param executor the target executor
+	 * @return the context-aware executor
+	 */
+	public Executor executor(Executor executor) {
+		Assert.notNull(executor, "Executor must not be null");
+		return task -> executor.execute(() -> run(task));
+	}
+
+	private void restore(@Nullable TransactionContext previous) {
+		TransactionSynchronizationManager.unbindContext();
+		if (previous != null && !previous.isEmpty()) {
+			TransactionSynchronizationManager.bindContext(previous);
+		}
+	}
+
+}
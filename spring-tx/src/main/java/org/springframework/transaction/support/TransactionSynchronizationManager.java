@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -64,6 +64,11 @@ import org.springframework.util.Assert;
  * within a JTA transaction, e.g. a JDBC Connection or a Hibernate Session for
  * any given DataSource or SessionFactory, respectively.
  *
+ * <p>As of 5.1, all of this state is held in a {@link TransactionContext} that
+ * can be unbound from one thread and bound to another one, allowing for a
+ * transaction to be completed asynchronously without occupying the initiating
+ * thread until then. See {@link #unbindContext()} and {@link #bindContext}.
+ *
  * @author Juergen Hoeller
  * @since 02.06.2003
  * @see #isSynchronizationActive
@@ -78,23 +83,93 @@ public abstract class TransactionSynchronizationManager {
 
 	private static final Log logger = LogFactory.getLog(TransactionSynchronizationManager.class);
 
-	private static final ThreadLocal<Map<Object, Object>> resources =
-			new NamedThreadLocal<>("Transactional resources");
+	private static final ThreadLocal<TransactionContext> currentContext =
+			new NamedThreadLocal<>("Current transaction context");
 
-	private static final ThreadLocal<Set<TransactionSynchronization>> synchronizations =
-			new NamedThreadLocal<>("Transaction synchronizations");
 
-	private static final ThreadLocal<String> currentTransactionName =
-			new NamedThreadLocal<>("Current transaction name");
+	//-------------------------------------------------------------------------
+	// Management of the transaction context as a whole
+	//-------------------------------------------------------------------------
 
-	private static final ThreadLocal<Boolean> currentTransactionReadOnly =
-			new NamedThreadLocal<>("Current transaction read-only status");
+	/**
+	 * Return the transaction context that is bound to the current thread,
+	 * holding its resources, synchronizations and transaction characteristics.
+	 * <p>The returned context reflects all subsequent changes made through
+	 * this manager while it remains bound. It can be used for executing
+	 * work on a different thread within the same transaction, for example
+	 * through {@link TransactionContext#executor}.
+	 * @return the current context, or {@code null} if the current thread
+	 * has no transactional state bound
+	 * @since 5.1
+	 */
+	@Nullable
+	public static TransactionContext getCurrentContext() {
+		return currentContext.get();
+	}
 
-	private static final ThreadLocal<Integer> currentTransactionIsolationLevel =
-			new NamedThreadLocal<>("Current transaction isolation level");
+	/**
+	 * Bind the given transaction context to the current thread, typically
+	 * after it has been unbound from a different thread.
+	 * @param context the context to bind
+	 * @throws IllegalStateException if a different context with transactional
+	 * state is already bound to the current thread
+	 * @since 5.1
+	 * @see #unbindContext()
+	 */
+	public static void bindContext(TransactionContext context) throws IllegalStateException {
+		Assert.notNull(context, "TransactionContext must not be null");
+		TransactionContext existing = currentContext.get();
+		if (existing != null && existing != context && !existing.isEmpty()) {
+			throw new IllegalStateException(
+					"Already transaction context bound to thread [" + Thread.currentThread().getName() + "]");
+		}
+		currentContext.set(context);
+		if (logger.isTraceEnabled()) {
+			logger.trace("Bound transaction context to thread [" + Thread.currentThread().getName() + "]");
+		}
+	}
 
-	private static final ThreadLocal<Boolean> actualTransactionActive =
-			new NamedThreadLocal<>("Actual transaction active");
+	/**
+	 * Unbind the transaction context from the current thread, leaving the
+	 * thread without any transactional state. The returned context can be
+	 * bound to another thread (or to the same thread later on) in order
+	 * to continue or complete the transaction there.
+	 * @return the previously bound context, or {@code null} if none
+	 * @since 5.1
+	 * @see #bindContext
+	 */
+	@Nullable
+	public static TransactionContext unbindContext() {
+		TransactionContext context = currentContext.get();
+		if (context != null) {
+			currentContext.remove();
+			if (logger.isTraceEnabled()) {
+				logger.trace("Removed transaction context from thread [" + Thread.currentThread().getName() + "]");
+			}
+		}
+		return context;
+	}
+
+	/**
+	 * Obtain the context bound to the current thread, binding a new one if none.
+	 */
+	private static TransactionContext obtainContext() {
+		TransactionContext context = currentContext.get();
+		if (context == null) {
+			context = new TransactionContext();
+			currentContext.set(context);
+		}
+		return context;
+	}
+
+	/**
+	 * Remove the given context from the current thread once it is empty.
+	 */
+	private static void removeContextIfEmpty(TransactionContext context) {
+		if (context.isEmpty()) {
+			currentContext.remove();
+		}
+	}
 
 
 	//-------------------------------------------------------------------------
@@ -111,7 +186,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @see #hasResource
 	 */
 	public static Map<Object, Object> getResourceMap() {
-		Map<Object, Object> map = resources.get();
+		TransactionContext context = currentContext.get();
+		Map<Object, Object> map = (context != null ? context.resources : null);
 		return (map != null ? Collections.unmodifiableMap(map) : Collections.emptyMap());
 	}
 
@@ -150,7 +226,8 @@ public abstract class TransactionSynchronizationManager {
 	 */
 	@Nullable
 	private static Object doGetResource(Object actualKey) {
-		Map<Object, Object> map = resources.get();
+		TransactionContext context = currentContext.get();
+		Map<Object, Object> map = (context != null ? context.resources : null);
 		if (map == null) {
 			return null;
 		}
@@ -158,9 +235,10 @@ public abstract class TransactionSynchronizationManager {
 		// Transparently remove ResourceHolder that was marked as void...
 		if (value instanceof ResourceHolder && ((ResourceHolder) value).isVoid()) {
 			map.remove(actualKey);
-			// Remove entire ThreadLocal if empty...
+			// Remove entire context from the thread if empty...
 			if (map.isEmpty()) {
-				resources.remove();
+				context.resources = null;
+				removeContextIfEmpty(context);
 			}
 			value = null;
 		}
@@ -177,11 +255,12 @@ public abstract class TransactionSynchronizationManager {
 	public static void bindResource(Object key, Object value) throws IllegalStateException {
 		Object actualKey = TransactionSynchronizationUtils.unwrapResourceIfNecessary(key);
 		Assert.notNull(value, "Value must not be null");
-		Map<Object, Object> map = resources.get();
-		// set ThreadLocal Map if none found
+		TransactionContext context = obtainContext();
+		Map<Object, Object> map = context.resources;
+		// set Map if none found
 		if (map == null) {
 			map = new HashMap<>();
-			resources.set(map);
+			context.resources = map;
 		}
 		Object oldValue = map.put(actualKey, value);
 		// Transparently suppress a ResourceHolder that was marked as void...
@@ -231,14 +310,16 @@ public abstract class TransactionSynchronizationManager {
 	 */
 	@Nullable
 	private static Object doUnbindResource(Object actualKey) {
-		Map<Object, Object> map = resources.get();
+		TransactionContext context = currentContext.get();
+		Map<Object, Object> map = (context != null ? context.resources : null);
 		if (map == null) {
 			return null;
 		}
 		Object value = map.remove(actualKey);
-		// Remove entire ThreadLocal if empty...
+		// Remove entire context from the thread if empty...
 		if (map.isEmpty()) {
-			resources.remove();
+			context.resources = null;
+			removeContextIfEmpty(context);
 		}
 		// Transparently suppress a ResourceHolder that was marked as void...
 		if (value instanceof ResourceHolder && ((ResourceHolder) value).isVoid()) {
@@ -262,7 +343,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @see #registerSynchronization
 	 */
 	public static boolean isSynchronizationActive() {
-		return (synchronizations.get() != null);
+		TransactionContext context = currentContext.get();
+		return (context != null && context.synchronizations != null);
 	}
 
 	/**
@@ -275,7 +357,7 @@ public abstract class TransactionSynchronizationManager {
 			throw new IllegalStateException("Cannot activate transaction synchronization - already active");
 		}
 		logger.trace("Initializing transaction synchronization");
-		synchronizations.set(new LinkedHashSet<>());
+		obtainContext().synchronizations = new LinkedHashSet<>();
 	}
 
 	/**
@@ -292,10 +374,12 @@ public abstract class TransactionSynchronizationManager {
 			throws IllegalStateException {
 
 		Assert.notNull(synchronization, "TransactionSynchronization must not be null");
-		if (!isSynchronizationActive()) {
+		TransactionContext context = currentContext.get();
+		Set<TransactionSynchronization> synchs = (context != null ? context.synchronizations : null);
+		if (synchs == null) {
 			throw new IllegalStateException("Transaction synchronization is not active");
 		}
-		synchronizations.get().add(synchronization);
+		synchs.add(synchronization);
 	}
 
 	/**
@@ -306,7 +390,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @see TransactionSynchronization
 	 */
 	public static List<TransactionSynchronization> getSynchronizations() throws IllegalStateException {
-		Set<TransactionSynchronization> synchs = synchronizations.get();
+		TransactionContext context = currentContext.get();
+		Set<TransactionSynchronization> synchs = (context != null ? context.synchronizations : null);
 		if (synchs == null) {
 			throw new IllegalStateException("Transaction synchronization is not active");
 		}
@@ -334,7 +419,9 @@ public abstract class TransactionSynchronizationManager {
 			throw new IllegalStateException("Cannot deactivate transaction synchronization - not active");
 		}
 		logger.trace("Clearing transaction synchronization");
-		synchronizations.remove();
+		TransactionContext context = obtainContext();
+		context.synchronizations = null;
+		removeContextIfEmpty(context);
 	}
 
 
@@ -349,7 +436,11 @@ public abstract class TransactionSynchronizationManager {
 	 * @see org.springframework.transaction.TransactionDefinition#getName()
 	 */
 	public static void setCurrentTransactionName(@Nullable String name) {
-		currentTransactionName.set(name);
+		TransactionContext context = (name != null ? obtainContext() : currentContext.get());
+		if (context != null) {
+			context.currentTransactionName = name;
+			removeContextIfEmpty(context);
+		}
 	}
 
 	/**
@@ -360,7 +451,8 @@ public abstract class TransactionSynchronizationManager {
 	 */
 	@Nullable
 	public static String getCurrentTransactionName() {
-		return currentTransactionName.get();
+		TransactionContext context = currentContext.get();
+		return (context != null ? context.currentTransactionName : null);
 	}
 
 	/**
@@ -371,7 +463,11 @@ public abstract class TransactionSynchronizationManager {
 	 * @see org.springframework.transaction.TransactionDefinition#isReadOnly()
 	 */
 	public static void setCurrentTransactionReadOnly(boolean readOnly) {
-		currentTransactionReadOnly.set(readOnly ? Boolean.TRUE : null);
+		TransactionContext context = (readOnly ? obtainContext() : currentContext.get());
+		if (context != null) {
+			context.currentTransactionReadOnly = readOnly;
+			removeContextIfEmpty(context);
+		}
 	}
 
 	/**
@@ -387,7 +483,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @see TransactionSynchronization#beforeCommit(boolean)
 	 */
 	public static boolean isCurrentTransactionReadOnly() {
-		return (currentTransactionReadOnly.get() != null);
+		TransactionContext context = currentContext.get();
+		return (context != null && context.currentTransactionReadOnly);
 	}
 
 	/**
@@ -407,7 +504,11 @@ public abstract class TransactionSynchronizationManager {
 	 * @see org.springframework.transaction.TransactionDefinition#getIsolationLevel()
 	 */
 	public static void setCurrentTransactionIsolationLevel(@Nullable Integer isolationLevel) {
-		currentTransactionIsolationLevel.set(isolationLevel);
+		TransactionContext context = (isolationLevel != null ? obtainContext() : currentContext.get());
+		if (context != null) {
+			context.currentTransactionIsolationLevel = isolationLevel;
+			removeContextIfEmpty(context);
+		}
 	}
 
 	/**
@@ -429,7 +530,8 @@ public abstract class TransactionSynchronizationManager {
 	 */
 	@Nullable
 	public static Integer getCurrentTransactionIsolationLevel() {
-		return currentTransactionIsolationLevel.get();
+		TransactionContext context = currentContext.get();
+		return (context != null ? context.currentTransactionIsolationLevel : null);
 	}
 
 	/**
@@ -439,7 +541,11 @@ public abstract class TransactionSynchronizationManager {
 	 * with an actual transaction; {@code false} to reset that marker
 	 */
 	public static void setActualTransactionActive(boolean active) {
-		actualTransactionActive.set(active ? Boolean.TRUE : null);
+		TransactionContext context = (active ? obtainContext() : currentContext.get());
+		if (context != null) {
+			context.actualTransactionActive = active;
+			removeContextIfEmpty(context);
+		}
 	}
 
 	/**
@@ -454,7 +560,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @see #isSynchronizationActive()
 	 */
 	public static boolean isActualTransactionActive() {
-		return (actualTransactionActive.get() != null);
+		TransactionContext context = currentContext.get();
+		return (context != null && context.actualTransactionActive);
 	}
 
 
@@ -468,11 +575,11 @@ public abstract class TransactionSynchronizationManager {
 	 * @see #setActualTransactionActive
 	 */
 	public static void clear() {
-		synchronizations.remove();
-		currentTransactionName.remove();
-		currentTransactionReadOnly.remove();
-		currentTransactionIsolationLevel.remove();
-		actualTransactionActive.remove();
+		TransactionContext context = currentContext.get();
+		if (context != null) {
+			context.clearSynchronizationState();
+			removeContextIfEmpty(context);
+		}
 	}
 
 }
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.transaction.interceptor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.tests.transaction.CallCountingTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for transaction demarcation of methods returning asynchronous results
+ * through {@link TransactionInterceptor}.
+ */
+public class AsyncTransactionInterceptorTests {
+
+	private final CallCountingTransactionManager ptm = new CallCountingTransactionManager();
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	private final DefaultAsyncService target = new DefaultAsyncService(this.executor);
+
+	private AsyncService proxy;
+
+
+	@Before
+	public void setup() {
+		this.proxy = createProxy(true);
+	}
+
+	private AsyncService createProxy(boolean asyncTransactionDemarcation) {
+		TransactionInterceptor interceptor =
+				new TransactionInterceptor(this.ptm, new MatchAlwaysTransactionAttributeSource());
+		interceptor.setAsyncTransactionDemarcation(asyncTransactionDemarcation);
+		ProxyFactory pf = new ProxyFactory(this.target);
+		pf.addAdvice(interceptor);
+		return (AsyncService) pf.getProxy();
+	}
+
+	@After
+	public void shutdown() {
+		this.executor.shutdownNow();
+		assertNull(TransactionSynchronizationManager.getCurrentContext());
+	}
+
+
+	@Test
+	public void completableFutureCommitsOnCompletion() throws Exception {
+		CompletableFuture<Void> trigger = new CompletableFuture<>();
+		CompletableFuture<Boolean> result = this.proxy.compute(trigger);
+		assertEquals(1, this.ptm.begun);
+		assertEquals(0, this.ptm.commits);
+		assertFalse(TransactionSynchronizationManager.isSynchronizationActive());
+
+		trigger.complete(null);
+		assertTrue(result.get());
+		assertEquals(1, this.ptm.commits);
+		assertEquals(0, this.ptm.inflight);
+	}
+
+	@Test
+	public void completableFutureRollsBackOnFailure() throws Exception {
+		CompletableFuture<Void> result = this.proxy.fail();
+		try {
+			result.get();
+			fail("Should have thrown ExecutionException");
+		}
+		catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof IllegalStateException);
+		}
+		assertEquals(1, this.ptm.begun);
+		assertEquals(0, this.ptm.commits);
+		assertEquals(1, this.ptm.rollbacks);
+	}
+
+	@Test
+	public void completableFutureCancellationRollsBack() throws Exception {
+		CompletableFuture<Boolean> result = this.proxy.compute(new CompletableFuture<>());
+		assertEquals(1, this.ptm.begun);
+
+		assertTrue(result.cancel(true));
+		assertEquals(0, this.ptm.commits);
+		assertEquals(1, this.ptm.rollbacks);
+		assertEquals(0, this.ptm.inflight);
+	}
+
+	@Test
+	public void completableFutureWithinExistingTransaction() {
+		TransactionTemplate tt = new TransactionTemplate(this.ptm);
+		tt.execute(status -> {
+			this.proxy.fail();
+			// Completed on return, as for any other method
+			assertEquals(2, this.ptm.begun);
+			assertEquals(1, this.ptm.commits);
+			assertTrue(TransactionSynchronizationManager.isSynchronizationActive());
+			return null;
+		});
+		assertEquals(2, this.ptm.commits);
+	}
+
+	@Test
+	public void monoStartsTransactionOnSubscription() {
+		Mono<Boolean> mono = this.proxy.mono();
+		assertEquals(0, this.ptm.begun);
+		assertEquals(0, this.target.invocations);
+
+		assertTrue(mono.block());
+		assertEquals(1, this.target.invocations);
+		assertEquals(1, this.ptm.begun);
+		assertEquals(1, this.ptm.commits);
+		assertFalse(TransactionSynchronizationManager.isSynchronizationActive());
+	}
+
+	@Test
+	public void monoStartsTransactionPerSubscription() {
+		Mono<Boolean> mono = this.proxy.mono();
+		assertTrue(mono.block());
+		assertTrue(mono.block());
+		assertEquals(2, this.target.invocations);
+		assertEquals(2, this.ptm.begun);
+		assertEquals(2, this.ptm.commits);
+	}
+
+	@Test
+	public void fluxRollsBackOnError() {
+		try {
+			this.proxy.flux().collectList().block();
+			fail("Should have thrown IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			assertEquals("flux", ex.getMessage());
+		}
+		assertEquals(1, this.ptm.begun);
+		assertEquals(0, this.ptm.commits);
+		assertEquals(1, this.ptm.rollbacks);
+	}
+
+	@Test
+	public void monoRollsBackOnCancel() {
+		Disposable disposable = this.proxy.never().subscribe();
+		assertEquals(1, this.ptm.begun);
+		disposable.dispose();
+		assertEquals(0, this.ptm.commits);
+		assertEquals(1, this.ptm.rollbacks);
+	}
+
+	@Test
+	public void asyncTransactionDemarcationDisabledByDefault() {
+		this.proxy = createProxy(false);
+
+		// Invoked and completed on return, as for any other method
+		Mono<Boolean> mono = this.proxy.mono();
+		assertEquals(1, this.target.invocations);
+		assertEquals(1, this.ptm.begun);
+		assertEquals(1, this.ptm.commits);
+		assertFalse(mono.block());
+	}
+
+
+	public interface AsyncService {
+
+		CompletableFuture<Boolean> compute(CompletableFuture<Void> trigger);
+
+		CompletableFuture<Void> fail();
+
+		Mono<Boolean> mono();
+
+		Flux<Boolean> flux();
+
+		Mono<Boolean> never();
+	}
+
+
+	public static class DefaultAsyncService implements AsyncService {
+
+		private final ExecutorService executor;
+
+		private int invocations;
+
+		public DefaultAsyncService(ExecutorService executor) {
+			this.executor = executor;
+		}
+
+		@Override
+		public CompletableFuture<Boolean> compute(CompletableFuture<Void> trigger) {
+			return trigger.thenApplyAsync(v -> TransactionSynchronizationManager.isActualTransactionActive(),
+					TransactionSynchronizationManager.getCurrentContext().executor(this.executor));
+		}
+
+		@Override
+		public CompletableFuture<Void> fail() {
+			return CompletableFuture.runAsync(() -> {
+				throw new IllegalStateException("fail");
+			}, this.executor);
+		}
+
+		@Override
+		public Mono<Boolean> mono() {
+			this.invocations++;
+			return Mono.fromCallable(TransactionSynchronizationManager::isActualTransactionActive);
+		}
+
+		@Override
+		public Flux<Boolean> flux() {
+			return Flux.just(TransactionSynchronizationManager.isActualTransactionActive())
+					.concatWith(Flux.error(new IllegalStateException("flux")));
+		}
+
+		@Override
+		public Mono<Boolean> never() {
+			return Mono.never();
+		}
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.transaction.support;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link TransactionContext} handling in {@link TransactionSynchronizationManager}.
+ */
+public class TransactionContextTests {
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+
+	@After
+	public void shutdown() {
+		this.executor.shutdownNow();
+		TransactionSynchronizationManager.unbindContext();
+	}
+
+
+	@Test
+	public void contextOnlyBoundWithState() {
+		assertNull(TransactionSynchronizationManager.getCurrentContext());
+		TransactionSynchronizationManager.setCurrentTransactionName(null);
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+		assertNull(TransactionSynchronizationManager.getCurrentContext());
+
+		TransactionSynchronizationManager.bindResource("key", "value");
+		TransactionSynchronizationManager.initSynchronization();
+		TransactionSynchronizationManager.setCurrentTransactionName("tx");
+		TransactionContext context = TransactionSynchronizationManager.getCurrentContext();
+		assertNotNull(context);
+		assertFalse(context.isEmpty());
+
+		TransactionSynchronizationManager.clear();
+		assertSame(context, TransactionSynchronizationManager.getCurrentContext());
+		assertEquals("value", TransactionSynchronizationManager.getResource("key"));
+		TransactionSynchronizationManager.unbindResource("key");
+		assertTrue(context.isEmpty());
+		assertNull(TransactionSynchronizationManager.getCurrentContext());
+	}
+
+	@Test
+	public void unbindAndBindOnOtherThread() throws Exception {
+		TransactionSynchronizationManager.bindResource("key", "value");
+		TransactionSynchronizationManager.initSynchronization();
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		TransactionSynchronizationManager.setCurrentTransactionIsolationLevel(2);
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+
+		TransactionContext context = TransactionSynchronizationManager.unbindContext();
+		assertNotNull(context);
+		assertFalse(TransactionSynchronizationManager.hasResource("key"));
+		assertFalse(TransactionSynchronizationManager.isSynchronizationActive());
+		assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+
+		CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> {
+			assertTrue(TransactionSynchronizationManager.isSynchronizationActive());
+			assertTrue(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+			assertEquals(Integer.valueOf(2), TransactionSynchronizationManager.getCurrentTransactionIsolationLevel());
+			assertTrue(TransactionSynchronizationManager.isActualTransactionActive());
+			TransactionSynchronizationManager.bindResource("other", "otherValue");
+			return (String) TransactionSynchronizationManager.getResource("key");
+		}, context.executor(this.executor));
+		assertEquals("value", future.get());
+
+		assertNull(this.executor.submit(TransactionSynchronizationManager::getCurrentContext).get());
+		TransactionSynchronizationManager.bindContext(context);
+		assertEquals("otherValue", TransactionSynchronizationManager.getResource("other"));
+		assertEquals(2, TransactionSynchronizationManager.getResourceMap().size());
+	}
+
+	@Test
+	public void runRestoresPreviousContext() throws Exception {
+		TransactionSynchronizationManager.bindResource("key", "value");
+		TransactionContext context = TransactionSynchronizationManager.unbindContext();
+		assertNotNull(context);
+
+		TransactionSynchronizationManager.bindResource("key", "previous");
+		TransactionContext previous = TransactionSynchronizationManager.getCurrentContext();
+		assertEquals("value", context.call(() -> TransactionSynchronizationManager.getResource("key")));
+		assertSame(previous, TransactionSynchronizationManager.getCurrentContext());
+		assertEquals("previous", TransactionSynchronizationManager.getResource("key"));
+
+		context.run(() -> TransactionSynchronizationManager.unbindResource("key"));
+		assertTrue(context.isEmpty());
+		assertEquals("previous", TransactionSynchronizationManager.getResource("key"));
+		TransactionSynchronizationManager.unbindResource("key");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void bindContextWithStateAlreadyBound() {
+		TransactionSynchronizationManager.bindResource("key", "value");
+		TransactionContext context = TransactionSynchronizationManager.unbindContext();
+		TransactionSynchronizationManager.bindResource("key", "other");
+		TransactionSynchronizationManager.bindContext(context);
+	}
+
+}
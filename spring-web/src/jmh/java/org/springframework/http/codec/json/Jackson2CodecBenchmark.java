@@ -0,0 +1,169 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.codec.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+
+/**
+ * Benchmarks for the encoding of objects with {@link Jackson2JsonEncoder}, and
+ * for the non-blocking tokenization of JSON input with {@link Jackson2Tokenizer}.
+ */
+@BenchmarkMode(Mode.Throughput)
+public class Jackson2CodecBenchmark {
+
+	@Benchmark
+	public List<DataBuffer> encodeMono(BenchmarkData data) {
+		return data.encoder.encode(Mono.just(data.pojos.get(0)), data.bufferFactory,
+				data.elementType, MediaType.APPLICATION_JSON, Collections.emptyMap()).collectList().block();
+	}
+
+	@Benchmark
+	public List<DataBuffer> encodeFluxAsArray(BenchmarkData data) {
+		return data.encoder.encode(Flux.fromIterable(data.pojos), data.bufferFactory,
+				data.elementType, MediaType.APPLICATION_JSON, Collections.emptyMap()).collectList().block();
+	}
+
+	@Benchmark
+	public List<DataBuffer> encodeFluxAsStream(BenchmarkData data) {
+		return data.encoder.encode(Flux.fromIterable(data.pojos), data.bufferFactory,
+				data.elementType, MediaType.APPLICATION_STREAM_JSON, Collections.emptyMap()).collectList().block();
+	}
+
+	@Benchmark
+	public List<TokenBuffer> tokenizeArrayElements(BenchmarkData data) {
+		return Jackson2Tokenizer.tokenize(data.chunks(), data.jsonFactory, true).collectList().block();
+	}
+
+	@Benchmark
+	public List<TokenBuffer> tokenizeValue(BenchmarkData data) {
+		return Jackson2Tokenizer.tokenize(data.chunks(), data.jsonFactory, false).collectList().block();
+	}
+
+
+	@State(Scope.Benchmark)
+	public static class BenchmarkData {
+
+		@Param({"1", "100"})
+		public int elementCount;
+
+		/**
+		 * The size of the chunks in which the JSON input is fed to the tokenizer.
+		 */
+		@Param({"1024", "8192"})
+		public int chunkSize;
+
+		public Jackson2JsonEncoder encoder;
+
+		public DataBufferFactory bufferFactory;
+
+		public ResolvableType elementType;
+
+		public JsonFactory jsonFactory;
+
+		public List<Pojo> pojos;
+
+		public List<byte[]> input;
+
+		@Setup
+		public void setup() throws Exception {
+			ObjectMapper mapper = new ObjectMapper();
+			this.encoder = new Jackson2JsonEncoder(mapper);
+			this.bufferFactory = new DefaultDataBufferFactory();
+			this.elementType = ResolvableType.forClass(Pojo.class);
+			this.jsonFactory = mapper.getFactory();
+			this.pojos = new ArrayList<>(this.elementCount);
+			for (int i = 0; i < this.elementCount; i++) {
+				this.pojos.add(new Pojo("foo" + i, i, Arrays.asList("bar", "baz", "qux")));
+			}
+			byte[] json = mapper.writeValueAsBytes(this.pojos);
+			this.input = new ArrayList<>();
+			for (int offset = 0; offset < json.length; offset += this.chunkSize) {
+				this.input.add(Arrays.copyOfRange(json, offset, Math.min(offset + this.chunkSize, json.length)));
+			}
+		}
+
+		public Flux<DataBuffer> chunks() {
+			return Flux.fromIterable(this.input).map(this.bufferFactory::wrap);
+		}
+	}
+
+
+	public static class Pojo {
+
+		private String name;
+
+		private int count;
+
+		private List<String> tags;
+
+		public Pojo() {
+		}
+
+		public Pojo(String name, int count, List<String> tags) {
+			this.name = name;
+			this.count = count;
+			this.tags = tags;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getCount() {
+			return this.count;
+		}
+
+		public void setCount(int count) {
+			this.count = count;
+		}
+
+		public List<String> getTags() {
+			return this.tags;
+		}
+
+		public void setTags(List<String> tags) {
+			this.tags = tags;
+		}
+	}
+
+}
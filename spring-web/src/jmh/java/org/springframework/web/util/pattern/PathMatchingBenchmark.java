@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.util.pattern;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.AntPathMatcher;
+
+/**
+ * Benchmarks comparing {@link AntPathMatcher#match} with {@link PathPattern#matches}
+ * for a set of request paths matched against all patterns of a typical REST API,
+ * as done by a handler mapping without a lookup index.
+ */
+@BenchmarkMode(Mode.Throughput)
+public class PathMatchingBenchmark {
+
+	@Benchmark
+	public void antPathMatcher(BenchmarkData data, Blackhole bh) {
+		for (String path : data.paths) {
+			for (String pattern : data.patterns) {
+				bh.consume(data.pathMatcher.match(pattern, path));
+			}
+		}
+	}
+
+	@Benchmark
+	public void pathPattern(BenchmarkData data, Blackhole bh) {
+		for (String path : data.paths) {
+			PathContainer pathContainer = PathContainer.parsePath(path);
+			for (PathPattern pattern : data.pathPatterns) {
+				bh.consume(pattern.matches(pathContainer));
+			}
+		}
+	}
+
+	@Benchmark
+	public void pathPatternWithParsedPaths(BenchmarkData data, Blackhole bh) {
+		for (PathContainer pathContainer : data.parsedPaths) {
+			for (PathPattern pattern : data.pathPatterns) {
+				bh.consume(pattern.matches(pathContainer));
+			}
+		}
+	}
+
+
+	@State(Scope.Benchmark)
+	public static class BenchmarkData {
+
+		public final String[] patterns = {
+				"/", "/static/**", "/favicon.ico", "/api/users", "/api/users/{id}",
+				"/api/users/{id}/orders", "/api/users/{id}/orders/{orderId}", "/api/products",
+				"/api/products/{id}", "/api/products/*/reviews", "/api/products/{id}/reviews/{reviewId}",
+				"/api/search/{category}/**", "/api/v{version}/status", "/admin/*/settings",
+				"/docs/{page}.html", "/files/{name:[a-z]+}.{ext}"};
+
+		public final String[] paths = {
+				"/", "/static/css/main.css", "/api/users", "/api/users/42/orders/7",
+				"/api/products/42/reviews", "/api/v2/status", "/admin/mail/settings",
+				"/docs/index.html", "/files/report.pdf", "/not/found"};
+
+		public final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+		public List<PathPattern> pathPatterns;
+
+		public List<PathContainer> parsedPaths;
+
+		@Setup
+		public void setup() {
+			PathPatternParser parser = new PathPatternParser();
+			this.pathPatterns = new ArrayList<>(this.patterns.length);
+			for (String pattern : this.patterns) {
+				this.pathPatterns.add(parser.parse(pattern));
+			}
+			this.parsedPaths = new ArrayList<>(this.paths.length);
+			for (String path : this.paths) {
+				this.parsedPaths.add(PathContainer.parsePath(path));
+			}
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,9 +17,18 @@
 package org.springframework.http;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.ResourceRegionEncoder;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.support.ResourceRegion;
+
 /**
  * Sub-interface of {@code ReactiveOutputMessage} that has support for "zero-copy"
  * file transfers.
@@ -40,4 +49,34 @@ public interface ZeroCopyHttpOutputMessage extends ReactiveHttpOutputMessage {
 	 */
 	Mono<Void> writeWith(File file, long position, long count);
 
+	/**
+	 * Use the given {@link ResourceRegion}s, in order, to write the body of the
+	 * message to the underlying HTTP layer. Regions of {@linkplain Resource#isFile()
+	 * file-based} resources are transferred with zero-copy where supported, while
+	 * the content of other resources, e.g. a {@code ByteArrayResource} holding the
+	 * part headers of a {@code multipart/byteranges} body, is written as is.
+	 * <p>The default implementation writes a single file region through
+	 * {@link #writeWith(File, long, long)}, and otherwise encodes all regions
+	 * into data buffers through a {@link ResourceRegionEncoder}.
+	 * @param regions the regions to transfer
+	 * @return a publisher that indicates completion or error.
+	 * @since 5.1
+	 */
+	default Mono<Void> writeRegions(List<ResourceRegion> regions) {
+		if (regions.size() == 1 && regions.get(0).getResource().isFile()) {
+			ResourceRegion region = regions.get(0);
+			try {
+				return writeWith(region.getResource().getFile(), region.getPosition(), region.getCount());
+			}
+			catch (IOException ex) {
+				return Mono.error(ex);
+			}
+		}
+		ResourceRegionEncoder encoder = new ResourceRegionEncoder();
+		ResolvableType regionType = ResolvableType.forClass(ResourceRegion.class);
+		Flux<DataBuffer> body = Flux.fromIterable(regions).concatMap(region ->
+				encoder.encode(Mono.just(region), bufferFactory(), regionType, null, null));
+		return writeWith(body);
+	}
+
 }
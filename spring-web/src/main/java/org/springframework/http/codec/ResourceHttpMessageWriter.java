@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,8 @@ package org.springframework.http.codec;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +34,7 @@ import org.springframework.core.ResolvableType;
 import org.springframework.core.codec.ResourceDecoder;
 import org.springframework.core.codec.ResourceEncoder;
 import org.springframework.core.codec.ResourceRegionEncoder;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.buffer.DataBuffer;
@@ -58,6 +61,10 @@ import static java.util.Collections.emptyMap;
  * for writing one or more {@link ResourceRegion}'s based on the HTTP ranges
  * specified in the request.
  *
+ * <p>File-based resources and regions thereof, including the parts of a
+ * {@code multipart/byteranges} response, are written with zero-copy if the
+ * message is a {@link ZeroCopyHttpOutputMessage}.
+ *
  * <p>For reading to a Resource, use {@link ResourceDecoder} wrapped with
  * {@link DecoderHttpMessageReader}.
  *
@@ -218,13 +225,53 @@ public class ResourceHttpMessageWriter implements HttpMessageWriter<Resource> {
 				String boundary = MimeTypeUtils.generateMultipartBoundaryString();
 				MediaType multipartType = MediaType.parseMediaType("multipart/byteranges;boundary=" + boundary);
 				headers.setContentType(multipartType);
-				Map<String, Object> theHints = new HashMap<>(hints);
-				theHints.put(ResourceRegionEncoder.BOUNDARY_STRING_HINT, boundary);
-				return encodeAndWriteRegions(Flux.fromIterable(regions), resourceMediaType, response, theHints);
+				return zeroCopy(regions, resourceMediaType, boundary, response)
+						.orElseGet(() -> {
+							Map<String, Object> theHints = new HashMap<>(hints);
+							theHints.put(ResourceRegionEncoder.BOUNDARY_STRING_HINT, boundary);
+							return encodeAndWriteRegions(
+									Flux.fromIterable(regions), resourceMediaType, response, theHints);
+						});
 			}
 		});
 	}
 
+	private static Optional<Mono<Void>> zeroCopy(List<ResourceRegion> regions, MediaType mediaType,
+			String boundary, ReactiveHttpOutputMessage message) {
+
+		if (!(message instanceof ZeroCopyHttpOutputMessage)) {
+			return Optional.empty();
+		}
+		for (ResourceRegion region : regions) {
+			if (!region.getResource().isFile()) {
+				return Optional.empty();
+			}
+		}
+		List<ResourceRegion> parts = new ArrayList<>(regions.size() * 2 + 1);
+		long contentLength = 0;
+		for (ResourceRegion region : regions) {
+			long start = region.getPosition();
+			long end = start + region.getCount() - 1;
+			OptionalLong length = lengthOf(region.getResource());
+			String partHeaders = "\r\n--" + boundary + "\r\n" + "Content-Type: " + mediaType + "\r\n" +
+					"Content-Range: bytes " + start + '-' + end +
+					(length.isPresent() ? "/" + length.getAsLong() : "") + "\r\n\r\n";
+			ResourceRegion headersPart = asRegion(partHeaders);
+			parts.add(headersPart);
+			parts.add(region);
+			contentLength += headersPart.getCount() + region.getCount();
+		}
+		ResourceRegion endBoundary = asRegion("\r\n--" + boundary + "--");
+		parts.add(endBoundary);
+		message.getHeaders().setContentLength(contentLength + endBoundary.getCount());
+		return Optional.of(((ZeroCopyHttpOutputMessage) message).writeRegions(parts));
+	}
+
+	private static ResourceRegion asRegion(String content) {
+		byte[] bytes = content.getBytes(StandardCharsets.US_ASCII);
+		return new ResourceRegion(new ByteArrayResource(bytes), 0, bytes.length);
+	}
+
 	private Mono<Void> writeSingleRegion(ResourceRegion region, ReactiveHttpOutputMessage message) {
 
 		return zeroCopy(region.getResource(), region, message)
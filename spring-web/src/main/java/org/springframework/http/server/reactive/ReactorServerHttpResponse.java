@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,24 +17,32 @@
 package org.springframework.http.server.reactive;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.cookie.Cookie;
 import io.netty.handler.codec.http.cookie.DefaultCookie;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyOutbound;
 import reactor.ipc.netty.http.server.HttpServerResponse;
 
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.core.io.support.ResourceRegion;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.ZeroCopyHttpOutputMessage;
 import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
 
 /**
  * Adapt {@link ServerHttpResponse} to the {@link HttpServerResponse}.
@@ -118,6 +126,36 @@ class ReactorServerHttpResponse extends AbstractServerHttpResponse implements Ze
 		return doCommit(() -> this.response.sendFile(file.toPath(), position, count).then());
 	}
 
+	@Override
+	public Mono<Void> writeRegions(List<ResourceRegion> regions) {
+		return doCommit(() -> {
+			NettyOutbound outbound = this.response;
+			try {
+				for (ResourceRegion region : regions) {
+					outbound = sendRegion(outbound, region);
+				}
+			}
+			catch (IOException ex) {
+				return Mono.error(ex);
+			}
+			return outbound.then();
+		});
+	}
+
+	private NettyOutbound sendRegion(NettyOutbound outbound, ResourceRegion region) throws IOException {
+		Resource resource = region.getResource();
+		if (resource.isFile()) {
+			return outbound.sendFile(resource.getFile().toPath(), region.getPosition(), region.getCount());
+		}
+		if (resource instanceof ByteArrayResource) {
+			byte[] content = ((ByteArrayResource) resource).getByteArray();
+			return outbound.send(Mono.just(
+					Unpooled.wrappedBuffer(content, (int) region.getPosition(), (int) region.getCount())));
+		}
+		return outbound.send(toByteBufs(DataBufferUtils.takeUntilByteCount(DataBufferUtils.read(resource,
+				region.getPosition(), bufferFactory(), StreamUtils.BUFFER_SIZE), region.getCount())));
+	}
+
 	private static Publisher<ByteBuf> toByteBufs(Publisher<? extends DataBuffer> dataBuffers) {
 		return Flux.from(dataBuffers).map(NettyDataBufferFactory::toByteBuf);
 	}
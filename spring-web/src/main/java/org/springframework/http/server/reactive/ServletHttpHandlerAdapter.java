@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -109,6 +109,14 @@ public class ServletHttpHandlerAdapter implements Servlet {
 		return this.servletPath;
 	}
 
+	/**
+	 * Set the {@code DataBufferFactory} to read the request body into, and to
+	 * expose to the response for writing.
+	 * <p>By default this is a {@link DefaultDataBufferFactory}, allocating a new
+	 * heap buffer for each read and write. Consider a
+	 * {@link org.springframework.core.io.buffer.PoolingDataBufferFactory} to
+	 * reuse buffers that are released once written, or once consumed.
+	 */
 	public void setDataBufferFactory(DataBufferFactory dataBufferFactory) {
 		Assert.notNull(dataBufferFactory, "DataBufferFactory must not be null");
 		this.dataBufferFactory = dataBufferFactory;
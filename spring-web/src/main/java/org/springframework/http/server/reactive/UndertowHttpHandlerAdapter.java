@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -54,6 +54,14 @@ public class UndertowHttpHandlerAdapter implements io.undertow.server.HttpHandle
 	}
 
 
+	/**
+	 * Set the {@code DataBufferFactory} to expose to the response for writing.
+	 * The request body is read into buffers from the Undertow buffer pool.
+	 * <p>By default this is a {@link DefaultDataBufferFactory}, allocating a new
+	 * heap buffer for each write. Consider a
+	 * {@link org.springframework.core.io.buffer.PoolingDataBufferFactory} to
+	 * reuse buffers that are released once written.
+	 */
 	public void setDataBufferFactory(DataBufferFactory bufferFactory) {
 		Assert.notNull(bufferFactory, "DataBufferFactory must not be null");
 		this.bufferFactory = bufferFactory;
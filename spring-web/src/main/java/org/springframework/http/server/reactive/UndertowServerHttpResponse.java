@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,11 +32,18 @@ import org.reactivestreams.Processor;
 import org.reactivestreams.Publisher;
 import org.xnio.channels.Channels;
 import org.xnio.channels.StreamSinkChannel;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.ResourceRegionEncoder;
+import org.springframework.core.io.Resource;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.support.ResourceRegion;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.ZeroCopyHttpOutputMessage;
 import org.springframework.lang.Nullable;
@@ -52,6 +59,10 @@ import org.springframework.util.Assert;
  */
 class UndertowServerHttpResponse extends AbstractListenerServerHttpResponse implements ZeroCopyHttpOutputMessage {
 
+	private static final ResourceRegionEncoder REGION_ENCODER = new ResourceRegionEncoder();
+
+	private static final ResolvableType REGION_TYPE = ResolvableType.forClass(ResourceRegion.class);
+
 	private final HttpServerExchange exchange;
 
 	@Nullable
@@ -112,27 +123,56 @@ class UndertowServerHttpResponse extends AbstractListenerServerHttpResponse impl
 	@Override
 	public Mono<Void> writeWith(File file, long position, long count) {
 		return doCommit(() -> {
-			FileChannel source = null;
 			try {
-				source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
-				StreamSinkChannel destination = this.exchange.getResponseChannel();
-				Channels.transferBlocking(destination, source, position, count);
+				transferFile(file, position, count, this.exchange.getResponseChannel());
 				return Mono.empty();
 			}
 			catch (IOException ex) {
 				return Mono.error(ex);
 			}
-			finally {
-				if (source != null) {
+		});
+	}
+
+	@Override
+	public Mono<Void> writeRegions(List<ResourceRegion> regions) {
+		return doCommit(() -> {
+			StreamSinkChannel destination = this.exchange.getResponseChannel();
+			// Blocking transfers: perform these on a worker thread, not on the I/O thread
+			Scheduler worker = Schedulers.fromExecutor(this.exchange.getConnection().getWorker());
+			return Flux.fromIterable(regions)
+					.publishOn(worker)
+					.concatMap(region -> writeRegion(region, destination))
+					.then();
+		});
+	}
+
+	private Mono<Void> writeRegion(ResourceRegion region, StreamSinkChannel destination) {
+		Resource resource = region.getResource();
+		if (resource.isFile()) {
+			return Mono.fromCallable(() -> {
+				transferFile(resource.getFile(), region.getPosition(), region.getCount(), destination);
+				return null;
+			});
+		}
+		return REGION_ENCODER.encode(Mono.just(region), bufferFactory(), REGION_TYPE, null, null)
+				.concatMap(dataBuffer -> Mono.fromCallable(() -> {
 					try {
-						source.close();
+						Channels.writeBlocking(destination, dataBuffer.asByteBuffer());
+						return null;
 					}
-					catch (IOException ex) {
-						// ignore
+					finally {
+						DataBufferUtils.release(dataBuffer);
 					}
-				}
-			}
-		});
+				}))
+				.then();
+	}
+
+	private static void transferFile(File file, long position, long count, StreamSinkChannel destination)
+			throws IOException {
+
+		try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			Channels.transferBlocking(destination, source, position, count);
+		}
 	}
 
 
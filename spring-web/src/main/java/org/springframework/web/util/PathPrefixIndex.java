@@ -0,0 +1,181 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * A segment-based prefix tree that indexes values by the literal leading
+ * segments of their URL path patterns, for the purpose of narrowing down the
+ * set of candidates that need to be matched against a given lookup path.
+ *
+ * <p>For a pattern such as {@code "/api/users/{id}/orders"}, the value is
+ * stored under the literal prefix {@code api/users}: the index stops at the
+ * first segment containing a wildcard ({@code *}, {@code ?}) or a URI variable,
+ * and never uses the last segment of a pattern since the latter may still match
+ * with a suffix pattern or trailing slash. Values without patterns, or with a
+ * pattern that does not start with {@code "/"}, are stored at the root and are
+ * hence candidates for every lookup path.
+ *
+ * <p>The index assumes case-sensitive matching with {@code "/"} as separator,
+ * which corresponds to the defaults of {@link org.springframework.util.AntPathMatcher}
+ * and {@link org.springframework.web.util.pattern.PathPatternParser}.
+ *
+ * <p>This class is not thread-safe: callers are expected to guard concurrent
+ * registrations and lookups, e.g. through a read-write lock.
+ *
+ * @since 5.1
+ * @param <T> the type of indexed values
+ */
+public class PathPrefixIndex<T> {
+
+	private static final String SEPARATOR = "/";
+
+	private final Node<T> root = new Node<>();
+
+
+	/**
+	 * Register the given value under the literal prefixes of the given patterns.
+	 * @param value the value to register
+	 * @param patterns the URL path patterns of the value; if empty, the value
+	 * will be a candidate for every lookup path
+	 */
+	public void add(T value, Collection<String> patterns) {
+		if (patterns.isEmpty()) {
+			this.root.values.add(value);
+			return;
+		}
+		for (String pattern : patterns) {
+			Node<T> node = this.root;
+			for (String segment : getLiteralPrefix(pattern)) {
+				node = node.children.computeIfAbsent(segment, key -> new Node<>());
+			}
+			node.values.add(value);
+		}
+	}
+
+	/**
+	 * Remove the given value, previously registered with the given patterns.
+	 * @param value the value to remove
+	 * @param patterns the URL path patterns the value was registered with
+	 */
+	public void remove(T value, Collection<String> patterns) {
+		if (patterns.isEmpty()) {
+			this.root.values.remove(value);
+			return;
+		}
+		for (String pattern : patterns) {
+			remove(this.root, getLiteralPrefix(pattern), 0, value);
+		}
+	}
+
+	private boolean remove(Node<T> node, List<String> prefix, int index, T value) {
+		if (index == prefix.size()) {
+			node.values.remove(value);
+		}
+		else {
+			Node<T> child = node.children.get(prefix.get(index));
+			if (child != null && remove(child, prefix, index + 1, value)) {
+				node.children.remove(prefix.get(index));
+			}
+		}
+		return (node != this.root && node.isEmpty());
+	}
+
+	/**
+	 * Return the candidate values for the given lookup path, i.e. the values
+	 * whose literal pattern prefix is a leading part of the lookup path.
+	 * @param lookupPath the lookup path to find candidates for
+	 * @return the candidate values (never {@code null})
+	 */
+	public Collection<T> getCandidates(String lookupPath) {
+		if (!lookupPath.startsWith(SEPARATOR)) {
+			return getCandidates(new String[0]);
+		}
+		return getCandidates(StringUtils.tokenizeToStringArray(lookupPath, SEPARATOR, false, true));
+	}
+
+	/**
+	 * Variant of {@link #getCandidates(String)} for a lookup path that has
+	 * already been split into (decoded) path segments.
+	 * @param segments the segments of the lookup path, excluding separators
+	 * @return the candidate values (never {@code null})
+	 */
+	public Collection<T> getCandidates(String[] segments) {
+		Set<T> candidates = new LinkedHashSet<>(this.root.values);
+		Node<T> node = this.root;
+		for (String segment : segments) {
+			node = node.children.get(segment);
+			if (node == null) {
+				break;
+			}
+			candidates.addAll(node.values);
+		}
+		return candidates;
+	}
+
+	/**
+	 * Return the literal leading segments of the given pattern, excluding the
+	 * last segment of the pattern.
+	 */
+	private static List<String> getLiteralPrefix(String pattern) {
+		List<String> prefix = new ArrayList<>();
+		if (!pattern.startsWith(SEPARATOR)) {
+			return prefix;
+		}
+		String[] segments = StringUtils.tokenizeToStringArray(pattern, SEPARATOR, false, true);
+		for (int i = 0; i < segments.length - 1; i++) {
+			String segment = segments[i];
+			if (!isLiteral(segment)) {
+				break;
+			}
+			prefix.add(segment);
+		}
+		return prefix;
+	}
+
+	private static boolean isLiteral(String segment) {
+		for (int i = 0; i < segment.length(); i++) {
+			char c = segment.charAt(i);
+			if (c == '*' || c == '?' || c == '{' || c == '}') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	private static class Node<T> {
+
+		final Set<T> values = new LinkedHashSet<>();
+
+		final Map<String, Node<T>> children = new HashMap<>(4);
+
+		boolean isEmpty() {
+			return (this.values.isEmpty() && this.children.isEmpty());
+		}
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.util;
+
+import java.nio.charset.StandardCharsets;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.http.server.RequestPath;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
+
+/**
+ * Utility methods to parse the path of a Servlet request into a
+ * {@link RequestPath} once, and to cache it as a request attribute so that
+ * it can be shared by all components matching the request against parsed
+ * {@link org.springframework.web.util.pattern.PathPattern PathPatterns},
+ * e.g. handler mappings, mapped interceptors and CORS configuration sources.
+ *
+ * <p>The {@link RequestPath#contextPath() context path} of the parsed path
+ * includes the servlet path for prefix-mapped Servlets (e.g. "/app/*"), so
+ * that the {@link RequestPath#pathWithinApplication() path within the
+ * application} corresponds to the path within the Servlet mapping.
+ *
+ * @since 5.1
+ * @see org.springframework.web.util.pattern.PathPatternParser
+ */
+public abstract class ServletRequestPathUtils {
+
+	/**
+	 * Name of the request attribute that holds the parsed {@link RequestPath}.
+	 */
+	public static final String PATH_ATTRIBUTE = ServletRequestPathUtils.class.getName() + ".PATH";
+
+
+	/**
+	 * Parse the path of the given request into a {@link RequestPath} and
+	 * cache it in the request attribute {@link #PATH_ATTRIBUTE}, replacing
+	 * any previously cached value.
+	 * @param request the current request
+	 * @return the parsed request path
+	 */
+	public static RequestPath parseAndCache(HttpServletRequest request) {
+		RequestPath requestPath = parse(request);
+		request.setAttribute(PATH_ATTRIBUTE, requestPath);
+		return requestPath;
+	}
+
+	/**
+	 * Return the {@link RequestPath} previously cached via
+	 * {@link #parseAndCache}, or parse and cache it now if not present yet.
+	 * @param request the current request
+	 * @return the parsed request path
+	 */
+	public static RequestPath getParsedRequestPath(HttpServletRequest request) {
+		RequestPath requestPath = (RequestPath) request.getAttribute(PATH_ATTRIBUTE);
+		return (requestPath != null ? requestPath : parseAndCache(request));
+	}
+
+	/**
+	 * Check whether a parsed {@link RequestPath} is cached in the given request.
+	 * @param request the current request
+	 */
+	public static boolean hasParsedRequestPath(ServletRequest request) {
+		return (request.getAttribute(PATH_ATTRIBUTE) != null);
+	}
+
+	/**
+	 * Set the cached {@link RequestPath} to the given value, or remove it if
+	 * {@code null}; typically used to restore a previously cached value after
+	 * a nested dispatch.
+	 * @param requestPath the value to cache, or {@code null} to remove it
+	 * @param request the current request
+	 */
+	public static void setParsedRequestPath(@Nullable RequestPath requestPath, ServletRequest request) {
+		if (requestPath != null) {
+			request.setAttribute(PATH_ATTRIBUTE, requestPath);
+		}
+		else {
+			request.removeAttribute(PATH_ATTRIBUTE);
+		}
+	}
+
+
+	private static RequestPath parse(HttpServletRequest request) {
+		String requestUri = (String) request.getAttribute(WebUtils.INCLUDE_REQUEST_URI_ATTRIBUTE);
+		if (requestUri == null) {
+			requestUri = request.getRequestURI();
+		}
+		String contextPath = (String) request.getAttribute(WebUtils.INCLUDE_CONTEXT_PATH_ATTRIBUTE);
+		if (contextPath == null) {
+			contextPath = request.getContextPath();
+		}
+		if (!isPathPrefix(contextPath, requestUri)) {
+			return RequestPath.parse(requestUri, null);
+		}
+		String servletPathPrefix = getServletPathPrefix(request);
+		if (servletPathPrefix != null && isPathPrefix(contextPath + servletPathPrefix, requestUri)) {
+			contextPath = contextPath + servletPathPrefix;
+		}
+		return RequestPath.parse(requestUri, contextPath);
+	}
+
+	/**
+	 * Return the encoded servlet path if the Servlet is mapped by path prefix,
+	 * or {@code null} for default and extension mappings.
+	 */
+	@Nullable
+	private static String getServletPathPrefix(HttpServletRequest request) {
+		boolean include = (request.getAttribute(WebUtils.INCLUDE_REQUEST_URI_ATTRIBUTE) != null);
+		String servletPath = (include ?
+				(String) request.getAttribute(WebUtils.INCLUDE_SERVLET_PATH_ATTRIBUTE) : request.getServletPath());
+		String pathInfo = (include ?
+				(String) request.getAttribute(WebUtils.INCLUDE_PATH_INFO_ATTRIBUTE) : request.getPathInfo());
+		if (pathInfo == null || !StringUtils.hasLength(servletPath)) {
+			return null;
+		}
+		return UriUtils.encodePath(servletPath, StandardCharsets.UTF_8);
+	}
+
+	private static boolean isPathPrefix(String prefix, String path) {
+		if (!StringUtils.hasLength(prefix) || "/".equals(prefix)) {
+			return true;
+		}
+		return (prefix.startsWith("/") && !prefix.endsWith("/") && path.startsWith(prefix) &&
+				(path.length() == prefix.length() || path.charAt(prefix.length()) == '/'));
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,8 +16,10 @@
 
 package org.springframework.http.codec;
 
+import java.io.File;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Test;
@@ -25,12 +27,16 @@ import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
 import org.springframework.mock.http.server.reactive.test.MockServerHttpRequest;
 import org.springframework.mock.http.server.reactive.test.MockServerHttpResponse;
+import org.springframework.util.FileCopyUtils;
 import org.springframework.util.MimeTypeUtils;
 import org.springframework.util.StringUtils;
 
@@ -38,6 +44,8 @@ import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.springframework.http.MediaType.TEXT_PLAIN;
 import static org.springframework.mock.http.server.reactive.test.MockServerHttpRequest.get;
@@ -131,6 +139,44 @@ public class ResourceHttpMessageWriterTests {
 				.verify();
 	}
 
+	@Test
+	public void writeMultipleRegionsWithZeroCopy() throws Exception {
+		File file = File.createTempFile("ResourceHttpMessageWriterTests", ".txt");
+		file.deleteOnExit();
+		FileCopyUtils.copy("Spring Framework test resource content.".getBytes(StandardCharsets.UTF_8), file);
+		ZeroCopyMockServerHttpResponse response = new ZeroCopyMockServerHttpResponse();
+
+		Mono<Void> mono = this.writer.write(Mono.just(new FileSystemResource(file)), null, null, TEXT_PLAIN,
+				get("/").range(of(0, 5), of(7, 15)).build(), response, HINTS);
+		StepVerifier.create(mono).expectComplete().verify();
+
+		assertNotNull(response.regions);
+		assertEquals(5, response.regions.size());
+		assertEquals(file, response.regions.get(1).getResource().getFile());
+		assertEquals(file, response.regions.get(3).getResource().getFile());
+
+		String boundary = response.getHeaders().getContentType().toString().substring(30);
+		StepVerifier.create(response.getBodyAsString())
+				.consumeNextWith(content -> {
+					assertEquals(response.getHeaders().getContentLength(), content.length());
+					String[] actualRanges = StringUtils.tokenizeToStringArray(content, "\r\n", false, true);
+					String[] expected = new String[] {
+							"--" + boundary,
+							"Content-Type: text/plain",
+							"Content-Range: bytes 0-5/39",
+							"Spring",
+							"--" + boundary,
+							"Content-Type: text/plain",
+							"Content-Range: bytes 7-15/39",
+							"Framework",
+							"--" + boundary + "--"
+					};
+					assertArrayEquals(expected, actualRanges);
+				})
+				.expectComplete()
+				.verify();
+	}
+
 	@Test
 	public void invalidRange() throws Exception {
 
@@ -150,4 +196,22 @@ public class ResourceHttpMessageWriterTests {
 		return HttpRange.createByteRange(first, last);
 	}
 
+
+	private static class ZeroCopyMockServerHttpResponse extends MockServerHttpResponse
+			implements ZeroCopyHttpOutputMessage {
+
+		private List<ResourceRegion> regions;
+
+		@Override
+		public Mono<Void> writeWith(File file, long position, long count) {
+			return Mono.error(new UnsupportedOperationException());
+		}
+
+		@Override
+		public Mono<Void> writeRegions(List<ResourceRegion> regions) {
+			this.regions = regions;
+			return ZeroCopyHttpOutputMessage.super.writeRegions(regions);
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,20 +18,26 @@ package org.springframework.http.server.reactive;
 
 import java.io.File;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import org.junit.Test;
 import reactor.core.publisher.Mono;
 
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.ZeroCopyHttpOutputMessage;
 import org.springframework.http.server.reactive.bootstrap.ReactorHttpServer;
 import org.springframework.http.server.reactive.bootstrap.UndertowHttpServer;
+import org.springframework.util.FileCopyUtils;
 import org.springframework.web.client.RestTemplate;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
@@ -71,6 +77,32 @@ public class ZeroCopyIntegrationTests extends AbstractHttpHandlerIntegrationTest
 
 	}
 
+	@Test
+	public void zeroCopyRegions() throws Exception {
+
+		// Zero-copy only does not support servlet
+		assumeTrue(server instanceof ReactorHttpServer || server instanceof UndertowHttpServer);
+
+		RestTemplate restTemplate = new RestTemplate();
+
+		RequestEntity<?> request =
+				RequestEntity.get(new URI("http://localhost:" + port + "/regions")).build();
+
+		ResponseEntity<byte[]> response = restTemplate.exchange(request, byte[].class);
+
+		Resource logo =
+				new ClassPathResource("spring.png", ZeroCopyIntegrationTests.class);
+		byte[] logoBytes = FileCopyUtils.copyToByteArray(logo.getInputStream());
+
+		assertTrue(response.hasBody());
+		byte[] body = response.getBody();
+		assertEquals(logoBytes.length + 6, response.getHeaders().getContentLength());
+		assertEquals(logoBytes.length + 6, body.length);
+		assertEquals("foo", new String(body, 0, 3, StandardCharsets.US_ASCII));
+		assertArrayEquals(logoBytes, Arrays.copyOfRange(body, 3, 3 + logoBytes.length));
+		assertEquals("bar", new String(body, body.length - 3, 3, StandardCharsets.US_ASCII));
+	}
+
 	private static class ZeroCopyHandler implements HttpHandler {
 
 		@Override
@@ -82,6 +114,14 @@ public class ZeroCopyIntegrationTests extends AbstractHttpHandlerIntegrationTest
 				Resource logo = new ClassPathResource("spring.png",
 						ZeroCopyIntegrationTests.class);
 				File logoFile = logo.getFile();
+				if (request.getURI().getPath().equals("/regions")) {
+					Resource foo = new ByteArrayResource("foo".getBytes(StandardCharsets.US_ASCII));
+					Resource bar = new ByteArrayResource("bar".getBytes(StandardCharsets.US_ASCII));
+					zeroCopyResponse.getHeaders().setContentType(MediaType.APPLICATION_OCTET_STREAM);
+					zeroCopyResponse.getHeaders().setContentLength(logoFile.length() + 6);
+					return zeroCopyResponse.writeRegions(Arrays.asList(new ResourceRegion(foo, 0, 3),
+							new ResourceRegion(logo, 0, logoFile.length()), new ResourceRegion(bar, 0, 3)));
+				}
 				zeroCopyResponse.getHeaders().setContentType(MediaType.IMAGE_PNG);
 				zeroCopyResponse.getHeaders().setContentLength(logoFile.length());
 				return zeroCopyResponse.writeWith(logoFile, 0, logoFile.length());
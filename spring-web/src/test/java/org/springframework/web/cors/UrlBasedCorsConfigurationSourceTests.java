@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import org.junit.Test;
 
 import org.springframework.http.HttpMethod;
 import org.springframework.mock.web.test.MockHttpServletRequest;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 /**
  * Unit tests for {@link UrlBasedCorsConfigurationSource}.
@@ -48,6 +49,20 @@ public class UrlBasedCorsConfigurationSourceTests {
 		assertEquals(config, this.configSource.getCorsConfiguration(request));
 	}
 
+	@Test
+	public void registerAndMatchWithPatternParser() {
+		CorsConfiguration config = new CorsConfiguration();
+		this.configSource.registerCorsConfiguration("/bar/**", config);
+		this.configSource.setPatternParser(new PathPatternParser());
+
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/foo/test.html");
+		assertNull(this.configSource.getCorsConfiguration(request));
+
+		request = new MockHttpServletRequest("GET", "/app/bar/test.html");
+		request.setContextPath("/app");
+		assertEquals(config, this.configSource.getCorsConfiguration(request));
+	}
+
 	@Test(expected = UnsupportedOperationException.class)
 	public void unmodifiableConfigurationsMap() {
 		this.configSource.getCorsConfigurations().put("/**", new CorsConfiguration());
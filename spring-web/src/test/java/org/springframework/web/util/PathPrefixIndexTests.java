@@ -0,0 +1,110 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link PathPrefixIndex}.
+ */
+public class PathPrefixIndexTests {
+
+	private final PathPrefixIndex<String> index = new PathPrefixIndex<>();
+
+
+	@Test
+	public void literalPrefix() {
+		this.index.add("users", Collections.singleton("/api/users/{id}"));
+		this.index.add("orders", Collections.singleton("/api/orders/{id}"));
+		this.index.add("api", Collections.singleton("/api"));
+
+		assertThat(this.index.getCandidates("/api/users/42"), containsInAnyOrder("users", "api"));
+		assertThat(this.index.getCandidates("/api/orders/42"), containsInAnyOrder("orders", "api"));
+		assertThat(this.index.getCandidates("/api.json"), contains("api"));
+		assertThat(this.index.getCandidates("/other/42"), contains("api"));
+	}
+
+	@Test
+	public void lastSegmentNotIndexed() {
+		this.index.add("users", Collections.singleton("/api/users"));
+
+		assertThat(this.index.getCandidates("/api/users.json"), contains("users"));
+		assertThat(this.index.getCandidates("/api/users/"), contains("users"));
+		assertThat(this.index.getCandidates("/other"), empty());
+	}
+
+	@Test
+	public void prefixStopsAtWildcard() {
+		this.index.add("wildcard", Collections.singleton("/api/*/orders/{id}"));
+		this.index.add("variable", Collections.singleton("/api/v{version}/orders/{id}"));
+		this.index.add("doubleWildcard", Collections.singleton("/api/**"));
+
+		assertThat(this.index.getCandidates("/api"), containsInAnyOrder("wildcard", "variable", "doubleWildcard"));
+		assertThat(this.index.getCandidates("/api/v1/orders/42"),
+				containsInAnyOrder("wildcard", "variable", "doubleWildcard"));
+		assertThat(this.index.getCandidates("/other"), empty());
+	}
+
+	@Test
+	public void unindexedValues() {
+		this.index.add("none", Collections.emptySet());
+		this.index.add("relative", Collections.singleton("relative/path"));
+		this.index.add("root", Collections.singleton("/**"));
+		this.index.add("users", Collections.singleton("/api/users/{id}"));
+
+		assertThat(this.index.getCandidates("/other/path"), containsInAnyOrder("none", "relative", "root"));
+		assertThat(this.index.getCandidates("relative/path"), containsInAnyOrder("none", "relative", "root"));
+	}
+
+	@Test
+	public void multiplePatterns() {
+		this.index.add("multiple", Arrays.asList("/api/users/{id}", "/api/members/{id}"));
+
+		assertThat(this.index.getCandidates("/api/users/42"), contains("multiple"));
+		assertThat(this.index.getCandidates("/api/members/42"), contains("multiple"));
+		assertThat(this.index.getCandidates("/api/other/42"), empty());
+	}
+
+	@Test
+	public void segments() {
+		this.index.add("users", Collections.singleton("/api/users/{id}"));
+
+		assertThat(this.index.getCandidates(new String[] {"api", "users", "42"}), contains("users"));
+		assertThat(this.index.getCandidates(new String[] {"api"}), empty());
+	}
+
+	@Test
+	public void remove() {
+		this.index.add("users", Arrays.asList("/api/users/{id}", "/api/members/{id}"));
+		this.index.add("none", Collections.emptySet());
+		this.index.add("orders", Collections.singleton("/api/orders/{id}"));
+
+		this.index.remove("users", Arrays.asList("/api/users/{id}", "/api/members/{id}"));
+		this.index.remove("none", Collections.emptySet());
+
+		assertThat(this.index.getCandidates("/api/users/42"), empty());
+		assertThat(this.index.getCandidates("/api/members/42"), empty());
+		assertThat(this.index.getCandidates("/api/orders/42"), contains("orders"));
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.util;
+
+import org.junit.Test;
+
+import org.springframework.http.server.RequestPath;
+import org.springframework.mock.web.test.MockHttpServletRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ServletRequestPathUtils}.
+ */
+public class ServletRequestPathUtilsTests {
+
+	@Test
+	public void parseAndCache() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app/a/b%20c;q=1");
+		request.setContextPath("/app");
+
+		RequestPath path = ServletRequestPathUtils.parseAndCache(request);
+		assertEquals("/app", path.contextPath().value());
+		assertEquals("/a/b%20c;q=1", path.pathWithinApplication().value());
+		assertTrue(ServletRequestPathUtils.hasParsedRequestPath(request));
+		assertSame(path, ServletRequestPathUtils.getParsedRequestPath(request));
+	}
+
+	@Test
+	public void getParsedRequestPathParsesIfNecessary() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/a/b");
+		assertFalse(ServletRequestPathUtils.hasParsedRequestPath(request));
+
+		RequestPath path = ServletRequestPathUtils.getParsedRequestPath(request);
+		assertEquals("/a/b", path.pathWithinApplication().value());
+		assertTrue(ServletRequestPathUtils.hasParsedRequestPath(request));
+	}
+
+	@Test
+	public void prefixServletMapping() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app/servlet/a/b");
+		request.setContextPath("/app");
+		request.setServletPath("/servlet");
+		request.setPathInfo("/a/b");
+
+		RequestPath path = ServletRequestPathUtils.parseAndCache(request);
+		assertEquals("/app/servlet", path.contextPath().value());
+		assertEquals("/a/b", path.pathWithinApplication().value());
+	}
+
+	@Test
+	public void defaultServletMapping() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app/a/b");
+		request.setContextPath("/app");
+		request.setServletPath("/a/b");
+
+		RequestPath path = ServletRequestPathUtils.parseAndCache(request);
+		assertEquals("/app", path.contextPath().value());
+		assertEquals("/a/b", path.pathWithinApplication().value());
+	}
+
+	@Test
+	public void includeRequest() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app/a");
+		request.setContextPath("/app");
+		request.setAttribute(WebUtils.INCLUDE_REQUEST_URI_ATTRIBUTE, "/app/b/c");
+		request.setAttribute(WebUtils.INCLUDE_CONTEXT_PATH_ATTRIBUTE, "/app");
+
+		RequestPath path = ServletRequestPathUtils.parseAndCache(request);
+		assertEquals("/b/c", path.pathWithinApplication().value());
+	}
+
+	@Test
+	public void setParsedRequestPath() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/a");
+		RequestPath path = ServletRequestPathUtils.parseAndCache(request);
+
+		ServletRequestPathUtils.setParsedRequestPath(null, request);
+		assertFalse(ServletRequestPathUtils.hasParsedRequestPath(request));
+
+		ServletRequestPathUtils.setParsedRequestPath(path, request);
+		assertSame(path, ServletRequestPathUtils.getParsedRequestPath(request));
+	}
+
+}
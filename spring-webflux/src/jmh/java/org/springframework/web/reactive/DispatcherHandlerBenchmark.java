@@ -0,0 +1,160 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import reactor.core.publisher.Mono;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.test.MockServerHttpRequest;
+import org.springframework.mock.web.test.server.MockServerWebExchange;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Benchmarks for round trips through a {@link DispatcherHandler} configured
+ * with {@code @EnableWebFlux}, using mock requests and responses.
+ */
+@BenchmarkMode(Mode.Throughput)
+public class DispatcherHandlerBenchmark {
+
+	@Benchmark
+	public MockServerWebExchange plainText(BenchmarkData data) {
+		return data.perform(MockServerWebExchange.from(MockServerHttpRequest.get("/api/ping")));
+	}
+
+	@Benchmark
+	public MockServerWebExchange json(BenchmarkData data) {
+		return data.perform(MockServerWebExchange.from(
+				MockServerHttpRequest.get("/api/users/42?verbose=true").accept(MediaType.APPLICATION_JSON)));
+	}
+
+	@Benchmark
+	public MockServerWebExchange monoJson(BenchmarkData data) {
+		return data.perform(MockServerWebExchange.from(
+				MockServerHttpRequest.get("/api/users/42/async").accept(MediaType.APPLICATION_JSON)));
+	}
+
+	@Benchmark
+	public MockServerWebExchange notFound(BenchmarkData data) {
+		return data.perform(MockServerWebExchange.from(MockServerHttpRequest.get("/api/unknown/path")));
+	}
+
+
+	@State(Scope.Benchmark)
+	public static class BenchmarkData {
+
+		public AnnotationConfigApplicationContext context;
+
+		public DispatcherHandler dispatcherHandler;
+
+		@Setup
+		public void setup() {
+			this.context = new AnnotationConfigApplicationContext(WebConfig.class, UserController.class);
+			this.dispatcherHandler = new DispatcherHandler(this.context);
+		}
+
+		@TearDown
+		public void tearDown() {
+			this.context.close();
+		}
+
+		public MockServerWebExchange perform(MockServerWebExchange exchange) {
+			this.dispatcherHandler.handle(exchange)
+					.onErrorResume(ResponseStatusException.class, ex -> Mono.empty())
+					.block();
+			return exchange;
+		}
+	}
+
+
+	@Configuration
+	@EnableWebFlux
+	static class WebConfig {
+	}
+
+
+	@RestController
+	@RequestMapping("/api")
+	static class UserController {
+
+		@GetMapping("/ping")
+		public String ping() {
+			return "pong";
+		}
+
+		@GetMapping("/users")
+		public String users() {
+			return "users";
+		}
+
+		@GetMapping("/users/{id}")
+		public User user(@PathVariable long id, @RequestParam(required = false) boolean verbose) {
+			return new User(id, (verbose ? "Jane Doe" : "Jane"));
+		}
+
+		@GetMapping("/users/{id}/async")
+		public Mono<User> userAsync(@PathVariable long id) {
+			return Mono.just(new User(id, "Jane"));
+		}
+
+		@GetMapping("/users/{id}/orders/{orderId}")
+		public String order(@PathVariable long id, @PathVariable long orderId) {
+			return id + ":" + orderId;
+		}
+
+		@GetMapping("/products/*/reviews")
+		public String reviews() {
+			return "reviews";
+		}
+	}
+
+
+	static class User {
+
+		private final long id;
+
+		private final String name;
+
+		User(long id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		public long getId() {
+			return this.id;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+	}
+
+}
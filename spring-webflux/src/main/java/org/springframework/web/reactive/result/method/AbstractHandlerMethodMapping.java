@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -34,6 +34,7 @@ import reactor.core.publisher.Mono;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.MethodIntrospector;
+import org.springframework.http.server.PathContainer;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
@@ -43,6 +44,7 @@ import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.reactive.HandlerMapping;
 import org.springframework.web.reactive.handler.AbstractHandlerMapping;
 import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.PathPrefixIndex;
 
 /**
  * Abstract base class for {@link HandlerMapping} implementations that define
@@ -89,11 +91,28 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 	}
 
 
+	private boolean usePathPrefixIndex = false;
+
 	private final MappingRegistry mappingRegistry = new MappingRegistry();
 
 
 	// TODO: handlerMethodMappingNamingStrategy
 
+	/**
+	 * Whether to narrow down the mappings to match against the request path
+	 * through an index of the literal leading segments of their URL patterns,
+	 * rather than going through all registered mappings.
+	 * <p>Default is "false". Switch this flag on for a large number of mappings.
+	 * Subclasses need to expose the URL patterns of their mappings through
+	 * {@link #getMappingPathPatterns}; mappings without patterns are always
+	 * matched against the request.
+	 * @since 5.1
+	 * @see PathPrefixIndex
+	 */
+	public void setUsePathPrefixIndex(boolean usePathPrefixIndex) {
+		this.usePathPrefixIndex = usePathPrefixIndex;
+	}
+
 	/**
 	 * Return a (read-only) map with all mappings and HandlerMethod's.
 	 */
@@ -300,7 +319,13 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 			throws Exception {
 
 		List<Match> matches = new ArrayList<>();
-		addMatchingMappings(this.mappingRegistry.getMappings().keySet(), matches, exchange);
+		if (this.usePathPrefixIndex) {
+			PathContainer lookupPath = exchange.getRequest().getPath().pathWithinApplication();
+			addMatchingMappings(this.mappingRegistry.getMappingsByPathPrefix(lookupPath), matches, exchange);
+		}
+		else {
+			addMatchingMappings(this.mappingRegistry.getMappings().keySet(), matches, exchange);
+		}
 
 		if (!matches.isEmpty()) {
 			Comparator<Match> comparator = new MatchComparator(getMappingComparator(exchange));
@@ -395,6 +420,17 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 	@Nullable
 	protected abstract T getMappingForMethod(Method method, Class<?> handlerType);
 
+	/**
+	 * Extract and return the URL patterns contained in a mapping, for use
+	 * with the {@link #setUsePathPrefixIndex path prefix index}.
+	 * <p>The default implementation returns an empty set, in which case the
+	 * mapping is matched against every request.
+	 * @since 5.1
+	 */
+	protected Set<String> getMappingPathPatterns(T mapping) {
+		return Collections.emptySet();
+	}
+
 	/**
 	 * Check if a mapping matches the current request and return a (potentially
 	 * new) mapping with conditions relevant to the current request.
@@ -426,6 +462,8 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 
 		private final Map<T, HandlerMethod> mappingLookup = new LinkedHashMap<>();
 
+		private final PathPrefixIndex<T> pathPrefixLookup = new PathPrefixIndex<>();
+
 		private final Map<HandlerMethod, CorsConfiguration> corsLookup = new ConcurrentHashMap<>();
 
 		private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
@@ -438,6 +476,26 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 			return this.mappingLookup;
 		}
 
+		/**
+		 * Return the mappings whose URL patterns have a literal prefix matching
+		 * the given lookup path, including mappings without URL patterns.
+		 * Not thread-safe.
+		 * @since 5.1
+		 * @see #acquireReadLock()
+		 */
+		public Collection<T> getMappingsByPathPrefix(PathContainer lookupPath) {
+			List<PathContainer.Element> elements = lookupPath.elements();
+			List<String> segments = new ArrayList<>(elements.size());
+			if (!elements.isEmpty() && elements.get(0) instanceof PathContainer.Separator) {
+				for (PathContainer.Element element : elements) {
+					if (element instanceof PathContainer.PathSegment) {
+						segments.add(((PathContainer.PathSegment) element).valueToMatch());
+					}
+				}
+			}
+			return this.pathPrefixLookup.getCandidates(segments.toArray(new String[segments.size()]));
+		}
+
 		/**
 		 * Return CORS configuration. Thread-safe for concurrent use.
 		 */
@@ -447,14 +505,14 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 		}
 
 		/**
-		 * Acquire the read lock when using getMappings and getMappingsByUrl.
+		 * Acquire the read lock when using getMappings and getMappingsByPathPrefix.
 		 */
 		public void acquireReadLock() {
 			this.readWriteLock.readLock().lock();
 		}
 
 		/**
-		 * Release the read lock after using getMappings and getMappingsByUrl.
+		 * Release the read lock after using getMappings and getMappingsByPathPrefix.
 		 */
 		public void releaseReadLock() {
 			this.readWriteLock.readLock().unlock();
@@ -470,6 +528,9 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 					logger.info("Mapped \"" + mapping + "\" onto " + handlerMethod);
 				}
 				this.mappingLookup.put(mapping, handlerMethod);
+				if (usePathPrefixIndex) {
+					this.pathPrefixLookup.add(mapping, getMappingPathPatterns(mapping));
+				}
 
 				CorsConfiguration corsConfig = initCorsConfiguration(handler, method, mapping);
 				if (corsConfig != null) {
@@ -502,6 +563,9 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 				}
 
 				this.mappingLookup.remove(definition.getMapping());
+				if (usePathPrefixIndex) {
+					this.pathPrefixLookup.remove(definition.getMapping(), getMappingPathPatterns(definition.getMapping()));
+				}
 				this.corsLookup.remove(definition.getHandlerMethod());
 			}
 			finally {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -68,6 +68,22 @@ public abstract class RequestMappingInfoHandlerMapping extends AbstractHandlerMe
 	}
 
 
+	/**
+	 * Get the URL path patterns associated with this {@link RequestMappingInfo},
+	 * unless patterns are matched case-insensitively.
+	 */
+	@Override
+	protected Set<String> getMappingPathPatterns(RequestMappingInfo info) {
+		if (!getPathPatternParser().isCaseSensitive()) {
+			return Collections.emptySet();
+		}
+		Set<String> patterns = new LinkedHashSet<>();
+		for (PathPattern pattern : info.getPatternsCondition().getPatterns()) {
+			patterns.add(pattern.getPatternString());
+		}
+		return patterns;
+	}
+
 	/**
 	 * Check if the given RequestMappingInfo matches the current request and
 	 * return a (potentially new) instance with conditions that match the
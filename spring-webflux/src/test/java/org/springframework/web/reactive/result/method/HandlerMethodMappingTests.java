@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,7 +17,9 @@
 package org.springframework.web.reactive.result.method;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Set;
 
 import org.hamcrest.Matchers;
 import org.junit.Before;
@@ -101,6 +103,20 @@ public class HandlerMethodMappingTests {
 		StepVerifier.create(result).expectError(IllegalStateException.class).verify();
 	}
 
+	@Test
+	public void patternMatchWithPathPrefixIndex() throws Exception {
+		this.mapping.setUsePathPrefixIndex(true);
+		this.mapping.registerMapping("/foo/{id}", this.handler, this.method1);
+		this.mapping.registerMapping("/bar/{id}", this.handler, this.method2);
+
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/foo/1"));
+		assertEquals(this.method1, ((HandlerMethod) this.mapping.getHandler(exchange).block()).getMethod());
+		exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/bar/1"));
+		assertEquals(this.method2, ((HandlerMethod) this.mapping.getHandler(exchange).block()).getMethod());
+		exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/baz/1"));
+		assertNull(this.mapping.getHandler(exchange).block());
+	}
+
 	@Test
 	public void registerMapping() throws Exception {
 		String key1 = "/foo";
@@ -155,6 +171,11 @@ public class HandlerMethodMappingTests {
 			return methodName.startsWith("handler") ? methodName : null;
 		}
 
+		@Override
+		protected Set<String> getMappingPathPatterns(String pattern) {
+			return Collections.singleton(pattern);
+		}
+
 		@Override
 		protected String getMatchingMapping(String pattern, ServerWebExchange exchange) {
 			PathContainer lookupPath = exchange.getRequest().getPath().pathWithinApplication();
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mock.web.test.MockHttpServletRequest;
+import org.springframework.mock.web.test.MockHttpServletResponse;
+import org.springframework.mock.web.test.MockServletConfig;
+import org.springframework.mock.web.test.MockServletContext;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.PathMatchConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+/**
+ * Benchmarks for round trips through a {@link DispatcherServlet} configured
+ * with {@code @EnableWebMvc}, using mock requests and responses, with URL
+ * patterns matched either by {@code AntPathMatcher} or by parsed
+ * {@code PathPattern PathPatterns}.
+ */
+@BenchmarkMode(Mode.Throughput)
+public class DispatcherServletBenchmark {
+
+	@Benchmark
+	public MockHttpServletResponse plainText(BenchmarkData data) throws Exception {
+		return data.perform(new MockHttpServletRequest("GET", "/api/ping"));
+	}
+
+	@Benchmark
+	public MockHttpServletResponse json(BenchmarkData data) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/42");
+		request.addHeader("Accept", "application/json");
+		request.addParameter("verbose", "true");
+		return data.perform(request);
+	}
+
+	@Benchmark
+	public MockHttpServletResponse notFound(BenchmarkData data) throws Exception {
+		return data.perform(new MockHttpServletRequest("GET", "/api/unknown/path"));
+	}
+
+
+	@State(Scope.Benchmark)
+	public static class BenchmarkData {
+
+		@Param({"false", "true"})
+		public boolean usePathPatterns;
+
+		public DispatcherServlet servlet;
+
+		@Setup
+		public void setup() throws Exception {
+			MockServletContext servletContext = new MockServletContext();
+			AnnotationConfigWebApplicationContext context = new AnnotationConfigWebApplicationContext();
+			context.setServletContext(servletContext);
+			context.register(this.usePathPatterns ? PathPatternWebConfig.class : WebConfig.class, UserController.class);
+			this.servlet = new DispatcherServlet(context);
+			this.servlet.init(new MockServletConfig(servletContext));
+		}
+
+		@TearDown
+		public void tearDown() {
+			this.servlet.destroy();
+		}
+
+		public MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			this.servlet.service(request, response);
+			return response;
+		}
+	}
+
+
+	@Configuration
+	@EnableWebMvc
+	static class WebConfig {
+	}
+
+
+	@Configuration
+	@EnableWebMvc
+	static class PathPatternWebConfig implements WebMvcConfigurer {
+
+		@Override
+		public void configurePathMatch(PathMatchConfigurer configurer) {
+			configurer.setPatternParser(new PathPatternParser());
+		}
+	}
+
+
+	@RestController
+	@RequestMapping("/api")
+	static class UserController {
+
+		@GetMapping("/ping")
+		public String ping() {
+			return "pong";
+		}
+
+		@GetMapping("/users")
+		public String users() {
+			return "users";
+		}
+
+		@GetMapping("/users/{id}")
+		public User user(@PathVariable long id, @RequestParam(required = false) boolean verbose) {
+			return new User(id, (verbose ? "Jane Doe" : "Jane"));
+		}
+
+		@GetMapping("/users/{id}/orders/{orderId}")
+		public String order(@PathVariable long id, @PathVariable long orderId) {
+			return id + ":" + orderId;
+		}
+
+		@GetMapping("/products/*/reviews")
+		public String reviews() {
+			return "reviews";
+		}
+	}
+
+
+	static class User {
+
+		private final long id;
+
+		private final String name;
+
+		User(long id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		public long getId() {
+			return this.id;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -131,4 +131,18 @@ public interface HandlerMapping {
 	@Nullable
 	HandlerExecutionChain getHandler(HttpServletRequest request) throws Exception;
 
+	/**
+	 * Whether this {@code HandlerMapping} matches requests against parsed
+	 * {@link org.springframework.web.util.pattern.PathPattern PathPatterns},
+	 * in which case the {@code DispatcherServlet} parses the request path once
+	 * per request through
+	 * {@link org.springframework.web.util.ServletRequestPathUtils#parseAndCache
+	 * ServletRequestPathUtils} for all handler mappings to share.
+	 * <p>The default implementation returns {@code false}.
+	 * @since 5.1
+	 */
+	default boolean usesPathPatterns() {
+		return false;
+	}
+
 }
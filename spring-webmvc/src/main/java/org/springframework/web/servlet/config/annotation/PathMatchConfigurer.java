@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.web.servlet.config.annotation;
 import org.springframework.lang.Nullable;
 import org.springframework.util.PathMatcher;
 import org.springframework.web.util.UrlPathHelper;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 /**
  * Helps with configuring HandlerMappings path matching options such as trailing
@@ -53,6 +54,9 @@ public class PathMatchConfigurer {
 	@Nullable
 	private PathMatcher pathMatcher;
 
+	@Nullable
+	private PathPatternParser patternParser;
+
 
 	/**
 	 * Whether to use suffix pattern match (".*") when matching patterns to
@@ -110,6 +114,24 @@ public class PathMatchConfigurer {
 		return this;
 	}
 
+	/**
+	 * Set the PathPatternParser to parse URL patterns with, enabling matching
+	 * against parsed {@link org.springframework.web.util.pattern.PathPattern
+	 * PathPatterns} instead of matching String patterns with the
+	 * {@link #setPathMatcher PathMatcher}. The request path is then parsed
+	 * once per request and shared by all handler mappings, mapped interceptors
+	 * and CORS configuration lookups.
+	 * <p>Note that suffix pattern matching is not supported in this mode, and
+	 * that trailing slash matching is controlled by the parser.
+	 * <p>By default this is not set.
+	 * @since 5.1
+	 * @see org.springframework.web.servlet.handler.AbstractHandlerMapping#setPatternParser
+	 */
+	public PathMatchConfigurer setPatternParser(PathPatternParser patternParser) {
+		this.patternParser = patternParser;
+		return this;
+	}
+
 
 	@Nullable
 	public Boolean isUseSuffixPatternMatch() {
@@ -136,4 +158,13 @@ public class PathMatchConfigurer {
 		return this.pathMatcher;
 	}
 
+	/**
+	 * Return the configured PathPatternParser, if any.
+	 * @since 5.1
+	 */
+	@Nullable
+	public PathPatternParser getPatternParser() {
+		return this.patternParser;
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,6 +27,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactoryUtils;
 import org.springframework.core.Ordered;
+import org.springframework.http.server.PathContainer;
 import org.springframework.lang.Nullable;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.util.Assert;
@@ -43,7 +44,9 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.servlet.HandlerExecutionChain;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ServletRequestPathUtils;
 import org.springframework.web.util.UrlPathHelper;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 /**
  * Abstract base class for {@link org.springframework.web.servlet.HandlerMapping}
@@ -76,6 +79,9 @@ public abstract class AbstractHandlerMapping extends WebApplicationObjectSupport
 
 	private PathMatcher pathMatcher = new AntPathMatcher();
 
+	@Nullable
+	private PathPatternParser patternParser;
+
 	private final List<Object> interceptors = new ArrayList<>();
 
 	private final List<HandlerInterceptor> adaptedInterceptors = new ArrayList<>();
@@ -182,6 +188,43 @@ public abstract class AbstractHandlerMapping extends WebApplicationObjectSupport
 		return this.pathMatcher;
 	}
 
+	/**
+	 * Set the {@link PathPatternParser} to parse URL patterns with, switching
+	 * this handler mapping to matching against parsed
+	 * {@link org.springframework.web.util.pattern.PathPattern PathPatterns}
+	 * rather than against {@link PathMatcher} pattern strings. This applies to
+	 * the handler mappings of subclasses that support it, to the path patterns
+	 * of {@link MappedInterceptor}s and to the "global" CORS configuration.
+	 * <p>In this mode, requests are matched against the request path parsed
+	 * once per request through {@link ServletRequestPathUtils}, and the
+	 * {@link #setUrlPathHelper UrlPathHelper} is no longer used for matching.
+	 * <p>By default this is not set.
+	 * @since 5.1
+	 */
+	public void setPatternParser(@Nullable PathPatternParser patternParser) {
+		this.patternParser = patternParser;
+		this.globalCorsConfigSource.setPatternParser(patternParser);
+	}
+
+	/**
+	 * Return the {@link #setPatternParser configured} PathPatternParser, if any.
+	 * @since 5.1
+	 */
+	@Nullable
+	public PathPatternParser getPatternParser() {
+		return this.patternParser;
+	}
+
+	/**
+	 * Return {@code true} if a {@link #setPatternParser PathPatternParser}
+	 * is configured.
+	 * @since 5.1
+	 */
+	@Override
+	public boolean usesPathPatterns() {
+		return (this.patternParser != null);
+	}
+
 	/**
 	 * Set the interceptors to apply for all handlers mapped by this handler mapping.
 	 * <p>Supported interceptor types are HandlerInterceptor, WebRequestInterceptor, and MappedInterceptor.
@@ -390,6 +433,22 @@ public abstract class AbstractHandlerMapping extends WebApplicationObjectSupport
 	@Nullable
 	protected abstract Object getHandlerInternal(HttpServletRequest request) throws Exception;
 
+	/**
+	 * Determine the lookup path for the given request, i.e. the decoded path
+	 * within the application, without semicolon content if matching against
+	 * {@link #usesPathPatterns() parsed patterns}, or else the lookup path as
+	 * determined by the {@link #getUrlPathHelper() UrlPathHelper}.
+	 * @param request current HTTP request
+	 * @return the lookup path
+	 * @since 5.1
+	 */
+	protected String initLookupPath(HttpServletRequest request) {
+		if (usesPathPatterns()) {
+			return getDecodedPath(ServletRequestPathUtils.getParsedRequestPath(request).pathWithinApplication());
+		}
+		return this.urlPathHelper.getLookupPathForRequest(request);
+	}
+
 	/**
 	 * Build a {@link HandlerExecutionChain} for the given handler, including
 	 * applicable interceptors.
@@ -414,11 +473,13 @@ public abstract class AbstractHandlerMapping extends WebApplicationObjectSupport
 		HandlerExecutionChain chain = (handler instanceof HandlerExecutionChain ?
 				(HandlerExecutionChain) handler : new HandlerExecutionChain(handler));
 
-		String lookupPath = this.urlPathHelper.getLookupPathForRequest(request);
+		String lookupPath = initLookupPath(request);
+		PathContainer path = (usesPathPatterns() ?
+				ServletRequestPathUtils.getParsedRequestPath(request).pathWithinApplication() : null);
 		for (HandlerInterceptor interceptor : this.adaptedInterceptors) {
 			if (interceptor instanceof MappedInterceptor) {
 				MappedInterceptor mappedInterceptor = (MappedInterceptor) interceptor;
-				if (mappedInterceptor.matches(lookupPath, this.pathMatcher)) {
+				if (matches(mappedInterceptor, path, lookupPath)) {
 					chain.addInterceptor(mappedInterceptor.getInterceptor());
 				}
 			}
@@ -429,6 +490,18 @@ public abstract class AbstractHandlerMapping extends WebApplicationObjectSupport
 		return chain;
 	}
 
+	/**
+	 * Match the given interceptor against parsed path patterns, unless it
+	 * has a custom PathMatcher or this handler mapping does not use parsed
+	 * path patterns, in which case the lookup path String is used.
+	 */
+	private boolean matches(MappedInterceptor interceptor, @Nullable PathContainer path, String lookupPath) {
+		if (path != null && this.patternParser != null && interceptor.getPathMatcher() == null) {
+			return interceptor.matches(path, this.patternParser);
+		}
+		return interceptor.matches(lookupPath, this.pathMatcher);
+	}
+
 	/**
 	 * Retrieve the CORS configuration for the given handler.
 	 * @param handler the handler to check (never {@code null}).
@@ -474,6 +547,23 @@ public abstract class AbstractHandlerMapping extends WebApplicationObjectSupport
 	}
 
 
+	/**
+	 * Return the given path with decoded segments and without semicolon content.
+	 */
+	static String getDecodedPath(PathContainer path) {
+		StringBuilder builder = new StringBuilder(path.value().length());
+		for (PathContainer.Element element : path.elements()) {
+			if (element instanceof PathContainer.PathSegment) {
+				builder.append(((PathContainer.PathSegment) element).valueToMatch());
+			}
+			else {
+				builder.append(element.value());
+			}
+		}
+		return builder.toString();
+	}
+
+
 	private class PreFlightHandler implements HttpRequestHandler, CorsConfigurationSource {
 
 		@Nullable
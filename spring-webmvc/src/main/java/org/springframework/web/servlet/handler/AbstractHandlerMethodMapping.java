@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -44,6 +44,8 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsUtils;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.PathPrefixIndex;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 /**
  * Abstract base class for {@link HandlerMapping} implementations that define
@@ -88,6 +90,8 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 
 	private boolean detectHandlerMethodsInAncestorContexts = false;
 
+	private boolean usePathPrefixIndex = false;
+
 	@Nullable
 	private HandlerMethodMappingNamingStrategy<T> namingStrategy;
 
@@ -106,6 +110,32 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 		this.detectHandlerMethodsInAncestorContexts = detectHandlerMethodsInAncestorContexts;
 	}
 
+	/**
+	 * Whether to narrow down the mappings to match against a lookup path that is
+	 * not a direct URL through an index of the literal leading segments of their
+	 * URL patterns, rather than going through all registered mappings.
+	 * <p>Default is "false". Switch this flag on for a large number of pattern
+	 * mappings, provided that the configured {@link #setPathMatcher PathMatcher}
+	 * matches case-sensitively with "/" as separator, as is the default for
+	 * {@link org.springframework.util.AntPathMatcher}.
+	 * <p>The index is not used if a {@link #setPatternParser PathPatternParser}
+	 * is configured that matches case-insensitively.
+	 * @since 5.1
+	 * @see PathPrefixIndex
+	 */
+	public void setUsePathPrefixIndex(boolean usePathPrefixIndex) {
+		this.usePathPrefixIndex = usePathPrefixIndex;
+	}
+
+	/**
+	 * Whether the path prefix index is switched on and applicable, i.e.
+	 * URL patterns are not matched case-insensitively.
+	 */
+	private boolean usePathPrefixIndex() {
+		PathPatternParser patternParser = getPatternParser();
+		return (this.usePathPrefixIndex && (patternParser == null || patternParser.isCaseSensitive()));
+	}
+
 	/**
 	 * Configure the naming strategy to use for assigning a default name to every
 	 * mapped handler method.
@@ -308,7 +338,7 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 	 */
 	@Override
 	protected HandlerMethod getHandlerInternal(HttpServletRequest request) throws Exception {
-		String lookupPath = getUrlPathHelper().getLookupPathForRequest(request);
+		String lookupPath = initLookupPath(request);
 		if (logger.isDebugEnabled()) {
 			logger.debug("Looking up handler method for path " + lookupPath);
 		}
@@ -347,8 +377,14 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 			addMatchingMappings(directPathMatches, matches, request);
 		}
 		if (matches.isEmpty()) {
-			// No choice but to go through all mappings...
-			addMatchingMappings(this.mappingRegistry.getMappings().keySet(), matches, request);
+			if (usePathPrefixIndex()) {
+				// Only go through mappings with a literal pattern prefix matching the path...
+				addMatchingMappings(this.mappingRegistry.getMappingsByPathPrefix(lookupPath), matches, request);
+			}
+			else {
+				// No choice but to go through all mappings...
+				addMatchingMappings(this.mappingRegistry.getMappings().keySet(), matches, request);
+			}
 		}
 
 		if (!matches.isEmpty()) {
@@ -487,6 +523,8 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 
 		private final MultiValueMap<String, T> urlLookup = new LinkedMultiValueMap<>();
 
+		private final PathPrefixIndex<T> pathPrefixLookup = new PathPrefixIndex<>();
+
 		private final Map<String, List<HandlerMethod>> nameLookup = new ConcurrentHashMap<>();
 
 		private final Map<HandlerMethod, CorsConfiguration> corsLookup = new ConcurrentHashMap<>();
@@ -510,6 +548,17 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 			return this.urlLookup.get(urlPath);
 		}
 
+		/**
+		 * Return the mappings whose URL patterns have a literal prefix matching
+		 * the given lookup path, including mappings without URL patterns.
+		 * Not thread-safe.
+		 * @since 5.1
+		 * @see #acquireReadLock()
+		 */
+		public Collection<T> getMappingsByPathPrefix(String lookupPath) {
+			return this.pathPrefixLookup.getCandidates(lookupPath);
+		}
+
 		/**
 		 * Return handler methods by mapping name. Thread-safe for concurrent use.
 		 */
@@ -526,14 +575,16 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 		}
 
 		/**
-		 * Acquire the read lock when using getMappings and getMappingsByUrl.
+		 * Acquire the read lock when using getMappings, getMappingsByUrl
+		 * and getMappingsByPathPrefix.
 		 */
 		public void acquireReadLock() {
 			this.readWriteLock.readLock().lock();
 		}
 
 		/**
-		 * Release the read lock after using getMappings and getMappingsByUrl.
+		 * Release the read lock after using getMappings, getMappingsByUrl
+		 * and getMappingsByPathPrefix.
 		 */
 		public void releaseReadLock() {
 			this.readWriteLock.readLock().unlock();
@@ -554,6 +605,9 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 				for (String url : directUrls) {
 					this.urlLookup.add(url, mapping);
 				}
+				if (usePathPrefixIndex()) {
+					this.pathPrefixLookup.add(mapping, getMappingPathPatterns(mapping));
+				}
 
 				String name = null;
 				if (getNamingStrategy() != null) {
@@ -641,6 +695,9 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 						}
 					}
 				}
+				if (usePathPrefixIndex()) {
+					this.pathPrefixLookup.remove(definition.getMapping(), getMappingPathPatterns(definition.getMapping()));
+				}
 
 				removeMappingName(definition);
 
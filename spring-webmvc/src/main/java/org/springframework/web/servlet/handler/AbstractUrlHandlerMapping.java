@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,10 +28,16 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.RequestPath;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
 import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.util.ServletRequestPathUtils;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 /**
  * Abstract base class for URL-mapped {@link org.springframework.web.servlet.HandlerMapping}
@@ -48,6 +54,10 @@ import org.springframework.web.servlet.HandlerExecutionChain;
  * current request path. The most exact match is defined as the longest
  * path pattern that matches the current request path.
  *
+ * <p>If a {@link #setPatternParser PathPatternParser} is configured, URL paths
+ * are parsed into {@link PathPattern}s on registration and matched against
+ * the parsed request path instead.
+ *
  * @author Juergen Hoeller
  * @author Arjen Poutsma
  * @since 16.04.2003
@@ -63,6 +73,10 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping i
 
 	private final Map<String, Object> handlerMap = new LinkedHashMap<>();
 
+	private final Map<PathPattern, Object> pathPatternHandlerMap = new LinkedHashMap<>();
+
+	private final Map<String, PathPattern> pathPatternCache = new ConcurrentReferenceHashMap<>(256);
+
 
 	/**
 	 * Set the root handler for this handler mapping, that is,
@@ -82,10 +96,25 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping i
 		return this.rootHandler;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>Must be set before the registration of any handlers.
+	 * @since 5.1
+	 */
+	@Override
+	public void setPatternParser(@Nullable PathPatternParser patternParser) {
+		Assert.state(this.handlerMap.isEmpty(),
+				"PathPatternParser must be set before the registration of any handlers");
+		super.setPatternParser(patternParser);
+	}
+
 	/**
 	 * Whether to match to URLs irrespective of the presence of a trailing slash.
 	 * If enabled a URL pattern such as "/users" also matches to "/users/".
 	 * <p>The default value is {@code false}.
+	 * <p>Not applicable when matching against parsed path patterns, in which
+	 * case trailing slash matching is controlled by the
+	 * {@link PathPatternParser#setMatchOptionalTrailingSeparator PathPatternParser}.
 	 */
 	public void setUseTrailingSlashMatch(boolean useTrailingSlashMatch) {
 		this.useTrailingSlashMatch = useTrailingSlashMatch;
@@ -120,8 +149,15 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping i
 	@Override
 	@Nullable
 	protected Object getHandlerInternal(HttpServletRequest request) throws Exception {
-		String lookupPath = getUrlPathHelper().getLookupPathForRequest(request);
-		Object handler = lookupHandler(lookupPath, request);
+		String lookupPath = initLookupPath(request);
+		Object handler;
+		if (usesPathPatterns()) {
+			RequestPath path = ServletRequestPathUtils.getParsedRequestPath(request);
+			handler = lookupHandler(path, lookupPath, request);
+		}
+		else {
+			handler = lookupHandler(lookupPath, request);
+		}
 		if (handler == null) {
 			// We need to care for the default handler directly, since we need to
 			// expose the PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE for it as well.
@@ -166,16 +202,9 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping i
 	 */
 	@Nullable
 	protected Object lookupHandler(String urlPath, HttpServletRequest request) throws Exception {
-		// Direct match?
-		Object handler = this.handlerMap.get(urlPath);
+		Object handler = getDirectMatch(urlPath, request);
 		if (handler != null) {
-			// Bean name or resolved handler?
-			if (handler instanceof String) {
-				String handlerName = (String) handler;
-				handler = obtainApplicationContext().getBean(handlerName);
-			}
-			validateHandler(handler, request);
-			return buildPathExposingHandler(handler, urlPath, urlPath, null);
+			return handler;
 		}
 
 		// Pattern match?
@@ -239,6 +268,77 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping i
 		return null;
 	}
 
+	/**
+	 * Look up a handler instance for the given parsed request path, matching
+	 * against the {@link PathPattern}s parsed from the registered URL paths.
+	 * <p>Supports direct matches as well as pattern matches, selecting the
+	 * most specific pattern as per {@link PathPattern#SPECIFICITY_COMPARATOR}.
+	 * @param path the parsed request path
+	 * @param lookupPath the decoded path within the application, for direct matches
+	 * @param request current HTTP request (to expose the path within the mapping to)
+	 * @return the associated handler instance, or {@code null} if not found
+	 * @since 5.1
+	 * @see #setPatternParser
+	 */
+	@Nullable
+	protected Object lookupHandler(RequestPath path, String lookupPath, HttpServletRequest request)
+			throws Exception {
+
+		Object handler = getDirectMatch(lookupPath, request);
+		if (handler != null) {
+			return handler;
+		}
+
+		// Pattern match?
+		PathContainer pathWithinApplication = path.pathWithinApplication();
+		List<PathPattern> matches = null;
+		for (PathPattern pattern : this.pathPatternHandlerMap.keySet()) {
+			if (pattern.matches(pathWithinApplication)) {
+				matches = (matches != null ? matches : new ArrayList<>());
+				matches.add(pattern);
+			}
+		}
+		if (matches == null) {
+			return null;
+		}
+		if (matches.size() > 1) {
+			matches.sort(PathPattern.SPECIFICITY_COMPARATOR);
+			if (logger.isDebugEnabled()) {
+				logger.debug("Matching patterns for request [" + lookupPath + "] are " + matches);
+			}
+		}
+		PathPattern pattern = matches.get(0);
+		handler = this.pathPatternHandlerMap.get(pattern);
+		// Bean name or resolved handler?
+		if (handler instanceof String) {
+			String handlerName = (String) handler;
+			handler = obtainApplicationContext().getBean(handlerName);
+		}
+		validateHandler(handler, request);
+		String pathWithinMapping = getDecodedPath(pattern.extractPathWithinPattern(pathWithinApplication));
+		PathPattern.PathMatchInfo matchInfo = pattern.matchAndExtract(pathWithinApplication);
+		Map<String, String> uriVariables = (matchInfo != null ? matchInfo.getUriVariables() : null);
+		if (logger.isDebugEnabled()) {
+			logger.debug("URI Template variables for request [" + lookupPath + "] are " + uriVariables);
+		}
+		return buildPathExposingHandler(handler, pattern.getPatternString(), pathWithinMapping, uriVariables);
+	}
+
+	@Nullable
+	private Object getDirectMatch(String urlPath, HttpServletRequest request) throws Exception {
+		Object handler = this.handlerMap.get(urlPath);
+		if (handler != null) {
+			// Bean name or resolved handler?
+			if (handler instanceof String) {
+				String handlerName = (String) handler;
+				handler = obtainApplicationContext().getBean(handlerName);
+			}
+			validateHandler(handler, request);
+			return buildPathExposingHandler(handler, urlPath, urlPath, null);
+		}
+		return null;
+	}
+
 	/**
 	 * Validate the given handler against the current request.
 	 * <p>The default implementation is empty. Can be overridden in subclasses,
@@ -298,7 +398,14 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping i
 	@Override
 	@Nullable
 	public RequestMatchResult match(HttpServletRequest request, String pattern) {
-		String lookupPath = getUrlPathHelper().getLookupPathForRequest(request);
+		PathPatternParser patternParser = getPatternParser();
+		if (patternParser != null) {
+			// Registered patterns are parsed already, any other pattern only once
+			PathPattern pathPattern = this.pathPatternCache.computeIfAbsent(pattern, patternParser::parse);
+			PathContainer path = ServletRequestPathUtils.getParsedRequestPath(request).pathWithinApplication();
+			return (pathPattern.matches(path) ? new RequestMatchResult(pathPattern, path) : null);
+		}
+		String lookupPath = initLookupPath(request);
 		if (getPathMatcher().match(pattern, lookupPath)) {
 			return new RequestMatchResult(pattern, lookupPath, getPathMatcher());
 		}
@@ -369,6 +476,12 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping i
 			}
 			else {
 				this.handlerMap.put(urlPath, resolvedHandler);
+				PathPatternParser patternParser = getPatternParser();
+				if (patternParser != null) {
+					PathPattern pathPattern = patternParser.parse(urlPath);
+					this.pathPatternHandlerMap.put(pathPattern, resolvedHandler);
+					this.pathPatternCache.put(urlPath, pathPattern);
+				}
 				if (logger.isInfoEnabled()) {
 					logger.info("Mapped URL path [" + urlPath + "] onto " + getHandlerDescription(handler));
 				}
@@ -391,6 +504,16 @@ public abstract class AbstractUrlHandlerMapping extends AbstractHandlerMapping i
 		return Collections.unmodifiableMap(this.handlerMap);
 	}
 
+	/**
+	 * Return the registered handlers as an unmodifiable Map, with the parsed
+	 * {@link PathPattern} as key, if a {@link #setPatternParser PathPatternParser}
+	 * is configured, or an empty Map otherwise.
+	 * @since 5.1
+	 */
+	public final Map<PathPattern, Object> getPathPatternHandlerMap() {
+		return Collections.unmodifiableMap(this.pathPatternHandlerMap);
+	}
+
 	/**
 	 * Indicates whether this handler mapping support type-level mappings. Default to {@code false}.
 	 */
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,12 +19,15 @@ package org.springframework.web.servlet.handler;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.http.server.PathContainer;
 import org.springframework.lang.Nullable;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.PathMatcher;
 import org.springframework.web.context.request.WebRequestInterceptor;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 /**
  * Contains and delegates calls to a {@link HandlerInterceptor} along with
@@ -56,6 +59,9 @@ public final class MappedInterceptor implements HandlerInterceptor {
 	@Nullable
 	private PathMatcher pathMatcher;
 
+	@Nullable
+	private volatile ParsedPatterns parsedPatterns;
+
 
 	/**
 	 * Create a new MappedInterceptor instance.
@@ -164,6 +170,37 @@ public final class MappedInterceptor implements HandlerInterceptor {
 		}
 	}
 
+	/**
+	 * Variant of {@link #matches(String, PathMatcher)} that matches the given
+	 * parsed request path against the path patterns of this interceptor, as
+	 * parsed with the given {@link PathPatternParser}. Patterns are parsed once
+	 * and cached for as long as the same parser is passed in.
+	 * @param path the current request path
+	 * @param patternParser the parser to parse path patterns with
+	 * @since 5.1
+	 */
+	public boolean matches(PathContainer path, PathPatternParser patternParser) {
+		ParsedPatterns patterns = this.parsedPatterns;
+		if (patterns == null || patterns.parser != patternParser) {
+			patterns = new ParsedPatterns(patternParser, this.includePatterns, this.excludePatterns);
+			this.parsedPatterns = patterns;
+		}
+		for (PathPattern pattern : patterns.excludePatterns) {
+			if (pattern.matches(path)) {
+				return false;
+			}
+		}
+		if (patterns.includePatterns.length == 0) {
+			return true;
+		}
+		for (PathPattern pattern : patterns.includePatterns) {
+			if (pattern.matches(path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
 			throws Exception {
@@ -185,4 +222,34 @@ public final class MappedInterceptor implements HandlerInterceptor {
 		this.interceptor.afterCompletion(request, response, handler, ex);
 	}
 
+
+	/**
+	 * Include and exclude patterns parsed with a specific PathPatternParser.
+	 */
+	private static class ParsedPatterns {
+
+		final PathPatternParser parser;
+
+		final PathPattern[] includePatterns;
+
+		final PathPattern[] excludePatterns;
+
+		ParsedPatterns(PathPatternParser parser, @Nullable String[] includes, @Nullable String[] excludes) {
+			this.parser = parser;
+			this.includePatterns = parse(parser, includes);
+			this.excludePatterns = parse(parser, excludes);
+		}
+
+		private static PathPattern[] parse(PathPatternParser parser, @Nullable String[] patterns) {
+			if (patterns == null) {
+				return new PathPattern[0];
+			}
+			PathPattern[] result = new PathPattern[patterns.length];
+			for (int i = 0; i < patterns.length; i++) {
+				result[i] = parser.parse(patterns[i]);
+			}
+			return result;
+		}
+	}
+
 }
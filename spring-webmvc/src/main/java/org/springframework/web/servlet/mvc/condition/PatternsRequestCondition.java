@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,23 +27,45 @@ import java.util.List;
 import java.util.Set;
 import javax.servlet.http.HttpServletRequest;
 
+import org.springframework.http.server.PathContainer;
 import org.springframework.lang.Nullable;
 import org.springframework.util.AntPathMatcher;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 import org.springframework.util.PathMatcher;
 import org.springframework.util.StringUtils;
+import org.springframework.web.util.ServletRequestPathUtils;
 import org.springframework.web.util.UrlPathHelper;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 /**
  * A logical disjunction (' || ') request condition that matches a request
  * against a set of URL path patterns.
  *
+ * <p>If created with a {@link PathPatternParser}, the patterns are parsed once
+ * into {@link PathPattern}s and matched against the request path parsed via
+ * {@link ServletRequestPathUtils}, rather than matched as Strings against the
+ * lookup path with a {@link PathMatcher}.
+ *
  * @author Rossen Stoyanchev
  * @since 3.1
  */
 public final class PatternsRequestCondition extends AbstractRequestCondition<PatternsRequestCondition> {
 
+	private static final UrlPathHelper defaultPathHelper = new UrlPathHelper();
+
+	private static final PathMatcher defaultPathMatcher = new AntPathMatcher();
+
+
 	private final Set<String> patterns;
 
+	private final List<PathPattern> pathPatterns;
+
+	@Nullable
+	private final PathPatternParser patternParser;
+
 	private final UrlPathHelper pathHelper;
 
 	private final PathMatcher pathMatcher;
@@ -97,6 +119,20 @@ public final class PatternsRequestCondition extends AbstractRequestCondition<Pat
 				useTrailingSlashMatch, fileExtensions);
 	}
 
+	/**
+	 * Creates a new instance with the given URL patterns, parsed into
+	 * {@link PathPattern}s with the given parser.
+	 * Each pattern that is not empty and does not start with "/" is prepended with "/".
+	 * <p>Suffix pattern matching is not supported in this mode, and trailing
+	 * slash matching is controlled by the given parser.
+	 * @param patterns the URL patterns to use; if 0, the condition will match to every request.
+	 * @param patternParser the parser to parse the patterns with
+	 * @since 5.1
+	 */
+	public PatternsRequestCondition(String[] patterns, PathPatternParser patternParser) {
+		this(parse(prependLeadingSlash(Arrays.asList(patterns)), patternParser), patternParser);
+	}
+
 	/**
 	 * Private constructor accepting a collection of patterns.
 	 */
@@ -105,6 +141,8 @@ public final class PatternsRequestCondition extends AbstractRequestCondition<Pat
 			boolean useTrailingSlashMatch, @Nullable List<String> fileExtensions) {
 
 		this.patterns = Collections.unmodifiableSet(prependLeadingSlash(patterns));
+		this.pathPatterns = Collections.emptyList();
+		this.patternParser = null;
 		this.pathHelper = (urlPathHelper != null ? urlPathHelper : new UrlPathHelper());
 		this.pathMatcher = (pathMatcher != null ? pathMatcher : new AntPathMatcher());
 		this.useSuffixPatternMatch = useSuffixPatternMatch;
@@ -120,6 +158,23 @@ public final class PatternsRequestCondition extends AbstractRequestCondition<Pat
 		}
 	}
 
+	/**
+	 * Private constructor accepting a list of parsed patterns.
+	 */
+	private PatternsRequestCondition(List<PathPattern> pathPatterns, PathPatternParser patternParser) {
+		Set<String> patterns = new LinkedHashSet<>(pathPatterns.size());
+		for (PathPattern pathPattern : pathPatterns) {
+			patterns.add(pathPattern.getPatternString());
+		}
+		this.patterns = Collections.unmodifiableSet(patterns);
+		this.pathPatterns = Collections.unmodifiableList(pathPatterns);
+		this.patternParser = patternParser;
+		this.pathHelper = defaultPathHelper;
+		this.pathMatcher = defaultPathMatcher;
+		this.useSuffixPatternMatch = false;
+		this.useTrailingSlashMatch = false;
+	}
+
 
 	private static Set<String> prependLeadingSlash(Collection<String> patterns) {
 		Set<String> result = new LinkedHashSet<>(patterns.size());
@@ -132,10 +187,28 @@ public final class PatternsRequestCondition extends AbstractRequestCondition<Pat
 		return result;
 	}
 
+	private static List<PathPattern> parse(Collection<String> patterns, PathPatternParser patternParser) {
+		List<PathPattern> result = new ArrayList<>(patterns.size());
+		for (String pattern : patterns) {
+			result.add(patternParser.parse(pattern));
+		}
+		return result;
+	}
+
 	public Set<String> getPatterns() {
 		return this.patterns;
 	}
 
+	/**
+	 * Return the patterns parsed into {@link PathPattern}s, in the same order
+	 * as {@link #getPatterns()}, or an empty list if this condition was not
+	 * created with a {@link PathPatternParser}.
+	 * @since 5.1
+	 */
+	public List<PathPattern> getPathPatterns() {
+		return this.pathPatterns;
+	}
+
 	@Override
 	protected Collection<String> getContent() {
 		return this.patterns;
@@ -151,13 +224,17 @@ public final class PatternsRequestCondition extends AbstractRequestCondition<Pat
 	 * the "other" instance as follows:
 	 * <ul>
 	 * <li>If there are patterns in both instances, combine the patterns in "this" with
-	 * the patterns in "other" using {@link PathMatcher#combine(String, String)}.
+	 * the patterns in "other" using {@link PathMatcher#combine(String, String)},
+	 * or {@link PathPattern#combine(PathPattern)} for parsed patterns.
 	 * <li>If only one instance has patterns, use them.
 	 * <li>If neither instance has patterns, use an empty String (i.e. "").
 	 * </ul>
 	 */
 	@Override
 	public PatternsRequestCondition combine(PatternsRequestCondition other) {
+		if (this.patternParser != null) {
+			return combinePathPatterns(other, this.patternParser);
+		}
 		Set<String> result = new LinkedHashSet<>();
 		if (!this.patterns.isEmpty() && !other.patterns.isEmpty()) {
 			for (String pattern1 : this.patterns) {
@@ -179,6 +256,32 @@ public final class PatternsRequestCondition extends AbstractRequestCondition<Pat
 				this.useTrailingSlashMatch, this.fileExtensions);
 	}
 
+	private PatternsRequestCondition combinePathPatterns(PatternsRequestCondition other, PathPatternParser parser) {
+		List<PathPattern> otherPatterns = (other.patternParser != null ?
+				other.pathPatterns : parse(other.patterns, parser));
+		List<PathPattern> result = new ArrayList<>();
+		if (!this.pathPatterns.isEmpty() && !otherPatterns.isEmpty()) {
+			for (PathPattern pattern1 : this.pathPatterns) {
+				for (PathPattern pattern2 : otherPatterns) {
+					PathPattern combined = pattern1.combine(pattern2);
+					if (!result.contains(combined)) {
+						result.add(combined);
+					}
+				}
+			}
+		}
+		else if (!this.pathPatterns.isEmpty()) {
+			result.addAll(this.pathPatterns);
+		}
+		else if (!otherPatterns.isEmpty()) {
+			result.addAll(otherPatterns);
+		}
+		else {
+			result.add(parser.parse(""));
+		}
+		return new PatternsRequestCondition(result, parser);
+	}
+
 	/**
 	 * Checks if any of the patterns match the given request and returns an instance
 	 * that is guaranteed to contain matching patterns, sorted via
@@ -203,6 +306,12 @@ public final class PatternsRequestCondition extends AbstractRequestCondition<Pat
 			return this;
 		}
 
+		if (this.patternParser != null) {
+			PathContainer path = ServletRequestPathUtils.getParsedRequestPath(request).pathWithinApplication();
+			List<PathPattern> matches = getMatchingPathPatterns(path);
+			return (matches.isEmpty() ? null : new PatternsRequestCondition(matches, this.patternParser));
+		}
+
 		String lookupPath = this.pathHelper.getLookupPathForRequest(request);
 		List<String> matches = getMatchingPatterns(lookupPath);
 
@@ -221,6 +330,14 @@ public final class PatternsRequestCondition extends AbstractRequestCondition<Pat
 	 * @return a collection of matching patterns sorted with the closest match at the top
 	 */
 	public List<String> getMatchingPatterns(String lookupPath) {
+		if (this.patternParser != null) {
+			List<String> matches = new ArrayList<>();
+			// The lookup path is decoded already: match its segments as they are
+			for (PathPattern pattern : getMatchingPathPatterns(LookupPathContainer.create(lookupPath))) {
+				matches.add(pattern.getPatternString());
+			}
+			return matches;
+		}
 		List<String> matches = new ArrayList<>();
 		for (String pattern : this.patterns) {
 			String match = getMatchingPattern(pattern, lookupPath);
@@ -232,6 +349,17 @@ public final class PatternsRequestCondition extends AbstractRequestCondition<Pat
 		return matches;
 	}
 
+	private List<PathPattern> getMatchingPathPatterns(PathContainer path) {
+		List<PathPattern> matches = new ArrayList<>();
+		for (PathPattern pattern : this.pathPatterns) {
+			if (pattern.matches(path)) {
+				matches.add(pattern);
+			}
+		}
+		matches.sort(PathPattern.SPECIFICITY_COMPARATOR);
+		return matches;
+	}
+
 	@Nullable
 	private String getMatchingPattern(String pattern, String lookupPath) {
 		if (pattern.equals(lookupPath)) {
@@ -266,7 +394,8 @@ public final class PatternsRequestCondition extends AbstractRequestCondition<Pat
 	/**
 	 * Compare the two conditions based on the URL patterns they contain.
 	 * Patterns are compared one at a time, from top to bottom via
-	 * {@link PathMatcher#getPatternComparator(String)}. If all compared
+	 * {@link PathMatcher#getPatternComparator(String)}, or via
+	 * {@link PathPattern#SPECIFICITY_COMPARATOR} for parsed patterns. If all compared
 	 * patterns match equally, but one instance has more patterns, it is
 	 * considered a closer match.
 	 * <p>It is assumed that both instances have been obtained via
@@ -276,12 +405,18 @@ public final class PatternsRequestCondition extends AbstractRequestCondition<Pat
 	 */
 	@Override
 	public int compareTo(PatternsRequestCondition other, HttpServletRequest request) {
+		if (this.patternParser != null && other.patternParser != null) {
+			return compareTo(this.pathPatterns.iterator(), other.pathPatterns.iterator(),
+					PathPattern.SPECIFICITY_COMPARATOR);
+		}
 		String lookupPath = this.pathHelper.getLookupPathForRequest(request);
 		Comparator<String> patternComparator = this.pathMatcher.getPatternComparator(lookupPath);
-		Iterator<String> iterator = this.patterns.iterator();
-		Iterator<String> iteratorOther = other.patterns.iterator();
+		return compareTo(this.patterns.iterator(), other.patterns.iterator(), patternComparator);
+	}
+
+	private static <P> int compareTo(Iterator<P> iterator, Iterator<P> iteratorOther, Comparator<P> comparator) {
 		while (iterator.hasNext() && iteratorOther.hasNext()) {
-			int result = patternComparator.compare(iterator.next(), iteratorOther.next());
+			int result = comparator.compare(iterator.next(), iteratorOther.next());
 			if (result != 0) {
 				return result;
 			}
@@ -297,4 +432,93 @@ public final class PatternsRequestCondition extends AbstractRequestCondition<Pat
 		}
 	}
 
+
+	/**
+	 * {@link PathContainer} for an already decoded lookup path, exposing its
+	 * segments for matching as they are, i.e. without decoding them again
+	 * and without extracting path parameters, just like {@link PathMatcher}
+	 * matches the lookup path.
+	 */
+	private static final class LookupPathContainer implements PathContainer {
+
+		private static final PathContainer.Separator SEPARATOR = () -> "/";
+
+		private final String path;
+
+		private final List<Element> elements;
+
+		private LookupPathContainer(String path, List<Element> elements) {
+			this.path = path;
+			this.elements = elements;
+		}
+
+		@Override
+		public String value() {
+			return this.path;
+		}
+
+		@Override
+		public List<Element> elements() {
+			return this.elements;
+		}
+
+		static PathContainer create(String lookupPath) {
+			List<Element> elements = new ArrayList<>();
+			int begin = 0;
+			if (lookupPath.startsWith("/")) {
+				elements.add(SEPARATOR);
+				begin = 1;
+			}
+			while (begin < lookupPath.length()) {
+				int end = lookupPath.indexOf('/', begin);
+				String segment = (end != -1 ? lookupPath.substring(begin, end) : lookupPath.substring(begin));
+				if (!segment.isEmpty()) {
+					elements.add(new LookupPathSegment(segment));
+				}
+				if (end == -1) {
+					break;
+				}
+				elements.add(SEPARATOR);
+				begin = end + 1;
+			}
+			return new LookupPathContainer(lookupPath, elements);
+		}
+	}
+
+
+	private static final class LookupPathSegment implements PathContainer.PathSegment {
+
+		private static final MultiValueMap<String, String> EMPTY_PARAMETERS =
+				CollectionUtils.unmodifiableMultiValueMap(new LinkedMultiValueMap<>(0));
+
+		private final String value;
+
+		private final char[] valueAsChars;
+
+		LookupPathSegment(String value) {
+			this.value = value;
+			this.valueAsChars = value.toCharArray();
+		}
+
+		@Override
+		public String value() {
+			return this.value;
+		}
+
+		@Override
+		public String valueToMatch() {
+			return this.value;
+		}
+
+		@Override
+		public char[] valueToMatchAsChars() {
+			return this.valueAsChars;
+		}
+
+		@Override
+		public MultiValueMap<String, String> parameters() {
+			return EMPTY_PARAMETERS;
+		}
+	}
+
 }
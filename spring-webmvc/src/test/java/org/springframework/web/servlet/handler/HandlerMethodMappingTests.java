@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -37,10 +37,14 @@ import org.springframework.web.context.support.StaticWebApplicationContext;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.util.UrlPathHelper;
+import org.springframework.web.util.pattern.PathPatternParser;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
 
 
 /**
@@ -102,6 +106,55 @@ public class HandlerMethodMappingTests {
 		this.mapping.getHandlerInternal(new MockHttpServletRequest("GET", "/foo"));
 	}
 
+	@Test
+	public void patternMatchWithPathPrefixIndex() throws Exception {
+		this.mapping.setUsePathPrefixIndex(true);
+		this.mapping.registerMapping("/foo/{id}", this.handler, this.method1);
+		this.mapping.registerMapping("/bar/{id}", this.handler, this.method2);
+
+		HandlerMethod result = this.mapping.getHandlerInternal(new MockHttpServletRequest("GET", "/foo/1"));
+		assertEquals(method1, result.getMethod());
+		result = this.mapping.getHandlerInternal(new MockHttpServletRequest("GET", "/bar/1"));
+		assertEquals(method2, result.getMethod());
+		assertNull(this.mapping.getHandlerInternal(new MockHttpServletRequest("GET", "/baz/1")));
+	}
+
+	@Test
+	public void registerMappingWithPathPrefixIndex() throws Exception {
+		this.mapping.setUsePathPrefixIndex(true);
+		this.mapping.registerMapping("/foo/{id}", this.handler, this.method1);
+		this.mapping.registerMapping("/bar/*", this.handler, this.method2);
+
+		assertThat(this.mapping.getMappingRegistry().getMappingsByPathPrefix("/foo/1"), contains("/foo/{id}"));
+		assertThat(this.mapping.getMappingRegistry().getMappingsByPathPrefix("/bar/1"), contains("/bar/*"));
+		assertThat(this.mapping.getMappingRegistry().getMappingsByPathPrefix("/baz/1"), empty());
+
+		this.mapping.unregisterMapping("/foo/{id}");
+		assertThat(this.mapping.getMappingRegistry().getMappingsByPathPrefix("/foo/1"), empty());
+	}
+
+	@Test
+	public void registerMappingWithoutPathPrefixIndex() throws Exception {
+		this.mapping.registerMapping("/foo/{id}", this.handler, this.method1);
+
+		assertThat(this.mapping.getMappingRegistry().getMappingsByPathPrefix("/foo/1"), empty());
+		HandlerMethod result = this.mapping.getHandlerInternal(new MockHttpServletRequest("GET", "/foo/1"));
+		assertEquals(method1, result.getMethod());
+	}
+
+	@Test
+	public void pathPrefixIndexNotUsedWithCaseInsensitivePatternParser() throws Exception {
+		PathPatternParser patternParser = new PathPatternParser();
+		patternParser.setCaseSensitive(false);
+		this.mapping.setPatternParser(patternParser);
+		this.mapping.setUsePathPrefixIndex(true);
+		this.mapping.registerMapping("/foo/{id}", this.handler, this.method1);
+
+		assertThat(this.mapping.getMappingRegistry().getMappingsByPathPrefix("/foo/1"), empty());
+		HandlerMethod result = this.mapping.getHandlerInternal(new MockHttpServletRequest("GET", "/foo/1"));
+		assertEquals(method1, result.getMethod());
+	}
+
 	@Test
 	public void detectHandlerMethodsInAncestorContexts() {
 		StaticApplicationContext cxt = new StaticApplicationContext();
@@ -266,7 +319,7 @@ public class HandlerMethodMappingTests {
 
 		@Override
 		protected Set<String> getMappingPathPatterns(String key) {
-			return (this.pathMatcher.isPattern(key) ? Collections.<String>emptySet() : Collections.singleton(key));
+			return Collections.singleton(key);
 		}
 
 		@Override
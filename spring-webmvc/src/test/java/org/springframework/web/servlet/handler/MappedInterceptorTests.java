@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -23,11 +23,13 @@ import javax.servlet.http.HttpServletResponse;
 import org.junit.Before;
 import org.junit.Test;
 
+import org.springframework.http.server.PathContainer;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.util.PathMatcher;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.i18n.LocaleChangeInterceptor;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 import static org.junit.Assert.*;
 import static org.mockito.BDDMockito.*;
@@ -94,6 +96,24 @@ public class MappedInterceptorTests {
 		assertFalse(mappedInterceptor.matches("/foo/bar", pathMatcher));
 	}
 
+	@Test
+	public void includeAndExcludePathPatterns() {
+		MappedInterceptor mappedInterceptor = new MappedInterceptor(
+				new String[] { "/foo/**", "/bar/{id}" }, new String[] { "/foo/admin/**" }, this.interceptor);
+		PathPatternParser parser = new PathPatternParser();
+
+		assertTrue(mappedInterceptor.matches(PathContainer.parsePath("/foo/a;q=1"), parser));
+		assertTrue(mappedInterceptor.matches(PathContainer.parsePath("/bar/42"), parser));
+		assertFalse(mappedInterceptor.matches(PathContainer.parsePath("/foo/admin/a"), parser));
+		assertFalse(mappedInterceptor.matches(PathContainer.parsePath("/baz"), parser));
+	}
+
+	@Test
+	public void noPatternsWithPathPatterns() {
+		MappedInterceptor mappedInterceptor = new MappedInterceptor(null, null, this.interceptor);
+		assertTrue(mappedInterceptor.matches(PathContainer.parsePath("/foo"), new PathPatternParser()));
+	}
+
 	@Test
 	public void preHandle() throws Exception {
 		HandlerInterceptor interceptor = mock(HandlerInterceptor.class);
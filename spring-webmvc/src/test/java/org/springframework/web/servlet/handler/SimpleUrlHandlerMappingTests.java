@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 
 package org.springframework.web.servlet.handler;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -31,6 +32,7 @@ import org.springframework.web.servlet.HandlerExecutionChain;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.util.WebUtils;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 import static org.junit.Assert.*;
 
@@ -89,6 +91,52 @@ public class SimpleUrlHandlerMappingTests {
 		assertSame(controller, hec.getHandler());
 	}
 
+	@Test
+	public void urlMappingWithPathPatterns() throws Exception {
+		Object mainController = new Object();
+		Object docsController = new Object();
+		Object userController = new Object();
+		Map<String, Object> urlMap = new LinkedHashMap<>();
+		urlMap.put("/welcome.html", mainController);
+		urlMap.put("/docs/**", docsController);
+		urlMap.put("/users/{id}", userController);
+		urlMap.put("/users/*", mainController);
+
+		SimpleUrlHandlerMapping handlerMapping = new SimpleUrlHandlerMapping();
+		handlerMapping.setPatternParser(new PathPatternParser());
+		handlerMapping.setUrlMap(urlMap);
+		handlerMapping.setInterceptors(new MappedInterceptor(new String[] {"/users/**"}, new HandlerInterceptorAdapter() {}));
+		handlerMapping.setApplicationContext(new StaticApplicationContext());
+		assertTrue(handlerMapping.usesPathPatterns());
+
+		MockHttpServletRequest req = new MockHttpServletRequest("GET", "/app/welcome.html");
+		req.setContextPath("/app");
+		HandlerExecutionChain hec = getHandler(handlerMapping, req);
+		assertSame(mainController, hec.getHandler());
+		assertEquals("/welcome.html", req.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE));
+
+		req = new MockHttpServletRequest("GET", "/docs/a%20b/c;v=1");
+		hec = getHandler(handlerMapping, req);
+		assertSame(docsController, hec.getHandler());
+		assertEquals("/docs/**", req.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE));
+		assertEquals("a b/c", req.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE));
+
+		req = new MockHttpServletRequest("GET", "/users/42");
+		hec = getHandler(handlerMapping, req);
+		assertSame(userController, hec.getHandler());
+		assertEquals(Collections.singletonMap("id", "42"),
+				req.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE));
+		assertEquals(3, hec.getInterceptors().length);
+
+		RequestMatchResult matchResult = handlerMapping.match(req, "/users/{id}");
+		assertNotNull(matchResult);
+		assertEquals(Collections.singletonMap("id", "42"), matchResult.extractUriTemplateVariables());
+		assertNull(handlerMapping.match(req, "/docs/{id}"));
+
+		req = new MockHttpServletRequest("GET", "/other");
+		assertNull(handlerMapping.getHandler(req));
+	}
+
 	private void checkMappings(String beanName) throws Exception {
 		MockServletContext sc = new MockServletContext("");
 		XmlWebApplicationContext wac = new XmlWebApplicationContext();
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,13 +16,16 @@
 
 package org.springframework.web.servlet.mvc.condition;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import javax.servlet.http.HttpServletRequest;
 
 import org.junit.Test;
 
 import org.springframework.mock.web.test.MockHttpServletRequest;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 import static org.junit.Assert.*;
 
@@ -212,4 +215,59 @@ public class PatternsRequestConditionTests {
 		assertEquals(1, match1.compareTo(match2, request));
 	}
 
+	@Test
+	public void combinePathPatterns() {
+		PathPatternParser parser = new PathPatternParser();
+		PatternsRequestCondition c1 = new PatternsRequestCondition(new String[] {"/t1", "/t2"}, parser);
+		PatternsRequestCondition c2 = new PatternsRequestCondition(new String[] {"/m1", "{id}"}, parser);
+
+		PatternsRequestCondition combined = c1.combine(c2);
+		assertEquals(new PatternsRequestCondition("/t1/m1", "/t1/{id}", "/t2/m1", "/t2/{id}"), combined);
+		assertEquals(4, combined.getPathPatterns().size());
+		assertEquals(new PatternsRequestCondition(""),
+				new PatternsRequestCondition(new String[0], parser).combine(new PatternsRequestCondition()));
+	}
+
+	@Test
+	public void matchPathPatterns() {
+		PathPatternParser parser = new PathPatternParser();
+		PatternsRequestCondition condition =
+				new PatternsRequestCondition(new String[] {"/**", "/foo/bar", "/foo/{id}"}, parser);
+
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app/foo/bar;q=1");
+		request.setContextPath("/app");
+		PatternsRequestCondition match = condition.getMatchingCondition(request);
+
+		assertNotNull(match);
+		assertEquals(Arrays.asList("/foo/bar", "/foo/{id}", "/**"), new ArrayList<>(match.getPatterns()));
+		assertEquals(Arrays.asList("/foo/bar", "/foo/{id}", "/**"), condition.getMatchingPatterns("/foo/bar"));
+		assertNull(new PatternsRequestCondition(new String[] {"/foo/*"}, parser)
+				.getMatchingCondition(new MockHttpServletRequest("GET", "/bar/foo")));
+	}
+
+	@Test
+	public void matchingPathPatternsForDecodedLookupPath() {
+		PathPatternParser parser = new PathPatternParser();
+		String[] patterns = {"/foo/%", "/foo/%25"};
+
+		// Same as with AntPathMatcher: the lookup path is not decoded again
+		assertEquals(Collections.singletonList("/foo/%25"),
+				new PatternsRequestCondition(patterns).getMatchingPatterns("/foo/%25"));
+		assertEquals(Collections.singletonList("/foo/%25"),
+				new PatternsRequestCondition(patterns, parser).getMatchingPatterns("/foo/%25"));
+		assertEquals(Collections.singletonList("/foo/%"),
+				new PatternsRequestCondition(patterns, parser).getMatchingPatterns("/foo/%"));
+	}
+
+	@Test
+	public void comparePathPatternSpecificity() {
+		PathPatternParser parser = new PathPatternParser();
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/foo");
+		PatternsRequestCondition c1 = new PatternsRequestCondition(new String[] {"/fo*"}, parser);
+		PatternsRequestCondition c2 = new PatternsRequestCondition(new String[] {"/foo"}, parser);
+
+		assertEquals(1, c1.getMatchingCondition(request).compareTo(c2.getMatchingCondition(request), request));
+		assertEquals(0, c2.compareTo(c2, request));
+	}
+
 }
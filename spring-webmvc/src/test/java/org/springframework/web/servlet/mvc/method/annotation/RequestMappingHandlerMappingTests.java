@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,7 +32,9 @@ import org.junit.Test;
 
 import org.springframework.core.annotation.AliasFor;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.test.MockHttpServletRequest;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.accept.PathExtensionContentNegotiationStrategy;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -43,7 +45,11 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.context.support.StaticWebApplicationContext;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -183,6 +189,33 @@ public class RequestMappingHandlerMappingTests {
 		assertComposedAnnotationMapping(RequestMethod.PATCH);
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void pathPatternParser() throws Exception {
+		this.wac.registerSingleton("pathPatternController", PathPatternController.class);
+		this.wac.refresh();
+		this.handlerMapping.setPatternParser(new PathPatternParser());
+		this.handlerMapping.afterPropertiesSet();
+		assertTrue(this.handlerMapping.usesPathPatterns());
+
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app/users/42;q=1");
+		request.setContextPath("/app");
+		HandlerExecutionChain chain = this.handlerMapping.getHandler(request);
+		assertNotNull(chain);
+		assertEquals("user", ((HandlerMethod) chain.getHandler()).getMethod().getName());
+		assertEquals("/users/{id}", request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE));
+		assertEquals(Collections.singletonMap("id", "42"),
+				request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE));
+		Map<String, MultiValueMap<String, String>> matrixVariables = (Map<String, MultiValueMap<String, String>>)
+				request.getAttribute(HandlerMapping.MATRIX_VARIABLES_ATTRIBUTE);
+		assertEquals("1", matrixVariables.get("id").getFirst("q"));
+
+		request = new MockHttpServletRequest("GET", "/users/42/orders");
+		chain = this.handlerMapping.getHandler(request);
+		assertNotNull(chain);
+		assertEquals("users", ((HandlerMethod) chain.getHandler()).getMethod().getName());
+	}
+
 	private RequestMappingInfo assertComposedAnnotationMapping(RequestMethod requestMethod) throws Exception {
 		String methodName = requestMethod.name().toLowerCase();
 		String path = "/" + methodName;
@@ -245,6 +278,20 @@ public class RequestMappingHandlerMappingTests {
 
 	}
 
+	@Controller
+	@RequestMapping("/users")
+	static class PathPatternController {
+
+		@GetMapping("/{id}")
+		public void user() {
+		}
+
+		@GetMapping("/**")
+		public void users() {
+		}
+	}
+
+
 	@RequestMapping(method = RequestMethod.POST,
 			produces = MediaType.APPLICATION_JSON_VALUE,
 			consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,6 +27,7 @@ import org.apache.commons.logging.LogFactory;
 
 import org.springframework.lang.Nullable;
 import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.support.OrderedMessageExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.messaging.StompSubProtocolHandler;
@@ -64,10 +65,10 @@ public class WebSocketMessageBrokerStats {
 	private StompBrokerRelayMessageHandler stompBrokerRelay;
 
 	@Nullable
-	private ThreadPoolExecutor inboundChannelExecutor;
+	private Executor inboundChannelExecutor;
 
 	@Nullable
-	private ThreadPoolExecutor outboundChannelExecutor;
+	private Executor outboundChannelExecutor;
 
 	@Nullable
 	private ScheduledThreadPoolExecutor sockJsTaskScheduler;
@@ -104,12 +105,20 @@ public class WebSocketMessageBrokerStats {
 		this.stompBrokerRelay = stompBrokerRelay;
 	}
 
-	public void setInboundChannelExecutor(ThreadPoolTaskExecutor inboundChannelExecutor) {
-		this.inboundChannelExecutor = inboundChannelExecutor.getThreadPoolExecutor();
+	/**
+	 * Set the executor of the inbound channel. As of 5.1, this may also be an
+	 * {@link OrderedMessageExecutor}, reporting stats about its target executor.
+	 */
+	public void setInboundChannelExecutor(Executor inboundChannelExecutor) {
+		this.inboundChannelExecutor = inboundChannelExecutor;
 	}
 
-	public void setOutboundChannelExecutor(ThreadPoolTaskExecutor outboundChannelExecutor) {
-		this.outboundChannelExecutor = outboundChannelExecutor.getThreadPoolExecutor();
+	/**
+	 * Set the executor of the outbound channel. As of 5.1, this may also be an
+	 * {@link OrderedMessageExecutor}, reporting stats about its target executor.
+	 */
+	public void setOutboundChannelExecutor(Executor outboundChannelExecutor) {
+		this.outboundChannelExecutor = outboundChannelExecutor;
 	}
 
 	public void setSockJsTaskScheduler(ThreadPoolTaskScheduler sockJsTaskScheduler) {
@@ -190,6 +199,15 @@ public class WebSocketMessageBrokerStats {
 	}
 
 	private String getExecutorStatsInfo(Executor executor) {
+		if (executor instanceof OrderedMessageExecutor) {
+			executor = ((OrderedMessageExecutor) executor).getExecutor();
+		}
+		if (executor instanceof ThreadPoolTaskExecutor) {
+			executor = ((ThreadPoolTaskExecutor) executor).getThreadPoolExecutor();
+		}
+		if (!(executor instanceof ThreadPoolExecutor)) {
+			return "unknown";
+		}
 		String str = executor.toString();
 		return str.substring(str.indexOf("pool"), str.length() - 1);
 	}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -46,7 +46,9 @@ import org.springframework.messaging.support.AbstractSubscribableChannel;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.ExecutorSubscribableChannel;
 import org.springframework.messaging.support.ImmutableMessageChannelInterceptor;
+import org.springframework.messaging.support.OrderedMessageExecutor;
 import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.servlet.HandlerMapping;
@@ -179,6 +181,22 @@ public class WebSocketMessageBrokerConfigurationSupportTests {
 		assertTrue("\nExpected: " + expected.replace("\\", "") + "\n  Actual: " + actual, actual.matches(expected));
 	}
 
+	@Test
+	public void webSocketMessageBrokerStatsWithOrderedMessageExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.initialize();
+		try {
+			WebSocketMessageBrokerStats stats = new WebSocketMessageBrokerStats();
+			stats.setInboundChannelExecutor(new OrderedMessageExecutor(executor, "simpSessionId"));
+			String actual = stats.getClientInboundExecutorStatsInfo();
+			String expected = "pool size = \\d, active threads = \\d, queued tasks = \\d, completed tasks = \\d";
+			assertTrue("Actual: " + actual, actual.matches(expected));
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
 	@Test
 	public void webSocketHandlerDecorator() throws Exception {
 		ApplicationContext config = createConfig(WebSocketHandlerDecoratorConfig.class);